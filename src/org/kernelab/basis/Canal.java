@@ -1,16 +1,27 @@
 package org.kernelab.basis;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -19,7 +30,24 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -105,6 +133,12 @@ public class Canal<D> implements Iterable<D>
 		{
 			this.orderBy = key != null ? new Expr[] { key instanceof Expr ? (Expr) key : new Expr()
 			{
+				@Override
+				protected Object key()
+				{
+					return key;
+				}
+
 				@Override
 				public Object map(Object el) throws Exception
 				{
@@ -126,6 +160,12 @@ public class Canal<D> implements Iterable<D>
 					final Mapper<? super I, ? extends Comparable> key = keys[i];
 					this.orderBy[i] = key instanceof Expr ? (Expr) key : new Expr()
 					{
+						@Override
+						protected Object key()
+						{
+							return key;
+						}
+
 						@Override
 						public Object map(Object el) throws Exception
 						{
@@ -154,6 +194,12 @@ public class Canal<D> implements Iterable<D>
 		{
 			this.partBy = key != null ? new Expr[] { key instanceof Expr ? (Expr) key : new Expr()
 			{
+				@Override
+				protected Object key()
+				{
+					return key;
+				}
+
 				@Override
 				public Object map(Object el) throws Exception
 				{
@@ -175,6 +221,12 @@ public class Canal<D> implements Iterable<D>
 					final Mapper<? super I, ? extends Comparable> key = keys[i];
 					this.partBy[i] = key instanceof Expr ? (Expr) key : new Expr()
 					{
+						@Override
+						protected Object key()
+						{
+							return key;
+						}
+
 						@Override
 						public Object map(Object el) throws Exception
 						{
@@ -226,6 +278,18 @@ public class Canal<D> implements Iterable<D>
 			}
 		}
 
+		@Override
+		public void drain(Sink<? super D> sink) throws Exception
+		{
+			while (this.hasNext())
+			{
+				if (!sink.accept(this.next()))
+				{
+					break;
+				}
+			}
+		}
+
 		@Override
 		public void end() throws Exception
 		{
@@ -250,6 +314,12 @@ public class Canal<D> implements Iterable<D>
 			throw new UnsupportedOperationException();
 		}
 
+		@Override
+		public boolean reset()
+		{
+			return false;
+		}
+
 		@Override
 		public void setBegun()
 		{
@@ -348,6 +418,12 @@ public class Canal<D> implements Iterable<D>
 		{
 			return new Expr<Object[], T>()
 			{
+				@Override
+				protected Object key()
+				{
+					return idx;
+				}
+
 				@SuppressWarnings("unchecked")
 				@Override
 				public T map(Object[] el) throws Exception
@@ -357,12 +433,30 @@ public class Canal<D> implements Iterable<D>
 			};
 		}
 
+		@Override
+		public ArrayCanal bottom(int k)
+		{
+			return super.bottom(k).toArrays();
+		}
+
+		@Override
+		public ArrayCanal bottom(int k, Comparator<? super Object[]> cmp)
+		{
+			return super.bottom(k, cmp).toArrays();
+		}
+
 		@Override
 		public ArrayCanal cache()
 		{
 			return super.cache().toArrays();
 		}
 
+		@Override
+		public ArrayCanal cache(int limit)
+		{
+			return super.cache(limit).toArrays();
+		}
+
 		@Override
 		public ArrayCanal distinct()
 		{
@@ -381,6 +475,42 @@ public class Canal<D> implements Iterable<D>
 			return super.distinct(xtr).toArrays();
 		}
 
+		@Override
+		public ArrayCanal distinctApprox(long expected, double fpp)
+		{
+			return this.distinctApprox(expected, fpp, EQL);
+		}
+
+		@Override
+		public ArrayCanal distinctApprox(long expected, double fpp, HashedEquality<? super Object[]> eql)
+		{
+			return super.distinctApprox(expected, fpp, eql).toArrays();
+		}
+
+		@Override
+		public ArrayCanal distinctApprox(long expected, double fpp, Mapper<? super Object[], ?> xtr)
+		{
+			return super.distinctApprox(expected, fpp, xtr).toArrays();
+		}
+
+		@Override
+		public ArrayCanal distinctWindow(int window)
+		{
+			return this.distinctWindow(window, EQL);
+		}
+
+		@Override
+		public ArrayCanal distinctWindow(int window, HashedEquality<? super Object[]> eql)
+		{
+			return super.distinctWindow(window, eql).toArrays();
+		}
+
+		@Override
+		public ArrayCanal distinctWindow(int window, Mapper<? super Object[], ?> xtr)
+		{
+			return super.distinctWindow(window, xtr).toArrays();
+		}
+
 		@Override
 		public ArrayCanal filter(Filter<? super Object[]> pred)
 		{
@@ -417,6 +547,24 @@ public class Canal<D> implements Iterable<D>
 			return super.peek(action).toArrays();
 		}
 
+		@Override
+		public ArrayCanal prefetch(int bufferSize)
+		{
+			return super.prefetch(bufferSize).toArrays();
+		}
+
+		@Override
+		public ArrayCanal prefetch(int bufferSize, ExecutorService executor)
+		{
+			return super.prefetch(bufferSize, executor).toArrays();
+		}
+
+		@Override
+		public ArrayCanal profile(Profile profile)
+		{
+			return super.profile(profile).toArrays();
+		}
+
 		@Override
 		public ArrayCanal reverse()
 		{
@@ -449,6 +597,12 @@ public class Canal<D> implements Iterable<D>
 			return super.sortBy(orders).toArrays();
 		}
 
+		@Override
+		public ArrayCanal sortBy(Spiller spiller, Object... orders)
+		{
+			return super.sortBy(spiller, orders).toArrays();
+		}
+
 		@Override
 		public ArrayCanal sortWith()
 		{
@@ -473,6 +627,12 @@ public class Canal<D> implements Iterable<D>
 			return super.sortWith(cmp, ascend).toArrays();
 		}
 
+		@Override
+		public ArrayCanal sortWith(Spiller spiller, Comparator<? super Object[]> cmp, boolean ascend)
+		{
+			return super.sortWith(spiller, cmp, ascend).toArrays();
+		}
+
 		@Override
 		public ArrayCanal subtract(Canal<? extends Object[]> that)
 		{
@@ -491,6 +651,18 @@ public class Canal<D> implements Iterable<D>
 			return super.subtract(that, xtr).toArrays();
 		}
 
+		@Override
+		public ArrayCanal top(int k)
+		{
+			return super.top(k).toArrays();
+		}
+
+		@Override
+		public ArrayCanal top(int k, Comparator<? super Object[]> cmp)
+		{
+			return super.top(k, cmp).toArrays();
+		}
+
 		@Override
 		public ArrayCanal uncache()
 		{
@@ -525,35 +697,243 @@ public class Canal<D> implements Iterable<D>
 		}
 	}
 
-	protected static class CacheOp<D> implements Converter<D, D>
+	/**
+	 * Gather the elements into batches of a fixed size, the last batch might
+	 * be smaller.
+	 */
+	protected static class BatchOp<E> implements Converter<E, List<E>>
 	{
-		protected final ArrayList<D>	cache	= new ArrayList<D>();
+		protected final int size;
 
-		protected final Pond<D, D>		pond	= new CachePond<D>(cache);
+		public BatchOp(int size)
+		{
+			if (size < 1)
+			{
+				throw new IllegalArgumentException("Batch size must be positive: " + size);
+			}
+			this.size = size;
+		}
 
 		@Override
-		public Pond<D, D> newPond()
+		public Pond<E, List<E>> newPond()
+		{
+			return new Creek<E, List<E>>()
+			{
+				private List<E>	batch;
+
+				private boolean	stop;
+
+				@Override
+				public void drain(final Sink<? super List<E>> sink) throws Exception
+				{
+					batch = new ArrayList<E>(size);
+					stop = false;
+
+					upstream().drain(new Sink<E>()
+					{
+						@Override
+						public boolean accept(E el) throws Exception
+						{
+							batch.add(el);
+							if (batch.size() >= size)
+							{
+								List<E> full = batch;
+								batch = new ArrayList<E>(size);
+								stop = !sink.accept(full);
+								return !stop;
+							}
+							return true;
+						}
+					});
+
+					if (!stop && !batch.isEmpty())
+					{
+						sink.accept(batch);
+					}
+					batch = null;
+				}
+
+				@Override
+				public List<E> next()
+				{
+					List<E> batch = new ArrayList<E>(size);
+					while (batch.size() < size && upstream().hasNext())
+					{
+						batch.add(upstream().next());
+					}
+					return batch;
+				}
+
+				@Override
+				public boolean reset()
+				{
+					return true;
+				}
+			};
+		}
+	}
+
+	/**
+	 * A memoizing store shared by all the ponds of a cached Canal. The
+	 * upstream is evaluated only once by whichever reader first asks for an
+	 * element not yet produced, other readers wait only for that element. If
+	 * the number of elements exceeds the limit, the cached prefix is kept and
+	 * each reader recomputes the rest from a fresh upstream.
+	 */
+	protected static class CacheOp<D> implements Sourcer<D>
+	{
+		protected final Canal<D>	canal;
+
+		protected final int			limit;
+
+		protected final List<D>		cache	= new ArrayList<D>();
+
+		private Pond<?, D>			source;
+
+		private boolean				pulling	= false;
+
+		private boolean				done	= false;
+
+		private boolean				overflow	= false;
+
+		public CacheOp(Canal<D> canal, int limit)
+		{
+			this.canal = canal;
+			this.limit = limit;
+		}
+
+		public synchronized void clear()
 		{
-			if (pond.upstream() == null)
+			while (pulling)
 			{
-				return pond;
+				try
+				{
+					this.wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
 			}
-			else
+			close(source);
+			source = null;
+			cache.clear();
+			done = false;
+			overflow = false;
+		}
+
+		/**
+		 * Make sure the element at the given index has been cached, waiting
+		 * for another reader or pulling from the upstream if necessary.
+		 * 
+		 * @param index
+		 * @return false if there is no such element in the cache, because the
+		 *         upstream was exhausted or the limit was exceeded.
+		 * @throws Exception
+		 */
+		protected boolean fetch(int index) throws Exception
+		{
+			while (true)
 			{
-				Pond<D, D> p = new CachePond<D>(cache);
-				p.upstream(pond.upstream());
-				return p;
+				Pond<?, D> src = null;
+				int size = 0;
+
+				synchronized (this)
+				{
+					while (index >= cache.size() && !done && !overflow && pulling)
+					{
+						this.wait();
+					}
+					if (index < cache.size())
+					{
+						return true;
+					}
+					if (done || overflow)
+					{
+						return false;
+					}
+					pulling = true;
+					size = cache.size();
+				}
+
+				boolean has = false, over = false, pulled = false, failed = true;
+				D el = null;
+				try
+				{
+					if (source == null)
+					{
+						source = canal.build();
+					}
+					src = source;
+					if (has = src.hasNext())
+					{
+						if (limit >= 0 && size >= limit)
+						{
+							over = true;
+						}
+						else
+						{
+							el = src.next();
+							pulled = true;
+						}
+					}
+					failed = false;
+				}
+				finally
+				{
+					synchronized (this)
+					{
+						if (pulled)
+						{
+							cache.add(el);
+						}
+						else if (!failed)
+						{
+							if (over)
+							{
+								overflow = true;
+							}
+							else if (!has)
+							{
+								done = true;
+							}
+							close(source);
+							source = null;
+						}
+						pulling = false;
+						this.notifyAll();
+					}
+				}
 			}
 		}
+
+		protected synchronized D get(int index)
+		{
+			return cache.get(index);
+		}
+
+		protected synchronized boolean isOverflow()
+		{
+			return overflow;
+		}
+
+		@Override
+		public Source<D> newPond()
+		{
+			return new CachePond<D>(this);
+		}
 	}
 
-	protected static class CachePond<D> extends AbstractPond<D, D>
+	protected static class CachePond<D> extends Source<D>
 	{
-		protected final ArrayList<D>	cache;
+		protected final CacheOp<D>	cache;
 
-		protected int					index;
+		protected int				index;
 
-		public CachePond(ArrayList<D> cache)
+		private Pond<?, D>			rest;
+
+		public CachePond(CacheOp<D> cache)
 		{
 			this.cache = cache;
 		}
@@ -564,96 +944,469 @@ public class Canal<D> implements Iterable<D>
 			this.index = 0;
 		}
 
+		@Override
+		public void close() throws Exception
+		{
+			if (rest != null)
+			{
+				Canal.close(rest);
+				rest = null;
+			}
+		}
+
 		@Override
 		public boolean hasNext()
 		{
-			return index < cache.size() || upstream().hasNext();
+			if (rest != null)
+			{
+				return rest.hasNext();
+			}
+			try
+			{
+				if (cache.fetch(index))
+				{
+					return true;
+				}
+				else if (!cache.isOverflow())
+				{
+					return false;
+				}
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+
+			// Recompute the elements beyond the cached prefix
+			rest = cache.canal.build();
+			for (int i = 0; i < index && rest.hasNext(); i++)
+			{
+				rest.next();
+			}
+			return rest.hasNext();
 		}
 
 		@Override
 		public D next()
 		{
-			if (index < cache.size())
+			if (!hasNext())
 			{
-				return cache.get(index++);
+				throw new NoSuchElementException();
 			}
-			else
+			if (rest != null)
 			{
-				D next = upstream().next();
-				cache.add(next);
-				index++;
-				return next;
+				return rest.next();
 			}
+			return cache.get(index++);
 		}
 
 		@Override
-		public void upstream(Pond<?, D> up)
+		public boolean reset()
 		{
-			if (this.up == null)
+			try
+			{
+				this.close();
+			}
+			catch (Exception e)
 			{
-				this.up = up;
 			}
+			this.index = 0;
+			return true;
 		}
 	}
 
 	protected static class CartesianOp<A, B> implements Converter<A, Tuple2<A, B>>
 	{
-		protected final Canal<B> that;
+		protected final Canal<B>											that;
+
+		protected final StatefulMapper<? super A, ? super B, Boolean>	cond;
 
-		public CartesianOp(Canal<B> that)
+		protected final Spiller												spiller;
+
+		protected final int													parallelism;
+
+		private ExecutorService												pool;
+
+		public CartesianOp(Canal<B> that, StatefulMapper<? super A, ? super B, Boolean> cond, Spiller spiller,
+				int parallelism)
 		{
 			if (that == null)
 			{
 				throw new NullPointerException();
 			}
 			this.that = that;
+			this.cond = cond;
+			this.spiller = spiller;
+			this.parallelism = parallelism;
 		}
 
 		@Override
 		public Pond<A, Tuple2<A, B>> newPond()
 		{
-			return new CartesianPond<A, B>(that);
+			return new CartesianPond<A, B>(that, cond, spiller, parallelism, parallelism > 1 ? pool() : null);
+		}
+
+		protected synchronized ExecutorService pool()
+		{
+			if (pool == null)
+			{
+				pool = DaemonThreadFactory.newPool(parallelism);
+			}
+			return pool;
 		}
 	}
 
-	protected static class CartesianPond<A, B> extends Dam<A, B, Tuple2<A, B>>
+	/**
+	 * A block nested-loop over the upstream and the other Canal which is
+	 * materialised only once, or spilled into a local file beyond the memory
+	 * budget of the spiller. The upstream is read in blocks, each block is
+	 * matched against the whole inner side, so that the spilled part is read
+	 * once per block rather than once per element. The blocks could also be
+	 * matched in parallel, the results are passed in the order of the blocks.
+	 */
+	protected static class CartesianPond<A, B> extends Dam<A, B, Tuple2<A, B>> implements Retainer
 	{
-		private Pond<?, B>	there;
+		/**
+		 * The matched pairs of a block of outer elements against the inner
+		 * side. The part in memory is iterated for each outer element, while
+		 * the spilled part is read only once for the whole block.
+		 */
+		protected class Block implements Iterator<Tuple2<A, B>>
+		{
+			protected final List<A>			outer;
+
+			private int						i	= 0, j = 0;
+
+			private CloseableIterator<B>	spilled;
+
+			private B						right;
+
+			private Tuple2<A, B>			next;
+
+			public Block(List<A> outer)
+			{
+				this.outer = outer;
+			}
+
+			public void close()
+			{
+				if (spilled != null)
+				{
+					try
+					{
+						spilled.close();
+					}
+					catch (Exception e)
+					{
+					}
+				}
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				if (next != null)
+				{
+					return true;
+				}
+				try
+				{
+					A left = null;
+					while (i < outer.size())
+					{
+						if (j < inner.size())
+						{
+							left = outer.get(i);
+							B b = inner.get(j++);
+							if (match(left, b))
+							{
+								next = Tuple.of(left, b);
+								return true;
+							}
+						}
+						else
+						{
+							i++;
+							j = 0;
+						}
+					}
+
+					if (spill == null)
+					{
+						return false;
+					}
+					if (spilled == null)
+					{
+						spilled = spill.iterator();
+						j = outer.size();
+					}
+					while (true)
+					{
+						if (j < outer.size())
+						{
+							left = outer.get(j++);
+							if (match(left, right))
+							{
+								next = Tuple.of(left, right);
+								return true;
+							}
+						}
+						else if (spilled.hasNext())
+						{
+							right = spilled.next();
+							j = 0;
+						}
+						else
+						{
+							return false;
+						}
+					}
+				}
+				catch (RuntimeException e)
+				{
+					throw e;
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+
+			@Override
+			public Tuple2<A, B> next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				Tuple2<A, B> res = next;
+				next = null;
+				return res;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		}
+
+		protected final StatefulMapper<? super A, ? super B, Boolean>	cond;
+
+		protected final Spiller												spiller;
+
+		protected final int													parallelism;
+
+		protected final ExecutorService										pool;
+
+		private List<B>														inner;
+
+		private Canal.Spiller.Spill<B>											spill;
+
+		private int															blockSize;
 
-		private A			left;
+		private ExecutorService												executor;
 
-		public CartesianPond(Canal<B> that)
+		private LinkedList<Future<List<Tuple2<A, B>>>>						futures;
+
+		private Iterator<Tuple2<A, B>>										current;
+
+		public CartesianPond(Canal<B> that, StatefulMapper<? super A, ? super B, Boolean> cond, Spiller spiller,
+				int parallelism, ExecutorService pool)
 		{
 			super(that);
+			this.cond = cond;
+			this.spiller = spiller;
+			this.parallelism = parallelism;
+			this.pool = pool;
 		}
 
 		@Override
-		public void begin()
+		public void begin() throws Exception
+		{
+			inner = new ArrayList<B>();
+
+			Pond<?, B> there = that.build();
+			try
+			{
+				there.drain(new Sink<B>()
+				{
+					@Override
+					public boolean accept(B el) throws Exception
+					{
+						if (spiller == null || inner.size() < spiller.memory())
+						{
+							inner.add(el);
+						}
+						else
+						{
+							if (spill == null)
+							{
+								spill = spiller.newSpill();
+							}
+							spill.add(el);
+						}
+						return true;
+					}
+				});
+			}
+			finally
+			{
+				Canal.close(there);
+			}
+
+			if (spill != null)
+			{
+				spill.close();
+				blockSize = spiller.memory();
+			}
+			else if (parallelism > 1)
+			{
+				blockSize = Math.max(1, Math.min(PARALLEL_CHUNK, 65536 / Math.max(1, inner.size())));
+			}
+			else
+			{
+				blockSize = 1;
+			}
+
+			if (parallelism > 1)
+			{
+				executor = pool;
+				futures = new LinkedList<Future<List<Tuple2<A, B>>>>();
+			}
+		}
+
+		@Override
+		public void close() throws Exception
 		{
+			if (current instanceof CartesianPond.Block)
+			{
+				((Block) current).close();
+			}
+			if (executor != null)
+			{
+				for (Future<?> future : futures)
+				{
+					future.cancel(true);
+				}
+				executor = null;
+			}
+			if (spill != null)
+			{
+				spill.delete();
+				spill = null;
+			}
+			super.close();
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			while (there == null || !there.hasNext())
+			try
 			{
-				if (!upstream().hasNext())
+				while (current == null || !current.hasNext())
 				{
-					return false;
+					if (executor == null)
+					{
+						List<A> block = nextBlock();
+						if (block.isEmpty())
+						{
+							return false;
+						}
+						current = new Block(block);
+					}
+					else
+					{
+						while (futures.size() < parallelism * 2)
+						{
+							final List<A> block = nextBlock();
+							if (block.isEmpty())
+							{
+								break;
+							}
+							futures.add(executor.submit(new Callable<List<Tuple2<A, B>>>()
+							{
+								@Override
+								public List<Tuple2<A, B>> call() throws Exception
+								{
+									List<Tuple2<A, B>> res = new ArrayList<Tuple2<A, B>>();
+									Block iter = new Block(block);
+									try
+									{
+										while (iter.hasNext())
+										{
+											res.add(iter.next());
+										}
+									}
+									finally
+									{
+										iter.close();
+									}
+									return res;
+								}
+							}));
+						}
+						if (futures.isEmpty())
+						{
+							return false;
+						}
+						current = futures.removeFirst().get().iterator();
+					}
+				}
+				return true;
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				else if (cause instanceof Error)
+				{
+					throw (Error) cause;
 				}
 				else
 				{
-					left = upstream().next();
-					there = that.build();
+					throw new RuntimeException(cause);
 				}
 			}
-			return true;
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		protected boolean match(A left, B right) throws Exception
+		{
+			return cond == null || Boolean.TRUE.equals(cond.map(left, right));
 		}
 
 		@Override
 		public Tuple2<A, B> next()
 		{
-			return Tuple.of(left, there.next());
+			return current.next();
+		}
+
+		protected List<A> nextBlock()
+		{
+			List<A> block = new ArrayList<A>(Math.min(blockSize, 1024));
+			while (block.size() < blockSize && upstream().hasNext())
+			{
+				block.add(upstream().next());
+			}
+			return block;
+		}
+
+		@Override
+		public long retained()
+		{
+			return inner == null ? 0 : inner.size();
 		}
 	}
 
@@ -692,12 +1445,15 @@ public class Canal<D> implements Iterable<D>
 				{
 					try
 					{
-						E el = null;
-						while (upstream().hasNext())
+						upstream().drain(new Sink<E>()
 						{
-							el = upstream().next();
-							result.put(kop.map(el), vop.map(el));
-						}
+							@Override
+							public boolean accept(E el) throws Exception
+							{
+								result.put(kop.map(el), vop.map(el));
+								return true;
+							}
+						});
 					}
 					finally
 					{
@@ -743,9 +1499,35 @@ public class Canal<D> implements Iterable<D>
 				@Override
 				protected void settle()
 				{
-					while (upstream().hasNext())
+					try
 					{
-						sediment.add(upstream().next());
+						upstream().drain(new Sink<E>()
+						{
+							@Override
+							public boolean accept(E el)
+							{
+								sediment.add(el);
+								return true;
+							}
+						});
+					}
+					catch (RuntimeException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+					finally
+					{
+						try
+						{
+							this.end();
+						}
+						catch (Exception e)
+						{
+						}
 					}
 				}
 			};
@@ -778,19 +1560,23 @@ public class Canal<D> implements Iterable<D>
 				{
 					try
 					{
-						K key = null;
-						while (upstream().hasNext())
+						upstream().drain(new Sink<E>()
 						{
-							key = kop.map(upstream().next());
-							if (!result.containsKey(key))
-							{
-								result.put(key, 1);
-							}
-							else
+							@Override
+							public boolean accept(E el) throws Exception
 							{
-								result.put(key, result.get(key) + 1);
+								K key = kop.map(el);
+								if (!result.containsKey(key))
+								{
+									result.put(key, 1);
+								}
+								else
+								{
+									result.put(key, result.get(key) + 1);
+								}
+								return true;
 							}
-						}
+						});
 					}
 					finally
 					{
@@ -828,23 +1614,26 @@ public class Canal<D> implements Iterable<D>
 			return new AbstractTerminal<E, Map<E, Integer>>()
 			{
 				@Override
-				public void begin()
+				public void begin() throws Exception
 				{
 					try
 					{
-						E val = null;
-						while (upstream().hasNext())
+						upstream().drain(new Sink<E>()
 						{
-							val = upstream().next();
-							if (!result.containsKey(val))
-							{
-								result.put(val, 1);
-							}
-							else
+							@Override
+							public boolean accept(E val)
 							{
-								result.put(val, result.get(val) + 1);
+								if (!result.containsKey(val))
+								{
+									result.put(val, 1);
+								}
+								else
+								{
+									result.put(val, result.get(val) + 1);
+								}
+								return true;
 							}
-						}
+						});
 					}
 					finally
 					{
@@ -881,15 +1670,19 @@ public class Canal<D> implements Iterable<D>
 		protected long count = 0;
 
 		@Override
-		public void begin()
+		public void begin() throws Exception
 		{
 			try
 			{
-				while (upstream().hasNext())
+				upstream().drain(new Sink<E>()
 				{
-					upstream().next();
-					count++;
-				}
+					@Override
+					public boolean accept(E el)
+					{
+						count++;
+						return true;
+					}
+				});
 			}
 			finally
 			{
@@ -924,15 +1717,19 @@ public class Canal<D> implements Iterable<D>
 		protected int count = 0;
 
 		@Override
-		public void begin()
+		public void begin() throws Exception
 		{
 			try
 			{
-				while (upstream().hasNext())
+				upstream().drain(new Sink<E>()
 				{
-					upstream().next();
-					count++;
-				}
+					@Override
+					public boolean accept(E el)
+					{
+						count++;
+						return true;
+					}
+				});
 			}
 			finally
 			{
@@ -967,6 +1764,33 @@ public class Canal<D> implements Iterable<D>
 		}
 	}
 
+	protected static class DaemonThreadFactory implements ThreadFactory
+	{
+		/**
+		 * Create a fixed pool of daemon threads which would be released after
+		 * being idle for a while, so that the pool could be kept and reused
+		 * without being shutdown.
+		 * 
+		 * @param threads
+		 * @return
+		 */
+		public static ExecutorService newPool(int threads)
+		{
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+			pool.allowCoreThreadTimeOut(true);
+			return pool;
+		}
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	protected static abstract class Dam<A, B, C> extends AbstractPond<A, C>
 	{
 		protected final Canal<B> that;
@@ -1022,6 +1846,78 @@ public class Canal<D> implements Iterable<D>
 		}
 	}
 
+	/**
+	 * Remove duplicate elements approximately with a Bloom filter whose memory
+	 * is fixed by the expected number of distinct elements and the false
+	 * positive probability. A false positive drops an element which was never
+	 * seen before, a duplicate will never be passed.
+	 */
+	protected static class DistinctApproxOp<E> extends DistinctOp<E>
+	{
+		protected final long	expected;
+
+		protected final double	fpp;
+
+		public DistinctApproxOp(HashedEquality<? super E> eql, long expected, double fpp)
+		{
+			super(eql);
+			if (expected <= 0)
+			{
+				throw new IllegalArgumentException("Expected number must be positive: " + expected);
+			}
+			if (!(fpp > 0 && fpp < 1))
+			{
+				throw new IllegalArgumentException("False positive probability must be in (0,1): " + fpp);
+			}
+			this.expected = expected;
+			this.fpp = fpp;
+		}
+
+		@Override
+		protected Filter<E> newSeen()
+		{
+			long m = (long) Math.ceil(-expected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+			final long bits = Math.max(64, Math.min(m, (long) Integer.MAX_VALUE * 64));
+			final int hashes = Math.max(1, (int) Math.round((double) bits / expected * Math.log(2)));
+			final long[] words = new long[(int) ((bits + 63) / 64)];
+
+			return new Filter<E>()
+			{
+				@Override
+				public boolean filter(E el)
+				{
+					long h = hash(el);
+					int h1 = (int) h, h2 = (int) (h >>> 32);
+					boolean fresh = false;
+					for (int i = 0; i < hashes; i++)
+					{
+						long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bits;
+						int idx = (int) (bit >>> 6);
+						long mask = 1L << bit;
+						if ((words[idx] & mask) == 0)
+						{
+							words[idx] |= mask;
+							fresh = true;
+						}
+					}
+					return fresh;
+				}
+			};
+		}
+
+		protected long hash(E el)
+		{
+			long h = el == null ? 0 : (eql != null ? eql.hashCode(el) : el.hashCode());
+			h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+			h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+			return h ^ (h >>> 33);
+		}
+	}
+
+	/**
+	 * Remove duplicate elements while streaming. Each element is passed as
+	 * soon as it was seen at the first time.
+	 */
 	protected static class DistinctOp<E> implements Converter<E, E>
 	{
 		protected final HashedEquality<? super E> eql;
@@ -1034,214 +1930,287 @@ public class Canal<D> implements Iterable<D>
 		@Override
 		public Pond<E, E> newPond()
 		{
-			return new Heaper<E>()
+			return new Creek<E, E>()
 			{
+				private final Filter<E>	seen	= newSeen();
+
+				private E				next;
+
 				@Override
-				protected Collection<E> newSediment()
+				public void drain(final Sink<? super E> sink) throws Exception
+				{
+					upstream().drain(new Sink<E>()
+					{
+						@Override
+						public boolean accept(E el) throws Exception
+						{
+							return !seen.filter(el) || sink.accept(el);
+						}
+					});
+				}
+
+				@Override
+				public boolean hasNext()
 				{
-					if (eql != null)
+					try
+					{
+						while (upstream().hasNext())
+						{
+							next = upstream().next();
+							if (seen.filter(next))
+							{
+								return true;
+							}
+						}
+						return false;
+					}
+					catch (RuntimeException e)
 					{
-						return new WrappedLinkedHashSet<E>(eql);
+						throw e;
 					}
-					else
+					catch (Exception e)
 					{
-						return new LinkedHashSet<E>();
+						throw new RuntimeException(e);
 					}
 				}
 
 				@Override
-				protected void settle()
+				public E next()
 				{
-					while (upstream().hasNext())
-					{
-						sediment.add(upstream().next());
-					}
+					return next;
 				}
 			};
 		}
-	}
-
-	protected static class EmptySource<E> extends Source<E>
-	{
-		@Override
-		public boolean hasNext()
-		{
-			return false;
-		}
-
-		@Override
-		public E next()
-		{
-			throw new UnsupportedOperationException();
-		}
-	}
 
-	protected static class EmptySourcer<E> implements Sourcer<E>
-	{
-		@Override
-		public Source<E> newPond()
+		/**
+		 * Create a filter which tells whether an element was seen at the first
+		 * time.
+		 * 
+		 * @return
+		 */
+		protected Filter<E> newSeen()
 		{
-			return new EmptySource<E>();
+			final Set<E> seen = eql != null ? new WrappedHashSet<E>(eql) : new HashSet<E>();
+			return new Filter<E>()
+			{
+				@Override
+				public boolean filter(E el)
+				{
+					return seen.add(el);
+				}
+			};
 		}
 	}
 
-	public static class EnumerationIterator<E> implements Iterator<E>
+	/**
+	 * Remove duplicate elements within a window of the most recently seen
+	 * elements. The least recently seen element would be forgotten once the
+	 * window was full, so that the memory is bounded by the window size.
+	 */
+	protected static class DistinctWindowOp<E> extends DistinctOp<E>
 	{
-		protected final Enumeration<E> enumer;
+		protected final int window;
 
-		public EnumerationIterator(Enumeration<E> enumer)
+		public DistinctWindowOp(HashedEquality<? super E> eql, int window)
 		{
-			if (enumer == null)
+			super(eql);
+			if (window <= 0)
 			{
-				throw new NullPointerException();
+				throw new IllegalArgumentException("Window size must be positive: " + window);
 			}
-			this.enumer = enumer;
+			this.window = window;
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
-		public boolean hasNext()
+		protected Filter<E> newSeen()
 		{
-			return enumer.hasMoreElements();
-		}
+			final Map<E, Boolean> seen;
+			if (eql != null)
+			{
+				seen = new WrappedHashMap<E, Boolean>((HashedEquality<E>) eql)
+				{
+					private static final long serialVersionUID = 1L;
 
-		@Override
-		public E next()
-		{
-			return enumer.nextElement();
-		}
+					@Override
+					protected HashMap<Wrapper, Boolean> newHashMap(int initialCapacity, float loadFactor)
+					{
+						return new LinkedHashMap<Wrapper, Boolean>(initialCapacity, loadFactor, true)
+						{
+							private static final long serialVersionUID = 1L;
 
-		@Override
-		public void remove()
-		{
-			throw new UnsupportedOperationException();
-		}
-	}
+							@Override
+							protected boolean removeEldestEntry(Entry<Wrapper, Boolean> eldest)
+							{
+								return size() > window;
+							}
+						};
+					}
+				};
+			}
+			else
+			{
+				seen = new LinkedHashMap<E, Boolean>(16, 0.75f, true)
+				{
+					private static final long serialVersionUID = 1L;
 
-	protected static interface Evaluator<E, T> extends Operator<E, E>
-	{
-		@Override
-		Terminal<E, T> newPond();
+					@Override
+					protected boolean removeEldestEntry(Entry<E, Boolean> eldest)
+					{
+						return size() > window;
+					}
+				};
+			}
+			return new Filter<E>()
+			{
+				@Override
+				public boolean filter(E el)
+				{
+					return seen.put(el, Boolean.TRUE) == null;
+				}
+			};
+		}
 	}
 
-	public static abstract class Expr<I, O extends Comparable<O>> implements Mapper<I, O>
+	/**
+	 * A Canal of primitive double values. The methods declared here pass the
+	 * values through without boxing, while the inherited methods see each
+	 * value as Double.
+	 */
+	public static class DoubleCanal extends Canal<Double>
 	{
-		private Boolean	asc			= null;
-
-		private Boolean	nullsLast	= null;
-
-		public Expr<I, O> asc()
-		{
-			this.asc = true;
-			return this;
-		}
-
-		public Expr<I, O> desc()
-		{
-			this.asc = false;
-			return this;
-		}
-
-		public int getFactor()
-		{
-			return isAscend() ? 1 : -1;
-		}
-
-		public boolean isAscend()
-		{
-			return asc == null || asc == true;
-		}
-
-		public boolean isNullsLast()
-		{
-			return nullsLast != null ? nullsLast : this.isAscend();
-		}
-
-		public Expr<I, O> nullsFirst()
-		{
-			this.nullsLast = false;
-			return this;
-		}
-
-		public Expr<I, O> nullsLast()
+		protected DoubleCanal(DoubleSourcer sourcer)
 		{
-			this.nullsLast = true;
-			return this;
+			this.setOperator(sourcer);
 		}
-	}
-
-	protected static class ExprComparator<I, O extends Comparable<O>> implements Comparator<I>
-	{
-		protected final Expr<I, O> expr;
 
-		public ExprComparator(Expr<I, O> expr)
+		/**
+		 * Get the average of the values.
+		 * 
+		 * @return the average or none if this Canal was empty.
+		 */
+		public Option<Double> average()
 		{
-			this.expr = expr;
+			DoubleSource src = this.open();
+			try
+			{
+				double sum = 0;
+				long count = 0;
+				while (src.hasNext())
+				{
+					sum += src.nextDouble();
+					count++;
+				}
+				return count == 0 ? Option.<Double> none() : Option.some((double) sum / count);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@SuppressWarnings("unchecked")
 		@Override
-		public int compare(I o1, I o2)
+		public int count()
 		{
+			DoubleSource src = this.open();
 			try
 			{
-				Comparable<O> a = expr.map(o1), b = expr.map(o2);
-
-				if (a == b)
-				{
-					return 0;
-				}
-				else if (a == null)
+				int count = 0;
+				while (src.hasNext())
 				{
-					return expr.isNullsLast() ? 1 : -1;
-				}
-				else if (b == null)
-				{
-					return expr.isNullsLast() ? -1 : 1;
-				}
-				else
-				{
-					return a.compareTo((O) b) * expr.getFactor();
+					src.nextDouble();
+					count++;
 				}
+				return count;
 			}
-			catch (RuntimeException e)
+			finally
 			{
-				throw e;
-			}
-			catch (Exception e)
-			{
-				throw new RuntimeException(e);
+				close(src);
 			}
 		}
-	}
-
-	public static class Failure<E> implements Try<E>
-	{
-		public final Throwable cause;
 
-		public Failure(Throwable cause)
+		public DoubleCanal filterDouble(final DoubleFilter filter)
 		{
-			this.cause = cause;
-		}
+			if (filter == null)
+			{
+				throw new NullPointerException();
+			}
+			return new DoubleCanal(new DoubleSourcer()
+			{
+				@Override
+				public DoubleSource newPond()
+				{
+					final DoubleSource up = DoubleCanal.this.newSource();
+					return new DoubleSource()
+					{
+						private boolean	ready;
 
-		@Override
-		public Try<E> filter(Filter<? super E> pred)
-		{
-			return this;
-		}
+						private double	el;
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public <D> Try<D> flatMap(Mapper<? super E, ? extends Try<D>> mapper)
-		{
-			return (Try<D>) this;
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
+
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
+
+						@Override
+						public boolean hasNext()
+						{
+							try
+							{
+								while (!ready && up.hasNext())
+								{
+									el = up.nextDouble();
+									ready = filter.filter(el);
+								}
+								return ready;
+							}
+							catch (RuntimeException e)
+							{
+								throw e;
+							}
+							catch (Exception e)
+							{
+								throw new RuntimeException(e);
+							}
+						}
+
+						@Override
+						public double nextDouble()
+						{
+							if (!this.hasNext())
+							{
+								throw new NoSuchElementException();
+							}
+							ready = false;
+							return el;
+						}
+					};
+				}
+			});
 		}
 
-		@Override
-		public <D> D fold(Mapper<Throwable, ? extends D> mapFail, Mapper<? super E, ? extends D> mapSucc)
+		public double foldDouble(double init, DoubleReducer folder)
 		{
+			if (folder == null)
+			{
+				throw new NullPointerException();
+			}
+			DoubleSource src = this.open();
 			try
 			{
-				return mapFail.map(cause);
+				double res = init;
+				while (src.hasNext())
+				{
+					res = folder.reduce(res, src.nextDouble());
+				}
+				return res;
 			}
 			catch (RuntimeException e)
 			{
@@ -1251,704 +2220,819 @@ public class Canal<D> implements Iterable<D>
 			{
 				throw new RuntimeException(e);
 			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public void foreach(Action<? super E> action)
-		{
-		}
-
-		@Override
-		public E get() throws Exception
+		/**
+		 * Count the values into {@code bins} buckets of equal width between
+		 * {@code min} (inclusive) and {@code max} (exclusive). Values out of
+		 * the range are ignored.
+		 * 
+		 * @param min
+		 * @param max
+		 * @param bins
+		 * @return the count of each bucket.
+		 */
+		public long[] histogram(double min, double max, int bins)
 		{
-			if (cause instanceof RuntimeException)
+			if (bins < 1 || !(min < max))
 			{
-				throw (RuntimeException) cause;
+				throw new IllegalArgumentException();
 			}
-			else if (cause instanceof Exception)
+			long[] counts = new long[bins];
+			double width = max - min;
+			DoubleSource src = this.open();
+			try
 			{
-				throw (Exception) cause;
+				double el = 0;
+				int bin = 0;
+				while (src.hasNext())
+				{
+					el = src.nextDouble();
+					if (min <= el && el < max)
+					{
+						bin = (int) ((el - min) / width * bins);
+						counts[bin < bins ? bin : bins - 1]++;
+					}
+				}
+				return counts;
 			}
-			else
+			finally
 			{
-				throw new RuntimeException(cause);
+				close(src);
 			}
 		}
 
-		@Override
-		public E get(Producer<Exception> raiser) throws Exception
+		public DoubleCanal mapDouble(final DoubleMapper mapper)
 		{
-			if (raiser != null)
+			if (mapper == null)
 			{
-				Exception ex = null;
-				try
-				{
-					ex = raiser.produce();
-				}
-				catch (Exception e)
-				{
-					e.printStackTrace();
-				}
-				if (ex != null)
-				{
-					throw ex;
-				}
+				throw new NullPointerException();
 			}
-			return this.get();
-		}
+			return new DoubleCanal(new DoubleSourcer()
+			{
+				@Override
+				public DoubleSource newPond()
+				{
+					final DoubleSource up = DoubleCanal.this.newSource();
+					return new DoubleSource()
+					{
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
 
-		@Override
-		public boolean isFailure()
-		{
-			return true;
-		}
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
 
-		@Override
-		public boolean isSuccess()
-		{
-			return false;
-		}
+						@Override
+						public boolean hasNext()
+						{
+							return up.hasNext();
+						}
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public <D> Try<D> map(Mapper<? super E, ? extends D> mapper)
-		{
-			return (Try<D>) this;
+						@Override
+						public double nextDouble()
+						{
+							try
+							{
+								return mapper.map(up.nextDouble());
+							}
+							catch (RuntimeException e)
+							{
+								throw e;
+							}
+							catch (Exception e)
+							{
+								throw new RuntimeException(e);
+							}
+						}
+					};
+				}
+			});
 		}
 
-		@Override
-		public E or(E deft)
+		public Option<Double> max()
 		{
-			return deft;
+			DoubleSource src = this.open();
+			try
+			{
+				if (!src.hasNext())
+				{
+					return Option.none();
+				}
+				double max = src.nextDouble(), el = 0;
+				while (src.hasNext())
+				{
+					if ((el = src.nextDouble()) > max)
+					{
+						max = el;
+					}
+				}
+				return Option.some(max);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public E or(Producer<? extends E> deft)
+		public Option<Double> min()
 		{
+			DoubleSource src = this.open();
 			try
 			{
-				return deft.produce();
-			}
-			catch (RuntimeException e)
-			{
-				throw e;
+				if (!src.hasNext())
+				{
+					return Option.none();
+				}
+				double min = src.nextDouble(), el = 0;
+				while (src.hasNext())
+				{
+					if ((el = src.nextDouble()) < min)
+					{
+						min = el;
+					}
+				}
+				return Option.some(min);
 			}
-			catch (Exception e)
+			finally
 			{
-				throw new RuntimeException(e);
+				close(src);
 			}
 		}
 
-		@Override
-		public Try<E> orElse(Producer<? extends Try<E>> deft)
+		protected DoubleSource newSource()
+		{
+			return ((DoubleSourcer) this.getOperator()).newPond();
+		}
+
+		/**
+		 * Create and begin a new source of this Canal.
+		 * 
+		 * @return
+		 */
+		protected DoubleSource open()
 		{
+			DoubleSource src = this.newSource();
 			try
 			{
-				return deft.produce();
+				src.begin();
+				return src;
 			}
 			catch (RuntimeException e)
 			{
+				close(src);
 				throw e;
 			}
 			catch (Exception e)
 			{
+				close(src);
 				throw new RuntimeException(e);
 			}
 		}
 
-		@Override
-		public Try<E> orElse(Try<E> deft)
-		{
-			return deft;
-		}
-
-		@Override
-		public Try<E> recover(final Mapper<Throwable, ? extends E> recover)
+		/**
+		 * Get the sum of the values.
+		 * 
+		 * @return
+		 */
+		public double sum()
 		{
+			DoubleSource src = this.open();
 			try
 			{
-				return new Success<E>(recover.map(cause));
+				double sum = 0;
+				while (src.hasNext())
+				{
+					sum += src.nextDouble();
+				}
+				return sum;
 			}
-			catch (Throwable e)
+			finally
 			{
-				return new Failure<E>(e);
+				close(src);
 			}
 		}
 
-		@Override
-		public Try<E> recoverWith(Mapper<Throwable, ? extends Try<E>> recover)
+		public double[] toArray()
 		{
+			DoubleSource src = this.open();
 			try
 			{
-				return recover.map(cause);
+				double[] array = new double[16];
+				int size = 0;
+				while (src.hasNext())
+				{
+					if (size == array.length)
+					{
+						array = Arrays.copyOf(array, size << 1);
+					}
+					array[size++] = src.nextDouble();
+				}
+				return size == array.length ? array : Arrays.copyOf(array, size);
 			}
-			catch (Throwable e)
+			finally
 			{
-				return new Failure<E>(e);
+				close(src);
 			}
 		}
+	}
 
-		@Override
-		public Option<E> toOption()
-		{
-			return Option.none();
-		}
+	public static interface DoubleFilter
+	{
+		public boolean filter(double el) throws Exception;
+	}
+
+	public static interface DoubleMapper
+	{
+		public double map(double el) throws Exception;
+	}
+
+	public static interface DoubleReducer
+	{
+		public double reduce(double res, double el) throws Exception;
+	}
 
+	/**
+	 * The source of primitive double values, {@link #next()} would box the
+	 * value returned by {@link #nextDouble()}.
+	 */
+	protected static abstract class DoubleSource extends Source<Double>
+	{
 		@Override
-		public <D> Try<D> transform(Mapper<? super E, ? extends Try<D>> mapSucc,
-				Mapper<Throwable, ? extends Try<D>> mapFail)
+		public Double next()
 		{
-			try
-			{
-				return mapFail.map(cause);
-			}
-			catch (RuntimeException e)
-			{
-				throw e;
-			}
-			catch (Exception e)
-			{
-				throw new RuntimeException(e);
-			}
+			return this.nextDouble();
 		}
+
+		public abstract double nextDouble();
 	}
 
-	protected static class FilterOp<E> implements Converter<E, E>
+	protected static interface DoubleSourcer extends Sourcer<Double>
 	{
-		protected final Filter<? super E> filter;
+		@Override
+		public DoubleSource newPond();
+	}
 
-		protected FilterOp(Filter<? super E> filter)
+	protected static class EmptySource<E> extends Source<E>
+	{
+		@Override
+		public boolean hasNext()
 		{
-			if (filter == null)
+			return false;
+		}
+
+		@Override
+		public E next()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	protected static class EmptySourcer<E> implements Sourcer<E>
+	{
+		@Override
+		public Source<E> newPond()
+		{
+			return new EmptySource<E>();
+		}
+	}
+
+	public static class EnumerationIterator<E> implements Iterator<E>
+	{
+		protected final Enumeration<E> enumer;
+
+		public EnumerationIterator(Enumeration<E> enumer)
+		{
+			if (enumer == null)
 			{
 				throw new NullPointerException();
 			}
-			this.filter = filter;
+			this.enumer = enumer;
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		public boolean hasNext()
 		{
-			return new Creek<E, E>()
+			return enumer.hasMoreElements();
+		}
+
+		@Override
+		public E next()
+		{
+			return enumer.nextElement();
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	protected static interface Evaluator<E, T> extends Operator<E, E>
+	{
+		@Override
+		Terminal<E, T> newPond();
+	}
+
+	public static abstract class Expr<I, O extends Comparable<O>> implements Mapper<I, O>
+	{
+		private Boolean	asc			= null;
+
+		private Boolean	nullsLast	= null;
+
+		public Expr<I, O> asc()
+		{
+			this.asc = true;
+			return this;
+		}
+
+		public Expr<I, O> desc()
+		{
+			this.asc = false;
+			return this;
+		}
+
+		public int getFactor()
+		{
+			return isAscend() ? 1 : -1;
+		}
+
+		public boolean isAscend()
+		{
+			return asc == null || asc == true;
+		}
+
+		public boolean isNullsLast()
+		{
+			return nullsLast != null ? nullsLast : this.isAscend();
+		}
+
+		/**
+		 * The key which identifies what this Expr extracts, such as a column
+		 * name or an index. Null means this Expr only has the same spec as
+		 * itself.
+		 * 
+		 * @return
+		 */
+		protected Object key()
+		{
+			return null;
+		}
+
+		public Expr<I, O> nullsFirst()
+		{
+			this.nullsLast = false;
+			return this;
+		}
+
+		public Expr<I, O> nullsLast()
+		{
+			this.nullsLast = true;
+			return this;
+		}
+
+		/**
+		 * Whether this Expr is of the same class, extracts the same non-null
+		 * key and has the same ordering as the given one currently.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		private boolean sameSpec(Expr<?, ?> that)
+		{
+			if (this == that)
 			{
-				private E next;
+				return true;
+			}
+			if (that == null || this.getClass() != that.getClass() || this.key() == null)
+			{
+				return false;
+			}
+			return Tools.equals(this.key(), that.key()) && this.isAscend() == that.isAscend()
+					&& this.isNullsLast() == that.isNullsLast();
+		}
+	}
 
-				@Override
-				public boolean hasNext()
+	protected static class ExprComparator<I, O extends Comparable<O>> implements Comparator<I>
+	{
+		protected final Expr<I, O> expr;
+
+		public ExprComparator(Expr<I, O> expr)
+		{
+			this.expr = expr;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public int compare(I o1, I o2)
+		{
+			try
+			{
+				Comparable<O> a = expr.map(o1), b = expr.map(o2);
+
+				if (a == b)
 				{
-					try
-					{
-						while (upstream().hasNext())
-						{
-							next = upstream().next();
-							if (filter.filter(next))
-							{
-								return true;
-							}
-						}
-						return false;
-					}
-					catch (RuntimeException e)
-					{
-						throw e;
-					}
-					catch (Exception e)
-					{
-						throw new RuntimeException(e);
-					}
+					return 0;
 				}
-
-				@Override
-				public E next()
+				else if (a == null)
 				{
-					return next;
+					return expr.isNullsLast() ? 1 : -1;
 				}
-			};
+				else if (b == null)
+				{
+					return expr.isNullsLast() ? -1 : 1;
+				}
+				else
+				{
+					return a.compareTo((O) b) * expr.getFactor();
+				}
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
-	protected static class FirstOp<E> implements Evaluator<E, Option<E>>
+	/**
+	 * Sort the elements into runs which are spilled into local files if the
+	 * number of elements exceeds the memory budget, then merge the runs
+	 * lazily.
+	 */
+	protected static class ExternalSortOp<E> implements Converter<E, E>
 	{
-		protected final Filter<? super E> filter;
+		protected static class Head<E>
+		{
+			protected final int			run;
 
-		public FirstOp(Filter<? super E> filter)
+			protected final Iterator<E>	iter;
+
+			protected E					el;
+
+			public Head(int run, Iterator<E> iter)
+			{
+				this.run = run;
+				this.iter = iter;
+				this.el = iter.next();
+			}
+		}
+
+		protected final Comparator<? super E>	cmp;
+
+		protected final Spiller					spiller;
+
+		public ExternalSortOp(Comparator<? super E> cmp, Spiller spiller)
 		{
-			if (filter == null)
+			if (spiller == null)
 			{
 				throw new NullPointerException();
 			}
-			this.filter = filter;
+			if (cmp != null)
+			{
+				this.cmp = cmp;
+			}
+			else
+			{
+				this.cmp = new DefaultComparator<E>();
+			}
+			this.spiller = spiller;
 		}
 
 		@Override
-		public Terminal<E, Option<E>> newPond()
+		public Pond<E, E> newPond()
 		{
-			return new AbstractTerminal<E, Option<E>>()
+			return new AbstractPond<E, E>()
 			{
-				private boolean	found	= false;
+				private final List<Canal.Spiller.Spill<E>>	runs	= new ArrayList<Canal.Spiller.Spill<E>>();
 
-				private E		result;
+				private final List<Closeable>			iters	= new ArrayList<Closeable>();
+
+				private Iterator<E>						iter;
+
+				private PriorityQueue<Head<E>>			heap;
 
 				@Override
 				public void begin() throws Exception
 				{
-					try
+					List<E> buffer = new ArrayList<E>();
+
+					while (upstream().hasNext())
 					{
-						while (upstream().hasNext())
+						buffer.add(upstream().next());
+						if (buffer.size() >= spiller.memory())
 						{
-							if (filter.filter(result = upstream().next()))
-							{
-								found = true;
-								break;
-							}
+							Collections.sort(buffer, cmp);
+							runs.add(spiller.spill(buffer));
+							buffer = new ArrayList<E>();
 						}
 					}
-					finally
+
+					Collections.sort(buffer, cmp);
+
+					if (runs.isEmpty())
 					{
-						try
+						iter = buffer.iterator();
+						return;
+					}
+
+					heap = new PriorityQueue<Head<E>>(runs.size() + 1, new Comparator<Head<E>>()
+					{
+						@Override
+						public int compare(Head<E> a, Head<E> b)
 						{
-							this.end();
+							int c = cmp.compare(a.el, b.el);
+							return c != 0 ? c : (a.run < b.run ? -1 : (a.run == b.run ? 0 : 1));
 						}
-						catch (Exception e)
+					});
+
+					CloseableIterator<E> it = null;
+					for (int i = 0; i < runs.size(); i++)
+					{
+						it = runs.get(i).iterator();
+						iters.add(it);
+						if (it.hasNext())
 						{
+							heap.add(new Head<E>(i, it));
 						}
 					}
+
+					// The last run is kept in memory
+					if (!buffer.isEmpty())
+					{
+						heap.add(new Head<E>(runs.size(), buffer.iterator()));
+					}
 				}
 
 				@Override
-				public Option<E> get()
+				public void close() throws Exception
 				{
-					return found ? Canal.some(result) : Canal.<E> none();
-				}
-			};
-		}
-	}
-
-	protected static class FlatMapOp<I, O> implements Converter<I, O>
-	{
-		protected final Mapper<? super I, ? extends Iterable<? extends O>> mapper;
-
-		public FlatMapOp(Mapper<? super I, ? extends Iterable<? extends O>> mapper)
-		{
-			if (mapper == null)
-			{
-				throw new NullPointerException();
-			}
-			this.mapper = mapper;
-		}
-
-		@Override
-		public Pond<I, O> newPond()
-		{
-			return new Creek<I, O>()
-			{
-				private Iterator<? extends O> iter;
-
-				@Override
-				public boolean hasNext()
-				{
-					if (iter != null && iter.hasNext())
-					{
-						return true;
-					}
 					try
 					{
-						while (upstream().hasNext())
+						for (Closeable it : iters)
 						{
-							iter = mapper.map(upstream().next()).iterator();
-							if (iter.hasNext())
+							try
+							{
+								it.close();
+							}
+							catch (Exception e)
 							{
-								return true;
 							}
 						}
-						return false;
-					}
-					catch (RuntimeException e)
-					{
-						throw e;
+						for (Canal.Spiller.Spill<E> run : runs)
+						{
+							run.delete();
+						}
+						iters.clear();
+						runs.clear();
 					}
-					catch (Exception e)
+					finally
 					{
-						throw new RuntimeException(e);
+						super.close();
 					}
 				}
 
 				@Override
-				public O next()
+				public boolean hasNext()
 				{
-					return iter.next();
+					return iter != null ? iter.hasNext() : !heap.isEmpty();
 				}
-			};
-		}
-	}
-
-	protected static class FoldOp<E, R> implements Evaluator<E, R>
-	{
-		private R						result;
-
-		protected final Reducer<E, R>	folder;
-
-		public FoldOp(R init, Reducer<E, R> folder)
-		{
-			if (folder == null)
-			{
-				throw new NullPointerException();
-			}
-			this.result = init;
-			this.folder = folder;
-		}
 
-		@Override
-		public Terminal<E, R> newPond()
-		{
-			return new AbstractTerminal<E, R>()
-			{
 				@Override
-				public void begin() throws Exception
+				public E next()
 				{
-					try
+					if (iter != null)
 					{
-						while (upstream().hasNext())
-						{
-							result = folder.reduce(result, upstream().next());
-						}
+						return iter.next();
 					}
-					finally
+
+					Head<E> head = heap.poll();
+					if (head == null)
 					{
-						try
-						{
-							this.end();
-						}
-						catch (Exception e)
+						throw new NoSuchElementException();
+					}
+
+					E el = head.el;
+					if (head.iter.hasNext())
+					{
+						head.el = head.iter.next();
+						heap.add(head);
+					}
+					else
+					{
+						head.el = null;
+						if (head.run < runs.size())
 						{
+							// Drop the exhausted run as early as possible
+							runs.get(head.run).delete();
 						}
 					}
-				}
-
-				@Override
-				public R get()
-				{
-					return result;
+					return el;
 				}
 			};
 		}
 	}
 
-	protected static class FoldUntilOp<E, R> implements Evaluator<E, Option<R>>
+	public static class Failure<E> implements Try<E>
 	{
-		protected final Producer<R>		init;
+		public final Throwable cause;
 
-		protected final Reducer<E, R>	folder;
+		public Failure(Throwable cause)
+		{
+			this.cause = cause;
+		}
 
-		protected final Filter<R>		until;
+		@Override
+		public Try<E> filter(Filter<? super E> pred)
+		{
+			return this;
+		}
 
-		private R						result;
+		@SuppressWarnings("unchecked")
+		@Override
+		public <D> Try<D> flatMap(Mapper<? super E, ? extends Try<D>> mapper)
+		{
+			return (Try<D>) this;
+		}
 
-		public FoldUntilOp(Producer<R> init, Reducer<E, R> folder, Filter<R> until)
+		@Override
+		public <D> D fold(Mapper<Throwable, ? extends D> mapFail, Mapper<? super E, ? extends D> mapSucc)
 		{
-			if (init == null || folder == null)
+			try
 			{
-				throw new NullPointerException();
+				return mapFail.map(cause);
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
 			}
-			this.init = init;
-			this.folder = folder;
-			this.until = until;
 		}
 
 		@Override
-		public Terminal<E, Option<R>> newPond()
+		public void foreach(Action<? super E> action)
 		{
-			return new AbstractTerminal<E, Option<R>>()
-			{
-				private boolean	empty	= true;
+		}
 
-				private boolean	meet	= false;
+		@Override
+		public E get() throws Exception
+		{
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			else if (cause instanceof Exception)
+			{
+				throw (Exception) cause;
+			}
+			else
+			{
+				throw new RuntimeException(cause);
+			}
+		}
 
-				@Override
-				public void begin() throws Exception
+		@Override
+		public E get(Producer<Exception> raiser) throws Exception
+		{
+			if (raiser != null)
+			{
+				Exception ex = null;
+				try
 				{
-					try
-					{
-						meet = until == null;
-						while (upstream().hasNext())
-						{
-							if (empty)
-							{
-								empty = false;
-								result = init.produce();
-							}
-							result = folder.reduce(result, upstream().next());
-							if (until != null && until.filter(result))
-							{
-								meet = true;
-								break;
-							}
-						}
-					}
-					finally
-					{
-						try
-						{
-							this.end();
-						}
-						catch (Exception e)
-						{
-						}
-					}
+					ex = raiser.produce();
 				}
-
-				@Override
-				public Option<R> get()
+				catch (Exception e)
 				{
-					return meet && !empty ? Canal.some(result) : Canal.<R> none();
+					e.printStackTrace();
 				}
-			};
+				if (ex != null)
+				{
+					throw ex;
+				}
+			}
+			return this.get();
 		}
-	}
 
-	protected static class ForallOp<E> implements Evaluator<E, Boolean>
-	{
-		protected final Filter<? super E>	cond;
-
-		protected final boolean				allowEmpty;
-
-		public ForallOp(Filter<? super E> cond, boolean allowEmpty)
+		@Override
+		public boolean isFailure()
 		{
-			if (cond == null)
-			{
-				throw new NullPointerException();
-			}
-			this.cond = cond;
-			this.allowEmpty = allowEmpty;
+			return true;
 		}
 
 		@Override
-		public Terminal<E, Boolean> newPond()
+		public boolean isSuccess()
 		{
-			return new ForallPond<E>(cond, allowEmpty);
+			return false;
 		}
-	}
-
-	protected static class ForallPond<E> extends AbstractTerminal<E, Boolean>
-	{
-		protected final Filter<? super E>	cond;
-
-		protected final boolean				allowEmpty;
 
-		protected boolean					meet	= false;
+		@SuppressWarnings("unchecked")
+		@Override
+		public <D> Try<D> map(Mapper<? super E, ? extends D> mapper)
+		{
+			return (Try<D>) this;
+		}
 
-		public ForallPond(Filter<? super E> cond, boolean allowEmpty)
+		@Override
+		public E or(E deft)
 		{
-			this.cond = cond;
-			this.allowEmpty = allowEmpty;
+			return deft;
 		}
 
 		@Override
-		public void begin() throws Exception
+		public E or(Producer<? extends E> deft)
 		{
 			try
 			{
-				if (allowEmpty)
-				{
-					while (upstream().hasNext())
-					{
-						if (!cond.filter(upstream().next()))
-						{
-							return;
-						}
-					}
-				}
-				else
-				{
-					boolean empty = true;
-					while (upstream().hasNext())
-					{
-						empty = false;
-						if (!cond.filter(upstream().next()))
-						{
-							return;
-						}
-					}
-					if (empty)
-					{
-						return;
-					}
-				}
-				meet = true;
+				return deft.produce();
 			}
-			finally
+			catch (RuntimeException e)
 			{
-				try
-				{
-					this.end();
-				}
-				catch (Exception e)
-				{
-				}
+				throw e;
 			}
-		}
-
-		@Override
-		public Boolean get()
-		{
-			return meet;
-		}
-	}
-
-	protected static class ForeachOp<E> implements Evaluator<E, Void>
-	{
-		protected final Action<? super E> action;
-
-		public ForeachOp(Action<? super E> action)
-		{
-			if (action == null)
+			catch (Exception e)
 			{
-				throw new NullPointerException();
+				throw new RuntimeException(e);
 			}
-			this.action = action;
-		}
-
-		@Override
-		public Terminal<E, Void> newPond()
-		{
-			return new ForeachPond<E>(action);
-		}
-	}
-
-	protected static class ForeachPond<E> extends AbstractTerminal<E, Void>
-	{
-		protected final Action<? super E> action;
-
-		public ForeachPond(Action<? super E> action)
-		{
-			this.action = action;
 		}
 
 		@Override
-		public void begin() throws Exception
+		public Try<E> orElse(Producer<? extends Try<E>> deft)
 		{
 			try
 			{
-				while (upstream().hasNext())
-				{
-					action.action(upstream().next());
-				}
+				return deft.produce();
 			}
-			finally
+			catch (RuntimeException e)
 			{
-				try
-				{
-					this.end();
-				}
-				catch (Exception e)
-				{
-					e.printStackTrace();
-				}
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
 			}
 		}
 
 		@Override
-		public Void get()
-		{
-			return null;
-		}
-	}
-
-	protected static class FullJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, Option<U>, Option<V>>
-	{
-		public FullJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
-		{
-			super(that, kol, kor, vol, vor);
-		}
-
-		@Override
-		protected Set<K> keys(Set<K> left, Set<K> right)
-		{
-			return (Set<K>) Canal.of(left).union(Canal.of(right)).collect(new LinkedHashSet<K>());
-		}
-
-		@Override
-		protected boolean needLeft(boolean isEmpty)
-		{
-			return true;
-		}
-
-		@Override
-		protected boolean needRight(boolean isEmpty)
-		{
-			return true;
-		}
-
-		@Override
-		protected Option<U> valLeft()
-		{
-			return Option.none();
-		}
-
-		@Override
-		protected Option<U> valLeft(U u)
-		{
-			return Option.some(u);
-		}
-
-		@Override
-		protected Option<V> valRight()
-		{
-			return Canal.none();
-		}
-
-		@Override
-		protected Option<V> valRight(V v)
-		{
-			return Option.some(v);
-		}
-	}
-
-	protected static class FullJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
-			implements Converter<L, Tuple2<K, Tuple2<Option<U>, Option<V>>>>
-	{
-		public FullJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		public Try<E> orElse(Try<E> deft)
 		{
-			super(that, kol, kor, vol, vor);
+			return deft;
 		}
 
 		@Override
-		public Pond<L, Tuple2<K, Tuple2<Option<U>, Option<V>>>> newPond()
-		{
-			return new FullJoiner<L, R, K, U, V>(that, kol, kor, vol, vor);
-		}
-	}
-
-	protected static class GeneratedSource<E> extends Source<E>
-	{
-		protected final Producer<E> generator;
-
-		public GeneratedSource(Producer<E> generator)
+		public Try<E> recover(final Mapper<Throwable, ? extends E> recover)
 		{
-			this.generator = generator;
+			try
+			{
+				return new Success<E>(recover.map(cause));
+			}
+			catch (Throwable e)
+			{
+				return new Failure<E>(e);
+			}
 		}
 
 		@Override
-		public void close() throws Exception
+		public Try<E> recoverWith(Mapper<Throwable, ? extends Try<E>> recover)
 		{
-			if (generator instanceof Closeable)
+			try
 			{
-				((Closeable) generator).close();
+				return recover.map(cause);
+			}
+			catch (Throwable e)
+			{
+				return new Failure<E>(e);
 			}
 		}
 
 		@Override
-		public boolean hasNext()
+		public Option<E> toOption()
 		{
-			return true;
+			return Option.none();
 		}
 
 		@Override
-		public E next()
+		public <D> Try<D> transform(Mapper<? super E, ? extends Try<D>> mapSucc,
+				Mapper<Throwable, ? extends Try<D>> mapFail)
 		{
 			try
 			{
-				return generator.produce();
+				return mapFail.map(cause);
 			}
 			catch (RuntimeException e)
 			{
@@ -1961,767 +3045,1144 @@ public class Canal<D> implements Iterable<D>
 		}
 	}
 
-	protected static class GeneratedSourcer<E> implements Sourcer<E>
+	protected static class FilterOp<E> implements Converter<E, E>
 	{
-		protected final Producer<E> generator;
+		protected final Filter<? super E> filter;
 
-		public GeneratedSourcer(Producer<E> generator)
+		protected FilterOp(Filter<? super E> filter)
 		{
-			if (generator == null)
+			if (filter == null)
 			{
 				throw new NullPointerException();
 			}
-			this.generator = generator;
+			this.filter = filter;
 		}
 
 		@Override
-		public Source<E> newPond()
+		public Pond<E, E> newPond()
 		{
-			return new GeneratedSource<E>(generator);
+			return new Creek<E, E>()
+			{
+				private E next;
+
+				@Override
+				public void drain(final Sink<? super E> sink) throws Exception
+				{
+					upstream().drain(new Sink<E>()
+					{
+						@Override
+						public boolean accept(E el) throws Exception
+						{
+							return !filter.filter(el) || sink.accept(el);
+						}
+					});
+				}
+
+				@Override
+				public boolean hasNext()
+				{
+					try
+					{
+						while (upstream().hasNext())
+						{
+							next = upstream().next();
+							if (filter.filter(next))
+							{
+								return true;
+							}
+						}
+						return false;
+					}
+					catch (RuntimeException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+				}
+
+				@Override
+				public E next()
+				{
+					return next;
+				}
+
+				@Override
+				public boolean reset()
+				{
+					next = null;
+					return true;
+				}
+			};
 		}
 	}
 
-	protected static class GroupByOp<E, K, V> implements Converter<E, Tuple2<K, Canal<V>>>
+	protected static class FirstOp<E> implements Evaluator<E, Option<E>>
 	{
-		protected final Mapper<E, K>	kop;
-
-		protected final Mapper<E, V>	vop;
+		protected final Filter<? super E> filter;
 
-		public GroupByOp(Mapper<E, K> kop, Mapper<E, V> vop)
+		public FirstOp(Filter<? super E> filter)
 		{
-			if (kop == null || vop == null)
+			if (filter == null)
 			{
 				throw new NullPointerException();
 			}
-			this.kop = kop;
-			this.vop = vop;
+			this.filter = filter;
 		}
 
 		@Override
-		public Pond<E, Tuple2<K, Canal<V>>> newPond()
+		public Terminal<E, Option<E>> newPond()
 		{
-			return new Grouper<E, K, V>(kop, vop);
-		}
-	}
+			return new AbstractTerminal<E, Option<E>>()
+			{
+				private boolean	found	= false;
 
-	protected static class Grouper<E, K, V> extends AbstractPond<E, Tuple2<K, Canal<V>>>
-	{
-		protected final Mapper<E, K>		kop;
+				private E		result;
 
-		protected final Mapper<E, V>		vop;
+				@Override
+				public void begin() throws Exception
+				{
+					try
+					{
+						while (upstream().hasNext())
+						{
+							if (filter.filter(result = upstream().next()))
+							{
+								found = true;
+								break;
+							}
+						}
+					}
+					finally
+					{
+						try
+						{
+							this.end();
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
 
-		protected final Map<K, List<V>>		sediment;
+				@Override
+				public Option<E> get()
+				{
+					return found ? Canal.some(result) : Canal.<E> none();
+				}
+			};
+		}
+	}
 
-		private Iterator<Entry<K, List<V>>>	iter;
+	protected static class FlatMapOp<I, O> implements Converter<I, O>
+	{
+		protected final Mapper<? super I, ? extends Iterable<? extends O>> mapper;
 
-		public Grouper(Mapper<E, K> kop, Mapper<E, V> vop)
+		public FlatMapOp(Mapper<? super I, ? extends Iterable<? extends O>> mapper)
 		{
-			this.kop = kop;
-			this.vop = vop;
-			this.sediment = new LinkedHashMap<K, List<V>>();
+			if (mapper == null)
+			{
+				throw new NullPointerException();
+			}
+			this.mapper = mapper;
 		}
 
 		@Override
-		public void begin() throws Exception
+		public Pond<I, O> newPond()
 		{
-			E el = null;
-			K key = null;
-			List<V> list = null;
-			while (upstream().hasNext())
+			return new Creek<I, O>()
 			{
-				el = upstream().next();
-				key = kop.map(el);
-				if (!sediment.containsKey(key))
+				private Iterator<? extends O> iter;
+
+				@Override
+				public void drain(final Sink<? super O> sink) throws Exception
 				{
-					sediment.put(key, list = new ArrayList<V>());
+					if (iter != null)
+					{
+						while (iter.hasNext())
+						{
+							if (!sink.accept(iter.next()))
+							{
+								return;
+							}
+						}
+					}
+					upstream().drain(new Sink<I>()
+					{
+						@Override
+						public boolean accept(I el) throws Exception
+						{
+							for (O o : mapper.map(el))
+							{
+								if (!sink.accept(o))
+								{
+									return false;
+								}
+							}
+							return true;
+						}
+					});
 				}
-				else
+
+				@Override
+				public boolean hasNext()
 				{
-					list = sediment.get(key);
+					if (iter != null && iter.hasNext())
+					{
+						return true;
+					}
+					try
+					{
+						while (upstream().hasNext())
+						{
+							iter = mapper.map(upstream().next()).iterator();
+							if (iter.hasNext())
+							{
+								return true;
+							}
+						}
+						return false;
+					}
+					catch (RuntimeException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
 				}
-				list.add(vop.map(el));
-			}
-			this.iter = sediment.entrySet().iterator();
-		}
 
-		@Override
-		public boolean hasNext()
-		{
-			return iter.hasNext();
-		}
+				@Override
+				public O next()
+				{
+					return iter.next();
+				}
 
-		@Override
-		public Tuple2<K, Canal<V>> next()
-		{
-			Entry<K, List<V>> entry = iter.next();
-			return Tuple.<K, Canal<V>> of(entry.getKey(), Canal.of(entry.getValue()));
+				@Override
+				public boolean reset()
+				{
+					iter = null;
+					return true;
+				}
+			};
 		}
 	}
 
-	protected static abstract class Heaper<E> extends AbstractPond<E, E>
+	/**
+	 * Fold the values into one accumulator per key as the elements stream
+	 * in, so that the memory is proportional to the number of keys rather
+	 * than the number of elements. If the initiator is null, the first value
+	 * of each key would be taken as its accumulator.
+	 */
+	protected static class FoldByKeyOp<E, K, V, W> implements Converter<E, Tuple2<K, W>>
 	{
-		protected final Collection<E>	sediment	= this.newSediment();
+		protected final Mapper<E, K>	kop;
 
-		private Iterator<E>				iter;
+		protected final Mapper<E, V>	vop;
 
-		@Override
-		public void begin()
+		protected final Producer<W>		init;
+
+		protected final Reducer<V, W>	folder;
+
+		public FoldByKeyOp(Mapper<E, K> kop, Mapper<E, V> vop, Producer<W> init, Reducer<V, W> folder)
 		{
-			this.settle();
-			this.iter = sediment.iterator();
+			if (folder == null)
+			{
+				throw new NullPointerException();
+			}
+			this.kop = kop != null ? kop : new DefaultKop<E, K>();
+			this.vop = vop;
+			this.init = init;
+			this.folder = folder;
 		}
 
 		@Override
-		public boolean hasNext()
+		public Pond<E, Tuple2<K, W>> newPond()
 		{
-			return iter.hasNext();
-		}
+			return new AbstractPond<E, Tuple2<K, W>>()
+			{
+				private Iterator<Entry<K, W>> iter;
 
-		protected abstract Collection<E> newSediment();
+				@Override
+				public void begin() throws Exception
+				{
+					final Map<K, W> result = new LinkedHashMap<K, W>();
+					upstream().drain(new Sink<E>()
+					{
+						@SuppressWarnings("unchecked")
+						@Override
+						public boolean accept(E el) throws Exception
+						{
+							K key = kop.map(el);
+							V val = vop != null ? vop.map(el) : (V) el;
+							W acc = result.get(key);
+							if (acc == null && !result.containsKey(key))
+							{
+								if (init == null)
+								{
+									result.put(key, (W) val);
+									return true;
+								}
+								acc = init.produce();
+							}
+							result.put(key, folder.reduce(acc, val));
+							return true;
+						}
+					});
+					iter = result.entrySet().iterator();
+				}
 
-		@Override
-		public E next()
-		{
-			return iter.next();
-		}
+				@Override
+				public boolean hasNext()
+				{
+					return iter.hasNext();
+				}
 
-		protected abstract void settle();
+				@Override
+				public Tuple2<K, W> next()
+				{
+					Entry<K, W> entry = iter.next();
+					return Tuple.of(entry.getKey(), entry.getValue());
+				}
+			};
+		}
 	}
 
-	protected static class IndexSource extends Source<Integer>
+	protected static class FoldOp<E, R> implements Evaluator<E, R>
 	{
-		protected final int	begin;
-
-		protected final int	until;
-
-		protected final int	step;
-
-		protected int		index;
+		private R						result;
 
-		public IndexSource(int begin, int until, int step)
-		{
-			this.begin = begin;
-			this.until = until;
-			this.step = step;
-			this.index = this.begin;
-		}
+		protected final Reducer<E, R>	folder;
 
-		@Override
-		public boolean hasNext()
+		public FoldOp(R init, Reducer<E, R> folder)
 		{
-			if (begin < until)
-			{
-				return step > 0 && index < until;
-			}
-			else if (begin > until)
-			{
-				return step < 0 && index > until;
-			}
-			else
+			if (folder == null)
 			{
-				return false;
+				throw new NullPointerException();
 			}
+			this.result = init;
+			this.folder = folder;
 		}
 
 		@Override
-		public Integer next()
+		public Terminal<E, R> newPond()
 		{
-			try
-			{
-				return index;
-			}
-			finally
+			return new AbstractTerminal<E, R>()
 			{
-				index += step;
-			}
-		}
-	}
-
-	protected static class IndexSourcer implements Sourcer<Integer>
-	{
-		protected final int	begin;
-
-		protected final int	until;
-
-		protected final int	step;
-
-		public IndexSourcer(int total, Integer begin, Integer until, Integer step)
-		{
-			int a = begin == null ? Integer.MIN_VALUE : begin;
-			int b = until == null ? Integer.MAX_VALUE : until;
-			int c = step == null ? 1 : step;
-
-			if (step != null)
-			{
-				if (begin == null)
+				@Override
+				public void begin() throws Exception
 				{
-					a = step < 0 ? Integer.MAX_VALUE : 0;
+					try
+					{
+						upstream().drain(new Sink<E>()
+						{
+							@Override
+							public boolean accept(E el) throws Exception
+							{
+								result = folder.reduce(result, el);
+								return true;
+							}
+						});
+					}
+					finally
+					{
+						try
+						{
+							this.end();
+						}
+						catch (Exception e)
+						{
+						}
+					}
 				}
-				if (until == null)
+
+				@Override
+				public R get()
 				{
-					b = step < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+					return result;
 				}
-			}
+			};
+		}
+	}
 
-			if (a < 0)
-			{
-				a += total;
-			}
-			if (b < 0)
-			{
-				b += total;
-			}
+	protected static class FoldUntilOp<E, R> implements Evaluator<E, Option<R>>
+	{
+		protected final Producer<R>		init;
 
-			if (step == null)
-			{
-				c = a > b ? -1 : 1;
-			}
+		protected final Reducer<E, R>	folder;
 
-			if (c > 0)
-			{
-				a = Math.max(a, 0);
-				b = Math.min(b, total);
-			}
-			else if (c < 0)
-			{
-				a = Math.min(a, total - 1);
-				b = Math.max(b, -1);
-			}
-			else
+		protected final Filter<R>		until;
+
+		private R						result;
+
+		public FoldUntilOp(Producer<R> init, Reducer<E, R> folder, Filter<R> until)
+		{
+			if (init == null || folder == null)
 			{
-				c = 1;
-				b = a;
+				throw new NullPointerException();
 			}
-
-			this.begin = a;
-			this.until = b;
-			this.step = c;
+			this.init = init;
+			this.folder = folder;
+			this.until = until;
 		}
 
 		@Override
-		public Source<Integer> newPond()
+		public Terminal<E, Option<R>> newPond()
 		{
-			return new IndexSource(begin, until, step);
+			return new AbstractTerminal<E, Option<R>>()
+			{
+				private boolean	empty	= true;
+
+				private boolean	meet	= false;
+
+				@Override
+				public void begin() throws Exception
+				{
+					try
+					{
+						meet = until == null;
+						while (upstream().hasNext())
+						{
+							if (empty)
+							{
+								empty = false;
+								result = init.produce();
+							}
+							result = folder.reduce(result, upstream().next());
+							if (until != null && until.filter(result))
+							{
+								meet = true;
+								break;
+							}
+						}
+					}
+					finally
+					{
+						try
+						{
+							this.end();
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
+
+				@Override
+				public Option<R> get()
+				{
+					return meet && !empty ? Canal.some(result) : Canal.<R> none();
+				}
+			};
 		}
 	}
 
-	protected static class InnerJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, U, V>
+	protected static class ForallOp<E> implements Evaluator<E, Boolean>
 	{
-		public InnerJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
-		{
-			super(that, kol, kor, vol, vor);
-		}
+		protected final Filter<? super E>	cond;
 
-		@Override
-		protected Set<K> keys(Set<K> left, Set<K> right)
-		{
-			return (Set<K>) Canal.of(left).intersection(Canal.of(right)).collect(new LinkedHashSet<K>());
-		}
+		protected final boolean				allowEmpty;
 
-		@Override
-		protected boolean needLeft(boolean isEmpty)
+		public ForallOp(Filter<? super E> cond, boolean allowEmpty)
 		{
-			return !isEmpty;
+			if (cond == null)
+			{
+				throw new NullPointerException();
+			}
+			this.cond = cond;
+			this.allowEmpty = allowEmpty;
 		}
 
 		@Override
-		protected boolean needRight(boolean isEmpty)
+		public Terminal<E, Boolean> newPond()
 		{
-			return !isEmpty;
+			return new ForallPond<E>(cond, allowEmpty);
 		}
+	}
 
-		@Override
-		protected U valLeft()
-		{
-			return null;
-		}
+	protected static class ForallPond<E> extends AbstractTerminal<E, Boolean>
+	{
+		protected final Filter<? super E>	cond;
 
-		@Override
-		protected U valLeft(U u)
-		{
-			return u;
-		}
+		protected final boolean				allowEmpty;
 
-		@Override
-		protected V valRight()
-		{
-			return null;
-		}
+		protected boolean					meet	= false;
 
-		@Override
-		protected V valRight(V v)
+		public ForallPond(Filter<? super E> cond, boolean allowEmpty)
 		{
-			return v;
+			this.cond = cond;
+			this.allowEmpty = allowEmpty;
 		}
-	}
 
-	protected static class InnerJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
-			implements Converter<L, Tuple2<K, Tuple2<U, V>>>
-	{
-		public InnerJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		@Override
+		public void begin() throws Exception
 		{
-			super(that, kol, kor, vol, vor);
+			try
+			{
+				if (allowEmpty)
+				{
+					while (upstream().hasNext())
+					{
+						if (!cond.filter(upstream().next()))
+						{
+							return;
+						}
+					}
+				}
+				else
+				{
+					boolean empty = true;
+					while (upstream().hasNext())
+					{
+						empty = false;
+						if (!cond.filter(upstream().next()))
+						{
+							return;
+						}
+					}
+					if (empty)
+					{
+						return;
+					}
+				}
+				meet = true;
+			}
+			finally
+			{
+				try
+				{
+					this.end();
+				}
+				catch (Exception e)
+				{
+				}
+			}
 		}
 
 		@Override
-		public Pond<L, Tuple2<K, Tuple2<U, V>>> newPond()
+		public Boolean get()
 		{
-			return new InnerJoiner<L, R, K, U, V>(that, kol, kor, vol, vor);
+			return meet;
 		}
 	}
 
-	protected static class IntersectionOp<E> implements Converter<E, E>
+	protected static class ForeachOp<E> implements Evaluator<E, Void>
 	{
-		protected final Canal<E>					that;
-
-		protected final HashedEquality<? super E>	eql;
+		protected final Action<? super E> action;
 
-		@SuppressWarnings("unchecked")
-		public IntersectionOp(Canal<? extends E> that, HashedEquality<? super E> eql)
+		public ForeachOp(Action<? super E> action)
 		{
-			if (that == null)
+			if (action == null)
 			{
 				throw new NullPointerException();
 			}
-			this.that = (Canal<E>) that;
-			this.eql = eql;
+			this.action = action;
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		public Terminal<E, Void> newPond()
 		{
-			return new IntersectionPond<E>(that, eql);
+			return new ForeachPond<E>(action);
 		}
 	}
 
-	protected static class IntersectionPond<E> extends Dam<E, E, E>
+	protected static class ForeachPond<E> extends AbstractTerminal<E, Void>
 	{
-		protected final HashedEquality<? super E>	eql;
-
-		private Set<E>								there;
-
-		private E									here;
+		protected final Action<? super E> action;
 
-		public IntersectionPond(Canal<E> that, HashedEquality<? super E> eql)
-		{
-			super(that);
-			this.eql = eql;
-		}
-
-		@Override
-		public void begin()
+		public ForeachPond(Action<? super E> action)
 		{
-			there = (Set<E>) that.collect(eql == null ? new HashSet<E>() : new WrappedHashSet<E>(eql));
+			this.action = action;
 		}
 
 		@Override
-		public boolean hasNext()
+		public void begin() throws Exception
 		{
-			while (upstream().hasNext())
+			try
 			{
-				here = upstream().next();
-				if (there.contains(here))
+				upstream().drain(new Sink<E>()
 				{
-					return true;
+					@Override
+					public boolean accept(E el) throws Exception
+					{
+						action.action(el);
+						return true;
+					}
+				});
+			}
+			finally
+			{
+				try
+				{
+					this.end();
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
 				}
 			}
-			return false;
 		}
 
 		@Override
-		public E next()
+		public Void get()
 		{
-			return here;
+			return null;
 		}
 	}
 
-	protected static class InverseComparator<E> implements Comparator<E>
+	protected static class FullJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, Option<U>, Option<V>>
 	{
-		protected final Comparator<? super E> cmp;
+		public FullJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
+		{
+			super(that, kol, kor, vol, vor, spiller);
+		}
 
-		public InverseComparator(Comparator<? super E> cmp)
+		@Override
+		protected Set<K> keys(Set<K> left, Set<K> right)
 		{
-			this.cmp = cmp;
+			return (Set<K>) Canal.of(left).union(Canal.of(right)).collect(new LinkedHashSet<K>());
 		}
 
 		@Override
-		public int compare(E o1, E o2)
+		protected boolean needLeft(boolean isEmpty)
 		{
-			return cmp.compare(o2, o1);
+			return true;
+		}
+
+		@Override
+		protected boolean needRight(boolean isEmpty)
+		{
+			return true;
+		}
+
+		@Override
+		protected Option<U> valLeft()
+		{
+			return Option.none();
+		}
+
+		@Override
+		protected Option<U> valLeft(U u)
+		{
+			return Option.some(u);
+		}
+
+		@Override
+		protected Option<V> valRight()
+		{
+			return Canal.none();
+		}
+
+		@Override
+		protected Option<V> valRight(V v)
+		{
+			return Option.some(v);
 		}
 	}
 
-	protected static class IterablePairSourcer<K, V> implements Sourcer<Entry<K, V>>
+	protected static class FullJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
+			implements Converter<L, Tuple2<K, Tuple2<Option<U>, Option<V>>>>
 	{
-		protected final Iterable<Entry<K, V>> iter;
-
-		@SuppressWarnings("unchecked")
-		public IterablePairSourcer(Iterable<?> iter)
+		public FullJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
 		{
-			if (iter == null)
-			{
-				throw new NullPointerException();
-			}
-			this.iter = (Iterable<Entry<K, V>>) iter;
+			super(that, kol, kor, vol, vor, spiller);
 		}
 
 		@Override
-		public Source<Entry<K, V>> newPond()
+		public Pond<L, Tuple2<K, Tuple2<Option<U>, Option<V>>>> newPond()
 		{
-			return new IteratorSource<Entry<K, V>>(iter.iterator());
+			return new FullJoiner<L, R, K, U, V>(that, kol, kor, vol, vor, spiller);
 		}
 	}
 
-	protected static class IterableSourcer<E> implements Sourcer<E>
+	protected static class FullMergeJoinOp<K, V, W> extends MergeJoinOp<K, V, W, Option<V>, Option<W>>
 	{
-		protected final Iterable<E> iter;
+		public FullMergeJoinOp(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
+		{
+			super(that, cmp);
+		}
 
-		public IterableSourcer(Iterable<E> iter)
+		@Override
+		protected boolean needLeft()
 		{
-			if (iter == null)
-			{
-				throw new NullPointerException();
-			}
-			this.iter = iter;
+			return true;
 		}
 
 		@Override
-		public Source<E> newPond()
+		protected boolean needRight()
 		{
-			return new IteratorSource<E>(iter.iterator());
+			return true;
+		}
+
+		@Override
+		protected Option<V> valLeft()
+		{
+			return Option.none();
+		}
+
+		@Override
+		protected Option<V> valLeft(V v)
+		{
+			return Option.some(v);
+		}
+
+		@Override
+		protected Option<W> valRight()
+		{
+			return Option.none();
+		}
+
+		@Override
+		protected Option<W> valRight(W w)
+		{
+			return Option.some(w);
 		}
 	}
 
-	protected static class IteratorSource<E> extends Source<E>
+	protected static class GeneratedSource<E> extends Source<E>
 	{
-		protected final Iterator<E> iter;
+		protected final Producer<E> generator;
 
-		public IteratorSource(Iterator<E> iter)
+		public GeneratedSource(Producer<E> generator)
 		{
-			this.iter = iter;
+			this.generator = generator;
 		}
 
 		@Override
 		public void close() throws Exception
 		{
-			if (iter instanceof Closeable)
+			if (generator instanceof Closeable)
 			{
-				((Closeable) iter).close();
+				((Closeable) generator).close();
 			}
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			return iter.hasNext();
+			return true;
 		}
 
 		@Override
 		public E next()
 		{
-			return iter.next();
+			try
+			{
+				return generator.produce();
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
-	public static class JoinCanal<K, L, R> extends PairCanal<K, Tuple2<L, R>>
+	protected static class GeneratedSourcer<E> implements Sourcer<E>
 	{
-		/**
-		 * Map each joint in this Canal.
-		 * 
-		 * @param mapper
-		 * @return
-		 */
-		public <W> Canal<W> mapJoint(final JointMapper<L, R, K, W> mapper)
+		protected final Producer<E> generator;
+
+		public GeneratedSourcer(Producer<E> generator)
 		{
-			return this.map(new Mapper<Tuple2<K, Tuple2<L, R>>, W>()
+			if (generator == null)
 			{
-				@Override
-				public W map(Tuple2<K, Tuple2<L, R>> el)
-				{
-					return mapper.map(el._2._1, el._2._2, el._1);
-				}
-			});
+				throw new NullPointerException();
+			}
+			this.generator = generator;
+		}
+
+		@Override
+		public Source<E> newPond()
+		{
+			return new GeneratedSource<E>(generator);
 		}
 	}
 
-	protected static abstract class Joiner<L, R, K, U, V, M, N> extends AbstractPond<L, Tuple2<K, Tuple2<M, N>>>
+	protected static class GroupByOp<E, K, V> implements Converter<E, Tuple2<K, Canal<V>>>
 	{
-		protected final Canal<R>		that;
-
-		protected final Mapper<L, K>	kol;
-
-		protected final Mapper<R, K>	kor;
-
-		protected final Mapper<L, U>	vol;
-
-		protected final Mapper<R, V>	vor;
-
-		private Map<K, List<U>>			here;
-
-		private Map<K, List<V>>			there;
-
-		private Iterator<K>				iterK;
-
-		private boolean					isEmptyK;
-
-		private Iterator<U>				iterU;
-
-		private Iterator<V>				iterV;
-
-		private List<U>					listU;
-
-		private List<V>					listV;
+		protected final Mapper<E, K>	kop;
 
-		private final List<U>			emptyU	= new ArrayList<U>();
+		protected final Mapper<E, V>	vop;
 
-		private final List<V>			emptyV	= new ArrayList<V>();
+		protected final Spiller			spiller;
 
-		private boolean					isEmptyU;
+		public GroupByOp(Mapper<E, K> kop, Mapper<E, V> vop, Spiller spiller)
+		{
+			if (kop == null || vop == null)
+			{
+				throw new NullPointerException();
+			}
+			this.kop = kop;
+			this.vop = vop;
+			this.spiller = spiller;
+		}
 
-		private boolean					isEmptyV;
+		@Override
+		public Pond<E, Tuple2<K, Canal<V>>> newPond()
+		{
+			return new Grouper<E, K, V>(kop, vop, spiller);
+		}
+	}
 
-		private K						k;
+	protected static class Grouper<E, K, V> extends AbstractPond<E, Tuple2<K, Canal<V>>> implements Retainer
+	{
+		protected final Mapper<E, K>		kop;
 
-		private M						m;
+		protected final Mapper<E, V>		vop;
 
-		private N						n;
+		protected final Map<K, List<V>>		sediment;
 
-		private final M					missM;
+		protected final Spiller				spiller;
 
-		private final N					missN;
+		private Iterator<Entry<K, List<V>>>	iter;
 
-		private byte					hasM;
+		private LinkedList<Spiller.Partition>	parts;
 
-		private byte					hasN;
+		public Grouper(Mapper<E, K> kop, Mapper<E, V> vop, Spiller spiller)
+		{
+			this.kop = kop;
+			this.vop = vop;
+			this.spiller = spiller;
+			this.sediment = new LinkedHashMap<K, List<V>>();
+		}
 
-		public Joiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		@Override
+		public void begin() throws Exception
 		{
-			this.that = that;
-			this.kol = kol;
-			this.kor = kor;
-			this.vol = vol;
-			this.vor = vor;
-			this.missM = valLeft();
-			this.missN = valRight();
+			int limit = spiller == null ? Integer.MAX_VALUE : spiller.memory();
+			int count = 0;
+			E el = null;
+			K key = null;
+			List<V> list = null;
+			while (count < limit && upstream().hasNext())
+			{
+				el = upstream().next();
+				key = kop.map(el);
+				if (!sediment.containsKey(key))
+				{
+					sediment.put(key, list = new ArrayList<V>());
+				}
+				else
+				{
+					list = sediment.get(key);
+				}
+				list.add(vop.map(el));
+				count++;
+			}
+			if (upstream().hasNext())
+			{
+				this.spill();
+			}
+			this.iter = sediment.entrySet().iterator();
 		}
 
 		@Override
-		public void begin() throws Exception
+		public void close() throws Exception
 		{
-			this.here = group(this.upstream(), this.kol, this.vol);
-			this.there = group(that.build(), this.kor, this.vor);
-			this.iterK = keys(here.keySet(), there.keySet()).iterator();
-			this.isEmptyK = !this.nextK();
+			try
+			{
+				if (parts != null)
+				{
+					for (Spiller.Partition part : parts)
+					{
+						part.delete();
+					}
+					parts.clear();
+				}
+			}
+			finally
+			{
+				super.close();
+			}
 		}
 
 		@Override
 		public boolean hasNext()
 		{
-			if (isEmptyK)
+			while (!iter.hasNext())
 			{
-				return false;
+				if (!this.nextPartition())
+				{
+					return false;
+				}
 			}
+			return true;
+		}
 
-			while (true)
+		/**
+		 * Load the next spilled partition into the sediment.
+		 * 
+		 * @return false if there is no more partition.
+		 */
+		private boolean nextPartition()
+		{
+			if (parts == null)
 			{
-				if (iterV.hasNext())
-				{
-					n = valRight(iterV.next());
-					hasN = 2;
-				}
-				else if (isEmptyV && needRight(isEmptyV))
-				{
-					n = missN;
-					hasN = 1;
-				}
-				else
-				{
-					hasN = 0;
-				}
+				return false;
+			}
 
-				if (hasN < 2 || hasM < 2)
+			try
+			{
+				Spiller.Partition part = null;
+				while ((part = parts.poll()) != null)
 				{
-					if (iterU.hasNext())
+					if (part.size() > spiller.memory() && part.depth < Spiller.MAX_DEPTH)
 					{
-						m = valLeft(iterU.next());
-						hasM = 2;
-						if (hasN == 0)
-						{
-							iterV = listV.iterator();
-						}
+						parts.addAll(0, part.split());
+						continue;
 					}
-					else if (isEmptyU && needLeft(isEmptyU))
+					sediment.clear();
+					try
 					{
-						m = missM;
-						hasM = 1;
+						sediment.putAll(part.<K, V> group(0));
 					}
-					else
+					finally
 					{
-						hasM = 0;
+						part.delete();
 					}
+					this.iter = sediment.entrySet().iterator();
+					return true;
 				}
+				return false;
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
 
-				if (hasN <= 1 && hasM <= 1)
+		@Override
+		public Tuple2<K, Canal<V>> next()
+		{
+			Entry<K, List<V>> entry = iter.next();
+			return Tuple.<K, Canal<V>> of(entry.getKey(), Canal.of(entry.getValue()));
+		}
+
+		@Override
+		public long retained()
+		{
+			return sediment.size();
+		}
+
+		/**
+		 * Partition the sediment and the rest of upstream into spill files by
+		 * hash of their keys.
+		 * 
+		 * @throws Exception
+		 */
+		protected void spill() throws Exception
+		{
+			Spiller.Partition[] ps = spiller.partitions(1, 0);
+			try
+			{
+				for (Entry<K, List<V>> entry : sediment.entrySet())
 				{
-					if (!iterK.hasNext())
+					for (V v : entry.getValue())
 					{
-						return false;
+						ps[spiller.partition(entry.getKey(), 0)].add(0, entry.getKey(), v);
 					}
-					this.nextK();
 				}
-				else if (hasN > 0 && hasM > 0)
+				sediment.clear();
+
+				E el = null;
+				K key = null;
+				while (upstream().hasNext())
 				{
-					break;
+					el = upstream().next();
+					key = kop.map(el);
+					ps[spiller.partition(key, 0)].add(0, key, vop.map(el));
 				}
-			}
 
-			return true;
+				this.parts = new LinkedList<Spiller.Partition>(spiller.close(ps));
+			}
+			catch (Exception e)
+			{
+				for (Spiller.Partition part : ps)
+				{
+					part.delete();
+				}
+				throw e;
+			}
 		}
+	}
 
-		protected abstract Set<K> keys(Set<K> left, Set<K> right);
-
-		protected abstract boolean needLeft(boolean isEmpty);
+	protected static abstract class Heaper<E> extends AbstractPond<E, E> implements Retainer
+	{
+		protected final Collection<E>	sediment	= this.newSediment();
 
-		protected abstract boolean needRight(boolean isEmpty);
+		private Iterator<E>				iter;
 
 		@Override
-		public Tuple2<K, Tuple2<M, N>> next()
+		public void begin()
 		{
-			return Tuple.of(k, Tuple.of(m, n));
+			this.settle();
+			this.iter = sediment.iterator();
 		}
 
-		private boolean nextK()
+		@Override
+		public boolean hasNext()
 		{
-			if (!iterK.hasNext())
-			{
-				return false;
-			}
-
-			k = iterK.next();
-			listU = here.get(k);
-			listV = there.get(k);
-			listU = listU != null ? listU : emptyU;
-			listV = listV != null ? listV : emptyV;
-			isEmptyU = listU.isEmpty();
-			isEmptyV = listV.isEmpty();
-			iterU = listU.iterator();
-			iterV = listV.iterator();
-			hasM = 0;
-			hasN = 0;
-
-			return true;
+			return iter.hasNext();
 		}
 
-		protected abstract M valLeft();
+		protected abstract Collection<E> newSediment();
 
-		protected abstract M valLeft(U u);
+		@Override
+		public E next()
+		{
+			return iter.next();
+		}
 
-		protected abstract N valRight();
+		@Override
+		public long retained()
+		{
+			return sediment.size();
+		}
 
-		protected abstract N valRight(V v);
+		protected abstract void settle();
 	}
 
-	protected static abstract class JoinOp<L, R, K, U, V>
+	protected static class IndexSource extends Source<Integer>
 	{
-		protected final Canal<R>		that;
+		protected final int	begin;
 
-		protected final Mapper<L, K>	kol;
+		protected final int	until;
 
-		protected final Mapper<R, K>	kor;
+		protected final int	step;
 
-		protected final Mapper<L, U>	vol;
+		protected int		index;
 
-		protected final Mapper<R, V>	vor;
+		public IndexSource(int begin, int until, int step)
+		{
+			this.begin = begin;
+			this.until = until;
+			this.step = step;
+			this.index = this.begin;
+		}
 
-		public JoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		@Override
+		public boolean hasNext()
 		{
-			if (that == null)
+			if (begin < until)
 			{
-				throw new NullPointerException();
+				return step > 0 && index < until;
+			}
+			else if (begin > until)
+			{
+				return step < 0 && index > until;
+			}
+			else
+			{
+				return false;
 			}
-			this.that = that;
-			this.kol = kol;
-			this.kor = kor;
-			this.vol = vol;
-			this.vor = vor;
 		}
-	}
 
-	public static interface JointMapper<L, R, K, V>
-	{
-		public V map(L left, R right, K key);
+		@Override
+		public Integer next()
+		{
+			try
+			{
+				return index;
+			}
+			finally
+			{
+				index += step;
+			}
+		}
 	}
 
-	protected static class LastOp<E> implements Evaluator<E, Option<E>>
+	protected static class IndexSourcer implements Sourcer<Integer>
 	{
-		protected final Filter<? super E> filter;
+		protected final int	begin;
 
-		public LastOp(Filter<? super E> filter)
+		protected final int	until;
+
+		protected final int	step;
+
+		public IndexSourcer(int total, Integer begin, Integer until, Integer step)
 		{
-			if (filter == null)
+			int a = begin == null ? Integer.MIN_VALUE : begin;
+			int b = until == null ? Integer.MAX_VALUE : until;
+			int c = step == null ? 1 : step;
+
+			if (step != null)
 			{
-				throw new NullPointerException();
+				if (begin == null)
+				{
+					a = step < 0 ? Integer.MAX_VALUE : 0;
+				}
+				if (until == null)
+				{
+					b = step < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+				}
 			}
-			this.filter = filter;
-		}
 
-		@Override
-		public Terminal<E, Option<E>> newPond()
-		{
-			return new AbstractTerminal<E, Option<E>>()
+			if (a < 0)
 			{
-				private boolean	found	= false;
+				a += total;
+			}
+			if (b < 0)
+			{
+				b += total;
+			}
 
-				private E		result;
+			if (step == null)
+			{
+				c = a > b ? -1 : 1;
+			}
 
-				@Override
-				public void begin() throws Exception
-				{
-					try
-					{
-						E find = null;
-						while (upstream().hasNext())
-						{
-							find = upstream().next();
-							if (filter.filter(find))
-							{
-								result = find;
-								found = true;
-							}
-						}
-					}
-					finally
-					{
-						try
-						{
-							this.end();
-						}
-						catch (Exception e)
-						{
-						}
-					}
-				}
+			if (c > 0)
+			{
+				a = Math.max(a, 0);
+				b = Math.min(b, total);
+			}
+			else if (c < 0)
+			{
+				a = Math.min(a, total - 1);
+				b = Math.max(b, -1);
+			}
+			else
+			{
+				c = 1;
+				b = a;
+			}
 
-				@Override
-				public Option<E> get()
-				{
-					return found ? Canal.some(result) : Canal.<E> none();
-				}
-			};
+			this.begin = a;
+			this.until = b;
+			this.step = c;
+		}
+
+		@Override
+		public IndexSource newPond()
+		{
+			return new IndexSource(begin, until, step);
 		}
 	}
 
-	protected static class LeftJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, U, Option<V>>
+	protected static class InnerJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, U, V>
 	{
-		public LeftJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		public InnerJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
 		{
-			super(that, kol, kor, vol, vor);
+			super(that, kol, kor, vol, vor, spiller);
 		}
 
 		@Override
 		protected Set<K> keys(Set<K> left, Set<K> right)
 		{
-			return left;
+			return (Set<K>) Canal.of(left).intersection(Canal.of(right)).collect(new LinkedHashSet<K>());
 		}
 
 		@Override
@@ -2733,7 +4194,7 @@ public class Canal<D> implements Iterable<D>
 		@Override
 		protected boolean needRight(boolean isEmpty)
 		{
-			return true;
+			return !isEmpty;
 		}
 
 		@Override
@@ -2749,4635 +4210,11192 @@ public class Canal<D> implements Iterable<D>
 		}
 
 		@Override
-		protected Option<V> valRight()
+		protected V valRight()
 		{
-			return Option.none();
+			return null;
 		}
 
 		@Override
-		protected Option<V> valRight(V v)
+		protected V valRight(V v)
 		{
-			return Option.some(v);
+			return v;
 		}
 	}
 
-	protected static class LeftJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
-			implements Converter<L, Tuple2<K, Tuple2<U, Option<V>>>>
+	protected static class InnerJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
+			implements Converter<L, Tuple2<K, Tuple2<U, V>>>
 	{
-		public LeftJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		public InnerJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller, int hint)
 		{
-			super(that, kol, kor, vol, vor);
+			super(that, kol, kor, vol, vor, spiller, hint);
 		}
 
 		@Override
-		public Pond<L, Tuple2<K, Tuple2<U, Option<V>>>> newPond()
+		public Pond<L, Tuple2<K, Tuple2<U, V>>> newPond()
 		{
-			return new LeftJoiner<L, R, K, U, V>(that, kol, kor, vol, vor);
+			if (this.isStreaming())
+			{
+				return new InnerStreamJoiner<L, R, K, U, V>(that, kol, kor, vol, vor);
+			}
+			else
+			{
+				return new InnerJoiner<L, R, K, U, V>(that, kol, kor, vol, vor, spiller);
+			}
 		}
 	}
 
-	protected static class LimitOp<E> implements Converter<E, E>
+	protected static class InnerMergeJoinOp<K, V, W> extends MergeJoinOp<K, V, W, V, W>
 	{
-		protected final int limit;
+		public InnerMergeJoinOp(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
+		{
+			super(that, cmp);
+		}
 
-		public LimitOp(int limit)
+		@Override
+		protected boolean needLeft()
 		{
-			this.limit = limit;
+			return false;
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		protected boolean needRight()
 		{
-			return new Wheel<E, E>()
-			{
-				@Override
-				public boolean hasNext()
-				{
-					return (limit < 0 || index < limit) && upstream().hasNext();
-				}
+			return false;
+		}
 
-				@Override
-				public E next()
-				{
-					index++;
-					return upstream().next();
-				}
-			};
+		@Override
+		protected V valLeft()
+		{
+			return null;
 		}
-	}
 
-	protected static class MapOp<I, O> implements Converter<I, O>
-	{
-		protected final Mapper<? super I, ? extends O> mapper;
+		@Override
+		protected V valLeft(V v)
+		{
+			return v;
+		}
 
-		public MapOp(Mapper<? super I, ? extends O> mapper)
+		@Override
+		protected W valRight()
 		{
-			if (mapper == null)
-			{
-				throw new NullPointerException();
-			}
-			this.mapper = mapper;
+			return null;
 		}
 
 		@Override
-		public Pond<I, O> newPond()
+		protected W valRight(W w)
 		{
-			return new Creek<I, O>()
-			{
-				@Override
-				public O next()
-				{
-					try
-					{
-						return mapper.map(upstream().next());
-					}
-					catch (RuntimeException e)
-					{
-						throw e;
-					}
-					catch (Exception e)
-					{
-						throw new RuntimeException(e);
-					}
-				}
-			};
+			return w;
 		}
 	}
 
-	@SuppressWarnings("rawtypes")
-	protected static class MappedComparator<O> implements Comparator<O>
+	protected static class InnerStreamJoiner<L, R, K, U, V> extends StreamJoiner<L, R, K, U, V, V>
 	{
-		protected final Mapper<O, Comparable> mapper;
+		public InnerStreamJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol,
+				Mapper<R, V> vor)
+		{
+			super(that, kol, kor, vol, vor);
+		}
 
-		public MappedComparator(Mapper<O, Comparable> mapper)
+		@Override
+		protected boolean needMiss()
 		{
-			this.mapper = mapper;
+			return false;
 		}
 
-		@SuppressWarnings("unchecked")
 		@Override
-		public int compare(O o1, O o2)
+		protected V valRight()
 		{
-			try
-			{
-				Comparable a = mapper.map(o1), b = mapper.map(o2);
+			return null;
+		}
 
-				if (a == b)
-				{
-					return 0;
-				}
-				else if (a == null)
-				{
-					return -1;
-				}
-				else if (b == null)
-				{
-					return 1;
-				}
-				else
-				{
-					return a.compareTo(b);
-				}
-			}
-			catch (RuntimeException e)
-			{
-				throw e;
-			}
-			catch (Exception e)
-			{
-				throw new RuntimeException(e);
-			}
+		@Override
+		protected V valRight(V v)
+		{
+			return v;
 		}
 	}
 
-	protected static class MapWithStateOp<I, S, O> implements Converter<I, O>
+	/**
+	 * A Canal of primitive int values. The methods declared here pass the
+	 * values through without boxing, while the inherited methods see each
+	 * value as Integer.
+	 */
+	public static class IntCanal extends Canal<Integer>
 	{
-		protected final Producer<S>						stater;
-
-		protected final StatefulMapper<? super I, S, O>	mapper;
-
-		public MapWithStateOp(Producer<S> stater, StatefulMapper<? super I, S, O> mapper)
+		protected IntCanal(IntSourcer sourcer)
 		{
-			if (stater == null || mapper == null)
-			{
-				throw new NullPointerException();
-			}
-			this.stater = stater;
-			this.mapper = mapper;
+			this.setOperator(sourcer);
 		}
 
-		@Override
-		public Pond<I, O> newPond()
+		/**
+		 * Widen each value into double.
+		 * 
+		 * @return
+		 */
+		public DoubleCanal asDouble()
 		{
-			return new Creek<I, O>()
+			return new DoubleCanal(new DoubleSourcer()
 			{
-				private boolean	init	= false;
-
-				private S		stat	= null;
-
 				@Override
-				public O next()
+				public DoubleSource newPond()
 				{
-					try
+					final IntSource up = IntCanal.this.newSource();
+					return new DoubleSource()
 					{
-						if (!init)
+						@Override
+						public void begin() throws Exception
 						{
-							stat = stater.produce();
-							init = true;
+							up.begin();
 						}
-						return mapper.map(upstream().next(), stat);
-					}
-					catch (RuntimeException e)
-					{
-						throw e;
-					}
-					catch (Exception e)
-					{
-						throw new RuntimeException(e);
-					}
-				}
-			};
-		}
-	}
-
-	protected static class MatchFindIterable implements Iterable<Matcher>
-	{
-		protected final Pattern			regex;
 
-		protected final CharSequence	text;
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
 
-		public MatchFindIterable(Pattern regex, CharSequence text)
-		{
-			if (regex == null || text == null)
-			{
-				throw new NullPointerException();
-			}
-			this.regex = regex;
-			this.text = text;
+						@Override
+						public boolean hasNext()
+						{
+							return up.hasNext();
+						}
+
+						@Override
+						public double nextDouble()
+						{
+							return up.nextInt();
+						}
+					};
+				}
+			});
 		}
 
-		@Override
-		public Iterator<Matcher> iterator()
+		/**
+		 * Widen each value into long.
+		 * 
+		 * @return
+		 */
+		public LongCanal asLong()
 		{
-			return new MatchFindIterator(regex, text);
-		}
-	}
+			return new LongCanal(new LongSourcer()
+			{
+				@Override
+				public LongSource newPond()
+				{
+					final IntSource up = IntCanal.this.newSource();
+					return new LongSource()
+					{
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
 
-	protected static class MatchFindIterator implements Iterator<Matcher>
-	{
-		protected final Matcher	m;
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
 
-		private Boolean			find;
+						@Override
+						public boolean hasNext()
+						{
+							return up.hasNext();
+						}
 
-		public MatchFindIterator(Pattern regex, CharSequence text)
-		{
-			this.m = regex.matcher(text);
-			this.find = m.find();
+						@Override
+						public long nextLong()
+						{
+							return up.nextInt();
+						}
+					};
+				}
+			});
 		}
 
-		@Override
-		public boolean hasNext()
+		/**
+		 * Get the average of the values.
+		 * 
+		 * @return the average or none if this Canal was empty.
+		 */
+		public Option<Double> average()
 		{
-			if (find == null)
+			IntSource src = this.open();
+			try
 			{
-				find = m.find();
+				long sum = 0;
+				long count = 0;
+				while (src.hasNext())
+				{
+					sum += src.nextInt();
+					count++;
+				}
+				return count == 0 ? Option.<Double> none() : Option.some((double) sum / count);
+			}
+			finally
+			{
+				close(src);
 			}
-			return find;
 		}
 
 		@Override
-		public Matcher next()
+		public int count()
 		{
+			IntSource src = this.open();
 			try
 			{
-				return m;
+				int count = 0;
+				while (src.hasNext())
+				{
+					src.nextInt();
+					count++;
+				}
+				return count;
 			}
 			finally
 			{
-				find = null;
+				close(src);
 			}
 		}
 
-		@Override
-		public void remove()
+		public IntCanal filterInt(final IntFilter filter)
 		{
-			throw new UnsupportedOperationException();
-		}
-	}
+			if (filter == null)
+			{
+				throw new NullPointerException();
+			}
+			return new IntCanal(new IntSourcer()
+			{
+				@Override
+				public IntSource newPond()
+				{
+					final IntSource up = IntCanal.this.newSource();
+					return new IntSource()
+					{
+						private boolean	ready;
 
-	public static class NoMoreElement extends RuntimeException
-	{
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = 1L;
+						private int	el;
 
-		public NoMoreElement()
-		{
-			super();
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
+
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
+
+						@Override
+						public boolean hasNext()
+						{
+							try
+							{
+								while (!ready && up.hasNext())
+								{
+									el = up.nextInt();
+									ready = filter.filter(el);
+								}
+								return ready;
+							}
+							catch (RuntimeException e)
+							{
+								throw e;
+							}
+							catch (Exception e)
+							{
+								throw new RuntimeException(e);
+							}
+						}
+
+						@Override
+						public int nextInt()
+						{
+							if (!this.hasNext())
+							{
+								throw new NoSuchElementException();
+							}
+							ready = false;
+							return el;
+						}
+					};
+				}
+			});
 		}
-	}
 
-	public static class None<E> extends Option<E>
-	{
-		public None()
+		public int foldInt(int init, IntReducer folder)
 		{
-			this.setOperator(new EmptySourcer<E>());
+			if (folder == null)
+			{
+				throw new NullPointerException();
+			}
+			IntSource src = this.open();
+			try
+			{
+				int res = init;
+				while (src.hasNext())
+				{
+					res = folder.reduce(res, src.nextInt());
+				}
+				return res;
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public E get() throws NoSuchElementException
+		/**
+		 * Count the values into {@code bins} buckets of equal width between
+		 * {@code min} (inclusive) and {@code max} (exclusive). Values out of
+		 * the range are ignored.
+		 * 
+		 * @param min
+		 * @param max
+		 * @param bins
+		 * @return the count of each bucket.
+		 */
+		public long[] histogram(int min, int max, int bins)
 		{
-			throw new NoSuchElementException();
+			if (bins < 1 || min >= max)
+			{
+				throw new IllegalArgumentException();
+			}
+			long[] counts = new long[bins];
+			double width = (double) max - min;
+			IntSource src = this.open();
+			try
+			{
+				int el = 0;
+				while (src.hasNext())
+				{
+					el = src.nextInt();
+					if (min <= el && el < max)
+					{
+						counts[Math.min((int) (((double) el - min) / width * bins), bins - 1)]++;
+					}
+				}
+				return counts;
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public E get(Producer<Exception> raiser) throws Exception
+		public IntCanal mapInt(final IntMapper mapper)
 		{
-			if (raiser != null)
+			if (mapper == null)
 			{
-				Exception ex = null;
-				try
+				throw new NullPointerException();
+			}
+			return new IntCanal(new IntSourcer()
+			{
+				@Override
+				public IntSource newPond()
 				{
-					ex = raiser.produce();
+					final IntSource up = IntCanal.this.newSource();
+					return new IntSource()
+					{
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
+
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
+
+						@Override
+						public boolean hasNext()
+						{
+							return up.hasNext();
+						}
+
+						@Override
+						public int nextInt()
+						{
+							try
+							{
+								return mapper.map(up.nextInt());
+							}
+							catch (RuntimeException e)
+							{
+								throw e;
+							}
+							catch (Exception e)
+							{
+								throw new RuntimeException(e);
+							}
+						}
+					};
 				}
-				catch (Exception e)
+			});
+		}
+
+		public Option<Integer> max()
+		{
+			IntSource src = this.open();
+			try
+			{
+				if (!src.hasNext())
 				{
-					e.printStackTrace();
+					return Option.none();
 				}
-				if (ex != null)
+				int max = src.nextInt(), el = 0;
+				while (src.hasNext())
 				{
-					throw ex;
+					if ((el = src.nextInt()) > max)
+					{
+						max = el;
+					}
 				}
+				return Option.some(max);
+			}
+			finally
+			{
+				close(src);
 			}
-			return this.get();
 		}
 
-		@Override
-		public boolean given()
+		public Option<Integer> min()
 		{
-			return false;
+			IntSource src = this.open();
+			try
+			{
+				if (!src.hasNext())
+				{
+					return Option.none();
+				}
+				int min = src.nextInt(), el = 0;
+				while (src.hasNext())
+				{
+					if ((el = src.nextInt()) < min)
+					{
+						min = el;
+					}
+				}
+				return Option.some(min);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public E or(E defaultValue)
+		protected IntSource newSource()
 		{
-			return defaultValue;
+			return ((IntSourcer) this.getOperator()).newPond();
 		}
 
-		@Override
-		public E or(Producer<? extends E> defaultProducer)
+		/**
+		 * Create and begin a new source of this Canal.
+		 * 
+		 * @return
+		 */
+		protected IntSource open()
 		{
+			IntSource src = this.newSource();
 			try
 			{
-				return defaultProducer.produce();
+				src.begin();
+				return src;
 			}
 			catch (RuntimeException e)
 			{
+				close(src);
 				throw e;
 			}
 			catch (Exception e)
 			{
+				close(src);
 				throw new RuntimeException(e);
 			}
 		}
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public Option<E> orElse(Option<? extends E> opt)
+		/**
+		 * Get the sum of the values, accumulated in long.
+		 * 
+		 * @return
+		 */
+		public long sum()
 		{
-			return (Option<E>) opt;
-		}
+			IntSource src = this.open();
+			try
+			{
+				long sum = 0;
+				while (src.hasNext())
+				{
+					sum += src.nextInt();
+				}
+				return sum;
+			}
+			finally
+			{
+				close(src);
+			}
+		}
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public Option<E> orElse(Producer<Option<? extends E>> opt)
+		public int[] toArray()
 		{
+			IntSource src = this.open();
 			try
 			{
-				return (Option<E>) opt.produce();
+				int[] array = new int[16];
+				int size = 0;
+				while (src.hasNext())
+				{
+					if (size == array.length)
+					{
+						array = Arrays.copyOf(array, size << 1);
+					}
+					array[size++] = src.nextInt();
+				}
+				return size == array.length ? array : Arrays.copyOf(array, size);
 			}
-			catch (RuntimeException e)
+			finally
 			{
-				throw e;
+				close(src);
 			}
-			catch (Exception e)
+		}
+	}
+
+	protected static class IntersectionOp<E> implements Converter<E, E>
+	{
+		protected final Canal<E>					that;
+
+		protected final HashedEquality<? super E>	eql;
+
+		@SuppressWarnings("unchecked")
+		public IntersectionOp(Canal<? extends E> that, HashedEquality<? super E> eql)
+		{
+			if (that == null)
 			{
-				throw new RuntimeException(e);
+				throw new NullPointerException();
 			}
+			this.that = (Canal<E>) that;
+			this.eql = eql;
 		}
 
 		@Override
-		public E orNull()
+		public Pond<E, E> newPond()
 		{
-			return null;
+			return new IntersectionPond<E>(that, eql);
+		}
+	}
+
+	protected static class IntersectionPond<E> extends Dam<E, E, E>
+	{
+		protected final HashedEquality<? super E>	eql;
+
+		private Set<E>								there;
+
+		private E									here;
+
+		public IntersectionPond(Canal<E> that, HashedEquality<? super E> eql)
+		{
+			super(that);
+			this.eql = eql;
 		}
 
 		@Override
-		public String toString()
+		public void begin()
 		{
-			return "None";
+			there = (Set<E>) that.collect(eql == null ? new HashSet<E>() : new WrappedHashSet<E>(eql));
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			while (upstream().hasNext())
+			{
+				here = upstream().next();
+				if (there.contains(here))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public E next()
+		{
+			return here;
 		}
 	}
 
-	protected static interface Operator<I, O>
+	public static interface IntFilter
 	{
-		Pond<I, O> newPond();
+		public boolean filter(int el) throws Exception;
 	}
 
-	public static abstract class Option<E> extends Canal<E>
+	public static interface IntMapper
 	{
-		protected static final None<?> NONE = new None<Object>();
+		public int map(int el) throws Exception;
+	}
 
-		@SuppressWarnings("unchecked")
-		public static <T> None<T> none()
+	public static interface IntReducer
+	{
+		public int reduce(int res, int el) throws Exception;
+	}
+
+	/**
+	 * The source of primitive int values, {@link #next()} would box the
+	 * value returned by {@link #nextInt()}.
+	 */
+	protected static abstract class IntSource extends Source<Integer>
+	{
+		@Override
+		public Integer next()
 		{
-			return (None<T>) NONE;
+			return this.nextInt();
 		}
 
-		/**
-		 * Please use {@link Option#Of(Object)} instead, in order to avoid
-		 * ambiguous of {@code Canal.of(...)} methods.
-		 */
-		@Deprecated
-		public static <T> Option<T> of(T value)
+		public abstract int nextInt();
+	}
+
+	protected static interface IntSourcer extends Sourcer<Integer>
+	{
+		@Override
+		public IntSource newPond();
+	}
+
+	protected static class InverseComparator<E> implements Comparator<E>
+	{
+		protected final Comparator<? super E> cmp;
+
+		public InverseComparator(Comparator<? super E> cmp)
 		{
-			return Of(value);
+			this.cmp = cmp;
 		}
 
-		/**
-		 * Get Option object by value.
-		 * 
-		 * @param value
-		 * @return {@code None} if {@code value == null} otherwise
-		 *         {@code Some(value)} will be returned.
-		 */
-		@SuppressWarnings("unchecked")
-		public static <T> Option<T> Of(T value)
+		@Override
+		public int compare(E o1, E o2)
 		{
-			return value != null ? new Some<T>(value) : (None<T>) NONE;
+			return cmp.compare(o2, o1);
 		}
+	}
 
-		public static <T> T or(T value, Producer<? extends T> deft)
+	protected static class IterablePairSourcer<K, V> implements Sourcer<Entry<K, V>>
+	{
+		protected final Iterable<Entry<K, V>> iter;
+
+		@SuppressWarnings("unchecked")
+		public IterablePairSourcer(Iterable<?> iter)
 		{
-			try
+			if (iter == null)
 			{
-				return value != null ? value : deft.produce();
+				throw new NullPointerException();
 			}
-			catch (Exception e)
+			this.iter = (Iterable<Entry<K, V>>) iter;
+		}
+
+		@Override
+		public Source<Entry<K, V>> newPond()
+		{
+			return new IteratorSource<Entry<K, V>>(iter.iterator());
+		}
+	}
+
+	protected static class IterableSourcer<E> implements Sourcer<E>
+	{
+		protected final Iterable<E> iter;
+
+		public IterableSourcer(Iterable<E> iter)
+		{
+			if (iter == null)
 			{
-				e.printStackTrace();
-				return null;
+				throw new NullPointerException();
 			}
+			this.iter = iter;
 		}
 
-		public static <T> T or(T value, T deft)
+		@Override
+		public Source<E> newPond()
 		{
-			return value != null ? value : deft;
+			return new IteratorSource<E>(iter.iterator());
 		}
+	}
 
-		public static <T> Some<T> some(T value)
+	protected static class IteratorSource<E> extends Source<E>
+	{
+		protected final Iterator<E> iter;
+
+		public IteratorSource(Iterator<E> iter)
 		{
-			return new Some<T>(value);
+			this.iter = iter;
 		}
 
 		@Override
-		public Option<E> filter(Filter<? super E> filter)
+		public void close() throws Exception
 		{
-			try
-			{
-				if (this.given() && filter.filter(this.get()))
-				{
-					return this;
-				}
-				else
-				{
-					return none();
-				}
-			}
-			catch (RuntimeException e)
-			{
-				throw e;
-			}
-			catch (Exception e)
+			if (iter instanceof Closeable)
 			{
-				throw new RuntimeException(e);
+				((Closeable) iter).close();
 			}
 		}
 
-		public abstract E get();
-
-		public abstract E get(Producer<Exception> raiser) throws Exception;
-
-		public abstract boolean given();
-
 		@Override
-		public <F> Option<F> map(Mapper<? super E, ? extends F> mapper)
+		public void drain(Sink<? super E> sink) throws Exception
 		{
-			if (this.given())
+			Iterator<E> iter = this.iter;
+			while (iter.hasNext())
 			{
-				try
+				if (!sink.accept(iter.next()))
 				{
-					return some((F) mapper.map(this.get()));
-				}
-				catch (RuntimeException e)
-				{
-					throw e;
-				}
-				catch (Exception e)
-				{
-					throw new RuntimeException(e);
+					break;
 				}
 			}
-			else
-			{
-				return none();
-			}
 		}
 
-		public abstract E or(E defaultValue);
-
-		public abstract E or(Producer<? extends E> defaultProducer);
-
-		public abstract Option<E> orElse(Option<? extends E> opt);
-
-		public abstract Option<E> orElse(Producer<Option<? extends E>> opt);
-
-		public abstract E orNull();
-	}
+		@Override
+		public boolean hasNext()
+		{
+			return iter.hasNext();
+		}
 
-	public static class PairCanal<K, V> extends Canal<Tuple2<K, V>>
-	{
 		@Override
-		public PairCanal<K, V> cache()
+		public E next()
 		{
-			return super.cache().toPair();
+			return iter.next();
 		}
+	}
 
+	public static class JoinCanal<K, L, R> extends PairCanal<K, Tuple2<L, R>>
+	{
 		/**
-		 * Choose the tuples that should be passed to downstream.
+		 * Map each joint in this Canal.
 		 * 
-		 * @param chooser
+		 * @param mapper
 		 * @return
 		 */
-		public PairCanal<K, V> choose(final StatefulMapper<? super K, ? super V, Boolean> chooser)
+		public <W> Canal<W> mapJoint(final JointMapper<L, R, K, W> mapper)
 		{
-			if (chooser == null)
-			{
-				throw new NullPointerException();
-			}
-			return this.filter(new Filter<Tuple2<K, V>>()
+			return this.map(new Mapper<Tuple2<K, Tuple2<L, R>>, W>()
 			{
 				@Override
-				public boolean filter(Tuple2<K, V> el) throws Exception
+				public W map(Tuple2<K, Tuple2<L, R>> el)
 				{
-					return chooser.map(el._1, el._2);
+					return mapper.map(el._2._1, el._2._2, el._1);
 				}
-			}).toPair();
+			});
 		}
+	}
 
-		public JSON collectAsJSON()
-		{
-			return collectAsJSON(null);
-		}
+	protected static abstract class Joiner<L, R, K, U, V, M, N> extends AbstractPond<L, Tuple2<K, Tuple2<M, N>>>
+			implements Retainer
+	{
+		protected final Canal<R>		that;
 
-		public JSON collectAsJSON(JSON json)
-		{
-			return (JSON) collectAsMap(json != null ? json : new JSON());
-		}
+		protected final Mapper<L, K>	kol;
 
-		/**
-		 * Collect elements into map.<br />
-		 * It assumes that the upstream is a pair Canal.<br />
-		 * In order to indicate the key/value type <br />
-		 * please call like {@code Canal.<K,V>collectAsMap()}
-		 * 
-		 * @return
-		 */
-		public Map<K, V> collectAsMap()
-		{
-			return collectAsMap(null);
-		}
+		protected final Mapper<R, K>	kor;
 
-		/**
-		 * Count the number each key.<br />
-		 * It assumes that the upstream is a pair Canal.
-		 * 
-		 * @return
-		 */
-		public Map<K, Integer> countByKey()
-		{
-			return countByKey(null);
-		}
+		protected final Mapper<L, U>	vol;
 
-		@Override
-		public PairCanal<K, V> distinct()
-		{
-			return super.distinct().toPair();
-		}
+		protected final Mapper<R, V>	vor;
 
-		@Override
-		public PairCanal<K, V> distinct(HashedEquality<? super Tuple2<K, V>> eql)
-		{
-			return super.distinct(eql).toPair();
-		}
+		protected final Spiller			spiller;
 
-		@Override
-		public PairCanal<K, V> distinct(Mapper<? super Tuple2<K, V>, ?> xtr)
-		{
-			return super.distinct(xtr).toPair();
-		}
+		private Map<K, List<U>>			here;
 
-		@Override
-		public PairCanal<K, V> filter(Filter<? super Tuple2<K, V>> pred)
+		private Map<K, List<V>>			there;
+
+		private Iterator<K>				iterK;
+
+		private boolean					isEmptyK;
+
+		private Iterator<U>				iterU;
+
+		private Iterator<V>				iterV;
+
+		private List<U>					listU;
+
+		private List<V>					listV;
+
+		private final List<U>			emptyU	= new ArrayList<U>();
+
+		private final List<V>			emptyV	= new ArrayList<V>();
+
+		private boolean					isEmptyU;
+
+		private boolean					isEmptyV;
+
+		private K						k;
+
+		private M						m;
+
+		private N						n;
+
+		private final M					missM;
+
+		private final N					missN;
+
+		private byte					hasM;
+
+		private byte					hasN;
+
+		private LinkedList<Spiller.Partition>	parts;
+
+		private Spiller.Partition				part;
+
+		private CloseableIterator<Tuple2<Object, Object>>	stream;
+
+		private boolean							streamLeft;
+
+		private Set<K>							matched;
+
+		public Joiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
 		{
-			return super.filter(pred).toPair();
+			this.that = that;
+			this.kol = kol;
+			this.kor = kor;
+			this.vol = vol;
+			this.vor = vor;
+			this.spiller = spiller;
+			this.missM = valLeft();
+			this.missN = valRight();
 		}
 
-		/**
-		 * Folder each value within same group.
-		 * 
-		 * @param initiator
-		 * @param folder
-		 * @return
-		 */
-		public <W> PairCanal<K, W> foldByKey(final Producer<W> initiator, final Reducer<V, W> folder)
+		@Override
+		public void begin() throws Exception
 		{
-			if (initiator == null || folder == null)
+			if (spiller == null)
 			{
-				throw new NullPointerException();
+				this.here = group(this.upstream(), this.kol, this.vol);
+				this.there = group(that.build(), this.kor, this.vor);
+				this.iterK = keys(here.keySet(), there.keySet()).iterator();
 			}
-			return this.groupByKey().mapValues(new Mapper<Canal<V>, W>()
+			else
 			{
-				@Override
-				public W map(Canal<V> el) throws Exception
-				{
-					return el.fold(initiator.produce(), folder);
-				}
-			});
+				this.settle();
+			}
+			this.isEmptyK = !this.nextK();
 		}
 
-		/**
-		 * Full join with another Canal.
-		 * 
-		 * @param that
-		 * @return
-		 */
-		public <W> JoinCanal<K, Option<V>, Option<W>> fullJoin(Canal<Tuple2<K, W>> that)
+		@Override
+		public void close() throws Exception
 		{
-			return fullJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
-					.<K, Tuple2<Option<V>, Option<W>>> toPair().toJoin();
+			try
+			{
+				this.closeStream();
+				if (parts != null)
+				{
+					for (Spiller.Partition part : parts)
+					{
+						part.delete();
+					}
+					parts.clear();
+				}
+			}
+			finally
+			{
+				super.close();
+			}
 		}
 
-		/**
-		 * Gather each value into correspondent group identified by same key.
-		 * 
-		 * @return
-		 */
-		public PairCanal<K, Canal<V>> groupByKey()
+		private void closeStream()
 		{
-			return this.groupBy(new DefaultKop<Tuple2<K, V>, K>(), new DefaultVop<Tuple2<K, V>, V>());
+			if (stream != null)
+			{
+				try
+				{
+					stream.close();
+				}
+				catch (Exception e)
+				{
+				}
+				stream = null;
+			}
+			if (part != null)
+			{
+				part.delete();
+				part = null;
+			}
 		}
 
-		/**
-		 * Filter pairs whose value statisfy the pred.
-		 * 
-		 * @param pred
-		 * @return
-		 */
-		public PairCanal<K, V> having(final Filter<? super V> pred)
+		@Override
+		public boolean hasNext()
 		{
-			if (pred == null)
+			if (isEmptyK)
 			{
-				throw new NullPointerException();
+				return false;
 			}
-			return this.filter(new Filter<Tuple2<K, V>>()
+
+			while (true)
 			{
-				@Override
-				public boolean filter(Tuple2<K, V> el) throws Exception
+				if (iterV.hasNext())
 				{
-					return pred.filter(el._2);
+					n = valRight(iterV.next());
+					hasN = 2;
+				}
+				else if (isEmptyV && needRight(isEmptyV))
+				{
+					n = missN;
+					hasN = 1;
+				}
+				else
+				{
+					hasN = 0;
 				}
-			}).toPair();
-		}
 
-		@Override
-		public PairCanal<K, V> intersection(Canal<? extends Tuple2<K, V>> that)
-		{
-			return super.intersection(that).toPair();
+				if (hasN < 2 || hasM < 2)
+				{
+					if (iterU.hasNext())
+					{
+						m = valLeft(iterU.next());
+						hasM = 2;
+						if (hasN == 0)
+						{
+							iterV = listV.iterator();
+						}
+					}
+					else if (isEmptyU && needLeft(isEmptyU))
+					{
+						m = missM;
+						hasM = 1;
+					}
+					else
+					{
+						hasM = 0;
+					}
+				}
+
+				if (hasN <= 1 && hasM <= 1)
+				{
+					if (!this.nextK())
+					{
+						return false;
+					}
+				}
+				else if (hasN > 0 && hasM > 0)
+				{
+					break;
+				}
+			}
+
+			return true;
 		}
 
+		protected abstract Set<K> keys(Set<K> left, Set<K> right);
+
+		protected abstract boolean needLeft(boolean isEmpty);
+
+		protected abstract boolean needRight(boolean isEmpty);
+
 		@Override
-		public PairCanal<K, V> intersection(Canal<? extends Tuple2<K, V>> that,
-				HashedEquality<? super Tuple2<K, V>> cmp)
+		public Tuple2<K, Tuple2<M, N>> next()
 		{
-			return super.intersection(that, cmp).toPair();
+			return Tuple.of(k, Tuple.of(m, n));
 		}
 
-		@Override
-		public PairCanal<K, V> intersection(Canal<? extends Tuple2<K, V>> that, Mapper<? super Tuple2<K, V>, ?> xtr)
-		{
-			return super.intersection(that, xtr).toPair();
-		}
-
-		/**
-		 * Inner join with another Canal.
-		 * 
-		 * @param that
-		 * @return
-		 */
-		public <W> JoinCanal<K, V, W> join(Canal<Tuple2<K, W>> that)
+		@SuppressWarnings("unchecked")
+		private boolean nextK()
 		{
-			return join(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
-					.<K, Tuple2<V, W>> toPair().toJoin();
-		}
+			while (true)
+			{
+				if (stream != null && stream.hasNext())
+				{
+					// Each streamed element is joined as a group of its own.
+					Tuple2<Object, Object> t = stream.next();
+					k = (K) t._1;
+					matched.add(k);
+					if (streamLeft)
+					{
+						listU = Collections.singletonList((U) t._2);
+						listV = there.get(k);
+					}
+					else
+					{
+						listU = here.get(k);
+						listV = Collections.singletonList((V) t._2);
+					}
+					break;
+				}
+				else if (stream != null)
+				{
+					// Then the keys of the built side which were never matched.
+					this.closeStream();
+					Map<K, ?> built = streamLeft ? there : here;
+					built.keySet().removeAll(matched);
+					matched = null;
+					this.iterK = built.keySet().iterator();
+				}
+				else if (iterK != null && iterK.hasNext())
+				{
+					k = iterK.next();
+					listU = here.get(k);
+					listV = there.get(k);
+					break;
+				}
+				else if (!this.nextPartition())
+				{
+					return false;
+				}
+			}
 
-		/**
-		 * Pass each key of pair to downstream.
-		 * 
-		 * @return
-		 */
-		public Canal<K> keys()
-		{
-			return this.map(new DefaultKop<Tuple2<K, V>, K>());
+			listU = listU != null ? listU : emptyU;
+			listV = listV != null ? listV : emptyV;
+			isEmptyU = listU.isEmpty();
+			isEmptyV = listV.isEmpty();
+			iterU = listU.iterator();
+			iterV = listV.iterator();
+			hasM = 0;
+			hasN = 0;
+
+			return true;
 		}
 
 		/**
-		 * Left join with another Canal.
+		 * Load the smaller side of the next spilled partition into memory and
+		 * stream the larger side through it.
 		 * 
-		 * @param that
-		 * @return
+		 * @return false if there is no more partition.
 		 */
-		public <W> JoinCanal<K, V, Option<W>> leftJoin(Canal<Tuple2<K, W>> that)
-		{
-			return leftJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
-					.<K, Tuple2<V, Option<W>>> toPair().toJoin();
-		}
-
-		@Override
-		public PairCanal<K, V> limit(int limit)
-		{
-			return super.limit(limit).toPair();
-		}
-
-		public <L> PairCanal<L, V> mapKey(final Mapper<? super K, ? extends L> mapper)
+		private boolean nextPartition()
 		{
-			if (mapper == null)
+			if (parts == null)
 			{
-				throw new NullPointerException();
+				return false;
 			}
-			return this.map(new Mapper<Tuple2<K, V>, Tuple2<L, V>>()
+
+			try
 			{
-				@Override
-				public Tuple2<L, V> map(Tuple2<K, V> el) throws Exception
+				Spiller.Partition part = null;
+				while ((part = parts.poll()) != null)
 				{
-					return Tuple.of((L) mapper.map(el._1), el._2);
+					if (Math.min(part.size(0), part.size(1)) > spiller.memory() && part.depth < Spiller.MAX_DEPTH)
+					{
+						parts.addAll(0, part.split());
+						continue;
+					}
+					this.part = part;
+					this.streamLeft = part.size(0) >= part.size(1);
+					if (streamLeft)
+					{
+						this.here = new LinkedHashMap<K, List<U>>();
+						this.there = part.group(1);
+					}
+					else
+					{
+						this.here = part.group(0);
+						this.there = new LinkedHashMap<K, List<V>>();
+					}
+					this.matched = new HashSet<K>();
+					this.stream = part.iterator(streamLeft ? 0 : 1);
+					this.iterK = null;
+					return true;
 				}
-			}).toPair();
-		}
-
-		/**
-		 * Map each value in pair into a new value.
-		 * 
-		 * @param mapper
-		 * @return
-		 */
-		public <W> PairCanal<K, W> mapValues(final Mapper<? super V, ? extends W> mapper)
-		{
-			if (mapper == null)
+				return false;
+			}
+			catch (RuntimeException e)
 			{
-				throw new NullPointerException();
+				throw e;
 			}
-			return this.map(new Mapper<Tuple2<K, V>, Tuple2<K, W>>()
+			catch (Exception e)
 			{
-				@Override
-				public Tuple2<K, W> map(Tuple2<K, V> el) throws Exception
-				{
-					return Tuple.of(el._1, (W) mapper.map(el._2));
-				}
-			}).toPair();
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public long retained()
+		{
+			return (here == null ? 0 : here.size()) + (there == null ? 0 : there.size());
 		}
 
 		/**
-		 * Map each value in pair into a new value according to its key.
+		 * Group both sides in memory until the memory budget is exceeded, then
+		 * partition the elements into spill files by hash of their keys.
 		 * 
-		 * @param mapper
-		 *            {@code (V,K) -> W}
-		 * @return
+		 * @throws Exception
 		 */
-		public <W> PairCanal<K, W> mapValues(final StatefulMapper<? super V, ? super K, ? extends W> mapper)
+		protected void settle() throws Exception
 		{
-			if (mapper == null)
-			{
-				throw new NullPointerException();
-			}
-			return this.map(new Mapper<Tuple2<K, V>, Tuple2<K, W>>()
+			Map<K, List<U>> left = new LinkedHashMap<K, List<U>>();
+			Map<K, List<V>> right = new LinkedHashMap<K, List<V>>();
+			Pond<?, R> pond = that.build();
+			try
 			{
-				@Override
-				public Tuple2<K, W> map(Tuple2<K, V> el) throws Exception
+				int count = 0;
+				R r = null;
+				L l = null;
+				K key = null;
+				List<U> us = null;
+				List<V> vs = null;
+
+				while (count < spiller.memory() && pond.hasNext())
 				{
-					return Tuple.of(el._1, (W) mapper.map(el._2, el._1));
+					r = pond.next();
+					if ((vs = right.get(key = kor.map(r))) == null)
+					{
+						right.put(key, vs = new ArrayList<V>());
+					}
+					vs.add(vor.map(r));
+					count++;
 				}
-			}).toPair();
-		}
 
-		public <W> PairCanal<K, W> mapValuesCast(final Class<W> cls)
-		{
-			if (cls == null)
-			{
-				throw new NullPointerException();
-			}
-			return this.mapValues(new Mapper<V, W>()
-			{
-				@Override
-				public W map(V el) throws Exception
+				while (count < spiller.memory() && upstream().hasNext())
 				{
-					return Tools.as(el, cls);
+					l = upstream().next();
+					if ((us = left.get(key = kol.map(l))) == null)
+					{
+						left.put(key, us = new ArrayList<U>());
+					}
+					us.add(vol.map(l));
+					count++;
 				}
-			});
-		}
-
-		public <W> PairCanal<K, W> mapValuesCasted(Class<W> cls)
-		{
-			return this.mapValuesCast(cls).noNullValue();
-		}
 
-		public PairCanal<K, V> noNullKey()
-		{
-			return this.filter(new Filter<Tuple2<K, V>>()
-			{
-				@Override
-				public boolean filter(Tuple2<K, V> el) throws Exception
+				if (!pond.hasNext() && !upstream().hasNext())
 				{
-					return el._1 != null;
+					this.here = left;
+					this.there = right;
+					this.iterK = keys(here.keySet(), there.keySet()).iterator();
+					return;
 				}
-			});
-		}
 
-		public PairCanal<K, V> noNullValue()
-		{
-			return this.filter(new Filter<Tuple2<K, V>>()
+				Spiller.Partition[] ps = spiller.partitions(2, 0);
+				try
+				{
+					for (Entry<K, List<U>> entry : left.entrySet())
+					{
+						for (U u : entry.getValue())
+						{
+							ps[spiller.partition(entry.getKey(), 0)].add(0, entry.getKey(), u);
+						}
+					}
+					left = null;
+
+					for (Entry<K, List<V>> entry : right.entrySet())
+					{
+						for (V v : entry.getValue())
+						{
+							ps[spiller.partition(entry.getKey(), 0)].add(1, entry.getKey(), v);
+						}
+					}
+					right = null;
+
+					while (upstream().hasNext())
+					{
+						l = upstream().next();
+						key = kol.map(l);
+						ps[spiller.partition(key, 0)].add(0, key, vol.map(l));
+					}
+
+					while (pond.hasNext())
+					{
+						r = pond.next();
+						key = kor.map(r);
+						ps[spiller.partition(key, 0)].add(1, key, vor.map(r));
+					}
+
+					this.parts = new LinkedList<Spiller.Partition>(spiller.close(ps));
+				}
+				catch (Exception e)
+				{
+					for (Spiller.Partition part : ps)
+					{
+						part.delete();
+					}
+					throw e;
+				}
+			}
+			finally
 			{
-				@Override
-				public boolean filter(Tuple2<K, V> el) throws Exception
+				try
 				{
-					return el._2 != null;
+					pond.close();
 				}
-			});
+				catch (Exception e)
+				{
+				}
+			}
 		}
 
-		@Override
-		public PairCanal<K, V> peek(Action<? super Tuple2<K, V>> action)
+		protected abstract M valLeft();
+
+		protected abstract M valLeft(U u);
+
+		protected abstract N valRight();
+
+		protected abstract N valRight(V v);
+	}
+
+	protected static abstract class JoinOp<L, R, K, U, V>
+	{
+		protected final Canal<R>		that;
+
+		protected final Mapper<L, K>	kol;
+
+		protected final Mapper<R, K>	kor;
+
+		protected final Mapper<L, U>	vol;
+
+		protected final Mapper<R, V>	vor;
+
+		protected final Spiller			spiller;
+
+		protected final int				hint;
+
+		public JoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
 		{
-			return super.peek(action).toPair();
+			this(that, kol, kor, vol, vor, spiller, JOIN_HASH);
 		}
 
-		/**
-		 * Reduce each value within same group.
-		 * 
-		 * @param reducer
-		 * @return
-		 */
-		public PairCanal<K, V> reduceByKey(final Reducer<V, V> reducer)
+		public JoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller, int hint)
 		{
-			if (reducer == null)
+			if (that == null)
 			{
 				throw new NullPointerException();
 			}
-			return this.groupByKey().mapValues(new Mapper<Canal<V>, V>()
+			if (hint != JOIN_HASH && hint != JOIN_STREAM)
 			{
-				@Override
-				public V map(Canal<V> el)
-				{
-					return el.reduce(reducer).get();
-				}
-			});
-		}
-
-		@Override
-		public PairCanal<K, V> reverse()
-		{
-			return super.reverse().toPair();
+				throw new IllegalArgumentException();
+			}
+			this.that = that;
+			this.kol = kol;
+			this.kor = kor;
+			this.vol = vol;
+			this.vor = vor;
+			this.spiller = spiller;
+			this.hint = hint;
 		}
 
 		/**
-		 * Right join with another Canal.
+		 * Whether to stream the left side through the hash table of the right
+		 * side instead of grouping both sides. Streaming changes the order of
+		 * output, so it is only taken on request.
 		 * 
-		 * @param that
 		 * @return
 		 */
-		public <W> JoinCanal<K, Option<V>, W> rightJoin(Canal<Tuple2<K, W>> that)
+		protected boolean isStreaming()
 		{
-			return rightJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
-					.<K, Tuple2<Option<V>, W>> toPair().toJoin();
+			return hint == JOIN_STREAM;
 		}
+	}
 
-		@Override
-		public PairCanal<K, V> skip(int offset)
+	public static interface JointMapper<L, R, K, V>
+	{
+		public V map(L left, R right, K key);
+	}
+
+	protected static class LastOp<E> implements Evaluator<E, Option<E>>
+	{
+		protected final Filter<? super E> filter;
+
+		public LastOp(Filter<? super E> filter)
 		{
-			return super.skip(offset).toPair();
+			if (filter == null)
+			{
+				throw new NullPointerException();
+			}
+			this.filter = filter;
 		}
 
 		@Override
-		@SuppressWarnings("rawtypes")
-		public PairCanal<K, V> sortBy(Mapper<? super Tuple2<K, V>, Comparable> cmp)
+		public Terminal<E, Option<E>> newPond()
 		{
-			return super.sortBy(cmp).toPair();
+			return new AbstractTerminal<E, Option<E>>()
+			{
+				private boolean	found	= false;
+
+				private E		result;
+
+				@Override
+				public void begin() throws Exception
+				{
+					try
+					{
+						E find = null;
+						while (upstream().hasNext())
+						{
+							find = upstream().next();
+							if (filter.filter(find))
+							{
+								result = find;
+								found = true;
+							}
+						}
+					}
+					finally
+					{
+						try
+						{
+							this.end();
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
+
+				@Override
+				public Option<E> get()
+				{
+					return found ? Canal.some(result) : Canal.<E> none();
+				}
+			};
 		}
+	}
 
-		@Override
-		@SuppressWarnings("rawtypes")
-		public PairCanal<K, V> sortBy(Mapper<? super Tuple2<K, V>, Comparable>... cmps)
+	protected static class LeftJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, U, Option<V>>
+	{
+		public LeftJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
 		{
-			return super.sortBy(cmps).toPair();
+			super(that, kol, kor, vol, vor, spiller);
 		}
 
 		@Override
-		public PairCanal<K, V> sortBy(Object... orders)
+		protected Set<K> keys(Set<K> left, Set<K> right)
 		{
-			return super.sortBy(orders).toPair();
+			return left;
 		}
 
 		@Override
-		public PairCanal<K, V> sortWith()
+		protected boolean needLeft(boolean isEmpty)
 		{
-			return super.sortWith().toPair();
+			return !isEmpty;
 		}
 
 		@Override
-		public PairCanal<K, V> sortWith(boolean ascend)
+		protected boolean needRight(boolean isEmpty)
 		{
-			return super.sortWith(ascend).toPair();
+			return true;
 		}
 
 		@Override
-		public PairCanal<K, V> sortWith(Comparator<? super Tuple2<K, V>> cmp)
+		protected U valLeft()
 		{
-			return super.sortWith(cmp).toPair();
+			return null;
 		}
 
 		@Override
-		public PairCanal<K, V> sortWith(Comparator<? super Tuple2<K, V>> cmp, boolean ascend)
+		protected U valLeft(U u)
 		{
-			return super.sortWith(cmp, ascend).toPair();
+			return u;
 		}
 
 		@Override
-		public PairCanal<K, V> subtract(Canal<? extends Tuple2<K, V>> that)
+		protected Option<V> valRight()
 		{
-			return super.subtract(that).toPair();
+			return Option.none();
 		}
 
 		@Override
-		public PairCanal<K, V> subtract(Canal<? extends Tuple2<K, V>> that, HashedEquality<? super Tuple2<K, V>> cmp)
+		protected Option<V> valRight(V v)
 		{
-			return super.subtract(that, cmp).toPair();
+			return Option.some(v);
+		}
+	}
+
+	protected static class LeftJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
+			implements Converter<L, Tuple2<K, Tuple2<U, Option<V>>>>
+	{
+		public LeftJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller, int hint)
+		{
+			super(that, kol, kor, vol, vor, spiller, hint);
 		}
 
 		@Override
-		public PairCanal<K, V> subtract(Canal<? extends Tuple2<K, V>> that, Mapper<? super Tuple2<K, V>, ?> xtr)
+		public Pond<L, Tuple2<K, Tuple2<U, Option<V>>>> newPond()
 		{
-			return super.subtract(that, xtr).toPair();
+			if (this.isStreaming())
+			{
+				return new LeftStreamJoiner<L, R, K, U, V>(that, kol, kor, vol, vor);
+			}
+			else
+			{
+				return new LeftJoiner<L, R, K, U, V>(that, kol, kor, vol, vor, spiller);
+			}
 		}
+	}
 
-		@SuppressWarnings("unchecked")
-		public <L, R> JoinCanal<K, L, R> toJoin()
+	protected static class LeftMergeJoinOp<K, V, W> extends MergeJoinOp<K, V, W, V, Option<W>>
+	{
+		public LeftMergeJoinOp(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
 		{
-			return (JoinCanal<K, L, R>) new JoinCanal<K, L, R>().setUpstream(this).setOperator(
-					new MapOp<Tuple2<K, V>, Tuple2<K, Tuple2<L, R>>>(new Mapper<Tuple2<K, V>, Tuple2<K, Tuple2<L, R>>>()
-					{
-						@Override
-						public Tuple2<K, Tuple2<L, R>> map(Tuple2<K, V> el)
-						{
-							return (Tuple2<K, Tuple2<L, R>>) el;
-						}
-					}));
+			super(that, cmp);
 		}
 
 		@Override
-		public PairCanal<K, V> uncache()
+		protected boolean needLeft()
 		{
-			return super.uncache().toPair();
+			return true;
 		}
 
 		@Override
-		public PairCanal<K, V> union(Canal<? extends Tuple2<K, V>> that)
+		protected boolean needRight()
 		{
-			return super.union(that).toPair();
+			return false;
 		}
 
-		/**
-		 * Pass each value of pair to downstream.
-		 * 
-		 * @return
-		 */
-		public Canal<V> values()
+		@Override
+		protected V valLeft()
 		{
-			return this.map(new DefaultVop<Tuple2<K, V>, V>());
+			return null;
 		}
-	}
-
-	protected static class PeekOp<E> implements Converter<E, E>
-	{
-		protected final Action<? super E> action;
 
-		public PeekOp(Action<? super E> action)
+		@Override
+		protected V valLeft(V v)
 		{
-			if (action == null)
-			{
-				throw new NullPointerException();
-			}
-			this.action = action;
+			return v;
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		protected Option<W> valRight()
 		{
-			return new Creek<E, E>()
-			{
-				@Override
-				public E next()
-				{
-					E el = upstream().next();
-					try
-					{
-						action.action(el);
-					}
-					catch (RuntimeException e)
-					{
-						throw e;
-					}
-					catch (Exception e)
-					{
-						throw new RuntimeException(e);
-					}
-					return el;
-				}
-			};
+			return Option.none();
 		}
-	}
-
-	protected static interface Pond<I, O> extends CloseableIterator<O>
-	{
-		void begin() throws Exception;
 
 		@Override
-		void close() throws Exception;
-
-		void end() throws Exception;
-
-		boolean hasBegun();
-
-		void setBegun();
-
-		Pond<?, I> upstream();
-
-		void upstream(Pond<?, I> up);
+		protected Option<W> valRight(W w)
+		{
+			return Option.some(w);
+		}
 	}
 
-	protected static class ProducedIterator<E> implements Iterator<E>
+	protected static class LeftStreamJoiner<L, R, K, U, V> extends StreamJoiner<L, R, K, U, V, Option<V>>
 	{
-		protected final Producer<E>	nexter;
-
-		private boolean				has;
-
-		private E					next;
-
-		public ProducedIterator(Producer<E> nexter)
+		public LeftStreamJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol,
+				Mapper<R, V> vor)
 		{
-			this.nexter = nexter;
-			this.toNext();
+			super(that, kol, kor, vol, vor);
 		}
 
 		@Override
-		public boolean hasNext()
+		protected boolean needMiss()
 		{
-			return has;
+			return true;
 		}
 
 		@Override
-		public E next()
+		protected Option<V> valRight()
 		{
-			try
-			{
-				return next;
-			}
-			finally
-			{
-				this.toNext();
-			}
+			return Option.none();
 		}
 
 		@Override
-		public void remove()
-		{
-			throw new UnsupportedOperationException();
-		}
-
-		protected void toNext()
+		protected Option<V> valRight(V v)
 		{
-			try
-			{
-				this.next = this.nexter.produce();
-				this.has = true;
-			}
-			catch (NoMoreElement e)
-			{
-				this.has = false;
-				this.next = null;
-			}
-			catch (RuntimeException e)
-			{
-				throw e;
-			}
-			catch (Exception e)
-			{
-				throw new RuntimeException(e);
-			}
+			return Option.some(v);
 		}
 	}
 
-	public static interface Producer<E>
+	protected static class LimitOp<E> implements Converter<E, E>
 	{
-		E produce() throws Exception;
-	}
-
-	protected static class ReduceOp<E> implements Evaluator<E, Option<E>>
-	{
-		protected final Reducer<E, E>	reducer;
-
-		protected final Filter<E>		until;
+		protected final int limit;
 
-		public ReduceOp(Reducer<E, E> reducer, Filter<E> until)
+		public LimitOp(int limit)
 		{
-			if (reducer == null)
-			{
-				throw new NullPointerException();
-			}
-			this.reducer = reducer;
-			this.until = until;
+			this.limit = limit;
 		}
 
 		@Override
-		public Terminal<E, Option<E>> newPond()
+		public Pond<E, E> newPond()
 		{
-			return new AbstractTerminal<E, Option<E>>()
+			return new Wheel<E, E>()
 			{
-				private boolean	empty	= true;
-
-				private E		result;
-
 				@Override
-				public void begin() throws Exception
+				public void drain(final Sink<? super E> sink) throws Exception
 				{
-					try
+					if (limit >= 0 && index >= limit)
 					{
-						E el = null;
-						boolean meet = until == null;
-						while (upstream().hasNext())
-						{
-							el = upstream().next();
-							if (empty)
-							{
-								empty = false;
-								result = el;
-							}
-							else
-							{
-								result = reducer.reduce(result, el);
-							}
-							if (until != null && until.filter(result))
-							{
-								meet = true;
-								break;
-							}
-						}
-
-						if (!meet)
-						{
-							empty = true;
-						}
+						return;
 					}
-					finally
+					upstream().drain(new Sink<E>()
 					{
-						try
-						{
-							this.end();
-						}
-						catch (Exception e)
+						@Override
+						public boolean accept(E el) throws Exception
 						{
+							index++;
+							return sink.accept(el) && (limit < 0 || index < limit);
 						}
-					}
+					});
 				}
 
 				@Override
-				public Option<E> get()
+				public boolean hasNext()
 				{
-					return empty ? Canal.<E> none() : Canal.some(result);
+					return (limit < 0 || index < limit) && upstream().hasNext();
 				}
-			};
-		}
-	}
-
-	protected static class ReverseComparable<D extends Comparable<D>> implements Comparable<D>
-	{
-		protected final D data;
-
-		public ReverseComparable(D data)
-		{
-			this.data = data;
-		}
-
-		@Override
-		public int compareTo(D o)
-		{
-			return ((ReverseComparable<D>) o).data.compareTo(this.data);
-		}
-	}
 
-	protected static class ReverseOp<E> implements Converter<E, E>
-	{
-		@Override
-		public Pond<E, E> newPond()
-		{
-			return new Heaper<E>()
-			{
 				@Override
-				protected LinkedList<E> newSediment()
+				public E next()
 				{
-					return new LinkedList<E>();
+					index++;
+					return upstream().next();
 				}
 
 				@Override
-				protected void settle()
+				public boolean reset()
 				{
-					LinkedList<E> settle = (LinkedList<E>) this.sediment;
-
-					while (upstream().hasNext())
-					{
-						settle.addFirst(upstream().next());
-					}
+					index = 0;
+					return true;
 				}
 			};
 		}
 	}
 
-	protected static class RightJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, Option<U>, V>
+	/**
+	 * A Canal of primitive long values. The methods declared here pass the
+	 * values through without boxing, while the inherited methods see each
+	 * value as Long.
+	 */
+	public static class LongCanal extends Canal<Long>
 	{
-		public RightJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
-		{
-			super(that, kol, kor, vol, vor);
-		}
-
-		@Override
-		protected Set<K> keys(Set<K> left, Set<K> right)
+		protected LongCanal(LongSourcer sourcer)
 		{
-			return right;
-		}
-
-		@Override
-		protected boolean needLeft(boolean isEmpty)
-		{
-			return true;
-		}
-
-		@Override
-		protected boolean needRight(boolean isEmpty)
-		{
-			return !isEmpty;
+			this.setOperator(sourcer);
 		}
 
-		@Override
-		protected Option<U> valLeft()
+		/**
+		 * Widen each value into double.
+		 * 
+		 * @return
+		 */
+		public DoubleCanal asDouble()
 		{
-			return Option.none();
-		}
+			return new DoubleCanal(new DoubleSourcer()
+			{
+				@Override
+				public DoubleSource newPond()
+				{
+					final LongSource up = LongCanal.this.newSource();
+					return new DoubleSource()
+					{
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
 
-		@Override
-		protected Option<U> valLeft(U u)
-		{
-			return Option.some(u);
-		}
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
 
-		@Override
-		protected V valRight()
-		{
-			return null;
-		}
+						@Override
+						public boolean hasNext()
+						{
+							return up.hasNext();
+						}
 
-		@Override
-		protected V valRight(V v)
-		{
-			return v;
+						@Override
+						public double nextDouble()
+						{
+							return up.nextLong();
+						}
+					};
+				}
+			});
 		}
-	}
 
-	protected static class RightJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
-			implements Converter<L, Tuple2<K, Tuple2<Option<U>, V>>>
-	{
-		public RightJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		/**
+		 * Get the average of the values.
+		 * 
+		 * @return the average or none if this Canal was empty.
+		 */
+		public Option<Double> average()
 		{
-			super(that, kol, kor, vol, vor);
+			LongSource src = this.open();
+			try
+			{
+				long sum = 0;
+				long count = 0;
+				while (src.hasNext())
+				{
+					sum += src.nextLong();
+					count++;
+				}
+				return count == 0 ? Option.<Double> none() : Option.some((double) sum / count);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
 		@Override
-		public Pond<L, Tuple2<K, Tuple2<Option<U>, V>>> newPond()
+		public int count()
 		{
-			return new RightJoiner<L, R, K, U, V>(that, kol, kor, vol, vor);
+			LongSource src = this.open();
+			try
+			{
+				int count = 0;
+				while (src.hasNext())
+				{
+					src.nextLong();
+					count++;
+				}
+				return count;
+			}
+			finally
+			{
+				close(src);
+			}
 		}
-	}
 
-	public static class RowCanal<R extends Map<String, Object>> extends Canal<R>
-	{
-		public static <T extends Comparable<T>> Expr<Map<String, Object>, T> $(final String key)
+		public LongCanal filterLong(final LongFilter filter)
 		{
-			return new Expr<Map<String, Object>, T>()
+			if (filter == null)
+			{
+				throw new NullPointerException();
+			}
+			return new LongCanal(new LongSourcer()
 			{
-				@SuppressWarnings("unchecked")
 				@Override
-				public T map(Map<String, Object> el) throws Exception
+				public LongSource newPond()
 				{
-					return (T) el.get(key);
-				}
-			};
-		}
+					final LongSource up = LongCanal.this.newSource();
+					return new LongSource()
+					{
+						private boolean	ready;
 
-		@Override
-		public RowCanal<R> cache()
-		{
-			return super.cache().toRows();
-		}
+						private long	el;
 
-		@Override
-		public RowCanal<R> distinct()
-		{
-			return this.distinct(eql());
-		}
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
 
-		@Override
-		public RowCanal<R> distinct(HashedEquality<? super R> eql)
-		{
-			return super.distinct(eql).toRows();
-		}
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
 
-		@Override
-		public RowCanal<R> distinct(Mapper<? super R, ?> xtr)
-		{
-			return super.distinct(xtr).toRows();
+						@Override
+						public boolean hasNext()
+						{
+							try
+							{
+								while (!ready && up.hasNext())
+								{
+									el = up.nextLong();
+									ready = filter.filter(el);
+								}
+								return ready;
+							}
+							catch (RuntimeException e)
+							{
+								throw e;
+							}
+							catch (Exception e)
+							{
+								throw new RuntimeException(e);
+							}
+						}
+
+						@Override
+						public long nextLong()
+						{
+							if (!this.hasNext())
+							{
+								throw new NoSuchElementException();
+							}
+							ready = false;
+							return el;
+						}
+					};
+				}
+			});
 		}
 
-		protected HashedEquality<R> eql()
+		public long foldLong(long init, LongReducer folder)
 		{
-			return new HashedEquality<R>()
+			if (folder == null)
 			{
-				@Override
-				public boolean equals(R a, R b)
+				throw new NullPointerException();
+			}
+			LongSource src = this.open();
+			try
+			{
+				long res = init;
+				while (src.hasNext())
 				{
-					return Tools.equals(a, b);
+					res = folder.reduce(res, src.nextLong());
 				}
+				return res;
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+			finally
+			{
+				close(src);
+			}
+		}
 
-				@Override
-				public int hashCode(R obj)
+		/**
+		 * Count the values into {@code bins} buckets of equal width between
+		 * {@code min} (inclusive) and {@code max} (exclusive). Values out of
+		 * the range are ignored.
+		 * 
+		 * @param min
+		 * @param max
+		 * @param bins
+		 * @return the count of each bucket.
+		 */
+		public long[] histogram(long min, long max, int bins)
+		{
+			if (bins < 1 || min >= max)
+			{
+				throw new IllegalArgumentException();
+			}
+			long[] counts = new long[bins];
+			double width = (double) max - min;
+			LongSource src = this.open();
+			try
+			{
+				long el = 0;
+				while (src.hasNext())
 				{
-					if (obj == null)
-					{
-						return 0;
-					}
-					else
+					el = src.nextLong();
+					if (min <= el && el < max)
 					{
-						return Tools.hashCode(obj.values());
+						counts[Math.min((int) (((double) el - min) / width * bins), bins - 1)]++;
 					}
 				}
-			};
-		}
-
-		@Override
-		public RowCanal<R> filter(Filter<? super R> pred)
-		{
-			return super.filter(pred).toRows();
+				return counts;
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public RowCanal<R> intersection(Canal<? extends R> that)
+		public LongCanal mapLong(final LongMapper mapper)
 		{
-			return this.intersection(that, eql());
-		}
+			if (mapper == null)
+			{
+				throw new NullPointerException();
+			}
+			return new LongCanal(new LongSourcer()
+			{
+				@Override
+				public LongSource newPond()
+				{
+					final LongSource up = LongCanal.this.newSource();
+					return new LongSource()
+					{
+						@Override
+						public void begin() throws Exception
+						{
+							up.begin();
+						}
 
-		@Override
-		public RowCanal<R> intersection(Canal<? extends R> that, HashedEquality<? super R> cmp)
-		{
-			return super.intersection(that, cmp).toRows();
-		}
+						@Override
+						public void close() throws Exception
+						{
+							up.close();
+						}
 
-		@Override
-		public RowCanal<R> intersection(Canal<? extends R> that, Mapper<? super R, ?> xtr)
-		{
-			return super.intersection(that, xtr).toRows();
-		}
+						@Override
+						public boolean hasNext()
+						{
+							return up.hasNext();
+						}
 
-		@Override
-		public RowCanal<R> limit(int limit)
-		{
-			return super.limit(limit).toRows();
+						@Override
+						public long nextLong()
+						{
+							try
+							{
+								return mapper.map(up.nextLong());
+							}
+							catch (RuntimeException e)
+							{
+								throw e;
+							}
+							catch (Exception e)
+							{
+								throw new RuntimeException(e);
+							}
+						}
+					};
+				}
+			});
 		}
 
-		@Override
-		public RowCanal<R> peek(Action<? super R> action)
+		public Option<Long> max()
 		{
-			return super.peek(action).toRows();
+			LongSource src = this.open();
+			try
+			{
+				if (!src.hasNext())
+				{
+					return Option.none();
+				}
+				long max = src.nextLong(), el = 0;
+				while (src.hasNext())
+				{
+					if ((el = src.nextLong()) > max)
+					{
+						max = el;
+					}
+				}
+				return Option.some(max);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public RowCanal<R> reverse()
+		public Option<Long> min()
 		{
-			return super.reverse().toRows();
+			LongSource src = this.open();
+			try
+			{
+				if (!src.hasNext())
+				{
+					return Option.none();
+				}
+				long min = src.nextLong(), el = 0;
+				while (src.hasNext())
+				{
+					if ((el = src.nextLong()) < min)
+					{
+						min = el;
+					}
+				}
+				return Option.some(min);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public RowCanal<R> skip(int offset)
+		protected LongSource newSource()
 		{
-			return super.skip(offset).toRows();
+			return ((LongSourcer) this.getOperator()).newPond();
 		}
 
-		@Override
-		@SuppressWarnings("rawtypes")
-		public RowCanal<R> sortBy(Mapper<? super R, Comparable> cmp)
+		/**
+		 * Create and begin a new source of this Canal.
+		 * 
+		 * @return
+		 */
+		protected LongSource open()
 		{
-			return super.sortBy(cmp).toRows();
+			LongSource src = this.newSource();
+			try
+			{
+				src.begin();
+				return src;
+			}
+			catch (RuntimeException e)
+			{
+				close(src);
+				throw e;
+			}
+			catch (Exception e)
+			{
+				close(src);
+				throw new RuntimeException(e);
+			}
 		}
 
-		@Override
-		@SuppressWarnings("rawtypes")
-		public RowCanal<R> sortBy(Mapper<? super R, Comparable>... cmps)
+		/**
+		 * Get the sum of the values.
+		 * 
+		 * @return
+		 */
+		public long sum()
 		{
-			return super.sortBy(cmps).toRows();
+			LongSource src = this.open();
+			try
+			{
+				long sum = 0;
+				while (src.hasNext())
+				{
+					sum += src.nextLong();
+				}
+				return sum;
+			}
+			finally
+			{
+				close(src);
+			}
 		}
 
-		@Override
-		public RowCanal<R> sortBy(Object... orders)
+		public long[] toArray()
 		{
-			return super.sortBy(orders).toRows();
+			LongSource src = this.open();
+			try
+			{
+				long[] array = new long[16];
+				int size = 0;
+				while (src.hasNext())
+				{
+					if (size == array.length)
+					{
+						array = Arrays.copyOf(array, size << 1);
+					}
+					array[size++] = src.nextLong();
+				}
+				return size == array.length ? array : Arrays.copyOf(array, size);
+			}
+			finally
+			{
+				close(src);
+			}
 		}
+	}
 
-		@Override
-		public RowCanal<R> sortWith()
-		{
-			return super.sortWith().toRows();
-		}
+	public static interface LongFilter
+	{
+		public boolean filter(long el) throws Exception;
+	}
 
-		@Override
-		public RowCanal<R> sortWith(boolean ascend)
-		{
-			return super.sortWith(ascend).toRows();
-		}
+	public static interface LongMapper
+	{
+		public long map(long el) throws Exception;
+	}
 
-		@Override
-		public RowCanal<R> sortWith(Comparator<? super R> cmp)
-		{
-			return super.sortWith(cmp).toRows();
-		}
+	public static interface LongReducer
+	{
+		public long reduce(long res, long el) throws Exception;
+	}
 
+	/**
+	 * The source of primitive long values, {@link #next()} would box the
+	 * value returned by {@link #nextLong()}.
+	 */
+	protected static abstract class LongSource extends Source<Long>
+	{
 		@Override
-		public RowCanal<R> sortWith(Comparator<? super R> cmp, boolean ascend)
+		public Long next()
 		{
-			return super.sortWith(cmp, ascend).toRows();
+			return this.nextLong();
 		}
 
-		@Override
-		public RowCanal<R> subtract(Canal<? extends R> that)
-		{
-			return this.subtract(that, eql());
-		}
+		public abstract long nextLong();
+	}
 
+	protected static interface LongSourcer extends Sourcer<Long>
+	{
 		@Override
-		public RowCanal<R> subtract(Canal<? extends R> that, HashedEquality<? super R> cmp)
-		{
-			return super.subtract(that, cmp).toRows();
-		}
+		public LongSource newPond();
+	}
 
-		@Override
-		public RowCanal<R> subtract(Canal<? extends R> that, Mapper<? super R, ?> xtr)
-		{
-			return super.subtract(that, xtr).toRows();
-		}
+	protected static class MapOp<I, O> implements Converter<I, O>
+	{
+		protected final Mapper<? super I, ? extends O> mapper;
 
-		@Override
-		public RowCanal<R> uncache()
+		public MapOp(Mapper<? super I, ? extends O> mapper)
 		{
-			return super.uncache().toRows();
+			if (mapper == null)
+			{
+				throw new NullPointerException();
+			}
+			this.mapper = mapper;
 		}
 
 		@Override
-		public RowCanal<R> union(Canal<? extends R> that)
-		{
-			return super.union(that).toRows();
-		}
-
-		public RowCanal<R> window(final Aggregator<? extends Map<String, Object>, ?>... aggrs)
+		public Pond<I, O> newPond()
 		{
-			return super.window(new StatefulMapper<R, Aggregator<R, ?>[], R>()
+			return new Creek<I, O>()
 			{
 				@Override
-				public R map(R el, Aggregator<R, ?>[] st) throws Exception
+				public void drain(final Sink<? super O> sink) throws Exception
 				{
-					return el;
+					upstream().drain(new Sink<I>()
+					{
+						@Override
+						public boolean accept(I el) throws Exception
+						{
+							return sink.accept(mapper.map(el));
+						}
+					});
 				}
-			}, new WindowFunctionResultSetter<R>()
-			{
+
 				@Override
-				public void set(R row, int idx, Aggregator<R, ?> agg, Object res) throws Exception
+				public boolean reset()
 				{
-					row.put((String) agg.as(), res);
+					return true;
 				}
-			}, aggrs).toRows();
+
+				@Override
+				public O next()
+				{
+					try
+					{
+						return mapper.map(upstream().next());
+					}
+					catch (RuntimeException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+				}
+			};
 		}
 	}
 
-	public static class SelfMapper<E> implements Mapper<E, E>
+	@SuppressWarnings("rawtypes")
+	protected static class MappedComparator<O> implements Comparator<O>
 	{
+		protected final Mapper<O, Comparable> mapper;
+
+		public MappedComparator(Mapper<O, Comparable> mapper)
+		{
+			this.mapper = mapper;
+		}
+
+		@SuppressWarnings("unchecked")
 		@Override
-		public E map(E el)
+		public int compare(O o1, O o2)
 		{
-			return el;
+			try
+			{
+				Comparable a = mapper.map(o1), b = mapper.map(o2);
+
+				if (a == b)
+				{
+					return 0;
+				}
+				else if (a == null)
+				{
+					return -1;
+				}
+				else if (b == null)
+				{
+					return 1;
+				}
+				else
+				{
+					return a.compareTo(b);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
-	protected static class SimpleWindowRanger<I> implements WindowRanger<I>
+	protected static class MapWithStateOp<I, S, O> implements Converter<I, O>
 	{
-		@Override
-		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd)
+		protected final Producer<S>						stater;
+
+		protected final StatefulMapper<? super I, S, O>	mapper;
+
+		public MapWithStateOp(Producer<S> stater, StatefulMapper<? super I, S, O> mapper)
 		{
-			range[0] = 0;
-			range[1] = levelEnd;
+			if (stater == null || mapper == null)
+			{
+				throw new NullPointerException();
+			}
+			this.stater = stater;
+			this.mapper = mapper;
 		}
 
 		@Override
-		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		public Pond<I, O> newPond()
 		{
-			return levelEnd;
+			return new Creek<I, O>()
+			{
+				private boolean	init	= false;
+
+				private S		stat	= null;
+
+				@Override
+				public O next()
+				{
+					try
+					{
+						if (!init)
+						{
+							stat = stater.produce();
+							init = true;
+						}
+						return mapper.map(upstream().next(), stat);
+					}
+					catch (RuntimeException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+				}
+			};
 		}
 	}
 
-	public static class SingleUseIterable<E> implements Iterable<E>
+	protected static class MatchFindIterable implements Iterable<Matcher>
 	{
-		protected final Iterator<E> iter;
+		protected final Pattern			regex;
 
-		public SingleUseIterable(Iterator<E> iter)
+		protected final CharSequence	text;
+
+		public MatchFindIterable(Pattern regex, CharSequence text)
 		{
-			if (iter == null)
+			if (regex == null || text == null)
 			{
 				throw new NullPointerException();
 			}
-			this.iter = iter;
-		}
-
-		public Canal<E> canal()
-		{
-			return Canal.of(this);
+			this.regex = regex;
+			this.text = text;
 		}
 
 		@Override
-		public Iterator<E> iterator()
+		public Iterator<Matcher> iterator()
 		{
-			return iter;
+			return new MatchFindIterator(regex, text);
 		}
 	}
 
-	protected static class SkipOp<E> implements Converter<E, E>
+	protected static class MatchFindIterator implements Iterator<Matcher>
 	{
-		protected final int offset;
+		protected final Matcher	m;
 
-		public SkipOp(int offset)
+		private Boolean			find;
+
+		public MatchFindIterator(Pattern regex, CharSequence text)
 		{
-			this.offset = offset;
+			this.m = regex.matcher(text);
+			this.find = m.find();
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		public boolean hasNext()
 		{
-			return new Wheel<E, E>()
+			if (find == null)
 			{
-				@Override
-				public void begin()
-				{
-					while (index++ < offset && upstream().hasNext())
-					{
-						upstream().next();
-					}
-				}
+				find = m.find();
+			}
+			return find;
+		}
 
-				@Override
-				public E next()
-				{
-					return upstream().next();
-				}
-			};
+		@Override
+		public Matcher next()
+		{
+			try
+			{
+				return m;
+			}
+			finally
+			{
+				find = null;
+			}
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
 		}
 	}
 
-	protected static class SlidingOp<E> implements Converter<E, Iterable<E>>
+	/**
+	 * Join two pair sources which are both sorted by key, walking them in
+	 * lockstep and buffering only the group of right values under current key.
+	 */
+	protected static class MergeJoiner<K, V, W, M, N> extends AbstractPond<Tuple2<K, V>, Tuple2<K, Tuple2<M, N>>>
 	{
-		protected final int	size;
+		protected final MergeJoinOp<K, V, W, M, N>	op;
 
-		protected final int	step;
+		protected final Comparator<? super K>		cmp;
 
-		public SlidingOp(int size, int step)
+		private Pond<?, Tuple2<K, W>>				right;
+
+		private Tuple2<K, V>						l;
+
+		private Tuple2<K, W>						r;
+
+		private K									gk;
+
+		private List<W>								group;
+
+		private boolean								loaded;
+
+		private boolean								matched;
+
+		private Tuple2<K, V>						cur;
+
+		private Iterator<W>							iterW;
+
+		private K									missK;
+
+		private Iterator<W>							iterMiss;
+
+		private Tuple2<K, V>						miss;
+
+		public MergeJoiner(MergeJoinOp<K, V, W, M, N> op)
 		{
-			this.size = size;
-			this.step = step;
+			this.op = op;
+			if (op.cmp != null)
+			{
+				this.cmp = op.cmp;
+			}
+			else
+			{
+				this.cmp = new DefaultComparator<K>();
+			}
 		}
 
 		@Override
-		public Pond<E, Iterable<E>> newPond()
+		public void begin() throws Exception
 		{
-			return new Wheel<E, Iterable<E>>()
-			{
-				List<E>	window	= null;
+			this.right = op.that.build();
+		}
 
-				List<E>	next	= null;
+		@Override
+		public void close() throws Exception
+		{
+			try
+			{
+				if (right != null)
+				{
+					right.close();
+				}
+			}
+			finally
+			{
+				super.close();
+			}
+		}
 
-				@Override
-				public boolean hasNext()
+		@Override
+		public boolean hasNext()
+		{
+			while (true)
+			{
+				if ((iterW != null && iterW.hasNext()) || (iterMiss != null && iterMiss.hasNext()) || miss != null)
 				{
-					if (size <= 0 || step <= 0)
-					{
-						return false;
-					}
+					return true;
+				}
+				iterW = null;
+				iterMiss = null;
 
-					if (next != null)
-					{
-						return true;
-					}
+				if (l == null && upstream().hasNext())
+				{
+					l = upstream().next();
+				}
 
-					if (window == null)
+				if (!loaded)
+				{
+					if (r == null && right.hasNext())
 					{
-						window = step >= size ? new ArrayList<E>() : new LinkedList<E>();
+						r = right.next();
 					}
-					else
+					if (r != null)
 					{
-						int gap = step - size;
-						while (gap > 0 && upstream().hasNext())
+						gk = r._1;
+						group = new ArrayList<W>();
+						do
 						{
-							gap--;
-							upstream().next();
+							group.add(r._2);
+							r = right.hasNext() ? right.next() : null;
 						}
+						while (r != null && cmp.compare(r._1, gk) == 0);
+						loaded = true;
+						matched = false;
 					}
+				}
 
-					boolean add = false;
-					while (window.size() < size && upstream().hasNext())
-					{
-						window.add(upstream().next());
-						add = true;
-					}
-
-					if (!add)
+				if (!loaded)
+				{
+					if (l == null || !op.needLeft())
 					{
 						return false;
 					}
-
-					next = new ArrayList<E>(window);
-
-					if (step >= size)
-					{
-						window.clear();
-					}
-					else if (step <= size / 2)
-					{
-						LinkedList<E> list = (LinkedList<E>) window;
-						for (int i = 0; i < step && !list.isEmpty(); i++)
-						{
-							list.removeFirst();
-						}
-					}
-					else
-					{
-						LinkedList<E> last = (LinkedList<E>) window;
-						window = new LinkedList<E>();
-						LinkedList<E> list = (LinkedList<E>) window;
-						int rest = size - step;
-						for (int i = 0; i < rest && !last.isEmpty(); i++)
-						{
-							list.addFirst(last.removeLast());
-						}
-						last.clear();
-					}
-
-					return true;
+					miss = l;
+					l = null;
+					continue;
 				}
 
-				@Override
-				public Iterable<E> next()
+				int c = l == null ? 1 : cmp.compare(l._1, gk);
+				if (c == 0)
 				{
-					try
-					{
-						return next;
-					}
-					finally
-					{
-						next = null;
-					}
+					cur = l;
+					l = null;
+					matched = true;
+					iterW = group.iterator();
 				}
-			};
-		}
-	}
-
-	protected static class SlidingRangeWindowRanger<I> implements WindowRanger<I>
-	{
-		protected static <I> int find(Mapper<I, ?> expr, I[] rows, int from, boolean toTail, boolean gt, boolean last,
-				Number bound) throws Exception
-		{
-			int i = toTail ? from + 1 : from - 1;
-
-			for (; toTail ? i < rows.length : i >= 0;)
-			{
-				if (gt)
+				else if (c < 0)
 				{
-					if (last)
+					if (op.needLeft())
 					{
-						if (((Number) expr.map(rows[i])).doubleValue() > bound.doubleValue())
-						{
-							break;
-						}
-					}
-					else
-					{
-						if (((Number) expr.map(rows[i])).doubleValue() >= bound.doubleValue())
-						{
-							break;
-						}
+						miss = l;
 					}
+					l = null;
 				}
 				else
 				{
-					if (last)
+					loaded = false;
+					if (!matched && op.needRight())
 					{
-						if (((Number) expr.map(rows[i])).doubleValue() < bound.doubleValue())
-						{
-							break;
-						}
+						missK = gk;
+						iterMiss = group.iterator();
 					}
-					else
+					else if (l == null && !op.needRight())
 					{
-						if (((Number) expr.map(rows[i])).doubleValue() <= bound.doubleValue())
-						{
-							break;
-						}
+						return false;
 					}
 				}
-
-				if (toTail)
-				{
-					i++;
-				}
-				else
-				{
-					i--;
-				}
 			}
-
-			return last ? (toTail ? i - 1 : i + 1) : i;
-		}
-
-		protected final Expr<? super I, ?>					expr;
-
-		protected final Mapper<? super I, ? extends Number>	a;
-
-		protected final Mapper<? super I, ? extends Number>	b;
-
-		@SuppressWarnings("unchecked")
-		public SlidingRangeWindowRanger(Expr<? super I, ?> expr, Mapper<? super I, ? extends Number>[] between)
-		{
-			this.expr = expr;
-			this.a = (Mapper<? super I, ? extends Number>) (between[0] == null ? NULL : between[0]);
-			this.b = (Mapper<? super I, ? extends Number>) (between[1] == null ? NULL : between[1]);
 		}
 
 		@Override
-		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		public Tuple2<K, Tuple2<M, N>> next()
 		{
-			Number aVal = a.map(rows[from]), bVal = b.map(rows[from]);
-
-			if (aVal == null)
+			if (iterW != null && iterW.hasNext())
 			{
-				range[0] = 0;
+				return Tuple.of(cur._1, Tuple.of(op.valLeft(cur._2), op.valRight(iterW.next())));
 			}
-			else
+			else if (iterMiss != null && iterMiss.hasNext())
 			{
-				double va = aVal.doubleValue();
-
-				if (va == 0.0)
-				{
-					range[0] = levelBegin;
-				}
-				else
-				{
-					Double bound = ((Number) expr.map(rows[from])).doubleValue() + (expr.isAscend() ? 1 : -1) * va;
-					if (expr.isAscend())
-					{
-						range[0] = find(expr, rows, va < 0 ? levelBegin : levelEnd - 1, va > 0, va > 0, va < 0, bound);
-					}
-					else
-					{
-						range[0] = find(expr, rows, va < 0 ? levelBegin : levelEnd - 1, va > 0, va < 0, va < 0, bound);
-					}
-				}
+				return Tuple.of(missK, Tuple.of(op.valLeft(), op.valRight(iterMiss.next())));
 			}
-
-			if (bVal == null)
+			else if (miss != null)
 			{
-				range[1] = rows.length;
+				Tuple2<K, V> m = miss;
+				miss = null;
+				return Tuple.of(m._1, Tuple.of(op.valLeft(m._2), op.valRight()));
 			}
 			else
 			{
-				double vb = bVal.doubleValue();
+				throw new NoSuchElementException();
+			}
+		}
+	}
 
-				if (vb == 0.0)
-				{
-					range[1] = levelEnd;
-				}
-				else
-				{
-					Double bound = ((Number) expr.map(rows[from])).doubleValue() + (expr.isAscend() ? 1 : -1) * vb;
-					if (expr.isAscend())
-					{
-						range[1] = find(expr, rows, vb > 0 ? levelEnd - 1 : levelBegin, vb > 0, vb > 0, vb > 0, bound)
-								+ 1;
-					}
-					else
-					{
-						range[1] = find(expr, rows, vb > 0 ? levelEnd - 1 : levelBegin, vb > 0, vb < 0, vb > 0, bound)
-								+ 1;
-					}
-				}
+	protected static abstract class MergeJoinOp<K, V, W, M, N>
+			implements Converter<Tuple2<K, V>, Tuple2<K, Tuple2<M, N>>>
+	{
+		protected final Canal<Tuple2<K, W>>		that;
+
+		protected final Comparator<? super K>	cmp;
+
+		public MergeJoinOp(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
+		{
+			if (that == null)
+			{
+				throw new NullPointerException();
 			}
+			this.that = that;
+			this.cmp = cmp;
 		}
 
+		protected abstract boolean needLeft();
+
+		protected abstract boolean needRight();
+
 		@Override
-		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		public Pond<Tuple2<K, V>, Tuple2<K, Tuple2<M, N>>> newPond()
 		{
-			return levelEnd;
+			return new MergeJoiner<K, V, W, M, N>(this);
 		}
+
+		protected abstract M valLeft();
+
+		protected abstract M valLeft(V v);
+
+		protected abstract N valRight();
+
+		protected abstract N valRight(W w);
 	}
 
-	protected static class SlidingRowsWindowRanger<I> implements WindowRanger<I>
+	public static class NoMoreElement extends RuntimeException
 	{
-		protected final Mapper<? super I, ? extends Number>	a;
+		/**
+		 * 
+		 */
+		private static final long serialVersionUID = 1L;
 
-		protected final Mapper<? super I, ? extends Number>	b;
+		public NoMoreElement()
+		{
+			super();
+		}
+	}
 
-		@SuppressWarnings("unchecked")
-		public SlidingRowsWindowRanger(Mapper<? super I, ? extends Number>[] between)
+	public static class None<E> extends Option<E>
+	{
+		public None()
 		{
-			this.a = (Mapper<? super I, ? extends Number>) (between[0] == null ? NULL : between[0]);
-			this.b = (Mapper<? super I, ? extends Number>) (between[1] == null ? NULL : between[1]);
+			this.setOperator(new EmptySourcer<E>());
 		}
 
 		@Override
-		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		public E get() throws NoSuchElementException
 		{
-			Number aVal = a.map(rows[from]), bVal = b.map(rows[from]);
+			throw new NoSuchElementException();
+		}
 
-			if (aVal == null)
-			{
-				range[0] = 0;
-			}
-			else if (aVal.intValue() == 0)
-			{
-				range[0] = from;
-			}
-			else
+		@Override
+		public E get(Producer<Exception> raiser) throws Exception
+		{
+			if (raiser != null)
 			{
-				range[0] = Math.min(Math.max(from + aVal.intValue(), 0), rows.length);
+				Exception ex = null;
+				try
+				{
+					ex = raiser.produce();
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
+				}
+				if (ex != null)
+				{
+					throw ex;
+				}
 			}
+			return this.get();
+		}
 
-			if (bVal == null)
+		@Override
+		public boolean given()
+		{
+			return false;
+		}
+
+		@Override
+		public E or(E defaultValue)
+		{
+			return defaultValue;
+		}
+
+		@Override
+		public E or(Producer<? extends E> defaultProducer)
+		{
+			try
 			{
-				range[1] = rows.length;
+				return defaultProducer.produce();
 			}
-			else if (bVal.intValue() == 0)
+			catch (RuntimeException e)
 			{
-				range[1] = from + 1;
+				throw e;
 			}
-			else
+			catch (Exception e)
 			{
-				range[1] = Math.min(Math.max(from + bVal.intValue() + 1, 0), rows.length);
+				throw new RuntimeException(e);
 			}
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
-		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		public Option<E> orElse(Option<? extends E> opt)
 		{
-			return from + 1;
+			return (Option<E>) opt;
 		}
-	}
 
-	public static class Some<E> extends Option<E>
-	{
-		protected static class SomeSourcer<T> implements Sourcer<T>
-		{
-			protected class SomeSource extends Source<T>
+		@SuppressWarnings("unchecked")
+		@Override
+		public Option<E> orElse(Producer<Option<? extends E>> opt)
+		{
+			try
 			{
-				protected boolean first = true;
-
-				@Override
-				public boolean hasNext()
-				{
-					return first;
-				}
-
-				@Override
-				public T next()
-				{
-					try
-					{
-						return SomeSourcer.this.value;
-					}
-					finally
-					{
-						first = false;
-					}
-				}
+				return (Option<E>) opt.produce();
 			}
-
-			protected final T value;
-
-			protected SomeSourcer(T value)
+			catch (RuntimeException e)
 			{
-				this.value = value;
+				throw e;
 			}
-
-			@Override
-			public Source<T> newPond()
+			catch (Exception e)
 			{
-				return new SomeSource();
+				throw new RuntimeException(e);
 			}
 		}
 
-		protected final E value;
-
-		public Some(E val)
-		{
-			this.value = val;
-			this.setOperator(new SomeSourcer<E>(val));
-		}
-
 		@Override
-		public E get()
+		public E orNull()
 		{
-			return value;
+			return null;
 		}
 
 		@Override
-		public E get(Producer<Exception> raiser)
+		public String toString()
 		{
-			return value;
+			return "None";
 		}
+	}
 
-		@Override
-		public boolean given()
-		{
-			return true;
-		}
+	protected static interface Operator<I, O>
+	{
+		Pond<I, O> newPond();
+	}
 
-		@Override
-		public E or(E defaultValue)
-		{
-			return value;
-		}
+	public static abstract class Option<E> extends Canal<E>
+	{
+		protected static final None<?> NONE = new None<Object>();
 
-		@Override
-		public E or(Producer<? extends E> defaultProducer)
+		@SuppressWarnings("unchecked")
+		public static <T> None<T> none()
 		{
-			return value;
+			return (None<T>) NONE;
 		}
 
-		@Override
-		public Option<E> orElse(Option<? extends E> opt)
+		/**
+		 * Please use {@link Option#Of(Object)} instead, in order to avoid
+		 * ambiguous of {@code Canal.of(...)} methods.
+		 */
+		@Deprecated
+		public static <T> Option<T> of(T value)
 		{
-			return this;
+			return Of(value);
 		}
 
-		@Override
-		public Option<E> orElse(Producer<Option<? extends E>> opt)
+		/**
+		 * Get Option object by value.
+		 * 
+		 * @param value
+		 * @return {@code None} if {@code value == null} otherwise
+		 *         {@code Some(value)} will be returned.
+		 */
+		@SuppressWarnings("unchecked")
+		public static <T> Option<T> Of(T value)
 		{
-			return this;
+			return value != null ? new Some<T>(value) : (None<T>) NONE;
 		}
 
-		@Override
-		public E orNull()
+		public static <T> T or(T value, Producer<? extends T> deft)
 		{
-			return value;
+			try
+			{
+				return value != null ? value : deft.produce();
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				return null;
+			}
 		}
 
-		@Override
-		public String toString()
+		public static <T> T or(T value, T deft)
 		{
-			return "Some(" + value + ")";
+			return value != null ? value : deft;
 		}
-	}
-
-	protected static class SortByOp<E> implements Converter<E, E>
-	{
-		protected final Comparator<? super E> cmps;
 
-		public SortByOp(List<Comparator<? super E>> cmps)
+		public static <T> Some<T> some(T value)
 		{
-			this.cmps = comparator(cmps);
+			return new Some<T>(value);
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		public Option<E> filter(Filter<? super E> filter)
 		{
-			return new Heaper<E>()
+			try
 			{
-				@Override
-				protected Collection<E> newSediment()
+				if (this.given() && filter.filter(this.get()))
 				{
-					return new ArrayList<E>();
+					return this;
 				}
-
-				@Override
-				protected void settle()
+				else
 				{
-					while (upstream().hasNext())
-					{
-						this.sediment.add(upstream().next());
-					}
-					Collections.sort((List<E>) this.sediment, cmps);
+					return none();
 				}
-			};
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
 		}
-	}
 
-	protected static class SortWithOp<E> implements Converter<E, E>
-	{
-		protected final Comparator<? super E> cmp;
+		public abstract E get();
 
-		@SuppressWarnings("unchecked")
-		public SortWithOp(final Comparator<? super E> cmp, boolean ascend)
-		{
-			this.cmp = (Comparator<? super E>) (ascend ? cmp : inverse(cmp));
-		}
+		public abstract E get(Producer<Exception> raiser) throws Exception;
+
+		public abstract boolean given();
 
 		@Override
-		public Pond<E, E> newPond()
+		public <F> Option<F> map(Mapper<? super E, ? extends F> mapper)
 		{
-			return new Heaper<E>()
+			if (this.given())
 			{
-				@Override
-				protected Collection<E> newSediment()
+				try
 				{
-					return new ArrayList<E>();
+					return some((F) mapper.map(this.get()));
 				}
-
-				@Override
-				protected void settle()
+				catch (RuntimeException e)
 				{
-					while (upstream().hasNext())
-					{
-						this.sediment.add(upstream().next());
-					}
-					Collections.sort((List<E>) this.sediment, cmp);
+					throw e;
 				}
-			};
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+			else
+			{
+				return none();
+			}
 		}
-	}
 
-	protected static abstract class Source<E> implements Pond<E, E>
-	{
-		private boolean begun = false;
+		public abstract E or(E defaultValue);
 
-		@Override
-		public void begin() throws Exception
-		{
-		}
+		public abstract E or(Producer<? extends E> defaultProducer);
 
-		@Override
-		public void close() throws Exception
-		{
-		}
+		public abstract Option<E> orElse(Option<? extends E> opt);
+
+		public abstract Option<E> orElse(Producer<Option<? extends E>> opt);
+
+		public abstract E orNull();
+	}
 
+	public static class PairCanal<K, V> extends Canal<Tuple2<K, V>>
+	{
 		@Override
-		public void end() throws Exception
+		public PairCanal<K, V> bottom(int k)
 		{
-			this.close();
+			return super.bottom(k).toPair();
 		}
 
 		@Override
-		public boolean hasBegun()
+		public PairCanal<K, V> bottom(int k, Comparator<? super Tuple2<K, V>> cmp)
 		{
-			return begun;
+			return super.bottom(k, cmp).toPair();
 		}
 
-		@Override
-		public void remove()
+		/**
+		 * Get the k smallest values within each group identified by same key
+		 * in natural ascending order.
+		 * 
+		 * @param k
+		 * @return
+		 */
+		public PairCanal<K, Canal<V>> bottomByKey(int k)
 		{
-			throw new UnsupportedOperationException();
+			return this.bottomByKey(k, null);
 		}
 
-		@Override
-		public void setBegun()
+		/**
+		 * Get the k smallest values within each group identified by same key
+		 * in ascending order of the given Comparator. Only k values of each
+		 * group are kept in a bounded heap.
+		 * 
+		 * @param k
+		 * @param cmp
+		 *            The Comparator, null means natural order.
+		 * @return
+		 */
+		public PairCanal<K, Canal<V>> bottomByKey(int k, Comparator<? super V> cmp)
 		{
-			this.begun = true;
+			if (cmp == null)
+			{
+				cmp = new DefaultComparator<V>();
+			}
+			return this.follow(new TopByKeyOp<K, V>(cmp, k)).toPair();
 		}
 
 		@Override
-		public Pond<?, E> upstream()
+		public PairCanal<K, V> cache()
 		{
-			return null;
+			return super.cache().toPair();
 		}
 
 		@Override
-		public void upstream(Pond<?, E> up)
+		public PairCanal<K, V> cache(int limit)
 		{
+			return super.cache(limit).toPair();
 		}
-	}
-
-	protected static interface Sourcer<E> extends Operator<E, E>
-	{
-		Source<E> newPond();
-	}
-
-	protected static class StratifyPond<E> extends AbstractPond<E, Canal<E>>
-	{
-		protected final Comparator<? super E>	cmp;
 
-		private Iterator<Iterable<E>>			res;
-
-		public StratifyPond(Comparator<? super E> cmp)
-		{
-			this.cmp = cmp;
-		}
-
-		@Override
-		public void begin()
+		/**
+		 * Choose the tuples that should be passed to downstream.
+		 * 
+		 * @param chooser
+		 * @return
+		 */
+		public PairCanal<K, V> choose(final StatefulMapper<? super K, ? super V, Boolean> chooser)
 		{
-			List<E> dat = new ArrayList<E>();
-
-			while (this.upstream().hasNext())
+			if (chooser == null)
 			{
-				dat.add(this.upstream().next());
+				throw new NullPointerException();
 			}
-
-			this.res = stratify(dat, cmp).iterator();
+			return this.filter(new Filter<Tuple2<K, V>>()
+			{
+				@Override
+				public boolean filter(Tuple2<K, V> el) throws Exception
+				{
+					return chooser.map(el._1, el._2);
+				}
+			}).toPair();
 		}
 
-		@Override
-		public boolean hasNext()
+		public JSON collectAsJSON()
 		{
-			return res.hasNext();
+			return collectAsJSON(null);
 		}
 
-		@Override
-		public Canal<E> next()
+		public JSON collectAsJSON(JSON json)
 		{
-			return Canal.of(res.next());
+			return (JSON) collectAsMap(json != null ? json : new JSON());
 		}
-	}
-
-	protected static class StratifyWithOp<E> implements Converter<E, Canal<E>>
-	{
-		protected final Comparator<? super E> cmp;
 
-		public StratifyWithOp(Comparator<? super E> cmp)
+		/**
+		 * Collect elements into map.<br />
+		 * It assumes that the upstream is a pair Canal.<br />
+		 * In order to indicate the key/value type <br />
+		 * please call like {@code Canal.<K,V>collectAsMap()}
+		 * 
+		 * @return
+		 */
+		public Map<K, V> collectAsMap()
 		{
-			this.cmp = cmp;
+			return collectAsMap(null);
 		}
 
-		@Override
-		public Pond<E, Canal<E>> newPond()
+		/**
+		 * Count the number each key.<br />
+		 * It assumes that the upstream is a pair Canal.
+		 * 
+		 * @return
+		 */
+		public Map<K, Integer> countByKey()
 		{
-			return new StratifyPond<E>(cmp);
+			return countByKey(null);
 		}
-	}
-
-	protected static class StringConcater<E> implements Evaluator<E, String>
-	{
-		protected final CharSequence	split;
-
-		protected final CharSequence	prefix;
-
-		protected final CharSequence	suffix;
-
-		protected final boolean			emptyWrap;
 
-		public StringConcater(CharSequence split, CharSequence prefix, CharSequence suffix, boolean emptyWrap)
+		@Override
+		public PairCanal<K, V> distinct()
 		{
-			this.split = split == null || split.length() == 0 ? null : split;
-			this.prefix = prefix == null || prefix.length() == 0 ? null : prefix;
-			this.suffix = suffix == null || suffix.length() == 0 ? null : suffix;
-			this.emptyWrap = emptyWrap;
+			return super.distinct().toPair();
 		}
 
 		@Override
-		public Terminal<E, String> newPond()
+		public PairCanal<K, V> distinct(HashedEquality<? super Tuple2<K, V>> eql)
 		{
-			return new AbstractTerminal<E, String>()
-			{
-				private StringBuilder	buff	= new StringBuilder();
-
-				private boolean			empty	= true;
-
-				@Override
-				public void begin()
-				{
-					try
-					{
-						while (upstream().hasNext())
-						{
-							if (empty)
-							{
-								empty = false;
-							}
-							else if (split != null)
-							{
-								buff.append(split);
-							}
-							buff.append(upstream().next());
-						}
-
-						if (emptyWrap || !empty)
-						{
-							if (prefix != null)
-							{
-								buff.insert(0, prefix);
-							}
-							if (suffix != null)
-							{
-								buff.append(suffix);
-							}
-						}
-					}
-					finally
-					{
-						try
-						{
-							this.end();
-						}
-						catch (Exception e)
-						{
-						}
-					}
-				}
-
-				@Override
-				public String get()
-				{
-					return buff.toString();
-				}
-			};
+			return super.distinct(eql).toPair();
 		}
-	}
-
-	protected static class SubtractOp<E> implements Converter<E, E>
-	{
-		protected final Canal<E>					that;
-
-		protected final HashedEquality<? super E>	eql;
 
-		@SuppressWarnings("unchecked")
-		public SubtractOp(Canal<? extends E> that, HashedEquality<? super E> eql)
+		@Override
+		public PairCanal<K, V> distinct(Mapper<? super Tuple2<K, V>, ?> xtr)
 		{
-			if (that == null)
-			{
-				throw new NullPointerException();
-			}
-			this.that = (Canal<E>) that;
-			this.eql = eql;
+			return super.distinct(xtr).toPair();
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		public PairCanal<K, V> distinctApprox(long expected, double fpp)
 		{
-			return new SubtractPond<E>(that, eql);
+			return super.distinctApprox(expected, fpp).toPair();
 		}
-	}
-
-	protected static class SubtractPond<E> extends Dam<E, E, E>
-	{
-		protected final HashedEquality<? super E>	eql;
-
-		private Set<E>								there;
-
-		private E									here;
 
-		public SubtractPond(Canal<E> that, HashedEquality<? super E> eql)
+		@Override
+		public PairCanal<K, V> distinctApprox(long expected, double fpp, HashedEquality<? super Tuple2<K, V>> eql)
 		{
-			super(that);
-			this.eql = eql;
+			return super.distinctApprox(expected, fpp, eql).toPair();
 		}
 
 		@Override
-		public void begin()
+		public PairCanal<K, V> distinctApprox(long expected, double fpp, Mapper<? super Tuple2<K, V>, ?> xtr)
 		{
-			there = (Set<E>) that.collect(eql == null ? new HashSet<E>() : new WrappedHashSet<E>(eql));
+			return super.distinctApprox(expected, fpp, xtr).toPair();
 		}
 
 		@Override
-		public boolean hasNext()
+		public PairCanal<K, V> distinctWindow(int window)
 		{
-			while (upstream().hasNext())
-			{
-				here = upstream().next();
-				if (!there.contains(here))
-				{
-					return true;
-				}
-			}
-			return false;
+			return super.distinctWindow(window).toPair();
 		}
 
 		@Override
-		public E next()
+		public PairCanal<K, V> distinctWindow(int window, HashedEquality<? super Tuple2<K, V>> eql)
 		{
-			return here;
+			return super.distinctWindow(window, eql).toPair();
 		}
-	}
 
-	public static class Success<E> implements Try<E>
-	{
-		public final E value;
-
-		public Success(E value)
+		@Override
+		public PairCanal<K, V> distinctWindow(int window, Mapper<? super Tuple2<K, V>, ?> xtr)
 		{
-			this.value = value;
+			return super.distinctWindow(window, xtr).toPair();
 		}
 
 		@Override
-		public Try<E> filter(Filter<? super E> pred)
+		public PairCanal<K, V> filter(Filter<? super Tuple2<K, V>> pred)
 		{
-			try
-			{
-				if (!pred.filter(value))
-				{
-					return new Failure<E>(new NoSuchElementException());
-				}
-			}
-			catch (Throwable e)
-			{
-				return new Failure<E>(e);
-			}
-
-			return this;
+			return super.filter(pred).toPair();
 		}
 
-		@Override
-		public <D> Try<D> flatMap(Mapper<? super E, ? extends Try<D>> mapper)
+		/**
+		 * Folder each value within same group. Each value is folded into the
+		 * accumulator of its group as soon as it comes, so that only one
+		 * accumulator per key is kept in memory.
+		 * 
+		 * @param initiator
+		 * @param folder
+		 * @return
+		 */
+		public <W> PairCanal<K, W> foldByKey(final Producer<W> initiator, final Reducer<V, W> folder)
 		{
-			try
-			{
-				return mapper.map(value);
-			}
-			catch (Throwable err)
-			{
-				return new Failure<D>(err);
-			}
+			return this.foldByKey(initiator, folder, null);
 		}
 
-		@Override
-		public <D> D fold(Mapper<Throwable, ? extends D> mapFail, Mapper<? super E, ? extends D> mapSucc)
+		/**
+		 * Folder each value within same group, spilling into partitioned files
+		 * if the number of elements exceeds the memory of the given spiller.
+		 * 
+		 * @param initiator
+		 * @param folder
+		 * @param spiller
+		 * @return
+		 */
+		public <W> PairCanal<K, W> foldByKey(final Producer<W> initiator, final Reducer<V, W> folder,
+				Spiller spiller)
 		{
-			try
+			if (initiator == null || folder == null)
 			{
-				return mapSucc.map(value);
+				throw new NullPointerException();
 			}
-			catch (RuntimeException e)
+			if (spiller == null)
 			{
-				throw e;
+				return this.follow(new FoldByKeyOp<Tuple2<K, V>, K, V, W>(null, new DefaultVop<Tuple2<K, V>, V>(),
+						initiator, folder)).toPair();
 			}
-			catch (Exception e)
+			return this.groupByKey(spiller).mapValues(new Mapper<Canal<V>, W>()
 			{
-				throw new RuntimeException(e);
-			}
+				@Override
+				public W map(Canal<V> el) throws Exception
+				{
+					return el.fold(initiator.produce(), folder);
+				}
+			});
 		}
 
-		@Override
-		public void foreach(Action<? super E> action)
+		/**
+		 * Full join with another Canal.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		public <W> JoinCanal<K, Option<V>, Option<W>> fullJoin(Canal<Tuple2<K, W>> that)
 		{
-			try
-			{
-				action.action(value);
-			}
-			catch (RuntimeException e)
-			{
-				throw e;
-			}
-			catch (Exception e)
-			{
-				throw new RuntimeException(e);
-			}
-		}
-
-		@Override
-		public E get()
-		{
-			return value;
+			return fullJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
+					.<K, Tuple2<Option<V>, Option<W>>> toPair().toJoin();
 		}
 
-		@Override
-		public E get(Producer<Exception> raiser)
+		/**
+		 * Full join with another Canal, spilling into partitioned files if the
+		 * number of elements exceeds the memory of the given spiller.
+		 * 
+		 * @param that
+		 * @param spiller
+		 * @return
+		 */
+		public <W> JoinCanal<K, Option<V>, Option<W>> fullJoin(Canal<Tuple2<K, W>> that, Spiller spiller)
 		{
-			return value;
+			return fullJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>(),
+					new DefaultVop<Tuple2<K, V>, V>(), new DefaultVop<Tuple2<K, W>, W>(), spiller)
+							.<K, Tuple2<Option<V>, Option<W>>> toPair().toJoin();
 		}
 
-		@Override
-		public boolean isFailure()
+		/**
+		 * Gather each value into correspondent group identified by same key.
+		 * 
+		 * @return
+		 */
+		public PairCanal<K, Canal<V>> groupByKey()
 		{
-			return false;
+			return this.groupByKey(null);
 		}
 
-		@Override
-		public boolean isSuccess()
+		/**
+		 * Gather each value into correspondent group identified by same key,
+		 * spilling into partitioned files if the number of elements exceeds
+		 * the memory of the given spiller.
+		 * 
+		 * @param spiller
+		 * @return
+		 */
+		public PairCanal<K, Canal<V>> groupByKey(Spiller spiller)
 		{
-			return true;
+			return this.groupBy(new DefaultKop<Tuple2<K, V>, K>(), new DefaultVop<Tuple2<K, V>, V>(), spiller);
 		}
 
-		@Override
-		public <D> Try<D> map(Mapper<? super E, ? extends D> mapper)
+		/**
+		 * Filter pairs whose value statisfy the pred.
+		 * 
+		 * @param pred
+		 * @return
+		 */
+		public PairCanal<K, V> having(final Filter<? super V> pred)
 		{
-			try
+			if (pred == null)
 			{
-				return new Success<D>(mapper.map(value));
+				throw new NullPointerException();
 			}
-			catch (Throwable err)
+			return this.filter(new Filter<Tuple2<K, V>>()
 			{
-				return new Failure<D>(err);
-			}
+				@Override
+				public boolean filter(Tuple2<K, V> el) throws Exception
+				{
+					return pred.filter(el._2);
+				}
+			}).toPair();
 		}
 
 		@Override
-		public E or(E deft)
+		public PairCanal<K, V> intersection(Canal<? extends Tuple2<K, V>> that)
 		{
-			return value;
+			return super.intersection(that).toPair();
 		}
 
 		@Override
-		public E or(Producer<? extends E> deft)
+		public PairCanal<K, V> intersection(Canal<? extends Tuple2<K, V>> that,
+				HashedEquality<? super Tuple2<K, V>> cmp)
 		{
-			return value;
+			return super.intersection(that, cmp).toPair();
 		}
 
 		@Override
-		public Try<E> orElse(Producer<? extends Try<E>> deft)
+		public PairCanal<K, V> intersection(Canal<? extends Tuple2<K, V>> that, Mapper<? super Tuple2<K, V>, ?> xtr)
 		{
-			return this;
+			return super.intersection(that, xtr).toPair();
 		}
 
-		@Override
-		public Try<E> orElse(Try<E> deft)
+		/**
+		 * Inner join with another Canal.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, W> join(Canal<Tuple2<K, W>> that)
 		{
-			return this;
+			return join(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
+					.<K, Tuple2<V, W>> toPair().toJoin();
 		}
 
-		@Override
-		public Try<E> recover(Mapper<Throwable, ? extends E> recover)
+		/**
+		 * Inner join with another Canal using the given strategy.
+		 * 
+		 * @param that
+		 * @param hint
+		 *            either {@link Canal#JOIN_HASH} or {@link Canal#JOIN_STREAM}.
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, W> join(Canal<Tuple2<K, W>> that, int hint)
 		{
-			return this;
+			return join(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>(),
+					new DefaultVop<Tuple2<K, V>, V>(), new DefaultVop<Tuple2<K, W>, W>(), hint)
+							.<K, Tuple2<V, W>> toPair().toJoin();
 		}
 
-		@Override
-		public Try<E> recoverWith(Mapper<Throwable, ? extends Try<E>> recover)
+		/**
+		 * Inner join with another Canal, spilling into partitioned files if the
+		 * number of elements exceeds the memory of the given spiller.
+		 * 
+		 * @param that
+		 * @param spiller
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, W> join(Canal<Tuple2<K, W>> that, Spiller spiller)
 		{
-			return this;
+			return join(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>(),
+					new DefaultVop<Tuple2<K, V>, V>(), new DefaultVop<Tuple2<K, W>, W>(), spiller)
+							.<K, Tuple2<V, W>> toPair().toJoin();
 		}
 
-		@Override
-		public Option<E> toOption()
+		/**
+		 * Pass each key of pair to downstream.
+		 * 
+		 * @return
+		 */
+		public Canal<K> keys()
 		{
-			return Option.some(value);
+			return this.map(new DefaultKop<Tuple2<K, V>, K>());
+		}
+
+		/**
+		 * Left join with another Canal.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, Option<W>> leftJoin(Canal<Tuple2<K, W>> that)
+		{
+			return leftJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
+					.<K, Tuple2<V, Option<W>>> toPair().toJoin();
+		}
+
+		/**
+		 * Left join with another Canal using the given strategy.
+		 * 
+		 * @param that
+		 * @param hint
+		 *            either {@link Canal#JOIN_HASH} or {@link Canal#JOIN_STREAM}.
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, Option<W>> leftJoin(Canal<Tuple2<K, W>> that, int hint)
+		{
+			return leftJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>(),
+					new DefaultVop<Tuple2<K, V>, V>(), new DefaultVop<Tuple2<K, W>, W>(), hint)
+							.<K, Tuple2<V, Option<W>>> toPair().toJoin();
+		}
+
+		/**
+		 * Left join with another Canal, spilling into partitioned files if the
+		 * number of elements exceeds the memory of the given spiller.
+		 * 
+		 * @param that
+		 * @param spiller
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, Option<W>> leftJoin(Canal<Tuple2<K, W>> that, Spiller spiller)
+		{
+			return leftJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>(),
+					new DefaultVop<Tuple2<K, V>, V>(), new DefaultVop<Tuple2<K, W>, W>(), spiller)
+							.<K, Tuple2<V, Option<W>>> toPair().toJoin();
 		}
 
 		@Override
-		public <D> Try<D> transform(Mapper<? super E, ? extends Try<D>> mapSucc,
-				Mapper<Throwable, ? extends Try<D>> mapFail)
+		public PairCanal<K, V> limit(int limit)
 		{
-			try
-			{
-				return mapSucc.map(value);
-			}
-			catch (RuntimeException e)
+			return super.limit(limit).toPair();
+		}
+
+		public <L> PairCanal<L, V> mapKey(final Mapper<? super K, ? extends L> mapper)
+		{
+			if (mapper == null)
 			{
-				throw e;
+				throw new NullPointerException();
 			}
-			catch (Exception e)
+			return this.map(new Mapper<Tuple2<K, V>, Tuple2<L, V>>()
 			{
-				throw new RuntimeException(e);
-			}
+				@Override
+				public Tuple2<L, V> map(Tuple2<K, V> el) throws Exception
+				{
+					return Tuple.of((L) mapper.map(el._1), el._2);
+				}
+			}).toPair();
 		}
-	}
-
-	protected static class TakeOp<E> implements Evaluator<E, Collection<E>>
-	{
-		protected final int				limit;
-
-		protected final Collection<E>	result;
 
-		public TakeOp(int limit, Collection<E> result)
+		/**
+		 * Map each value in pair into a new value.
+		 * 
+		 * @param mapper
+		 * @return
+		 */
+		public <W> PairCanal<K, W> mapValues(final Mapper<? super V, ? extends W> mapper)
 		{
-			this.limit = limit;
-			this.result = result;
+			if (mapper == null)
+			{
+				throw new NullPointerException();
+			}
+			return this.map(new Mapper<Tuple2<K, V>, Tuple2<K, W>>()
+			{
+				@Override
+				public Tuple2<K, W> map(Tuple2<K, V> el) throws Exception
+				{
+					return Tuple.of(el._1, (W) mapper.map(el._2));
+				}
+			}).toPair();
 		}
 
-		@Override
-		public Terminal<E, Collection<E>> newPond()
+		/**
+		 * Map each value in pair into a new value according to its key.
+		 * 
+		 * @param mapper
+		 *            {@code (V,K) -> W}
+		 * @return
+		 */
+		public <W> PairCanal<K, W> mapValues(final StatefulMapper<? super V, ? super K, ? extends W> mapper)
 		{
-			return new Desilter<E>()
+			if (mapper == null)
+			{
+				throw new NullPointerException();
+			}
+			return this.map(new Mapper<Tuple2<K, V>, Tuple2<K, W>>()
 			{
 				@Override
-				protected Collection<E> newSediment()
+				public Tuple2<K, W> map(Tuple2<K, V> el) throws Exception
 				{
-					return result == null ? super.newSediment() : result;
+					return Tuple.of(el._1, (W) mapper.map(el._2, el._1));
 				}
+			}).toPair();
+		}
 
+		public <W> PairCanal<K, W> mapValuesCast(final Class<W> cls)
+		{
+			if (cls == null)
+			{
+				throw new NullPointerException();
+			}
+			return this.mapValues(new Mapper<V, W>()
+			{
 				@Override
-				protected void settle()
+				public W map(V el) throws Exception
 				{
-					int i = 0;
-					while (i < limit && upstream().hasNext())
-					{
-						sediment.add(upstream().next());
-						i++;
-					}
+					return Tools.as(el, cls);
 				}
-			};
+			});
 		}
-	}
-
-	protected static interface Terminal<E, T> extends Pond<E, E>
-	{
-		T get();
-	}
 
-	public static interface Try<E>
-	{
-		public Try<E> filter(Filter<? super E> pred);
-
-		public <D> Try<D> flatMap(Mapper<? super E, ? extends Try<D>> mapper);
-
-		public <D> D fold(Mapper<Throwable, ? extends D> mapFail, Mapper<? super E, ? extends D> mapSucc);
-
-		public void foreach(Action<? super E> action);
-
-		public E get() throws Exception;
-
-		public E get(Producer<Exception> raiser) throws Exception;
-
-		public boolean isFailure();
-
-		public boolean isSuccess();
-
-		public <D> Try<D> map(Mapper<? super E, ? extends D> mapper);
-
-		public E or(E deft);
-
-		public E or(Producer<? extends E> deft);
-
-		public Try<E> orElse(Producer<? extends Try<E>> deft);
-
-		public Try<E> orElse(Try<E> deft);
-
-		public Try<E> recover(Mapper<Throwable, ? extends E> recover);
-
-		public Try<E> recoverWith(Mapper<Throwable, ? extends Try<E>> recover);
-
-		public Option<E> toOption();
-
-		public <D> Try<D> transform(Mapper<? super E, ? extends Try<D>> mapSucc,
-				Mapper<Throwable, ? extends Try<D>> mapFail);
-	}
-
-	public static abstract class Tuple implements Serializable, Iterable<Object>, Comparable<Tuple>
-	{
-		public static class TupleIndexOutOfBoundsException extends IndexOutOfBoundsException
-		{
-			/**
-			 * 
-			 */
-			private static final long serialVersionUID = 1L;
-
-			public TupleIndexOutOfBoundsException()
-			{
-				super();
-			}
-
-			public TupleIndexOutOfBoundsException(int index)
-			{
-				super("Tuple index out of range: " + index);
-			}
-
-			public TupleIndexOutOfBoundsException(String msg)
-			{
-				super(msg);
-			}
-		}
-
-		protected class TupleIterator implements Iterator<Object>
-		{
-			private int index = 1;
-
-			@Override
-			public boolean hasNext()
-			{
-				return index <= size();
-			}
-
-			@Override
-			public Object next()
-			{
-				return get(index++);
-			}
-
-			@Override
-			public void remove()
-			{
-				throw new UnsupportedOperationException();
-			}
-		}
+		public <W> PairCanal<K, W> mapValuesCasted(Class<W> cls)
+		{
+			return this.mapValuesCast(cls).noNullValue();
+		}
 
 		/**
+		 * Full join with another Canal by merging, both sides must be sorted by key
+		 * in natural order.
 		 * 
+		 * @param that
+		 * @return
 		 */
-		private static final long serialVersionUID = 1L;
-
-		@SuppressWarnings("unchecked")
-		protected static <E> int compare(Comparable<E> a, Comparable<E> b)
+		public <W> JoinCanal<K, Option<V>, Option<W>> mergeFullJoin(Canal<Tuple2<K, W>> that)
 		{
-			if (a == b)
-			{
-				return 0;
-			}
-			else if (a != null && b != null)
-			{
-				return a.compareTo((E) b);
-			}
-			else if (a == null)
-			{
-				return -1;
-			}
-			else
-			{
-				return 1;
-			}
+			return mergeFullJoin(that, null);
 		}
 
-		public static int compare(Tuple t1, Tuple t2)
+		/**
+		 * Full join with another Canal by merging, both sides must be sorted by key
+		 * in the order of given comparator. Only the right values under the
+		 * current key would be buffered.
+		 * 
+		 * @param that
+		 * @param cmp
+		 *            the comparator of keys, null means natural order.
+		 * @return
+		 */
+		public <W> JoinCanal<K, Option<V>, Option<W>> mergeFullJoin(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
 		{
-			if (t1 == t2)
-			{
-				return 0;
-			}
-			else
-			{
-				return t1.size() != t2.size() ? t1.size() - t2.size() : t1.compare(t2);
-			}
+			return this.follow(new FullMergeJoinOp<K, V, W>(that, cmp)).<K, Tuple2<Option<V>, Option<W>>> toPair().toJoin();
 		}
 
-		public static <E1> Tuple1<E1> of(E1 _1)
+		/**
+		 * Inner join with another Canal by merging, both sides must be sorted by key
+		 * in natural order.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, W> mergeJoin(Canal<Tuple2<K, W>> that)
 		{
-			return new Tuple1<E1>(_1);
+			return mergeJoin(that, null);
 		}
 
-		public static <E1, E2> Tuple2<E1, E2> of(E1 _1, E2 _2)
+		/**
+		 * Inner join with another Canal by merging, both sides must be sorted by key
+		 * in the order of given comparator. Only the right values under the
+		 * current key would be buffered.
+		 * 
+		 * @param that
+		 * @param cmp
+		 *            the comparator of keys, null means natural order.
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, W> mergeJoin(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
 		{
-			return new Tuple2<E1, E2>(_1, _2);
+			return this.follow(new InnerMergeJoinOp<K, V, W>(that, cmp)).<K, Tuple2<V, W>> toPair().toJoin();
 		}
 
-		public static <E1, E2, E3> Tuple3<E1, E2, E3> of(E1 _1, E2 _2, E3 _3)
+		/**
+		 * Left join with another Canal by merging, both sides must be sorted by key
+		 * in natural order.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		public <W> JoinCanal<K, V, Option<W>> mergeLeftJoin(Canal<Tuple2<K, W>> that)
 		{
-			return new Tuple3<E1, E2, E3>(_1, _2, _3);
+			return mergeLeftJoin(that, null);
 		}
 
 		/**
-		 * Compare with another tuple which has the same length.
+		 * Left join with another Canal by merging, both sides must be sorted by key
+		 * in the order of given comparator. Only the right values under the
+		 * current key would be buffered.
 		 * 
-		 * @param t
-		 *            Another tuple which has the same length.
+		 * @param that
+		 * @param cmp
+		 *            the comparator of keys, null means natural order.
 		 * @return
 		 */
-		protected abstract int compare(Tuple t);
-
-		@Override
-		public int compareTo(Tuple t)
+		public <W> JoinCanal<K, V, Option<W>> mergeLeftJoin(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
 		{
-			return compare(this, t);
+			return this.follow(new LeftMergeJoinOp<K, V, W>(that, cmp)).<K, Tuple2<V, Option<W>>> toPair().toJoin();
 		}
 
-		protected void ensureIndex(int index)
+		/**
+		 * Right join with another Canal by merging, both sides must be sorted by key
+		 * in natural order.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		public <W> JoinCanal<K, Option<V>, W> mergeRightJoin(Canal<Tuple2<K, W>> that)
 		{
-			if (index <= 0 || index > size())
-			{
-				throw new TupleIndexOutOfBoundsException(index);
-			}
+			return mergeRightJoin(that, null);
 		}
 
 		/**
-		 * Compare with another tuple which is the same class.
+		 * Right join with another Canal by merging, both sides must be sorted by key
+		 * in the order of given comparator. Only the right values under the
+		 * current key would be buffered.
 		 * 
-		 * @param t
-		 *            Another tuple which is the same class
+		 * @param that
+		 * @param cmp
+		 *            the comparator of keys, null means natural order.
 		 * @return
 		 */
-		protected abstract boolean equal(Tuple t);
-
-		@Override
-		public boolean equals(Object o)
+		public <W> JoinCanal<K, Option<V>, W> mergeRightJoin(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
 		{
-			if (o == null || !this.getClass().equals(o.getClass()))
-			{
-				return false;
-			}
-			else if (this == o)
-			{
-				return true;
-			}
-			else
-			{
-				return this.equal((Tuple) o);
-			}
+			return this.follow(new RightMergeJoinOp<K, V, W>(that, cmp)).<K, Tuple2<Option<V>, W>> toPair().toJoin();
 		}
 
-		protected Field field(int i)
+		public PairCanal<K, V> noNullKey()
 		{
-			try
-			{
-				return this.getClass().getDeclaredField("_" + i);
-			}
-			catch (Exception e)
+			return this.filter(new Filter<Tuple2<K, V>>()
 			{
-				return null;
-			}
+				@Override
+				public boolean filter(Tuple2<K, V> el) throws Exception
+				{
+					return el._1 != null;
+				}
+			});
 		}
 
-		protected Object get(int i)
+		public PairCanal<K, V> noNullValue()
 		{
-			ensureIndex(i);
-			try
-			{
-				return field(i).get(this);
-			}
-			catch (Exception e)
+			return this.filter(new Filter<Tuple2<K, V>>()
 			{
-				return null;
-			}
+				@Override
+				public boolean filter(Tuple2<K, V> el) throws Exception
+				{
+					return el._2 != null;
+				}
+			});
 		}
 
 		@Override
-		public abstract int hashCode();
+		public PairCanal<K, V> peek(Action<? super Tuple2<K, V>> action)
+		{
+			return super.peek(action).toPair();
+		}
 
 		@Override
-		public Iterator<Object> iterator()
+		public PairCanal<K, V> prefetch(int bufferSize)
 		{
-			return new TupleIterator();
+			return super.prefetch(bufferSize).toPair();
 		}
 
-		public abstract <T extends Tuple> T reverse();
-
-		public abstract int size();
+		@Override
+		public PairCanal<K, V> prefetch(int bufferSize, ExecutorService executor)
+		{
+			return super.prefetch(bufferSize, executor).toPair();
+		}
 
 		@Override
-		public abstract String toString();
-	}
+		public PairCanal<K, V> profile(Profile profile)
+		{
+			return super.profile(profile).toPair();
+		}
 
-	public static class Tuple1<E1> extends Tuple
-	{
 		/**
+		 * Reduce each value within same group. Each value is reduced into the
+		 * accumulator of its group as soon as it comes.
 		 * 
+		 * @param reducer
+		 * @return
 		 */
-		private static final long	serialVersionUID	= 1L;
-
-		public final E1				_1;
-
-		public Tuple1(E1 _1)
-		{
-			this._1 = _1;
-		}
-
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		@Override
-		protected int compare(Tuple t)
+		public PairCanal<K, V> reduceByKey(final Reducer<V, V> reducer)
 		{
-			Tuple1<E1> that = (Tuple1<E1>) t;
-			int c = 0;
-			if ((c = compare((Comparable) this._1, (Comparable) that._1)) != 0)
-			{
-				return c;
-			}
-			else
+			if (reducer == null)
 			{
-				return 0;
+				throw new NullPointerException();
 			}
+			return this.follow(new FoldByKeyOp<Tuple2<K, V>, K, V, V>(null, new DefaultVop<Tuple2<K, V>, V>(), null,
+					reducer)).toPair();
 		}
 
 		@Override
-		protected boolean equal(Tuple t)
+		public PairCanal<K, V> reverse()
 		{
-			Tuple1<?> that = (Tuple1<?>) t;
-			return Tools.equals(this._1, that._1);
+			return super.reverse().toPair();
 		}
 
-		@Override
-		public int hashCode()
+		/**
+		 * Right join with another Canal.
+		 * 
+		 * @param that
+		 * @return
+		 */
+		public <W> JoinCanal<K, Option<V>, W> rightJoin(Canal<Tuple2<K, W>> that)
 		{
-			int h = 1;
-			h = 31 * h + (this._1 != null ? this._1.hashCode() : 0);
-			return h;
+			return rightJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>())
+					.<K, Tuple2<Option<V>, W>> toPair().toJoin();
 		}
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public <T extends Tuple> T reverse()
+		/**
+		 * Right join with another Canal, spilling into partitioned files if the
+		 * number of elements exceeds the memory of the given spiller.
+		 * 
+		 * @param that
+		 * @param spiller
+		 * @return
+		 */
+		public <W> JoinCanal<K, Option<V>, W> rightJoin(Canal<Tuple2<K, W>> that, Spiller spiller)
 		{
-			return (T) this;
+			return rightJoin(that, new DefaultKop<Tuple2<K, V>, K>(), new DefaultKop<Tuple2<K, W>, K>(),
+					new DefaultVop<Tuple2<K, V>, V>(), new DefaultVop<Tuple2<K, W>, W>(), spiller)
+							.<K, Tuple2<Option<V>, W>> toPair().toJoin();
 		}
 
 		@Override
-		public int size()
+		public PairCanal<K, V> skip(int offset)
 		{
-			return 1;
+			return super.skip(offset).toPair();
 		}
 
 		@Override
-		public String toString()
+		@SuppressWarnings("rawtypes")
+		public PairCanal<K, V> sortBy(Mapper<? super Tuple2<K, V>, Comparable> cmp)
 		{
-			return "(" + this._1 + ")";
+			return super.sortBy(cmp).toPair();
 		}
-	}
-
-	public static class Tuple2<E1, E2> extends Tuple
-	{
-		/**
-		 * 
-		 */
-		private static final long	serialVersionUID	= 1L;
-
-		public final E1				_1;
-
-		public final E2				_2;
 
-		public Tuple2(E1 _1, E2 _2)
+		@Override
+		@SuppressWarnings("rawtypes")
+		public PairCanal<K, V> sortBy(Mapper<? super Tuple2<K, V>, Comparable>... cmps)
 		{
-			this._1 = _1;
-			this._2 = _2;
+			return super.sortBy(cmps).toPair();
 		}
 
-		@SuppressWarnings({ "unchecked", "rawtypes" })
 		@Override
-		protected int compare(Tuple t)
+		public PairCanal<K, V> sortBy(Object... orders)
 		{
-			Tuple2<E1, E2> that = (Tuple2<E1, E2>) t;
-			int c = 0;
-			if ((c = compare((Comparable) this._1, (Comparable) that._1)) != 0)
-			{
-				return c;
-			}
-			else if ((c = compare((Comparable) this._2, (Comparable) that._2)) != 0)
-			{
-				return c;
-			}
-			else
-			{
-				return 0;
-			}
+			return super.sortBy(orders).toPair();
 		}
 
 		@Override
-		protected boolean equal(Tuple t)
+		public PairCanal<K, V> sortBy(Spiller spiller, Object... orders)
 		{
-			Tuple2<?, ?> that = (Tuple2<?, ?>) t;
-			return Tools.equals(this._1, that._1) //
-					&& Tools.equals(this._2, that._2);
+			return super.sortBy(spiller, orders).toPair();
 		}
 
 		@Override
-		public int hashCode()
+		public PairCanal<K, V> sortWith()
 		{
-			int h = 1;
-			h = 31 * h + (this._1 != null ? this._1.hashCode() : 0);
-			h = 31 * h + (this._2 != null ? this._2.hashCode() : 0);
-			return h;
+			return super.sortWith().toPair();
 		}
 
-		@SuppressWarnings("unchecked")
 		@Override
-		public Tuple2<E2, E1> reverse()
+		public PairCanal<K, V> sortWith(boolean ascend)
 		{
-			return Tuple.of(_2, _1);
+			return super.sortWith(ascend).toPair();
 		}
 
 		@Override
-		public int size()
+		public PairCanal<K, V> sortWith(Comparator<? super Tuple2<K, V>> cmp)
 		{
-			return 2;
+			return super.sortWith(cmp).toPair();
 		}
 
 		@Override
-		public String toString()
+		public PairCanal<K, V> sortWith(Comparator<? super Tuple2<K, V>> cmp, boolean ascend)
 		{
-			return "(" + this._1 + ", " + this._2 + ")";
+			return super.sortWith(cmp, ascend).toPair();
 		}
-	}
-
-	public static class Tuple3<E1, E2, E3> extends Tuple
-	{
-		/**
-		 * 
-		 */
-		private static final long	serialVersionUID	= 1L;
 
-		public final E1				_1;
-
-		public final E2				_2;
-
-		public final E3				_3;
-
-		public Tuple3(E1 _1, E2 _2, E3 _3)
+		@Override
+		public PairCanal<K, V> sortWith(Spiller spiller, Comparator<? super Tuple2<K, V>> cmp, boolean ascend)
 		{
-			this._1 = _1;
-			this._2 = _2;
-			this._3 = _3;
+			return super.sortWith(spiller, cmp, ascend).toPair();
 		}
 
-		@SuppressWarnings({ "unchecked", "rawtypes" })
 		@Override
-		protected int compare(Tuple t)
+		public PairCanal<K, V> subtract(Canal<? extends Tuple2<K, V>> that)
 		{
-			Tuple3<E1, E2, E3> that = (Tuple3<E1, E2, E3>) t;
-			int c = 0;
-			if ((c = compare((Comparable) this._1, (Comparable) that._1)) != 0)
-			{
-				return c;
-			}
-			else if ((c = compare((Comparable) this._2, (Comparable) that._2)) != 0)
-			{
-				return c;
-			}
-			else if ((c = compare((Comparable) this._3, (Comparable) that._3)) != 0)
-			{
-				return c;
-			}
-			else
-			{
-				return 0;
-			}
+			return super.subtract(that).toPair();
 		}
 
 		@Override
-		protected boolean equal(Tuple t)
+		public PairCanal<K, V> subtract(Canal<? extends Tuple2<K, V>> that, HashedEquality<? super Tuple2<K, V>> cmp)
 		{
-			Tuple3<?, ?, ?> that = (Tuple3<?, ?, ?>) t;
-			return Tools.equals(this._1, that._1) //
-					&& Tools.equals(this._2, that._2) //
-					&& Tools.equals(this._3, that._3);
+			return super.subtract(that, cmp).toPair();
 		}
 
 		@Override
-		public int hashCode()
+		public PairCanal<K, V> subtract(Canal<? extends Tuple2<K, V>> that, Mapper<? super Tuple2<K, V>, ?> xtr)
 		{
-			int h = 1;
-			h = 31 * h + (this._1 != null ? this._1.hashCode() : 0);
-			h = 31 * h + (this._2 != null ? this._2.hashCode() : 0);
-			h = 31 * h + (this._3 != null ? this._3.hashCode() : 0);
-			return h;
+			return super.subtract(that, xtr).toPair();
 		}
 
 		@SuppressWarnings("unchecked")
-		@Override
-		public Tuple3<E3, E2, E1> reverse()
+		public <L, R> JoinCanal<K, L, R> toJoin()
 		{
-			return Tuple.of(_3, _2, _1);
+			return (JoinCanal<K, L, R>) new JoinCanal<K, L, R>().setUpstream(this).setOperator(
+					new MapOp<Tuple2<K, V>, Tuple2<K, Tuple2<L, R>>>(new Mapper<Tuple2<K, V>, Tuple2<K, Tuple2<L, R>>>()
+					{
+						@Override
+						public Tuple2<K, Tuple2<L, R>> map(Tuple2<K, V> el)
+						{
+							return (Tuple2<K, Tuple2<L, R>>) el;
+						}
+					}));
 		}
 
 		@Override
-		public int size()
+		public PairCanal<K, V> top(int k)
 		{
-			return 3;
+			return super.top(k).toPair();
 		}
 
 		@Override
-		public String toString()
+		public PairCanal<K, V> top(int k, Comparator<? super Tuple2<K, V>> cmp)
 		{
-			return "(" + this._1 + ", " + this._2 + ", " + this._3 + ")";
+			return super.top(k, cmp).toPair();
 		}
-	}
-
-	protected static class UnionOp<E> implements Converter<E, E>
-	{
-		protected final Canal<E>	self;
 
-		protected final Canal<E>	that;
+		/**
+		 * Get the k largest values within each group identified by same key
+		 * in natural descending order.
+		 * 
+		 * @param k
+		 * @return
+		 */
+		public PairCanal<K, Canal<V>> topByKey(int k)
+		{
+			return this.topByKey(k, null);
+		}
 
-		@SuppressWarnings("unchecked")
-		public UnionOp(Canal<E> self, Canal<? extends E> that)
+		/**
+		 * Get the k largest values within each group identified by same key
+		 * in descending order of the given Comparator. Only k values of each
+		 * group are kept in a bounded heap.
+		 * 
+		 * @param k
+		 * @param cmp
+		 *            The Comparator, null means natural order.
+		 * @return
+		 */
+		public PairCanal<K, Canal<V>> topByKey(int k, Comparator<? super V> cmp)
 		{
-			if (self == null || that == null)
+			if (cmp == null)
 			{
-				throw new NullPointerException();
+				cmp = new DefaultComparator<V>();
 			}
-			this.self = self;
-			this.that = (Canal<E>) that;
+			return this.follow(new TopByKeyOp<K, V>((Comparator<? super V>) inverse(cmp), k)).toPair();
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		public PairCanal<K, V> uncache()
 		{
-			return new UnionPond<E>(self.build(), that.build());
+			return super.uncache().toPair();
 		}
-	}
-
-	protected static class UnionPond<E> extends AbstractPond<E, E>
-	{
-		protected final Pond<?, E>	self;
 
-		protected final Pond<?, E>	that;
-
-		private boolean				here	= true;
+		@Override
+		public PairCanal<K, V> union(Canal<? extends Tuple2<K, V>> that)
+		{
+			return super.union(that).toPair();
+		}
 
-		public UnionPond(Pond<?, E> self, Pond<?, E> that)
+		/**
+		 * Pass each value of pair to downstream.
+		 * 
+		 * @return
+		 */
+		public Canal<V> values()
 		{
-			this.self = self;
-			this.that = that;
+			return this.map(new DefaultVop<Tuple2<K, V>, V>());
 		}
+	}
 
-		@Override
-		public void begin()
+	/**
+	 * A Canal whose stateless stages (map, filter, flatMap and peek) are
+	 * evaluated over chunks of the source concurrently.<br />
+	 * The terminal operations collect, count, countByKey, fold and reduce
+	 * would merge the partial results of each chunk. Any other operator falls
+	 * back to the sequential evaluation.
+	 * 
+	 * @param <D>
+	 */
+	public static class ParallelCanal<D> extends Canal<D>
+	{
+		protected static boolean isStateless(Operator<?, ?> op)
 		{
+			return op instanceof MapOp || op instanceof FilterOp || op instanceof FlatMapOp || op instanceof PeekOp;
 		}
 
-		@Override
-		public boolean hasNext()
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		protected static <E> Canal<E> rebase(Iterable<?> chunk, List<Operator<?, ?>> stages)
 		{
-			if (self.hasNext())
-			{
-				return true;
-			}
-			else if (that.hasNext())
+			Canal canal = Canal.of(chunk);
+			for (Operator<?, ?> op : stages)
 			{
-				here = false;
-				return true;
+				canal = new Canal().setUpstream(canal).setOperator(op);
 			}
-			else
+			return canal;
+		}
+
+		@SuppressWarnings("unchecked")
+		protected static List<?> sourceList(Canal<?> canal)
+		{
+			if (canal.getOperator() instanceof IterableSourcer)
 			{
-				return false;
+				Iterable<?> iter = ((IterableSourcer<Object>) canal.getOperator()).iter;
+				if (iter instanceof List && iter instanceof RandomAccess)
+				{
+					return (List<?>) iter;
+				}
 			}
+			return null;
 		}
 
 		@Override
-		public E next()
+		public Collection<D> collect(Collection<D> result)
 		{
-			if (here)
+			final Collection<D> coll = result != null ? result : new ArrayList<D>();
+
+			boolean parallel = this.launch(new Mapper<Canal<D>, List<D>>()
 			{
-				return self.next();
-			}
-			else
+				@Override
+				public List<D> map(Canal<D> chunk) throws Exception
+				{
+					return chunk.collectAsList(new ArrayList<D>());
+				}
+			}, new Action<List<D>>()
 			{
-				return that.next();
-			}
-		}
-	}
-
-	protected static class UntilOp<E> implements Converter<E, E>
-	{
-		protected final Filter<E>	until;
-
-		protected final Option<E>[]	drop;
+				@Override
+				public void action(List<D> part) throws Exception
+				{
+					coll.addAll(part);
+				}
+			});
 
-		public UntilOp(Filter<E> until, Option<E>[] drop)
-		{
-			if (until == null)
-			{
-				throw new NullPointerException();
-			}
-			this.until = until;
-			this.drop = drop;
+			return parallel ? coll : super.collect(result);
 		}
 
 		@Override
-		public Pond<E, E> newPond()
+		public int count()
 		{
-			return new Wheel<E, E>()
-			{
-				boolean	over	= false;
-				boolean	take	= true;
-				E		next	= null;
+			final int[] total = new int[] { 0 };
 
+			boolean parallel = this.launch(new Mapper<Canal<D>, Integer>()
+			{
 				@Override
-				public void begin()
+				public Integer map(Canal<D> chunk) throws Exception
 				{
-					if (drop != null && drop.length > 0)
-					{
-						drop[0] = Option.none();
-					}
-					super.begin();
+					return chunk.count();
 				}
-
+			}, new Action<Integer>()
+			{
 				@Override
-				public boolean hasNext()
+				public void action(Integer part) throws Exception
 				{
-					if (over)
-					{
-						return false;
-					}
-					else if (!take)
-					{
-						return true;
-					}
-					else if (!upstream().hasNext())
-					{
-						return false;
-					}
-					else
-					{
-						next = upstream().next();
-						try
-						{
-							if (until.filter(next))
-							{
-								if (drop != null && drop.length > 0)
-								{
-									drop[0] = Option.some(next);
-								}
-								over = true;
-								next = null;
-								take = true;
-								return false;
-							}
-							else
-							{
-								take = false;
-								return true;
-							}
-						}
-						catch (RuntimeException e)
-						{
-							throw e;
-						}
-						catch (Exception e)
-						{
-							throw new RuntimeException(e);
-						}
-					}
+					total[0] += part;
 				}
+			});
+
+			return parallel ? total[0] : super.count();
+		}
+
+		@Override
+		public <K> Map<K, Integer> countByKey(Map<K, Integer> result, final Mapper<D, K> kop)
+		{
+			final Map<K, Integer> map = result != null ? result : new LinkedHashMap<K, Integer>();
 
+			boolean parallel = this.launch(new Mapper<Canal<D>, Map<K, Integer>>()
+			{
 				@Override
-				public E next()
+				public Map<K, Integer> map(Canal<D> chunk) throws Exception
 				{
-					try
-					{
-						return next;
-					}
-					finally
+					return chunk.countByKey(new LinkedHashMap<K, Integer>(), kop);
+				}
+			}, new Action<Map<K, Integer>>()
+			{
+				@Override
+				public void action(Map<K, Integer> part) throws Exception
+				{
+					Integer count = null;
+					for (Entry<K, Integer> entry : part.entrySet())
 					{
-						take = true;
+						count = map.get(entry.getKey());
+						map.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
 					}
 				}
-			};
-		}
-	}
+			});
 
-	protected static abstract class Wheel<I, O> extends AbstractPond<I, O>
-	{
-		/**
-		 * The index of current iterating element.<br />
-		 * This index should {@code +1} just after {@code upstream().next()} is
-		 * called and before any other action.
-		 */
-		protected long index = 0;
+			return parallel ? map : super.countByKey(result, kop);
+		}
 
 		@Override
-		public void begin()
+		public ParallelCanal<D> filter(Filter<? super D> pred)
 		{
+			return super.filter(pred).toParallel();
 		}
 
 		@Override
-		public boolean hasNext()
+		public <V> ParallelCanal<V> flatMap(Mapper<? super D, ? extends Iterable<? extends V>> mapper)
 		{
-			return upstream().hasNext();
+			return super.<V> flatMap(mapper).toParallel();
 		}
-	}
-
-	public static interface Window<R>
-	{
-		public Mapper<? super R, ? extends Number>[] between();
-
-		public boolean isByRows();
-
-		public Expr<? super R, ?>[] orderBy();
-
-		public Expr<? super R, ?>[] partBy();
-	}
-
-	public static interface WindowFunctionResultSetter<R>
-	{
-		public void set(R row, int idx, Aggregator<R, ?> agg, Object res) throws Exception;
-	}
 
-	public static class WindowFunctions<I>
-	{
-		protected static class COUNT<I> extends AbstractAggregator<I, Integer>
+		/**
+		 * Fold each chunk from a new initial value and combine the partial
+		 * results in the order of the chunks if this Canal is ordered.
+		 * 
+		 * @param init
+		 *            {@code ()->R} the producer of initial value for each
+		 *            chunk.
+		 * @param folder
+		 *            {@code (R res, D el)->R}
+		 * @param combiner
+		 *            {@code (R a, R b)->R} combine two partial results.
+		 * @return
+		 */
+		public <R> R fold(final Producer<R> init, final Reducer<D, R> folder, final Reducer<R, R> combiner)
 		{
-			protected final boolean			distinct;
+			if (init == null || folder == null || combiner == null)
+			{
+				throw new NullPointerException();
+			}
 
-			protected final Mapper<I, ?>	vop;
+			final List<R> result = new ArrayList<R>(1);
 
-			public COUNT(boolean distinct, Mapper<I, ?> vop)
+			boolean parallel = this.launch(new Mapper<Canal<D>, R>()
 			{
-				if (vop == null)
+				@Override
+				public R map(Canal<D> chunk) throws Exception
 				{
-					throw new NullPointerException();
+					return chunk.fold(init.produce(), folder);
 				}
-				this.distinct = distinct;
-				this.vop = vop;
-			}
-
-			@Override
-			public Integer update(Object gather, I[] rows, int winFrom, int winTo) throws Exception
+			}, new Action<R>()
 			{
-				if (distinct)
+				@Override
+				public void action(R part) throws Exception
 				{
-					Set<Object> set = new HashSet<Object>();
-					Object val = null;
-					for (int i = winFrom; i < winTo; i++)
+					if (result.isEmpty())
 					{
-						if ((val = vop.map(rows[i])) != null)
-						{
-							set.add(val);
-						}
+						result.add(part);
 					}
-					return set.size();
-				}
-				else
-				{
-					int count = 0;
-					for (int i = winFrom; i < winTo; i++)
+					else
 					{
-						if (vop.map(rows[i]) != null)
-						{
-							count++;
-						}
+						result.set(0, combiner.reduce(result.get(0), part));
 					}
-					return count;
 				}
-			}
-		}
+			});
 
-		protected static class DENSE_RANK<I> extends AbstractAggregator<I, Integer>
-		{
-			@Override
-			public Mapper<I, Number>[] between()
+			try
 			{
-				return null;
+				if (!parallel)
+				{
+					return super.fold(init.produce(), folder);
+				}
+				return result.isEmpty() ? init.produce() : result.get(0);
 			}
-
-			@Override
-			public Object gather(Object acc, I[] rows, int levelFrom, int levelTo) throws Exception
+			catch (RuntimeException e)
 			{
-				return ((Integer) acc) + 1;
+				throw e;
 			}
-
-			@Override
-			public Integer initial()
+			catch (Exception e)
 			{
-				return 0;
+				throw new RuntimeException(e);
 			}
 		}
 
-		protected static class FIRST_VALUE<I, O> extends AbstractAggregator<I, O>
+		/**
+		 * Fold each chunk into partial accumulators per key and merge the
+		 * partial maps with the combiner.
+		 * 
+		 * @param result
+		 *            The result map, null means a new LinkedHashMap.
+		 * @param kop
+		 *            {@code (D data)->K key} the "key of pair" recognizer.
+		 * @param init
+		 *            {@code ()->W} the producer of initial value for each key.
+		 * @param folder
+		 *            {@code (W res,D data)->W res} a fold reducer.
+		 * @param combiner
+		 *            {@code (W a, W b)->W} combine two partial accumulators
+		 *            of the same key.
+		 * @return
+		 */
+		public <K, W> Map<K, W> foldByKey(Map<K, W> result, final Mapper<D, K> kop, final Producer<W> init,
+				final Reducer<D, W> folder, final Reducer<W, W> combiner)
 		{
-			protected final Mapper<I, ? extends O>	vop;
+			if (init == null || folder == null || combiner == null)
+			{
+				throw new NullPointerException();
+			}
 
-			protected final boolean					ignoreNulls;
+			final Map<K, W> map = result != null ? result : new LinkedHashMap<K, W>();
 
-			public FIRST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
+			boolean parallel = this.launch(new Mapper<Canal<D>, Map<K, W>>()
 			{
-				if (vop == null)
+				@Override
+				public Map<K, W> map(Canal<D> chunk) throws Exception
 				{
-					throw new NullPointerException();
+					return chunk.foldByKey(new LinkedHashMap<K, W>(), kop, init, folder);
 				}
-				this.vop = vop;
-				this.ignoreNulls = ignoreNulls;
-			}
-
-			@Override
-			public O update(Object gather, I[] rows, int winFrom, int winTo) throws Exception
+			}, new Action<Map<K, W>>()
 			{
-				O d = null;
-				for (int i = winFrom; i < winTo; i++)
+				@Override
+				public void action(Map<K, W> part) throws Exception
 				{
-					if ((d = vop.map(rows[i])) != null || !ignoreNulls)
+					W acc = null;
+					for (Entry<K, W> entry : part.entrySet())
 					{
-						return d;
+						acc = map.get(entry.getKey());
+						if (acc == null && !map.containsKey(entry.getKey()))
+						{
+							map.put(entry.getKey(), entry.getValue());
+						}
+						else
+						{
+							map.put(entry.getKey(), combiner.reduce(acc, entry.getValue()));
+						}
 					}
 				}
-				return null;
-			}
+			});
+
+			return parallel ? map : super.foldByKey(result, kop, init, folder);
 		}
 
-		public abstract class Item<O extends Comparable<O>> extends Expr<I, O>
+		/**
+		 * Evaluate the task on each chunk and merge the partial results.
+		 * 
+		 * @param task
+		 *            the evaluation on each chunk.
+		 * @param merger
+		 *            merge each partial result, always called in the current
+		 *            thread.
+		 * @return false if this Canal could not be evaluated in parallel.
+		 */
+		protected <T> boolean launch(final Mapper<Canal<D>, T> task, Action<T> merger)
 		{
-			@Override
-			public Item<O> asc()
-			{
-				super.asc();
-				return this;
-			}
+			final LinkedList<Operator<?, ?>> stages = new LinkedList<Operator<?, ?>>();
 
-			@Override
-			public Item<O> desc()
+			Canal<?> head = this;
+			while (head != null && !(head.getOperator() instanceof ParallelOp))
 			{
-				super.desc();
-				return this;
+				if (!isStateless(head.getOperator()))
+				{
+					return false;
+				}
+				stages.addFirst(head.getOperator());
+				head = head.getUpstream();
 			}
-
-			@Override
-			public Item<O> nullsFirst()
+			if (head == null)
 			{
-				super.nullsFirst();
-				return this;
+				return false;
 			}
 
-			@Override
-			public Item<O> nullsLast()
-			{
-				super.nullsLast();
-				return this;
-			}
-		}
-
-		protected static class LAG<I, O> extends AbstractAggregator<I, O>
-		{
-			protected final Mapper<I, ? extends O>	vop;
+			ParallelOp<?> op = (ParallelOp<?>) head.getOperator();
+			Canal<?> source = head.getUpstream();
+			List<?> list = sourceList(source);
 
-			protected final int						offset;
-
-			protected final O						deft;
+			ExecutorService executor = op.executor();
+			CompletionService<T> service = op.ordered ? null : new ExecutorCompletionService<T>(executor);
+			LinkedList<Future<T>> futures = new LinkedList<Future<T>>();
 
-			public LAG(Mapper<I, ? extends O> vop, int offset, O deft)
+			Pond<?, ?> pond = null;
+			int running = 0, from = 0;
+			try
 			{
-				if (vop == null)
+				while (true)
 				{
-					throw new NullPointerException();
-				}
-				this.vop = vop;
-				this.offset = Math.abs(offset);
-				this.deft = deft;
-			}
-
-			@Override
-			public Mapper<I, Number>[] between()
-			{
-				return null;
-			}
+					final List<?> chunk;
+					if (list != null)
+					{
+						if (from >= list.size())
+						{
+							break;
+						}
+						int to = Math.min(from + op.chunk, list.size());
+						chunk = list.subList(from, to);
+						from = to;
+					}
+					else
+					{
+						if (pond == null)
+						{
+							pond = source.build();
+						}
+						List<Object> buffer = new ArrayList<Object>(op.chunk);
+						while (buffer.size() < op.chunk && pond.hasNext())
+						{
+							buffer.add(pond.next());
+						}
+						if (buffer.isEmpty())
+						{
+							break;
+						}
+						chunk = buffer;
+					}
 
-			@Override
-			public O express(int pos, Object acc, I[] rows, int winFrom, int winTo) throws Exception
-			{
-				int index = pos - offset;
-				return index < 0 ? deft : vop.map(rows[index]);
-			}
-		}
+					Callable<T> call = new Callable<T>()
+					{
+						@Override
+						public T call() throws Exception
+						{
+							return task.map(ParallelCanal.<D> rebase(chunk, stages));
+						}
+					};
 
-		protected static class LAST_VALUE<I, O> extends AbstractAggregator<I, O>
-		{
-			protected final Mapper<I, ? extends O>	vop;
+					futures.add(op.ordered ? executor.submit(call) : service.submit(call));
+					running++;
 
-			protected final boolean					ignoreNulls;
+					if (running >= op.parallelism * 2)
+					{
+						merger.action(op.ordered ? futures.removeFirst().get() : service.take().get());
+						running--;
+					}
+				}
 
-			public LAST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
-			{
-				if (vop == null)
+				while (running > 0)
 				{
-					throw new NullPointerException();
+					merger.action(op.ordered ? futures.removeFirst().get() : service.take().get());
+					running--;
 				}
-				this.vop = vop;
-				this.ignoreNulls = ignoreNulls;
-			}
 
-			@Override
-			public O update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+				return true;
+			}
+			catch (ExecutionException e)
 			{
-				O d = null;
-				for (int i = winTo - 1; i >= winFrom; i--)
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
 				{
-					if ((d = vop.map(rows[i])) != null || !ignoreNulls)
-					{
-						return d;
-					}
+					throw (RuntimeException) cause;
 				}
-				return null;
-			}
-		}
-
-		protected static class LEAD<I, O> extends AbstractAggregator<I, O>
-		{
-			protected final Mapper<I, ? extends O>	vop;
-
-			protected final int						offset;
-
-			protected final O						deft;
-
-			public LEAD(Mapper<I, ? extends O> vop, int offset, O deft)
-			{
-				if (vop == null)
+				else if (cause instanceof Error)
 				{
-					throw new NullPointerException();
+					throw (Error) cause;
+				}
+				else
+				{
+					throw new RuntimeException(cause);
 				}
-				this.vop = vop;
-				this.offset = Math.abs(offset);
-				this.deft = deft;
 			}
-
-			@Override
-			public Mapper<I, Number>[] between()
+			catch (InterruptedException e)
 			{
-				return null;
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
 			}
-
-			@Override
-			public O express(int pos, Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			catch (RuntimeException e)
 			{
-				int index = pos + offset;
-				return index >= rows.length ? deft : vop.map(rows[index]);
+				throw e;
 			}
-		}
-
-		protected static class MAX<I, O extends Comparable<O>> extends AbstractAggregator<I, O>
-		{
-			protected final Expr<I, ? extends O> vop;
-
-			public MAX(Expr<I, ? extends O> vop)
+			catch (Exception e)
 			{
-				if (vop == null)
-				{
-					throw new NullPointerException();
-				}
-				this.vop = vop;
+				throw new RuntimeException(e);
 			}
-
-			@Override
-			public O update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			finally
 			{
-				O m = null, o = null;
-				for (int i = winFrom; i < winTo; i++)
+				for (Future<T> future : futures)
 				{
-					if ((o = vop.map(rows[i])) != null)
+					future.cancel(true);
+				}
+				if (pond != null)
+				{
+					try
+					{
+						pond.close();
+					}
+					catch (Exception e)
 					{
-						if (m == null || o.compareTo(m) > 0)
-						{
-							m = o;
-						}
 					}
 				}
-				return m;
 			}
 		}
 
-		protected static class MIN<I, O extends Comparable<O>> extends AbstractAggregator<I, O>
+		@Override
+		public <V> ParallelCanal<V> map(Mapper<? super D, ? extends V> mapper)
 		{
-			protected final Expr<I, ? extends O> vop;
+			return super.<V> map(mapper).toParallel();
+		}
 
-			public MIN(Expr<I, ? extends O> vop)
+		@Override
+		public ParallelCanal<D> peek(Action<? super D> action)
+		{
+			return super.peek(action).toParallel();
+		}
+
+		@Override
+		public Option<D> reduce(final Reducer<D, D> reducer, Filter<D> condition)
+		{
+			if (condition != null)
 			{
-				if (vop == null)
-				{
-					throw new NullPointerException();
-				}
-				this.vop = vop;
+				return super.reduce(reducer, condition);
 			}
 
-			@Override
-			public O update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			final List<D> result = new ArrayList<D>(1);
+
+			boolean parallel = this.launch(new Mapper<Canal<D>, Option<D>>()
 			{
-				O m = null, o = null;
-				for (int i = winFrom; i < winTo; i++)
+				@Override
+				public Option<D> map(Canal<D> chunk) throws Exception
 				{
-					if ((o = vop.map(rows[i])) != null)
+					return chunk.reduce(reducer);
+				}
+			}, new Action<Option<D>>()
+			{
+				@Override
+				public void action(Option<D> part) throws Exception
+				{
+					if (part.given())
 					{
-						if (m == null || o.compareTo(m) < 0)
+						if (result.isEmpty())
 						{
-							m = o;
+							result.add(part.get());
+						}
+						else
+						{
+							result.set(0, reducer.reduce(result.get(0), part.get()));
 						}
 					}
 				}
-				return m;
-			}
-		}
+			});
 
-		protected static class RANK<I> extends AbstractAggregator<I, Integer>
-		{
-			@Override
-			public Mapper<I, Number>[] between()
+			if (!parallel)
 			{
-				return null;
+				return super.reduce(reducer, condition);
 			}
+			return result.isEmpty() ? Canal.<D> none() : Canal.some(result.get(0));
+		}
+	}
 
-			@Override
-			public Object gather(Object acc, I[] rows, int levelFrom, int levelTo) throws Exception
-			{
-				return levelFrom + 1;
-			}
+	protected static class ParallelOp<E> implements Converter<E, E>
+	{
+		protected final ExecutorService	executor;
 
-			@Override
-			public Integer initial()
+		protected final int				parallelism;
+
+		protected final int				chunk;
+
+		protected final boolean			ordered;
+
+		private ExecutorService			pool;
+
+		public ParallelOp(ExecutorService executor, int parallelism, int chunk, boolean ordered)
+		{
+			if (parallelism < 1 || chunk < 1)
 			{
-				return 0;
+				throw new IllegalArgumentException();
 			}
+			this.executor = executor;
+			this.parallelism = parallelism;
+			this.chunk = chunk;
+			this.ordered = ordered;
 		}
 
-		protected static class ROW_NUMBER<I> extends AbstractAggregator<I, Integer>
+		/**
+		 * Get the given executor, or the pool of this operator which is created
+		 * at the first time and reused by each evaluation.
+		 * 
+		 * @return
+		 */
+		protected synchronized ExecutorService executor()
 		{
-			@Override
-			public Mapper<I, Number>[] between()
+			if (executor != null)
 			{
-				return null;
+				return executor;
 			}
-
-			@Override
-			public Integer express(int pos, Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			if (pool == null)
 			{
-				return pos + 1;
+				pool = DaemonThreadFactory.newPool(parallelism);
 			}
+			return pool;
 		}
 
-		protected static class SUM<I, T extends Number> extends AbstractAggregator<I, Number>
+		@Override
+		public Pond<E, E> newPond()
 		{
-			protected final Mapper<I, T> vop;
-
-			public SUM(Mapper<I, T> vop)
+			return new Creek<E, E>()
 			{
-				if (vop == null)
+				@Override
+				public E next()
 				{
-					throw new NullPointerException();
+					return upstream().next();
 				}
-				this.vop = vop;
+			};
+		}
+	}
+
+	protected static class PeekOp<E> implements Converter<E, E>
+	{
+		protected final Action<? super E> action;
+
+		public PeekOp(Action<? super E> action)
+		{
+			if (action == null)
+			{
+				throw new NullPointerException();
 			}
+			this.action = action;
+		}
 
-			@Override
-			public Number update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new Creek<E, E>()
 			{
-				Number sum = null, d = null;
-				for (int i = winFrom; i < winTo; i++)
+				@Override
+				public void drain(final Sink<? super E> sink) throws Exception
 				{
-					if ((d = vop.map(rows[i])) != null)
+					upstream().drain(new Sink<E>()
 					{
-						if (sum == null)
+						@Override
+						public boolean accept(E el) throws Exception
 						{
-							if (d instanceof Integer || d instanceof Short || d instanceof Byte)
-							{
-								sum = 0;
-							}
-							else if (d instanceof Double)
-							{
-								sum = 0.0;
-							}
-							else if (d instanceof BigDecimal)
-							{
-								sum = BigDecimal.ZERO;
-							}
-							else if (d instanceof Long)
-							{
-								sum = 0L;
-							}
-							else if (d instanceof Float)
-							{
-								sum = 0f;
-							}
-							else if (d instanceof BigInteger)
-							{
-								sum = BigInteger.ZERO;
-							}
-							else
-							{
-								sum = 0.0;
-							}
+							action.action(el);
+							return sink.accept(el);
 						}
+					});
+				}
 
-						if (sum instanceof Integer)
-						{
-							sum = sum.intValue() + d.intValue();
-						}
-						else if (sum instanceof Double)
-						{
-							sum = sum.doubleValue() + d.doubleValue();
-						}
-						else if (sum instanceof BigDecimal)
-						{
-							sum = ((BigDecimal) sum).add((BigDecimal) d);
-						}
-						else if (sum instanceof Long)
-						{
-							sum = sum.longValue() + d.longValue();
-						}
-						else if (sum instanceof Float)
-						{
-							sum = sum.floatValue() + d.floatValue();
-						}
-						else if (sum instanceof BigInteger)
-						{
-							sum = ((BigInteger) d).add((BigInteger) d);
-						}
+				@Override
+				public E next()
+				{
+					E el = upstream().next();
+					try
+					{
+						action.action(el);
+					}
+					catch (RuntimeException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
 					}
+					return el;
 				}
 
-				return sum;
-			}
-		}
-
-		public final Mapper<I, Number>	CURRENT_ROW	= new Mapper<I, Number>()
-													{
-														@Override
-														public Number map(I el) throws Exception
-														{
-															return 0;
-														}
-													};
-
-		public final Mapper<I, Number>	UNBOUNDED	= new Mapper<I, Number>()
-													{
-														@Override
-														public Number map(I el) throws Exception
-														{
-															return null;
-														}
-													};
-
-		public final Mapper<I, Number>	NULL		= new Mapper<I, Number>()
-													{
-														@Override
-														public Number map(Object el) throws Exception
-														{
-															return null;
-														}
-													};
-
-		@SuppressWarnings("rawtypes")
-		public <T extends Comparable> Item $(final Mapper<I, T> mapper)
-		{
-			return new Item()
-			{
-				@SuppressWarnings("unchecked")
 				@Override
-				public Object map(Object el) throws Exception
+				public boolean reset()
 				{
-					return mapper.map((I) el);
+					return true;
 				}
 			};
 		}
+	}
 
-		public Aggregator<I, Integer> COUNT(boolean distinct, Mapper<I, ?> vop)
-		{
-			return new COUNT<I>(distinct, vop);
-		}
-
-		public Aggregator<I, Integer> COUNT(Mapper<I, ?> vop)
-		{
-			return COUNT(false, vop);
-		}
+	/**
+	 * A compiled pipeline which could be executed repeatedly over different
+	 * sources. The ponds are built once and reset before each execution if
+	 * all of them could be reset, otherwise they are built again. A Plan runs
+	 * one execution at a time and should not be shared among threads.
+	 * 
+	 * @see Canal#plan(Mapper)
+	 */
+	public static class Plan<S, D>
+	{
+		protected final Canal<D>	canal;
 
-		public Aggregator<I, Integer> DENSE_RANK()
-		{
-			return new DENSE_RANK<I>();
-		}
+		private Pond<?, D>			pond;
 
-		public <O> Aggregator<I, O> FIRST_VALUE(Mapper<I, ? extends O> vop)
+		protected Plan(Canal<D> canal)
 		{
-			return FIRST_VALUE(vop, false);
+			this.canal = canal;
 		}
 
-		public <O> Aggregator<I, O> FIRST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
+		/**
+		 * Execute over the source and collect the results into a new list.
+		 * 
+		 * @param source
+		 * @return
+		 */
+		public List<D> collect(Iterable<? extends S> source)
 		{
-			return new FIRST_VALUE<I, O>(vop, ignoreNulls);
+			return (List<D>) this.collect(source, new ArrayList<D>());
 		}
 
-		public Mapper<I, Number> following(final BigDecimal amount)
+		/**
+		 * Execute over the source and collect the results into the given
+		 * collection.
+		 * 
+		 * @param source
+		 * @param result
+		 * @return
+		 */
+		public Collection<D> collect(Iterable<? extends S> source, final Collection<D> result)
 		{
-			return following(amount != null ? amount.doubleValue() : null);
+			this.execute(source, new Sink<D>()
+			{
+				@Override
+				public boolean accept(D el)
+				{
+					result.add(el);
+					return true;
+				}
+			});
+			return result;
 		}
 
-		public Mapper<I, Number> following(final Double amount)
+		/**
+		 * Execute over the source and count the results.
+		 * 
+		 * @param source
+		 * @return
+		 */
+		public long count(Iterable<? extends S> source)
 		{
-			return new Mapper<I, Number>()
+			final long[] count = new long[] { 0 };
+			this.execute(source, new Sink<D>()
 			{
 				@Override
-				public Number map(I el) throws Exception
+				public boolean accept(D el)
 				{
-					return amount != null ? Math.abs(amount) : null;
+					count[0]++;
+					return true;
 				}
-			};
+			});
+			return count[0];
 		}
 
-		public Mapper<I, Number> following(final Integer amount)
+		protected void execute(Iterable<? extends S> source, Sink<D> sink)
 		{
-			return new Mapper<I, Number>()
+			Pond<?, D> pond = this.open(source);
+			try
+			{
+				pond.drain(sink);
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+			finally
+			{
+				close(pond);
+			}
+		}
+
+		/**
+		 * Execute over the source and fold the results.
+		 * 
+		 * @param source
+		 * @param init
+		 * @param folder
+		 * @return
+		 */
+		public <R> R fold(Iterable<? extends S> source, R init, final Reducer<D, R> folder)
+		{
+			if (folder == null)
+			{
+				throw new NullPointerException();
+			}
+			final List<R> result = new ArrayList<R>(1);
+			result.add(init);
+			this.execute(source, new Sink<D>()
 			{
 				@Override
-				public Number map(I el) throws Exception
+				public boolean accept(D el) throws Exception
 				{
-					return amount != null ? Math.abs(amount) : null;
+					result.set(0, folder.reduce(result.get(0), el));
+					return true;
 				}
-			};
+			});
+			return result.get(0);
 		}
 
-		public <T extends Comparable<T>> Item<T> item(final T t)
+		/**
+		 * Execute over the source and apply the action to each result.
+		 * 
+		 * @param source
+		 * @param action
+		 */
+		public void foreach(Iterable<? extends S> source, final Action<? super D> action)
 		{
-			return new Item<T>()
+			if (action == null)
+			{
+				throw new NullPointerException();
+			}
+			this.execute(source, new Sink<D>()
 			{
 				@Override
-				public T map(I el) throws Exception
+				public boolean accept(D el) throws Exception
 				{
-					return t;
+					action.action(el);
+					return true;
 				}
-			};
+			});
 		}
 
-		public <O> Aggregator<I, O> LAG(Mapper<I, ? extends O> vop)
+		/**
+		 * Execute over the source lazily. The returned iterator should be
+		 * exhausted or closed before the next execution.
+		 * 
+		 * @param source
+		 * @return
+		 */
+		public CloseableIterator<D> iterator(Iterable<? extends S> source)
 		{
-			return LAG(vop, 1);
+			return this.open(source);
 		}
 
-		public <O> Aggregator<I, O> LAG(Mapper<I, ? extends O> vop, int offset)
+		@SuppressWarnings("unchecked")
+		protected Pond<?, D> open(Iterable<? extends S> source)
 		{
-			return LAG(vop, offset, null);
-		}
+			if (source == null)
+			{
+				throw new NullPointerException();
+			}
 
-		public <O> Aggregator<I, O> LAG(Mapper<I, ? extends O> vop, int offset, O deft)
-		{
-			return new LAG<I, O>(vop, offset, deft);
+			Pond<?, D> pond = this.pond;
+			if (pond == null || !reset(pond))
+			{
+				pond = canal.build(null);
+			}
+
+			Pond<?, ?> bottom = pond;
+			while (bottom.upstream() != null)
+			{
+				bottom = bottom.upstream();
+			}
+			((PlanSource<S>) bottom).iter = source.iterator();
+
+			try
+			{
+				start(pond);
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+
+			return this.pond = pond;
 		}
 
-		public <O> Aggregator<I, O> LAST_VALUE(Mapper<I, ? extends O> vop)
+		protected boolean reset(Pond<?, ?> pond)
 		{
-			return LAST_VALUE(vop, false);
+			return pond.reset() && (pond.upstream() == null || reset(pond.upstream()));
 		}
 
-		public <O> Aggregator<I, O> LAST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
+		protected void start(Pond<?, ?> pond) throws Exception
 		{
-			return new LAST_VALUE<I, O>(vop, ignoreNulls);
+			if (pond.upstream() != null)
+			{
+				start(pond.upstream());
+			}
+			pond.begin();
+			pond.setBegun();
 		}
+	}
 
-		public <O> Aggregator<I, O> LEAD(Mapper<I, ? extends O> vop)
+	/**
+	 * The source of a {@link Plan} which is bound to a new iterator before
+	 * each execution.
+	 */
+	protected static class PlanSource<E> extends Source<E>
+	{
+		protected Iterator<? extends E> iter;
+
+		@Override
+		public void drain(Sink<? super E> sink) throws Exception
 		{
-			return LEAD(vop, 1);
+			if (iter != null)
+			{
+				while (iter.hasNext())
+				{
+					if (!sink.accept(iter.next()))
+					{
+						break;
+					}
+				}
+			}
 		}
 
-		public <O> Aggregator<I, O> LEAD(Mapper<I, ? extends O> vop, int offset)
+		@Override
+		public boolean hasNext()
 		{
-			return LEAD(vop, offset, null);
+			return iter != null && iter.hasNext();
 		}
 
-		public <O> Aggregator<I, O> LEAD(Mapper<I, ? extends O> vop, int offset, O deft)
+		@Override
+		public E next()
 		{
-			return new LEAD<I, O>(vop, offset, deft);
+			return iter.next();
 		}
 
-		public <O extends Comparable<O>> Aggregator<I, O> MAX(Expr<I, ? extends O> vop)
+		@Override
+		public boolean reset()
 		{
-			return new MAX<I, O>(vop);
+			iter = null;
+			return true;
 		}
+	}
 
-		public <O extends Comparable<O>> Aggregator<I, O> MIN(Expr<I, ? extends O> vop)
+	protected static class PlanSourcer<E> implements Sourcer<E>
+	{
+		@Override
+		public Source<E> newPond()
 		{
-			return new MIN<I, O>(vop);
+			return new PlanSource<E>();
 		}
+	}
 
-		public Mapper<I, Number> offset(final BigDecimal amount)
-		{
-			return new Mapper<I, Number>()
-			{
-				@Override
-				public Number map(I el) throws Exception
-				{
-					return amount;
-				}
-			};
-		}
+	protected static interface Pond<I, O> extends CloseableIterator<O>
+	{
+		void begin() throws Exception;
 
-		public Mapper<I, Number> offset(final Double amount)
+		@Override
+		void close() throws Exception;
+
+		/**
+		 * Push the remaining elements to the given sink until this pond is
+		 * exhausted or the sink refuses to accept more.
+		 * 
+		 * @param sink
+		 * @throws Exception
+		 */
+		void drain(Sink<? super O> sink) throws Exception;
+
+		void end() throws Exception;
+
+		boolean hasBegun();
+
+		/**
+		 * Reset this pond to its initial state, so that it could be begun
+		 * again over a new source instead of being built again.
+		 * 
+		 * @return false if this pond could not be reset.
+		 */
+		boolean reset();
+
+		void setBegun();
+
+		Pond<?, I> upstream();
+
+		void upstream(Pond<?, I> up);
+	}
+
+	/**
+	 * Drain the upstream on a background thread into a bounded buffer, so
+	 * that the upstream I/O overlaps with the downstream work. Any error
+	 * raised by the upstream is thrown to the downstream once the elements
+	 * before it have been consumed.
+	 */
+	protected static class PrefetchOp<E> implements Converter<E, E>
+	{
+		protected static final Object	NULL	= new Object();
+
+		protected static final Object	END		= new Object();
+
+		protected final ExecutorService	executor;
+
+		protected final int				bufferSize;
+
+		public PrefetchOp(ExecutorService executor, int bufferSize)
 		{
-			return new Mapper<I, Number>()
+			if (bufferSize < 1)
 			{
-				@Override
-				public Number map(I el) throws Exception
-				{
-					return amount;
-				}
-			};
+				throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+			}
+			this.executor = executor;
+			this.bufferSize = bufferSize;
 		}
 
-		public Mapper<I, Number> offset(final Integer amount)
+		@Override
+		public Pond<E, E> newPond()
 		{
-			return new Mapper<I, Number>()
+			return new AbstractPond<E, E>()
 			{
+				private BlockingQueue<Object>	queue;
+
+				private CountDownLatch			finished;
+
+				private AtomicBoolean			started;
+
+				private Future<?>				future;
+
+				private ExecutorService			own;
+
+				private volatile boolean		closed;
+
+				private Throwable				error;
+
+				private E						next;
+
+				private boolean					ready;
+
+				private boolean					over;
+
 				@Override
-				public Number map(I el) throws Exception
+				public void begin()
 				{
-					return amount;
-				}
-			};
-		}
+					queue = new ArrayBlockingQueue<Object>(bufferSize);
+					finished = new CountDownLatch(1);
+					started = new AtomicBoolean(false);
 
-		public Mapper<I, Number> preceding(final BigDecimal amount)
-		{
-			return preceding(amount != null ? amount.doubleValue() : null);
-		}
+					ExecutorService exec = executor;
+					if (exec == null)
+					{
+						exec = own = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+					}
+
+					future = exec.submit(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							if (!started.compareAndSet(false, true))
+							{
+								// Closed before this task started.
+								return;
+							}
+							try
+							{
+								upstream().drain(new Sink<E>()
+								{
+									@Override
+									public boolean accept(E el) throws InterruptedException
+									{
+										queue.put(el == null ? NULL : el);
+										return !closed;
+									}
+								});
+								queue.put(END);
+							}
+							catch (InterruptedException e)
+							{
+							}
+							catch (Throwable e)
+							{
+								error = e;
+								try
+								{
+									queue.put(END);
+								}
+								catch (InterruptedException ex)
+								{
+								}
+							}
+							finally
+							{
+								finished.countDown();
+							}
+						}
+					});
+				}
 
-		public Mapper<I, Number> preceding(final Double amount)
-		{
-			return new Mapper<I, Number>()
-			{
 				@Override
-				public Number map(I el) throws Exception
+				public void close() throws Exception
 				{
-					return amount != null ? -Math.abs(amount) : null;
+					if (!closed)
+					{
+						closed = true;
+						if (future != null)
+						{
+							future.cancel(true);
+							queue.clear();
+							// Wait only for the task which has started draining.
+							if (!started.compareAndSet(false, true))
+							{
+								finished.await();
+							}
+						}
+						if (own != null)
+						{
+							own.shutdown();
+						}
+					}
+					super.close();
 				}
-			};
-		}
 
-		public Mapper<I, Number> preceding(final Integer amount)
-		{
-			return new Mapper<I, Number>()
-			{
+				@SuppressWarnings("unchecked")
 				@Override
-				public Number map(I el) throws Exception
+				public boolean hasNext()
 				{
-					return amount != null ? -Math.abs(amount) : null;
-				}
-			};
-		}
+					if (ready)
+					{
+						return true;
+					}
+					if (over)
+					{
+						return false;
+					}
 
-		public Aggregator<I, Integer> RANK()
-		{
-			return new RANK<I>();
-		}
+					Object el = null;
+					try
+					{
+						el = queue.take();
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new RuntimeException(e);
+					}
 
-		public Aggregator<I, Integer> ROW_NUMBER()
-		{
-			return new ROW_NUMBER<I>();
-		}
+					if (el == END)
+					{
+						over = true;
+						if (error instanceof RuntimeException)
+						{
+							throw (RuntimeException) error;
+						}
+						else if (error instanceof Error)
+						{
+							throw (Error) error;
+						}
+						else if (error != null)
+						{
+							throw new RuntimeException(error);
+						}
+						return false;
+					}
 
-		public <T extends Number> Aggregator<I, Number> SUM(Mapper<I, T> vop)
-		{
-			return new SUM<I, T>(vop);
+					next = el == NULL ? null : (E) el;
+					ready = true;
+					return true;
+				}
+
+				@Override
+				public E next()
+				{
+					if (!hasNext())
+					{
+						throw new NoSuchElementException();
+					}
+					ready = false;
+					return next;
+				}
+			};
 		}
 	}
 
-	protected static interface WindowRanger<I>
+	protected static class ProducedIterator<E> implements Iterator<E>
 	{
-		/**
-		 * To get the range of window. The range bound may be beyond level range
-		 * since the preceding and following arguments.
-		 * 
-		 * @param range
-		 *            the result range, from (including) to (excluding).
-		 * @param rows
-		 * @param from
-		 * @param levelBegin
-		 * @param levelEnd
-		 * @throws Exception
-		 */
-		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd) throws Exception;
+		protected final Producer<E>	nexter;
 
-		/**
-		 * To get the end of next step.
-		 * 
-		 * @param rows
-		 * @param from
-		 *            the start point of next step (including).
-		 * @param levelBegin
-		 * @param levelEnd
-		 * @return the end of next step (excluding).
-		 * @throws Exception
-		 */
-		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception;
-	}
+		private boolean				has;
 
-	protected static class ZipOp<A, B> implements Converter<A, Tuple2<A, B>>
-	{
-		protected final Canal<B> that;
+		private E					next;
 
-		public ZipOp(Canal<B> that)
+		public ProducedIterator(Producer<E> nexter)
 		{
-			if (that == null)
-			{
-				throw new NullPointerException();
-			}
-			this.that = that;
+			this.nexter = nexter;
+			this.toNext();
 		}
 
 		@Override
-		public Pond<A, Tuple2<A, B>> newPond()
+		public boolean hasNext()
 		{
-			return new ZipPond<A, B>(that);
+			return has;
 		}
-	}
-
-	protected static class ZipOuterOp<A, B> implements Converter<A, Tuple2<Option<A>, Option<B>>>
-	{
-		protected final Canal<B> that;
 
-		public ZipOuterOp(Canal<B> that)
+		@Override
+		public E next()
 		{
-			if (that == null)
+			try
 			{
-				throw new NullPointerException();
+				return next;
+			}
+			finally
+			{
+				this.toNext();
 			}
-			this.that = that;
 		}
 
 		@Override
-		public Pond<A, Tuple2<Option<A>, Option<B>>> newPond()
+		public void remove()
 		{
-			return new ZipOuterPond<A, B>(that);
+			throw new UnsupportedOperationException();
+		}
+
+		protected void toNext()
+		{
+			try
+			{
+				this.next = this.nexter.produce();
+				this.has = true;
+			}
+			catch (NoMoreElement e)
+			{
+				this.has = false;
+				this.next = null;
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
-	protected static class ZipOuterPond<A, B> extends Dam<A, B, Tuple2<Option<A>, Option<B>>>
+	public static interface Producer<E>
 	{
-		private Pond<?, B>	there;
+		E produce() throws Exception;
+	}
 
-		private boolean		hasThis;
+	/**
+	 * The metrics of the ponds built from a profiled Canal, accumulated over
+	 * all the executions. The time spent in a pond is only measured once
+	 * every {@code sampling} calls and scaled up, so that a large sampling
+	 * interval keeps the overhead low enough to leave the profiling on.
+	 * 
+	 * @see Canal#profile(Profile)
+	 */
+	public static class Profile
+	{
+		public static class Metrics
+		{
+			protected final String		label;
 
-		private boolean		hasThat;
+			protected final Canal<?>	upstream;
 
-		public ZipOuterPond(Canal<B> that)
-		{
-			super(that);
-		}
+			protected boolean			blocking;
 
-		@Override
-		public void begin()
-		{
-			this.there = that.build();
+			private long				runs;
+
+			private long				rows;
+
+			private long				beginNanos;
+
+			private long				iterNanos;
+
+			private long				peak;
+
+			public Metrics(String label, Canal<?> upstream)
+			{
+				this.label = label;
+				this.upstream = upstream;
+			}
+
+			protected synchronized void add(long runs, long rows, long beginNanos, long iterNanos, long peak)
+			{
+				this.runs += runs;
+				this.rows += rows;
+				this.beginNanos += beginNanos;
+				this.iterNanos += iterNanos;
+				this.peak = Math.max(this.peak, peak);
+			}
+
+			/**
+			 * The nanoseconds spent in begin(), where the blocking operators
+			 * consume their upstream.
+			 * 
+			 * @return
+			 */
+			public synchronized long getBeginNanos()
+			{
+				return beginNanos;
+			}
+
+			/**
+			 * The estimated nanoseconds spent in passing the elements,
+			 * including the time of pulling from the upstream.
+			 * 
+			 * @return
+			 */
+			public synchronized long getIterNanos()
+			{
+				return iterNanos;
+			}
+
+			public String getLabel()
+			{
+				return label;
+			}
+
+			/**
+			 * The peak number of elements, or groups, held by the pond.
+			 * 
+			 * @return
+			 */
+			public synchronized long getPeak()
+			{
+				return peak;
+			}
+
+			public synchronized long getRows()
+			{
+				return rows;
+			}
+
+			public synchronized long getRuns()
+			{
+				return runs;
+			}
 		}
 
-		@Override
-		public boolean hasNext()
+		private final Map<Canal<?>, Metrics>	metrics	= new IdentityHashMap<Canal<?>, Metrics>();
+
+		private Canal<?>						root;
+
+		private int								sampling	= 1;
+
+		public synchronized void clear()
 		{
-			return (hasThis = upstream().hasNext()) | (hasThat = there.hasNext());
+			metrics.clear();
+			root = null;
 		}
 
-		@Override
-		public Tuple2<Option<A>, Option<B>> next()
+		/**
+		 * Get the metrics of the operators from the downstream to the source.
+		 * 
+		 * @return
+		 */
+		public synchronized List<Metrics> metrics()
 		{
-			return Tuple.of(hasThis ? Option.some(upstream().next()) : Option.<A> none(),
-					hasThat ? Option.some(there.next()) : Option.<B> none());
+			List<Metrics> list = new ArrayList<Metrics>();
+			Metrics m = root == null ? null : metrics.get(root);
+			while (m != null)
+			{
+				list.add(m);
+				m = m.upstream == null ? null : metrics.get(m.upstream);
+			}
+			return list;
 		}
-	}
 
-	protected static class ZipPond<A, B> extends Dam<A, B, Tuple2<A, B>>
-	{
-		private Pond<?, B> there;
-
-		public ZipPond(Canal<B> that)
+		protected synchronized Metrics metrics(Canal<?> canal, String label)
 		{
-			super(that);
+			Metrics m = metrics.get(canal);
+			if (m == null)
+			{
+				metrics.put(canal, m = new Metrics(label, canal.getUpstream()));
+			}
+			return m;
 		}
 
-		@Override
-		public void begin()
+		protected synchronized void root(Canal<?> canal)
 		{
-			this.there = that.build();
+			this.root = canal;
 		}
 
-		@Override
-		public boolean hasNext()
+		public int sampling()
 		{
-			return upstream().hasNext() && there.hasNext();
+			return sampling;
 		}
 
-		@Override
-		public Tuple2<A, B> next()
+		/**
+		 * Set the number of calls between two timings.
+		 * 
+		 * @param sampling
+		 * @return
+		 */
+		public Profile sampling(int sampling)
 		{
-			return Tuple.of(upstream().next(), there.next());
+			if (sampling < 1)
+			{
+				throw new IllegalArgumentException();
+			}
+			this.sampling = sampling;
+			return this;
 		}
-	}
 
-	protected static class ZipWithIndexLongOp<E> implements Converter<E, Tuple2<E, Long>>
-	{
+		/**
+		 * Report the metrics in the style of EXPLAIN ANALYZE, the self time
+		 * excludes the time of pulling from the upstream.
+		 */
 		@Override
-		public Pond<E, Tuple2<E, Long>> newPond()
+		public String toString()
 		{
-			return new Wheel<E, Tuple2<E, Long>>()
+			StringBuilder buf = new StringBuilder();
+			buf.append("Profile (sampling ").append(sampling).append(")");
+
+			List<Metrics> list = this.metrics();
+			String indent = "";
+			for (int i = 0; i < list.size(); i++)
 			{
-				@Override
-				public Tuple2<E, Long> next()
+				Metrics m = list.get(i);
+				Metrics up = i + 1 < list.size() ? list.get(i + 1) : null;
+				long total = m.getBeginNanos() + m.getIterNanos();
+				long self = Math.max(0, total - (up == null ? 0 : up.getIterNanos()));
+
+				buf.append('\n').append(indent).append("-> ").append(m.getLabel());
+				buf.append("  (rows=").append(m.getRows());
+				if (up != null)
 				{
-					return Tuple.of(upstream().next(), index++);
+					buf.append(" in=").append(up.getRows());
 				}
-			};
+				buf.append(" runs=").append(m.getRuns());
+				buf.append(String.format(" time=%.3fms self=%.3fms", total / 1e6, self / 1e6));
+				if (m.blocking)
+				{
+					buf.append(String.format(" begin=%.3fms", m.getBeginNanos() / 1e6));
+				}
+				if (m.getPeak() > 0)
+				{
+					buf.append(" peak=").append(m.getPeak());
+				}
+				buf.append(")");
+				indent += "   ";
+			}
+			return buf.toString();
 		}
 	}
 
-	protected static class ZipWithIndexOp<E> implements Converter<E, Tuple2<E, Integer>>
+	/**
+	 * Wrap a pond to record the number of passed elements, the time spent in
+	 * it and the peak size of its materialised elements. The local counters
+	 * are added to the shared metrics when the pond is closed.
+	 */
+	protected static class ProfiledPond<U, D> implements Pond<U, D>
 	{
+		protected final Pond<U, D>		pond;
+
+		protected final Profile.Metrics	metrics;
+
+		protected final int				sampling;
+
+		/**
+		 * Each kind of call is sampled by its own counter, otherwise the
+		 * alternate hasNext and next calls would alias with an even sampling.
+		 */
+		private long					hasNextCalls, nextCalls, acceptCalls;
+
+		private long					runs, rows, beginNanos, iterNanos, peak;
+
+		public ProfiledPond(Pond<U, D> pond, Profile.Metrics metrics, int sampling)
+		{
+			this.pond = pond;
+			this.metrics = metrics;
+			this.sampling = sampling;
+			this.metrics.blocking = pond instanceof Retainer;
+		}
+
 		@Override
-		public Pond<E, Tuple2<E, Integer>> newPond()
+		public void begin() throws Exception
 		{
-			return new Wheel<E, Tuple2<E, Integer>>()
+			runs++;
+			long t = System.nanoTime();
+			try
 			{
-				@Override
-				public Tuple2<E, Integer> next()
-				{
-					return Tuple.of(upstream().next(), (int) index++);
-				}
-			};
+				pond.begin();
+			}
+			finally
+			{
+				beginNanos += System.nanoTime() - t;
+				this.measure();
+			}
 		}
-	}
 
-	protected static class ZipWithPhaseOp<E> implements Converter<E, Tuple2<E, Integer>>
-	{
 		@Override
-		public Pond<E, Tuple2<E, Integer>> newPond()
+		public void close() throws Exception
 		{
-			return new Creek<E, Tuple2<E, Integer>>()
+			try
 			{
-				private Boolean	has;
-
-				private E		next;
-
-				private int		head	= 1, body = -1;
+				pond.close();
+			}
+			finally
+			{
+				this.flush();
+			}
+		}
 
-				@Override
-				public boolean hasNext()
+		@Override
+		public void drain(final Sink<? super D> sink) throws Exception
+		{
+			final long[] sinkNanos = new long[1];
+			long t = System.nanoTime();
+			try
+			{
+				pond.drain(new Sink<D>()
 				{
-					if (has == null)
+					@Override
+					public boolean accept(D el) throws Exception
 					{
-						has = body >= 0 ? body < 2 : upstream().hasNext();
-						if (has)
+						rows++;
+						if (++acceptCalls % sampling != 0)
 						{
-							next = upstream().next();
-							body = upstream().hasNext() ? 0 : 2;
+							return sink.accept(el);
 						}
-						else
+						measure();
+						long t = System.nanoTime();
+						try
 						{
-							body = -1;
+							return sink.accept(el);
+						}
+						finally
+						{
+							sinkNanos[0] += (System.nanoTime() - t) * sampling;
 						}
 					}
-					return has;
-				}
-
-				@Override
-				public Tuple2<E, Integer> next()
-				{
-					try
-					{
-						return Tuple.of(next, head | body);
-					}
-					finally
-					{
-						has = null;
-						head = 0;
-					}
-				}
-			};
+				});
+			}
+			finally
+			{
+				iterNanos += Math.max(0, System.nanoTime() - t - sinkNanos[0]);
+			}
 		}
-	}
-
-	public static final Filter<?>								NOT_NULL	= new Filter<Object>()
-																			{
-																				@Override
-																				public boolean filter(Object el)
-																						throws Exception
-																				{
-																					return el != null;
-																				}
-																			};
-
-	public static final Expr<?, Double>							NULL		= new Expr<Object, Double>()
-																			{
-																				@Override
-																				public Double map(Object el)
-																						throws Exception
-																				{
-																					return null;
-																				}
-																			};
-
-	public static final WindowFunctions<Map<String, Object>>	wf			= new WindowFunctions<Map<String, Object>>();
-
-	public static final WindowFunctions<Object[]>				af			= new WindowFunctions<Object[]>();
-
-	public static <T extends Comparable<T>> Expr<Object[], T> $(final int idx)
-	{
-		return ArrayCanal.$(idx);
-	}
-
-	public static <T extends Comparable<T>> Expr<Map<String, Object>, T> $(final String key)
-	{
-		return RowCanal.$(key);
-	}
 
-	protected static <I, O> Pond<I, O> begin(Pond<I, O> pond)
-	{
-		if (pond.upstream() != null)
+		@Override
+		public void end() throws Exception
 		{
-			begin(pond.upstream());
+			try
+			{
+				pond.end();
+			}
+			finally
+			{
+				this.flush();
+			}
 		}
-		try
+
+		protected void flush()
 		{
-			if (!pond.hasBegun())
+			if (runs > 0 || rows > 0 || iterNanos > 0)
 			{
-				pond.begin();
-				pond.setBegun();
+				metrics.add(runs, rows, beginNanos, iterNanos, peak);
+				runs = rows = beginNanos = iterNanos = peak = 0;
 			}
 		}
-		catch (RuntimeException e)
+
+		@Override
+		public boolean hasBegun()
 		{
-			throw e;
-		}
-		catch (Exception e)
-		{
-			throw new RuntimeException(e);
+			return pond.hasBegun();
 		}
-		return pond;
-	}
-
-	public static <E> Comparator<E> comparator(List<Comparator<? super E>> cmps)
-	{
-		return new ComparatorsChain<E>(cmps);
-	}
-
-	@SuppressWarnings("rawtypes")
-	public static <E> Comparator<? super E> comparator(Mapper<E, Comparable> mapper)
-	{
-		return new MappedComparator<E>(mapper);
-	}
-
-	/**
-	 * Make a list of comparators.<br />
-	 * The parameters could be either Mapper or Boolean.<br />
-	 * The Mapper type parameter stands for a vop to extract value to be
-	 * compared from a given element.<br />
-	 * The Boolean type parameter means the ascending order of its previous
-	 * Mapper parameter.
-	 * 
-	 * @param orders
-	 * @return
-	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	public static <E> List<Comparator<? super E>> comparatorsOfOrders(Object... orders)
-	{
-		List<Comparator<? super E>> list = new ArrayList<Comparator<? super E>>();
-		Comparator<? super E> cmp = null;
 
-		for (Object o : orders)
+		@Override
+		public boolean hasNext()
 		{
-			if (o instanceof Expr<?, ?>)
+			boolean has = false;
+			if (++hasNextCalls % sampling != 0)
 			{
-				if (cmp != null)
-				{
-					list.add(cmp);
-				}
-				cmp = new ExprComparator((Expr<?, ?>) o);
+				has = pond.hasNext();
 			}
-			else if (o instanceof Mapper<?, ?>)
+			else
 			{
-				if (cmp != null)
+				long t = System.nanoTime();
+				try
 				{
-					list.add(cmp);
+					has = pond.hasNext();
 				}
-				cmp = comparator((Mapper<E, Comparable>) o);
-			}
-			else if (o instanceof Boolean)
-			{
-				if (cmp != null)
+				finally
 				{
-					boolean asc = (Boolean) o;
-					list.add((Comparator<? super E>) (asc ? cmp : inverse(cmp)));
-					cmp = null;
+					iterNanos += (System.nanoTime() - t) * sampling;
+					this.measure();
 				}
 			}
+			if (!has)
+			{
+				// The Canal consumed by iterator may never be closed.
+				this.flush();
+			}
+			return has;
 		}
 
-		if (cmp != null)
+		protected void measure()
 		{
-			list.add(cmp);
+			if (pond instanceof Retainer)
+			{
+				peak = Math.max(peak, ((Retainer) pond).retained());
+			}
 		}
 
-		return list;
-	}
-
-	public static <I, O extends Comparable<O>> Expr<I, O> expr(final O value)
-	{
-		return new Expr<I, O>()
+		@Override
+		public D next()
 		{
-			@Override
-			public O map(I el) throws Exception
+			if (++nextCalls % sampling != 0)
 			{
-				return value;
+				D el = pond.next();
+				rows++;
+				return el;
 			}
-		};
-	}
-
-	protected static <R> WindowRanger<R> getWindowRanger(Window<R> window)
-	{
-		if (window.between() != null)
-		{
-			if (window.isByRows())
+			long t = System.nanoTime();
+			try
 			{
-				return new SlidingRowsWindowRanger<R>(window.between());
+				D el = pond.next();
+				rows++;
+				return el;
 			}
-			else
+			finally
 			{
-				if (window.orderBy().length != 1)
-				{
-					throw new RuntimeException("Range window must specify exactly one ordering item");
-				}
-				return new SlidingRangeWindowRanger<R>(window.orderBy()[0], window.between());
+				iterNanos += (System.nanoTime() - t) * sampling;
 			}
 		}
-		else
+
+		@Override
+		public void remove()
 		{
-			return new SimpleWindowRanger<R>();
+			pond.remove();
+		}
+
+		@Override
+		public boolean reset()
+		{
+			return pond.reset();
+		}
+
+		@Override
+		public void setBegun()
+		{
+			pond.setBegun();
+		}
+
+		@Override
+		public Pond<?, U> upstream()
+		{
+			return pond.upstream();
+		}
+
+		@Override
+		public void upstream(Pond<?, U> up)
+		{
+			pond.upstream(up);
 		}
 	}
 
-	public static <E, K, V> Map<K, List<V>> group(Iterator<E> iter, Mapper<E, K> kop, Mapper<E, V> vop) throws Exception
+	/**
+	 * Mark the upstream to be profiled, no pond is built for this operator.
+	 */
+	protected static class ProfileOp<E> implements Converter<E, E>
 	{
-		Map<K, List<V>> map = new LinkedHashMap<K, List<V>>();
-		E el;
-		K k;
-		while (iter.hasNext())
+		protected final Profile profile;
+
+		public ProfileOp(Profile profile)
 		{
-			el = iter.next();
-			k = kop.map(el);
-			if (!map.containsKey(k))
+			if (profile == null)
 			{
-				map.put(k, new ArrayList<V>());
+				throw new NullPointerException();
 			}
-			map.get(k).add(vop.map(el));
+			this.profile = profile;
 		}
-		return map;
-	}
 
-	public static <E> Comparator<? super E> inverse(Comparator<? super E> cmp)
-	{
-		return new InverseComparator<E>(cmp);
+		@Override
+		public Pond<E, E> newPond()
+		{
+			throw new UnsupportedOperationException();
+		}
 	}
 
-	public static <E> SingleUseIterable<E> iterable(Enumeration<E> enumer)
+	protected static class ReduceOp<E> implements Evaluator<E, Option<E>>
 	{
-		return iterable(iterator(enumer));
-	}
+		protected final Reducer<E, E>	reducer;
 
-	public static <E> SingleUseIterable<E> iterable(Iterator<E> iter)
-	{
-		return new SingleUseIterable<E>(iter);
-	}
+		protected final Filter<E>		until;
 
-	public static Iterable<Matcher> iterable(Pattern regex, CharSequence text)
-	{
-		return new MatchFindIterable(regex, text);
-	}
+		public ReduceOp(Reducer<E, E> reducer, Filter<E> until)
+		{
+			if (reducer == null)
+			{
+				throw new NullPointerException();
+			}
+			this.reducer = reducer;
+			this.until = until;
+		}
 
-	public static <E> EnumerationIterator<E> iterator(Enumeration<E> enumer)
-	{
-		return new EnumerationIterator<E>(enumer);
-	}
+		@Override
+		public Terminal<E, Option<E>> newPond()
+		{
+			return new AbstractTerminal<E, Option<E>>()
+			{
+				private boolean	empty	= true;
 
-	public static <E> Iterator<E> iterator(Producer<E> nexter)
-	{
-		return new ProducedIterator<E>(nexter);
+				private E		result;
+
+				@Override
+				public void begin() throws Exception
+				{
+					try
+					{
+						E el = null;
+						boolean meet = until == null;
+						while (upstream().hasNext())
+						{
+							el = upstream().next();
+							if (empty)
+							{
+								empty = false;
+								result = el;
+							}
+							else
+							{
+								result = reducer.reduce(result, el);
+							}
+							if (until != null && until.filter(result))
+							{
+								meet = true;
+								break;
+							}
+						}
+
+						if (!meet)
+						{
+							empty = true;
+						}
+					}
+					finally
+					{
+						try
+						{
+							this.end();
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
+
+				@Override
+				public Option<E> get()
+				{
+					return empty ? Canal.<E> none() : Canal.some(result);
+				}
+			};
+		}
 	}
 
 	/**
-	 * Make a None object.<br />
-	 * Call like {@code Canal.<Type>none()}
-	 * 
-	 * @return
+	 * A pond which materialises its elements, such as sorting, grouping and
+	 * joining.
 	 */
-	public static <E> None<E> none()
+	protected static interface Retainer
 	{
-		return Option.none();
+		/**
+		 * The number of elements, or groups, held currently.
+		 * 
+		 * @return
+		 */
+		long retained();
 	}
 
-	public static Canal<Boolean> of(boolean[] array)
+	protected static class ReverseComparable<D extends Comparable<D>> implements Comparable<D>
 	{
-		return of(array, 0);
-	}
+		protected final D data;
 
-	public static Canal<Boolean> of(boolean[] array, Integer begin)
-	{
-		return of(array, begin, null);
+		public ReverseComparable(D data)
+		{
+			this.data = data;
+		}
+
+		@Override
+		public int compareTo(D o)
+		{
+			return ((ReverseComparable<D>) o).data.compareTo(this.data);
+		}
 	}
 
-	public static Canal<Boolean> of(boolean[] array, Integer begin, Integer until)
+	protected static class ReverseOp<E> implements Converter<E, E>
 	{
-		return of(array, begin, until, null);
-	}
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new Heaper<E>()
+			{
+				@Override
+				protected LinkedList<E> newSediment()
+				{
+					return new LinkedList<E>();
+				}
 
-	public static Canal<Boolean> of(final boolean[] array, Integer begin, Integer until, Integer step)
-	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Boolean>()
+				@Override
+				protected void settle()
 				{
-					@Override
-					public Boolean map(Integer i) throws Exception
+					LinkedList<E> settle = (LinkedList<E>) this.sediment;
+
+					while (upstream().hasNext())
 					{
-						return array[i];
+						settle.addFirst(upstream().next());
 					}
-				});
-	}
-
-	public static Canal<Byte> of(byte[] array)
-	{
-		return of(array, 0);
+				}
+			};
+		}
 	}
 
-	public static Canal<Byte> of(byte[] array, Integer begin)
+	protected static class RightJoiner<L, R, K, U, V> extends Joiner<L, R, K, U, V, Option<U>, V>
 	{
-		return of(array, begin, null);
-	}
+		public RightJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
+		{
+			super(that, kol, kor, vol, vor, spiller);
+		}
 
-	public static Canal<Byte> of(byte[] array, Integer begin, Integer until)
-	{
-		return of(array, begin, until, null);
-	}
+		@Override
+		protected Set<K> keys(Set<K> left, Set<K> right)
+		{
+			return right;
+		}
 
-	public static Canal<Byte> of(final byte[] array, Integer begin, Integer until, Integer step)
-	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Byte>()
-				{
-					@Override
-					public Byte map(Integer i) throws Exception
-					{
-						return array[i];
-					}
-				});
-	}
+		@Override
+		protected boolean needLeft(boolean isEmpty)
+		{
+			return true;
+		}
 
-	public static Canal<Character> of(char[] array)
-	{
-		return of(array, 0);
-	}
+		@Override
+		protected boolean needRight(boolean isEmpty)
+		{
+			return !isEmpty;
+		}
 
-	public static Canal<Character> of(char[] array, Integer begin)
-	{
-		return of(array, begin, null);
-	}
+		@Override
+		protected Option<U> valLeft()
+		{
+			return Option.none();
+		}
 
-	public static Canal<Character> of(char[] array, Integer begin, Integer until)
-	{
-		return of(array, begin, until, null);
-	}
+		@Override
+		protected Option<U> valLeft(U u)
+		{
+			return Option.some(u);
+		}
 
-	public static Canal<Character> of(final char[] array, Integer begin, Integer until, Integer step)
-	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Character>()
-				{
-					@Override
-					public Character map(Integer i) throws Exception
-					{
-						return array[i];
-					}
-				});
-	}
+		@Override
+		protected V valRight()
+		{
+			return null;
+		}
 
-	public static Canal<Character> of(CharSequence text)
-	{
-		return of(text, null);
+		@Override
+		protected V valRight(V v)
+		{
+			return v;
+		}
 	}
 
-	public static Canal<Character> of(CharSequence text, Integer begin)
+	protected static class RightJoinOp<L, R, K, U, V> extends JoinOp<L, R, K, U, V>
+			implements Converter<L, Tuple2<K, Tuple2<Option<U>, V>>>
 	{
-		return of(text, begin, null);
-	}
+		public RightJoinOp(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor,
+				Spiller spiller)
+		{
+			super(that, kol, kor, vol, vor, spiller);
+		}
 
-	public static Canal<Character> of(CharSequence text, Integer begin, Integer until)
-	{
-		return of(text, begin, until, null);
+		@Override
+		public Pond<L, Tuple2<K, Tuple2<Option<U>, V>>> newPond()
+		{
+			return new RightJoiner<L, R, K, U, V>(that, kol, kor, vol, vor, spiller);
+		}
 	}
 
-	public static Canal<Character> of(final CharSequence text, Integer begin, Integer until, Integer step)
+	protected static class RightMergeJoinOp<K, V, W> extends MergeJoinOp<K, V, W, Option<V>, W>
 	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(text.length(), begin, until, step))
-				.map(new Mapper<Integer, Character>()
-				{
-					@Override
-					public Character map(Integer i) throws Exception
-					{
-						return text.charAt(i);
-					}
-				});
-	}
+		public RightMergeJoinOp(Canal<Tuple2<K, W>> that, Comparator<? super K> cmp)
+		{
+			super(that, cmp);
+		}
 
-	public static Canal<Double> of(double[] array)
-	{
-		return of(array, 0);
-	}
+		@Override
+		protected boolean needLeft()
+		{
+			return false;
+		}
 
-	public static Canal<Double> of(double[] array, Integer begin)
-	{
-		return of(array, begin, null);
-	}
+		@Override
+		protected boolean needRight()
+		{
+			return true;
+		}
 
-	public static Canal<Double> of(double[] array, Integer begin, Integer until)
-	{
-		return of(array, begin, until, null);
-	}
+		@Override
+		protected Option<V> valLeft()
+		{
+			return Option.none();
+		}
 
-	public static Canal<Double> of(final double[] array, Integer begin, Integer until, Integer step)
-	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Double>()
-				{
-					@Override
-					public Double map(Integer i) throws Exception
-					{
-						return array[i];
-					}
-				});
-	}
+		@Override
+		protected Option<V> valLeft(V v)
+		{
+			return Option.some(v);
+		}
 
-	public static <E> Canal<E> of(E[] array)
-	{
-		return of(array, 0);
-	}
+		@Override
+		protected W valRight()
+		{
+			return null;
+		}
 
-	public static <E> Canal<E> of(E[] array, Integer begin)
-	{
-		return of(array, begin, null);
+		@Override
+		protected W valRight(W w)
+		{
+			return w;
+		}
 	}
 
-	public static <E> Canal<E> of(E[] array, Integer begin, Integer until)
+	public static class RowCanal<R extends Map<String, Object>> extends Canal<R>
 	{
-		return of(array, begin, until, null);
-	}
+		public static <T extends Comparable<T>> Expr<Map<String, Object>, T> $(final String key)
+		{
+			return new Expr<Map<String, Object>, T>()
+			{
+				@Override
+				protected Object key()
+				{
+					return key;
+				}
 
-	public static <E> Canal<E> of(final E[] array, Integer begin, Integer until, Integer step)
-	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, E>()
+				@SuppressWarnings("unchecked")
+				@Override
+				public T map(Map<String, Object> el) throws Exception
 				{
-					@Override
-					public E map(Integer i) throws Exception
-					{
-						return array[i];
-					}
-				});
-	}
+					return (T) el.get(key);
+				}
+			};
+		}
 
-	public static Canal<Float> of(float[] array)
-	{
-		return of(array, 0);
-	}
+		@Override
+		public RowCanal<R> bottom(int k)
+		{
+			return super.bottom(k).toRows();
+		}
 
-	public static Canal<Float> of(float[] array, Integer begin)
-	{
-		return of(array, begin, null);
-	}
+		@Override
+		public RowCanal<R> bottom(int k, Comparator<? super R> cmp)
+		{
+			return super.bottom(k, cmp).toRows();
+		}
 
-	public static Canal<Float> of(float[] array, Integer begin, Integer until)
-	{
-		return of(array, begin, until, null);
-	}
+		@Override
+		public RowCanal<R> cache()
+		{
+			return super.cache().toRows();
+		}
 
-	public static Canal<Float> of(final float[] array, Integer begin, Integer until, Integer step)
-	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Float>()
-				{
-					@Override
+		@Override
+		public RowCanal<R> cache(int limit)
+		{
+			return super.cache(limit).toRows();
+		}
+
+		@Override
+		public RowCanal<R> distinct()
+		{
+			return this.distinct(eql());
+		}
+
+		@Override
+		public RowCanal<R> distinct(HashedEquality<? super R> eql)
+		{
+			return super.distinct(eql).toRows();
+		}
+
+		@Override
+		public RowCanal<R> distinct(Mapper<? super R, ?> xtr)
+		{
+			return super.distinct(xtr).toRows();
+		}
+
+		@Override
+		public RowCanal<R> distinctApprox(long expected, double fpp)
+		{
+			return this.distinctApprox(expected, fpp, eql());
+		}
+
+		@Override
+		public RowCanal<R> distinctApprox(long expected, double fpp, HashedEquality<? super R> eql)
+		{
+			return super.distinctApprox(expected, fpp, eql).toRows();
+		}
+
+		@Override
+		public RowCanal<R> distinctApprox(long expected, double fpp, Mapper<? super R, ?> xtr)
+		{
+			return super.distinctApprox(expected, fpp, xtr).toRows();
+		}
+
+		@Override
+		public RowCanal<R> distinctWindow(int window)
+		{
+			return this.distinctWindow(window, eql());
+		}
+
+		@Override
+		public RowCanal<R> distinctWindow(int window, HashedEquality<? super R> eql)
+		{
+			return super.distinctWindow(window, eql).toRows();
+		}
+
+		@Override
+		public RowCanal<R> distinctWindow(int window, Mapper<? super R, ?> xtr)
+		{
+			return super.distinctWindow(window, xtr).toRows();
+		}
+
+		protected HashedEquality<R> eql()
+		{
+			return new HashedEquality<R>()
+			{
+				@Override
+				public boolean equals(R a, R b)
+				{
+					return Tools.equals(a, b);
+				}
+
+				@Override
+				public int hashCode(R obj)
+				{
+					if (obj == null)
+					{
+						return 0;
+					}
+					else
+					{
+						return Tools.hashCode(obj.values());
+					}
+				}
+			};
+		}
+
+		@Override
+		public RowCanal<R> filter(Filter<? super R> pred)
+		{
+			return super.filter(pred).toRows();
+		}
+
+		@Override
+		public RowCanal<R> intersection(Canal<? extends R> that)
+		{
+			return this.intersection(that, eql());
+		}
+
+		@Override
+		public RowCanal<R> intersection(Canal<? extends R> that, HashedEquality<? super R> cmp)
+		{
+			return super.intersection(that, cmp).toRows();
+		}
+
+		@Override
+		public RowCanal<R> intersection(Canal<? extends R> that, Mapper<? super R, ?> xtr)
+		{
+			return super.intersection(that, xtr).toRows();
+		}
+
+		@Override
+		public RowCanal<R> limit(int limit)
+		{
+			return super.limit(limit).toRows();
+		}
+
+		@Override
+		public RowCanal<R> peek(Action<? super R> action)
+		{
+			return super.peek(action).toRows();
+		}
+
+		@Override
+		public RowCanal<R> prefetch(int bufferSize)
+		{
+			return super.prefetch(bufferSize).toRows();
+		}
+
+		@Override
+		public RowCanal<R> prefetch(int bufferSize, ExecutorService executor)
+		{
+			return super.prefetch(bufferSize, executor).toRows();
+		}
+
+		@Override
+		public RowCanal<R> profile(Profile profile)
+		{
+			return super.profile(profile).toRows();
+		}
+
+		@Override
+		public RowCanal<R> reverse()
+		{
+			return super.reverse().toRows();
+		}
+
+		@Override
+		public RowCanal<R> skip(int offset)
+		{
+			return super.skip(offset).toRows();
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public RowCanal<R> sortBy(Mapper<? super R, Comparable> cmp)
+		{
+			return super.sortBy(cmp).toRows();
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public RowCanal<R> sortBy(Mapper<? super R, Comparable>... cmps)
+		{
+			return super.sortBy(cmps).toRows();
+		}
+
+		@Override
+		public RowCanal<R> sortBy(Object... orders)
+		{
+			return super.sortBy(orders).toRows();
+		}
+
+		@Override
+		public RowCanal<R> sortBy(Spiller spiller, Object... orders)
+		{
+			return super.sortBy(spiller, orders).toRows();
+		}
+
+		@Override
+		public RowCanal<R> sortWith()
+		{
+			return super.sortWith().toRows();
+		}
+
+		@Override
+		public RowCanal<R> sortWith(boolean ascend)
+		{
+			return super.sortWith(ascend).toRows();
+		}
+
+		@Override
+		public RowCanal<R> sortWith(Comparator<? super R> cmp)
+		{
+			return super.sortWith(cmp).toRows();
+		}
+
+		@Override
+		public RowCanal<R> sortWith(Comparator<? super R> cmp, boolean ascend)
+		{
+			return super.sortWith(cmp, ascend).toRows();
+		}
+
+		@Override
+		public RowCanal<R> sortWith(Spiller spiller, Comparator<? super R> cmp, boolean ascend)
+		{
+			return super.sortWith(spiller, cmp, ascend).toRows();
+		}
+
+		@Override
+		public RowCanal<R> subtract(Canal<? extends R> that)
+		{
+			return this.subtract(that, eql());
+		}
+
+		@Override
+		public RowCanal<R> subtract(Canal<? extends R> that, HashedEquality<? super R> cmp)
+		{
+			return super.subtract(that, cmp).toRows();
+		}
+
+		@Override
+		public RowCanal<R> subtract(Canal<? extends R> that, Mapper<? super R, ?> xtr)
+		{
+			return super.subtract(that, xtr).toRows();
+		}
+
+		@Override
+		public RowCanal<R> top(int k)
+		{
+			return super.top(k).toRows();
+		}
+
+		@Override
+		public RowCanal<R> top(int k, Comparator<? super R> cmp)
+		{
+			return super.top(k, cmp).toRows();
+		}
+
+		@Override
+		public RowCanal<R> uncache()
+		{
+			return super.uncache().toRows();
+		}
+
+		@Override
+		public RowCanal<R> union(Canal<? extends R> that)
+		{
+			return super.union(that).toRows();
+		}
+
+		public RowCanal<R> window(final Aggregator<? extends Map<String, Object>, ?>... aggrs)
+		{
+			return super.window(new StatefulMapper<R, Aggregator<R, ?>[], R>()
+			{
+				@Override
+				public R map(R el, Aggregator<R, ?>[] st) throws Exception
+				{
+					return el;
+				}
+			}, new WindowFunctionResultSetter<R>()
+			{
+				@Override
+				public void set(R row, int idx, Aggregator<R, ?> agg, Object res) throws Exception
+				{
+					row.put((String) agg.as(), res);
+				}
+			}, aggrs).toRows();
+		}
+	}
+
+	public static class SelfMapper<E> implements Mapper<E, E>
+	{
+		@Override
+		public E map(E el)
+		{
+			return el;
+		}
+	}
+
+	protected static class SimpleWindowRanger<I> implements WindowRanger<I>
+	{
+		@Override
+		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd)
+		{
+			range[0] = 0;
+			range[1] = levelEnd;
+		}
+
+		@Override
+		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		{
+			return levelEnd;
+		}
+	}
+
+	public static class SingleUseIterable<E> implements Iterable<E>
+	{
+		protected final Iterator<E> iter;
+
+		public SingleUseIterable(Iterator<E> iter)
+		{
+			if (iter == null)
+			{
+				throw new NullPointerException();
+			}
+			this.iter = iter;
+		}
+
+		public Canal<E> canal()
+		{
+			return Canal.of(this);
+		}
+
+		@Override
+		public Iterator<E> iterator()
+		{
+			return iter;
+		}
+	}
+
+	/**
+	 * The receiver of elements pushed by {@link Pond#drain(Sink)}.
+	 */
+	protected static interface Sink<E>
+	{
+		/**
+		 * Accept an element.
+		 * 
+		 * @param el
+		 * @return false if no more element should be pushed.
+		 * @throws Exception
+		 */
+		boolean accept(E el) throws Exception;
+	}
+
+	protected static class SkipOp<E> implements Converter<E, E>
+	{
+		protected final int offset;
+
+		public SkipOp(int offset)
+		{
+			this.offset = offset;
+		}
+
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new Wheel<E, E>()
+			{
+				@Override
+				public void begin()
+				{
+					while (index++ < offset && upstream().hasNext())
+					{
+						upstream().next();
+					}
+				}
+
+				@Override
+				public void drain(Sink<? super E> sink) throws Exception
+				{
+					upstream().drain(sink);
+				}
+
+				@Override
+				public E next()
+				{
+					return upstream().next();
+				}
+
+				@Override
+				public boolean reset()
+				{
+					index = 0;
+					return true;
+				}
+			};
+		}
+	}
+
+	/**
+	 * An Aggregator whose update result could be maintained incrementally by a
+	 * {@link WindowFrame} while the window slides forward, instead of being
+	 * computed over the whole window at each step. The gather result is not
+	 * taken into the frame.
+	 */
+	public static interface SlidingAggregator<I, O> extends Aggregator<I, O>
+	{
+		/**
+		 * Make a new frame for each partition.
+		 * 
+		 * @return
+		 * @throws Exception
+		 */
+		public WindowFrame<I> frame() throws Exception;
+	}
+
+	protected static class SlidingOp<E> implements Converter<E, Iterable<E>>
+	{
+		protected final int	size;
+
+		protected final int	step;
+
+		public SlidingOp(int size, int step)
+		{
+			this.size = size;
+			this.step = step;
+		}
+
+		@Override
+		public Pond<E, Iterable<E>> newPond()
+		{
+			return new Wheel<E, Iterable<E>>()
+			{
+				List<E>	window	= null;
+
+				List<E>	next	= null;
+
+				@Override
+				public boolean hasNext()
+				{
+					if (size <= 0 || step <= 0)
+					{
+						return false;
+					}
+
+					if (next != null)
+					{
+						return true;
+					}
+
+					if (window == null)
+					{
+						window = step >= size ? new ArrayList<E>() : new LinkedList<E>();
+					}
+					else
+					{
+						int gap = step - size;
+						while (gap > 0 && upstream().hasNext())
+						{
+							gap--;
+							upstream().next();
+						}
+					}
+
+					boolean add = false;
+					while (window.size() < size && upstream().hasNext())
+					{
+						window.add(upstream().next());
+						add = true;
+					}
+
+					if (!add)
+					{
+						return false;
+					}
+
+					next = new ArrayList<E>(window);
+
+					if (step >= size)
+					{
+						window.clear();
+					}
+					else if (step <= size / 2)
+					{
+						LinkedList<E> list = (LinkedList<E>) window;
+						for (int i = 0; i < step && !list.isEmpty(); i++)
+						{
+							list.removeFirst();
+						}
+					}
+					else
+					{
+						LinkedList<E> last = (LinkedList<E>) window;
+						window = new LinkedList<E>();
+						LinkedList<E> list = (LinkedList<E>) window;
+						int rest = size - step;
+						for (int i = 0; i < rest && !last.isEmpty(); i++)
+						{
+							list.addFirst(last.removeLast());
+						}
+						last.clear();
+					}
+
+					return true;
+				}
+
+				@Override
+				public Iterable<E> next()
+				{
+					try
+					{
+						return next;
+					}
+					finally
+					{
+						next = null;
+					}
+				}
+			};
+		}
+	}
+
+	protected static class SlidingRangeWindowRanger<I> implements WindowRanger<I>
+	{
+		/**
+		 * Find the first row beyond the bound from the given position towards
+		 * the tail or head. Since the rows are sorted by the expression, the
+		 * condition is monotonic along the direction and could be searched by
+		 * bisection.
+		 */
+		protected static <I> int find(Mapper<I, ?> expr, I[] rows, int from, boolean toTail, boolean gt, boolean last,
+				Number bound) throws Exception
+		{
+			double b = bound.doubleValue();
+			int lo = 0, hi = toTail ? rows.length - from - 1 : from, mid = 0;
+
+			while (lo < hi)
+			{
+				mid = (lo + hi) >>> 1;
+				if (hit(expr, rows[toTail ? from + 1 + mid : from - 1 - mid], gt, last, b))
+				{
+					hi = mid;
+				}
+				else
+				{
+					lo = mid + 1;
+				}
+			}
+
+			int i = toTail ? from + 1 + lo : from - 1 - lo;
+
+			return last ? (toTail ? i - 1 : i + 1) : i;
+		}
+
+		/**
+		 * Whether the row is beyond the bound. A null value is taken as beyond
+		 * any bound, so the range stops before the rows of null keys, where
+		 * the former linear scan threw NullPointerException once it reached
+		 * them.
+		 */
+		protected static <I> boolean hit(Mapper<I, ?> expr, I row, boolean gt, boolean last, double bound)
+				throws Exception
+		{
+			Number val = (Number) expr.map(row);
+
+			if (val == null)
+			{
+				return true;
+			}
+
+			double v = val.doubleValue();
+
+			if (gt)
+			{
+				return last ? v > bound : v >= bound;
+			}
+			else
+			{
+				return last ? v < bound : v <= bound;
+			}
+		}
+
+		protected final Expr<? super I, ?>					expr;
+
+		protected final Mapper<? super I, ? extends Number>	a;
+
+		protected final Mapper<? super I, ? extends Number>	b;
+
+		@SuppressWarnings("unchecked")
+		public SlidingRangeWindowRanger(Expr<? super I, ?> expr, Mapper<? super I, ? extends Number>[] between)
+		{
+			this.expr = expr;
+			this.a = (Mapper<? super I, ? extends Number>) (between[0] == null ? NULL : between[0]);
+			this.b = (Mapper<? super I, ? extends Number>) (between[1] == null ? NULL : between[1]);
+		}
+
+		@Override
+		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		{
+			Number aVal = a.map(rows[from]), bVal = b.map(rows[from]);
+
+			if (aVal == null)
+			{
+				range[0] = 0;
+			}
+			else
+			{
+				double va = aVal.doubleValue();
+
+				if (va == 0.0)
+				{
+					range[0] = levelBegin;
+				}
+				else
+				{
+					Double bound = ((Number) expr.map(rows[from])).doubleValue() + (expr.isAscend() ? 1 : -1) * va;
+					if (expr.isAscend())
+					{
+						range[0] = find(expr, rows, va < 0 ? levelBegin : levelEnd - 1, va > 0, va > 0, va < 0, bound);
+					}
+					else
+					{
+						range[0] = find(expr, rows, va < 0 ? levelBegin : levelEnd - 1, va > 0, va < 0, va < 0, bound);
+					}
+				}
+			}
+
+			if (bVal == null)
+			{
+				range[1] = rows.length;
+			}
+			else
+			{
+				double vb = bVal.doubleValue();
+
+				if (vb == 0.0)
+				{
+					range[1] = levelEnd;
+				}
+				else
+				{
+					Double bound = ((Number) expr.map(rows[from])).doubleValue() + (expr.isAscend() ? 1 : -1) * vb;
+					if (expr.isAscend())
+					{
+						range[1] = find(expr, rows, vb > 0 ? levelEnd - 1 : levelBegin, vb > 0, vb > 0, vb > 0, bound)
+								+ 1;
+					}
+					else
+					{
+						range[1] = find(expr, rows, vb > 0 ? levelEnd - 1 : levelBegin, vb > 0, vb < 0, vb > 0, bound)
+								+ 1;
+					}
+				}
+			}
+		}
+
+		@Override
+		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		{
+			return levelEnd;
+		}
+	}
+
+	protected static class SlidingRowsWindowRanger<I> implements WindowRanger<I>
+	{
+		protected final Mapper<? super I, ? extends Number>	a;
+
+		protected final Mapper<? super I, ? extends Number>	b;
+
+		@SuppressWarnings("unchecked")
+		public SlidingRowsWindowRanger(Mapper<? super I, ? extends Number>[] between)
+		{
+			this.a = (Mapper<? super I, ? extends Number>) (between[0] == null ? NULL : between[0]);
+			this.b = (Mapper<? super I, ? extends Number>) (between[1] == null ? NULL : between[1]);
+		}
+
+		@Override
+		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		{
+			Number aVal = a.map(rows[from]), bVal = b.map(rows[from]);
+
+			if (aVal == null)
+			{
+				range[0] = 0;
+			}
+			else if (aVal.intValue() == 0)
+			{
+				range[0] = from;
+			}
+			else
+			{
+				range[0] = Math.min(Math.max(from + aVal.intValue(), 0), rows.length);
+			}
+
+			if (bVal == null)
+			{
+				range[1] = rows.length;
+			}
+			else if (bVal.intValue() == 0)
+			{
+				range[1] = from + 1;
+			}
+			else
+			{
+				range[1] = Math.min(Math.max(from + bVal.intValue() + 1, 0), rows.length);
+			}
+		}
+
+		@Override
+		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception
+		{
+			return from + 1;
+		}
+	}
+
+	public static class Some<E> extends Option<E>
+	{
+		protected static class SomeSourcer<T> implements Sourcer<T>
+		{
+			protected class SomeSource extends Source<T>
+			{
+				protected boolean first = true;
+
+				@Override
+				public boolean hasNext()
+				{
+					return first;
+				}
+
+				@Override
+				public T next()
+				{
+					try
+					{
+						return SomeSourcer.this.value;
+					}
+					finally
+					{
+						first = false;
+					}
+				}
+			}
+
+			protected final T value;
+
+			protected SomeSourcer(T value)
+			{
+				this.value = value;
+			}
+
+			@Override
+			public Source<T> newPond()
+			{
+				return new SomeSource();
+			}
+		}
+
+		protected final E value;
+
+		public Some(E val)
+		{
+			this.value = val;
+			this.setOperator(new SomeSourcer<E>(val));
+		}
+
+		@Override
+		public E get()
+		{
+			return value;
+		}
+
+		@Override
+		public E get(Producer<Exception> raiser)
+		{
+			return value;
+		}
+
+		@Override
+		public boolean given()
+		{
+			return true;
+		}
+
+		@Override
+		public E or(E defaultValue)
+		{
+			return value;
+		}
+
+		@Override
+		public E or(Producer<? extends E> defaultProducer)
+		{
+			return value;
+		}
+
+		@Override
+		public Option<E> orElse(Option<? extends E> opt)
+		{
+			return this;
+		}
+
+		@Override
+		public Option<E> orElse(Producer<Option<? extends E>> opt)
+		{
+			return this;
+		}
+
+		@Override
+		public E orNull()
+		{
+			return value;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Some(" + value + ")";
+		}
+	}
+
+	protected static class SortByOp<E> implements Converter<E, E>
+	{
+		protected final Comparator<? super E> cmps;
+
+		public SortByOp(List<Comparator<? super E>> cmps)
+		{
+			this.cmps = comparator(cmps);
+		}
+
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new Heaper<E>()
+			{
+				@Override
+				protected Collection<E> newSediment()
+				{
+					return new ArrayList<E>();
+				}
+
+				@Override
+				protected void settle()
+				{
+					while (upstream().hasNext())
+					{
+						this.sediment.add(upstream().next());
+					}
+					Collections.sort((List<E>) this.sediment, cmps);
+				}
+			};
+		}
+	}
+
+	protected static class SortWithOp<E> implements Converter<E, E>
+	{
+		protected final Comparator<? super E> cmp;
+
+		@SuppressWarnings("unchecked")
+		public SortWithOp(Comparator<? super E> cmp, boolean ascend)
+		{
+			if (cmp == null)
+			{
+				cmp = new DefaultComparator<E>();
+			}
+			this.cmp = (Comparator<? super E>) (ascend ? cmp : inverse(cmp));
+		}
+
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new Heaper<E>()
+			{
+				@Override
+				protected Collection<E> newSediment()
+				{
+					return new ArrayList<E>();
+				}
+
+				@Override
+				protected void settle()
+				{
+					while (upstream().hasNext())
+					{
+						this.sediment.add(upstream().next());
+					}
+					Collections.sort((List<E>) this.sediment, cmp);
+				}
+			};
+		}
+	}
+
+	protected static abstract class Source<E> implements Pond<E, E>
+	{
+		private boolean begun = false;
+
+		@Override
+		public void begin() throws Exception
+		{
+		}
+
+		@Override
+		public void close() throws Exception
+		{
+		}
+
+		@Override
+		public void drain(Sink<? super E> sink) throws Exception
+		{
+			while (this.hasNext())
+			{
+				if (!sink.accept(this.next()))
+				{
+					break;
+				}
+			}
+		}
+
+		@Override
+		public void end() throws Exception
+		{
+			this.close();
+		}
+
+		@Override
+		public boolean hasBegun()
+		{
+			return begun;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean reset()
+		{
+			return false;
+		}
+
+		@Override
+		public void setBegun()
+		{
+			this.begun = true;
+		}
+
+		@Override
+		public Pond<?, E> upstream()
+		{
+			return null;
+		}
+
+		@Override
+		public void upstream(Pond<?, E> up)
+		{
+		}
+	}
+
+	protected static interface Sourcer<E> extends Operator<E, E>
+	{
+		Source<E> newPond();
+	}
+
+	/**
+	 * The configuration of spilling elements to local files when the number
+	 * of elements held in memory exceeds the budget.
+	 */
+	public static class Spiller
+	{
+		public static interface Serializer
+		{
+			public Object read(ObjectInputStream in) throws Exception;
+
+			public void write(ObjectOutputStream out, Object el) throws Exception;
+		}
+
+		/**
+		 * A partition of keyed elements from several sides, each side is
+		 * spilled into its own file.
+		 */
+		protected class Partition
+		{
+			protected final int									depth;
+
+			protected final Spill<Tuple2<Object, Object>>[]	sides;
+
+			@SuppressWarnings("unchecked")
+			protected Partition(int sides, int depth)
+			{
+				this.depth = depth;
+				this.sides = new Spill[sides];
+			}
+
+			public void add(int side, Object key, Object value) throws Exception
+			{
+				if (sides[side] == null)
+				{
+					sides[side] = newSpill();
+				}
+				sides[side].add(Tuple.of(key, value));
+			}
+
+			/**
+			 * Finish writing.
+			 * 
+			 * @throws Exception
+			 */
+			public void close() throws Exception
+			{
+				for (Spill<Tuple2<Object, Object>> spill : sides)
+				{
+					if (spill != null)
+					{
+						spill.close();
+					}
+				}
+			}
+
+			public void delete()
+			{
+				for (Spill<Tuple2<Object, Object>> spill : sides)
+				{
+					if (spill != null)
+					{
+						spill.delete();
+					}
+				}
+			}
+
+			public <K, V> Map<K, List<V>> group(int side) throws Exception
+			{
+				Map<K, List<V>> map = new LinkedHashMap<K, List<V>>();
+				if (sides[side] != null)
+				{
+					CloseableIterator<Tuple2<Object, Object>> iter = sides[side].iterator();
+					try
+					{
+						Tuple2<Object, Object> t = null;
+						List<V> list = null;
+						while (iter.hasNext())
+						{
+							t = iter.next();
+							if ((list = map.get(t._1)) == null)
+							{
+								map.put(this.<K> cast(t._1), list = new ArrayList<V>());
+							}
+							list.add(this.<V> cast(t._2));
+						}
+					}
+					finally
+					{
+						iter.close();
+					}
+				}
+				return map;
+			}
+
+			@SuppressWarnings("unchecked")
+			private <T> T cast(Object o)
+			{
+				return (T) o;
+			}
+
+			/**
+			 * Read the keyed elements of the given side in the order they were
+			 * spilled, the side should not be empty.
+			 * 
+			 * @param side
+			 * @return
+			 * @throws Exception
+			 */
+			public CloseableIterator<Tuple2<Object, Object>> iterator(int side) throws Exception
+			{
+				return sides[side].iterator();
+			}
+
+			public int size()
+			{
+				int size = 0;
+				for (Spill<Tuple2<Object, Object>> spill : sides)
+				{
+					if (spill != null)
+					{
+						size += spill.size();
+					}
+				}
+				return size;
+			}
+
+			public int size(int side)
+			{
+				return sides[side] == null ? 0 : sides[side].size();
+			}
+
+			/**
+			 * Split this partition into sub partitions at the next depth. This
+			 * partition would be deleted.
+			 * 
+			 * @return the non-empty sub partitions.
+			 * @throws Exception
+			 */
+			public List<Partition> split() throws Exception
+			{
+				Partition[] parts = partitions(sides.length, depth + 1);
+				try
+				{
+					for (int side = 0; side < sides.length; side++)
+					{
+						if (sides[side] != null)
+						{
+							CloseableIterator<Tuple2<Object, Object>> iter = sides[side].iterator();
+							try
+							{
+								Tuple2<Object, Object> t = null;
+								while (iter.hasNext())
+								{
+									t = iter.next();
+									parts[partition(t._1, depth + 1)].add(side, t._1, t._2);
+								}
+							}
+							finally
+							{
+								iter.close();
+							}
+						}
+					}
+					return Spiller.this.close(parts);
+				}
+				catch (Exception e)
+				{
+					for (Partition part : parts)
+					{
+						part.delete();
+					}
+					throw e;
+				}
+				finally
+				{
+					this.delete();
+				}
+			}
+		}
+
+		/**
+		 * A spill file which could be written sequentially and then read
+		 * sequentially for several times.
+		 */
+		protected class Spill<E> implements Closeable
+		{
+			protected final File		file;
+
+			private ObjectOutputStream	out;
+
+			private int					size	= 0;
+
+			protected Spill() throws IOException
+			{
+				this.file = File.createTempFile("canal", ".spill", directory);
+				this.out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			}
+
+			public void add(E el) throws Exception
+			{
+				serializer.write(out, el);
+				if (++size % RESET_INTERVAL == 0)
+				{
+					// Release the back references kept by the stream
+					out.reset();
+				}
+			}
+
+			/**
+			 * Finish writing.
+			 */
+			@Override
+			public void close() throws Exception
+			{
+				if (out != null)
+				{
+					try
+					{
+						out.close();
+					}
+					finally
+					{
+						out = null;
+					}
+				}
+			}
+
+			public void delete()
+			{
+				try
+				{
+					this.close();
+				}
+				catch (Exception e)
+				{
+				}
+				file.delete();
+			}
+
+			public CloseableIterator<E> iterator() throws Exception
+			{
+				this.close();
+
+				return new CloseableIterator<E>()
+				{
+					private ObjectInputStream	in		= new ObjectInputStream(
+							new BufferedInputStream(new FileInputStream(file)));
+
+					private int					index	= 0;
+
+					@Override
+					public void close() throws Exception
+					{
+						if (in != null)
+						{
+							try
+							{
+								in.close();
+							}
+							finally
+							{
+								in = null;
+							}
+						}
+					}
+
+					@Override
+					public boolean hasNext()
+					{
+						return index < size;
+					}
+
+					@SuppressWarnings("unchecked")
+					@Override
+					public E next()
+					{
+						if (!hasNext())
+						{
+							throw new NoSuchElementException();
+						}
+						try
+						{
+							E el = (E) serializer.read(in);
+							if (++index >= size)
+							{
+								this.close();
+							}
+							return el;
+						}
+						catch (RuntimeException e)
+						{
+							throw e;
+						}
+						catch (Exception e)
+						{
+							throw new RuntimeException(e);
+						}
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			public int size()
+			{
+				return size;
+			}
+		}
+
+		/**
+		 * Serialize the elements by Java serialization.
+		 */
+		public static final Serializer	JAVA			= new Serializer()
+														{
+															@Override
+															public Object read(ObjectInputStream in)
+																	throws Exception
+															{
+																return in.readObject();
+															}
+
+															@Override
+															public void write(ObjectOutputStream out, Object el)
+																	throws Exception
+															{
+																out.writeObject(el);
+															}
+														};
+
+		public static final int			RESET_INTERVAL	= 1024;
+
+		/**
+		 * The max times of splitting a partition which still exceeds the
+		 * memory budget.
+		 */
+		public static final int			MAX_DEPTH		= 4;
+
+		private int						memory			= 100000;
+
+		private int						fanout			= 16;
+
+		private File					directory		= null;
+
+		private Serializer				serializer		= JAVA;
+
+		/**
+		 * Finish writing the partitions.
+		 * 
+		 * @param parts
+		 * @return the non-empty partitions.
+		 * @throws Exception
+		 */
+		protected List<Partition> close(Partition[] parts) throws Exception
+		{
+			List<Partition> list = new ArrayList<Partition>();
+			for (Partition part : parts)
+			{
+				part.close();
+				if (part.size() > 0)
+				{
+					list.add(part);
+				}
+			}
+			return list;
+		}
+
+		/**
+		 * The directory of spill files, null means the default temporary
+		 * directory.
+		 * 
+		 * @return
+		 */
+		public File directory()
+		{
+			return directory;
+		}
+
+		public Spiller directory(File directory)
+		{
+			this.directory = directory;
+			return this;
+		}
+
+		/**
+		 * The number of partitions that the spilled elements would be hashed
+		 * into.
+		 * 
+		 * @return
+		 */
+		public int fanout()
+		{
+			return fanout;
+		}
+
+		public Spiller fanout(int fanout)
+		{
+			if (fanout < 2)
+			{
+				throw new IllegalArgumentException();
+			}
+			this.fanout = fanout;
+			return this;
+		}
+
+		/**
+		 * The max number of elements held in memory.
+		 * 
+		 * @return
+		 */
+		public int memory()
+		{
+			return memory;
+		}
+
+		public Spiller memory(int memory)
+		{
+			if (memory < 1)
+			{
+				throw new IllegalArgumentException();
+			}
+			this.memory = memory;
+			return this;
+		}
+
+		protected <E> Spill<E> newSpill() throws IOException
+		{
+			return new Spill<E>();
+		}
+
+		/**
+		 * Get the index of partition that the key belongs to at the given
+		 * depth.
+		 * 
+		 * @param key
+		 * @param depth
+		 * @return
+		 */
+		protected int partition(Object key, int depth)
+		{
+			int h = key == null ? 0 : key.hashCode();
+			h = h * 31 + depth;
+			h ^= h >>> 16;
+			h *= 0x85ebca6b;
+			h ^= h >>> 13;
+			return (h & Integer.MAX_VALUE) % fanout;
+		}
+
+		protected Partition[] partitions(int sides, int depth)
+		{
+			Partition[] parts = new Partition[fanout];
+			for (int i = 0; i < parts.length; i++)
+			{
+				parts[i] = new Partition(sides, depth);
+			}
+			return parts;
+		}
+
+		public Serializer serializer()
+		{
+			return serializer;
+		}
+
+		public Spiller serializer(Serializer serializer)
+		{
+			if (serializer == null)
+			{
+				throw new NullPointerException();
+			}
+			this.serializer = serializer;
+			return this;
+		}
+
+		/**
+		 * Write the data into a new spill file.
+		 * 
+		 * @param data
+		 * @return
+		 * @throws Exception
+		 */
+		protected <E> Spill<E> spill(Iterable<E> data) throws Exception
+		{
+			Spill<E> spill = this.newSpill();
+			try
+			{
+				for (E el : data)
+				{
+					spill.add(el);
+				}
+				spill.close();
+				return spill;
+			}
+			catch (Exception e)
+			{
+				spill.delete();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Sort the elements once into a shared array and emit each level lazily
+	 * as a range view over the array while its boundary is found.
+	 */
+	protected static class StratifyPond<E> extends AbstractPond<E, Canal<E>> implements Retainer
+	{
+		protected final Comparator<? super E>	cmp;
+
+		protected final boolean					sorted;
+
+		private List<E>							dat;
+
+		private int								from;
+
+		public StratifyPond(Comparator<? super E> cmp, boolean sorted)
+		{
+			this.cmp = cmp;
+			this.sorted = sorted;
+		}
+
+		@Override
+		public void begin() throws Exception
+		{
+			final List<E> buf = new ArrayList<E>();
+
+			this.upstream().drain(new Sink<E>()
+			{
+				@Override
+				public boolean accept(E el)
+				{
+					buf.add(el);
+					return true;
+				}
+			});
+
+			this.dat = Arrays.asList(sortArray(buf, cmp, sorted));
+			this.from = 0;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return from < dat.size();
+		}
+
+		@Override
+		public Canal<E> next()
+		{
+			int to = levelEnd(dat, from, cmp);
+			Canal<E> level = Canal.of(dat.subList(from, to));
+			from = to;
+			return level;
+		}
+
+		@Override
+		public long retained()
+		{
+			return dat == null ? 0 : dat.size();
+		}
+	}
+
+	protected static class StratifyWithOp<E> implements Converter<E, Canal<E>>
+	{
+		protected final Comparator<? super E>	cmp;
+
+		protected final boolean					sorted;
+
+		public StratifyWithOp(Comparator<? super E> cmp, boolean sorted)
+		{
+			this.cmp = cmp;
+			this.sorted = sorted;
+		}
+
+		@Override
+		public Pond<E, Canal<E>> newPond()
+		{
+			return new StratifyPond<E>(cmp, sorted);
+		}
+	}
+
+	/**
+	 * Build the hash table from the right side only and stream the left side
+	 * through it, so that the matches are emitted in the order of left
+	 * elements.
+	 */
+	protected static abstract class StreamJoiner<L, R, K, U, V, N> extends AbstractPond<L, Tuple2<K, Tuple2<U, N>>>
+	{
+		protected final Canal<R>		that;
+
+		protected final Mapper<L, K>	kol;
+
+		protected final Mapper<R, K>	kor;
+
+		protected final Mapper<L, U>	vol;
+
+		protected final Mapper<R, V>	vor;
+
+		private Map<K, List<V>>			table;
+
+		private Iterator<V>				iterV;
+
+		private K						k;
+
+		private U						u;
+
+		private boolean					miss;
+
+		public StreamJoiner(Canal<R> that, Mapper<L, K> kol, Mapper<R, K> kor, Mapper<L, U> vol, Mapper<R, V> vor)
+		{
+			this.that = that;
+			this.kol = kol;
+			this.kor = kor;
+			this.vol = vol;
+			this.vor = vor;
+		}
+
+		@Override
+		public void begin() throws Exception
+		{
+			Pond<?, R> pond = that.build();
+			try
+			{
+				this.table = group(pond, this.kor, this.vor);
+			}
+			finally
+			{
+				try
+				{
+					pond.close();
+				}
+				catch (Exception e)
+				{
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			try
+			{
+				while (!miss && (iterV == null || !iterV.hasNext()))
+				{
+					if (!upstream().hasNext())
+					{
+						return false;
+					}
+					L l = upstream().next();
+					k = kol.map(l);
+					u = vol.map(l);
+					List<V> vs = table.get(k);
+					if (vs != null)
+					{
+						iterV = vs.iterator();
+					}
+					else
+					{
+						iterV = null;
+						miss = needMiss();
+					}
+				}
+				return true;
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Whether the left element which matches nothing should be emitted.
+		 * 
+		 * @return
+		 */
+		protected abstract boolean needMiss();
+
+		@Override
+		public Tuple2<K, Tuple2<U, N>> next()
+		{
+			if (miss)
+			{
+				miss = false;
+				return Tuple.of(k, Tuple.of(u, valRight()));
+			}
+			else
+			{
+				return Tuple.of(k, Tuple.of(u, valRight(iterV.next())));
+			}
+		}
+
+		protected abstract N valRight();
+
+		protected abstract N valRight(V v);
+	}
+
+	protected static class StringConcater<E> implements Evaluator<E, String>
+	{
+		protected final CharSequence	split;
+
+		protected final CharSequence	prefix;
+
+		protected final CharSequence	suffix;
+
+		protected final boolean			emptyWrap;
+
+		public StringConcater(CharSequence split, CharSequence prefix, CharSequence suffix, boolean emptyWrap)
+		{
+			this.split = split == null || split.length() == 0 ? null : split;
+			this.prefix = prefix == null || prefix.length() == 0 ? null : prefix;
+			this.suffix = suffix == null || suffix.length() == 0 ? null : suffix;
+			this.emptyWrap = emptyWrap;
+		}
+
+		@Override
+		public Terminal<E, String> newPond()
+		{
+			return new AbstractTerminal<E, String>()
+			{
+				private StringBuilder	buff	= new StringBuilder();
+
+				private boolean			empty	= true;
+
+				@Override
+				public void begin()
+				{
+					try
+					{
+						while (upstream().hasNext())
+						{
+							if (empty)
+							{
+								empty = false;
+							}
+							else if (split != null)
+							{
+								buff.append(split);
+							}
+							buff.append(upstream().next());
+						}
+
+						if (emptyWrap || !empty)
+						{
+							if (prefix != null)
+							{
+								buff.insert(0, prefix);
+							}
+							if (suffix != null)
+							{
+								buff.append(suffix);
+							}
+						}
+					}
+					finally
+					{
+						try
+						{
+							this.end();
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
+
+				@Override
+				public String get()
+				{
+					return buff.toString();
+				}
+			};
+		}
+	}
+
+	protected static class SubtractOp<E> implements Converter<E, E>
+	{
+		protected final Canal<E>					that;
+
+		protected final HashedEquality<? super E>	eql;
+
+		@SuppressWarnings("unchecked")
+		public SubtractOp(Canal<? extends E> that, HashedEquality<? super E> eql)
+		{
+			if (that == null)
+			{
+				throw new NullPointerException();
+			}
+			this.that = (Canal<E>) that;
+			this.eql = eql;
+		}
+
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new SubtractPond<E>(that, eql);
+		}
+	}
+
+	protected static class SubtractPond<E> extends Dam<E, E, E>
+	{
+		protected final HashedEquality<? super E>	eql;
+
+		private Set<E>								there;
+
+		private E									here;
+
+		public SubtractPond(Canal<E> that, HashedEquality<? super E> eql)
+		{
+			super(that);
+			this.eql = eql;
+		}
+
+		@Override
+		public void begin()
+		{
+			there = (Set<E>) that.collect(eql == null ? new HashSet<E>() : new WrappedHashSet<E>(eql));
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			while (upstream().hasNext())
+			{
+				here = upstream().next();
+				if (!there.contains(here))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public E next()
+		{
+			return here;
+		}
+	}
+
+	public static class Success<E> implements Try<E>
+	{
+		public final E value;
+
+		public Success(E value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		public Try<E> filter(Filter<? super E> pred)
+		{
+			try
+			{
+				if (!pred.filter(value))
+				{
+					return new Failure<E>(new NoSuchElementException());
+				}
+			}
+			catch (Throwable e)
+			{
+				return new Failure<E>(e);
+			}
+
+			return this;
+		}
+
+		@Override
+		public <D> Try<D> flatMap(Mapper<? super E, ? extends Try<D>> mapper)
+		{
+			try
+			{
+				return mapper.map(value);
+			}
+			catch (Throwable err)
+			{
+				return new Failure<D>(err);
+			}
+		}
+
+		@Override
+		public <D> D fold(Mapper<Throwable, ? extends D> mapFail, Mapper<? super E, ? extends D> mapSucc)
+		{
+			try
+			{
+				return mapSucc.map(value);
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void foreach(Action<? super E> action)
+		{
+			try
+			{
+				action.action(value);
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public E get()
+		{
+			return value;
+		}
+
+		@Override
+		public E get(Producer<Exception> raiser)
+		{
+			return value;
+		}
+
+		@Override
+		public boolean isFailure()
+		{
+			return false;
+		}
+
+		@Override
+		public boolean isSuccess()
+		{
+			return true;
+		}
+
+		@Override
+		public <D> Try<D> map(Mapper<? super E, ? extends D> mapper)
+		{
+			try
+			{
+				return new Success<D>(mapper.map(value));
+			}
+			catch (Throwable err)
+			{
+				return new Failure<D>(err);
+			}
+		}
+
+		@Override
+		public E or(E deft)
+		{
+			return value;
+		}
+
+		@Override
+		public E or(Producer<? extends E> deft)
+		{
+			return value;
+		}
+
+		@Override
+		public Try<E> orElse(Producer<? extends Try<E>> deft)
+		{
+			return this;
+		}
+
+		@Override
+		public Try<E> orElse(Try<E> deft)
+		{
+			return this;
+		}
+
+		@Override
+		public Try<E> recover(Mapper<Throwable, ? extends E> recover)
+		{
+			return this;
+		}
+
+		@Override
+		public Try<E> recoverWith(Mapper<Throwable, ? extends Try<E>> recover)
+		{
+			return this;
+		}
+
+		@Override
+		public Option<E> toOption()
+		{
+			return Option.some(value);
+		}
+
+		@Override
+		public <D> Try<D> transform(Mapper<? super E, ? extends Try<D>> mapSucc,
+				Mapper<Throwable, ? extends Try<D>> mapFail)
+		{
+			try
+			{
+				return mapSucc.map(value);
+			}
+			catch (RuntimeException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	protected static class TakeOp<E> implements Evaluator<E, Collection<E>>
+	{
+		protected final int				limit;
+
+		protected final Collection<E>	result;
+
+		public TakeOp(int limit, Collection<E> result)
+		{
+			this.limit = limit;
+			this.result = result;
+		}
+
+		@Override
+		public Terminal<E, Collection<E>> newPond()
+		{
+			return new Desilter<E>()
+			{
+				@Override
+				protected Collection<E> newSediment()
+				{
+					return result == null ? super.newSediment() : result;
+				}
+
+				@Override
+				protected void settle()
+				{
+					int i = 0;
+					while (i < limit && upstream().hasNext())
+					{
+						sediment.add(upstream().next());
+						i++;
+					}
+				}
+			};
+		}
+	}
+
+	protected static interface Terminal<E, T> extends Pond<E, E>
+	{
+		T get();
+	}
+
+	public static interface ToDoubleMapper<E>
+	{
+		public double map(E el) throws Exception;
+	}
+
+	public static interface ToIntMapper<E>
+	{
+		public int map(E el) throws Exception;
+	}
+
+	public static interface ToLongMapper<E>
+	{
+		public long map(E el) throws Exception;
+	}
+
+	protected static class TopByKeyOp<K, V> implements Converter<Tuple2<K, V>, Tuple2<K, Canal<V>>>
+	{
+		protected final Comparator<? super V>	cmp;
+
+		protected final int						k;
+
+		public TopByKeyOp(Comparator<? super V> cmp, int k)
+		{
+			if (cmp == null)
+			{
+				throw new NullPointerException();
+			}
+			this.cmp = cmp;
+			this.k = Math.max(k, 0);
+		}
+
+		@Override
+		public Pond<Tuple2<K, V>, Tuple2<K, Canal<V>>> newPond()
+		{
+			return new AbstractPond<Tuple2<K, V>, Tuple2<K, Canal<V>>>()
+			{
+				private Iterator<Entry<K, TopHeap<V>>> iter;
+
+				@Override
+				public void begin() throws Exception
+				{
+					final Map<K, TopHeap<V>> groups = new LinkedHashMap<K, TopHeap<V>>();
+					upstream().drain(new Sink<Tuple2<K, V>>()
+					{
+						@Override
+						public boolean accept(Tuple2<K, V> el)
+						{
+							TopHeap<V> heap = groups.get(el._1);
+							if (heap == null)
+							{
+								groups.put(el._1, heap = new TopHeap<V>(cmp, k));
+							}
+							heap.offer(el._2);
+							return true;
+						}
+					});
+					iter = groups.entrySet().iterator();
+				}
+
+				@Override
+				public boolean hasNext()
+				{
+					return iter.hasNext();
+				}
+
+				@Override
+				public Tuple2<K, Canal<V>> next()
+				{
+					Entry<K, TopHeap<V>> entry = iter.next();
+					return Tuple.of(entry.getKey(), Canal.of(entry.getValue().toList()));
+				}
+			};
+		}
+	}
+
+	/**
+	 * A bounded heap which keeps the first k elements in the order of the
+	 * comparator. Among equal elements the earlier offered ones are kept, so
+	 * that the result is the same as a stable sort followed by a limit.
+	 */
+	protected static class TopHeap<E>
+	{
+		protected static class Ranked<E>
+		{
+			protected final long	seq;
+
+			protected final E		el;
+
+			public Ranked(long seq, E el)
+			{
+				this.seq = seq;
+				this.el = el;
+			}
+		}
+
+		protected final Comparator<Ranked<E>>	order;
+
+		protected final PriorityQueue<Ranked<E>>	heap;
+
+		protected final int						k;
+
+		protected long							seq	= 0;
+
+		public TopHeap(final Comparator<? super E> cmp, int k)
+		{
+			this.k = k;
+			this.order = new Comparator<Ranked<E>>()
+			{
+				@Override
+				public int compare(Ranked<E> a, Ranked<E> b)
+				{
+					int c = cmp.compare(a.el, b.el);
+					return c != 0 ? c : (a.seq < b.seq ? -1 : (a.seq == b.seq ? 0 : 1));
+				}
+			};
+			// The worst element lies at the head.
+			this.heap = new PriorityQueue<Ranked<E>>(Math.max(1, Math.min(k, 1024)), inverse(order));
+		}
+
+		public void offer(E el)
+		{
+			Ranked<E> r = new Ranked<E>(seq++, el);
+			if (heap.size() < k)
+			{
+				heap.add(r);
+			}
+			else if (k > 0 && order.compare(r, heap.peek()) < 0)
+			{
+				heap.poll();
+				heap.add(r);
+			}
+		}
+
+		public List<E> toList()
+		{
+			List<Ranked<E>> ranks = new ArrayList<Ranked<E>>(heap);
+			Collections.sort(ranks, order);
+			List<E> list = new ArrayList<E>(ranks.size());
+			for (Ranked<E> r : ranks)
+			{
+				list.add(r.el);
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * Keep the first k elements in the order of the comparator with a bounded
+	 * heap, which costs O(n log k) time and O(k) memory instead of sorting all
+	 * of the elements.
+	 */
+	protected static class TopOp<E> implements Converter<E, E>
+	{
+		protected final Comparator<? super E>	cmp;
+
+		protected final int						k;
+
+		public TopOp(Comparator<? super E> cmp, int k)
+		{
+			if (cmp == null)
+			{
+				throw new NullPointerException();
+			}
+			this.cmp = cmp;
+			this.k = Math.max(k, 0);
+		}
+
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new Heaper<E>()
+			{
+				@Override
+				protected Collection<E> newSediment()
+				{
+					return new ArrayList<E>();
+				}
+
+				@Override
+				protected void settle()
+				{
+					final TopHeap<E> heap = new TopHeap<E>(cmp, k);
+					try
+					{
+						upstream().drain(new Sink<E>()
+						{
+							@Override
+							public boolean accept(E el)
+							{
+								heap.offer(el);
+								return true;
+							}
+						});
+					}
+					catch (RuntimeException e)
+					{
+						throw e;
+					}
+					catch (Exception e)
+					{
+						throw new RuntimeException(e);
+					}
+					sediment.addAll(heap.toList());
+				}
+			};
+		}
+	}
+
+	public static interface Try<E>
+	{
+		public Try<E> filter(Filter<? super E> pred);
+
+		public <D> Try<D> flatMap(Mapper<? super E, ? extends Try<D>> mapper);
+
+		public <D> D fold(Mapper<Throwable, ? extends D> mapFail, Mapper<? super E, ? extends D> mapSucc);
+
+		public void foreach(Action<? super E> action);
+
+		public E get() throws Exception;
+
+		public E get(Producer<Exception> raiser) throws Exception;
+
+		public boolean isFailure();
+
+		public boolean isSuccess();
+
+		public <D> Try<D> map(Mapper<? super E, ? extends D> mapper);
+
+		public E or(E deft);
+
+		public E or(Producer<? extends E> deft);
+
+		public Try<E> orElse(Producer<? extends Try<E>> deft);
+
+		public Try<E> orElse(Try<E> deft);
+
+		public Try<E> recover(Mapper<Throwable, ? extends E> recover);
+
+		public Try<E> recoverWith(Mapper<Throwable, ? extends Try<E>> recover);
+
+		public Option<E> toOption();
+
+		public <D> Try<D> transform(Mapper<? super E, ? extends Try<D>> mapSucc,
+				Mapper<Throwable, ? extends Try<D>> mapFail);
+	}
+
+	public static abstract class Tuple implements Serializable, Iterable<Object>, Comparable<Tuple>
+	{
+		public static class TupleIndexOutOfBoundsException extends IndexOutOfBoundsException
+		{
+			/**
+			 * 
+			 */
+			private static final long serialVersionUID = 1L;
+
+			public TupleIndexOutOfBoundsException()
+			{
+				super();
+			}
+
+			public TupleIndexOutOfBoundsException(int index)
+			{
+				super("Tuple index out of range: " + index);
+			}
+
+			public TupleIndexOutOfBoundsException(String msg)
+			{
+				super(msg);
+			}
+		}
+
+		protected class TupleIterator implements Iterator<Object>
+		{
+			private int index = 1;
+
+			@Override
+			public boolean hasNext()
+			{
+				return index <= size();
+			}
+
+			@Override
+			public Object next()
+			{
+				return get(index++);
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		}
+
+		/**
+		 * 
+		 */
+		private static final long serialVersionUID = 1L;
+
+		@SuppressWarnings("unchecked")
+		protected static <E> int compare(Comparable<E> a, Comparable<E> b)
+		{
+			if (a == b)
+			{
+				return 0;
+			}
+			else if (a != null && b != null)
+			{
+				return a.compareTo((E) b);
+			}
+			else if (a == null)
+			{
+				return -1;
+			}
+			else
+			{
+				return 1;
+			}
+		}
+
+		public static int compare(Tuple t1, Tuple t2)
+		{
+			if (t1 == t2)
+			{
+				return 0;
+			}
+			else
+			{
+				return t1.size() != t2.size() ? t1.size() - t2.size() : t1.compare(t2);
+			}
+		}
+
+		public static <E1> Tuple1<E1> of(E1 _1)
+		{
+			return new Tuple1<E1>(_1);
+		}
+
+		public static <E1, E2> Tuple2<E1, E2> of(E1 _1, E2 _2)
+		{
+			return new Tuple2<E1, E2>(_1, _2);
+		}
+
+		public static <E1, E2, E3> Tuple3<E1, E2, E3> of(E1 _1, E2 _2, E3 _3)
+		{
+			return new Tuple3<E1, E2, E3>(_1, _2, _3);
+		}
+
+		/**
+		 * Compare with another tuple which has the same length.
+		 * 
+		 * @param t
+		 *            Another tuple which has the same length.
+		 * @return
+		 */
+		protected abstract int compare(Tuple t);
+
+		@Override
+		public int compareTo(Tuple t)
+		{
+			return compare(this, t);
+		}
+
+		protected void ensureIndex(int index)
+		{
+			if (index <= 0 || index > size())
+			{
+				throw new TupleIndexOutOfBoundsException(index);
+			}
+		}
+
+		/**
+		 * Compare with another tuple which is the same class.
+		 * 
+		 * @param t
+		 *            Another tuple which is the same class
+		 * @return
+		 */
+		protected abstract boolean equal(Tuple t);
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (o == null || !this.getClass().equals(o.getClass()))
+			{
+				return false;
+			}
+			else if (this == o)
+			{
+				return true;
+			}
+			else
+			{
+				return this.equal((Tuple) o);
+			}
+		}
+
+		protected Field field(int i)
+		{
+			try
+			{
+				return this.getClass().getDeclaredField("_" + i);
+			}
+			catch (Exception e)
+			{
+				return null;
+			}
+		}
+
+		protected Object get(int i)
+		{
+			ensureIndex(i);
+			try
+			{
+				return field(i).get(this);
+			}
+			catch (Exception e)
+			{
+				return null;
+			}
+		}
+
+		@Override
+		public abstract int hashCode();
+
+		@Override
+		public Iterator<Object> iterator()
+		{
+			return new TupleIterator();
+		}
+
+		public abstract <T extends Tuple> T reverse();
+
+		public abstract int size();
+
+		@Override
+		public abstract String toString();
+	}
+
+	public static class Tuple1<E1> extends Tuple
+	{
+		/**
+		 * 
+		 */
+		private static final long	serialVersionUID	= 1L;
+
+		public final E1				_1;
+
+		public Tuple1(E1 _1)
+		{
+			this._1 = _1;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		protected int compare(Tuple t)
+		{
+			Tuple1<E1> that = (Tuple1<E1>) t;
+			int c = 0;
+			if ((c = compare((Comparable) this._1, (Comparable) that._1)) != 0)
+			{
+				return c;
+			}
+			else
+			{
+				return 0;
+			}
+		}
+
+		@Override
+		protected boolean equal(Tuple t)
+		{
+			Tuple1<?> that = (Tuple1<?>) t;
+			return Tools.equals(this._1, that._1);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int h = 1;
+			h = 31 * h + (this._1 != null ? this._1.hashCode() : 0);
+			return h;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T extends Tuple> T reverse()
+		{
+			return (T) this;
+		}
+
+		@Override
+		public int size()
+		{
+			return 1;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "(" + this._1 + ")";
+		}
+	}
+
+	public static class Tuple2<E1, E2> extends Tuple
+	{
+		/**
+		 * 
+		 */
+		private static final long	serialVersionUID	= 1L;
+
+		public final E1				_1;
+
+		public final E2				_2;
+
+		public Tuple2(E1 _1, E2 _2)
+		{
+			this._1 = _1;
+			this._2 = _2;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		protected int compare(Tuple t)
+		{
+			Tuple2<E1, E2> that = (Tuple2<E1, E2>) t;
+			int c = 0;
+			if ((c = compare((Comparable) this._1, (Comparable) that._1)) != 0)
+			{
+				return c;
+			}
+			else if ((c = compare((Comparable) this._2, (Comparable) that._2)) != 0)
+			{
+				return c;
+			}
+			else
+			{
+				return 0;
+			}
+		}
+
+		@Override
+		protected boolean equal(Tuple t)
+		{
+			Tuple2<?, ?> that = (Tuple2<?, ?>) t;
+			return Tools.equals(this._1, that._1) //
+					&& Tools.equals(this._2, that._2);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int h = 1;
+			h = 31 * h + (this._1 != null ? this._1.hashCode() : 0);
+			h = 31 * h + (this._2 != null ? this._2.hashCode() : 0);
+			return h;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Tuple2<E2, E1> reverse()
+		{
+			return Tuple.of(_2, _1);
+		}
+
+		@Override
+		public int size()
+		{
+			return 2;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "(" + this._1 + ", " + this._2 + ")";
+		}
+	}
+
+	public static class Tuple3<E1, E2, E3> extends Tuple
+	{
+		/**
+		 * 
+		 */
+		private static final long	serialVersionUID	= 1L;
+
+		public final E1				_1;
+
+		public final E2				_2;
+
+		public final E3				_3;
+
+		public Tuple3(E1 _1, E2 _2, E3 _3)
+		{
+			this._1 = _1;
+			this._2 = _2;
+			this._3 = _3;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		protected int compare(Tuple t)
+		{
+			Tuple3<E1, E2, E3> that = (Tuple3<E1, E2, E3>) t;
+			int c = 0;
+			if ((c = compare((Comparable) this._1, (Comparable) that._1)) != 0)
+			{
+				return c;
+			}
+			else if ((c = compare((Comparable) this._2, (Comparable) that._2)) != 0)
+			{
+				return c;
+			}
+			else if ((c = compare((Comparable) this._3, (Comparable) that._3)) != 0)
+			{
+				return c;
+			}
+			else
+			{
+				return 0;
+			}
+		}
+
+		@Override
+		protected boolean equal(Tuple t)
+		{
+			Tuple3<?, ?, ?> that = (Tuple3<?, ?, ?>) t;
+			return Tools.equals(this._1, that._1) //
+					&& Tools.equals(this._2, that._2) //
+					&& Tools.equals(this._3, that._3);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int h = 1;
+			h = 31 * h + (this._1 != null ? this._1.hashCode() : 0);
+			h = 31 * h + (this._2 != null ? this._2.hashCode() : 0);
+			h = 31 * h + (this._3 != null ? this._3.hashCode() : 0);
+			return h;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Tuple3<E3, E2, E1> reverse()
+		{
+			return Tuple.of(_3, _2, _1);
+		}
+
+		@Override
+		public int size()
+		{
+			return 3;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "(" + this._1 + ", " + this._2 + ", " + this._3 + ")";
+		}
+	}
+
+	protected static class UnionOp<E> implements Converter<E, E>
+	{
+		protected final Canal<E>	self;
+
+		protected final Canal<E>	that;
+
+		@SuppressWarnings("unchecked")
+		public UnionOp(Canal<E> self, Canal<? extends E> that)
+		{
+			if (self == null || that == null)
+			{
+				throw new NullPointerException();
+			}
+			this.self = self;
+			this.that = (Canal<E>) that;
+		}
+
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new UnionPond<E>(self.build(), that.build());
+		}
+	}
+
+	protected static class UnionPond<E> extends AbstractPond<E, E>
+	{
+		protected final Pond<?, E>	self;
+
+		protected final Pond<?, E>	that;
+
+		private boolean				here	= true;
+
+		public UnionPond(Pond<?, E> self, Pond<?, E> that)
+		{
+			this.self = self;
+			this.that = that;
+		}
+
+		@Override
+		public void begin()
+		{
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (self.hasNext())
+			{
+				return true;
+			}
+			else if (that.hasNext())
+			{
+				here = false;
+				return true;
+			}
+			else
+			{
+				return false;
+			}
+		}
+
+		@Override
+		public E next()
+		{
+			if (here)
+			{
+				return self.next();
+			}
+			else
+			{
+				return that.next();
+			}
+		}
+	}
+
+	protected static class UntilOp<E> implements Converter<E, E>
+	{
+		protected final Filter<E>	until;
+
+		protected final Option<E>[]	drop;
+
+		public UntilOp(Filter<E> until, Option<E>[] drop)
+		{
+			if (until == null)
+			{
+				throw new NullPointerException();
+			}
+			this.until = until;
+			this.drop = drop;
+		}
+
+		@Override
+		public Pond<E, E> newPond()
+		{
+			return new Wheel<E, E>()
+			{
+				boolean	over	= false;
+				boolean	take	= true;
+				E		next	= null;
+
+				@Override
+				public void begin()
+				{
+					if (drop != null && drop.length > 0)
+					{
+						drop[0] = Option.none();
+					}
+					super.begin();
+				}
+
+				@Override
+				public void drain(final Sink<? super E> sink) throws Exception
+				{
+					if (!take)
+					{
+						take = true;
+						if (!sink.accept(next))
+						{
+							return;
+						}
+					}
+					if (over)
+					{
+						return;
+					}
+					upstream().drain(new Sink<E>()
+					{
+						@Override
+						public boolean accept(E el) throws Exception
+						{
+							if (until.filter(el))
+							{
+								if (drop != null && drop.length > 0)
+								{
+									drop[0] = Option.some(el);
+								}
+								over = true;
+								return false;
+							}
+							return sink.accept(el);
+						}
+					});
+				}
+
+				@Override
+				public boolean hasNext()
+				{
+					if (over)
+					{
+						return false;
+					}
+					else if (!take)
+					{
+						return true;
+					}
+					else if (!upstream().hasNext())
+					{
+						return false;
+					}
+					else
+					{
+						next = upstream().next();
+						try
+						{
+							if (until.filter(next))
+							{
+								if (drop != null && drop.length > 0)
+								{
+									drop[0] = Option.some(next);
+								}
+								over = true;
+								next = null;
+								take = true;
+								return false;
+							}
+							else
+							{
+								take = false;
+								return true;
+							}
+						}
+						catch (RuntimeException e)
+						{
+							throw e;
+						}
+						catch (Exception e)
+						{
+							throw new RuntimeException(e);
+						}
+					}
+				}
+
+				@Override
+				public E next()
+				{
+					try
+					{
+						return next;
+					}
+					finally
+					{
+						take = true;
+					}
+				}
+			};
+		}
+	}
+
+	protected static abstract class Wheel<I, O> extends AbstractPond<I, O>
+	{
+		/**
+		 * The index of current iterating element.<br />
+		 * This index should {@code +1} just after {@code upstream().next()} is
+		 * called and before any other action.
+		 */
+		protected long index = 0;
+
+		@Override
+		public void begin()
+		{
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return upstream().hasNext();
+		}
+	}
+
+	public static interface Window<R>
+	{
+		public Mapper<? super R, ? extends Number>[] between();
+
+		public boolean isByRows();
+
+		public Expr<? super R, ?>[] orderBy();
+
+		public Expr<? super R, ?>[] partBy();
+	}
+
+	/**
+	 * The state of a sliding window over the rows of a partition. Rows are
+	 * added while the window end moves forward and removed while the window
+	 * begin moves forward. The frame would be cleared if the window moves
+	 * backward.
+	 */
+	public static abstract class WindowFrame<I>
+	{
+		private int	from	= 0;
+
+		private int	to		= 0;
+
+		protected abstract void add(I[] rows, int index) throws Exception;
+
+		protected abstract void clear() throws Exception;
+
+		/**
+		 * @return the begin (including) of the current frame.
+		 */
+		protected int from()
+		{
+			return from;
+		}
+
+		protected abstract void remove(I[] rows, int index) throws Exception;
+
+		protected abstract Object result() throws Exception;
+
+		/**
+		 * @return the end (excluding) of the current frame.
+		 */
+		protected int to()
+		{
+			return to;
+		}
+
+		/**
+		 * Slide the frame to the given window.
+		 * 
+		 * @param rows
+		 * @param winFrom
+		 *            the window begin (including).
+		 * @param winTo
+		 *            the window end (excluding).
+		 * @return the update result of the window.
+		 * @throws Exception
+		 */
+		public Object slide(I[] rows, int winFrom, int winTo) throws Exception
+		{
+			if (winFrom < from || winTo < to || winFrom >= to)
+			{
+				this.clear();
+				from = to = winFrom;
+			}
+
+			while (to < winTo)
+			{
+				this.add(rows, to++);
+			}
+
+			while (from < winFrom)
+			{
+				this.remove(rows, from++);
+			}
+
+			return this.result();
+		}
+	}
+
+	public static interface WindowFunctionResultSetter<R>
+	{
+		public void set(R row, int idx, Aggregator<R, ?> agg, Object res) throws Exception;
+	}
+
+	public static class WindowFunctions<I>
+	{
+		protected static class COUNT<I> extends AbstractAggregator<I, Integer> implements SlidingAggregator<I, Integer>
+		{
+			protected final boolean			distinct;
+
+			protected final Mapper<I, ?>	vop;
+
+			public COUNT(boolean distinct, Mapper<I, ?> vop)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.distinct = distinct;
+				this.vop = vop;
+			}
+
+			@Override
+			public WindowFrame<I> frame()
+			{
+				if (distinct)
+				{
+					return new WindowFrame<I>()
+					{
+						private final Map<Object, int[]> counts = new HashMap<Object, int[]>();
+
+						@Override
+						protected void add(I[] rows, int index) throws Exception
+						{
+							Object val = vop.map(rows[index]);
+							if (val != null)
+							{
+								int[] count = counts.get(val);
+								if (count == null)
+								{
+									counts.put(val, new int[] { 1 });
+								}
+								else
+								{
+									count[0]++;
+								}
+							}
+						}
+
+						@Override
+						protected void clear()
+						{
+							counts.clear();
+						}
+
+						@Override
+						protected void remove(I[] rows, int index) throws Exception
+						{
+							Object val = vop.map(rows[index]);
+							if (val != null)
+							{
+								int[] count = counts.get(val);
+								if (--count[0] == 0)
+								{
+									counts.remove(val);
+								}
+							}
+						}
+
+						@Override
+						protected Object result()
+						{
+							return counts.size();
+						}
+					};
+				}
+				else
+				{
+					return new WindowFrame<I>()
+					{
+						private int count = 0;
+
+						@Override
+						protected void add(I[] rows, int index) throws Exception
+						{
+							if (vop.map(rows[index]) != null)
+							{
+								count++;
+							}
+						}
+
+						@Override
+						protected void clear()
+						{
+							count = 0;
+						}
+
+						@Override
+						protected void remove(I[] rows, int index) throws Exception
+						{
+							if (vop.map(rows[index]) != null)
+							{
+								count--;
+							}
+						}
+
+						@Override
+						protected Object result()
+						{
+							return count;
+						}
+					};
+				}
+			}
+
+			@Override
+			public Integer update(Object gather, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				if (distinct)
+				{
+					Set<Object> set = new HashSet<Object>();
+					Object val = null;
+					for (int i = winFrom; i < winTo; i++)
+					{
+						if ((val = vop.map(rows[i])) != null)
+						{
+							set.add(val);
+						}
+					}
+					return set.size();
+				}
+				else
+				{
+					int count = 0;
+					for (int i = winFrom; i < winTo; i++)
+					{
+						if (vop.map(rows[i]) != null)
+						{
+							count++;
+						}
+					}
+					return count;
+				}
+			}
+		}
+
+		protected static class DENSE_RANK<I> extends AbstractAggregator<I, Integer>
+		{
+			@Override
+			public Mapper<I, Number>[] between()
+			{
+				return null;
+			}
+
+			@Override
+			public Object gather(Object acc, I[] rows, int levelFrom, int levelTo) throws Exception
+			{
+				return ((Integer) acc) + 1;
+			}
+
+			@Override
+			public Integer initial()
+			{
+				return 0;
+			}
+		}
+
+		protected static class FIRST_VALUE<I, O> extends AbstractAggregator<I, O>
+		{
+			protected final Mapper<I, ? extends O>	vop;
+
+			protected final boolean					ignoreNulls;
+
+			public FIRST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.vop = vop;
+				this.ignoreNulls = ignoreNulls;
+			}
+
+			@Override
+			public O update(Object gather, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				O d = null;
+				for (int i = winFrom; i < winTo; i++)
+				{
+					if ((d = vop.map(rows[i])) != null || !ignoreNulls)
+					{
+						return d;
+					}
+				}
+				return null;
+			}
+		}
+
+		public abstract class Item<O extends Comparable<O>> extends Expr<I, O>
+		{
+			@Override
+			public Item<O> asc()
+			{
+				super.asc();
+				return this;
+			}
+
+			@Override
+			public Item<O> desc()
+			{
+				super.desc();
+				return this;
+			}
+
+			@Override
+			public Item<O> nullsFirst()
+			{
+				super.nullsFirst();
+				return this;
+			}
+
+			@Override
+			public Item<O> nullsLast()
+			{
+				super.nullsLast();
+				return this;
+			}
+		}
+
+		protected static class LAG<I, O> extends AbstractAggregator<I, O>
+		{
+			protected final Mapper<I, ? extends O>	vop;
+
+			protected final int						offset;
+
+			protected final O						deft;
+
+			public LAG(Mapper<I, ? extends O> vop, int offset, O deft)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.vop = vop;
+				this.offset = Math.abs(offset);
+				this.deft = deft;
+			}
+
+			@Override
+			public Mapper<I, Number>[] between()
+			{
+				return null;
+			}
+
+			@Override
+			public O express(int pos, Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				int index = pos - offset;
+				return index < 0 ? deft : vop.map(rows[index]);
+			}
+		}
+
+		protected static class LAST_VALUE<I, O> extends AbstractAggregator<I, O>
+		{
+			protected final Mapper<I, ? extends O>	vop;
+
+			protected final boolean					ignoreNulls;
+
+			public LAST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.vop = vop;
+				this.ignoreNulls = ignoreNulls;
+			}
+
+			@Override
+			public O update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				O d = null;
+				for (int i = winTo - 1; i >= winFrom; i--)
+				{
+					if ((d = vop.map(rows[i])) != null || !ignoreNulls)
+					{
+						return d;
+					}
+				}
+				return null;
+			}
+		}
+
+		protected static class LEAD<I, O> extends AbstractAggregator<I, O>
+		{
+			protected final Mapper<I, ? extends O>	vop;
+
+			protected final int						offset;
+
+			protected final O						deft;
+
+			public LEAD(Mapper<I, ? extends O> vop, int offset, O deft)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.vop = vop;
+				this.offset = Math.abs(offset);
+				this.deft = deft;
+			}
+
+			@Override
+			public Mapper<I, Number>[] between()
+			{
+				return null;
+			}
+
+			@Override
+			public O express(int pos, Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				int index = pos + offset;
+				return index >= rows.length ? deft : vop.map(rows[index]);
+			}
+		}
+
+		protected static class MAX<I, O extends Comparable<O>> extends AbstractAggregator<I, O>
+				implements SlidingAggregator<I, O>
+		{
+			protected final Expr<I, ? extends O> vop;
+
+			public MAX(Expr<I, ? extends O> vop)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.vop = vop;
+			}
+
+			@Override
+			public WindowFrame<I> frame()
+			{
+				return new MonotonicFrame<I, O>(vop, true);
+			}
+
+			@Override
+			public O update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				O m = null, o = null;
+				for (int i = winFrom; i < winTo; i++)
+				{
+					if ((o = vop.map(rows[i])) != null)
+					{
+						if (m == null || o.compareTo(m) > 0)
+						{
+							m = o;
+						}
+					}
+				}
+				return m;
+			}
+		}
+
+		protected static class MIN<I, O extends Comparable<O>> extends AbstractAggregator<I, O>
+				implements SlidingAggregator<I, O>
+		{
+			protected final Expr<I, ? extends O> vop;
+
+			public MIN(Expr<I, ? extends O> vop)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.vop = vop;
+			}
+
+			@Override
+			public WindowFrame<I> frame()
+			{
+				return new MonotonicFrame<I, O>(vop, false);
+			}
+
+			@Override
+			public O update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				O m = null, o = null;
+				for (int i = winFrom; i < winTo; i++)
+				{
+					if ((o = vop.map(rows[i])) != null)
+					{
+						if (m == null || o.compareTo(m) < 0)
+						{
+							m = o;
+						}
+					}
+				}
+				return m;
+			}
+		}
+
+		/**
+		 * Keep the candidates of the max (or min) value in a monotonic deque,
+		 * so that each row would be added and removed at most once.
+		 */
+		protected static class MonotonicFrame<I, O extends Comparable<O>> extends WindowFrame<I>
+		{
+			protected final Expr<I, ? extends O>	vop;
+
+			protected final boolean					max;
+
+			private int[]							index;
+
+			private Object[]						value;
+
+			private int								head	= 0;
+
+			private int								tail	= 0;
+
+			public MonotonicFrame(Expr<I, ? extends O> vop, boolean max)
+			{
+				this.vop = vop;
+				this.max = max;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			protected void add(I[] rows, int idx) throws Exception
+			{
+				O val = vop.map(rows[idx]);
+				if (val == null)
+				{
+					return;
+				}
+
+				if (index == null)
+				{
+					index = new int[rows.length];
+					value = new Object[rows.length];
+				}
+
+				int c = 0;
+				while (tail > head)
+				{
+					c = ((O) value[tail - 1]).compareTo(val);
+					if (max ? c < 0 : c > 0)
+					{
+						value[--tail] = null;
+					}
+					else
+					{
+						break;
+					}
+				}
+
+				index[tail] = idx;
+				value[tail] = val;
+				tail++;
+			}
+
+			@Override
+			protected void clear()
+			{
+				if (value != null)
+				{
+					for (int i = head; i < tail; i++)
+					{
+						value[i] = null;
+					}
+				}
+				head = tail = 0;
+			}
+
+			@Override
+			protected void remove(I[] rows, int idx)
+			{
+				if (tail > head && index[head] == idx)
+				{
+					value[head++] = null;
+				}
+			}
+
+			@Override
+			protected Object result()
+			{
+				return tail > head ? value[head] : null;
+			}
+		}
+
+		protected static class RANK<I> extends AbstractAggregator<I, Integer>
+		{
+			@Override
+			public Mapper<I, Number>[] between()
+			{
+				return null;
+			}
+
+			@Override
+			public Object gather(Object acc, I[] rows, int levelFrom, int levelTo) throws Exception
+			{
+				return levelFrom + 1;
+			}
+
+			@Override
+			public Integer initial()
+			{
+				return 0;
+			}
+		}
+
+		protected static class ROW_NUMBER<I> extends AbstractAggregator<I, Integer>
+		{
+			@Override
+			public Mapper<I, Number>[] between()
+			{
+				return null;
+			}
+
+			@Override
+			public Integer express(int pos, Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				return pos + 1;
+			}
+		}
+
+		protected static class SUM<I, T extends Number> extends AbstractAggregator<I, Number>
+				implements SlidingAggregator<I, Number>
+		{
+			/**
+			 * Accumulate the values in a primitive field chosen by the type of
+			 * the first value, so that the sum is boxed only when it is
+			 * requested. The floating sums carry a Neumaier compensation so
+			 * that the removal of a large value does not cancel the small ones.
+			 */
+			protected static class Accumulator
+			{
+				protected static final byte	NONE	= 0;
+
+				protected static final byte	INT		= 1;
+
+				protected static final byte	LONG	= 2;
+
+				protected static final byte	FLOAT	= 3;
+
+				protected static final byte	DOUBLE	= 4;
+
+				protected static final byte	OBJECT	= 5;
+
+				private byte				kind	= NONE;
+
+				private int					i;
+
+				private long				l;
+
+				private float				f, fc;
+
+				private double				d, dc;
+
+				private Number				o;
+
+				public void add(Number n)
+				{
+					switch (kind)
+					{
+						case INT:
+							i += n.intValue();
+							break;
+						case LONG:
+							l += n.longValue();
+							break;
+						case FLOAT:
+							this.addFloat(n.floatValue());
+							break;
+						case DOUBLE:
+							this.addDouble(n.doubleValue());
+							break;
+						case OBJECT:
+							o = plus(o, n);
+							break;
+						default:
+							this.init(n);
+					}
+				}
+
+				protected void addDouble(double x)
+				{
+					double t = d + x;
+					if (Math.abs(d) >= Math.abs(x))
+					{
+						dc += (d - t) + x;
+					}
+					else
+					{
+						dc += (x - t) + d;
+					}
+					d = t;
+				}
+
+				protected void addFloat(float x)
+				{
+					float t = f + x;
+					if (Math.abs(f) >= Math.abs(x))
+					{
+						fc += (f - t) + x;
+					}
+					else
+					{
+						fc += (x - t) + f;
+					}
+					f = t;
+				}
+
+				public void clear()
+				{
+					kind = NONE;
+					i = 0;
+					l = 0;
+					f = fc = 0;
+					d = dc = 0;
+					o = null;
+				}
+
+				protected void init(Number n)
+				{
+					Number z = zero(n);
+					if (z instanceof Integer)
+					{
+						kind = INT;
+						i = n.intValue();
+					}
+					else if (z instanceof Long)
+					{
+						kind = LONG;
+						l = n.longValue();
+					}
+					else if (z instanceof Float)
+					{
+						kind = FLOAT;
+						f = n.floatValue();
+					}
+					else if (z instanceof Double)
+					{
+						kind = DOUBLE;
+						d = n.doubleValue();
+					}
+					else
+					{
+						kind = OBJECT;
+						o = plus(z, n);
+					}
+				}
+
+				/**
+				 * Remove the value from the sum. The floating sums are
+				 * subtracted with compensation, so that removing 1e20 from
+				 * 1e20+1 still gives 1, unless the sum is not finite.
+				 * 
+				 * @param n
+				 * @return false if the sum should be recomputed.
+				 */
+				public boolean remove(Number n)
+				{
+					switch (kind)
+					{
+						case INT:
+							i -= n.intValue();
+							return true;
+						case LONG:
+							l -= n.longValue();
+							return true;
+						case OBJECT:
+							o = minus(o, n);
+							return true;
+						case FLOAT:
+							this.addFloat(-n.floatValue());
+							return !Float.isInfinite(f) && !Float.isNaN(f);
+						case DOUBLE:
+							this.addDouble(-n.doubleValue());
+							return !Double.isInfinite(d) && !Double.isNaN(d);
+						default:
+							return true;
+					}
+				}
+
+				public Number result()
+				{
+					switch (kind)
+					{
+						case INT:
+							return i;
+						case LONG:
+							return l;
+						case FLOAT:
+							return Float.isInfinite(f) || Float.isNaN(f) ? f : f + fc;
+						case DOUBLE:
+							return Double.isInfinite(d) || Double.isNaN(d) ? d : d + dc;
+						case OBJECT:
+							return o;
+						default:
+							return null;
+					}
+				}
+			}
+
+			protected static Number minus(Number sum, Number d)
+			{
+				if (sum instanceof Integer)
+				{
+					return sum.intValue() - d.intValue();
+				}
+				else if (sum instanceof Double)
+				{
+					return sum.doubleValue() - d.doubleValue();
+				}
+				else if (sum instanceof BigDecimal)
+				{
+					return ((BigDecimal) sum).subtract((BigDecimal) d);
+				}
+				else if (sum instanceof Long)
+				{
+					return sum.longValue() - d.longValue();
+				}
+				else if (sum instanceof Float)
+				{
+					return sum.floatValue() - d.floatValue();
+				}
+				else if (sum instanceof BigInteger)
+				{
+					return ((BigInteger) sum).subtract((BigInteger) d);
+				}
+				else
+				{
+					return sum;
+				}
+			}
+
+			protected static Number plus(Number sum, Number d)
+			{
+				if (sum instanceof Integer)
+				{
+					return sum.intValue() + d.intValue();
+				}
+				else if (sum instanceof Double)
+				{
+					return sum.doubleValue() + d.doubleValue();
+				}
+				else if (sum instanceof BigDecimal)
+				{
+					return ((BigDecimal) sum).add((BigDecimal) d);
+				}
+				else if (sum instanceof Long)
+				{
+					return sum.longValue() + d.longValue();
+				}
+				else if (sum instanceof Float)
+				{
+					return sum.floatValue() + d.floatValue();
+				}
+				else if (sum instanceof BigInteger)
+				{
+					return ((BigInteger) sum).add((BigInteger) d);
+				}
+				else
+				{
+					return sum;
+				}
+			}
+
+			protected static Number zero(Number d)
+			{
+				if (d instanceof Integer || d instanceof Short || d instanceof Byte)
+				{
+					return 0;
+				}
+				else if (d instanceof Double)
+				{
+					return 0.0;
+				}
+				else if (d instanceof BigDecimal)
+				{
+					return BigDecimal.ZERO;
+				}
+				else if (d instanceof Long)
+				{
+					return 0L;
+				}
+				else if (d instanceof Float)
+				{
+					return 0f;
+				}
+				else if (d instanceof BigInteger)
+				{
+					return BigInteger.ZERO;
+				}
+				else
+				{
+					return 0.0;
+				}
+			}
+
+			protected final Mapper<I, T> vop;
+
+			public SUM(Mapper<I, T> vop)
+			{
+				if (vop == null)
+				{
+					throw new NullPointerException();
+				}
+				this.vop = vop;
+			}
+
+			@Override
+			public WindowFrame<I> frame()
+			{
+				return new WindowFrame<I>()
+				{
+					private final Accumulator	sum		= new Accumulator();
+
+					private int					count	= 0;
+
+					private I[]					rows	= null;
+
+					private boolean				stale	= false;
+
+					@Override
+					protected void add(I[] rows, int index) throws Exception
+					{
+						Number d = vop.map(rows[index]);
+						if (d != null)
+						{
+							sum.add(d);
+							count++;
+						}
+					}
+
+					@Override
+					protected void clear()
+					{
+						sum.clear();
+						count = 0;
+						stale = false;
+					}
+
+					@Override
+					protected void remove(I[] rows, int index) throws Exception
+					{
+						Number d = vop.map(rows[index]);
+						if (d != null)
+						{
+							if (--count == 0)
+							{
+								sum.clear();
+								stale = false;
+							}
+							else if (!sum.remove(d))
+							{
+								this.rows = rows;
+								stale = true;
+							}
+						}
+					}
+
+					@Override
+					protected Object result() throws Exception
+					{
+						if (stale)
+						{
+							// Recompute the sum which is no longer finite.
+							sum.clear();
+							Number d = null;
+							for (int i = this.from(); i < this.to(); i++)
+							{
+								if ((d = vop.map(rows[i])) != null)
+								{
+									sum.add(d);
+								}
+							}
+							stale = false;
+						}
+						return sum.result();
+					}
+				};
+			}
+
+			@Override
+			public Number update(Object acc, I[] rows, int winFrom, int winTo) throws Exception
+			{
+				Accumulator sum = new Accumulator();
+				Number d = null;
+				for (int i = winFrom; i < winTo; i++)
+				{
+					if ((d = vop.map(rows[i])) != null)
+					{
+						sum.add(d);
+					}
+				}
+				return sum.result();
+			}
+		}
+
+		public final Mapper<I, Number>	CURRENT_ROW	= new Mapper<I, Number>()
+													{
+														@Override
+														public Number map(I el) throws Exception
+														{
+															return 0;
+														}
+													};
+
+		public final Mapper<I, Number>	UNBOUNDED	= new Mapper<I, Number>()
+													{
+														@Override
+														public Number map(I el) throws Exception
+														{
+															return null;
+														}
+													};
+
+		public final Mapper<I, Number>	NULL		= new Mapper<I, Number>()
+													{
+														@Override
+														public Number map(Object el) throws Exception
+														{
+															return null;
+														}
+													};
+
+		@SuppressWarnings("rawtypes")
+		public <T extends Comparable> Item $(final Mapper<I, T> mapper)
+		{
+			return new Item()
+			{
+				@Override
+				protected Object key()
+				{
+					return mapper;
+				}
+
+				@SuppressWarnings("unchecked")
+				@Override
+				public Object map(Object el) throws Exception
+				{
+					return mapper.map((I) el);
+				}
+			};
+		}
+
+		public Aggregator<I, Integer> COUNT(boolean distinct, Mapper<I, ?> vop)
+		{
+			return new COUNT<I>(distinct, vop);
+		}
+
+		public Aggregator<I, Integer> COUNT(Mapper<I, ?> vop)
+		{
+			return COUNT(false, vop);
+		}
+
+		public Aggregator<I, Integer> DENSE_RANK()
+		{
+			return new DENSE_RANK<I>();
+		}
+
+		public <O> Aggregator<I, O> FIRST_VALUE(Mapper<I, ? extends O> vop)
+		{
+			return FIRST_VALUE(vop, false);
+		}
+
+		public <O> Aggregator<I, O> FIRST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
+		{
+			return new FIRST_VALUE<I, O>(vop, ignoreNulls);
+		}
+
+		public Mapper<I, Number> following(final BigDecimal amount)
+		{
+			return following(amount != null ? amount.doubleValue() : null);
+		}
+
+		public Mapper<I, Number> following(final Double amount)
+		{
+			return new Mapper<I, Number>()
+			{
+				@Override
+				public Number map(I el) throws Exception
+				{
+					return amount != null ? Math.abs(amount) : null;
+				}
+			};
+		}
+
+		public Mapper<I, Number> following(final Integer amount)
+		{
+			return new Mapper<I, Number>()
+			{
+				@Override
+				public Number map(I el) throws Exception
+				{
+					return amount != null ? Math.abs(amount) : null;
+				}
+			};
+		}
+
+		public <T extends Comparable<T>> Item<T> item(final T t)
+		{
+			return new Item<T>()
+			{
+				@Override
+				public T map(I el) throws Exception
+				{
+					return t;
+				}
+			};
+		}
+
+		public <O> Aggregator<I, O> LAG(Mapper<I, ? extends O> vop)
+		{
+			return LAG(vop, 1);
+		}
+
+		public <O> Aggregator<I, O> LAG(Mapper<I, ? extends O> vop, int offset)
+		{
+			return LAG(vop, offset, null);
+		}
+
+		public <O> Aggregator<I, O> LAG(Mapper<I, ? extends O> vop, int offset, O deft)
+		{
+			return new LAG<I, O>(vop, offset, deft);
+		}
+
+		public <O> Aggregator<I, O> LAST_VALUE(Mapper<I, ? extends O> vop)
+		{
+			return LAST_VALUE(vop, false);
+		}
+
+		public <O> Aggregator<I, O> LAST_VALUE(Mapper<I, ? extends O> vop, boolean ignoreNulls)
+		{
+			return new LAST_VALUE<I, O>(vop, ignoreNulls);
+		}
+
+		public <O> Aggregator<I, O> LEAD(Mapper<I, ? extends O> vop)
+		{
+			return LEAD(vop, 1);
+		}
+
+		public <O> Aggregator<I, O> LEAD(Mapper<I, ? extends O> vop, int offset)
+		{
+			return LEAD(vop, offset, null);
+		}
+
+		public <O> Aggregator<I, O> LEAD(Mapper<I, ? extends O> vop, int offset, O deft)
+		{
+			return new LEAD<I, O>(vop, offset, deft);
+		}
+
+		public <O extends Comparable<O>> Aggregator<I, O> MAX(Expr<I, ? extends O> vop)
+		{
+			return new MAX<I, O>(vop);
+		}
+
+		public <O extends Comparable<O>> Aggregator<I, O> MIN(Expr<I, ? extends O> vop)
+		{
+			return new MIN<I, O>(vop);
+		}
+
+		public Mapper<I, Number> offset(final BigDecimal amount)
+		{
+			return new Mapper<I, Number>()
+			{
+				@Override
+				public Number map(I el) throws Exception
+				{
+					return amount;
+				}
+			};
+		}
+
+		public Mapper<I, Number> offset(final Double amount)
+		{
+			return new Mapper<I, Number>()
+			{
+				@Override
+				public Number map(I el) throws Exception
+				{
+					return amount;
+				}
+			};
+		}
+
+		public Mapper<I, Number> offset(final Integer amount)
+		{
+			return new Mapper<I, Number>()
+			{
+				@Override
+				public Number map(I el) throws Exception
+				{
+					return amount;
+				}
+			};
+		}
+
+		public Mapper<I, Number> preceding(final BigDecimal amount)
+		{
+			return preceding(amount != null ? amount.doubleValue() : null);
+		}
+
+		public Mapper<I, Number> preceding(final Double amount)
+		{
+			return new Mapper<I, Number>()
+			{
+				@Override
+				public Number map(I el) throws Exception
+				{
+					return amount != null ? -Math.abs(amount) : null;
+				}
+			};
+		}
+
+		public Mapper<I, Number> preceding(final Integer amount)
+		{
+			return new Mapper<I, Number>()
+			{
+				@Override
+				public Number map(I el) throws Exception
+				{
+					return amount != null ? -Math.abs(amount) : null;
+				}
+			};
+		}
+
+		public Aggregator<I, Integer> RANK()
+		{
+			return new RANK<I>();
+		}
+
+		public Aggregator<I, Integer> ROW_NUMBER()
+		{
+			return new ROW_NUMBER<I>();
+		}
+
+		public <T extends Number> Aggregator<I, Number> SUM(Mapper<I, T> vop)
+		{
+			return new SUM<I, T>(vop);
+		}
+	}
+
+	protected static interface WindowRanger<I>
+	{
+		/**
+		 * To get the range of window. The range bound may be beyond level range
+		 * since the preceding and following arguments.
+		 * 
+		 * @param range
+		 *            the result range, from (including) to (excluding).
+		 * @param rows
+		 * @param from
+		 * @param levelBegin
+		 * @param levelEnd
+		 * @throws Exception
+		 */
+		public void range(int[] range, I[] rows, int from, int levelBegin, int levelEnd) throws Exception;
+
+		/**
+		 * To get the end of next step.
+		 * 
+		 * @param rows
+		 * @param from
+		 *            the start point of next step (including).
+		 * @param levelBegin
+		 * @param levelEnd
+		 * @return the end of next step (excluding).
+		 * @throws Exception
+		 */
+		public int step(I[] rows, int from, int levelBegin, int levelEnd) throws Exception;
+	}
+
+	protected static class ZipOp<A, B> implements Converter<A, Tuple2<A, B>>
+	{
+		protected final Canal<B> that;
+
+		public ZipOp(Canal<B> that)
+		{
+			if (that == null)
+			{
+				throw new NullPointerException();
+			}
+			this.that = that;
+		}
+
+		@Override
+		public Pond<A, Tuple2<A, B>> newPond()
+		{
+			return new ZipPond<A, B>(that);
+		}
+	}
+
+	protected static class ZipOuterOp<A, B> implements Converter<A, Tuple2<Option<A>, Option<B>>>
+	{
+		protected final Canal<B> that;
+
+		public ZipOuterOp(Canal<B> that)
+		{
+			if (that == null)
+			{
+				throw new NullPointerException();
+			}
+			this.that = that;
+		}
+
+		@Override
+		public Pond<A, Tuple2<Option<A>, Option<B>>> newPond()
+		{
+			return new ZipOuterPond<A, B>(that);
+		}
+	}
+
+	protected static class ZipOuterPond<A, B> extends Dam<A, B, Tuple2<Option<A>, Option<B>>>
+	{
+		private Pond<?, B>	there;
+
+		private boolean		hasThis;
+
+		private boolean		hasThat;
+
+		public ZipOuterPond(Canal<B> that)
+		{
+			super(that);
+		}
+
+		@Override
+		public void begin()
+		{
+			this.there = that.build();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return (hasThis = upstream().hasNext()) | (hasThat = there.hasNext());
+		}
+
+		@Override
+		public Tuple2<Option<A>, Option<B>> next()
+		{
+			return Tuple.of(hasThis ? Option.some(upstream().next()) : Option.<A> none(),
+					hasThat ? Option.some(there.next()) : Option.<B> none());
+		}
+	}
+
+	protected static class ZipPond<A, B> extends Dam<A, B, Tuple2<A, B>>
+	{
+		private Pond<?, B> there;
+
+		public ZipPond(Canal<B> that)
+		{
+			super(that);
+		}
+
+		@Override
+		public void begin()
+		{
+			this.there = that.build();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return upstream().hasNext() && there.hasNext();
+		}
+
+		@Override
+		public Tuple2<A, B> next()
+		{
+			return Tuple.of(upstream().next(), there.next());
+		}
+	}
+
+	protected static class ZipWithIndexLongOp<E> implements Converter<E, Tuple2<E, Long>>
+	{
+		@Override
+		public Pond<E, Tuple2<E, Long>> newPond()
+		{
+			return new Wheel<E, Tuple2<E, Long>>()
+			{
+				@Override
+				public Tuple2<E, Long> next()
+				{
+					return Tuple.of(upstream().next(), index++);
+				}
+			};
+		}
+	}
+
+	protected static class ZipWithIndexOp<E> implements Converter<E, Tuple2<E, Integer>>
+	{
+		@Override
+		public Pond<E, Tuple2<E, Integer>> newPond()
+		{
+			return new Wheel<E, Tuple2<E, Integer>>()
+			{
+				@Override
+				public Tuple2<E, Integer> next()
+				{
+					return Tuple.of(upstream().next(), (int) index++);
+				}
+			};
+		}
+	}
+
+	protected static class ZipWithPhaseOp<E> implements Converter<E, Tuple2<E, Integer>>
+	{
+		@Override
+		public Pond<E, Tuple2<E, Integer>> newPond()
+		{
+			return new Creek<E, Tuple2<E, Integer>>()
+			{
+				private Boolean	has;
+
+				private E		next;
+
+				private int		head	= 1, body = -1;
+
+				@Override
+				public boolean hasNext()
+				{
+					if (has == null)
+					{
+						has = body >= 0 ? body < 2 : upstream().hasNext();
+						if (has)
+						{
+							next = upstream().next();
+							body = upstream().hasNext() ? 0 : 2;
+						}
+						else
+						{
+							body = -1;
+						}
+					}
+					return has;
+				}
+
+				@Override
+				public Tuple2<E, Integer> next()
+				{
+					try
+					{
+						return Tuple.of(next, head | body);
+					}
+					finally
+					{
+						has = null;
+						head = 0;
+					}
+				}
+			};
+		}
+	}
+
+	public static final Filter<?>								NOT_NULL	= new Filter<Object>()
+																			{
+																				@Override
+																				public boolean filter(Object el)
+																						throws Exception
+																				{
+																					return el != null;
+																				}
+																			};
+
+	public static final Expr<?, Double>							NULL		= new Expr<Object, Double>()
+																			{
+																				@Override
+																				public Double map(Object el)
+																						throws Exception
+																				{
+																					return null;
+																				}
+																			};
+
+	public static final WindowFunctions<Map<String, Object>>	wf			= new WindowFunctions<Map<String, Object>>();
+
+	public static final WindowFunctions<Object[]>				af			= new WindowFunctions<Object[]>();
+
+	public static final int										PARALLEL_CHUNK	= 1024;
+
+	/**
+	 * Group both sides of the join into hash tables, so that the output is
+	 * ordered by the keys. This is the default strategy of join.
+	 */
+	public static final int										JOIN_HASH		= 0;
+
+	/**
+	 * Build the hash table from the right side only and stream the left side
+	 * through it, which is only available for inner and left join.
+	 */
+	public static final int										JOIN_STREAM		= 1;
+
+	public static <T extends Comparable<T>> Expr<Object[], T> $(final int idx)
+	{
+		return ArrayCanal.$(idx);
+	}
+
+	public static <T extends Comparable<T>> Expr<Map<String, Object>, T> $(final String key)
+	{
+		return RowCanal.$(key);
+	}
+
+	/**
+	 * Evaluate an aggregator over the rows of a partition which have been
+	 * sorted into the given levels.
+	 */
+	protected static <V> void aggregate(V[] rows, List<List<V>> levels, Aggregator<V, ?> agg,
+			WindowRanger<V> ranger, WindowFunctionResultSetter<V> setter, int idn) throws Exception
+	{
+		int from = 0, to = 0, levelFrom = 0, levelTo = 0, i = 0;
+		int[] range = new int[] { 0, 0 };
+		Object gather = agg.initial(), update = null;
+		WindowFrame<V> frame = agg instanceof SlidingAggregator ? ((SlidingAggregator<V, ?>) agg).frame() : null;
+
+		for (List<V> level : levels)
+		{
+			levelFrom = levelTo;
+			levelTo += level.size();
+
+			from = to;
+
+			while (from < levelTo)
+			{
+				to = ranger.step(rows, from, levelFrom, levelTo);
+
+				// Find range only once in each step
+				ranger.range(range, rows, from, levelFrom, levelTo);
+
+				gather = agg.gather(gather, rows, levelFrom, levelTo);
+
+				update = frame != null ? frame.slide(rows, range[0], range[1])
+						: agg.update(gather, rows, range[0], range[1]);
+
+				for (i = from; i < to && i < levelTo; i++)
+				{
+					setter.set(rows[i], idn, agg, (Object) (range[0] >= range[1] ? null
+							: agg.express(i, update, rows, range[0], range[1])));
+				}
+
+				from = to;
+			}
+		}
+	}
+
+	protected static <I, O> Pond<I, O> begin(Pond<I, O> pond)
+	{
+		if (pond.upstream() != null)
+		{
+			begin(pond.upstream());
+		}
+		try
+		{
+			if (!pond.hasBegun())
+			{
+				pond.begin();
+				pond.setBegun();
+			}
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+		return pond;
+	}
+
+	/**
+	 * Close the given pond quietly.
+	 * 
+	 * @param pond
+	 */
+	protected static void close(Pond<?, ?> pond)
+	{
+		try
+		{
+			pond.close();
+		}
+		catch (Exception e)
+		{
+		}
+	}
+
+	public static <E> Comparator<E> comparator(List<Comparator<? super E>> cmps)
+	{
+		return new ComparatorsChain<E>(cmps);
+	}
+
+	@SuppressWarnings("rawtypes")
+	public static <E> Comparator<? super E> comparator(Mapper<E, Comparable> mapper)
+	{
+		return new MappedComparator<E>(mapper);
+	}
+
+	/**
+	 * Make a list of comparators.<br />
+	 * The parameters could be either Mapper or Boolean.<br />
+	 * The Mapper type parameter stands for a vop to extract value to be
+	 * compared from a given element.<br />
+	 * The Boolean type parameter means the ascending order of its previous
+	 * Mapper parameter.
+	 * 
+	 * @param orders
+	 * @return
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <E> List<Comparator<? super E>> comparatorsOfOrders(Object... orders)
+	{
+		List<Comparator<? super E>> list = new ArrayList<Comparator<? super E>>();
+		Comparator<? super E> cmp = null;
+
+		for (Object o : orders)
+		{
+			if (o instanceof Expr<?, ?>)
+			{
+				if (cmp != null)
+				{
+					list.add(cmp);
+				}
+				cmp = new ExprComparator((Expr<?, ?>) o);
+			}
+			else if (o instanceof Mapper<?, ?>)
+			{
+				if (cmp != null)
+				{
+					list.add(cmp);
+				}
+				cmp = comparator((Mapper<E, Comparable>) o);
+			}
+			else if (o instanceof Boolean)
+			{
+				if (cmp != null)
+				{
+					boolean asc = (Boolean) o;
+					list.add((Comparator<? super E>) (asc ? cmp : inverse(cmp)));
+					cmp = null;
+				}
+			}
+		}
+
+		if (cmp != null)
+		{
+			list.add(cmp);
+		}
+
+		return list;
+	}
+
+	public static <I, O extends Comparable<O>> Expr<I, O> expr(final O value)
+	{
+		return new Expr<I, O>()
+		{
+			@Override
+			public O map(I el) throws Exception
+			{
+				return value;
+			}
+		};
+	}
+
+	protected static <R> WindowRanger<R> getWindowRanger(Window<R> window)
+	{
+		if (window.between() != null)
+		{
+			if (window.isByRows())
+			{
+				return new SlidingRowsWindowRanger<R>(window.between());
+			}
+			else
+			{
+				if (window.orderBy().length != 1)
+				{
+					throw new RuntimeException("Range window must specify exactly one ordering item");
+				}
+				return new SlidingRangeWindowRanger<R>(window.orderBy()[0], window.between());
+			}
+		}
+		else
+		{
+			return new SimpleWindowRanger<R>();
+		}
+	}
+
+	public static <E, K, V> Map<K, List<V>> group(Iterator<E> iter, Mapper<E, K> kop, Mapper<E, V> vop) throws Exception
+	{
+		Map<K, List<V>> map = new LinkedHashMap<K, List<V>>();
+		E el;
+		K k;
+		while (iter.hasNext())
+		{
+			el = iter.next();
+			k = kop.map(el);
+			if (!map.containsKey(k))
+			{
+				map.put(k, new ArrayList<V>());
+			}
+			map.get(k).add(vop.map(el));
+		}
+		return map;
+	}
+
+	public static <E> Comparator<? super E> inverse(Comparator<? super E> cmp)
+	{
+		return new InverseComparator<E>(cmp);
+	}
+
+	/**
+	 * Generate the primitive int values from {@code begin} (inclusive) until
+	 * {@code until} (exclusive) by step 1.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @return
+	 */
+	public static IntCanal ints(int begin, int until)
+	{
+		return ints(begin, until, 1);
+	}
+
+	/**
+	 * Generate the primitive int values from {@code begin} (inclusive) until
+	 * {@code until} (exclusive) by the given step.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @param step
+	 * @return
+	 */
+	public static IntCanal ints(final int begin, final int until, final int step)
+	{
+		return new IntCanal(new IntSourcer()
+		{
+			@Override
+			public IntSource newPond()
+			{
+				final IndexSource idx = new IndexSource(begin, until, step);
+				return new IntSource()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return idx.hasNext();
+					}
+
+					@Override
+					public int nextInt()
+					{
+						try
+						{
+							return idx.index;
+						}
+						finally
+						{
+							idx.index += idx.step;
+						}
+					}
+				};
+			}
+		});
+	}
+
+	public static <E> SingleUseIterable<E> iterable(Enumeration<E> enumer)
+	{
+		return iterable(iterator(enumer));
+	}
+
+	public static <E> SingleUseIterable<E> iterable(Iterator<E> iter)
+	{
+		return new SingleUseIterable<E>(iter);
+	}
+
+	public static Iterable<Matcher> iterable(Pattern regex, CharSequence text)
+	{
+		return new MatchFindIterable(regex, text);
+	}
+
+	public static <E> EnumerationIterator<E> iterator(Enumeration<E> enumer)
+	{
+		return new EnumerationIterator<E>(enumer);
+	}
+
+	public static <E> Iterator<E> iterator(Producer<E> nexter)
+	{
+		return new ProducedIterator<E>(nexter);
+	}
+
+	/**
+	 * Name the pond built from the given Canal after its operator.
+	 */
+	protected static String labelOf(Canal<?> canal)
+	{
+		String name = canal.getOperator() == null ? "" : canal.getOperator().getClass().getName();
+		name = name.substring(Math.max(name.lastIndexOf('.'), name.lastIndexOf('$')) + 1);
+		if (name.endsWith("Op"))
+		{
+			name = name.substring(0, name.length() - 2);
+		}
+		else if (name.endsWith("Sourcer"))
+		{
+			name = name.substring(0, name.length() - 1);
+		}
+		return name;
+	}
+
+	/**
+	 * Find the end index (exclusive) of the level which begins at the given
+	 * index in the sorted data.
+	 */
+	protected static <E> int levelEnd(List<E> sorted, int from, Comparator<? super E> cmp)
+	{
+		E first = sorted.get(from);
+		int to = from + 1;
+		while (to < sorted.size() && cmp.compare(first, sorted.get(to)) == 0)
+		{
+			to++;
+		}
+		return to;
+	}
+
+	/**
+	 * Generate the primitive long values from {@code begin} (inclusive) until
+	 * {@code until} (exclusive) by step 1.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @return
+	 */
+	public static LongCanal longs(long begin, long until)
+	{
+		return longs(begin, until, 1L);
+	}
+
+	/**
+	 * Generate the primitive long values from {@code begin} (inclusive) until
+	 * {@code until} (exclusive) by the given step.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @param step
+	 * @return
+	 */
+	public static LongCanal longs(final long begin, final long until, final long step)
+	{
+		return new LongCanal(new LongSourcer()
+		{
+			@Override
+			public LongSource newPond()
+			{
+				return new LongSource()
+				{
+					private long index = begin;
+
+					@Override
+					public boolean hasNext()
+					{
+						if (begin < until)
+						{
+							return step > 0 && index < until;
+						}
+						else if (begin > until)
+						{
+							return step < 0 && index > until;
+						}
+						else
+						{
+							return false;
+						}
+					}
+
+					@Override
+					public long nextLong()
+					{
+						try
+						{
+							return index;
+						}
+						finally
+						{
+							index += step;
+						}
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * Make a None object.<br />
+	 * Call like {@code Canal.<Type>none()}
+	 * 
+	 * @return
+	 */
+	public static <E> None<E> none()
+	{
+		return Option.none();
+	}
+
+	public static Canal<Boolean> of(boolean[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Boolean> of(boolean[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Boolean> of(boolean[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Boolean> of(final boolean[] array, Integer begin, Integer until, Integer step)
+	{
+		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
+				.map(new Mapper<Integer, Boolean>()
+				{
+					@Override
+					public Boolean map(Integer i) throws Exception
+					{
+						return array[i];
+					}
+				});
+	}
+
+	public static Canal<Byte> of(byte[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Byte> of(byte[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Byte> of(byte[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Byte> of(final byte[] array, Integer begin, Integer until, Integer step)
+	{
+		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
+				.map(new Mapper<Integer, Byte>()
+				{
+					@Override
+					public Byte map(Integer i) throws Exception
+					{
+						return array[i];
+					}
+				});
+	}
+
+	public static Canal<Character> of(char[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Character> of(char[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Character> of(char[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Character> of(final char[] array, Integer begin, Integer until, Integer step)
+	{
+		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
+				.map(new Mapper<Integer, Character>()
+				{
+					@Override
+					public Character map(Integer i) throws Exception
+					{
+						return array[i];
+					}
+				});
+	}
+
+	public static Canal<Character> of(CharSequence text)
+	{
+		return of(text, null);
+	}
+
+	public static Canal<Character> of(CharSequence text, Integer begin)
+	{
+		return of(text, begin, null);
+	}
+
+	public static Canal<Character> of(CharSequence text, Integer begin, Integer until)
+	{
+		return of(text, begin, until, null);
+	}
+
+	public static Canal<Character> of(final CharSequence text, Integer begin, Integer until, Integer step)
+	{
+		return new Canal<Integer>().setOperator(new IndexSourcer(text.length(), begin, until, step))
+				.map(new Mapper<Integer, Character>()
+				{
+					@Override
+					public Character map(Integer i) throws Exception
+					{
+						return text.charAt(i);
+					}
+				});
+	}
+
+	public static Canal<Double> of(double[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Double> of(double[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Double> of(double[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Double> of(double[] array, Integer begin, Integer until, Integer step)
+	{
+		return ofDoubles(array, begin, until, step);
+	}
+
+	public static <E> Canal<E> of(E[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static <E> Canal<E> of(E[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static <E> Canal<E> of(E[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static <E> Canal<E> of(final E[] array, Integer begin, Integer until, Integer step)
+	{
+		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
+				.map(new Mapper<Integer, E>()
+				{
+					@Override
+					public E map(Integer i) throws Exception
+					{
+						return array[i];
+					}
+				});
+	}
+
+	public static Canal<Float> of(float[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Float> of(float[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Float> of(float[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Float> of(final float[] array, Integer begin, Integer until, Integer step)
+	{
+		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
+				.map(new Mapper<Integer, Float>()
+				{
+					@Override
 					public Float map(Integer i) throws Exception
 					{
-						return array[i];
+						return array[i];
+					}
+				});
+	}
+
+	public static Canal<Integer> of(int[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Integer> of(int[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Integer> of(int[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Integer> of(int[] array, Integer begin, Integer until, Integer step)
+	{
+		return ofInts(array, begin, until, step);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <E> Canal<E> of(Iterable<? extends E> iter)
+	{
+		return iter instanceof Canal ? (Canal<E>) iter //
+				: new Canal<E>().setOperator(new IterableSourcer<E>((Iterable<E>) iter));
+	}
+
+	public static PairCanal<String, Object> of(JSON json)
+	{
+		return new Canal<JSON.Pair>() //
+				.setOperator(new IterableSourcer<JSON.Pair>(json.pairs())) //
+				.map(new Mapper<JSON.Pair, Tuple2<String, Object>>()
+				{
+					@Override
+					public Tuple2<String, Object> map(Pair el)
+					{
+						return Tuple.of(el.key, el.val());
+					}
+				}).toPair();
+	}
+
+	public static Canal<Long> of(long[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Long> of(long[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Long> of(long[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Long> of(long[] array, Integer begin, Integer until, Integer step)
+	{
+		return ofLongs(array, begin, until, step);
+	}
+
+	public static <K, V> PairCanal<K, V> of(Map<? extends K, ? extends V> map)
+	{
+		return new Canal<Entry<K, V>>() //
+				.setOperator(new IterablePairSourcer<K, V>(map.entrySet())) //
+				.map(new Mapper<Entry<K, V>, Tuple2<K, V>>()
+				{
+					@Override
+					public Tuple2<K, V> map(Entry<K, V> el)
+					{
+						return Tuple.of(el.getKey(), el.getValue());
+					}
+				}).toPair();
+	}
+
+	public static Canal<Matcher> of(Pattern regex, CharSequence text)
+	{
+		return of(iterable(regex, text));
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <E> Canal<E> of(Producer<? extends E> spring)
+	{
+		return new Canal<E>().setOperator(new GeneratedSourcer<E>((Producer<E>) spring));
+	}
+
+	public static Canal<Short> of(short[] array)
+	{
+		return of(array, 0);
+	}
+
+	public static Canal<Short> of(short[] array, Integer begin)
+	{
+		return of(array, begin, null);
+	}
+
+	public static Canal<Short> of(short[] array, Integer begin, Integer until)
+	{
+		return of(array, begin, until, null);
+	}
+
+	public static Canal<Short> of(final short[] array, Integer begin, Integer until, Integer step)
+	{
+		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
+				.map(new Mapper<Integer, Short>()
+				{
+					@Override
+					public Short map(Integer i) throws Exception
+					{
+						return array[i];
+					}
+				});
+	}
+
+	/**
+	 * Make a DoubleCanal which reads the array without boxing.
+	 * 
+	 * @param array
+	 * @return
+	 */
+	public static DoubleCanal ofDoubles(double[] array)
+	{
+		return ofDoubles(array, 0);
+	}
+
+	public static DoubleCanal ofDoubles(double[] array, Integer begin)
+	{
+		return ofDoubles(array, begin, null);
+	}
+
+	public static DoubleCanal ofDoubles(double[] array, Integer begin, Integer until)
+	{
+		return ofDoubles(array, begin, until, null);
+	}
+
+	public static DoubleCanal ofDoubles(final double[] array, Integer begin, Integer until, Integer step)
+	{
+		final IndexSourcer index = new IndexSourcer(array.length, begin, until, step);
+		return new DoubleCanal(new DoubleSourcer()
+		{
+			@Override
+			public DoubleSource newPond()
+			{
+				final IndexSource idx = index.newPond();
+				return new DoubleSource()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return idx.hasNext();
+					}
+
+					@Override
+					public double nextDouble()
+					{
+						try
+						{
+							return array[idx.index];
+						}
+						finally
+						{
+							idx.index += idx.step;
+						}
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * Make a IntCanal which reads the array without boxing.
+	 * 
+	 * @param array
+	 * @return
+	 */
+	public static IntCanal ofInts(int[] array)
+	{
+		return ofInts(array, 0);
+	}
+
+	public static IntCanal ofInts(int[] array, Integer begin)
+	{
+		return ofInts(array, begin, null);
+	}
+
+	public static IntCanal ofInts(int[] array, Integer begin, Integer until)
+	{
+		return ofInts(array, begin, until, null);
+	}
+
+	public static IntCanal ofInts(final int[] array, Integer begin, Integer until, Integer step)
+	{
+		final IndexSourcer index = new IndexSourcer(array.length, begin, until, step);
+		return new IntCanal(new IntSourcer()
+		{
+			@Override
+			public IntSource newPond()
+			{
+				final IndexSource idx = index.newPond();
+				return new IntSource()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return idx.hasNext();
+					}
+
+					@Override
+					public int nextInt()
+					{
+						try
+						{
+							return array[idx.index];
+						}
+						finally
+						{
+							idx.index += idx.step;
+						}
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * Make a LongCanal which reads the array without boxing.
+	 * 
+	 * @param array
+	 * @return
+	 */
+	public static LongCanal ofLongs(long[] array)
+	{
+		return ofLongs(array, 0);
+	}
+
+	public static LongCanal ofLongs(long[] array, Integer begin)
+	{
+		return ofLongs(array, begin, null);
+	}
+
+	public static LongCanal ofLongs(long[] array, Integer begin, Integer until)
+	{
+		return ofLongs(array, begin, until, null);
+	}
+
+	public static LongCanal ofLongs(final long[] array, Integer begin, Integer until, Integer step)
+	{
+		final IndexSourcer index = new IndexSourcer(array.length, begin, until, step);
+		return new LongCanal(new LongSourcer()
+		{
+			@Override
+			public LongSource newPond()
+			{
+				final IndexSource idx = index.newPond();
+				return new LongSource()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return idx.hasNext();
+					}
+
+					@Override
+					public long nextLong()
+					{
+						try
+						{
+							return array[idx.index];
+						}
+						finally
+						{
+							idx.index += idx.step;
+						}
+					}
+				};
+			}
+		});
+	}
+
+	public static <E> Option<E> option(E value)
+	{
+		return Option.Of(value);
+	}
+
+	/**
+	 * Compile a pipeline into a {@link Plan} which could be executed
+	 * repeatedly over different sources without building the ponds again.
+	 * 
+	 * @param pipeline
+	 *            {@code (Canal<S> source)->Canal<D>} which defines the
+	 *            operators following the source.
+	 * @return
+	 */
+	public static <S, D> Plan<S, D> plan(Mapper<Canal<S>, Canal<D>> pipeline)
+	{
+		if (pipeline == null)
+		{
+			throw new NullPointerException();
+		}
+
+		Canal<S> source = new Canal<S>().setOperator(new PlanSourcer<S>());
+		Canal<D> canal = null;
+		try
+		{
+			canal = pipeline.map(source);
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
+
+		Canal<?> head = canal;
+		while (head != null && head.getUpstream() != null)
+		{
+			head = head.getUpstream();
+		}
+		if (head != source)
+		{
+			throw new IllegalArgumentException("The pipeline must follow the given source Canal");
+		}
+
+		return new Plan<S, D>(canal);
+	}
+
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code 1}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @return
+	 */
+	public static Iterable<BigDecimal> range(BigDecimal begin, BigDecimal until)
+	{
+		return range(begin, until, BigDecimal.ONE);
+	}
+
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code step}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @param step
+	 * @return
+	 */
+	public static Iterable<BigDecimal> range(final BigDecimal begin, final BigDecimal until, final BigDecimal step)
+	{
+		if (step.compareTo(BigDecimal.ZERO) == 0)
+		{
+			throw new IllegalArgumentException("step cannot be 0");
+		}
+		else if (begin.compareTo(until) == 0)
+		{
+			return Collections.emptyList();
+		}
+		final boolean asc = begin.compareTo(until) < 0, inc = step.compareTo(BigDecimal.ZERO) > 0;
+		return new Iterable<BigDecimal>()
+		{
+			@Override
+			public Iterator<BigDecimal> iterator()
+			{
+				return new Iterator<BigDecimal>()
+				{
+					private BigDecimal value = begin;
+
+					@Override
+					public boolean hasNext()
+					{
+						if (asc)
+						{
+							return inc && value.compareTo(until) < 0;
+						}
+						else
+						{
+							return !inc && value.compareTo(until) > 0;
+						}
 					}
-				});
+
+					@Override
+					public BigDecimal next()
+					{
+						try
+						{
+							return value;
+						}
+						finally
+						{
+							value = value.add(step);
+						}
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
-	public static Canal<Integer> of(int[] array)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code 1}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @return
+	 */
+	public static Iterable<Double> range(double begin, double until)
 	{
-		return of(array, 0);
+		return range(begin, until, 1.0);
 	}
 
-	public static Canal<Integer> of(int[] array, Integer begin)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code step}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @param step
+	 * @return
+	 */
+	public static Iterable<Double> range(final double begin, final double until, final double step)
 	{
-		return of(array, begin, null);
+		if (step == 0)
+		{
+			throw new IllegalArgumentException("step cannot be 0");
+		}
+		else if (begin == until)
+		{
+			return Collections.emptyList();
+		}
+		final boolean asc = begin < until, inc = step > 0;
+		return new Iterable<Double>()
+		{
+			@Override
+			public Iterator<Double> iterator()
+			{
+				return new Iterator<Double>()
+				{
+					private double value = begin;
+
+					@Override
+					public boolean hasNext()
+					{
+						if (asc)
+						{
+							return inc && value < until;
+						}
+						else
+						{
+							return !inc && value > until;
+						}
+					}
+
+					@Override
+					public Double next()
+					{
+						try
+						{
+							return value;
+						}
+						finally
+						{
+							value += step;
+						}
+					}
+
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
-	public static Canal<Integer> of(int[] array, Integer begin, Integer until)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code 1}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @return
+	 */
+	public static Iterable<Integer> range(int begin, int until)
 	{
-		return of(array, begin, until, null);
+		return range(begin, until, 1);
 	}
 
-	public static Canal<Integer> of(final int[] array, Integer begin, Integer until, Integer step)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code step}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @param step
+	 * @return
+	 */
+	public static Iterable<Integer> range(final int begin, final int until, final int step)
 	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Integer>()
+		if (step == 0)
+		{
+			throw new IllegalArgumentException("step cannot be 0");
+		}
+		else if (begin == until)
+		{
+			return Collections.emptyList();
+		}
+		final boolean asc = begin < until, inc = step > 0;
+		return new Iterable<Integer>()
+		{
+			@Override
+			public Iterator<Integer> iterator()
+			{
+				return new Iterator<Integer>()
 				{
+					private int value = begin;
+
+					@Override
+					public boolean hasNext()
+					{
+						if (asc)
+						{
+							return inc && value < until;
+						}
+						else
+						{
+							return !inc && value > until;
+						}
+					}
+
+					@Override
+					public Integer next()
+					{
+						try
+						{
+							return value;
+						}
+						finally
+						{
+							value += step;
+						}
+					}
+
 					@Override
-					public Integer map(Integer i) throws Exception
+					public void remove()
 					{
-						return array[i];
+						throw new UnsupportedOperationException();
 					}
-				});
+				};
+			}
+		};
 	}
 
-	@SuppressWarnings("unchecked")
-	public static <E> Canal<E> of(Iterable<? extends E> iter)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code 1}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @return
+	 */
+	public static Iterable<Long> range(long begin, long until)
 	{
-		return iter instanceof Canal ? (Canal<E>) iter //
-				: new Canal<E>().setOperator(new IterableSourcer<E>((Iterable<E>) iter));
+		return range(begin, until, 1L);
 	}
 
-	public static PairCanal<String, Object> of(JSON json)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code until}(exclusive) increase by {@code step}.
+	 * 
+	 * @param begin
+	 * @param until
+	 * @param step
+	 * @return
+	 */
+	public static Iterable<Long> range(final long begin, final long until, final long step)
 	{
-		return new Canal<JSON.Pair>() //
-				.setOperator(new IterableSourcer<JSON.Pair>(json.pairs())) //
-				.map(new Mapper<JSON.Pair, Tuple2<String, Object>>()
+		if (step == 0)
+		{
+			throw new IllegalArgumentException("step cannot be 0");
+		}
+		else if (begin == until)
+		{
+			return Collections.emptyList();
+		}
+		final boolean asc = begin < until, inc = step > 0;
+		return new Iterable<Long>()
+		{
+			@Override
+			public Iterator<Long> iterator()
+			{
+				return new Iterator<Long>()
 				{
+					private long value = begin;
+
 					@Override
-					public Tuple2<String, Object> map(Pair el)
+					public boolean hasNext()
 					{
-						return Tuple.of(el.key, el.val());
+						if (asc)
+						{
+							return inc && value < until;
+						}
+						else
+						{
+							return !inc && value > until;
+						}
 					}
-				}).toPair();
-	}
 
-	public static Canal<Long> of(long[] array)
-	{
-		return of(array, 0);
-	}
+					@Override
+					public Long next()
+					{
+						try
+						{
+							return value;
+						}
+						finally
+						{
+							value += step;
+						}
+					}
 
-	public static Canal<Long> of(long[] array, Integer begin)
-	{
-		return of(array, begin, null);
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
-	public static Canal<Long> of(long[] array, Integer begin, Integer until)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code end}(inclusive) increase by {@code 1}.
+	 * 
+	 * @param begin
+	 * @param end
+	 * @return
+	 */
+	public static Iterable<BigDecimal> rangeTo(BigDecimal begin, BigDecimal end)
 	{
-		return of(array, begin, until, null);
+		return range(begin, end, BigDecimal.ONE);
 	}
 
-	public static Canal<Long> of(final long[] array, Integer begin, Integer until, Integer step)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code end}(inclusive) increase by {@code step}.
+	 * 
+	 * @param begin
+	 * @param end
+	 * @param step
+	 * @return
+	 */
+	public static Iterable<BigDecimal> rangeTo(final BigDecimal begin, final BigDecimal end, final BigDecimal step)
 	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Long>()
+		if (step.compareTo(BigDecimal.ZERO) == 0)
+		{
+			throw new IllegalArgumentException("step cannot be 0");
+		}
+		int cmp = begin.compareTo(end);
+		if (cmp == 0)
+		{
+			return Collections.singletonList(begin);
+		}
+		final boolean asc = cmp < 0, inc = step.compareTo(BigDecimal.ZERO) > 0;
+		return new Iterable<BigDecimal>()
+		{
+			@Override
+			public Iterator<BigDecimal> iterator()
+			{
+				return new Iterator<BigDecimal>()
 				{
+					private BigDecimal value = begin;
+
 					@Override
-					public Long map(Integer i) throws Exception
+					public boolean hasNext()
 					{
-						return array[i];
+						if (asc)
+						{
+							return inc && value.compareTo(end) <= 0;
+						}
+						else
+						{
+							return !inc && value.compareTo(end) >= 0;
+						}
 					}
-				});
-	}
 
-	public static <K, V> PairCanal<K, V> of(Map<? extends K, ? extends V> map)
-	{
-		return new Canal<Entry<K, V>>() //
-				.setOperator(new IterablePairSourcer<K, V>(map.entrySet())) //
-				.map(new Mapper<Entry<K, V>, Tuple2<K, V>>()
-				{
 					@Override
-					public Tuple2<K, V> map(Entry<K, V> el)
+					public BigDecimal next()
 					{
-						return Tuple.of(el.getKey(), el.getValue());
+						try
+						{
+							return value;
+						}
+						finally
+						{
+							value = value.add(step);
+						}
 					}
-				}).toPair();
-	}
 
-	public static Canal<Matcher> of(Pattern regex, CharSequence text)
-	{
-		return of(iterable(regex, text));
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
-	@SuppressWarnings("unchecked")
-	public static <E> Canal<E> of(Producer<? extends E> spring)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code end}(inclusive) increase by {@code 1}.
+	 * 
+	 * @param begin
+	 * @param end
+	 * @return
+	 */
+	public static Iterable<Double> rangeTo(double begin, double end)
 	{
-		return new Canal<E>().setOperator(new GeneratedSourcer<E>((Producer<E>) spring));
+		return rangeTo(begin, end, 1);
 	}
 
-	public static Canal<Short> of(short[] array)
+	/**
+	 * Make an Iterable object range between {@code begin}(inclusive) and
+	 * {@code end}(inclusive) increase by {@code step}.
+	 * 
+	 * @param begin
+	 * @param end
+	 * @param step
+	 * @return
+	 */
+	public static Iterable<Double> rangeTo(final double begin, final double end, final double step)
 	{
-		return of(array, 0);
-	}
+		if (step == 0)
+		{
+			throw new IllegalArgumentException("step cannot be 0");
+		}
+		else if (begin == end)
+		{
+			return Collections.singletonList(begin);
+		}
+		final boolean asc = begin < end, inc = step > 0;
+		return new Iterable<Double>()
+		{
+			@Override
+			public Iterator<Double> iterator()
+			{
+				return new Iterator<Double>()
+				{
+					private double value = begin;
 
-	public static Canal<Short> of(short[] array, Integer begin)
-	{
-		return of(array, begin, null);
-	}
+					@Override
+					public boolean hasNext()
+					{
+						if (asc)
+						{
+							return inc && value <= end;
+						}
+						else
+						{
+							return !inc && value >= end;
+						}
+					}
 
-	public static Canal<Short> of(short[] array, Integer begin, Integer until)
-	{
-		return of(array, begin, until, null);
-	}
+					@Override
+					public Double next()
+					{
+						try
+						{
+							return value;
+						}
+						finally
+						{
+							value += step;
+						}
+					}
 
-	public static Canal<Short> of(final short[] array, Integer begin, Integer until, Integer step)
-	{
-		return new Canal<Integer>().setOperator(new IndexSourcer(array.length, begin, until, step))
-				.map(new Mapper<Integer, Short>()
-				{
 					@Override
-					public Short map(Integer i) throws Exception
+					public void remove()
 					{
-						return array[i];
+						throw new UnsupportedOperationException();
 					}
-				});
-	}
-
-	public static <E> Option<E> option(E value)
-	{
-		return Option.Of(value);
+				};
+			}
+		};
 	}
 
 	/**
 	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code 1}.
+	 * {@code end}(inclusive) increase by {@code 1}.
 	 * 
 	 * @param begin
-	 * @param until
+	 * @param end
 	 * @return
 	 */
-	public static Iterable<BigDecimal> range(BigDecimal begin, BigDecimal until)
+	public static Iterable<Integer> rangeTo(int begin, int end)
 	{
-		return range(begin, until, BigDecimal.ONE);
+		return rangeTo(begin, end, 1);
 	}
 
 	/**
 	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code step}.
+	 * {@code end}(inclusive) increase by {@code step}.
 	 * 
 	 * @param begin
-	 * @param until
+	 * @param end
 	 * @param step
 	 * @return
 	 */
-	public static Iterable<BigDecimal> range(final BigDecimal begin, final BigDecimal until, final BigDecimal step)
+	public static Iterable<Integer> rangeTo(final int begin, final int end, final int step)
 	{
-		if (step.compareTo(BigDecimal.ZERO) == 0)
+		if (step == 0)
 		{
 			throw new IllegalArgumentException("step cannot be 0");
 		}
-		else if (begin.compareTo(until) == 0)
+		else if (begin == end)
 		{
-			return Collections.emptyList();
+			return Collections.singletonList(begin);
 		}
-		final boolean asc = begin.compareTo(until) < 0, inc = step.compareTo(BigDecimal.ZERO) > 0;
-		return new Iterable<BigDecimal>()
+		final boolean asc = begin < end, inc = step > 0;
+		return new Iterable<Integer>()
 		{
 			@Override
-			public Iterator<BigDecimal> iterator()
+			public Iterator<Integer> iterator()
 			{
-				return new Iterator<BigDecimal>()
+				return new Iterator<Integer>()
 				{
-					private BigDecimal value = begin;
+					private int value = begin;
 
 					@Override
 					public boolean hasNext()
 					{
 						if (asc)
 						{
-							return inc && value.compareTo(until) < 0;
+							return inc && value <= end;
 						}
 						else
 						{
-							return !inc && value.compareTo(until) > 0;
+							return !inc && value >= end;
 						}
 					}
 
 					@Override
-					public BigDecimal next()
+					public Integer next()
 					{
 						try
 						{
@@ -7385,7 +15403,7 @@ public class Canal<D> implements Iterable<D>
 						}
 						finally
 						{
-							value = value.add(step);
+							value += step;
 						}
 					}
 
@@ -7401,61 +15419,61 @@ public class Canal<D> implements Iterable<D>
 
 	/**
 	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code 1}.
+	 * {@code end}(inclusive) increase by {@code 1}.
 	 * 
 	 * @param begin
-	 * @param until
+	 * @param end
 	 * @return
 	 */
-	public static Iterable<Double> range(double begin, double until)
+	public static Iterable<Long> rangeTo(long begin, long end)
 	{
-		return range(begin, until, 1.0);
+		return rangeTo(begin, end, 1);
 	}
 
 	/**
 	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code step}.
+	 * {@code end}(inclusive) increase by {@code step}.
 	 * 
 	 * @param begin
-	 * @param until
+	 * @param end
 	 * @param step
 	 * @return
 	 */
-	public static Iterable<Double> range(final double begin, final double until, final double step)
+	public static Iterable<Long> rangeTo(final long begin, final long end, final long step)
 	{
 		if (step == 0)
 		{
 			throw new IllegalArgumentException("step cannot be 0");
 		}
-		else if (begin == until)
+		else if (begin == end)
 		{
-			return Collections.emptyList();
+			return Collections.singletonList(begin);
 		}
-		final boolean asc = begin < until, inc = step > 0;
-		return new Iterable<Double>()
+		final boolean asc = begin < end, inc = step > 0;
+		return new Iterable<Long>()
 		{
 			@Override
-			public Iterator<Double> iterator()
+			public Iterator<Long> iterator()
 			{
-				return new Iterator<Double>()
+				return new Iterator<Long>()
 				{
-					private double value = begin;
+					private long value = begin;
 
 					@Override
 					public boolean hasNext()
 					{
 						if (asc)
 						{
-							return inc && value < until;
+							return inc && value <= end;
 						}
 						else
 						{
-							return !inc && value > until;
+							return !inc && value >= end;
 						}
 					}
 
 					@Override
-					public Double next()
+					public Long next()
 					{
 						try
 						{
@@ -7478,948 +15496,1114 @@ public class Canal<D> implements Iterable<D>
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code 1}.
+	 * To generate a Comparable object which has reverse ordering.
+	 * 
+	 * @param data
+	 * @return
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static Comparable<?> reverse(Comparable<?> data)
+	{
+		return new ReverseComparable(data);
+	}
+
+	private static boolean sameSpec(Expr<?, ?>[] a, Expr<?, ?>[] b)
+	{
+		if (a == b)
+		{
+			return true;
+		}
+		if (a == null || b == null || a.length != b.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < a.length; i++)
+		{
+			if (a[i] != b[i] && (a[i] == null || !a[i].sameSpec(b[i])))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static <E> Some<E> some(E value)
+	{
+		return Option.some(value);
+	}
+
+	/**
+	 * Copy the data into an array and sort it by the Comparator unless it has
+	 * already been sorted.
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <E> E[] sortArray(Collection<E> data, Comparator<? super E> cmp, boolean sorted)
+	{
+		E[] array = (E[]) data.toArray();
+		if (!sorted)
+		{
+			Arrays.sort(array, cmp);
+		}
+		return array;
+	}
+
+	public static <E> List<Iterable<E>> stratify(Iterable<E> data, Comparator<? super E> cmp)
+	{
+		return stratify(data, cmp, false);
+	}
+
+	/**
+	 * Stratify the data into levels according to the given Comparator. The
+	 * data is sorted only once into an array, each level is a range view over
+	 * the array.
+	 * 
+	 * @param data
+	 * @param cmp
+	 *            The Comparator, null means natural order.
+	 * @param sorted
+	 *            whether the data has already been sorted by the Comparator,
+	 *            so that the sorting could be skipped.
+	 * @return
+	 */
+	public static <E> List<Iterable<E>> stratify(Iterable<E> data, Comparator<? super E> cmp, boolean sorted)
+	{
+		if (cmp == null)
+		{
+			cmp = new DefaultComparator<E>();
+		}
+
+		List<E> dat = Arrays.asList(sortArray(data instanceof Collection ? (Collection<E>) data
+				: Canal.of(data).collect(new ArrayList<E>()), cmp, sorted));
+
+		List<Iterable<E>> res = new ArrayList<Iterable<E>>();
+		for (int from = 0, to = 0; from < dat.size(); from = to)
+		{
+			to = levelEnd(dat, from, cmp);
+			res.add(dat.subList(from, to));
+		}
+		return res;
+	}
+
+	public static <E> Try<E> Try(Producer<E> something)
+	{
+		try
+		{
+			return new Success<E>(something.produce());
+		}
+		catch (Throwable err)
+		{
+			return new Failure<E>(err);
+		}
+	}
+
+	private Canal<?>		upstream;
+
+	private Operator<?, D>	operator;
+
+	protected Pond<?, D> build()
+	{
+		return begin(build(null));
+	}
+
+	protected <U> Pond<U, D> build(Pond<D, ?> down)
+	{
+		return this.build(down, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <U> Pond<U, D> build(Pond<D, ?> down, Profile profile)
+	{
+		if (this.getOperator() instanceof ProfileOp && this.getUpstream() != null)
+		{
+			profile = ((ProfileOp<?>) this.getOperator()).profile;
+			profile.root(this.getUpstream());
+			return this.<D> getUpstream().<U> build(down, profile);
+		}
+
+		Pond<U, D> pond = (Pond<U, D>) this.newPond();
+
+		Pond<U, D> outer = pond;
+		if (profile != null)
+		{
+			outer = new ProfiledPond<U, D>(pond, profile.metrics(this, labelOf(this)),
+					profile.sampling());
+		}
+
+		if (down != null)
+		{
+			down.upstream(outer);
+		}
+
+		if (this.getUpstream() != null // The upstream of source is null
+				&& !(pond instanceof Source) // Such as CachePond builds its upstream itself
+		)
+		{
+			this.<U> getUpstream().build(pond, profile);
+		}
+
+		return outer;
+	}
+
+	/**
+	 * Gather the elements into batches of the given size, so that the
+	 * downstream could handle a batch at a time. The last batch might be
+	 * smaller.
+	 * 
+	 * @param size
+	 *            the batch size.
+	 * @return
+	 */
+	public Canal<List<D>> batched(int size)
+	{
+		return this.follow(new BatchOp<D>(size));
+	}
+
+	/**
+	 * Get the k smallest elements in natural ascending order.
+	 * 
+	 * @param k
+	 * @return
+	 * @see #bottom(int, Comparator)
+	 */
+	public Canal<D> bottom(int k)
+	{
+		return this.bottom(k, null);
+	}
+
+	/**
+	 * Get the k smallest elements in ascending order of the given Comparator.
+	 * Only k elements are kept in a bounded heap while streaming. The result
+	 * is the same as {@code sortWith(cmp).limit(k)}.
+	 * 
+	 * @param k
+	 * @param cmp
+	 *            The Comparator, null means natural order.
+	 * @return
+	 */
+	public Canal<D> bottom(int k, Comparator<? super D> cmp)
+	{
+		if (cmp == null)
+		{
+			cmp = new DefaultComparator<D>();
+		}
+		return this.follow(new TopOp<D>(cmp, k));
+	}
+
+	/**
+	 * Cache the elements passed by this operator. The cached Canal could be
+	 * iterated by several threads concurrently, while the upstream is
+	 * evaluated only once.
+	 * 
+	 * @return
+	 */
+	public Canal<D> cache()
+	{
+		return this.cache(-1);
+	}
+
+	/**
+	 * Cache at most the given number of elements passed by this operator. If
+	 * the upstream has more elements, the cached ones are still shared and
+	 * the rest are recomputed by each iteration from the upstream.
+	 * 
+	 * @param limit
+	 *            the max number of cached elements, negative means no limit.
+	 * @return
+	 */
+	public Canal<D> cache(int limit)
+	{
+		return this.follow(new CacheOp<D>(this, limit));
+	}
+
+	/**
+	 * Make Cartesian product result against another given {@code Canal<?,N>}.
+	 * The other Canal is evaluated only once.
+	 * 
+	 * @param that
+	 * @return
+	 */
+	public <N> PairCanal<D, N> cartesian(Canal<N> that)
+	{
+		return this.cartesian(that, null, 1);
+	}
+
+	/**
+	 * Make Cartesian product result against another given {@code Canal<?,N>}
+	 * by a block nested-loop.
+	 * 
+	 * @param that
+	 * @param spiller
+	 *            spill the elements of that Canal beyond the memory budget,
+	 *            null means holding them all in memory. The order of the
+	 *            spilled pairs within each block is not kept.
+	 * @param parallelism
+	 *            the number of threads to match the blocks, no more than 1
+	 *            means matching in the current thread.
+	 * @return
+	 */
+	public <N> PairCanal<D, N> cartesian(Canal<N> that, Spiller spiller, int parallelism)
+	{
+		return this.thetaJoin(that, null, spiller, parallelism);
+	}
+
+	/**
+	 * Collect elements into a Collection.<br />
+	 * Like the other terminal operations, the upstream is closed once the
+	 * elements are collected, so that the resources such as the spill files
+	 * are released even if some elements were not read.
+	 * 
+	 * @return
+	 */
+	public Collection<D> collect()
+	{
+		return this.collect(null);
+	}
+
+	/**
+	 * Collect elements into a given Collection and close the upstream.
 	 * 
-	 * @param begin
-	 * @param until
+	 * @param result
+	 *            The result Collection.
 	 * @return
 	 */
-	public static Iterable<Integer> range(int begin, int until)
+	public Collection<D> collect(Collection<D> result)
 	{
-		return range(begin, until, 1);
+		return this.follow(new CollectOp<D>(result)).evaluate();
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code step}.
+	 * Collect elements into a JSAN.
 	 * 
-	 * @param begin
-	 * @param until
-	 * @param step
 	 * @return
 	 */
-	public static Iterable<Integer> range(final int begin, final int until, final int step)
+	public JSAN collectAsJSAN()
 	{
-		if (step == 0)
-		{
-			throw new IllegalArgumentException("step cannot be 0");
-		}
-		else if (begin == until)
-		{
-			return Collections.emptyList();
-		}
-		final boolean asc = begin < until, inc = step > 0;
-		return new Iterable<Integer>()
-		{
-			@Override
-			public Iterator<Integer> iterator()
-			{
-				return new Iterator<Integer>()
-				{
-					private int value = begin;
-
-					@Override
-					public boolean hasNext()
-					{
-						if (asc)
-						{
-							return inc && value < until;
-						}
-						else
-						{
-							return !inc && value > until;
-						}
-					}
-
-					@Override
-					public Integer next()
-					{
-						try
-						{
-							return value;
-						}
-						finally
-						{
-							value += step;
-						}
-					}
-
-					@Override
-					public void remove()
-					{
-						throw new UnsupportedOperationException();
-					}
-				};
-			}
-		};
+		return this.collectAsJSAN(new JSAN());
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code 1}.
+	 * Collect elements into a given JSAN.
 	 * 
-	 * @param begin
-	 * @param until
+	 * @param jsan
+	 *            The result JSAN.
 	 * @return
 	 */
-	public static Iterable<Long> range(long begin, long until)
+	public JSAN collectAsJSAN(JSAN jsan)
 	{
-		return range(begin, until, 1L);
+		return (jsan != null ? jsan : new JSAN()).addAll(this);
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code until}(exclusive) increase by {@code step}.
+	 * Collect elements into a List.
 	 * 
-	 * @param begin
-	 * @param until
-	 * @param step
 	 * @return
 	 */
-	public static Iterable<Long> range(final long begin, final long until, final long step)
+	public List<D> collectAsList()
 	{
-		if (step == 0)
-		{
-			throw new IllegalArgumentException("step cannot be 0");
-		}
-		else if (begin == until)
-		{
-			return Collections.emptyList();
-		}
-		final boolean asc = begin < until, inc = step > 0;
-		return new Iterable<Long>()
-		{
-			@Override
-			public Iterator<Long> iterator()
-			{
-				return new Iterator<Long>()
-				{
-					private long value = begin;
-
-					@Override
-					public boolean hasNext()
-					{
-						if (asc)
-						{
-							return inc && value < until;
-						}
-						else
-						{
-							return !inc && value > until;
-						}
-					}
-
-					@Override
-					public Long next()
-					{
-						try
-						{
-							return value;
-						}
-						finally
-						{
-							value += step;
-						}
-					}
+		return this.collectAsList(null);
+	}
 
-					@Override
-					public void remove()
-					{
-						throw new UnsupportedOperationException();
-					}
-				};
-			}
-		};
+	/**
+	 * Collect elements into a given List.
+	 * 
+	 * @param list
+	 *            The result List.
+	 * @return
+	 */
+	public List<D> collectAsList(List<D> list)
+	{
+		return (List<D>) this.collect(list != null ? list : new ArrayList<D>());
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code 1}.
+	 * Collect elements into a given map.<br />
+	 * It assumes that the upstream is a pair Canal.
 	 * 
-	 * @param begin
-	 * @param end
+	 * @param result
+	 *            The result map.
 	 * @return
 	 */
-	public static Iterable<BigDecimal> rangeTo(BigDecimal begin, BigDecimal end)
+	public <K, V> Map<K, V> collectAsMap(Map<K, V> result)
 	{
-		return range(begin, end, BigDecimal.ONE);
+		return this.collectAsMap(result, null, null);
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code step}.
+	 * Collect elements into a given map with a given KOP and VOP.
 	 * 
-	 * @param begin
-	 * @param end
-	 * @param step
+	 * @param result
+	 *            The result map.
+	 * @param kop
+	 *            {@code (D data)->K key} the "key of pair" recognizer.
+	 * @param vop
+	 *            {@code (D data)->V value} the "value of pair" recognizer.
 	 * @return
 	 */
-	public static Iterable<BigDecimal> rangeTo(final BigDecimal begin, final BigDecimal end, final BigDecimal step)
+	public <K, V> Map<K, V> collectAsMap(Map<K, V> result, Mapper<D, K> kop, Mapper<D, V> vop)
 	{
-		if (step.compareTo(BigDecimal.ZERO) == 0)
-		{
-			throw new IllegalArgumentException("step cannot be 0");
-		}
-		int cmp = begin.compareTo(end);
-		if (cmp == 0)
-		{
-			return Collections.singletonList(begin);
-		}
-		final boolean asc = cmp < 0, inc = step.compareTo(BigDecimal.ZERO) > 0;
-		return new Iterable<BigDecimal>()
-		{
-			@Override
-			public Iterator<BigDecimal> iterator()
-			{
-				return new Iterator<BigDecimal>()
-				{
-					private BigDecimal value = begin;
+		return this.follow(new CollectAsMapOp<D, K, V>(result, kop, vop)).evaluate();
+	}
 
-					@Override
-					public boolean hasNext()
-					{
-						if (asc)
-						{
-							return inc && value.compareTo(end) <= 0;
-						}
-						else
-						{
-							return !inc && value.compareTo(end) >= 0;
-						}
-					}
+	/**
+	 * Collect elements into a Set.
+	 * 
+	 * @return
+	 */
+	public Set<D> collectAsSet()
+	{
+		return this.collectAsSet(null);
+	}
 
-					@Override
-					public BigDecimal next()
-					{
-						try
-						{
-							return value;
-						}
-						finally
-						{
-							value = value.add(step);
-						}
-					}
+	/**
+	 * Collect elements into a given Set.
+	 * 
+	 * @param set
+	 *            The result Set.
+	 * @return
+	 */
+	public Set<D> collectAsSet(Set<D> set)
+	{
+		return (Set<D>) this.collect(set != null ? set : new LinkedHashSet<D>());
+	}
 
-					@Override
-					public void remove()
-					{
-						throw new UnsupportedOperationException();
-					}
-				};
-			}
-		};
+	/**
+	 * Count the number of elements.
+	 * 
+	 * @return
+	 */
+	public int count()
+	{
+		return this.follow(new CountOp<D>()).evaluate();
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code 1}.
+	 * Count the number each key into a given result map.<br />
+	 * It assumes that the upstream is a pair Canal.
 	 * 
-	 * @param begin
-	 * @param end
+	 * @param result
 	 * @return
 	 */
-	public static Iterable<Double> rangeTo(double begin, double end)
+	public <K> Map<K, Integer> countByKey(Map<K, Integer> result)
 	{
-		return rangeTo(begin, end, 1);
+		return countByKey(result, null);
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code step}.
 	 * 
-	 * @param begin
-	 * @param end
-	 * @param step
+	 * Count the number each key into a given result map with a given KOP.<br />
+	 * 
+	 * @param result
+	 * @param kop
 	 * @return
 	 */
-	public static Iterable<Double> rangeTo(final double begin, final double end, final double step)
+	public <K> Map<K, Integer> countByKey(Map<K, Integer> result, Mapper<D, K> kop)
 	{
-		if (step == 0)
-		{
-			throw new IllegalArgumentException("step cannot be 0");
-		}
-		else if (begin == end)
-		{
-			return Collections.singletonList(begin);
-		}
-		final boolean asc = begin < end, inc = step > 0;
-		return new Iterable<Double>()
-		{
-			@Override
-			public Iterator<Double> iterator()
-			{
-				return new Iterator<Double>()
-				{
-					private double value = begin;
-
-					@Override
-					public boolean hasNext()
-					{
-						if (asc)
-						{
-							return inc && value <= end;
-						}
-						else
-						{
-							return !inc && value >= end;
-						}
-					}
-
-					@Override
-					public Double next()
-					{
-						try
-						{
-							return value;
-						}
-						finally
-						{
-							value += step;
-						}
-					}
-
-					@Override
-					public void remove()
-					{
-						throw new UnsupportedOperationException();
-					}
-				};
-			}
-		};
+		return this.follow(new CountByKeyOp<D, K>(result, kop)).evaluate();
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code 1}.
+	 * Count the number of each element.
 	 * 
-	 * @param begin
-	 * @param end
 	 * @return
 	 */
-	public static Iterable<Integer> rangeTo(int begin, int end)
+	public Map<D, Integer> countByValue()
 	{
-		return rangeTo(begin, end, 1);
+		return countByValue(null);
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code step}.
+	 * Count the number of each element into a given result map.
 	 * 
-	 * @param begin
-	 * @param end
-	 * @param step
+	 * @param result
 	 * @return
 	 */
-	public static Iterable<Integer> rangeTo(final int begin, final int end, final int step)
+	public Map<D, Integer> countByValue(Map<D, Integer> result)
 	{
-		if (step == 0)
-		{
-			throw new IllegalArgumentException("step cannot be 0");
-		}
-		else if (begin == end)
-		{
-			return Collections.singletonList(begin);
-		}
-		final boolean asc = begin < end, inc = step > 0;
-		return new Iterable<Integer>()
-		{
-			@Override
-			public Iterator<Integer> iterator()
-			{
-				return new Iterator<Integer>()
-				{
-					private int value = begin;
-
-					@Override
-					public boolean hasNext()
-					{
-						if (asc)
-						{
-							return inc && value <= end;
-						}
-						else
-						{
-							return !inc && value >= end;
-						}
-					}
-
-					@Override
-					public Integer next()
-					{
-						try
-						{
-							return value;
-						}
-						finally
-						{
-							value += step;
-						}
-					}
+		return this.follow(new CountByValueOp<D>(result)).evaluate();
+	}
 
-					@Override
-					public void remove()
-					{
-						throw new UnsupportedOperationException();
-					}
-				};
-			}
-		};
+	/**
+	 * Count the number of elements.
+	 * 
+	 * @return
+	 */
+	public long countLong()
+	{
+		return this.follow(new CountLongOp<D>()).evaluate();
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code 1}.
+	 * Remove duplicate elements.
 	 * 
-	 * @param begin
-	 * @param end
 	 * @return
 	 */
-	public static Iterable<Long> rangeTo(long begin, long end)
+	public Canal<D> distinct()
 	{
-		return rangeTo(begin, end, 1);
+		return this.distinct((HashedEquality<D>) null);
 	}
 
 	/**
-	 * Make an Iterable object range between {@code begin}(inclusive) and
-	 * {@code end}(inclusive) increase by {@code step}.
+	 * Remove duplicate elements with a given {@link HashedEquality}.
 	 * 
-	 * @param begin
-	 * @param end
-	 * @param step
+	 * @param eql
 	 * @return
 	 */
-	public static Iterable<Long> rangeTo(final long begin, final long end, final long step)
+	public Canal<D> distinct(HashedEquality<? super D> eql)
 	{
-		if (step == 0)
-		{
-			throw new IllegalArgumentException("step cannot be 0");
-		}
-		else if (begin == end)
-		{
-			return Collections.singletonList(begin);
-		}
-		final boolean asc = begin < end, inc = step > 0;
-		return new Iterable<Long>()
-		{
-			@Override
-			public Iterator<Long> iterator()
-			{
-				return new Iterator<Long>()
-				{
-					private long value = begin;
+		return this.follow(new DistinctOp<D>(eql));
+	}
 
-					@Override
-					public boolean hasNext()
-					{
-						if (asc)
-						{
-							return inc && value <= end;
-						}
-						else
-						{
-							return !inc && value >= end;
-						}
-					}
+	/**
+	 * Remove duplicate elements with a HashedEquality against the value defined
+	 * by the extractor.
+	 * 
+	 * @param xtr
+	 *            value extractor.
+	 * @return
+	 */
+	public Canal<D> distinct(Mapper<? super D, ?> xtr)
+	{
+		return this.distinct(PartialHashedEquality.of(xtr));
+	}
 
-					@Override
-					public Long next()
-					{
-						try
-						{
-							return value;
-						}
-						finally
-						{
-							value += step;
-						}
-					}
+	/**
+	 * Remove duplicate elements approximately with a Bloom filter in bounded
+	 * memory. A few distinct elements might be dropped as false positives
+	 * but no duplicate would be passed.
+	 * 
+	 * @param expected
+	 *            the expected number of distinct elements.
+	 * @param fpp
+	 *            the false positive probability in (0,1).
+	 * @return
+	 */
+	public Canal<D> distinctApprox(long expected, double fpp)
+	{
+		return this.distinctApprox(expected, fpp, (HashedEquality<D>) null);
+	}
 
-					@Override
-					public void remove()
-					{
-						throw new UnsupportedOperationException();
-					}
-				};
-			}
-		};
+	/**
+	 * Remove duplicate elements approximately with a given
+	 * {@link HashedEquality}. Only the hash code would be used.
+	 * 
+	 * @param expected
+	 *            the expected number of distinct elements.
+	 * @param fpp
+	 *            the false positive probability in (0,1).
+	 * @param eql
+	 * @return
+	 */
+	public Canal<D> distinctApprox(long expected, double fpp, HashedEquality<? super D> eql)
+	{
+		return this.follow(new DistinctApproxOp<D>(eql, expected, fpp));
 	}
 
 	/**
-	 * To generate a Comparable object which has reverse ordering.
+	 * Remove duplicate elements approximately against the value defined by
+	 * the extractor.
 	 * 
-	 * @param data
+	 * @param expected
+	 *            the expected number of distinct elements.
+	 * @param fpp
+	 *            the false positive probability in (0,1).
+	 * @param xtr
+	 *            value extractor.
 	 * @return
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	public static Comparable<?> reverse(Comparable<?> data)
+	public Canal<D> distinctApprox(long expected, double fpp, Mapper<? super D, ?> xtr)
 	{
-		return new ReverseComparable(data);
+		return this.distinctApprox(expected, fpp, PartialHashedEquality.of(xtr));
 	}
 
-	public static <E> Some<E> some(E value)
+	/**
+	 * Remove duplicate elements within the window of the given number of most
+	 * recently seen elements.
+	 * 
+	 * @param window
+	 *            the window size.
+	 * @return
+	 */
+	public Canal<D> distinctWindow(int window)
 	{
-		return Option.some(value);
+		return this.distinctWindow(window, (HashedEquality<D>) null);
 	}
 
-	public static <E> List<Iterable<E>> stratify(Iterable<E> data, Comparator<? super E> cmp)
+	/**
+	 * Remove duplicate elements within the window of the given number of most
+	 * recently seen elements with a given {@link HashedEquality}.
+	 * 
+	 * @param window
+	 *            the window size.
+	 * @param eql
+	 * @return
+	 */
+	public Canal<D> distinctWindow(int window, HashedEquality<? super D> eql)
 	{
-		List<Iterable<E>> res = new ArrayList<Iterable<E>>();
-
-		E last = null;
-		int c = 0;
-		List<E> lvl = null;
-
-		for (E el : Canal.of(data).sortWith(cmp))
-		{
-			if (lvl != null)
-			{
-				c = cmp.compare(last, el);
-			}
-
-			if (c != 0 || lvl == null)
-			{
-				lvl = new ArrayList<E>();
-				res.add(lvl);
-			}
-
-			lvl.add(el);
-
-			last = el;
-		}
-
-		return res;
+		return this.follow(new DistinctWindowOp<D>(eql, window));
 	}
 
-	public static <E> Try<E> Try(Producer<E> something)
+	/**
+	 * Remove duplicate elements within the window of the given number of most
+	 * recently seen elements against the value defined by the extractor.
+	 * 
+	 * @param window
+	 *            the window size.
+	 * @param xtr
+	 *            value extractor.
+	 * @return
+	 */
+	public Canal<D> distinctWindow(int window, Mapper<? super D, ?> xtr)
 	{
-		try
-		{
-			return new Success<E>(something.produce());
-		}
-		catch (Throwable err)
-		{
-			return new Failure<E>(err);
-		}
+		return this.distinctWindow(window, PartialHashedEquality.of(xtr));
 	}
 
-	private Canal<?>		upstream;
-
-	private Operator<?, D>	operator;
-
-	protected Pond<?, D> build()
+	@SuppressWarnings("unchecked")
+	protected <T> T evaluate()
 	{
-		return begin(build(null));
+		return ((Terminal<?, T>) this.build()).get();
 	}
 
-	@SuppressWarnings("unchecked")
-	protected <U> Pond<U, D> build(Pond<D, ?> down)
+	/**
+	 * Filter the elements.
+	 * 
+	 * @param pred
+	 *            {@code (D data)->boolean} returns true if and only if the
+	 *            element need to be passed to the downstream.
+	 * @return
+	 */
+	public Canal<D> filter(Filter<? super D> pred)
 	{
-		Pond<U, D> pond = (Pond<U, D>) this.newPond();
-
-		if (down != null)
-		{
-			down.upstream(pond);
-		}
-
-		if (this.getUpstream() != null // The upstream of source is null
-				&& (down == null //
-						|| down.upstream() == pond // CachePond keep upstream
-				))
-		{
-			this.<U> getUpstream().build(pond);
-		}
-
-		return pond;
+		return this.follow(new FilterOp<D>(pred));
 	}
 
 	/**
-	 * Cache the elements passed by this operator.
+	 * Get the first element.
 	 * 
 	 * @return
 	 */
-	public Canal<D> cache()
+	public Option<D> first()
 	{
-		return this.follow(new CacheOp<D>());
+		return first(new Filter<D>()
+		{
+			@Override
+			public boolean filter(D element)
+			{
+				return true;
+			}
+		});
 	}
 
 	/**
-	 * Make Cartesian product result against another given {@code Canal<?,N>}.
+	 * Get the first element that satisfied the given predicate.
 	 * 
-	 * @param that
+	 * @param filter
+	 *            {@code (D data)->boolean}
 	 * @return
 	 */
-	public <N> PairCanal<D, N> cartesian(Canal<N> that)
+	public Option<D> first(Filter<? super D> filter)
 	{
-		return this.follow(new CartesianOp<D, N>(that)).toPair();
+		return this.follow(new FirstOp<D>(filter)).evaluate();
 	}
 
 	/**
-	 * Collect elements into a Collection.
+	 * Map each element into a flat result.
 	 * 
+	 * @param mapper
+	 *            {@code (D data)->Iterable<V>}
 	 * @return
 	 */
-	public Collection<D> collect()
+	public <V> Canal<V> flatMap(Mapper<? super D, ? extends Iterable<? extends V>> mapper)
 	{
-		return this.collect(null);
+		return this.follow(new FlatMapOp<D, V>(mapper));
 	}
 
 	/**
-	 * Collect elements into a given Collection.
+	 * Fold each element with a given initial value until the condition
+	 * satisfied.
 	 * 
-	 * @param result
-	 *            The result Collection.
-	 * @return
+	 * @param init
+	 *            {@code ()->R res} a result initializer called on the first
+	 *            fold.
+	 * @param folder
+	 *            {@code (R res,D data)->R res} a fold reducer.
+	 * @param until
+	 *            the stop condition.
+	 * @return Some(res) if and only if at least one element be folded and the
+	 *         condition satisfied, otherwise None will be returned.
 	 */
-	public Collection<D> collect(Collection<D> result)
+	public <R> Option<R> fold(Producer<R> init, Reducer<D, R> folder, Filter<R> until)
 	{
-		return this.follow(new CollectOp<D>(result)).evaluate();
+		return this.follow(new FoldUntilOp<D, R>(init, folder, until)).evaluate();
 	}
 
 	/**
-	 * Collect elements into a JSAN.
+	 * Fold each element with a given initial value.
 	 * 
+	 * @param init
+	 * @param folder
+	 *            {@code (R res,D data)->R res} a fold reducer.
 	 * @return
 	 */
-	public JSAN collectAsJSAN()
+	public <R> R fold(R init, Reducer<D, R> folder)
 	{
-		return this.collectAsJSAN(new JSAN());
+		return this.follow(new FoldOp<D, R>(init, folder)).evaluate();
 	}
 
 	/**
-	 * Collect elements into a given JSAN.
+	 * Fold each element into the accumulator of its key and collect the
+	 * accumulators into the given map. Only one accumulator per key is kept
+	 * in memory.
 	 * 
-	 * @param jsan
-	 *            The result JSAN.
+	 * @param result
+	 *            The result map, null means a new LinkedHashMap.
+	 * @param kop
+	 *            {@code (D data)->K key} the "key of pair" recognizer.
+	 * @param init
+	 *            {@code ()->W} the producer of initial value for each key.
+	 * @param folder
+	 *            {@code (W res,D data)->W res} a fold reducer.
 	 * @return
 	 */
-	public JSAN collectAsJSAN(JSAN jsan)
+	public <K, W> Map<K, W> foldByKey(Map<K, W> result, Mapper<D, K> kop, Producer<W> init, Reducer<D, W> folder)
 	{
-		return (jsan != null ? jsan : new JSAN()).addAll(this);
+		if (init == null)
+		{
+			throw new NullPointerException();
+		}
+		return this.follow(new FoldByKeyOp<D, K, D, W>(kop, null, init, folder))
+				.collectAsMap(result != null ? result : new LinkedHashMap<K, W>());
+	}
+
+	protected <N> Canal<N> follow(Operator<D, N> op)
+	{
+		return new Canal<N>().setUpstream(this).setOperator(op);
 	}
 
 	/**
-	 * Collect elements into a List.
+	 * Determine whether all the data meet the condition. {@code true} will be
+	 * returned if this Canal was empty.
 	 * 
+	 * @param cond
 	 * @return
 	 */
-	public List<D> collectAsList()
+	public boolean forall(Filter<? super D> cond)
 	{
-		return this.collectAsList(null);
+		return this.forall(cond, true);
 	}
 
 	/**
-	 * Collect elements into a given List.
+	 * Determine whether all the data meet the condition. If {@code allowEmpty}
+	 * parameter was {@code false} and this Canal was empty, then {@code false}
+	 * will be returned.
 	 * 
-	 * @param list
-	 *            The result List.
+	 * @param cond
+	 * @param allowEmpty
 	 * @return
 	 */
-	public List<D> collectAsList(List<D> list)
+	public boolean forall(Filter<? super D> cond, boolean allowEmpty)
 	{
-		return (List<D>) this.collect(list != null ? list : new ArrayList<D>());
+		return this.follow(new ForallOp<D>(cond, allowEmpty)).evaluate();
 	}
 
 	/**
-	 * Collect elements into a given map.<br />
-	 * It assumes that the upstream is a pair Canal.
+	 * Determine whether any data in this Canal meet the condition.
 	 * 
-	 * @param result
-	 *            The result map.
+	 * @param cond
 	 * @return
 	 */
-	public <K, V> Map<K, V> collectAsMap(Map<K, V> result)
+	public boolean forany(Filter<? super D> cond)
 	{
-		return this.collectAsMap(result, null, null);
+		return this.first(cond).given();
 	}
 
 	/**
-	 * Collect elements into a given map with a given KOP and VOP.
+	 * Take action on each element.
 	 * 
-	 * @param result
-	 *            The result map.
-	 * @param kop
-	 *            {@code (D data)->K key} the "key of pair" recognizer.
-	 * @param vop
-	 *            {@code (D data)->V value} the "value of pair" recognizer.
-	 * @return
+	 * @param action
+	 *            {@code (D data)->void} the action to be applied to each
+	 *            element.
 	 */
-	public <K, V> Map<K, V> collectAsMap(Map<K, V> result, Mapper<D, K> kop, Mapper<D, V> vop)
+	public void foreach(Action<? super D> action)
 	{
-		return this.follow(new CollectAsMapOp<D, K, V>(result, kop, vop)).evaluate();
+		this.follow(new ForeachOp<D>(action)).evaluate();
 	}
 
 	/**
-	 * Collect elements into a Set.
+	 * Take action on each batch of elements.
 	 * 
-	 * @return
+	 * @param size
+	 *            the batch size.
+	 * @param action
+	 *            {@code (List<D> batch)->void} the action to be applied to
+	 *            each batch.
+	 * @see #batched(int)
 	 */
-	public Set<D> collectAsSet()
+	public void foreachBatch(int size, Action<? super List<D>> action)
 	{
-		return this.collectAsSet(null);
+		this.batched(size).foreach(action);
 	}
 
 	/**
-	 * Collect elements into a given Set.
+	 * Full join with another Canal.
 	 * 
-	 * @param set
-	 *            The result Set.
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
 	 * @return
 	 */
-	public Set<D> collectAsSet(Set<D> set)
+	protected <R, K, M, N> Canal<Tuple2<K, Tuple2<Option<M>, Option<N>>>> fullJoin(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor)
 	{
-		return (Set<D>) this.collect(set != null ? set : new LinkedHashSet<D>());
+		return fullJoin(that, kol, kor, new DefaultVop<D, M>(), new DefaultVop<R, N>());
 	}
 
 	/**
-	 * Count the number of elements.
+	 * Full join with another Canal.
 	 * 
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
 	 * @return
 	 */
-	public int count()
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<Option<M>, Option<N>>>> fullJoin(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor)
 	{
-		return this.follow(new CountOp<D>()).evaluate();
+		return fullJoin(that, kol, kor, vol, vor, null);
 	}
 
 	/**
-	 * Count the number each key into a given result map.<br />
-	 * It assumes that the upstream is a pair Canal.
+	 * Full join with another Canal. The elements would be spilled into
+	 * partitioned files if the number of elements exceeds the memory of the
+	 * given spiller. In that case the keys would be ordered by partition.
 	 * 
-	 * @param result
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
+	 * @param spiller
+	 *            the spiller, null means joining in memory.
 	 * @return
 	 */
-	public <K> Map<K, Integer> countByKey(Map<K, Integer> result)
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<Option<M>, Option<N>>>> fullJoin(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor, Spiller spiller)
 	{
-		return countByKey(result, null);
+		return this.follow(new FullJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor, spiller));
+	}
+
+	protected Operator<?, D> getOperator()
+	{
+		return operator;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected <U> Canal<U> getUpstream()
+	{
+		return (Canal<U>) upstream;
 	}
 
 	/**
+	 * Gather each element into correspondent group identified by same key.
 	 * 
-	 * Count the number each key into a given result map with a given KOP.<br />
-	 * 
-	 * @param result
 	 * @param kop
+	 *            {@code (D data)->K key} the kop of data.
 	 * @return
 	 */
-	public <K> Map<K, Integer> countByKey(Map<K, Integer> result, Mapper<D, K> kop)
+	public <K> PairCanal<K, Canal<D>> groupBy(Mapper<D, K> kop)
 	{
-		return this.follow(new CountByKeyOp<D, K>(result, kop)).evaluate();
+		return groupBy(kop, new SelfMapper<D>());
 	}
 
 	/**
-	 * Count the number of each element.
+	 * Gather each value into correspondent group identified by same key.
 	 * 
+	 * @param kop
+	 *            {@code (D data)->K key} the kop of data.
+	 * @param vop
+	 *            {@code (D data)->V value} the vop of data.
 	 * @return
 	 */
-	public Map<D, Integer> countByValue()
+	public <K, V> PairCanal<K, Canal<V>> groupBy(Mapper<D, K> kop, Mapper<D, V> vop)
 	{
-		return countByValue(null);
+		return groupBy(kop, vop, null);
 	}
 
 	/**
-	 * Count the number of each element into a given result map.
+	 * Gather each value into correspondent group identified by same key. The
+	 * elements would be spilled into partitioned files if the number of
+	 * elements exceeds the memory of the given spiller. In that case the groups
+	 * would be ordered by partition.
 	 * 
-	 * @param result
+	 * @param kop
+	 *            {@code (D data)->K key} the kop of data.
+	 * @param vop
+	 *            {@code (D data)->V value} the vop of data.
+	 * @param spiller
+	 *            the spiller, null means grouping in memory.
 	 * @return
 	 */
-	public Map<D, Integer> countByValue(Map<D, Integer> result)
+	public <K, V> PairCanal<K, Canal<V>> groupBy(Mapper<D, K> kop, Mapper<D, V> vop, Spiller spiller)
 	{
-		return this.follow(new CountByValueOp<D>(result)).evaluate();
+		return this.follow(new GroupByOp<D, K, V>(kop, vop, spiller)).toPair();
 	}
 
 	/**
-	 * Count the number of elements.
+	 * Pass the element that both in this and that Canal to the downstream.
 	 * 
+	 * @param that
 	 * @return
 	 */
-	public long countLong()
+	public Canal<D> intersection(Canal<? extends D> that)
 	{
-		return this.follow(new CountLongOp<D>()).evaluate();
+		return intersection(that, (HashedEquality<? super D>) null);
 	}
 
 	/**
-	 * Remove duplicate elements.
+	 * Pass the element that both in this and that Canal to the downstream.
 	 * 
+	 * @param that
+	 * @param eql
 	 * @return
 	 */
-	public Canal<D> distinct()
+	public Canal<D> intersection(Canal<? extends D> that, HashedEquality<? super D> eql)
 	{
-		return this.distinct((HashedEquality<D>) null);
+		return this.follow(new IntersectionOp<D>(that, eql));
 	}
 
 	/**
-	 * Remove duplicate elements with a given {@link HashedEquality}.
+	 * Pass the element that both in this and that Canal to the downstream.
 	 * 
-	 * @param eql
+	 * @param that
+	 * @param xtr
 	 * @return
 	 */
-	public Canal<D> distinct(HashedEquality<? super D> eql)
+	public Canal<D> intersection(Canal<? extends D> that, Mapper<? super D, ?> xtr)
 	{
-		return this.follow(new DistinctOp<D>(eql));
+		return this.intersection(that, PartialHashedEquality.of(xtr));
 	}
 
 	/**
-	 * Remove duplicate elements with a HashedEquality against the value defined
-	 * by the extractor.
+	 * To determine whether this Canal meet the condition or not. Return
+	 * {@code Option.some(this)} if meet, otherwise {@code Option.none()} will
+	 * be returned.
 	 * 
-	 * @param xtr
-	 *            value extractor.
+	 * @param cond
 	 * @return
 	 */
-	public Canal<D> distinct(Mapper<? super D, ?> xtr)
+	public Option<Canal<D>> is(Filter<? super Canal<D>> cond)
 	{
-		return this.distinct(PartialHashedEquality.of(xtr));
+		try
+		{
+			return cond.filter(this) ? Option.some(this) : Option.<Canal<D>> none();
+		}
+		catch (RuntimeException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new RuntimeException(e);
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	protected <T> T evaluate()
+	@Override
+	public Iterator<D> iterator()
 	{
-		return ((Terminal<?, T>) this.build()).get();
+		return this.build();
 	}
 
 	/**
-	 * Filter the elements.
+	 * Inner join with another Canal.
 	 * 
-	 * @param pred
-	 *            {@code (D data)->boolean} returns true if and only if the
-	 *            element need to be passed to the downstream.
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
 	 * @return
 	 */
-	public Canal<D> filter(Filter<? super D> pred)
+	protected <R, K, M, N> Canal<Tuple2<K, Tuple2<M, N>>> join(Canal<R> that, Mapper<D, K> kol, Mapper<R, K> kor)
 	{
-		return this.follow(new FilterOp<D>(pred));
+		return join(that, kol, kor, new DefaultVop<D, M>(), new DefaultVop<R, N>());
 	}
 
 	/**
-	 * Get the first element.
+	 * Inner join with another Canal.
 	 * 
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
 	 * @return
 	 */
-	public Option<D> first()
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, N>>> join(Canal<R> that, Mapper<D, K> kol, Mapper<R, K> kor,
+			Mapper<D, M> vol, Mapper<R, N> vor)
 	{
-		return first(new Filter<D>()
-		{
-			@Override
-			public boolean filter(D element)
-			{
-				return true;
-			}
-		});
+		return join(that, kol, kor, vol, vor, null);
 	}
 
 	/**
-	 * Get the first element that satisfied the given predicate.
+	 * Inner join with another Canal. The elements would be spilled into
+	 * partitioned files if the number of elements exceeds the memory of the
+	 * given spiller. In that case the keys would be ordered by partition.
 	 * 
-	 * @param filter
-	 *            {@code (D data)->boolean}
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
+	 * @param spiller
+	 *            the spiller, null means joining in memory.
 	 * @return
 	 */
-	public Option<D> first(Filter<? super D> filter)
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, N>>> join(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor, Spiller spiller)
 	{
-		return this.follow(new FirstOp<D>(filter)).evaluate();
+		return this.follow(new InnerJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor, spiller, JOIN_HASH));
 	}
 
 	/**
-	 * Map each element into a flat result.
+	 * Inner join with another Canal using the given strategy.
 	 * 
-	 * @param mapper
-	 *            {@code (D data)->Iterable<V>}
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
+	 * @param hint
+	 *            the join strategy, either {@link #JOIN_HASH} or
+	 *            {@link #JOIN_STREAM}.
 	 * @return
 	 */
-	public <V> Canal<V> flatMap(Mapper<? super D, ? extends Iterable<? extends V>> mapper)
-	{
-		return this.follow(new FlatMapOp<D, V>(mapper));
-	}
-
-	/**
-	 * Fold each element with a given initial value until the condition
-	 * satisfied.
-	 * 
-	 * @param init
-	 *            {@code ()->R res} a result initializer called on the first
-	 *            fold.
-	 * @param folder
-	 *            {@code (R res,D data)->R res} a fold reducer.
-	 * @param until
-	 *            the stop condition.
-	 * @return Some(res) if and only if at least one element be folded and the
-	 *         condition satisfied, otherwise None will be returned.
-	 */
-	public <R> Option<R> fold(Producer<R> init, Reducer<D, R> folder, Filter<R> until)
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, N>>> join(Canal<R> that, Mapper<D, K> kol, Mapper<R, K> kor,
+			Mapper<D, M> vol, Mapper<R, N> vor, int hint)
 	{
-		return this.follow(new FoldUntilOp<D, R>(init, folder, until)).evaluate();
+		return this.follow(new InnerJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor, null, hint));
 	}
 
 	/**
-	 * Fold each element with a given initial value.
+	 * Map each element into {@code Tuple2<K,O>}. The first element is the key
+	 * defined by kop.
 	 * 
-	 * @param init
-	 * @param folder
-	 *            {@code (R res,D data)->R res} a fold reducer.
+	 * @param kop
+	 *            {@code (D data)->K key} the kop of data.
 	 * @return
 	 */
-	public <R> R fold(R init, Reducer<D, R> folder)
-	{
-		return this.follow(new FoldOp<D, R>(init, folder)).evaluate();
-	}
-
-	protected <N> Canal<N> follow(Operator<D, N> op)
+	public <K> PairCanal<K, D> keyBy(final Mapper<D, K> kop)
 	{
-		return new Canal<N>().setUpstream(this).setOperator(op);
+		return this.map(new Mapper<D, Tuple2<K, D>>()
+		{
+			@Override
+			public Tuple2<K, D> map(D key) throws Exception
+			{
+				return Tuple.of(kop.map(key), key);
+			}
+		}).toPair();
 	}
 
 	/**
-	 * Determine whether all the data meet the condition. {@code true} will be
-	 * returned if this Canal was empty.
+	 * Get the last element.
 	 * 
-	 * @param cond
 	 * @return
 	 */
-	public boolean forall(Filter<? super D> cond)
+	public Option<D> last()
 	{
-		return this.forall(cond, true);
+		return last(new Filter<D>()
+		{
+			@Override
+			public boolean filter(D element)
+			{
+				return true;
+			}
+		});
 	}
 
 	/**
-	 * Determine whether all the data meet the condition. If {@code allowEmpty}
-	 * parameter was {@code false} and this Canal was empty, then {@code false}
-	 * will be returned.
+	 * Get the last element that satisfied the given predicate.
 	 * 
-	 * @param cond
-	 * @param allowEmpty
+	 * @param filter
+	 *            {@code (D data)->boolean}
 	 * @return
 	 */
-	public boolean forall(Filter<? super D> cond, boolean allowEmpty)
+	public Option<D> last(Filter<? super D> filter)
 	{
-		return this.follow(new ForallOp<D>(cond, allowEmpty)).evaluate();
+		return this.follow(new LastOp<D>(filter)).evaluate();
 	}
 
 	/**
-	 * Determine whether any data in this Canal meet the condition.
+	 * Left join with another Canal.
 	 * 
-	 * @param cond
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
 	 * @return
 	 */
-	public boolean forany(Filter<? super D> cond)
+	protected <R, K, M, N> Canal<Tuple2<K, Tuple2<M, Option<N>>>> leftJoin(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor)
 	{
-		return this.first(cond).given();
+		return leftJoin(that, kol, kor, new DefaultVop<D, M>(), new DefaultVop<R, N>());
 	}
 
 	/**
-	 * Take action on each element.
+	 * Left join with another Canal.
 	 * 
-	 * @param action
-	 *            {@code (D data)->void} the action to be applied to each
-	 *            element.
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
+	 * @return
 	 */
-	public void foreach(Action<? super D> action)
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, Option<N>>>> leftJoin(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor)
 	{
-		this.follow(new ForeachOp<D>(action)).evaluate();
+		return leftJoin(that, kol, kor, vol, vor, null);
 	}
 
 	/**
-	 * Full join with another Canal.
+	 * Left join with another Canal. The elements would be spilled into
+	 * partitioned files if the number of elements exceeds the memory of the
+	 * given spiller. In that case the keys would be ordered by partition.
 	 * 
 	 * @param that
 	 *            the data on right side.
@@ -8427,16 +16611,22 @@ public class Canal<D> implements Iterable<D>
 	 *            {@code (D data)->K key} the kop of left.
 	 * @param kor
 	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
+	 * @param spiller
+	 *            the spiller, null means joining in memory.
 	 * @return
 	 */
-	protected <R, K, M, N> Canal<Tuple2<K, Tuple2<Option<M>, Option<N>>>> fullJoin(Canal<R> that, Mapper<D, K> kol,
-			Mapper<R, K> kor)
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, Option<N>>>> leftJoin(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor, Spiller spiller)
 	{
-		return fullJoin(that, kol, kor, new DefaultVop<D, M>(), new DefaultVop<R, N>());
+		return this.follow(new LeftJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor, spiller, JOIN_HASH));
 	}
 
 	/**
-	 * Full join with another Canal.
+	 * Left join with another Canal using the given strategy.
 	 * 
 	 * @param that
 	 *            the data on right side.
@@ -8448,360 +16638,476 @@ public class Canal<D> implements Iterable<D>
 	 *            {@code (D data)->M value} the vop of left.
 	 * @param vor
 	 *            {@code (R data)->N value} the vop of right.
+	 * @param hint
+	 *            the join strategy, either {@link #JOIN_HASH} or
+	 *            {@link #JOIN_STREAM}.
 	 * @return
 	 */
-	public <R, K, M, N> Canal<Tuple2<K, Tuple2<Option<M>, Option<N>>>> fullJoin(Canal<R> that, Mapper<D, K> kol,
-			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor)
-	{
-		return this.follow(new FullJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor));
-	}
-
-	protected Operator<?, D> getOperator()
-	{
-		return operator;
-	}
-
-	@SuppressWarnings("unchecked")
-	protected <U> Canal<U> getUpstream()
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, Option<N>>>> leftJoin(Canal<R> that, Mapper<D, K> kol, Mapper<R, K> kor,
+			Mapper<D, M> vol, Mapper<R, N> vor, int hint)
 	{
-		return (Canal<U>) upstream;
+		return this.follow(new LeftJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor, null, hint));
 	}
 
 	/**
-	 * Gather each element into correspondent group identified by same key.
+	 * Pass at most {@code limit} elements to downstream.
 	 * 
-	 * @param kop
-	 *            {@code (D data)->K key} the kop of data.
+	 * @param limit
 	 * @return
 	 */
-	public <K> PairCanal<K, Canal<D>> groupBy(Mapper<D, K> kop)
+	@SuppressWarnings("unchecked")
+	public Canal<D> limit(int limit)
 	{
-		return groupBy(kop, new SelfMapper<D>());
+		if (limit >= 0 && this.getUpstream() != null)
+		{
+			// Keep a bounded heap instead of sorting all of the elements.
+			if (this.getOperator() instanceof SortByOp)
+			{
+				return ((Canal<D>) this.getUpstream())
+						.follow(new TopOp<D>(((SortByOp<D>) this.getOperator()).cmps, limit));
+			}
+			if (this.getOperator() instanceof SortWithOp)
+			{
+				return ((Canal<D>) this.getUpstream())
+						.follow(new TopOp<D>(((SortWithOp<D>) this.getOperator()).cmp, limit));
+			}
+		}
+		return this.follow(new LimitOp<D>(limit));
 	}
 
 	/**
-	 * Gather each value into correspondent group identified by same key.
+	 * Map each element.
 	 * 
-	 * @param kop
-	 *            {@code (D data)->K key} the kop of data.
-	 * @param vop
-	 *            {@code (D data)->V value} the vop of data.
+	 * @param mapper
+	 *            {@code (D data)->V value}
 	 * @return
 	 */
-	public <K, V> PairCanal<K, Canal<V>> groupBy(Mapper<D, K> kop, Mapper<D, V> vop)
+	public <V> Canal<V> map(Mapper<? super D, ? extends V> mapper)
 	{
-		return this.follow(new GroupByOp<D, K, V>(kop, vop)).toPair();
+		return this.follow(new MapOp<D, V>(mapper));
 	}
 
 	/**
-	 * Pass the element that both in this and that Canal to the downstream.
+	 * Map each batch of elements into a batch of values which would be passed
+	 * to the downstream one by one.
 	 * 
-	 * @param that
+	 * @param size
+	 *            the batch size.
+	 * @param mapper
+	 *            {@code (List<D> batch)->Iterable<V> values}
 	 * @return
+	 * @see #batched(int)
 	 */
-	public Canal<D> intersection(Canal<? extends D> that)
+	public <V> Canal<V> mapBatch(int size, Mapper<? super List<D>, ? extends Iterable<? extends V>> mapper)
 	{
-		return intersection(that, (HashedEquality<? super D>) null);
+		return this.batched(size).flatMap(mapper);
 	}
 
 	/**
-	 * Pass the element that both in this and that Canal to the downstream.
+	 * Cast each element to the given class or null if not instance of target
+	 * class.
 	 * 
-	 * @param that
-	 * @param eql
+	 * @param cls
 	 * @return
 	 */
-	public Canal<D> intersection(Canal<? extends D> that, HashedEquality<? super D> eql)
+	public <V> Canal<V> mapCast(final Class<? extends V> cls)
 	{
-		return this.follow(new IntersectionOp<D>(that, eql));
+		if (cls == null)
+		{
+			throw new NullPointerException();
+		}
+		return this.map(new Mapper<D, V>()
+		{
+			@Override
+			public V map(D el) throws Exception
+			{
+				return Tools.as(el, cls);
+			}
+		});
 	}
 
 	/**
-	 * Pass the element that both in this and that Canal to the downstream.
+	 * Cast each element to the given class and filter out the elements that
+	 * could not be casted to the target class.
 	 * 
-	 * @param that
-	 * @param xtr
+	 * @param cls
 	 * @return
 	 */
-	public Canal<D> intersection(Canal<? extends D> that, Mapper<? super D, ?> xtr)
+	public <V> Canal<V> mapCasted(final Class<? extends V> cls)
 	{
-		return this.intersection(that, PartialHashedEquality.of(xtr));
+		return this.mapCast(cls).noNull();
 	}
 
 	/**
-	 * To determine whether this Canal meet the condition or not. Return
-	 * {@code Option.some(this)} if meet, otherwise {@code Option.none()} will
-	 * be returned.
+	 * Map each element into a primitive double value.
 	 * 
-	 * @param cond
+	 * @param mapper
+	 *            {@code (D data)->double value}
 	 * @return
 	 */
-	public Option<Canal<D>> is(Filter<? super Canal<D>> cond)
+	public DoubleCanal mapToDouble(final ToDoubleMapper<? super D> mapper)
 	{
-		try
-		{
-			return cond.filter(this) ? Option.some(this) : Option.<Canal<D>> none();
-		}
-		catch (RuntimeException e)
+		if (mapper == null)
 		{
-			throw e;
+			throw new NullPointerException();
 		}
-		catch (Exception e)
+		return new DoubleCanal(new DoubleSourcer()
 		{
-			throw new RuntimeException(e);
-		}
-	}
+			@Override
+			public DoubleSource newPond()
+			{
+				return new DoubleSource()
+				{
+					private Pond<?, D> up;
 
-	@Override
-	public Iterator<D> iterator()
-	{
-		return this.build();
-	}
+					@Override
+					public void begin() throws Exception
+					{
+						up = Canal.this.build();
+					}
 
-	/**
-	 * Inner join with another Canal.
-	 * 
-	 * @param that
-	 *            the data on right side.
-	 * @param kol
-	 *            {@code (D data)->K key} the kop of left.
-	 * @param kor
-	 *            {@code (R data)->K key} the kop of right.
-	 * @return
-	 */
-	protected <R, K, M, N> Canal<Tuple2<K, Tuple2<M, N>>> join(Canal<R> that, Mapper<D, K> kol, Mapper<R, K> kor)
-	{
-		return join(that, kol, kor, new DefaultVop<D, M>(), new DefaultVop<R, N>());
-	}
+					@Override
+					public void close() throws Exception
+					{
+						if (up != null)
+						{
+							up.close();
+						}
+					}
 
-	/**
-	 * Inner join with another Canal.
-	 * 
-	 * @param that
-	 *            the data on right side.
-	 * @param kol
-	 *            {@code (D data)->K key} the kop of left.
-	 * @param kor
-	 *            {@code (R data)->K key} the kop of right.
-	 * @param vol
-	 *            {@code (D data)->M value} the vop of left.
-	 * @param vor
-	 *            {@code (R data)->N value} the vop of right.
-	 * @return
-	 */
-	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, N>>> join(Canal<R> that, Mapper<D, K> kol, Mapper<R, K> kor,
-			Mapper<D, M> vol, Mapper<R, N> vor)
-	{
-		return this.follow(new InnerJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor));
+					@Override
+					public boolean hasNext()
+					{
+						return up.hasNext();
+					}
+
+					@Override
+					public double nextDouble()
+					{
+						try
+						{
+							return mapper.map(up.next());
+						}
+						catch (RuntimeException e)
+						{
+							throw e;
+						}
+						catch (Exception e)
+						{
+							throw new RuntimeException(e);
+						}
+					}
+				};
+			}
+		});
 	}
 
 	/**
-	 * Map each element into {@code Tuple2<K,O>}. The first element is the key
-	 * defined by kop.
+	 * Map each element into a primitive int value.
 	 * 
-	 * @param kop
-	 *            {@code (D data)->K key} the kop of data.
+	 * @param mapper
+	 *            {@code (D data)->int value}
 	 * @return
 	 */
-	public <K> PairCanal<K, D> keyBy(final Mapper<D, K> kop)
+	public IntCanal mapToInt(final ToIntMapper<? super D> mapper)
 	{
-		return this.map(new Mapper<D, Tuple2<K, D>>()
+		if (mapper == null)
+		{
+			throw new NullPointerException();
+		}
+		return new IntCanal(new IntSourcer()
 		{
 			@Override
-			public Tuple2<K, D> map(D key) throws Exception
+			public IntSource newPond()
 			{
-				return Tuple.of(kop.map(key), key);
+				return new IntSource()
+				{
+					private Pond<?, D> up;
+
+					@Override
+					public void begin() throws Exception
+					{
+						up = Canal.this.build();
+					}
+
+					@Override
+					public void close() throws Exception
+					{
+						if (up != null)
+						{
+							up.close();
+						}
+					}
+
+					@Override
+					public boolean hasNext()
+					{
+						return up.hasNext();
+					}
+
+					@Override
+					public int nextInt()
+					{
+						try
+						{
+							return mapper.map(up.next());
+						}
+						catch (RuntimeException e)
+						{
+							throw e;
+						}
+						catch (Exception e)
+						{
+							throw new RuntimeException(e);
+						}
+					}
+				};
 			}
-		}).toPair();
+		});
 	}
 
 	/**
-	 * Get the last element.
+	 * Map each element into a primitive long value.
 	 * 
+	 * @param mapper
+	 *            {@code (D data)->long value}
 	 * @return
 	 */
-	public Option<D> last()
+	public LongCanal mapToLong(final ToLongMapper<? super D> mapper)
 	{
-		return last(new Filter<D>()
+		if (mapper == null)
+		{
+			throw new NullPointerException();
+		}
+		return new LongCanal(new LongSourcer()
 		{
 			@Override
-			public boolean filter(D element)
+			public LongSource newPond()
 			{
-				return true;
+				return new LongSource()
+				{
+					private Pond<?, D> up;
+
+					@Override
+					public void begin() throws Exception
+					{
+						up = Canal.this.build();
+					}
+
+					@Override
+					public void close() throws Exception
+					{
+						if (up != null)
+						{
+							up.close();
+						}
+					}
+
+					@Override
+					public boolean hasNext()
+					{
+						return up.hasNext();
+					}
+
+					@Override
+					public long nextLong()
+					{
+						try
+						{
+							return mapper.map(up.next());
+						}
+						catch (RuntimeException e)
+						{
+							throw e;
+						}
+						catch (Exception e)
+						{
+							throw new RuntimeException(e);
+						}
+					}
+				};
 			}
 		});
 	}
 
 	/**
-	 * Get the last element that satisfied the given predicate.
+	 * Map each element to pair and convert result Canal to PairCanal.
 	 * 
-	 * @param filter
-	 *            {@code (D data)->boolean}
+	 * @param mapper
+	 *            {@code (D data)->(K key, V value)}
 	 * @return
 	 */
-	public Option<D> last(Filter<? super D> filter)
+	public <K, V> PairCanal<K, V> mapToPair(Mapper<? super D, Tuple2<K, V>> mapper)
 	{
-		return this.follow(new LastOp<D>(filter)).evaluate();
+		return this.map(mapper).toPair();
 	}
 
 	/**
-	 * Left join with another Canal.
+	 * Map each element with state.
 	 * 
-	 * @param that
-	 *            the data on right side.
-	 * @param kol
-	 *            {@code (D data)->K key} the kop of left.
-	 * @param kor
-	 *            {@code (R data)->K key} the kop of right.
+	 * @param stater
+	 *            state producer which generates a initial state.
+	 * @param mapper
+	 *            {@code (D data, S state)->V value}
 	 * @return
 	 */
-	protected <R, K, M, N> Canal<Tuple2<K, Tuple2<M, Option<N>>>> leftJoin(Canal<R> that, Mapper<D, K> kol,
-			Mapper<R, K> kor)
+	public <S, V> Canal<V> mapWithState(Producer<S> stater, StatefulMapper<? super D, S, V> mapper)
 	{
-		return leftJoin(that, kol, kor, new DefaultVop<D, M>(), new DefaultVop<R, N>());
+		return this.follow(new MapWithStateOp<D, S, V>(stater, mapper));
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Pond<?, D> newPond()
+	{
+		if (this.getOperator() instanceof Sourcer<?>)
+		{
+			return (Pond<?, D>) ((Sourcer<D>) this.getOperator()).newPond();
+		}
+		else
+		{
+			return this.getOperator().newPond();
+		}
 	}
 
 	/**
-	 * Left join with another Canal.
+	 * Pass all the elements that non-null to downstream.
 	 * 
-	 * @param that
-	 *            the data on right side.
-	 * @param kol
-	 *            {@code (D data)->K key} the kop of left.
-	 * @param kor
-	 *            {@code (R data)->K key} the kop of right.
-	 * @param vol
-	 *            {@code (D data)->M value} the vop of left.
-	 * @param vor
-	 *            {@code (R data)->N value} the vop of right.
 	 * @return
 	 */
-	public <R, K, M, N> Canal<Tuple2<K, Tuple2<M, Option<N>>>> leftJoin(Canal<R> that, Mapper<D, K> kol,
-			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor)
+	@SuppressWarnings("unchecked")
+	public Canal<D> noNull()
 	{
-		return this.follow(new LeftJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor));
+		return this.filter((Filter<D>) NOT_NULL);
 	}
 
 	/**
-	 * Pass at most {@code limit} elements to downstream.
+	 * Evaluate the stateless stages following this Canal in parallel by a
+	 * pool of daemon threads which is reused by each evaluation.
 	 * 
-	 * @param limit
+	 * @param parallelism
+	 *            the number of threads.
 	 * @return
+	 * @see ParallelCanal
 	 */
-	public Canal<D> limit(int limit)
+	public ParallelCanal<D> parallel(int parallelism)
 	{
-		return this.follow(new LimitOp<D>(limit));
+		return this.parallel(parallelism, true);
 	}
 
 	/**
-	 * Map each element.
+	 * Evaluate the stateless stages following this Canal in parallel by a
+	 * pool of daemon threads which is reused by each evaluation.
 	 * 
-	 * @param mapper
-	 *            {@code (D data)->V value}
+	 * @param parallelism
+	 *            the number of threads.
+	 * @param ordered
+	 *            whether the partial results should be merged in the
+	 *            encounter order, otherwise in the completion order.
 	 * @return
+	 * @see ParallelCanal
 	 */
-	public <V> Canal<V> map(Mapper<? super D, ? extends V> mapper)
+	public ParallelCanal<D> parallel(int parallelism, boolean ordered)
 	{
-		return this.follow(new MapOp<D, V>(mapper));
+		return this.parallel(null, parallelism, PARALLEL_CHUNK, ordered);
 	}
 
 	/**
-	 * Cast each element to the given class or null if not instance of target
-	 * class.
+	 * Evaluate the stateless stages following this Canal in parallel by a
+	 * given executor.
 	 * 
-	 * @param cls
+	 * @param executor
 	 * @return
+	 * @see ParallelCanal
 	 */
-	public <V> Canal<V> mapCast(final Class<? extends V> cls)
+	public ParallelCanal<D> parallel(ExecutorService executor)
 	{
-		if (cls == null)
+		if (executor == null)
 		{
 			throw new NullPointerException();
 		}
-		return this.map(new Mapper<D, V>()
-		{
-			@Override
-			public V map(D el) throws Exception
-			{
-				return Tools.as(el, cls);
-			}
-		});
+		return this.parallel(executor, Runtime.getRuntime().availableProcessors(), PARALLEL_CHUNK, true);
 	}
 
 	/**
-	 * Cast each element to the given class and filter out the elements that
-	 * could not be casted to the target class.
+	 * Evaluate the stateless stages following this Canal in parallel.
 	 * 
-	 * @param cls
+	 * @param executor
+	 *            the executor to run each chunk, null means a pool of daemon
+	 *            threads would be created at the first evaluation and reused by
+	 *            the following ones, its idle threads would be released after
+	 *            a while.
+	 * @param parallelism
+	 *            the number of chunks being evaluated at the same time.
+	 * @param chunk
+	 *            the max number of elements in each chunk.
+	 * @param ordered
+	 *            whether the partial results should be merged in the
+	 *            encounter order, otherwise in the completion order.
 	 * @return
+	 * @see ParallelCanal
 	 */
-	public <V> Canal<V> mapCasted(final Class<? extends V> cls)
+	public ParallelCanal<D> parallel(ExecutorService executor, int parallelism, int chunk, boolean ordered)
 	{
-		return this.mapCast(cls).noNull();
+		return this.follow(new ParallelOp<D>(executor, parallelism, chunk, ordered)).toParallel();
 	}
 
 	/**
-	 * Map each element to pair and convert result Canal to PairCanal.
+	 * Peek the elements in this Canal, take some action and pass them to the
+	 * downstream.
 	 * 
-	 * @param mapper
-	 *            {@code (D data)->(K key, V value)}
+	 * @param action
+	 *            {@code (D data)->void} the action to be applied to each
+	 *            element.
 	 * @return
 	 */
-	public <K, V> PairCanal<K, V> mapToPair(Mapper<? super D, Tuple2<K, V>> mapper)
+	public Canal<D> peek(Action<? super D> action)
 	{
-		return this.map(mapper).toPair();
+		return this.follow(new PeekOp<D>(action));
 	}
 
 	/**
-	 * Map each element with state.
+	 * Drain the upstream on a background daemon thread into a bounded buffer,
+	 * so that a slow upstream such as a ResultSet or a file reader overlaps
+	 * with the downstream work. Closing the Canal iterator stops the
+	 * background thread and closes the upstream.
 	 * 
-	 * @param stater
-	 *            state producer which generates a initial state.
-	 * @param mapper
-	 *            {@code (D data, S state)->V value}
+	 * @param bufferSize
+	 *            the maximum number of elements buffered ahead.
 	 * @return
 	 */
-	public <S, V> Canal<V> mapWithState(Producer<S> stater, StatefulMapper<? super D, S, V> mapper)
-	{
-		return this.follow(new MapWithStateOp<D, S, V>(stater, mapper));
-	}
-
-	@SuppressWarnings("unchecked")
-	protected Pond<?, D> newPond()
+	public Canal<D> prefetch(int bufferSize)
 	{
-		if (this.getOperator() instanceof Sourcer<?>)
-		{
-			return (Pond<?, D>) ((Sourcer<D>) this.getOperator()).newPond();
-		}
-		else
-		{
-			return this.getOperator().newPond();
-		}
+		return this.prefetch(bufferSize, null);
 	}
 
 	/**
-	 * Pass all the elements that non-null to downstream.
+	 * Drain the upstream on a thread of the given executor into a bounded
+	 * buffer.
 	 * 
+	 * @param bufferSize
+	 *            the maximum number of elements buffered ahead.
+	 * @param executor
+	 *            the executor, null means a new daemon thread.
 	 * @return
+	 * @see #prefetch(int)
 	 */
-	@SuppressWarnings("unchecked")
-	public Canal<D> noNull()
+	public Canal<D> prefetch(int bufferSize, ExecutorService executor)
 	{
-		return this.filter((Filter<D>) NOT_NULL);
+		return this.follow(new PrefetchOp<D>(executor, bufferSize));
 	}
 
 	/**
-	 * Peek the elements in this Canal, take some action and pass them to the
-	 * downstream.
+	 * Profile the operators before this one when this Canal is evaluated,
+	 * the metrics are accumulated into the given Profile which could be
+	 * printed as an EXPLAIN ANALYZE report. The other side of a join, zip,
+	 * union and so on is not profiled separately.
 	 * 
-	 * @param action
-	 *            {@code (D data)->void} the action to be applied to each
-	 *            element.
+	 * @param profile
 	 * @return
 	 */
-	public Canal<D> peek(Action<? super D> action)
+	public Canal<D> profile(Profile profile)
 	{
-		return this.follow(new PeekOp<D>(action));
+		return this.follow(new ProfileOp<D>(profile));
 	}
 
 	/**
@@ -8876,7 +17182,32 @@ public class Canal<D> implements Iterable<D>
 	public <R, K, M, N> Canal<Tuple2<K, Tuple2<Option<M>, N>>> rightJoin(Canal<R> that, Mapper<D, K> kol,
 			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor)
 	{
-		return this.follow(new RightJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor));
+		return rightJoin(that, kol, kor, vol, vor, null);
+	}
+
+	/**
+	 * Right join with another Canal. The elements would be spilled into
+	 * partitioned files if the number of elements exceeds the memory of the
+	 * given spiller. In that case the keys would be ordered by partition.
+	 * 
+	 * @param that
+	 *            the data on right side.
+	 * @param kol
+	 *            {@code (D data)->K key} the kop of left.
+	 * @param kor
+	 *            {@code (R data)->K key} the kop of right.
+	 * @param vol
+	 *            {@code (D data)->M value} the vop of left.
+	 * @param vor
+	 *            {@code (R data)->N value} the vop of right.
+	 * @param spiller
+	 *            the spiller, null means joining in memory.
+	 * @return
+	 */
+	public <R, K, M, N> Canal<Tuple2<K, Tuple2<Option<M>, N>>> rightJoin(Canal<R> that, Mapper<D, K> kol,
+			Mapper<R, K> kor, Mapper<D, M> vol, Mapper<R, N> vor, Spiller spiller)
+	{
+		return this.follow(new RightJoinOp<D, R, K, M, N>(that, kol, kor, vol, vor, spiller));
 	}
 
 	protected Canal<D> setOperator(Operator<?, D> operator)
@@ -8981,6 +17312,27 @@ public class Canal<D> implements Iterable<D>
 		return this.follow(new SortByOp<D>(Canal.<D> comparatorsOfOrders(orders)));
 	}
 
+	/**
+	 * Sort each element in this Canal by given orders. The sorted runs would
+	 * be spilled into local files and merged lazily once the number of
+	 * elements exceeds the memory budget of the spiller.
+	 * 
+	 * @param spiller
+	 *            The spiller configuration, null means sorting in memory.
+	 * @param orders
+	 *            Either Mapper or Boolean.
+	 * @return
+	 * @see #sortBy(Object...)
+	 */
+	public Canal<D> sortBy(Spiller spiller, Object... orders)
+	{
+		if (spiller == null)
+		{
+			return this.sortBy(orders);
+		}
+		return this.follow(new ExternalSortOp<D>(comparator(Canal.<D> comparatorsOfOrders(orders)), spiller));
+	}
+
 	/**
 	 * Sort each element in this Canal by natural ascending order.
 	 * 
@@ -9032,6 +17384,32 @@ public class Canal<D> implements Iterable<D>
 		}
 	}
 
+	/**
+	 * Sort each element in this Canal by a given Comparator. The sorted runs
+	 * would be spilled into local files and merged lazily once the number of
+	 * elements exceeds the memory budget of the spiller.
+	 * 
+	 * @param spiller
+	 *            The spiller configuration, null means sorting in memory.
+	 * @param cmp
+	 *            The Comparator, null means natural order.
+	 * @param ascend
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public Canal<D> sortWith(Spiller spiller, Comparator<? super D> cmp, boolean ascend)
+	{
+		if (spiller == null)
+		{
+			return this.sortWith(cmp, ascend);
+		}
+		if (cmp == null)
+		{
+			cmp = new DefaultComparator<D>();
+		}
+		return this.follow(new ExternalSortOp<D>((Comparator<? super D>) (ascend ? cmp : inverse(cmp)), spiller));
+	}
+
 	/**
 	 * Stratify each element in this Canal by given Comparable extractor.
 	 * 
@@ -9091,7 +17469,7 @@ public class Canal<D> implements Iterable<D>
 	 */
 	public Canal<Canal<D>> stratifyWith(Comparator<? super D> cmp)
 	{
-		return this.follow(new StratifyWithOp<D>(cmp));
+		return this.stratifyWith(cmp, true, false);
 	}
 
 	/**
@@ -9102,10 +17480,32 @@ public class Canal<D> implements Iterable<D>
 	 * @param ascend
 	 * @return
 	 */
-	@SuppressWarnings("unchecked")
 	public Canal<Canal<D>> stratifyWith(Comparator<? super D> cmp, boolean ascend)
 	{
-		return this.stratifyWith((Comparator<? super D>) (ascend ? cmp : inverse(cmp)));
+		return this.stratifyWith(cmp, ascend, false);
+	}
+
+	/**
+	 * Stratify each elements into levels according to the given Comparator and
+	 * order. The elements are sorted only once and each level is emitted
+	 * lazily as a range over the sorted elements.
+	 * 
+	 * @param cmp
+	 *            The Comparator, null means natural order.
+	 * @param ascend
+	 * @param sorted
+	 *            whether the elements have already been sorted in the given
+	 *            order, so that the sorting could be skipped.
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public Canal<Canal<D>> stratifyWith(Comparator<? super D> cmp, boolean ascend, boolean sorted)
+	{
+		if (cmp == null)
+		{
+			cmp = new DefaultComparator<D>();
+		}
+		return this.follow(new StratifyWithOp<D>((Comparator<? super D>) (ascend ? cmp : inverse(cmp)), sorted));
 	}
 
 	/**
@@ -9167,6 +17567,45 @@ public class Canal<D> implements Iterable<D>
 		return this.follow(new TakeOp<D>(limit, result)).evaluate();
 	}
 
+	/**
+	 * Join with another given {@code Canal<?,N>} on a condition which is
+	 * not necessarily an equation of keys. The other Canal is evaluated only
+	 * once.
+	 * 
+	 * @param that
+	 * @param cond
+	 *            whether the pair of elements are joined, null means
+	 *            Cartesian product.
+	 * @return
+	 */
+	public <N> PairCanal<D, N> thetaJoin(Canal<N> that, StatefulMapper<? super D, ? super N, Boolean> cond)
+	{
+		return this.thetaJoin(that, cond, null, 1);
+	}
+
+	/**
+	 * Join with another given {@code Canal<?,N>} on a condition which is
+	 * not necessarily an equation of keys by a block nested-loop.
+	 * 
+	 * @param that
+	 * @param cond
+	 *            whether the pair of elements are joined, null means
+	 *            Cartesian product.
+	 * @param spiller
+	 *            spill the elements of that Canal beyond the memory budget,
+	 *            null means holding them all in memory. The order of the
+	 *            spilled pairs within each block is not kept.
+	 * @param parallelism
+	 *            the number of threads to match the blocks, no more than 1
+	 *            means matching in the current thread.
+	 * @return
+	 */
+	public <N> PairCanal<D, N> thetaJoin(Canal<N> that, StatefulMapper<? super D, ? super N, Boolean> cond,
+			Spiller spiller, int parallelism)
+	{
+		return this.follow(new CartesianOp<D, N>(that, cond, spiller, parallelism)).toPair();
+	}
+
 	@SuppressWarnings("unchecked")
 	public ArrayCanal toArrays()
 	{
@@ -9187,6 +17626,12 @@ public class Canal<D> implements Iterable<D>
 				.setOperator((Operator<?, Tuple2<K, V>>) this.getOperator());
 	}
 
+	protected ParallelCanal<D> toParallel()
+	{
+		return (ParallelCanal<D>) new ParallelCanal<D>().setUpstream(this.getUpstream())
+				.setOperator(this.getOperator());
+	}
+
 	/**
 	 * Convert this Canal to RowCanal.<br />
 	 * Only the elements' type of {@code Map<String,Object>} will be taken into
@@ -9252,11 +17697,42 @@ public class Canal<D> implements Iterable<D>
 		return this.follow(new StringConcater<D>(delimiter, prefix, suffix, emptyWrap)).evaluate();
 	}
 
+	/**
+	 * Get the k largest elements in natural descending order.
+	 * 
+	 * @param k
+	 * @return
+	 * @see #top(int, Comparator)
+	 */
+	public Canal<D> top(int k)
+	{
+		return this.top(k, null);
+	}
+
+	/**
+	 * Get the k largest elements in descending order of the given Comparator.
+	 * Only k elements are kept in a bounded heap while streaming. The result
+	 * is the same as {@code sortWith(cmp, false).limit(k)}.
+	 * 
+	 * @param k
+	 * @param cmp
+	 *            The Comparator, null means natural order.
+	 * @return
+	 */
+	public Canal<D> top(int k, Comparator<? super D> cmp)
+	{
+		if (cmp == null)
+		{
+			cmp = new DefaultComparator<D>();
+		}
+		return this.follow(new TopOp<D>((Comparator<? super D>) inverse(cmp), k));
+	}
+
 	public Canal<D> uncache()
 	{
 		if (this.getOperator() instanceof CacheOp)
 		{
-			((CacheOp<?>) this.getOperator()).cache.clear();
+			((CacheOp<?>) this.getOperator()).clear();
 			return this.getUpstream();
 		}
 		else
@@ -9316,74 +17792,71 @@ public class Canal<D> implements Iterable<D>
 			}
 		});
 
-		int idx = 0;
-		for (final Aggregator<?, ?> aggr : aggrs)
+		/*
+		 * Consecutive aggregators sharing the same partition and order specs
+		 * are evaluated in one pass, so that the rows are regrouped only when
+		 * the spec changes, in the same order as they were given.
+		 */
+		List<List<Integer>> groups = new ArrayList<List<Integer>>();
+		Aggregator<?, ?> last = null;
+		for (int idx = 0; idx < aggrs.length; idx++)
 		{
-			final Aggregator<V, ?> agg = (Aggregator<V, ?>) aggr;
-			final int idn = idx++;
-			final WindowRanger<V> ranger = getWindowRanger(agg);
-
-			canal = canal.stratifyBy((Object[]) agg.partBy()).flatMap(new Mapper<Canal<V>, Iterable<V>>()
+			if (last == null || !sameSpec(aggrs[idx].partBy(), last.partBy())
+					|| !sameSpec(aggrs[idx].orderBy(), last.orderBy()))
 			{
-				@Override
-				public Iterable<V> map(Canal<V> partition) throws Exception
-				{
-					List<List<V>> ordered = (List<List<V>>) partition.stratifyBy((Object[]) agg.orderBy())
-							.map(new Mapper<Canal<V>, List<V>>()
-							{
-								@Override
-								public List<V> map(Canal<V> el) throws Exception
-								{
-									return (List<V>) el.collect(new ArrayList<V>());
-								}
-							}).collect(new ArrayList<List<V>>());
-
-					Collection<V> part = Canal.of(ordered).flatMap(new Mapper<List<V>, Iterable<V>>()
-					{
-						@Override
-						public Iterable<V> map(List<V> el) throws Exception
-						{
-							return el;
-						}
-					}).collect(new ArrayList<V>());
+				groups.add(new ArrayList<Integer>());
+				last = aggrs[idx];
+			}
+			groups.get(groups.size() - 1).add(idx);
+		}
 
-					V[] rows = (V[]) part.toArray(new Object[0]);
+		for (List<Integer> group : groups)
+		{
+			final int[] idns = new int[group.size()];
+			final Aggregator<V, ?>[] aggs = new Aggregator[group.size()];
+			final WindowRanger<V>[] rangers = new WindowRanger[group.size()];
+			for (int k = 0; k < idns.length; k++)
+			{
+				idns[k] = group.get(k);
+				aggs[k] = (Aggregator<V, ?>) aggrs[idns[k]];
+				rangers[k] = getWindowRanger(aggs[k]);
+			}
+			final Aggregator<V, ?> head = aggs[0];
 
-					int from = 0, to = 0, levelFrom = 0, levelTo = 0, i = 0;
-					int[] range = new int[] { 0, 0 };
-					Object gather = agg.initial(), update = null;
+			/*
+			 * Sort the rows only once by the partition and the order specs, so
+			 * that neither the partitions nor the levels need to be sorted
+			 * again.
+			 */
+			List<Comparator<? super V>> parts = Canal.<V> comparatorsOfOrders((Object[]) head.partBy());
+			List<Comparator<? super V>> whole = new ArrayList<Comparator<? super V>>(parts);
+			whole.addAll(Canal.<V> comparatorsOfOrders((Object[]) head.orderBy()));
+			final Comparator<? super V> order = comparator(Canal.<V> comparatorsOfOrders((Object[]) head.orderBy()));
 
-					for (List<V> level : ordered)
+			canal = canal.sortWith(comparator(whole)).stratifyWith(comparator(parts), true, true)
+					.flatMap(new Mapper<Canal<V>, Iterable<V>>()
 					{
-						levelFrom = levelTo;
-						levelTo += level.size();
-
-						from = to;
-
-						while (from < levelTo)
+						@Override
+						public Iterable<V> map(Canal<V> partition) throws Exception
 						{
-							to = ranger.step(rows, from, levelFrom, levelTo);
+							V[] rows = sortArray(partition.collect(new ArrayList<V>()), order, true);
+							List<V> part = Arrays.asList(rows);
 
-							// Find range only once in each step
-							ranger.range(range, rows, from, levelFrom, levelTo);
-
-							gather = agg.gather(gather, rows, levelFrom, levelTo);
-
-							update = agg.update(gather, rows, range[0], range[1]);
+							List<List<V>> levels = new ArrayList<List<V>>();
+							for (int from = 0, to = 0; from < rows.length; from = to)
+							{
+								to = levelEnd(part, from, order);
+								levels.add(part.subList(from, to));
+							}
 
-							for (i = from; i < to && i < levelTo; i++)
+							for (int k = 0; k < aggs.length; k++)
 							{
-								setter.set(rows[i], idn, agg, (Object) (range[0] >= range[1] ? null
-										: agg.express(i, update, rows, range[0], range[1])));
+								aggregate(rows, levels, aggs[k], rangers[k], setter, idns[k]);
 							}
 
-							from = to;
+							return part;
 						}
-					}
-
-					return part;
-				}
-			});
+					});
 		}
 
 		return canal;
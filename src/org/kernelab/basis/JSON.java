@@ -1,11 +1,12 @@
 package org.kernelab.basis;
 
-import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.Serializable;
 import java.io.StringWriter;
@@ -20,6 +21,8 @@ import java.lang.reflect.Type;
 import java.lang.reflect.WildcardType;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.sql.Date;
 import java.sql.Time;
@@ -28,6 +31,7 @@ import java.text.DateFormat;
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,13 +42,22 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,6 +71,7 @@ import org.kernelab.basis.Canal.Tuple;
 import org.kernelab.basis.Canal.Tuple2;
 import org.kernelab.basis.JSON.Context;
 import org.kernelab.basis.io.DataReader;
+import org.kernelab.basis.io.MappedFileReader;
 import org.kernelab.basis.io.StringBuilderWriter;
 
 interface Hierarchical extends Copieable<Hierarchical>
@@ -612,4756 +626,6961 @@ public class JSON implements Map<String, Object>, Iterable<Object>, Serializable
 		}
 	}
 
-	protected static class InnerEntry implements Map.Entry<String, Object>
+	/**
+	 * Generate JSON text encoded in UTF-8 directly into a byte buffer which is
+	 * flushed to an OutputStream if given, without building the intermediate
+	 * Strings. The output is the same as {@link JSON#toString()}.
+	 */
+	public static class Generator implements Closeable
 	{
-		protected final Map.Entry<String, Object> entry;
+		public static final int					DEFAULT_BUFFER_SIZE	= 8192;
 
-		public InnerEntry(Map.Entry<String, Object> entry)
+		public static final int					NAMES_CACHE_LIMIT	= 1024;
+
+		protected static final byte[]			NULL_BYTES			= NULL_STRING.getBytes();
+
+		protected static final byte[]			TRUE_BYTES			= String.valueOf(true).getBytes();
+
+		protected static final byte[]			FALSE_BYTES			= String.valueOf(false).getBytes();
+
+		/**
+		 * Whether an ASCII character needs to be escaped.
+		 */
+		protected static final boolean[]		ESCAPES				= new boolean[128];
+
+		static
 		{
-			this.entry = entry;
+			for (char c = 0; c < ESCAPES.length; c++)
+			{
+				ESCAPES[c] = NeedToEscape(c);
+			}
 		}
 
-		@Override
-		public boolean equals(Object o)
+		private static final byte[]				HEX_DIGITS			= "0123456789abcdef".getBytes();
+
+		/**
+		 * The margin reserved in the buffer for one character at most.
+		 */
+		private static final int				MARGIN				= 12;
+
+		private final OutputStream				out;
+
+		private byte[]							buf;
+
+		private int								len;
+
+		private boolean[]						objects				= new boolean[32];
+
+		private boolean[]						firsts				= new boolean[32];
+
+		private int								depth;
+
+		private boolean							naming;
+
+		private final Map<String, byte[]>		names				= new HashMap<String, byte[]>();
+
+		private final byte[]					digits				= new byte[19];
+
+		/**
+		 * Generate into the inner buffer only.
+		 */
+		public Generator()
 		{
-			return this.entry.equals(o);
+			this(null);
 		}
 
-		@Override
-		public String getKey()
+		public Generator(OutputStream out)
 		{
-			return this.entry.getKey();
+			this(out, DEFAULT_BUFFER_SIZE);
 		}
 
-		@Override
-		public Object getValue()
+		public Generator(OutputStream out, int bufferSize)
 		{
-			return Quote(this.entry.getValue());
+			this.out = out;
+			this.buf = new byte[Math.max(bufferSize, MARGIN * 2)];
 		}
 
-		@Override
-		public int hashCode()
+		/**
+		 * Prepare for a value, write the separator if needed.
+		 */
+		protected void before() throws IOException
 		{
-			return this.entry.hashCode();
+			if (depth > 0)
+			{
+				if (objects[depth - 1])
+				{
+					if (!naming)
+					{
+						throw new IllegalStateException("Name is expected before value in object");
+					}
+					naming = false;
+				}
+				else if (firsts[depth - 1])
+				{
+					firsts[depth - 1] = false;
+				}
+				else
+				{
+					this.ensure(1);
+					this.put((byte) PAIR_CHAR);
+				}
+			}
 		}
 
-		@Override
-		public Object setValue(Object value)
+		public Generator beginArray() throws IOException
 		{
-			return this.entry.setValue(value);
+			return this.begin(false);
 		}
 
-		@Override
-		public String toString()
+		protected Generator begin(boolean object) throws IOException
 		{
-			return this.entry.toString();
+			this.before();
+			this.ensure(1);
+			this.put((byte) (object ? OBJECT_BEGIN_CHAR : ARRAY_BEGIN_CHAR));
+			if (depth == objects.length)
+			{
+				objects = Arrays.copyOf(objects, depth * 2);
+				firsts = Arrays.copyOf(firsts, depth * 2);
+			}
+			objects[depth] = object;
+			firsts[depth] = true;
+			depth++;
+			return this;
 		}
-	}
-
-	protected static class IterableSet<E> extends AbstractSet<E>
-	{
-		protected final Iterable<E>	iter;
-
-		protected final int			size;
 
-		public IterableSet(Iterable<E> iter, int size)
+		public Generator beginObject() throws IOException
 		{
-			this.iter = iter;
-			this.size = size;
+			return this.begin(true);
 		}
 
 		@Override
-		public boolean addAll(Collection<? extends E> c)
+		public void close() throws IOException
 		{
-			throw new UnsupportedOperationException();
+			this.flush();
+			if (out != null)
+			{
+				out.close();
+			}
 		}
 
-		@Override
-		public void clear()
+		/**
+		 * Encode the name with its quotes and the attribute mark.
+		 */
+		protected byte[] encode(String name) throws IOException
 		{
-			throw new UnsupportedOperationException();
+			// Reserve the room for the worst case so that nothing is spilled.
+			this.ensure((name == null ? 0 : name.length() * 6) + MARGIN * 2);
+			int mark = len;
+			if (name == null)
+			{
+				this.write(NULL_BYTES);
+			}
+			else
+			{
+				this.writeString(name);
+			}
+			this.ensure(1);
+			this.put((byte) ATTR_CHAR);
+			byte[] bytes = Arrays.copyOfRange(buf, mark, len);
+			len = mark;
+			return bytes;
 		}
 
-		@Override
-		public Iterator<E> iterator()
+		protected Generator end(boolean object) throws IOException
 		{
-			return iter.iterator();
+			if (depth == 0 || objects[depth - 1] != object || naming)
+			{
+				throw new IllegalStateException("No " + (object ? "object" : "array") + " to end");
+			}
+			depth--;
+			this.ensure(1);
+			this.put((byte) (object ? OBJECT_END_CHAR : ARRAY_END_CHAR));
+			return this;
 		}
 
-		@Override
-		public boolean remove(Object obj)
+		public Generator endArray() throws IOException
 		{
-			throw new UnsupportedOperationException();
+			return this.end(false);
 		}
 
-		@Override
-		public boolean removeAll(Collection<?> c)
+		public Generator endObject() throws IOException
 		{
-			throw new UnsupportedOperationException();
+			return this.end(true);
 		}
 
-		@Override
-		public boolean retainAll(Collection<?> c)
+		/**
+		 * Make room for n bytes at least.
+		 */
+		protected void ensure(int n) throws IOException
 		{
-			throw new UnsupportedOperationException();
+			if (len + n > buf.length)
+			{
+				if (out != null)
+				{
+					this.spill();
+				}
+				if (len + n > buf.length)
+				{
+					buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+				}
+			}
 		}
 
-		@Override
-		public int size()
+		/**
+		 * Write the buffered bytes to the OutputStream and flush it.
+		 */
+		public void flush() throws IOException
 		{
-			return size;
+			if (out != null)
+			{
+				this.spill();
+				out.flush();
+			}
 		}
-	}
 
-	/**
-	 * A class to describe Array object using JSON format.
-	 * 
-	 * @author Dilly King
-	 * 
-	 */
-	public static class JSAN extends JSON implements RandomAccess
-	{
-		public static class GeneralValueComparator implements Comparator<Object>, Serializable
+		public int getDepth()
 		{
-			/**
-			 * 
-			 */
-			private static final long			serialVersionUID	= -7397716884280949033L;
-
-			private static Map<Class<?>, Short>	TYPE_RANK			= new HashMap<Class<?>, Short>();
+			return depth;
+		}
 
-			private static final short			BOOLEAN_RANK		= 0;
+		/**
+		 * Write the name of the next value in the current object. The encoded
+		 * names are cached so that the repeated names are copied directly.
+		 * 
+		 * @param name
+		 * @return
+		 * @throws IOException
+		 */
+		public Generator name(String name) throws IOException
+		{
+			if (depth == 0 || !objects[depth - 1] || naming)
+			{
+				throw new IllegalStateException("Name is not expected here");
+			}
 
-			private static final short			NUMBER_RANK			= 1;
+			byte[] bytes = names.get(name);
+			if (bytes == null)
+			{
+				bytes = this.encode(name);
+				if (names.size() < NAMES_CACHE_LIMIT)
+				{
+					names.put(name, bytes);
+				}
+			}
 
-			private static final short			CHARACTER_RANK		= 2;
+			this.ensure(bytes.length + 1);
+			if (firsts[depth - 1])
+			{
+				firsts[depth - 1] = false;
+			}
+			else
+			{
+				this.put((byte) PAIR_CHAR);
+			}
+			System.arraycopy(bytes, 0, buf, len, bytes.length);
+			len += bytes.length;
+			naming = true;
+			return this;
+		}
 
-			private static final short			STRING_RANK			= 3;
+		private void put(byte b)
+		{
+			buf[len++] = b;
+		}
 
-			private static final short			DATE_RANK			= 4;
+		/**
+		 * Reset the inner buffer so that it could be reused.
+		 */
+		public Generator reset()
+		{
+			len = 0;
+			depth = 0;
+			naming = false;
+			return this;
+		}
 
-			private static final short			CALENDAR_RANK		= 5;
+		public int size()
+		{
+			return len;
+		}
 
-			private static final short			HIERARCH_RANK		= 6;
+		private void spill() throws IOException
+		{
+			if (len > 0)
+			{
+				out.write(buf, 0, len);
+				len = 0;
+			}
+		}
 
-			private static final short			NONE_RANK			= Short.MAX_VALUE;
+		/**
+		 * Get the bytes generated in the inner buffer which have not been
+		 * flushed.
+		 */
+		public byte[] toByteArray()
+		{
+			return Arrays.copyOf(buf, len);
+		}
 
-			public static final int				ASCEND				= 1;
+		public Generator value(boolean value) throws IOException
+		{
+			this.before();
+			this.write(value ? TRUE_BYTES : FALSE_BYTES);
+			return this;
+		}
 
-			public static final int				DESCEND				= -1;
+		public Generator value(long value) throws IOException
+		{
+			this.before();
+			this.writeLong(value);
+			return this;
+		}
 
-			static
+		/**
+		 * Write a value, the JSON or JSAN would be written entirely.
+		 * 
+		 * @param value
+		 * @return
+		 * @throws IOException
+		 */
+		public Generator value(Object value) throws IOException
+		{
+			if (value instanceof JSON)
 			{
-				TYPE_RANK.put(Boolean.class, BOOLEAN_RANK);
-				TYPE_RANK.put(Number.class, NUMBER_RANK);
-				TYPE_RANK.put(Character.class, CHARACTER_RANK);
-				TYPE_RANK.put(CharSequence.class, STRING_RANK);
-				TYPE_RANK.put(java.util.Date.class, DATE_RANK);
-				TYPE_RANK.put(java.util.Calendar.class, CALENDAR_RANK);
-				TYPE_RANK.put(Hierarchical.class, HIERARCH_RANK);
+				return this.write((JSON) value);
 			}
 
-			protected static int CompareIndex(String a, String b)
-			{
-				int c = 0;
-
-				Integer indexA = Index(a), indexB = Index(b);
-
-				if (indexA == null && indexB == null)
-				{
-					c = a.compareTo(b);
-				}
-				else if (indexA != null && indexB == null)
-				{
-					c = -1;
-				}
-				else if (indexA == null && indexB != null)
-				{
-					c = 1;
-				}
-				else
-				{
-					c = indexA - indexB;
-				}
+			this.before();
 
-				return c;
+			if (value == null)
+			{
+				this.write(NULL_BYTES);
 			}
-
-			protected static short getTypeRank(Object value)
+			else if (value instanceof CharSequence || value instanceof Character)
 			{
-				Short rank = null;
-
-				if (value != null)
-				{
-					for (Entry<Class<?>, Short> entry : TYPE_RANK.entrySet())
-					{
-						if (Tools.superClass(value, entry.getKey()) != null)
-						{
-							rank = entry.getValue();
-							break;
-						}
-					}
-				}
-
-				return rank == null ? NONE_RANK : rank;
+				this.writeString(value.toString());
 			}
-
-			private int order;
-
-			public GeneralValueComparator()
+			else if (value instanceof Integer || value instanceof Long || value instanceof Short
+					|| value instanceof Byte)
 			{
-				this(ASCEND);
+				this.writeLong(((Number) value).longValue());
 			}
-
-			public GeneralValueComparator(int order)
+			else if (value instanceof Boolean)
 			{
-				this.order = order >= 0 ? ASCEND : DESCEND;
+				this.write((Boolean) value ? TRUE_BYTES : FALSE_BYTES);
 			}
-
-			public int compare(Object a, Object b)
+			else if (value instanceof java.util.Date)
 			{
-				int c = 0;
-
-				if (a == null && b == null)
-				{
-					c = 0;
-				}
-				else if (a == null && b != null)
-				{
-					c = 1;
-				}
-				else if (a != null && b == null)
-				{
-					c = -1;
-				}
-				else
-				{
-					Object x = a, y = b;
-
-					if (IsQuotation(a))
-					{
-						x = ((Quotation) x).quote();
-					}
-
-					if (IsQuotation(b))
-					{
-						y = ((Quotation) y).quote();
-					}
-
-					short rankX = getTypeRank(x), rankY = getTypeRank(y);
-
-					if (rankX == rankY)
-					{
-						switch (rankX)
-						{
-							case BOOLEAN_RANK:
-								// false=0, true=1
-								c = ((Boolean) x ? 1 : 0) - ((Boolean) y ? 1 : 0);
-								break;
-
-							case NUMBER_RANK:
-								c = (int) Math.signum(((Number) x).doubleValue() - ((Number) y).doubleValue());
-								break;
-
-							case CHARACTER_RANK:
-								c = (Character) x - (Character) y;
-								break;
-
-							case STRING_RANK:
-								c = ((CharSequence) x).toString().compareTo(((CharSequence) y).toString());
-								break;
-
-							case DATE_RANK:
-								c = (int) Math.signum(((java.util.Date) x).getTime() - ((java.util.Date) y).getTime());
-								break;
-
-							case CALENDAR_RANK:
-								c = (int) Math.signum(((java.util.Calendar) x).getTimeInMillis()
-										- ((java.util.Calendar) y).getTimeInMillis());
-								break;
-
-							case HIERARCH_RANK:
-								// For Hierarchical values, compare the entry.
-								// This means keep its order in the JSAN.
-								if (!Tools.equals(x, y))
-								{
-									c = CompareIndex(((Hierarchical) a).entry(), ((Hierarchical) b).entry());
-								}
-								break;
-
-							default:
-								c = x.hashCode() - y.hashCode();
-								break;
-						}
-					}
-					else
-					{
-						c = rankX - rankY;
-					}
-				}
-
-				return c * order;
+				this.writeLong(((java.util.Date) value).getTime());
+			}
+			else if (value instanceof java.util.Calendar)
+			{
+				this.writeLong(((java.util.Calendar) value).getTimeInMillis());
+			}
+			else
+			{
+				this.writeRaw(SerializeValueOf(value));
 			}
-		}
 
-		public static interface Reflector<T>
-		{
-			public JSAN reflect(JSAN jsan, T obj);
+			return this;
 		}
 
 		/**
+		 * Write a JSON or JSAN entirely.
 		 * 
+		 * @param json
+		 * @return
+		 * @throws IOException
 		 */
-		private static final long	serialVersionUID	= 2156642568827950757L;
-
-		public static final int		LAST				= -1;
-
-		protected static Set<Entry<String, Object>> entrySet(List<Object> array)
+		public Generator write(JSON json) throws IOException
 		{
-			return new IterableSet<Entry<String, Object>>(
-					Canal.of(array).zipWithIndex().map(new Mapper<Tuple2<Object, Integer>, Entry<String, Object>>()
-					{
-						@Override
-						public Entry<String, Object> map(Tuple2<Object, Integer> t) throws Exception
-						{
-							return new DefaultEntry(Key(t._2.intValue()), t._1);
-						}
-					}), array.size());
-		}
+			if (json == null || IsContext(json))
+			{
+				this.before();
+				this.writeRaw(json == null ? NULL_STRING : json.toString());
+				return this;
+			}
 
-		/**
-		 * Get the index value of Object.
-		 * 
-		 * @param o
-		 *            object which may stand for an index
-		 * @return {@code null} if the object was {@code null} or the object's
-		 *         Integer {@code value < 0}, otherwise returns the Integer
-		 *         value.
-		 */
-		protected static Integer Index(Object o)
-		{
-			if (o != null)
+			if (IsJSAN(json))
 			{
-				if (o instanceof Integer)
-				{
-					Integer i = (Integer) o;
-					return i >= 0 ? i : null;
-				}
-				else
+				this.beginArray();
+				for (Object value : ((JSAN) json).array())
 				{
-					return Index(o.toString());
+					this.value(value);
 				}
+				return this.endArray();
 			}
 			else
 			{
-				return null;
+				this.beginObject();
+				for (Map.Entry<String, Object> entry : json.entrySet())
+				{
+					this.name(entry.getKey()).value(entry.getValue());
+				}
+				return this.endObject();
 			}
 		}
 
-		/**
-		 * Get the index value of String.
-		 * 
-		 * @param key
-		 *            string which may stand for an index
-		 * @return {@code null} if the string was {@code null} or the string's
-		 *         Integer {@code value < 0}, otherwise returns the Integer
-		 *         value.
-		 */
-		protected static Integer Index(String key)
+		private void write(byte[] bytes) throws IOException
 		{
-			if (key == null)
+			this.ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, len, bytes.length);
+			len += bytes.length;
+		}
+
+		private void writeLong(long value) throws IOException
+		{
+			if (value == Long.MIN_VALUE)
 			{
-				return null;
+				this.writeRaw(String.valueOf(value));
+				return;
 			}
-
-			try
+			this.ensure(20);
+			if (value < 0)
 			{
-				int index = Integer.parseInt(key);
-
-				if (index < 0)
-				{
-					return null;
-				}
-				else
-				{
-					return index;
-				}
+				this.put((byte) '-');
+				value = -value;
 			}
-			catch (NumberFormatException e)
+			int i = digits.length;
+			do
 			{
-				return null;
+				digits[--i] = (byte) ('0' + value % 10);
+				value /= 10;
 			}
+			while (value > 0);
+			System.arraycopy(digits, i, buf, len, digits.length - i);
+			len += digits.length - i;
 		}
 
-		public static boolean IsTable(JSAN jsan)
+		/**
+		 * Write the text without quoting or escaping.
+		 */
+		protected void writeRaw(String text) throws IOException
 		{
-			int columns = -1;
-			for (Object r : jsan)
-			{
-				if (r == null)
-				{
-					continue;
-				}
-				else if (!(r instanceof JSAN))
-				{
-					return false;
-				}
-				if (columns == -1)
-				{
-					columns = ((JSAN) r).size();
-				}
-				else if (columns != ((JSAN) r).size())
-				{
-					return false;
-				}
-			}
-			return true;
+			this.writeText(text, false);
 		}
 
 		/**
-		 * Get a key string of an index.
-		 * 
-		 * @param i
-		 * @return
+		 * Write the string with quotes and escapes.
 		 */
-		protected static String Key(int i)
+		protected void writeString(String text) throws IOException
 		{
-			return String.valueOf(i);
+			this.ensure(1);
+			this.put((byte) QUOTE_CHAR);
+			this.writeText(text, true);
+			this.ensure(1);
+			this.put((byte) QUOTE_CHAR);
 		}
 
-		protected static Set<String> keySet(List<Object> array)
+		private void writeText(String text, boolean escape) throws IOException
 		{
-			return new IterableSet<String>(Canal.of(Canal.range(0, array.size())).map(new Mapper<Integer, String>()
+			int n = text.length(), limit = buf.length - MARGIN;
+			char c;
+			for (int i = 0; i < n; i++)
 			{
-				@Override
-				public String map(Integer i) throws Exception
+				if (len > limit)
 				{
-					return Key(i.intValue());
+					this.ensure(MARGIN);
+					limit = buf.length - MARGIN;
 				}
-			}), array.size());
-		}
 
-		protected static Collection<Object> nullsBeforeValue(int nulls, Object value)
-		{
-			ArrayList<Object> arr = new ArrayList<Object>(nulls + 1);
-			for (int i = 0; i < nulls; i++)
-			{
-				arr.add(null);
+				c = text.charAt(i);
+
+				if (c < 0x80)
+				{
+					if (!escape || !ESCAPES[c])
+					{
+						buf[len++] = (byte) c;
+					}
+					else
+					{
+						this.writeEscape(c);
+					}
+				}
+				else if (c < 0x800)
+				{
+					if (escape && Character.isISOControl(c))
+					{
+						this.writeEscape(c);
+					}
+					else
+					{
+						buf[len++] = (byte) (0xc0 | (c >> 6));
+						buf[len++] = (byte) (0x80 | (c & 0x3f));
+					}
+				}
+				else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1)))
+				{
+					int cp = Character.toCodePoint(c, text.charAt(++i));
+					buf[len++] = (byte) (0xf0 | (cp >> 18));
+					buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+					buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+					buf[len++] = (byte) (0x80 | (cp & 0x3f));
+				}
+				else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+				{
+					// Malformed as String.getBytes does.
+					buf[len++] = (byte) '?';
+				}
+				else
+				{
+					buf[len++] = (byte) (0xe0 | (c >> 12));
+					buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+					buf[len++] = (byte) (0x80 | (c & 0x3f));
+				}
 			}
-			arr.add(value);
-			return arr;
 		}
 
-		public static JSAN Of(Iterable<?> itr)
+		private void writeEscape(char c)
 		{
-			if (itr == null)
+			String esc = ESCAPED_CHAR.get(c);
+			if (esc != null)
 			{
-				return null;
-			}
-			else if (itr instanceof JSAN)
-			{
-				return (JSAN) itr;
+				for (int i = 0; i < esc.length(); i++)
+				{
+					buf[len++] = (byte) esc.charAt(i);
+				}
 			}
 			else
 			{
-				return new JSAN().addAll(itr);
+				buf[len++] = (byte) ESCAPE_CHAR;
+				buf[len++] = (byte) UNICODE_ESCAPING_CHAR;
+				buf[len++] = HEX_DIGITS[(c >> 12) & 0xf];
+				buf[len++] = HEX_DIGITS[(c >> 8) & 0xf];
+				buf[len++] = HEX_DIGITS[(c >> 4) & 0xf];
+				buf[len++] = HEX_DIGITS[c & 0xf];
 			}
 		}
+	}
 
-		public static <T> JSAN Of(T... arr)
+	protected static class InnerEntry implements Map.Entry<String, Object>
+	{
+		protected final Map.Entry<String, Object> entry;
+
+		public InnerEntry(Map.Entry<String, Object> entry)
 		{
-			if (arr == null)
-			{
-				return null;
-			}
-			else
-			{
-				return new JSAN().addAll(arr);
-			}
+			this.entry = entry;
 		}
 
-		public static JSAN Reflect(JSAN jsan, Map<Class<?>, Object> reflects, Object object)
+		@Override
+		public boolean equals(Object o)
 		{
-			if (object != null)
-			{
-				if (jsan == null)
-				{
-					jsan = new JSAN().reflects(reflects);
-				}
+			return this.entry.equals(o);
+		}
 
-				Object reflect = ReflectOf(object, reflects);
+		@Override
+		public String getKey()
+		{
+			return this.entry.getKey();
+		}
 
-				if (reflect instanceof JSAN.Reflector)
-				{
-					jsan = JSAN.Reflect(jsan, object, (JSAN.Reflector<?>) reflect);
-				}
-				else if (reflect instanceof JSON.Reflector)
-				{
-					jsan = (JSAN) JSON.Reflect(jsan, object, (JSON.Reflector<?>) reflect);
-				}
-				else if (JSAN.IsJSAN(reflect))
-				{
-					jsan = JSAN.Reflect(jsan, object, (JSAN) reflect);
-				}
-				else if (JSON.IsJSON(reflect))
-				{
-					jsan = (JSAN) JSON.Reflect(jsan, object, (JSON) reflect);
-				}
-				else
-				{
-					jsan = (JSAN) JSAN.Reflect(jsan, object);
-				}
-			}
+		@Override
+		public Object getValue()
+		{
+			return Quote(this.entry.getValue());
+		}
 
-			return jsan;
+		@Override
+		public int hashCode()
+		{
+			return this.entry.hashCode();
 		}
 
-		public static JSAN Reflect(JSAN jsan, Object object)
+		@Override
+		public Object setValue(Object value)
 		{
-			JSAN reflect = null;
+			return this.entry.setValue(value);
+		}
 
-			Collection<String> fields = null;
+		@Override
+		public String toString()
+		{
+			return this.entry.toString();
+		}
+	}
 
-			if (!(object instanceof Map) && !(object instanceof Iterable) && !IsArray(object))
+	protected static class IterableSet<E> extends AbstractSet<E>
+	{
+		protected final Iterable<E>	iter;
+
+		protected final int			size;
+
+		public IterableSet(Iterable<E> iter, int size)
+		{
+			this.iter = iter;
+			this.size = size;
+		}
+
+		@Override
+		public boolean addAll(Collection<? extends E> c)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void clear()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Iterator<E> iterator()
+		{
+			return iter.iterator();
+		}
+
+		@Override
+		public boolean remove(Object obj)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean removeAll(Collection<?> c)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean retainAll(Collection<?> c)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	/**
+	 * A class to describe Array object using JSON format.
+	 * 
+	 * @author Dilly King
+	 * 
+	 */
+	public static class JSAN extends JSON implements RandomAccess
+	{
+		public static class GeneralValueComparator implements Comparator<Object>, Serializable
+		{
+			/**
+			 * 
+			 */
+			private static final long			serialVersionUID	= -7397716884280949033L;
+
+			private static Map<Class<?>, Short>	TYPE_RANK			= new HashMap<Class<?>, Short>();
+
+			private static final short			BOOLEAN_RANK		= 0;
+
+			private static final short			NUMBER_RANK			= 1;
+
+			private static final short			CHARACTER_RANK		= 2;
+
+			private static final short			STRING_RANK			= 3;
+
+			private static final short			DATE_RANK			= 4;
+
+			private static final short			CALENDAR_RANK		= 5;
+
+			private static final short			HIERARCH_RANK		= 6;
+
+			private static final short			NONE_RANK			= Short.MAX_VALUE;
+
+			public static final int				ASCEND				= 1;
+
+			public static final int				DESCEND				= -1;
+
+			static
 			{
-				fields = KeysOf(object);
+				TYPE_RANK.put(Boolean.class, BOOLEAN_RANK);
+				TYPE_RANK.put(Number.class, NUMBER_RANK);
+				TYPE_RANK.put(Character.class, CHARACTER_RANK);
+				TYPE_RANK.put(CharSequence.class, STRING_RANK);
+				TYPE_RANK.put(java.util.Date.class, DATE_RANK);
+				TYPE_RANK.put(java.util.Calendar.class, CALENDAR_RANK);
+				TYPE_RANK.put(Hierarchical.class, HIERARCH_RANK);
 			}
 
-			if (fields != null)
+			protected static int CompareIndex(String a, String b)
 			{
-				reflect = new JSAN();
+				int c = 0;
 
-				for (String field : fields)
+				Integer indexA = Index(a), indexB = Index(b);
+
+				if (indexA == null && indexB == null)
 				{
-					reflect.add(field);
+					c = a.compareTo(b);
+				}
+				else if (indexA != null && indexB == null)
+				{
+					c = -1;
+				}
+				else if (indexA == null && indexB != null)
+				{
+					c = 1;
+				}
+				else
+				{
+					c = indexA - indexB;
 				}
-			}
-
-			return JSAN.Reflect(jsan, object, reflect);
-		}
 
-		public static JSAN Reflect(JSAN jsan, Object object, Iterable<?> fields)
-		{
-			JSAN reflect = null;
+				return c;
+			}
 
-			if (fields != null)
+			protected static short getTypeRank(Object value)
 			{
-				reflect = new JSAN();
+				Short rank = null;
 
-				for (Object field : fields)
+				if (value != null)
 				{
-					if (field != null)
+					for (Entry<Class<?>, Short> entry : TYPE_RANK.entrySet())
 					{
-						reflect.add(field);
+						if (Tools.superClass(value, entry.getKey()) != null)
+						{
+							rank = entry.getValue();
+							break;
+						}
 					}
 				}
+
+				return rank == null ? NONE_RANK : rank;
 			}
 
-			return JSAN.Reflect(jsan, object, reflect);
-		}
+			private int order;
 
-		@SuppressWarnings("unchecked")
-		public static JSAN Reflect(JSAN jsan, Object object, JSAN reflect)
-		{
-			if (object != null)
+			public GeneralValueComparator()
 			{
-				if (jsan == null)
+				this(ASCEND);
+			}
+
+			public GeneralValueComparator(int order)
+			{
+				this.order = order >= 0 ? ASCEND : DESCEND;
+			}
+
+			public int compare(Object a, Object b)
+			{
+				int c = 0;
+
+				if (a == null && b == null)
 				{
-					jsan = new JSAN().reflects(object.getClass(), reflect);
+					c = 0;
 				}
-
-				if (IsJSAN(object))
+				else if (a == null && b != null)
 				{
-					JSAN obj = (JSAN) object;
+					c = 1;
+				}
+				else if (a != null && b == null)
+				{
+					c = -1;
+				}
+				else
+				{
+					Object x = a, y = b;
 
-					if (reflect == null)
+					if (IsQuotation(a))
 					{
-						jsan.putAll(obj);
+						x = ((Quotation) x).quote();
 					}
-					else
+
+					if (IsQuotation(b))
 					{
-						for (Pair pair : reflect.pairs())
-						{
-							try
-							{
-								String key = pair.getValue().toString();
-
-								if (obj.containsKey(key))
-								{
-									jsan.attr(pair.getKey(), obj.attr(key));
-								}
-							}
-							catch (Exception e)
-							{
-							}
-						}
-					}
-				}
-				else if (IsJSON(object))
-				{
-					JSON obj = (JSON) object;
-
-					if (reflect == null)
-					{
-						jsan.putAll(obj);
-					}
-					else
-					{
-						for (Pair pair : reflect.pairs())
-						{
-							try
-							{
-								String key = pair.getValue().toString();
-
-								if (obj.containsKey(key))
-								{
-									jsan.attr(pair.getKey(), obj.attr(key));
-								}
-							}
-							catch (Exception e)
-							{
-							}
-						}
-					}
-				}
-				else if (object instanceof Map)
-				{
-					Map<String, ?> map = (Map<String, ?>) object;
-
-					if (reflect == null)
-					{
-						jsan.putAll(map);
-					}
-					else
-					{
-						for (Pair pair : reflect.pairs())
-						{
-							try
-							{
-								Object key = pair.getValue();
-
-								if (map.containsKey(key))
-								{
-									jsan.attr(pair.getKey(), map.get(key));
-								}
-							}
-							catch (Exception e)
-							{
-							}
-						}
+						y = ((Quotation) y).quote();
 					}
-				}
-				else if (object instanceof Iterable)
-				{
-					Iterable<Object> obj = (Iterable<Object>) object;
 
-					if (reflect == null)
-					{
-						int i = 0;
+					short rankX = getTypeRank(x), rankY = getTypeRank(y);
 
-						for (Object o : obj)
-						{
-							jsan.attr(i++, o);
-						}
-					}
-					else
+					if (rankX == rankY)
 					{
-						Map<Integer, List<String>> map = new HashMap<Integer, List<String>>();
-
-						for (Pair pair : reflect.pairs())
+						switch (rankX)
 						{
-							try
-							{
-								Integer index = Index(pair.getValue().toString());
+							case BOOLEAN_RANK:
+								// false=0, true=1
+								c = ((Boolean) x ? 1 : 0) - ((Boolean) y ? 1 : 0);
+								break;
 
-								if (index != null)
-								{
-									List<String> keys = map.get(index);
+							case NUMBER_RANK:
+								c = (int) Math.signum(((Number) x).doubleValue() - ((Number) y).doubleValue());
+								break;
 
-									if (keys == null)
-									{
-										keys = new ArrayList<String>();
-										map.put(index, keys);
-									}
+							case CHARACTER_RANK:
+								c = (Character) x - (Character) y;
+								break;
 
-									keys.add(pair.getKey());
-								}
-							}
-							catch (Exception e)
-							{
-							}
-						}
+							case STRING_RANK:
+								c = ((CharSequence) x).toString().compareTo(((CharSequence) y).toString());
+								break;
 
-						int i = 0;
+							case DATE_RANK:
+								c = (int) Math.signum(((java.util.Date) x).getTime() - ((java.util.Date) y).getTime());
+								break;
 
-						for (Object o : obj)
-						{
-							if (map.isEmpty())
-							{
+							case CALENDAR_RANK:
+								c = (int) Math.signum(((java.util.Calendar) x).getTimeInMillis()
+										- ((java.util.Calendar) y).getTimeInMillis());
 								break;
-							}
-							else if (map.containsKey(i))
-							{
-								for (String k : map.get(i))
+
+							case HIERARCH_RANK:
+								// For Hierarchical values, compare the entry.
+								// This means keep its order in the JSAN.
+								if (!Tools.equals(x, y))
 								{
-									jsan.attr(k, o);
+									c = CompareIndex(((Hierarchical) a).entry(), ((Hierarchical) b).entry());
 								}
-								map.remove(i);
-							}
-							i++;
-						}
-					}
-				}
-				else if (IsArray(object))
-				{
-					int len = Array.getLength(object);
+								break;
 
-					if (reflect == null)
-					{
-						for (int i = 0; i < len; i++)
-						{
-							jsan.attr(i, Array.get(object, i));
+							default:
+								c = x.hashCode() - y.hashCode();
+								break;
 						}
 					}
 					else
 					{
-						Map<Integer, List<String>> map = new HashMap<Integer, List<String>>();
-
-						for (Pair pair : reflect.pairs())
-						{
-							try
-							{
-								Integer index = Index(pair.getValue().toString());
-
-								if (index != null)
-								{
-									List<String> keys = map.get(index);
+						c = rankX - rankY;
+					}
+				}
 
-									if (keys == null)
-									{
-										keys = new ArrayList<String>();
-										map.put(index, keys);
-									}
+				return c * order;
+			}
+		}
 
-									keys.add(pair.getKey());
-								}
-							}
-							catch (Exception e)
-							{
-							}
-						}
+		public static interface Reflector<T>
+		{
+			public JSAN reflect(JSAN jsan, T obj);
+		}
 
-						for (int i = 0; !map.isEmpty() && i < len; i++)
-						{
-							if (map.containsKey(i))
-							{
-								Object o = Array.get(object, i);
+		/**
+		 * 
+		 */
+		private static final long	serialVersionUID	= 2156642568827950757L;
 
-								for (String k : map.get(i))
-								{
-									jsan.attr(k, o);
-								}
-								map.remove(i);
-							}
-						}
-					}
-				}
-				else if (reflect != null)
-				{
-					// Reflect Object using template
-					int i = 0;
+		public static final int		LAST				= -1;
 
-					for (Object field : reflect)
+		protected static Set<Entry<String, Object>> entrySet(List<Object> array)
+		{
+			return new IterableSet<Entry<String, Object>>(
+					Canal.of(array).zipWithIndex().map(new Mapper<Tuple2<Object, Integer>, Entry<String, Object>>()
 					{
-						try
-						{
-							i = Access(jsan, i, object, field.toString(), null);
-						}
-						catch (Exception e)
+						@Override
+						public Entry<String, Object> map(Tuple2<Object, Integer> t) throws Exception
 						{
+							return new DefaultEntry(Key(t._2.intValue()), t._1);
 						}
-					}
+					}), array.size());
+		}
+
+		/**
+		 * Get the index value of Object.
+		 * 
+		 * @param o
+		 *            object which may stand for an index
+		 * @return {@code null} if the object was {@code null} or the object's
+		 *         Integer {@code value < 0}, otherwise returns the Integer
+		 *         value.
+		 */
+		protected static Integer Index(Object o)
+		{
+			if (o != null)
+			{
+				if (o instanceof Integer)
+				{
+					Integer i = (Integer) o;
+					return i >= 0 ? i : null;
 				}
 				else
 				{
-					// Template is null.
-					jsan = JSAN.Reflect(jsan, object);
+					return Index(o.toString());
 				}
 			}
+			else
+			{
+				return null;
+			}
+		}
 
-			return jsan;
-		}
-
-		@SuppressWarnings("unchecked")
-		public static <T> JSAN Reflect(JSAN jsan, Object object, JSAN.Reflector<T> reflector)
+		/**
+		 * Get the index value of String.
+		 * 
+		 * @param key
+		 *            string which may stand for an index
+		 * @return {@code null} if the string was {@code null} or the string's
+		 *         Integer {@code value < 0}, otherwise returns the Integer
+		 *         value.
+		 */
+		protected static Integer Index(String key)
 		{
-			if (object != null && reflector != null)
+			if (key == null)
 			{
-				if (jsan == null)
-				{
-					jsan = new JSAN();
-				}
+				return null;
+			}
 
-				try
+			try
+			{
+				int index = Integer.parseInt(key);
+
+				if (index < 0)
 				{
-					jsan = (JSAN) reflector.reflect(jsan, (T) object);
+					return null;
 				}
-				catch (ClassCastException e)
+				else
 				{
+					return index;
 				}
 			}
-
-			return jsan;
-		}
-
-		public static JSAN Reflect(JSAN jsan, Object object, Map<String, ?> fields)
-		{
-			JSAN reflect = null;
-
-			if (fields != null)
+			catch (NumberFormatException e)
 			{
-				reflect = new JSAN();
-
-				for (Entry<String, ?> entry : fields.entrySet())
-				{
-					if (entry.getKey() != null && entry.getValue() != null)
-					{
-						reflect.put(entry.getKey(), entry.getValue());
-					}
-				}
+				return null;
 			}
-
-			return JSAN.Reflect(jsan, object, reflect);
 		}
 
-		public static JSAN Reflect(JSAN jsan, Object object, String... fields)
+		public static boolean IsTable(JSAN jsan)
 		{
-			JSAN reflect = null;
-
-			if (fields != null)
+			int columns = -1;
+			for (Object r : jsan)
 			{
-				reflect = new JSAN();
-
-				for (String field : fields)
+				if (r == null)
 				{
-					if (field != null)
-					{
-						reflect.add(field);
-					}
+					continue;
+				}
+				else if (!(r instanceof JSAN))
+				{
+					return false;
+				}
+				if (columns == -1)
+				{
+					columns = ((JSAN) r).size();
+				}
+				else if (columns != ((JSAN) r).size())
+				{
+					return false;
 				}
 			}
-
-			return JSAN.Reflect(jsan, object, reflect);
+			return true;
 		}
 
-		public static JSAN Reflect(Map<Class<?>, Object> reflects, Object object)
+		/**
+		 * Get a key string of an index.
+		 * 
+		 * @param i
+		 * @return
+		 */
+		protected static String Key(int i)
 		{
-			return JSAN.Reflect(null, reflects, object);
+			return String.valueOf(i);
 		}
 
-		public static JSAN Reflect(Object object)
+		protected static Set<String> keySet(List<Object> array)
 		{
-			return JSAN.Reflect((JSAN) null, object);
+			return new IterableSet<String>(Canal.of(Canal.range(0, array.size())).map(new Mapper<Integer, String>()
+			{
+				@Override
+				public String map(Integer i) throws Exception
+				{
+					return Key(i.intValue());
+				}
+			}), array.size());
 		}
 
-		public static JSAN Reflect(Object object, Iterable<?> fields)
+		protected static Collection<Object> nullsBeforeValue(int nulls, Object value)
 		{
-			return JSAN.Reflect(null, object, fields);
+			ArrayList<Object> arr = new ArrayList<Object>(nulls + 1);
+			for (int i = 0; i < nulls; i++)
+			{
+				arr.add(null);
+			}
+			arr.add(value);
+			return arr;
 		}
 
-		public static JSAN Reflect(Object object, Map<String, ?> reflect)
+		public static JSAN Of(Iterable<?> itr)
 		{
-			return JSAN.Reflect(null, object, reflect);
+			if (itr == null)
+			{
+				return null;
+			}
+			else if (itr instanceof JSAN)
+			{
+				return (JSAN) itr;
+			}
+			else
+			{
+				return new JSAN().addAll(itr);
+			}
 		}
 
-		public static JSAN Reflect(Object object, String... fields)
+		public static <T> JSAN Of(T... arr)
 		{
-			return JSAN.Reflect(null, object, fields);
+			if (arr == null)
+			{
+				return null;
+			}
+			else
+			{
+				return new JSAN().addAll(arr);
+			}
 		}
 
-		public static JSAN Sort(JSAN source, Set<Object> sorter, JSAN target)
+		public static JSAN Reflect(JSAN jsan, Map<Class<?>, Object> reflects, Object object)
 		{
-			if (source != null)
+			if (object != null)
 			{
-				if (sorter == null)
+				if (jsan == null)
 				{
-					sorter = new TreeSet<Object>();
+					jsan = new JSAN().reflects(reflects);
 				}
-				else
+
+				Object reflect = ReflectOf(object, reflects);
+
+				if (reflect instanceof JSAN.Reflector)
 				{
-					sorter.clear();
+					jsan = JSAN.Reflect(jsan, object, (JSAN.Reflector<?>) reflect);
 				}
-
-				if (target == null)
+				else if (reflect instanceof JSON.Reflector)
 				{
-					target = new JSAN().templates(source);
+					jsan = (JSAN) JSON.Reflect(jsan, object, (JSON.Reflector<?>) reflect);
+				}
+				else if (JSAN.IsJSAN(reflect))
+				{
+					jsan = JSAN.Reflect(jsan, object, (JSAN) reflect);
+				}
+				else if (JSON.IsJSON(reflect))
+				{
+					jsan = (JSAN) JSON.Reflect(jsan, object, (JSON) reflect);
+				}
+				else
+				{
+					jsan = (JSAN) JSAN.Reflect(jsan, object);
 				}
-
-				sorter.addAll(source.values());
-
-				// Must clear here after addTo in case of target==source
-				target.clear();
-
-				target.splice(0, 0, sorter);
 			}
 
-			return target;
+			return jsan;
 		}
 
-		public static JSAN Unique(JSAN source, JSAN target)
+		public static JSAN Reflect(JSAN jsan, Object object)
 		{
-			return Sort(source, new LinkedHashSet<Object>(), target);
-		}
+			JSAN reflect = null;
 
-		private List<Object> array;
+			Collection<String> fields = null;
 
-		public JSAN()
-		{
-			super();
-			array(new ArrayList<Object>());
-		}
+			if (!(object instanceof Map) && !(object instanceof Iterable) && !IsArray(object))
+			{
+				fields = KeysOf(object);
+			}
 
-		public JSAN(Object... values)
-		{
-			this();
-			addAll(LAST, values);
-		}
+			if (fields != null)
+			{
+				reflect = new JSAN();
 
-		public JSAN add(int index, Object object)
-		{
-			return splice(index, 0, object);
-		}
+				for (String field : fields)
+				{
+					reflect.add(field);
+				}
+			}
 
-		public JSAN add(Object object)
-		{
-			this.put(length(), object);
-			return this;
+			return JSAN.Reflect(jsan, object, reflect);
 		}
 
-		public JSAN addAll(boolean[] array)
+		public static JSAN Reflect(JSAN jsan, Object object, Iterable<?> fields)
 		{
-			for (boolean e : array)
-			{
-				this.add(e);
-			}
-			return this;
-		}
+			JSAN reflect = null;
 
-		public JSAN addAll(byte[] array)
-		{
-			for (byte e : array)
+			if (fields != null)
 			{
-				this.add(e);
+				reflect = new JSAN();
+
+				for (Object field : fields)
+				{
+					if (field != null)
+					{
+						reflect.add(field);
+					}
+				}
 			}
-			return this;
+
+			return JSAN.Reflect(jsan, object, reflect);
 		}
 
-		public JSAN addAll(char[] array)
+		@SuppressWarnings("unchecked")
+		public static JSAN Reflect(JSAN jsan, Object object, JSAN reflect)
 		{
-			for (char e : array)
+			if (object != null)
 			{
-				this.add(e);
-			}
+				if (jsan == null)
+				{
+					jsan = new JSAN().reflects(object.getClass(), reflect);
+				}
+
+				if (IsJSAN(object))
+				{
+					JSAN obj = (JSAN) object;
+
+					if (reflect == null)
+					{
+						jsan.putAll(obj);
+					}
+					else
+					{
+						for (Pair pair : reflect.pairs())
+						{
+							try
+							{
+								String key = pair.getValue().toString();
+
+								if (obj.containsKey(key))
+								{
+									jsan.attr(pair.getKey(), obj.attr(key));
+								}
+							}
+							catch (Exception e)
+							{
+							}
+						}
+					}
+				}
+				else if (IsJSON(object))
+				{
+					JSON obj = (JSON) object;
+
+					if (reflect == null)
+					{
+						jsan.putAll(obj);
+					}
+					else
+					{
+						for (Pair pair : reflect.pairs())
+						{
+							try
+							{
+								String key = pair.getValue().toString();
+
+								if (obj.containsKey(key))
+								{
+									jsan.attr(pair.getKey(), obj.attr(key));
+								}
+							}
+							catch (Exception e)
+							{
+							}
+						}
+					}
+				}
+				else if (object instanceof Map)
+				{
+					Map<String, ?> map = (Map<String, ?>) object;
+
+					if (reflect == null)
+					{
+						jsan.putAll(map);
+					}
+					else
+					{
+						for (Pair pair : reflect.pairs())
+						{
+							try
+							{
+								Object key = pair.getValue();
+
+								if (map.containsKey(key))
+								{
+									jsan.attr(pair.getKey(), map.get(key));
+								}
+							}
+							catch (Exception e)
+							{
+							}
+						}
+					}
+				}
+				else if (object instanceof Iterable)
+				{
+					Iterable<Object> obj = (Iterable<Object>) object;
+
+					if (reflect == null)
+					{
+						int i = 0;
+
+						for (Object o : obj)
+						{
+							jsan.attr(i++, o);
+						}
+					}
+					else
+					{
+						Map<Integer, List<String>> map = new HashMap<Integer, List<String>>();
+
+						for (Pair pair : reflect.pairs())
+						{
+							try
+							{
+								Integer index = Index(pair.getValue().toString());
+
+								if (index != null)
+								{
+									List<String> keys = map.get(index);
+
+									if (keys == null)
+									{
+										keys = new ArrayList<String>();
+										map.put(index, keys);
+									}
+
+									keys.add(pair.getKey());
+								}
+							}
+							catch (Exception e)
+							{
+							}
+						}
+
+						int i = 0;
+
+						for (Object o : obj)
+						{
+							if (map.isEmpty())
+							{
+								break;
+							}
+							else if (map.containsKey(i))
+							{
+								for (String k : map.get(i))
+								{
+									jsan.attr(k, o);
+								}
+								map.remove(i);
+							}
+							i++;
+						}
+					}
+				}
+				else if (IsArray(object))
+				{
+					int len = Array.getLength(object);
+
+					if (reflect == null)
+					{
+						for (int i = 0; i < len; i++)
+						{
+							jsan.attr(i, Array.get(object, i));
+						}
+					}
+					else
+					{
+						Map<Integer, List<String>> map = new HashMap<Integer, List<String>>();
+
+						for (Pair pair : reflect.pairs())
+						{
+							try
+							{
+								Integer index = Index(pair.getValue().toString());
+
+								if (index != null)
+								{
+									List<String> keys = map.get(index);
+
+									if (keys == null)
+									{
+										keys = new ArrayList<String>();
+										map.put(index, keys);
+									}
+
+									keys.add(pair.getKey());
+								}
+							}
+							catch (Exception e)
+							{
+							}
+						}
+
+						for (int i = 0; !map.isEmpty() && i < len; i++)
+						{
+							if (map.containsKey(i))
+							{
+								Object o = Array.get(object, i);
+
+								for (String k : map.get(i))
+								{
+									jsan.attr(k, o);
+								}
+								map.remove(i);
+							}
+						}
+					}
+				}
+				else if (reflect != null)
+				{
+					// Reflect Object using template
+					int i = 0;
+
+					for (Object field : reflect)
+					{
+						try
+						{
+							i = Access(jsan, i, object, field.toString(), null);
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
+				else
+				{
+					// Template is null.
+					jsan = JSAN.Reflect(jsan, object);
+				}
+			}
+
+			return jsan;
+		}
+
+		@SuppressWarnings("unchecked")
+		public static <T> JSAN Reflect(JSAN jsan, Object object, JSAN.Reflector<T> reflector)
+		{
+			if (object != null && reflector != null)
+			{
+				if (jsan == null)
+				{
+					jsan = new JSAN();
+				}
+
+				try
+				{
+					jsan = (JSAN) reflector.reflect(jsan, (T) object);
+				}
+				catch (ClassCastException e)
+				{
+				}
+			}
+
+			return jsan;
+		}
+
+		public static JSAN Reflect(JSAN jsan, Object object, Map<String, ?> fields)
+		{
+			JSAN reflect = null;
+
+			if (fields != null)
+			{
+				reflect = new JSAN();
+
+				for (Entry<String, ?> entry : fields.entrySet())
+				{
+					if (entry.getKey() != null && entry.getValue() != null)
+					{
+						reflect.put(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+
+			return JSAN.Reflect(jsan, object, reflect);
+		}
+
+		public static JSAN Reflect(JSAN jsan, Object object, String... fields)
+		{
+			JSAN reflect = null;
+
+			if (fields != null)
+			{
+				reflect = new JSAN();
+
+				for (String field : fields)
+				{
+					if (field != null)
+					{
+						reflect.add(field);
+					}
+				}
+			}
+
+			return JSAN.Reflect(jsan, object, reflect);
+		}
+
+		public static JSAN Reflect(Map<Class<?>, Object> reflects, Object object)
+		{
+			return JSAN.Reflect(null, reflects, object);
+		}
+
+		public static JSAN Reflect(Object object)
+		{
+			return JSAN.Reflect((JSAN) null, object);
+		}
+
+		public static JSAN Reflect(Object object, Iterable<?> fields)
+		{
+			return JSAN.Reflect(null, object, fields);
+		}
+
+		public static JSAN Reflect(Object object, Map<String, ?> reflect)
+		{
+			return JSAN.Reflect(null, object, reflect);
+		}
+
+		public static JSAN Reflect(Object object, String... fields)
+		{
+			return JSAN.Reflect(null, object, fields);
+		}
+
+		public static JSAN Sort(JSAN source, Set<Object> sorter, JSAN target)
+		{
+			if (source != null)
+			{
+				if (sorter == null)
+				{
+					sorter = new TreeSet<Object>();
+				}
+				else
+				{
+					sorter.clear();
+				}
+
+				if (target == null)
+				{
+					target = new JSAN().templates(source);
+				}
+
+				sorter.addAll(source.values());
+
+				// Must clear here after addTo in case of target==source
+				target.clear();
+
+				target.splice(0, 0, sorter);
+			}
+
+			return target;
+		}
+
+		public static JSAN Unique(JSAN source, JSAN target)
+		{
+			return Sort(source, new LinkedHashSet<Object>(), target);
+		}
+
+		private List<Object> array;
+
+		public JSAN()
+		{
+			super();
+			array(new ArrayList<Object>());
+		}
+
+		public JSAN(Object... values)
+		{
+			this();
+			addAll(LAST, values);
+		}
+
+		public JSAN add(int index, Object object)
+		{
+			return splice(index, 0, object);
+		}
+
+		public JSAN add(Object object)
+		{
+			this.put(length(), object);
+			return this;
+		}
+
+		public JSAN addAll(boolean[] array)
+		{
+			for (boolean e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(byte[] array)
+		{
+			for (byte e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(char[] array)
+		{
+			for (char e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(double[] array)
+		{
+			for (double e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(float[] array)
+		{
+			for (float e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(int index, boolean[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (boolean e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int index, byte[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (byte e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int index, char[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (char e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int index, Collection<? extends Object> collection)
+		{
+			splice(index, 0, collection);
+			return this;
+		}
+
+		public JSAN addAll(int index, double[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (double e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int index, float[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (float e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int index, int[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (int e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int index, JSAN jsan)
+		{
+			splice(index, 0, jsan);
+			return this;
+		}
+
+		public JSAN addAll(int index, long[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (long e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int index, Object... array)
+		{
+			splice(index, 0, array);
+			return this;
+		}
+
+		public JSAN addAll(int index, short[] array)
+		{
+			Object[] objects = new Object[array.length];
+			int i = 0;
+			for (short e : array)
+			{
+				objects[i++] = e;
+			}
+			addAll(index, objects);
+			return this;
+		}
+
+		public JSAN addAll(int[] array)
+		{
+			for (int e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(Iterable<? extends Object> iterable)
+		{
+			for (Object e : iterable)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(JSAN jsan)
+		{
+			for (Object e : jsan)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(long[] array)
+		{
+			for (long e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(Object[] array)
+		{
+			for (Object e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addAll(short[] array)
+		{
+			for (short e : array)
+			{
+				this.add(e);
+			}
+			return this;
+		}
+
+		public JSAN addLast(Object... values)
+		{
+			return addAll(length(), values);
+		}
+
+		@SuppressWarnings("unchecked")
+		public <E extends Object, T extends Collection<E>> T addTo(T collection)
+		{
+			if (collection != null)
+			{
+				for (Object o : this)
+				{
+					try
+					{
+						collection.add((E) o);
+					}
+					catch (ClassCastException e)
+					{
+					}
+				}
+			}
+			return collection;
+		}
+
+		public <E extends Object, T extends Collection<E>> T addTo(T collection, Class<E> cls)
+		{
+			if (cls == null)
+			{
+				return addTo(collection);
+			}
+			else
+			{
+				if (collection != null)
+				{
+					for (Object o : this)
+					{
+						try
+						{
+							collection.add(cls.cast(o));
+						}
+						catch (ClassCastException e)
+						{
+						}
+					}
+				}
+				return collection;
+			}
+		}
+
+		public <E extends Object, T extends Collection<E>> T addTo(T collection, Mapper<Object, E> mapper)
+		{
+			if (mapper == null)
+			{
+				return addTo(collection);
+			}
+			else
+			{
+				if (collection != null)
+				{
+					for (Object o : this)
+					{
+						try
+						{
+							collection.add(mapper.map(o));
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
+				return collection;
+			}
+		}
+
+		public <E extends Object, T extends Collection<E>> T addTo(T collection, Transform<E> transform)
+		{
+			if (transform == null)
+			{
+				return addTo(collection);
+			}
+			else
+			{
+				if (collection != null)
+				{
+					for (Pair pair : this.pairs())
+					{
+						try
+						{
+							collection.add(transform.transform(this, pair.getKey(), pair.getValue()));
+						}
+						catch (Exception e)
+						{
+						}
+					}
+				}
+				return collection;
+			}
+		}
+
+		protected List<Object> array()
+		{
+			return array;
+		}
+
+		protected JSAN array(List<Object> array)
+		{
+			if (array == null)
+			{
+				throw new NullPointerException();
+			}
+			else
+			{
+				this.array = array;
+				return this;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		public <E> E attr(int index)
+		{
+			try
+			{
+				return (E) this.get(index);
+			}
+			catch (ClassCastException e)
+			{
+				return null;
+			}
+		}
+
+		public JSAN attr(int index, Object value)
+		{
+			this.put(index, value);
+			return this;
+		}
+
+		@Override
+		public <E> E attr(String key)
+		{
+			E element = null;
+
+			if (key != null)
+			{
+				Integer index = Index(key.toString());
+
+				if (index == null)
+				{
+					element = super.attr(key);
+				}
+				else
+				{
+					element = this.attr(index);
+				}
+			}
+
+			return element;
+		}
+
+		@Override
+		public JSAN attrAll(Map<String, ?> map)
+		{
+			this.putAll(map);
+			return this;
+		}
+
+		/**
+		 * Fetch the value corresponding to the index. If the value is JSAN then
+		 * directly return the value. Otherwise, the value will be add to a new
+		 * JSAN and the JSAN will be returned after it set to this JSON. If the
+		 * key not existed in the JSON or the value was null, then a new empty
+		 * JSAN will be set and returned.
+		 * 
+		 * @param idx
+		 *            the index of value
+		 * @return
+		 * @see #valAsJSAN(int, boolean)
+		 */
+		public JSAN attrAsJSAN(int idx)
+		{
+			return attrAsJSAN(idx, true);
+		}
+
+		/**
+		 * Fetch the value corresponding to the index. If the value is JSAN then
+		 * directly return the value. Otherwise, the value will be add to a new
+		 * JSAN and the JSAN will be returned after it set to this JSON. If the
+		 * key not existed in the JSON, then a new empty JSAN will be set and
+		 * returned.
+		 * 
+		 * @param idx
+		 *            the index of value
+		 * @param emptyIfNull
+		 *            Whether the result JSAN remains empty if the value is null
+		 * @return
+		 * @see #valAsJSAN(int, boolean)
+		 */
+		public JSAN attrAsJSAN(int idx, boolean emptyIfNull)
+		{
+			return attrAsJSAN(idx, emptyIfNull, false);
+		}
+
+		/**
+		 * Fetch the value corresponding to the index. If the value is JSAN then
+		 * directly return the value. Otherwise, the value will be add to a new
+		 * JSAN and the JSAN will be returned after it set to this JSON.
+		 * 
+		 * @param idx
+		 *            the index of value
+		 * @param emptyIfNull
+		 *            Whether the result JSAN remains empty if the value is null
+		 * @param nullIfMiss
+		 *            Whether treat miss key as null value
+		 * @return
+		 * @see #valAsJSAN(int, boolean, boolean)
+		 */
+		public JSAN attrAsJSAN(int idx, boolean emptyIfNull, boolean nullIfMiss)
+		{
+			if (!nullIfMiss && !this.has(idx))
+			{
+				JSAN res = new JSAN().templates(this);
+				this.attr(idx, res);
+				return res;
+			}
+			else
+			{
+				Object v = this.attr(idx);
+				if (v instanceof JSAN)
+				{
+					return (JSAN) v;
+				}
+				else
+				{
+					JSAN res = new JSAN().templates(this);
+					if (v != null || !emptyIfNull)
+					{
+						res.add(v);
+					}
+					this.attr(idx, res);
+					return res;
+				}
+			}
+		}
+
+		public BigDecimal attrBigDecimal(int index)
+		{
+			return attrCast(index, BigDecimal.class);
+		}
+
+		public BigInteger attrBigInteger(int index)
+		{
+			return attrCast(index, BigInteger.class);
+		}
+
+		public Boolean attrBoolean(int index)
+		{
+			return attrCast(index, Boolean.class);
+		}
+
+		public Byte attrByte(int index)
+		{
+			return attrCast(index, Byte.class);
+		}
+
+		public Calendar attrCalendar(int index)
+		{
+			return attrCast(index, Calendar.class);
+		}
+
+		public <E> E attrCast(int index, Class<E> cls)
+		{
+			return CastAs(this.attr(index), cls);
+		}
+
+		public Character attrCharacter(int index)
+		{
+			return attrCast(index, Character.class);
+		}
+
+		public Date attrDate(int index)
+		{
+			return attrCast(index, Date.class);
+		}
+
+		public Double attrDouble(int index)
+		{
+			return attrCast(index, Double.class);
+		}
+
+		public Float attrFloat(int index)
+		{
+			return attrCast(index, Float.class);
+		}
+
+		public Function attrFunction(int index)
+		{
+			return attrCast(index, Function.class);
+		}
+
+		public <E> E attrIfAbsent(int index, Class<E> type, Mapper<Integer, E> map)
+		{
+			E val = this.attrCast(index, type);
+			if (val == null)
+			{
+				try
+				{
+					this.attr(index, val = map.map(index));
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+			return val;
+		}
+
+		public <E> E attrIfPresent(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
+		{
+			E val = this.attrCast(index, type);
+			if (val != null)
+			{
+				try
+				{
+					this.attr(index, val = map.map(index, val));
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+			return val;
+		}
+
+		public Integer attrInteger(int index)
+		{
+			return attrCast(index, Integer.class);
+		}
+
+		public JSAN attrJSAN(int index)
+		{
+			return attrCast(index, JSAN.class);
+		}
+
+		public JSON attrJSON(int index)
+		{
+			return attrCast(index, JSON.class);
+		}
+
+		public Long attrLong(int index)
+		{
+			return attrCast(index, Long.class);
+		}
+
+		public <E> E attrMerge(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
+		{
+			E val = this.attrCast(index, type);
+			try
+			{
+				this.attr(index, val = map.map(index, val));
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
+			}
+			return val;
+		}
+
+		public Object attrObject(int index)
+		{
+			return attr(index);
+		}
+
+		public Short attrShort(int index)
+		{
+			return attrCast(index, Short.class);
+		}
+
+		public String attrString(int index)
+		{
+			return attrCast(index, String.class);
+		}
+
+		public Time attrTime(int index)
+		{
+			return attrCast(index, Time.class);
+		}
+
+		public Timestamp attrTimestamp(int index)
+		{
+			return attrCast(index, Timestamp.class);
+		}
+
+		/**
+		 * Restore the index and limit its value within {@code [0,length()]}
+		 * 
+		 * @param index
+		 * @return
+		 * @see #index(int)
+		 */
+		protected int bound(int index)
+		{
+			return Tools.limitNumber(index(index), 0, length());
+		}
+
+		@Override
+		public JSAN clean()
+		{
+			this.clear();
+			return this;
+		}
+
+		@Override
+		public void clear()
+		{
+			super.clear();
+			array().clear();
+		}
+
+		@Override
+		public JSAN clone()
+		{
+			return new JSAN().templates(this).clone(this);
+		}
+
+		public boolean contains(Object obj)
+		{
+			return this.containsValue(obj);
+		}
+
+		public boolean containsAll(Iterable<? extends Object> iterable)
+		{
+			boolean contains = false;
+			if (iterable != null)
+			{
+				contains = true;
+				for (Object o : iterable)
+				{
+					if (!this.containsValue(o))
+					{
+						contains = false;
+						break;
+					}
+				}
+			}
+			return contains;
+		}
+
+		@Override
+		public boolean containsKey(Object key)
+		{
+			Integer index = Index(key);
+			return index != null ? index < length() : super.containsKey(key);
+		}
+
+		@Override
+		public boolean containsValue(Object value)
+		{
+			return array().contains(value) || object().containsValue(value);
+		}
+
+		@Override
+		public JSAN delete(Object value)
+		{
+			super.delete(value);
+			return this;
+		}
+
+		@Override
+		public JSAN deleteAll(Iterable<? extends Object> values)
+		{
+			super.deleteAll(values);
+			return this;
+		}
+
+		@Override
+		public JSAN deleteAll(Object value)
+		{
+			super.deleteAll(value);
+			return this;
+		}
+
+		@Override
+		public JSAN entry(String entry)
+		{
+			super.entry(entry);
+			return this;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Set<Map.Entry<String, Object>> entrySet()
+		{
+			return new CombinedSet<Map.Entry<String, Object>>(entrySet(array()), object().entrySet());
+		}
+
+		public boolean equalValues(JSAN jsan)
+		{
+			return this.size() == jsan.size() && this.containsAll(jsan) && jsan.containsAll(this);
+		}
+
+		public Object get(int index)
+		{
+			return Quote(this.got(index));
+		}
+
+		public Object get(Integer index)
+		{
+			return index != null ? get(index.intValue()) : null;
+		}
+
+		@Override
+		public Object get(Object key)
+		{
+			return Quote(this.got(key));
+		}
+
+		protected Object got(int index)
+		{
+			if (index >= 0)
+			{
+				return index < length() ? array().get(index) : null;
+			}
+			else
+			{
+				return super.got(Key(index));
+			}
+		}
+
+		@Override
+		protected Object got(Object key)
+		{
+			Object element = null;
+
+			if (key != null)
+			{
+				Integer idx = Index(key);
+
+				if (idx != null)
+				{
+					element = this.got(idx.intValue());
+				}
+				else
+				{
+					element = super.got(key);
+				}
+			}
+
+			return element;
+		}
+
+		public boolean has(int index)
+		{
+			return (0 <= index && index < length()) || super.has(Key(index));
+		}
+
+		@Override
+		public boolean has(String entry)
+		{
+			Integer index = Index(entry);
+			return index != null ? has(index) : super.has(entry);
+		}
+
+		/**
+		 * Get restored index value.
+		 * 
+		 * @param index
+		 *            raw index
+		 * @return {@code index+length()} if {@code index < 0}, otherwise
+		 *         returns index itself.
+		 */
+		protected int index(int index)
+		{
+			return index < 0 ? index + length() : index;
+		}
+
+		@Override
+		public boolean isEmpty()
+		{
+			return array().isEmpty() && super.isEmpty();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Set<String> keySet()
+		{
+			return new CombinedSet<String>(keySet(array()), object().keySet());
+		}
+
+		public String lastKeyOf(Object value)
+		{
+			String key = null;
+
+			if (containsValue(value))
+			{
+				ValueIterator<Object> iter = new ValueIterator<Object>().reset(size());
+				while (iter.hasPrevious())
+				{
+					iter.previous();
+
+					if (Tools.equals(value, iter.get()))
+					{
+						key = iter.key();
+						break;
+					}
+				}
+			}
+
+			return key;
+		}
+
+		/**
+		 * The length of this JSAN. Which excludes the JSON part.
+		 * 
+		 * @return
+		 * @see #size()
+		 */
+		public int length()
+		{
+			return array().size();
+		}
+
+		@Override
+		public JSAN outer(JSON outer)
+		{
+			super.outer(outer);
+			return this;
+		}
+
+		@Override
+		public JSAN pairs(Iterable<? extends Object> pairs)
+		{
+			super.pairs(pairs);
+			return this;
+		}
+
+		@Override
+		public JSAN pairs(JSAN jsan)
+		{
+			super.pairs(jsan);
+			return this;
+		}
+
+		@Override
+		public JSAN pairs(JSON json)
+		{
+			super.pairs(json);
+			return this;
+		}
+
+		@Override
+		public JSAN pairs(Map<? extends String, ? extends Object> map)
+		{
+			super.pairs(map);
+			return this;
+		}
+
+		@Override
+		public JSAN pairs(Object... pairs)
+		{
+			super.pairs(pairs);
+			return this;
+		}
+
+		@Override
+		public JSAN projects(Class<?> cls, Iterable<?> fields)
+		{
+			super.projects(cls, fields);
+			return this;
+		}
+
+		@Override
+		public JSAN projects(Class<?> cls, JSAN project)
+		{
+			super.projects(cls, project);
+			return this;
+		}
+
+		@Override
+		public JSAN projects(Class<?> cls, JSON project)
+		{
+			super.projects(cls, project);
+			return this;
+		}
+
+		@Override
+		public JSAN projects(Class<?> cls, Map<String, Object> project)
+		{
+			super.projects(cls, project);
+			return this;
+		}
+
+		@Override
+		public JSAN projects(Class<?> cls, String... fields)
+		{
+			super.projects(cls, fields);
+			return this;
+		}
+
+		@Override
+		public <T> JSAN projects(Class<T> cls, JSON.Projector<T> projector)
+		{
+			super.projects(cls, projector);
+			return this;
+		}
+
+		@Override
+		public JSAN projects(JSON json)
+		{
+			super.projects(json);
+			return this;
+		}
+
+		@Override
+		public JSAN projects(Map<Class<?>, Object> projects)
+		{
+			super.projects(projects);
+			return this;
+		}
+
+		@Override
+		public JSAN projectsRemove(Class<?> cls)
+		{
+			super.projectsRemove(cls);
+			return this;
+		}
+
+		@Override
+		public JSAN projectStrict(boolean strict)
+		{
+			super.projectStrict(strict);
+			return this;
+		}
+
+		@Override
+		public JSAN projectStrict(JSON json)
+		{
+			super.projectStrict(json);
+			return this;
+		}
+
+		public JSAN pushAll(Iterable<? extends Object> values)
+		{
+			for (Object o : values)
+			{
+				this.add(o);
+			}
+			return this;
+		}
+
+		public JSAN pushAll(Object... values)
+		{
+			for (Object o : values)
+			{
+				this.add(o);
+			}
 			return this;
 		}
 
-		public JSAN addAll(double[] array)
+		public Object put(int index, Object value)
+		{
+			String key = Key(index);
+
+			if (index < 0)
+			{
+				return super.put(key, value);
+			}
+
+			Object old = this.got(index);
+			// Clear the old hierarchical relation.
+			Hierarchical hirch = AsHierarchical(old);
+			if (hirch != null && hirch.outer() == this)
+			{
+				hirch.outer(null).entry(null);
+			}
+
+			Transform<?> transform = this.transformOf(key, value);
+			if (transform != null)
+			{
+				value = transform.transform(this, key, value);
+			}
+
+			value = ValueOf(value, reflects());
+
+			hirch = AsHierarchical(value);
+			if (hirch != null)
+			{
+				// Build up new hierarchical relation.
+				JSON formalOuter = hirch.outer();
+				String formalEntry = hirch.entry();
+				JSON formalContext = hirch.context();
+
+				hirch.outer(this).entry(key);
+
+				// If in a Context.
+				if (formalOuter != null && IsContext(formalContext) && IsJSON(hirch))
+				{
+					// The formal outer would quote the value at its new
+					// location.
+					if (formalContext == this.context())
+					{
+						// A quote would be made only in the same Context.
+						formalOuter.put(formalEntry, AsJSON(hirch).quote());
+					}
+				}
+			}
+
+			int len = length();
+
+			if (index < len)
+			{
+				array().set(index, value);
+			}
+			else if (index == len)
+			{
+				array().add(value);
+			}
+			else
+			{
+				array().addAll(nullsBeforeValue(index - len, value));
+			}
+
+			return old;
+		}
+
+		@Override
+		public Object put(String key, Object value)
+		{
+			Object old = null;
+
+			if (key != null)
+			{
+				Integer index = Index(key);
+
+				if (index == null)
+				{
+					old = super.put(key, value);
+				}
+				else
+				{
+					old = this.put(index, value);
+				}
+			}
+
+			return old;
+		}
+
+		@Override
+		public void putAll(Map<? extends String, ? extends Object> map)
 		{
-			for (double e : array)
+			for (Map.Entry<?, ?> entry : map.entrySet())
 			{
-				this.add(e);
+				this.put((String) entry.getKey(), entry.getValue());
 			}
-			return this;
 		}
 
-		public JSAN addAll(float[] array)
+		@Override
+		public JSAN readonly()
 		{
-			for (float e : array)
+			for (Object o : this.array())
 			{
-				this.add(e);
+				if (o instanceof JSON)
+				{
+					((JSON) o).readonly();
+				}
 			}
+			return ((JSAN) super.readonly()).array(Collections.unmodifiableList(this.array()));
+		}
+
+		@Override
+		public JSAN reflect(Object object)
+		{
+			JSAN.Reflect(this, this.reflects(), object);
 			return this;
 		}
 
-		public JSAN addAll(int index, boolean[] array)
+		@Override
+		public JSAN reflect(Object object, Iterable<?> reflect)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (boolean e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			JSAN.Reflect(this, object, reflect);
 			return this;
 		}
 
-		public JSAN addAll(int index, byte[] array)
+		public <T> JSAN reflect(Object object, JSAN.Reflector<T> reflector)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (byte e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			JSAN.Reflect(this, object, reflector);
 			return this;
 		}
 
-		public JSAN addAll(int index, char[] array)
+		@Override
+		public JSAN reflect(Object object, Map<String, ?> reflect)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (char e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			JSAN.Reflect(this, object, reflect);
 			return this;
 		}
 
-		public JSAN addAll(int index, Collection<? extends Object> collection)
+		@Override
+		public JSAN reflect(Object object, String... fields)
 		{
-			splice(index, 0, collection);
+			JSAN.Reflect(this, object, fields);
 			return this;
 		}
 
-		public JSAN addAll(int index, double[] array)
+		@Override
+		public JSAN reflects(Class<?> cls, JSAN reflect)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (double e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			super.reflects(cls, reflect);
 			return this;
 		}
 
-		public JSAN addAll(int index, float[] array)
+		@Override
+		public JSAN reflects(Class<?> cls, JSON reflect)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (float e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			super.reflects(cls, reflect);
 			return this;
 		}
 
-		public JSAN addAll(int index, int[] array)
+		@Override
+		public <T> JSAN reflects(Class<T> cls, JSAN.Reflector<T> reflector)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (int e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			super.reflects(cls, reflector);
 			return this;
 		}
 
-		public JSAN addAll(int index, JSAN jsan)
+		@Override
+		public <T> JSAN reflects(Class<T> cls, JSON.Reflector<T> reflector)
 		{
-			splice(index, 0, jsan);
+			super.reflects(cls, reflector);
 			return this;
 		}
 
-		public JSAN addAll(int index, long[] array)
+		@Override
+		public JSAN reflects(JSON json)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (long e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			super.reflects(json);
 			return this;
 		}
 
-		public JSAN addAll(int index, Object... array)
+		@Override
+		public JSAN reflects(Map<Class<?>, Object> reflects)
 		{
-			splice(index, 0, array);
+			super.reflects(reflects);
 			return this;
 		}
 
-		public JSAN addAll(int index, short[] array)
+		@Override
+		public JSAN reflectsJSAN(Class<?> cls, Iterable<?> fields)
 		{
-			Object[] objects = new Object[array.length];
-			int i = 0;
-			for (short e : array)
-			{
-				objects[i++] = e;
-			}
-			addAll(index, objects);
+			super.reflectsJSAN(cls, fields);
 			return this;
 		}
 
-		public JSAN addAll(int[] array)
+		@Override
+		public JSAN reflectsJSAN(Class<?> cls, JSAN fields)
 		{
-			for (int e : array)
-			{
-				this.add(e);
-			}
+			super.reflectsJSAN(cls, fields);
 			return this;
 		}
 
-		public JSAN addAll(Iterable<? extends Object> iterable)
+		@Override
+		public JSAN reflectsJSAN(Class<?> cls, JSON fields)
 		{
-			for (Object e : iterable)
-			{
-				this.add(e);
-			}
+			super.reflectsJSAN(cls, fields);
 			return this;
 		}
 
-		public JSAN addAll(JSAN jsan)
+		@Override
+		public JSAN reflectsJSAN(Class<?> cls, Map<String, ?> fields)
 		{
-			for (Object e : jsan)
-			{
-				this.add(e);
-			}
+			super.reflectsJSAN(cls, fields);
 			return this;
 		}
 
-		public JSAN addAll(long[] array)
+		@Override
+		public JSAN reflectsJSAN(Class<?> cls, String... fields)
 		{
-			for (long e : array)
-			{
-				this.add(e);
-			}
+			super.reflectsJSAN(cls, fields);
 			return this;
 		}
 
-		public JSAN addAll(Object[] array)
+		@Override
+		public JSAN reflectsJSON(Class<?> cls, Iterable<?> fields)
 		{
-			for (Object e : array)
-			{
-				this.add(e);
-			}
+			super.reflectsJSON(cls, fields);
 			return this;
 		}
 
-		public JSAN addAll(short[] array)
+		@Override
+		public JSAN reflectsJSON(Class<?> cls, JSAN fields)
 		{
-			for (short e : array)
-			{
-				this.add(e);
-			}
+			super.reflectsJSON(cls, fields);
 			return this;
 		}
 
-		public JSAN addLast(Object... values)
+		@Override
+		public JSAN reflectsJSON(Class<?> cls, JSON fields)
 		{
-			return addAll(length(), values);
+			super.reflectsJSON(cls, fields);
+			return this;
 		}
 
-		@SuppressWarnings("unchecked")
-		public <E extends Object, T extends Collection<E>> T addTo(T collection)
+		@Override
+		public JSAN reflectsJSON(Class<?> cls, Map<String, ?> fields)
 		{
-			if (collection != null)
-			{
-				for (Object o : this)
-				{
-					try
-					{
-						collection.add((E) o);
-					}
-					catch (ClassCastException e)
-					{
-					}
-				}
-			}
-			return collection;
+			super.reflectsJSON(cls, fields);
+			return this;
 		}
 
-		public <E extends Object, T extends Collection<E>> T addTo(T collection, Class<E> cls)
+		@Override
+		public JSAN reflectsJSON(Class<?> cls, String... fields)
 		{
-			if (cls == null)
+			super.reflectsJSON(cls, fields);
+			return this;
+		}
+
+		@Override
+		public JSAN reflectsRemove(Class<?> cls)
+		{
+			super.reflectsRemove(cls);
+			return this;
+		}
+
+		@Override
+		public Object remove(Object key)
+		{
+			if (key == null)
 			{
-				return addTo(collection);
+				return null;
 			}
 			else
 			{
-				if (collection != null)
+				Integer index = Index(key);
+
+				if (index == null)
 				{
-					for (Object o : this)
+					return super.remove(key);
+				}
+				else if (index >= length())
+				{
+					return null;
+				}
+				else
+				{
+					Object value = array().remove(index.intValue());
+
+					Hierarchical hirch = AsHierarchical(value);
+
+					if (hirch != null)
 					{
-						try
-						{
-							collection.add(cls.cast(o));
-						}
-						catch (ClassCastException e)
+						if (hirch.outer() == this)
 						{
+							hirch.outer(null).entry(null);
 						}
 					}
+
+					return value;
 				}
-				return collection;
 			}
 		}
 
-		public <E extends Object, T extends Collection<E>> T addTo(T collection, Mapper<Object, E> mapper)
+		@Override
+		public JSAN removeAll()
 		{
-			if (mapper == null)
+			return clean();
+		}
+
+		@Override
+		public JSAN removeAll(Iterable<? extends Object> keys)
+		{
+			if (keys != null)
 			{
-				return addTo(collection);
+				for (Object o : keys)
+				{
+					this.remove(o);
+				}
 			}
-			else
+			return this;
+		}
+
+		public JSAN retainAll(Collection<? extends Object> collection)
+		{
+			if (collection != null && !collection.isEmpty())
 			{
-				if (collection != null)
+				List<Object> temp = new ArrayList<Object>(this.size());
+				for (Object o : this)
 				{
-					for (Object o : this)
+					if (!collection.contains(o))
 					{
-						try
-						{
-							collection.add(mapper.map(o));
-						}
-						catch (Exception e)
-						{
-						}
+						temp.add(o);
 					}
 				}
-				return collection;
+				this.deleteAll(temp);
 			}
+			return this;
 		}
 
-		public <E extends Object, T extends Collection<E>> T addTo(T collection, Transform<E> transform)
+		public JSAN retainAll(JSAN jsan)
 		{
-			if (transform == null)
-			{
-				return addTo(collection);
-			}
-			else
+			if (jsan != null && !jsan.isEmpty())
 			{
-				if (collection != null)
+				List<Object> temp = new ArrayList<Object>(this.size());
+				for (Object o : this)
 				{
-					for (Pair pair : this.pairs())
+					if (!jsan.hasVal(o))
 					{
-						try
-						{
-							collection.add(transform.transform(this, pair.getKey(), pair.getValue()));
-						}
-						catch (Exception e)
-						{
-						}
+						temp.add(o);
 					}
 				}
-				return collection;
+				this.deleteAll(temp);
 			}
+			return this;
 		}
 
-		protected List<Object> array()
+		@Override
+		public int size()
 		{
-			return array;
+			return array().size() + super.size();
 		}
 
-		protected JSAN array(List<Object> array)
+		public JSAN slice(int start)
 		{
-			if (array == null)
+			return slice(start, this.length());
+		}
+
+		public JSAN slice(int start, int end)
+		{
+			return slice(null, start, end);
+		}
+
+		public JSAN slice(JSAN result, int start)
+		{
+			return slice(result, start, this.length());
+		}
+
+		public JSAN slice(JSAN result, int start, int end)
+		{
+			if (result == null)
 			{
-				throw new NullPointerException();
+				result = new JSAN().templates(this);
 			}
-			else
+
+			start = bound(start);
+			end = bound(end);
+
+			for (int i = start; i < end; i++)
 			{
-				this.array = array;
-				return this;
+				result.add(this.get(i));
 			}
+
+			return result;
 		}
 
-		@SuppressWarnings("unchecked")
-		public <E> E attr(int index)
+		public JSAN sort()
 		{
-			try
-			{
-				return (E) this.get(index);
-			}
-			catch (ClassCastException e)
+			return sort(this);
+		}
+
+		public JSAN sort(Comparator<Object> cmp)
+		{
+			return sort(cmp, this);
+		}
+
+		public JSAN sort(Comparator<Object> cmp, JSAN jsan)
+		{
+			if (cmp == null)
 			{
-				return null;
+				cmp = new GeneralValueComparator();
 			}
+
+			return sort(new TreeSet<Object>(cmp), jsan);
 		}
 
-		public JSAN attr(int index, Object value)
+		public JSAN sort(JSAN target)
 		{
-			this.put(index, value);
-			return this;
+			return sort(new GeneralValueComparator(), target);
 		}
 
-		@Override
-		public <E> E attr(String key)
+		public JSAN sort(Set<Object> sorter)
 		{
-			E element = null;
+			return sort(sorter, this);
+		}
 
-			if (key != null)
+		public JSAN sort(Set<Object> sorter, JSAN target)
+		{
+			return Sort(this, sorter, target);
+		}
+
+		public JSAN splice(int index, int cover, Collection<?> collection)
+		{
+			JSAN result = new JSAN().templates(this);
+
+			index = bound(index);
+			cover = Tools.limitNumber(cover, 0, length() - index);
+
+			int delta = collection.size() - cover;
+
+			for (int i = 0; i < cover; i++)
 			{
-				Integer index = Index(key.toString());
+				result.add(this.attr(index + i));
+			}
 
-				if (index == null)
+			if (delta < 0)
+			{ // Shrink
+				for (int i = delta; i < 0; i++)
 				{
-					element = super.attr(key);
+					this.remove(index);
 				}
-				else
+			}
+			else if (delta > 0)
+			{ // Expand
+				for (int i = 0; i < delta; i++)
 				{
-					element = this.attr(index);
+					array().add(index, null);
 				}
 			}
 
-			return element;
-		}
+			// Fill
+			int i = 0;
+			for (Object o : collection)
+			{
+				this.put(index + i, o);
+				i++;
+			}
 
-		@Override
-		public JSAN attrAll(Map<String, ?> map)
-		{
-			this.putAll(map);
-			return this;
+			return result;
 		}
 
-		/**
-		 * Fetch the value corresponding to the index. If the value is JSAN then
-		 * directly return the value. Otherwise, the value will be add to a new
-		 * JSAN and the JSAN will be returned after it set to this JSON. If the
-		 * key not existed in the JSON or the value was null, then a new empty
-		 * JSAN will be set and returned.
-		 * 
-		 * @param idx
-		 *            the index of value
-		 * @return
-		 * @see #valAsJSAN(int, boolean)
-		 */
-		public JSAN attrAsJSAN(int idx)
+		public JSAN splice(int index, int cover, JSAN jsan)
 		{
-			return attrAsJSAN(idx, true);
-		}
+			JSAN result = new JSAN().templates(this);
 
-		/**
-		 * Fetch the value corresponding to the index. If the value is JSAN then
-		 * directly return the value. Otherwise, the value will be add to a new
-		 * JSAN and the JSAN will be returned after it set to this JSON. If the
-		 * key not existed in the JSON, then a new empty JSAN will be set and
-		 * returned.
-		 * 
-		 * @param idx
-		 *            the index of value
-		 * @param emptyIfNull
-		 *            Whether the result JSAN remains empty if the value is null
-		 * @return
-		 * @see #valAsJSAN(int, boolean)
-		 */
-		public JSAN attrAsJSAN(int idx, boolean emptyIfNull)
-		{
-			return attrAsJSAN(idx, emptyIfNull, false);
+			index = bound(index);
+			cover = Tools.limitNumber(cover, 0, length() - index);
+
+			int delta = jsan.size() - cover;
+
+			for (int i = 0; i < cover; i++)
+			{
+				result.add(this.attr(index + i));
+			}
+
+			if (delta < 0)
+			{ // Shrink
+				for (int i = delta; i < 0; i++)
+				{
+					this.remove(index);
+				}
+			}
+			else if (delta > 0)
+			{ // Expand
+				for (int i = 0; i < delta; i++)
+				{
+					array().add(index, null);
+				}
+			}
+
+			// Fill
+			int i = 0;
+			for (Object o : jsan)
+			{
+				this.put(index + i, o);
+				i++;
+			}
+
+			return result;
 		}
 
-		/**
-		 * Fetch the value corresponding to the index. If the value is JSAN then
-		 * directly return the value. Otherwise, the value will be add to a new
-		 * JSAN and the JSAN will be returned after it set to this JSON.
-		 * 
-		 * @param idx
-		 *            the index of value
-		 * @param emptyIfNull
-		 *            Whether the result JSAN remains empty if the value is null
-		 * @param nullIfMiss
-		 *            Whether treat miss key as null value
-		 * @return
-		 * @see #valAsJSAN(int, boolean, boolean)
-		 */
-		public JSAN attrAsJSAN(int idx, boolean emptyIfNull, boolean nullIfMiss)
+		public JSAN splice(int index, int cover, Object... objects)
 		{
-			if (!nullIfMiss && !this.has(idx))
+			JSAN result = new JSAN().templates(this);
+
+			index = bound(index);
+			cover = Tools.limitNumber(cover, 0, length() - index);
+
+			int delta = objects.length - cover;
+
+			for (int i = 0; i < cover; i++)
 			{
-				JSAN res = new JSAN().templates(this);
-				this.attr(idx, res);
-				return res;
+				result.add(this.attr(index + i));
 			}
-			else
-			{
-				Object v = this.attr(idx);
-				if (v instanceof JSAN)
+
+			if (delta < 0)
+			{ // Shrink
+				for (int i = delta; i < 0; i++)
 				{
-					return (JSAN) v;
+					this.remove(index);
 				}
-				else
+			}
+			else if (delta > 0)
+			{ // Expand
+				for (int i = 0; i < delta; i++)
 				{
-					JSAN res = new JSAN().templates(this);
-					if (v != null || !emptyIfNull)
-					{
-						res.add(v);
-					}
-					this.attr(idx, res);
-					return res;
+					array().add(index, null);
 				}
 			}
-		}
 
-		public BigDecimal attrBigDecimal(int index)
-		{
-			return attrCast(index, BigDecimal.class);
-		}
+			// Fill
+			int i = 0;
+			for (Object o : objects)
+			{
+				this.put(index + i, o);
+				i++;
+			}
 
-		public BigInteger attrBigInteger(int index)
-		{
-			return attrCast(index, BigInteger.class);
+			return result;
 		}
 
-		public Boolean attrBoolean(int index)
+		@Override
+		public JSAN templates(JSON json)
 		{
-			return attrCast(index, Boolean.class);
+			super.templates(json);
+			return this;
 		}
 
-		public Byte attrByte(int index)
+		public Object[] toArray()
 		{
-			return attrCast(index, Byte.class);
-		}
+			Object[] array = new Object[size()];
 
-		public Calendar attrCalendar(int index)
-		{
-			return attrCast(index, Calendar.class);
-		}
+			int i = 0;
+			for (Object o : this)
+			{
+				array[i++] = o;
+			}
 
-		public <E> E attrCast(int index, Class<E> cls)
-		{
-			return CastAs(this.attr(index), cls);
+			return array;
 		}
 
-		public Character attrCharacter(int index)
+		@SuppressWarnings("unchecked")
+		public <T> T[] toArray(T[] array)
 		{
-			return attrCast(index, Character.class);
-		}
+			if (array.length < size())
+			{
+				array = (T[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), size());
+			}
 
-		public Date attrDate(int index)
-		{
-			return attrCast(index, Date.class);
-		}
+			int i = 0;
+			for (Object o : this)
+			{
+				array[i++] = (T) o;
+			}
 
-		public Double attrDouble(int index)
-		{
-			return attrCast(index, Double.class);
+			for (; i < array.length;)
+			{
+				array[i++] = null;
+			}
+
+			return array;
 		}
 
-		public Float attrFloat(int index)
+		@Override
+		public JSAN toJSAN()
 		{
-			return attrCast(index, Float.class);
+			return this;
 		}
 
-		public Function attrFunction(int index)
+		@Override
+		public JSAN transforms(JSON json)
 		{
-			return attrCast(index, Function.class);
+			super.transforms(json);
+			return this;
 		}
 
-		public <E> E attrIfAbsent(int index, Class<E> type, Mapper<Integer, E> map)
+		@Override
+		public JSAN transforms(Map<Object, Transform<?>> transforms)
 		{
-			E val = this.attrCast(index, type);
-			if (val == null)
-			{
-				try
-				{
-					this.attr(index, val = map.map(index));
-				}
-				catch (Exception e)
-				{
-					throw new RuntimeException(e);
-				}
-			}
-			return val;
+			super.transforms(transforms);
+			return this;
 		}
 
-		public <E> E attrIfPresent(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
+		@Override
+		public JSAN transforms(Object entry, Transform<?> transform)
 		{
-			E val = this.attrCast(index, type);
-			if (val != null)
-			{
-				try
-				{
-					this.attr(index, val = map.map(index, val));
-				}
-				catch (Exception e)
-				{
-					throw new RuntimeException(e);
-				}
-			}
-			return val;
+			super.transforms(entry, transform);
+			return this;
 		}
 
-		public Integer attrInteger(int index)
+		@Override
+		public JSAN transformsRemove(Object entry)
 		{
-			return attrCast(index, Integer.class);
+			super.transformsRemove(entry);
+			return this;
 		}
 
-		public JSAN attrJSAN(int index)
+		@Override
+		protected JSAN transformsSingleton()
 		{
-			return attrCast(index, JSAN.class);
+			super.transformsSingleton();
+			return this;
 		}
 
-		public JSON attrJSON(int index)
+		public JSAN unique()
 		{
-			return attrCast(index, JSON.class);
+			return unique(this);
 		}
 
-		public Long attrLong(int index)
+		public JSAN unique(JSAN target)
 		{
-			return attrCast(index, Long.class);
+			return Unique(this, target);
 		}
 
-		public <E> E attrMerge(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
+		@SuppressWarnings("unchecked")
+		public <E> E val(int index)
 		{
-			E val = this.attrCast(index, type);
 			try
 			{
-				this.attr(index, val = map.map(index, val));
+				return (E) attr(index);
 			}
-			catch (Exception e)
+			catch (ClassCastException e)
 			{
-				throw new RuntimeException(e);
+				return null;
 			}
-			return val;
-		}
-
-		public Object attrObject(int index)
-		{
-			return attr(index);
-		}
-
-		public Short attrShort(int index)
-		{
-			return attrCast(index, Short.class);
 		}
 
-		public String attrString(int index)
+		public <E> E val(int index, E defaultValue)
 		{
-			return attrCast(index, String.class);
+			E val = val(index);
+			return val == null ? defaultValue : val;
 		}
 
-		public Time attrTime(int index)
+		/**
+		 * Fetch the value corresponding to the index. If the value is JSAN then
+		 * directly return the value. Otherwise, the value will be add to a new
+		 * JSAN and the JSAN will be returned. If the key not existed in the
+		 * JSON or the value was null, then a new empty JSAN will be returned.
+		 * 
+		 * @param idx
+		 *            the index of value
+		 * @param emptyIfNull
+		 *            Whether the result JSAN remains empty if the value is null
+		 * @return
+		 * @see #attrAsJSAN(int)
+		 */
+		public JSAN valAsJSAN(int idx)
 		{
-			return attrCast(index, Time.class);
+			return valAsJSAN(idx, true);
 		}
 
-		public Timestamp attrTimestamp(int index)
+		/**
+		 * Fetch the value corresponding to the index. If the value is JSAN then
+		 * directly return the value. Otherwise, the value will be add to a new
+		 * JSAN and the JSAN will be returned. If the key not existed in the
+		 * JSON, then a new empty JSAN will be returned.
+		 * 
+		 * @param idx
+		 *            the index of value
+		 * @param emptyIfNull
+		 *            Whether the result JSAN remains empty if the value is null
+		 * @return
+		 * @see #attrAsJSAN(int, boolean)
+		 */
+		public JSAN valAsJSAN(int idx, boolean emptyIfNull)
 		{
-			return attrCast(index, Timestamp.class);
+			return valAsJSAN(idx, emptyIfNull, false);
 		}
 
 		/**
-		 * Restore the index and limit its value within {@code [0,length()]}
+		 * Fetch the value corresponding to the index. If the value is JSAN then
+		 * directly return the value. Otherwise, the value will be add to a new
+		 * JSAN and the JSAN will be returned.
 		 * 
-		 * @param index
+		 * @param idx
+		 *            the index of value
+		 * @param emptyIfNull
+		 *            Whether the result JSAN remains empty if the value is null
+		 * @param nullIfMiss
+		 *            Whether treat miss key as null value
 		 * @return
-		 * @see #index(int)
+		 * @see #attrAsJSAN(int, boolean, boolean)
 		 */
-		protected int bound(int index)
-		{
-			return Tools.limitNumber(index(index), 0, length());
-		}
-
-		@Override
-		public JSAN clean()
+		public JSAN valAsJSAN(int idx, boolean emptyIfNull, boolean nullIfMiss)
 		{
-			this.clear();
-			return this;
+			if (!nullIfMiss && !this.has(idx))
+			{
+				return new JSAN().templates(this);
+			}
+			else
+			{
+				Object v = this.attr(idx);
+				if (v instanceof JSAN)
+				{
+					return (JSAN) v;
+				}
+				else
+				{
+					JSAN res = new JSAN().templates(this);
+					if (v != null || !emptyIfNull)
+					{
+						res.add(v);
+					}
+					return res;
+				}
+			}
 		}
 
-		@Override
-		public void clear()
+		public BigDecimal valBigDecimal(int index)
 		{
-			super.clear();
-			array().clear();
+			return CastToBigDecimal(this.attr(index));
 		}
 
-		@Override
-		public JSAN clone()
+		public BigDecimal valBigDecimal(int index, double defaultValue)
 		{
-			return new JSAN().templates(this).clone(this);
+			BigDecimal val = valBigDecimal(index);
+			return val == null ? new BigDecimal(defaultValue) : val;
 		}
 
-		public boolean contains(Object obj)
+		public BigDecimal valBigDecimal(int index, String defaultValue)
 		{
-			return this.containsValue(obj);
+			BigDecimal val = valBigDecimal(index);
+			return val == null ? new BigDecimal(defaultValue) : val;
 		}
 
-		public boolean containsAll(Iterable<? extends Object> iterable)
+		public BigInteger valBigInteger(int index)
 		{
-			boolean contains = false;
-			if (iterable != null)
-			{
-				contains = true;
-				for (Object o : iterable)
-				{
-					if (!this.containsValue(o))
-					{
-						contains = false;
-						break;
-					}
-				}
-			}
-			return contains;
+			return CastToBigInteger(this.attr(index));
 		}
 
-		@Override
-		public boolean containsKey(Object key)
+		public BigInteger valBigInteger(int index, long defaultValue)
 		{
-			Integer index = Index(key);
-			return index != null ? index < length() : super.containsKey(key);
+			BigInteger val = valBigInteger(index);
+			return val == null ? new BigInteger(String.valueOf(defaultValue)) : val;
 		}
 
-		@Override
-		public boolean containsValue(Object value)
+		public BigInteger valBigInteger(int index, String defaultValue)
 		{
-			return array().contains(value) || object().containsValue(value);
+			BigInteger val = valBigInteger(index);
+			return val == null ? new BigInteger(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN delete(Object value)
+		public Boolean valBoolean(int index)
 		{
-			super.delete(value);
-			return this;
+			return CastToBoolean(this.attr(index));
 		}
 
-		@Override
-		public JSAN deleteAll(Iterable<? extends Object> values)
+		public Boolean valBoolean(int index, Boolean defaultValue)
 		{
-			super.deleteAll(values);
-			return this;
+			Boolean val = valBoolean(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN deleteAll(Object value)
+		public Byte valByte(int index)
 		{
-			super.deleteAll(value);
-			return this;
+			return CastToByte(this.attr(index));
 		}
 
-		@Override
-		public JSAN entry(String entry)
+		public Byte valByte(int index, Byte defaultValue)
 		{
-			super.entry(entry);
-			return this;
+			Byte val = valByte(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public Set<Map.Entry<String, Object>> entrySet()
+		public Calendar valCalendar(int index)
 		{
-			return new CombinedSet<Map.Entry<String, Object>>(entrySet(array()), object().entrySet());
+			return CastToCalendar(this.attr(index));
 		}
 
-		public boolean equalValues(JSAN jsan)
+		public Calendar valCalendar(int index, Calendar defaultValue)
 		{
-			return this.size() == jsan.size() && this.containsAll(jsan) && jsan.containsAll(this);
+			Calendar val = valCalendar(index);
+			return val == null ? defaultValue : val;
 		}
 
-		public Object get(int index)
+		public Calendar valCalendar(int index, DateFormat format)
 		{
-			return Quote(this.got(index));
+			return CastToCalendar(this.attr(index), format);
 		}
 
-		public Object get(Integer index)
+		public Calendar valCalendar(int index, DateFormat format, Calendar defaultValue)
 		{
-			return index != null ? get(index.intValue()) : null;
+			Calendar val = valCalendar(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public Object get(Object key)
+		public Calendar valCalendar(int index, DateFormat format, long defaultValue)
 		{
-			return Quote(this.got(key));
-		}
+			Calendar val = valCalendar(index, format);
 
-		protected Object got(int index)
-		{
-			if (index >= 0)
-			{
-				return index < length() ? array().get(index) : null;
-			}
-			else
+			if (val == null)
 			{
-				return super.got(Key(index));
+				val = new GregorianCalendar();
+				val.setTimeInMillis(defaultValue);
 			}
+
+			return val;
 		}
 
-		@Override
-		protected Object got(Object key)
+		public Calendar valCalendar(int index, long defaultValue)
 		{
-			Object element = null;
+			Calendar val = valCalendar(index);
 
-			if (key != null)
+			if (val == null)
 			{
-				Integer idx = Index(key);
-
-				if (idx != null)
-				{
-					element = this.got(idx.intValue());
-				}
-				else
-				{
-					element = super.got(key);
-				}
+				val = new GregorianCalendar();
+				val.setTimeInMillis(defaultValue);
 			}
 
-			return element;
+			return val;
 		}
 
-		public boolean has(int index)
+		public Calendar valCalendar(int index, String format)
 		{
-			return (0 <= index && index < length()) || super.has(Key(index));
+			return CastToCalendar(this.attr(index), format);
 		}
 
-		@Override
-		public boolean has(String entry)
+		public Calendar valCalendar(int index, String format, Calendar defaultValue)
 		{
-			Integer index = Index(entry);
-			return index != null ? has(index) : super.has(entry);
+			Calendar val = valCalendar(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		/**
-		 * Get restored index value.
-		 * 
-		 * @param index
-		 *            raw index
-		 * @return {@code index+length()} if {@code index < 0}, otherwise
-		 *         returns index itself.
-		 */
-		protected int index(int index)
+		public Calendar valCalendar(int index, String format, long defaultValue)
 		{
-			return index < 0 ? index + length() : index;
-		}
+			Calendar val = valCalendar(index, format);
 
-		@Override
-		public boolean isEmpty()
-		{
-			return array().isEmpty() && super.isEmpty();
+			if (val == null)
+			{
+				val = new GregorianCalendar();
+				val.setTimeInMillis(defaultValue);
+			}
+
+			return val;
 		}
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public Set<String> keySet()
+		public <E> E valCast(int index, Class<E> cls)
 		{
-			return new CombinedSet<String>(keySet(array()), object().keySet());
+			return Tools.castTo(this.valObject(index), cls);
 		}
 
-		public String lastKeyOf(Object value)
+		public <E> E valCast(int index, Class<E> cls, E defaultValue)
 		{
-			String key = null;
-
-			if (containsValue(value))
-			{
-				ValueIterator<Object> iter = new ValueIterator<Object>().reset(size());
-				while (iter.hasPrevious())
-				{
-					iter.previous();
-
-					if (Tools.equals(value, iter.get()))
-					{
-						key = iter.key();
-						break;
-					}
-				}
-			}
-
-			return key;
+			E val = valCast(index, cls);
+			return val == null ? defaultValue : val;
 		}
 
-		/**
-		 * The length of this JSAN. Which excludes the JSON part.
-		 * 
-		 * @return
-		 * @see #size()
-		 */
-		public int length()
+		public Character valCharacter(int index)
 		{
-			return array().size();
+			return CastToCharacter(this.attr(index));
 		}
 
-		@Override
-		public JSAN outer(JSON outer)
+		public Character valCharacter(int index, Character defaultValue)
 		{
-			super.outer(outer);
-			return this;
+			Character val = valCharacter(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN pairs(Iterable<? extends Object> pairs)
-		{
-			super.pairs(pairs);
-			return this;
+		public Date valDate(int index)
+		{
+			return CastToDate(this.attr(index));
 		}
 
-		@Override
-		public JSAN pairs(JSAN jsan)
+		public Date valDate(int index, Date defaultValue)
 		{
-			super.pairs(jsan);
-			return this;
+			Date val = valDate(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN pairs(JSON json)
+		public Date valDate(int index, DateFormat format)
 		{
-			super.pairs(json);
-			return this;
+			return CastToDate(this.attr(index), format);
 		}
 
-		@Override
-		public JSAN pairs(Map<? extends String, ? extends Object> map)
+		public Date valDate(int index, DateFormat format, Date defaultValue)
 		{
-			super.pairs(map);
-			return this;
+			Date val = valDate(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN pairs(Object... pairs)
+		public Date valDate(int index, DateFormat format, long defaultValue)
 		{
-			super.pairs(pairs);
-			return this;
+			Date val = valDate(index, format);
+			return val == null ? new Date(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN projects(Class<?> cls, Iterable<?> fields)
+		public Date valDate(int index, long defaultValue)
 		{
-			super.projects(cls, fields);
-			return this;
+			Date val = valDate(index);
+			return val == null ? new Date(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN projects(Class<?> cls, JSAN project)
+		public Date valDate(int index, String format)
 		{
-			super.projects(cls, project);
-			return this;
+			return CastToDate(this.attr(index), format);
 		}
 
-		@Override
-		public JSAN projects(Class<?> cls, JSON project)
+		public Date valDate(int index, String format, Date defaultValue)
 		{
-			super.projects(cls, project);
-			return this;
+			Date val = valDate(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN projects(Class<?> cls, Map<String, Object> project)
+		public Date valDate(int index, String format, long defaultValue)
 		{
-			super.projects(cls, project);
-			return this;
+			Date val = valDate(index, format);
+			return val == null ? new Date(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN projects(Class<?> cls, String... fields)
+		public Double valDouble(int index)
 		{
-			super.projects(cls, fields);
-			return this;
+			return CastToDouble(this.attr(index));
 		}
 
-		@Override
-		public <T> JSAN projects(Class<T> cls, JSON.Projector<T> projector)
+		public Double valDouble(int index, Double defaultValue)
 		{
-			super.projects(cls, projector);
-			return this;
+			Double val = valDouble(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN projects(JSON json)
+		public Float valFloat(int index)
 		{
-			super.projects(json);
-			return this;
+			return CastToFloat(this.attr(index));
 		}
 
-		@Override
-		public JSAN projects(Map<Class<?>, Object> projects)
+		public Float valFloat(int index, Float defaultValue)
 		{
-			super.projects(projects);
-			return this;
+			Float val = valFloat(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN projectsRemove(Class<?> cls)
+		public Function valFunction(int index)
 		{
-			super.projectsRemove(cls);
-			return this;
+			return CastToFunction(this.attr(index));
 		}
 
-		@Override
-		public JSAN projectStrict(boolean strict)
+		public Function valFunction(int index, Function defaultValue)
 		{
-			super.projectStrict(strict);
-			return this;
+			Function val = valFunction(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN projectStrict(JSON json)
+		public Function valFunction(int index, String defaultValue)
 		{
-			super.projectStrict(json);
-			return this;
+			Function val = valFunction(index);
+			return val == null ? new Function(defaultValue) : val;
 		}
 
-		public JSAN pushAll(Iterable<? extends Object> values)
+		public <E> E valIfAbsent(int index, Class<E> type, Mapper<Integer, E> map)
 		{
-			for (Object o : values)
+			E val = this.valCast(index, type);
+			if (val == null)
 			{
-				this.add(o);
+				try
+				{
+					this.attr(index, val = map.map(index));
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
 			}
-			return this;
+			return val;
 		}
 
-		public JSAN pushAll(Object... values)
+		public <E> E valIfPresent(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
 		{
-			for (Object o : values)
+			E val = this.valCast(index, type);
+			if (val != null)
 			{
-				this.add(o);
+				try
+				{
+					this.attr(index, val = map.map(index, val));
+				}
+				catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
 			}
-			return this;
+			return val;
 		}
 
-		public Object put(int index, Object value)
+		public Integer valInteger(int index)
 		{
-			String key = Key(index);
-
-			if (index < 0)
-			{
-				return super.put(key, value);
-			}
-
-			Object old = this.got(index);
-			// Clear the old hierarchical relation.
-			Hierarchical hirch = AsHierarchical(old);
-			if (hirch != null && hirch.outer() == this)
-			{
-				hirch.outer(null).entry(null);
-			}
+			return CastToInteger(this.attr(index));
+		}
 
-			Transform<?> transform = this.transformOf(key, value);
-			if (transform != null)
-			{
-				value = transform.transform(this, key, value);
-			}
+		public Integer valInteger(int index, Integer defaultValue)
+		{
+			Integer val = valInteger(index);
+			return val == null ? defaultValue : val;
+		}
 
-			value = ValueOf(value, reflects());
+		public JSAN valJSAN(int index)
+		{
+			return CastToJSAN(this.attr(index));
+		}
 
-			hirch = AsHierarchical(value);
-			if (hirch != null)
-			{
-				// Build up new hierarchical relation.
-				JSON formalOuter = hirch.outer();
-				String formalEntry = hirch.entry();
-				JSON formalContext = hirch.context();
+		public JSAN valJSAN(int index, boolean newIfNull)
+		{
+			JSAN val = valJSAN(index);
+			return val == null && newIfNull ? new JSAN() : val;
+		}
 
-				hirch.outer(this).entry(key);
+		public JSAN valJSAN(int index, JSAN defaultValue)
+		{
+			JSAN val = valJSAN(index);
+			return val == null ? defaultValue : val;
+		}
 
-				// If in a Context.
-				if (formalOuter != null && IsContext(formalContext) && IsJSON(hirch))
-				{
-					// The formal outer would quote the value at its new
-					// location.
-					if (formalContext == this.context())
-					{
-						// A quote would be made only in the same Context.
-						formalOuter.put(formalEntry, AsJSON(hirch).quote());
-					}
-				}
-			}
+		public JSON valJSON(int index)
+		{
+			return CastToJSON(this.attr(index));
+		}
 
-			int len = length();
+		public JSON valJSON(int index, boolean newIfNull)
+		{
+			JSON val = valJSON(index);
+			return val == null && newIfNull ? new JSON() : val;
+		}
 
-			if (index < len)
-			{
-				array().set(index, value);
-			}
-			else if (index == len)
-			{
-				array().add(value);
-			}
-			else
-			{
-				array().addAll(nullsBeforeValue(index - len, value));
-			}
+		public JSON valJSON(int index, JSON defaultValue)
+		{
+			JSON val = valJSON(index);
+			return val == null ? defaultValue : val;
+		}
 
-			return old;
+		public Long valLong(int index)
+		{
+			return CastToLong(this.attr(index));
 		}
 
-		@Override
-		public Object put(String key, Object value)
+		public Long valLong(int index, Long defaultValue)
 		{
-			Object old = null;
+			Long val = valLong(index);
+			return val == null ? defaultValue : val;
+		}
 
-			if (key != null)
+		public <E> E valMerge(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
+		{
+			E val = this.valCast(index, type);
+			try
 			{
-				Integer index = Index(key);
-
-				if (index == null)
-				{
-					old = super.put(key, value);
-				}
-				else
-				{
-					old = this.put(index, value);
-				}
+				this.attr(index, val = map.map(index, val));
+			}
+			catch (Exception e)
+			{
+				throw new RuntimeException(e);
 			}
+			return val;
+		}
 
-			return old;
+		public Object valObject(int index)
+		{
+			return attr(index);
 		}
 
-		@Override
-		public void putAll(Map<? extends String, ? extends Object> map)
+		public Object valObject(int index, Object defaultValue)
 		{
-			for (Map.Entry<?, ?> entry : map.entrySet())
-			{
-				this.put((String) entry.getKey(), entry.getValue());
-			}
+			Object val = valObject(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN readonly()
+		public Short valShort(int index)
 		{
-			for (Object o : this.array())
-			{
-				if (o instanceof JSON)
-				{
-					((JSON) o).readonly();
-				}
-			}
-			return ((JSAN) super.readonly()).array(Collections.unmodifiableList(this.array()));
+			return CastToShort(this.attr(index));
 		}
 
-		@Override
-		public JSAN reflect(Object object)
+		public Short valShort(int index, Short defaultValue)
 		{
-			JSAN.Reflect(this, this.reflects(), object);
-			return this;
+			Short val = valShort(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN reflect(Object object, Iterable<?> reflect)
+		public String valString(int index)
 		{
-			JSAN.Reflect(this, object, reflect);
-			return this;
+			return CastToString(this.attr(index));
 		}
 
-		public <T> JSAN reflect(Object object, JSAN.Reflector<T> reflector)
+		public String valString(int index, String defaultValue)
 		{
-			JSAN.Reflect(this, object, reflector);
-			return this;
+			String val = valString(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN reflect(Object object, Map<String, ?> reflect)
+		public Time valTime(int index)
 		{
-			JSAN.Reflect(this, object, reflect);
-			return this;
+			return CastToTime(this.attr(index));
 		}
 
-		@Override
-		public JSAN reflect(Object object, String... fields)
+		public Time valTime(int index, DateFormat format)
 		{
-			JSAN.Reflect(this, object, fields);
-			return this;
+			return CastToTime(this.attr(index), format);
 		}
 
-		@Override
-		public JSAN reflects(Class<?> cls, JSAN reflect)
+		public Time valTime(int index, DateFormat format, long defaultValue)
 		{
-			super.reflects(cls, reflect);
-			return this;
+			Time val = valTime(index, format);
+			return val == null ? new Time(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN reflects(Class<?> cls, JSON reflect)
+		public Time valTime(int index, DateFormat format, Time defaultValue)
 		{
-			super.reflects(cls, reflect);
-			return this;
+			Time val = valTime(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public <T> JSAN reflects(Class<T> cls, JSAN.Reflector<T> reflector)
+		public Time valTime(int index, long defaultValue)
 		{
-			super.reflects(cls, reflector);
-			return this;
+			Time val = valTime(index);
+			return val == null ? new Time(defaultValue) : val;
 		}
 
-		@Override
-		public <T> JSAN reflects(Class<T> cls, JSON.Reflector<T> reflector)
+		public Time valTime(int index, String format)
 		{
-			super.reflects(cls, reflector);
-			return this;
+			return CastToTime(this.attr(index), format);
 		}
 
-		@Override
-		public JSAN reflects(JSON json)
+		public Time valTime(int index, String format, long defaultValue)
 		{
-			super.reflects(json);
-			return this;
+			Time val = valTime(index, format);
+			return val == null ? new Time(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN reflects(Map<Class<?>, Object> reflects)
+		public Time valTime(int index, String format, Time defaultValue)
 		{
-			super.reflects(reflects);
-			return this;
+			Time val = valTime(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN reflectsJSAN(Class<?> cls, Iterable<?> fields)
+		public Time valTime(int index, Time defaultValue)
 		{
-			super.reflectsJSAN(cls, fields);
-			return this;
+			Time val = valTime(index);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN reflectsJSAN(Class<?> cls, JSAN fields)
+		public Timestamp valTimestamp(int index)
 		{
-			super.reflectsJSAN(cls, fields);
-			return this;
+			return CastToTimestamp(this.attr(index));
 		}
 
-		@Override
-		public JSAN reflectsJSAN(Class<?> cls, JSON fields)
+		public Timestamp valTimestamp(int index, DateFormat format)
 		{
-			super.reflectsJSAN(cls, fields);
-			return this;
+			return CastToTimestamp(this.attr(index), format);
 		}
 
-		@Override
-		public JSAN reflectsJSAN(Class<?> cls, Map<String, ?> fields)
+		public Timestamp valTimestamp(int index, DateFormat format, long defaultValue)
 		{
-			super.reflectsJSAN(cls, fields);
-			return this;
+			Timestamp val = valTimestamp(index, format);
+			return val == null ? new Timestamp(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN reflectsJSAN(Class<?> cls, String... fields)
+		public Timestamp valTimestamp(int index, DateFormat format, Timestamp defaultValue)
 		{
-			super.reflectsJSAN(cls, fields);
-			return this;
+			Timestamp val = valTimestamp(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN reflectsJSON(Class<?> cls, Iterable<?> fields)
+		public Timestamp valTimestamp(int index, long defaultValue)
 		{
-			super.reflectsJSON(cls, fields);
-			return this;
+			Timestamp val = valTimestamp(index);
+			return val == null ? new Timestamp(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN reflectsJSON(Class<?> cls, JSAN fields)
+		public Timestamp valTimestamp(int index, String format)
 		{
-			super.reflectsJSON(cls, fields);
-			return this;
+			return CastToTimestamp(this.attr(index), format);
 		}
 
-		@Override
-		public JSAN reflectsJSON(Class<?> cls, JSON fields)
+		public Timestamp valTimestamp(int index, String format, long defaultValue)
 		{
-			super.reflectsJSON(cls, fields);
-			return this;
+			Timestamp val = valTimestamp(index, format);
+			return val == null ? new Timestamp(defaultValue) : val;
 		}
 
-		@Override
-		public JSAN reflectsJSON(Class<?> cls, Map<String, ?> fields)
+		public Timestamp valTimestamp(int index, String format, Timestamp defaultValue)
 		{
-			super.reflectsJSON(cls, fields);
-			return this;
+			Timestamp val = valTimestamp(index, format);
+			return val == null ? defaultValue : val;
 		}
 
-		@Override
-		public JSAN reflectsJSON(Class<?> cls, String... fields)
+		public Timestamp valTimestamp(int index, Timestamp defaultValue)
 		{
-			super.reflectsJSON(cls, fields);
-			return this;
+			Timestamp val = valTimestamp(index);
+			return val == null ? defaultValue : val;
 		}
 
+		@SuppressWarnings("unchecked")
 		@Override
-		public JSAN reflectsRemove(Class<?> cls)
+		public Collection<Object> values()
 		{
-			super.reflectsRemove(cls);
-			return this;
+			return new ValuesCollection(array(), object().values());
+		}
+	}
+
+	public class Pair implements Entry<String, Object>
+	{
+		public final String key;
+
+		public Pair(String key)
+		{
+			this.key = key;
 		}
 
 		@Override
-		public Object remove(Object key)
+		public boolean equals(Object o)
 		{
-			if (key == null)
+			if (o instanceof Pair)
 			{
-				return null;
+				return Tools.equals(key, ((Pair) o).key);
 			}
 			else
 			{
-				Integer index = Index(key);
-
-				if (index == null)
-				{
-					return super.remove(key);
-				}
-				else if (index >= length())
-				{
-					return null;
-				}
-				else
-				{
-					Object value = array().remove(index.intValue());
-
-					Hierarchical hirch = AsHierarchical(value);
+				return false;
+			}
+		}
 
-					if (hirch != null)
-					{
-						if (hirch.outer() == this)
-						{
-							hirch.outer(null).entry(null);
-						}
-					}
+		public String getKey()
+		{
+			return key;
+		}
 
-					return value;
-				}
-			}
+		public Object getValue()
+		{
+			return attr(key);
 		}
 
 		@Override
-		public JSAN removeAll()
+		public int hashCode()
 		{
-			return clean();
+			return key == null ? 0 : key.hashCode();
 		}
 
-		@Override
-		public JSAN removeAll(Iterable<? extends Object> keys)
+		public String key()
 		{
-			if (keys != null)
-			{
-				for (Object o : keys)
-				{
-					this.remove(o);
-				}
-			}
-			return this;
+			return key;
 		}
 
-		public JSAN retainAll(Collection<? extends Object> collection)
+		public Object setValue(Object value)
 		{
-			if (collection != null && !collection.isEmpty())
-			{
-				List<Object> temp = new ArrayList<Object>(this.size());
-				for (Object o : this)
-				{
-					if (!collection.contains(o))
-					{
-						temp.add(o);
-					}
-				}
-				this.deleteAll(temp);
-			}
-			return this;
+			Object old = getValue();
+			attr(key, value);
+			return old;
 		}
 
-		public JSAN retainAll(JSAN jsan)
+		@Override
+		public String toString()
 		{
-			if (jsan != null && !jsan.isEmpty())
-			{
-				List<Object> temp = new ArrayList<Object>(this.size());
-				for (Object o : this)
-				{
-					if (!jsan.hasVal(o))
-					{
-						temp.add(o);
-					}
-				}
-				this.deleteAll(temp);
-			}
-			return this;
+			return "(" + key + "," + getValue() + ")";
 		}
 
-		@Override
-		public int size()
+		public <E> E val()
 		{
-			return array().size() + super.size();
+			return JSON.this.val(key);
 		}
 
-		public JSAN slice(int start)
+		public <E> E val(E defaultValue)
 		{
-			return slice(start, this.length());
+			return JSON.this.val(key, defaultValue);
 		}
 
-		public JSAN slice(int start, int end)
+		public BigDecimal valBigDecimal()
 		{
-			return slice(null, start, end);
+			return JSON.this.valBigDecimal(key);
 		}
 
-		public JSAN slice(JSAN result, int start)
+		public BigDecimal valBigDecimal(double defaultValue)
 		{
-			return slice(result, start, this.length());
+			return JSON.this.valBigDecimal(key, defaultValue);
 		}
 
-		public JSAN slice(JSAN result, int start, int end)
+		public BigDecimal valBigDecimal(String defaultValue)
 		{
-			if (result == null)
-			{
-				result = new JSAN().templates(this);
-			}
-
-			start = bound(start);
-			end = bound(end);
-
-			for (int i = start; i < end; i++)
-			{
-				result.add(this.get(i));
-			}
+			return JSON.this.valBigDecimal(key, defaultValue);
+		}
 
-			return result;
+		public Boolean valBoolean()
+		{
+			return JSON.this.valBoolean(key);
 		}
 
-		public JSAN sort()
+		public Boolean valBoolean(Boolean defaultValue)
 		{
-			return sort(this);
+			return JSON.this.valBoolean(key, defaultValue);
 		}
 
-		public JSAN sort(Comparator<Object> cmp)
+		public Byte valByte()
 		{
-			return sort(cmp, this);
+			return JSON.this.valByte(key);
 		}
 
-		public JSAN sort(Comparator<Object> cmp, JSAN jsan)
+		public Byte valByte(Byte defaultValue)
 		{
-			if (cmp == null)
-			{
-				cmp = new GeneralValueComparator();
-			}
+			return JSON.this.valByte(key, defaultValue);
+		}
 
-			return sort(new TreeSet<Object>(cmp), jsan);
+		public Calendar valCalendar()
+		{
+			return JSON.this.valCalendar(key);
 		}
 
-		public JSAN sort(JSAN target)
+		public Calendar valCalendar(long defaultValue)
 		{
-			return sort(new GeneralValueComparator(), target);
+			return JSON.this.valCalendar(key, defaultValue);
 		}
 
-		public JSAN sort(Set<Object> sorter)
+		public <E> E valCast(Class<E> cls)
 		{
-			return sort(sorter, this);
+			return JSON.this.valCast(key, cls);
 		}
 
-		public JSAN sort(Set<Object> sorter, JSAN target)
+		public <E> E valCast(Class<E> cls, E defaultValue)
 		{
-			return Sort(this, sorter, target);
+			return JSON.this.valCast(key, cls, defaultValue);
 		}
 
-		public JSAN splice(int index, int cover, Collection<?> collection)
+		public Character valCharacter()
 		{
-			JSAN result = new JSAN().templates(this);
+			return JSON.this.valCharacter(key);
+		}
 
-			index = bound(index);
-			cover = Tools.limitNumber(cover, 0, length() - index);
+		public Character valCharacter(Character defaultValue)
+		{
+			return JSON.this.valCharacter(key, defaultValue);
+		}
 
-			int delta = collection.size() - cover;
+		public Date valDate()
+		{
+			return JSON.this.valDate(key);
+		}
 
-			for (int i = 0; i < cover; i++)
-			{
-				result.add(this.attr(index + i));
-			}
+		public Date valDate(long defaultValue)
+		{
+			return JSON.this.valDate(key, defaultValue);
+		}
 
-			if (delta < 0)
-			{ // Shrink
-				for (int i = delta; i < 0; i++)
-				{
-					this.remove(index);
-				}
-			}
-			else if (delta > 0)
-			{ // Expand
-				for (int i = 0; i < delta; i++)
-				{
-					array().add(index, null);
-				}
-			}
+		public Double valDouble()
+		{
+			return JSON.this.valDouble(key);
+		}
 
-			// Fill
-			int i = 0;
-			for (Object o : collection)
-			{
-				this.put(index + i, o);
-				i++;
-			}
+		public Double valDouble(Double defaultValue)
+		{
+			return JSON.this.valDouble(key, defaultValue);
+		}
 
-			return result;
+		public Float valFloat()
+		{
+			return JSON.this.valFloat(key);
 		}
 
-		public JSAN splice(int index, int cover, JSAN jsan)
+		public Float valFloat(Float defaultValue)
 		{
-			JSAN result = new JSAN().templates(this);
+			return JSON.this.valFloat(key, defaultValue);
+		}
 
-			index = bound(index);
-			cover = Tools.limitNumber(cover, 0, length() - index);
+		public Function valFunction()
+		{
+			return JSON.this.valFunction(key);
+		}
 
-			int delta = jsan.size() - cover;
+		public Function valFunction(Function defaultValue)
+		{
+			return JSON.this.valFunction(key, defaultValue);
+		}
 
-			for (int i = 0; i < cover; i++)
-			{
-				result.add(this.attr(index + i));
-			}
+		public Function valFunction(String defaultValue)
+		{
+			return JSON.this.valFunction(key, defaultValue);
+		}
 
-			if (delta < 0)
-			{ // Shrink
-				for (int i = delta; i < 0; i++)
-				{
-					this.remove(index);
-				}
-			}
-			else if (delta > 0)
-			{ // Expand
-				for (int i = 0; i < delta; i++)
-				{
-					array().add(index, null);
-				}
-			}
+		public Integer valInteger()
+		{
+			return JSON.this.valInteger(key);
+		}
 
-			// Fill
-			int i = 0;
-			for (Object o : jsan)
-			{
-				this.put(index + i, o);
-				i++;
-			}
+		public Integer valInteger(Integer defaultValue)
+		{
+			return JSON.this.valInteger(key, defaultValue);
+		}
 
-			return result;
+		public JSAN valJSAN()
+		{
+			return JSON.this.valJSAN(key);
 		}
 
-		public JSAN splice(int index, int cover, Object... objects)
+		public JSAN valJSAN(boolean newIfNull)
 		{
-			JSAN result = new JSAN().templates(this);
+			return JSON.this.valJSAN(key, newIfNull);
+		}
 
-			index = bound(index);
-			cover = Tools.limitNumber(cover, 0, length() - index);
+		public JSAN valJSAN(JSAN defaultValue)
+		{
+			return JSON.this.valJSAN(key, defaultValue);
+		}
 
-			int delta = objects.length - cover;
+		public JSON valJSON()
+		{
+			return JSON.this.valJSON(key);
+		}
 
-			for (int i = 0; i < cover; i++)
-			{
-				result.add(this.attr(index + i));
-			}
+		public JSON valJSON(boolean newIfNull)
+		{
+			return JSON.this.valJSON(key, newIfNull);
+		}
 
-			if (delta < 0)
-			{ // Shrink
-				for (int i = delta; i < 0; i++)
-				{
-					this.remove(index);
-				}
-			}
-			else if (delta > 0)
-			{ // Expand
-				for (int i = 0; i < delta; i++)
-				{
-					array().add(index, null);
-				}
-			}
+		public JSON valJSON(JSON defaultValue)
+		{
+			return JSON.this.valJSON(key, defaultValue);
+		}
 
-			// Fill
-			int i = 0;
-			for (Object o : objects)
-			{
-				this.put(index + i, o);
-				i++;
-			}
+		public Long valLong()
+		{
+			return JSON.this.valLong(key);
+		}
 
-			return result;
+		public Long valLong(Long defaultValue)
+		{
+			return JSON.this.valLong(key, defaultValue);
 		}
 
-		@Override
-		public JSAN templates(JSON json)
+		public Short valShort()
 		{
-			super.templates(json);
-			return this;
+			return JSON.this.valShort(key);
 		}
 
-		public Object[] toArray()
+		public Short valShort(Short defaultValue)
 		{
-			Object[] array = new Object[size()];
-
-			int i = 0;
-			for (Object o : this)
-			{
-				array[i++] = o;
-			}
-
-			return array;
+			return JSON.this.valShort(key, defaultValue);
 		}
 
-		@SuppressWarnings("unchecked")
-		public <T> T[] toArray(T[] array)
+		public String valString()
 		{
-			if (array.length < size())
-			{
-				array = (T[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), size());
-			}
-
-			int i = 0;
-			for (Object o : this)
-			{
-				array[i++] = (T) o;
-			}
-
-			for (; i < array.length;)
-			{
-				array[i++] = null;
-			}
-
-			return array;
+			return JSON.this.valString(key);
 		}
 
-		@Override
-		public JSAN toJSAN()
+		public String valString(String defaultValue)
 		{
-			return this;
+			return JSON.this.valString(key, defaultValue);
 		}
 
-		@Override
-		public JSAN transforms(JSON json)
+		public Time valTime()
 		{
-			super.transforms(json);
-			return this;
+			return JSON.this.valTime(key);
 		}
 
-		@Override
-		public JSAN transforms(Map<Object, Transform<?>> transforms)
+		public Time valTime(long defaultValue)
 		{
-			super.transforms(transforms);
-			return this;
+			return JSON.this.valTime(key, defaultValue);
 		}
 
-		@Override
-		public JSAN transforms(Object entry, Transform<?> transform)
+		public Timestamp valTimestamp()
 		{
-			super.transforms(entry, transform);
-			return this;
+			return JSON.this.valTimestamp(key);
 		}
 
-		@Override
-		public JSAN transformsRemove(Object entry)
+		public Timestamp valTimestamp(long defaultValue)
 		{
-			super.transformsRemove(entry);
-			return this;
+			return JSON.this.valTimestamp(key, defaultValue);
 		}
+	}
 
-		@Override
-		protected JSAN transformsSingleton()
+	/**
+	 * Read the JSON Lines (one object or array per line) of a file in
+	 * parallel. The file is split into byte segments which are aligned on the
+	 * newlines and parsed on a worker pool, the results of at most
+	 * {@code parallelism * 2} segments are held at the same time. The charset
+	 * must be ASCII compatible, such as UTF-8, so that the newline is encoded
+	 * as the single byte {@code '\n'}, otherwise IllegalArgumentException is
+	 * thrown.
+	 * <p>
+	 * A non-blank line which is not exactly one object or array is malformed
+	 * and reported to the error channel in the current thread, or thrown if
+	 * there is no error channel.
+	 */
+	public static class LinesReader implements CloseableIterator<JSON>
+	{
+		public static final int								DEFAULT_SEGMENT_SIZE	= 1 << 20;
+
+		private static final byte							NEW_LINE				= '\n';
+
+		private static final byte							CARRIAGE_RETURN			= '\r';
+
+		/**
+		 * Check whether the given charset encodes the newline and the
+		 * structural characters as their ASCII bytes.
+		 * 
+		 * @param charset
+		 *            null means the default charset.
+		 * @return the charset to be used.
+		 * @throws IllegalArgumentException
+		 *             if the charset is not ASCII compatible, such as UTF-16.
+		 */
+		public static Charset CheckCharset(Charset charset)
 		{
-			super.transformsSingleton();
-			return this;
+			charset = charset == null ? Charset.defaultCharset() : charset;
+			String ascii = "\r\n {}[]\",:";
+			byte[] bytes = charset.canEncode() ? ascii.getBytes(charset) : null;
+			boolean compatible = bytes != null && bytes.length == ascii.length();
+			for (int i = 0; compatible && i < bytes.length; i++)
+			{
+				compatible = bytes[i] == ascii.charAt(i);
+			}
+			if (!compatible)
+			{
+				throw new IllegalArgumentException("Charset is not ASCII compatible: " + charset.name());
+			}
+			return charset;
 		}
 
-		public JSAN unique()
+		protected final File								file;
+
+		protected final Charset								charset;
+
+		protected final int									parallelism;
+
+		protected final boolean								ordered;
+
+		protected final Canal.Action<? super SyntaxErrorException>	errors;
+
+		protected final int									segment;
+
+		private RandomAccessFile							access;
+
+		private FileChannel									channel;
+
+		private long										size;
+
+		private long										offset;
+
+		private ExecutorService								executor;
+
+		private CompletionService<List<Object>>				service;
+
+		private final LinkedList<Future<List<Object>>>		futures					= new LinkedList<Future<List<Object>>>();
+
+		private int											running;
+
+		private Iterator<Object>							current;
+
+		private JSON										next;
+
+		private boolean										closed;
+
+		/**
+		 * @param file
+		 * @param charset
+		 *            null means the default charset.
+		 * @param parallelism
+		 *            the number of threads.
+		 * @param ordered
+		 *            whether the records should be returned in the order of
+		 *            the file, otherwise the segment parsed first is returned
+		 *            first.
+		 * @param errors
+		 *            the channel of the malformed lines, null means the error
+		 *            would be thrown.
+		 * @param segment
+		 *            the bytes of each segment approximately.
+		 */
+		public LinesReader(File file, Charset charset, int parallelism, boolean ordered,
+				Canal.Action<? super SyntaxErrorException> errors, int segment)
 		{
-			return unique(this);
+			if (file == null)
+			{
+				throw new NullPointerException();
+			}
+			if (parallelism < 1 || segment < 1)
+			{
+				throw new IllegalArgumentException();
+			}
+			this.file = file;
+			this.charset = CheckCharset(charset);
+			this.parallelism = parallelism;
+			this.ordered = ordered;
+			this.errors = errors;
+			this.segment = segment;
 		}
 
-		public JSAN unique(JSAN target)
+		@Override
+		public void close() throws IOException
 		{
-			return Unique(this, target);
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			current = null;
+			next = null;
+			for (Future<List<Object>> future : futures)
+			{
+				future.cancel(true);
+			}
+			futures.clear();
+			if (executor != null)
+			{
+				executor.shutdownNow();
+			}
+			if (access != null)
+			{
+				access.close();
+			}
 		}
 
-		@SuppressWarnings("unchecked")
-		public <E> E val(int index)
+		@Override
+		public boolean hasNext()
 		{
 			try
 			{
-				return (E) attr(index);
+				while (next == null && !closed)
+				{
+					if (current != null && current.hasNext())
+					{
+						Object el = current.next();
+						if (el instanceof JSON)
+						{
+							next = (JSON) el;
+						}
+						else
+						{
+							this.report((SyntaxErrorException) el);
+						}
+					}
+					else
+					{
+						current = null;
+						if (access == null)
+						{
+							this.open();
+						}
+						if (executor == null)
+						{
+							if (offset < size)
+							{
+								long start = offset;
+								offset = Math.min(size, offset + segment);
+								current = this.parse(start, offset).iterator();
+							}
+							else
+							{
+								this.close();
+							}
+						}
+						else
+						{
+							this.submit();
+							if (running == 0)
+							{
+								this.close();
+							}
+							else
+							{
+								current = this.take().iterator();
+							}
+						}
+					}
+				}
+				return next != null;
 			}
-			catch (ClassCastException e)
+			catch (ExecutionException e)
 			{
-				return null;
+				this.quietClose();
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				else if (cause instanceof Error)
+				{
+					throw (Error) cause;
+				}
+				else
+				{
+					throw new RuntimeException(cause);
+				}
+			}
+			catch (InterruptedException e)
+			{
+				this.quietClose();
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+			catch (RuntimeException e)
+			{
+				this.quietClose();
+				throw e;
+			}
+			catch (Exception e)
+			{
+				this.quietClose();
+				throw new RuntimeException(e);
 			}
 		}
 
-		public <E> E val(int index, E defaultValue)
+		/**
+		 * Whether the characters from the given index are all whitespaces.
+		 */
+		protected static boolean IsBlank(CharSequence line, int from)
 		{
-			E val = val(index);
-			return val == null ? defaultValue : val;
+			for (int i = from; i < line.length(); i++)
+			{
+				if (!Tokenizer.IsWhitespace(line.charAt(i)))
+				{
+					return false;
+				}
+			}
+			return true;
 		}
 
-		/**
-		 * Fetch the value corresponding to the index. If the value is JSAN then
-		 * directly return the value. Otherwise, the value will be add to a new
-		 * JSAN and the JSAN will be returned. If the key not existed in the
-		 * JSON or the value was null, then a new empty JSAN will be returned.
-		 * 
-		 * @param idx
-		 *            the index of value
-		 * @param emptyIfNull
-		 *            Whether the result JSAN remains empty if the value is null
-		 * @return
-		 * @see #attrAsJSAN(int)
-		 */
-		public JSAN valAsJSAN(int idx)
+		@Override
+		public JSON next()
 		{
-			return valAsJSAN(idx, true);
+			if (!hasNext())
+			{
+				throw new NoSuchElementException();
+			}
+			JSON json = next;
+			next = null;
+			return json;
 		}
 
-		/**
-		 * Fetch the value corresponding to the index. If the value is JSAN then
-		 * directly return the value. Otherwise, the value will be add to a new
-		 * JSAN and the JSAN will be returned. If the key not existed in the
-		 * JSON, then a new empty JSAN will be returned.
-		 * 
-		 * @param idx
-		 *            the index of value
-		 * @param emptyIfNull
-		 *            Whether the result JSAN remains empty if the value is null
-		 * @return
-		 * @see #attrAsJSAN(int, boolean)
-		 */
-		public JSAN valAsJSAN(int idx, boolean emptyIfNull)
+		protected void open() throws IOException
 		{
-			return valAsJSAN(idx, emptyIfNull, false);
+			access = new RandomAccessFile(file, "r");
+			channel = access.getChannel();
+			size = channel.size();
+			offset = 0;
+			if (parallelism > 1)
+			{
+				executor = Executors.newFixedThreadPool(parallelism, new Canal.DaemonThreadFactory());
+				service = ordered ? null : new ExecutorCompletionService<List<Object>>(executor);
+			}
 		}
 
 		/**
-		 * Fetch the value corresponding to the index. If the value is JSAN then
-		 * directly return the value. Otherwise, the value will be add to a new
-		 * JSAN and the JSAN will be returned.
+		 * Parse the lines which begin in the segment of [start, end), the last
+		 * line may end beyond the segment.
 		 * 
-		 * @param idx
-		 *            the index of value
-		 * @param emptyIfNull
-		 *            Whether the result JSAN remains empty if the value is null
-		 * @param nullIfMiss
-		 *            Whether treat miss key as null value
-		 * @return
-		 * @see #attrAsJSAN(int, boolean, boolean)
+		 * @return the records and the errors of the malformed lines.
 		 */
-		public JSAN valAsJSAN(int idx, boolean emptyIfNull, boolean nullIfMiss)
+		protected List<Object> parse(long start, long end) throws IOException
 		{
-			if (!nullIfMiss && !this.has(idx))
+			long from = start == 0 ? 0 : start - 1;
+			int len = (int) (end - from);
+			byte[] bytes = new byte[len + 1024];
+			this.read(from, bytes, 0, len);
+
+			// Extend the last line to its newline.
+			while (end < size && (len == 0 || bytes[len - 1] != NEW_LINE))
 			{
-				return new JSAN().templates(this);
+				if (len == bytes.length)
+				{
+					bytes = Arrays.copyOf(bytes, len * 2);
+				}
+				int n = (int) Math.min(bytes.length - len, size - end);
+				this.read(end, bytes, len, n);
+				int i = len;
+				while (i < len + n && bytes[i] != NEW_LINE)
+				{
+					i++;
+				}
+				if (i < len + n)
+				{
+					len = i + 1;
+					break;
+				}
+				len += n;
+				end += n;
 			}
-			else
+
+			// Skip the line which begins in the previous segment.
+			int p = 0;
+			if (start > 0)
 			{
-				Object v = this.attr(idx);
-				if (v instanceof JSAN)
+				while (p < len && bytes[p] != NEW_LINE)
 				{
-					return (JSAN) v;
+					p++;
+				}
+				p++;
+			}
+
+			List<Object> result = new ArrayList<Object>();
+			int q, e;
+			String line;
+			while (p < len)
+			{
+				q = p;
+				while (q < len && bytes[q] != NEW_LINE)
+				{
+					q++;
 				}
-				else
+				e = q > p && bytes[q - 1] == CARRIAGE_RETURN ? q - 1 : q;
+				line = new String(bytes, p, e - p, charset);
+				if (!IsBlank(line, 0))
 				{
-					JSAN res = new JSAN().templates(this);
-					if (v != null || !emptyIfNull)
-					{
-						res.add(v);
-					}
-					return res;
+					result.add(this.parse(line, from + p));
 				}
+				p = q + 1;
 			}
+			return result;
 		}
 
-		public BigDecimal valBigDecimal(int index)
+		/**
+		 * Parse a line into a JSON or an error.
+		 */
+		protected Object parse(String line, long offset)
 		{
-			return CastToBigDecimal(this.attr(index));
+			Tokenizer tokenizer = new Tokenizer(line);
+			JSON json = null;
+			try
+			{
+				json = tokenizer.parse();
+			}
+			catch (Exception e)
+			{
+			}
+			if (json != null && IsBlank(line, (int) tokenizer.getPosition()))
+			{
+				return json;
+			}
+			return new SyntaxErrorException("Malformed line at byte " + offset + "\n"
+					+ SyntaxErrorException.LocateMessage(line, 0, SyntaxErrorException.DEFAULT_VIEW * 2));
 		}
 
-		public BigDecimal valBigDecimal(int index, double defaultValue)
+		private void quietClose()
 		{
-			BigDecimal val = valBigDecimal(index);
-			return val == null ? new BigDecimal(defaultValue) : val;
+			try
+			{
+				this.close();
+			}
+			catch (IOException e)
+			{
+			}
 		}
 
-		public BigDecimal valBigDecimal(int index, String defaultValue)
+		private void read(long position, byte[] bytes, int off, int len) throws IOException
 		{
-			BigDecimal val = valBigDecimal(index);
-			return val == null ? new BigDecimal(defaultValue) : val;
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, off, len);
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer, position + buffer.position() - off) < 0)
+				{
+					throw new EOFException();
+				}
+			}
 		}
 
-		public BigInteger valBigInteger(int index)
+		@Override
+		public void remove()
 		{
-			return CastToBigInteger(this.attr(index));
+			throw new UnsupportedOperationException();
 		}
 
-		public BigInteger valBigInteger(int index, long defaultValue)
+		protected void report(SyntaxErrorException error) throws Exception
 		{
-			BigInteger val = valBigInteger(index);
-			return val == null ? new BigInteger(String.valueOf(defaultValue)) : val;
+			if (errors == null)
+			{
+				throw error;
+			}
+			errors.action(error);
 		}
 
-		public BigInteger valBigInteger(int index, String defaultValue)
+		/**
+		 * Submit the segments until there are enough running.
+		 */
+		protected void submit()
 		{
-			BigInteger val = valBigInteger(index);
-			return val == null ? new BigInteger(defaultValue) : val;
-		}
+			while (running < parallelism * 2 && offset < size)
+			{
+				final long start = offset, end = Math.min(size, offset + segment);
+				offset = end;
 
-		public Boolean valBoolean(int index)
-		{
-			return CastToBoolean(this.attr(index));
-		}
+				Callable<List<Object>> call = new Callable<List<Object>>()
+				{
+					@Override
+					public List<Object> call() throws Exception
+					{
+						return parse(start, end);
+					}
+				};
 
-		public Boolean valBoolean(int index, Boolean defaultValue)
-		{
-			Boolean val = valBoolean(index);
-			return val == null ? defaultValue : val;
+				futures.add(ordered ? executor.submit(call) : service.submit(call));
+				running++;
+			}
 		}
 
-		public Byte valByte(int index)
+		/**
+		 * Take the result of the next segment in order, or the first one
+		 * completed if not ordered.
+		 */
+		protected List<Object> take() throws Exception
 		{
-			return CastToByte(this.attr(index));
+			Future<List<Object>> future = null;
+			if (ordered)
+			{
+				future = futures.removeFirst();
+			}
+			else
+			{
+				future = service.take();
+				futures.remove(future);
+			}
+			running--;
+			return future.get();
 		}
+	}
 
-		public Byte valByte(int index, Byte defaultValue)
-		{
-			Byte val = valByte(index);
-			return val == null ? defaultValue : val;
-		}
+	public static class Parser
+	{
+		public static final int	DISPOSED				= -1;
 
-		public Calendar valCalendar(int index)
-		{
-			return CastToCalendar(this.attr(index));
-		}
+		public static final int	DONE					= 0;
 
-		public Calendar valCalendar(int index, Calendar defaultValue)
-		{
-			Calendar val = valCalendar(index);
-			return val == null ? defaultValue : val;
-		}
+		public static final int	IN_NONE					= 1;
 
-		public Calendar valCalendar(int index, DateFormat format)
-		{
-			return CastToCalendar(this.attr(index), format);
-		}
+		public static final int	IN_STRING				= 2;
 
-		public Calendar valCalendar(int index, DateFormat format, Calendar defaultValue)
-		{
-			Calendar val = valCalendar(index, format);
-			return val == null ? defaultValue : val;
-		}
+		public static final int	IN_COMMENT				= 3;
 
-		public Calendar valCalendar(int index, DateFormat format, long defaultValue)
+		public static final int	IN_FUNCTION				= 4;
+
+		/**
+		 * The buffer will be recycled if the jail index is above the ratio of
+		 * the buffer length. So if the ratio is 1 (or greater) that means never
+		 * being recycled, 0 (or less) means always being recycled.
+		 */
+		public static double	DEFAULT_RECYCLE_RATIO	= 0.9;
+
+		/**
+		 * This is the default buffer size which decides how many characters
+		 * will be read at most while parsing via a Reader.
+		 */
+		public static int		DEFAULT_READER_BUFFER	= 1000;
+
+		private StringBuilder	buffer;
+
+		private JSON			object;
+
+		private String			entry;
+
+		private Object			value;
+
+		private int				arrayIndex;
+
+		private int				status;
+
+		private int				curr					= 0;
+
+		private int				nail					= NOT_FOUND;
+
+		private int				tail					= NOT_FOUND;
+
+		private int				jail					= NOT_FOUND;
+
+		private Parser			sub						= null;
+
+		protected Parser commit(StringBuilder buffer)
 		{
-			Calendar val = valCalendar(index, format);
+			if (value == NOT_A_VALUE && nail > NOT_FOUND)
+			{
+				value = ParseValueOf(buffer.subSequence(nail, tail + 1).toString());
+			}
 
-			if (val == null)
+			if (value != NOT_A_VALUE)
 			{
-				val = new GregorianCalendar();
-				val.setTimeInMillis(defaultValue);
+				if (entry == null && arrayIndex > NOT_FOUND)
+				{
+					entry = JSAN.Key(arrayIndex);
+					arrayIndex++;
+				}
+				object.put(entry, value);
+				value = NOT_A_VALUE;
+				entry = null;
 			}
 
-			return val;
+			return this;
 		}
 
-		public Calendar valCalendar(int index, long defaultValue)
+		public Parser dispose()
 		{
-			Calendar val = valCalendar(index);
+			if (sub != null)
+			{
+				sub.dispose();
+				sub = null;
+			}
 
-			if (val == null)
+			if (buffer != null)
 			{
-				val = new GregorianCalendar();
-				val.setTimeInMillis(defaultValue);
+				Tools.clearStringBuilder(buffer);
+				buffer = null;
 			}
 
-			return val;
-		}
+			entry = null;
+			value = null;
 
-		public Calendar valCalendar(int index, String format)
-		{
-			return CastToCalendar(this.attr(index), format);
+			status(DISPOSED);
+
+			return this;
 		}
 
-		public Calendar valCalendar(int index, String format, Calendar defaultValue)
+		protected Parser entry(StringBuilder buffer)
 		{
-			Calendar val = valCalendar(index, format);
-			return val == null ? defaultValue : val;
+			entry = RestoreString(buffer.subSequence(nail, tail + 1).toString());
+			return this;
 		}
 
-		public Calendar valCalendar(int index, String format, long defaultValue)
+		protected Parser follow()
 		{
-			Calendar val = valCalendar(index, format);
-
-			if (val == null)
+			if (sub != null)
 			{
-				val = new GregorianCalendar();
-				val.setTimeInMillis(defaultValue);
+				curr = sub.curr;
+				nail = sub.nail;
+				tail = sub.tail;
+				jail = sub.jail;
 			}
 
-			return val;
+			return this;
 		}
 
-		public <E> E valCast(int index, Class<E> cls)
+		protected boolean isRoot()
 		{
-			return Tools.castTo(this.valObject(index), cls);
+			return buffer != null;
 		}
 
-		public <E> E valCast(int index, Class<E> cls, E defaultValue)
+		protected int next(StringBuilder buffer)
 		{
-			E val = valCast(index, cls);
-			return val == null ? defaultValue : val;
-		}
+			curr++;
 
-		public Character valCharacter(int index)
-		{
-			return CastToCharacter(this.attr(index));
-		}
+			int temp = (tail = (nail = FirstNonWhitespaceIndex(buffer, curr)));
 
-		public Character valCharacter(int index, Character defaultValue)
-		{
-			Character val = valCharacter(index);
-			return val == null ? defaultValue : val;
+			if (temp > NOT_FOUND)
+			{
+				curr = temp - 1;
+			}
+
+			return temp;
 		}
 
-		public Date valDate(int index)
+		public Parser parse(CharSequence source)
 		{
-			return CastToDate(this.attr(index));
-		}
+			if (buffer != source)
+			{
+				if (buffer == null)
+				{
+					if (source instanceof StringBuilder)
+					{
+						buffer = (StringBuilder) source;
+					}
+					else
+					{
+						buffer = new StringBuilder(source);
+					}
+				}
+				else
+				{
+					this.recycle();
+					buffer.append(source);
+				}
+			}
 
-		public Date valDate(int index, Date defaultValue)
-		{
-			Date val = valDate(index);
-			return val == null ? defaultValue : val;
-		}
+			object = null;
 
-		public Date valDate(int index, DateFormat format)
-		{
-			return CastToDate(this.attr(index), format);
-		}
+			this.parse(buffer, curr);
 
-		public Date valDate(int index, DateFormat format, Date defaultValue)
-		{
-			Date val = valDate(index, format);
-			return val == null ? defaultValue : val;
+			return this;
 		}
 
-		public Date valDate(int index, DateFormat format, long defaultValue)
+		public Parser parse(Reader reader, boolean closeAfterRead) throws IOException
 		{
-			Date val = valDate(index, format);
-			return val == null ? new Date(defaultValue) : val;
+			return parse(reader, DEFAULT_READER_BUFFER, closeAfterRead);
 		}
 
-		public Date valDate(int index, long defaultValue)
+		public Parser parse(Reader reader, int buffers, boolean closeAfterRead) throws IOException
 		{
-			Date val = valDate(index);
-			return val == null ? new Date(defaultValue) : val;
-		}
+			if (reader != null)
+			{
+				char[] chars = new char[Math.max(buffers, 1)];
 
-		public Date valDate(int index, String format)
-		{
-			return CastToDate(this.attr(index), format);
-		}
+				if (buffer == null)
+				{
+					buffer = new StringBuilder(chars.length);
+				}
+				else
+				{
+					this.recycle();
+				}
 
-		public Date valDate(int index, String format, Date defaultValue)
-		{
-			Date val = valDate(index, format);
-			return val == null ? defaultValue : val;
-		}
+				object = null;
 
-		public Date valDate(int index, String format, long defaultValue)
-		{
-			Date val = valDate(index, format);
-			return val == null ? new Date(defaultValue) : val;
-		}
+				int length = -1;
 
-		public Double valDouble(int index)
-		{
-			return CastToDouble(this.attr(index));
-		}
+				try
+				{
+					while ((length = reader.read(chars)) != -1 //
+							|| (buffer.length() > 0 && curr < buffer.length()))
+					{
+						if (length > -1)
+						{
+							buffer.append(chars, 0, length);
+						}
 
-		public Double valDouble(int index, Double defaultValue)
-		{
-			Double val = valDouble(index);
-			return val == null ? defaultValue : val;
-		}
+						parse(buffer);
 
-		public Float valFloat(int index)
-		{
-			return CastToFloat(this.attr(index));
-		}
+						if (result() != null)
+						{
+							break;
+						}
+					}
+				}
+				finally
+				{
+					if (closeAfterRead)
+					{
+						reader.close();
+					}
+				}
+			}
 
-		public Float valFloat(int index, Float defaultValue)
-		{
-			Float val = valFloat(index);
-			return val == null ? defaultValue : val;
+			return this;
 		}
 
-		public Function valFunction(int index)
+		protected int parse(StringBuilder buffer, int from)
 		{
-			return CastToFunction(this.attr(index));
-		}
+			curr = from;
 
-		public Function valFunction(int index, Function defaultValue)
-		{
-			Function val = valFunction(index);
-			return val == null ? defaultValue : val;
-		}
+			if (sub != null && sub.status() != DONE)
+			{
+				curr = sub.parse(buffer, curr);
 
-		public Function valFunction(int index, String defaultValue)
-		{
-			Function val = valFunction(index);
-			return val == null ? new Function(defaultValue) : val;
-		}
+				if (sub.status() == DONE)
+				{
+					this.pick().follow();
+				}
+			}
 
-		public <E> E valIfAbsent(int index, Class<E> type, Mapper<Integer, E> map)
-		{
-			E val = this.valCast(index, type);
-			if (val == null)
+			if (curr < buffer.length() && (sub == null || sub.status() == DONE))
 			{
+				int temp = NOT_FOUND;
+
+				char c;
+
 				try
 				{
-					this.attr(index, val = map.map(index));
-				}
-				catch (Exception e)
-				{
-					throw new RuntimeException(e);
+					i: for (; curr < buffer.length(); curr++)
+					{
+						c = buffer.charAt(curr);
+
+						j: switch (c)
+						{
+							case OBJECT_BEGIN_CHAR:
+							case ARRAY_BEGIN_CHAR:
+								if (sub == null)
+								{
+									sub = new Parser();
+								}
+								curr = sub.reset(c == OBJECT_BEGIN_CHAR ? new JSON() : new JSAN()) //
+										.parse(buffer, curr + 1);
+								if (sub.status() == DONE)
+								{
+									this.pick().follow();
+									if (this.isRoot())
+									{
+										break i;
+									}
+									else
+									{
+										curr--;
+									}
+								}
+								else
+								{
+									break i;
+								}
+								break j;
+
+							case OBJECT_END_CHAR:
+							case ARRAY_END_CHAR:
+								commit(buffer).status(DONE);
+								jail = curr;
+								curr++;
+								break i;
+
+							case PAIR_CHAR:
+								commit(buffer);
+								if (next(buffer) <= NOT_FOUND)
+								{
+									break i;
+								}
+								break j;
+
+							case ATTR_CHAR:
+								entry(buffer);
+								if (next(buffer) <= NOT_FOUND)
+								{
+									break i;
+								}
+								break j;
+
+							case QUOTE_CHAR:
+								nail = curr;
+								temp = DualMatchIndex(buffer, QUOTE_CHAR, QUOTE_CHAR, curr);
+								if (temp > NOT_FOUND)
+								{
+									status(IN_NONE);
+									tail = (curr = temp);
+								}
+								else
+								{
+									status(IN_STRING);
+									tail = buffer.length() - 1;
+									break i;
+								}
+								break j;
+
+							case COMMENT_CHAR:
+								temp = EndOfComment(buffer, curr);
+								if (temp > NOT_FOUND)
+								{
+									status(IN_NONE);
+									if (nail == curr)
+									{
+										nail = temp + 1;
+									}
+									if (tail == curr)
+									{
+										tail = temp + 1;
+									}
+									curr = temp;
+								}
+								else
+								{
+									status(IN_COMMENT);
+									break i;
+								}
+								break j;
+
+							case Function.DEFINE_FIRST_CHAR:
+								if (nail == curr && Function.DEFINE_MARK.equals( //
+										buffer.subSequence(curr,
+												Math.min(buffer.length(), curr + Function.DEFINE_MARK.length()) //
+										).toString()))
+								{
+									temp = (tail = DualMatchIndex(buffer, OBJECT_BEGIN_CHAR, OBJECT_END_CHAR, curr));
+									if (temp > NOT_FOUND)
+									{
+										status(IN_NONE);
+										curr = temp;
+									}
+									else
+									{
+										status(IN_FUNCTION);
+										break i;
+									}
+								}
+
+							default:
+								if (!Character.isWhitespace(c) && !Character.isSpaceChar(c))
+								{
+									if (nail <= NOT_FOUND)
+									{
+										nail = curr;
+									}
+									tail = curr;
+								}
+								break j;
+						}
+					}
 				}
-			}
-			return val;
-		}
-
-		public <E> E valIfPresent(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
-		{
-			E val = this.valCast(index, type);
-			if (val != null)
-			{
-				try
+				catch (SyntaxErrorException e)
 				{
-					this.attr(index, val = map.map(index, val));
+					throw e;
 				}
-				catch (Exception e)
+				catch (RuntimeException e)
 				{
-					throw new RuntimeException(e);
+					throw new SyntaxErrorException(e, buffer, curr);
 				}
 			}
-			return val;
-		}
-
-		public Integer valInteger(int index)
-		{
-			return CastToInteger(this.attr(index));
-		}
-
-		public Integer valInteger(int index, Integer defaultValue)
-		{
-			Integer val = valInteger(index);
-			return val == null ? defaultValue : val;
-		}
-
-		public JSAN valJSAN(int index)
-		{
-			return CastToJSAN(this.attr(index));
-		}
-
-		public JSAN valJSAN(int index, boolean newIfNull)
-		{
-			JSAN val = valJSAN(index);
-			return val == null && newIfNull ? new JSAN() : val;
-		}
-
-		public JSAN valJSAN(int index, JSAN defaultValue)
-		{
-			JSAN val = valJSAN(index);
-			return val == null ? defaultValue : val;
-		}
 
-		public JSON valJSON(int index)
-		{
-			return CastToJSON(this.attr(index));
+			return curr;
 		}
 
-		public JSON valJSON(int index, boolean newIfNull)
+		protected Parser pick()
 		{
-			JSON val = valJSON(index);
-			return val == null && newIfNull ? new JSON() : val;
-		}
+			if (sub != null)
+			{
+				value = sub.result();
 
-		public JSON valJSON(int index, JSON defaultValue)
-		{
-			JSON val = valJSON(index);
-			return val == null ? defaultValue : val;
-		}
+				if (buffer != null)
+				{
+					object = sub.result();
+				}
+			}
 
-		public Long valLong(int index)
-		{
-			return CastToLong(this.attr(index));
+			return this;
 		}
 
-		public Long valLong(int index, Long defaultValue)
+		protected Parser recycle()
 		{
-			Long val = valLong(index);
-			return val == null ? defaultValue : val;
-		}
+			int pos = jail + 1;
 
-		public <E> E valMerge(int index, Class<E> type, StatefulMapper<Integer, E, E> map)
-		{
-			E val = this.valCast(index, type);
-			try
-			{
-				this.attr(index, val = map.map(index, val));
-			}
-			catch (Exception e)
+			if (pos > 0 && pos > buffer.length() * DEFAULT_RECYCLE_RATIO)
 			{
-				throw new RuntimeException(e);
+				buffer.delete(0, pos);
+				curr -= pos;
+				nail -= pos;
+				tail -= pos;
+				jail -= pos;
 			}
-			return val;
-		}
 
-		public Object valObject(int index)
-		{
-			return attr(index);
+			return this;
 		}
 
-		public Object valObject(int index, Object defaultValue)
+		protected Parser reset(JSON object)
 		{
-			Object val = valObject(index);
-			return val == null ? defaultValue : val;
-		}
+			this.object = object;
 
-		public Short valShort(int index)
-		{
-			return CastToShort(this.attr(index));
-		}
+			nail = NOT_FOUND;
+			tail = NOT_FOUND;
+			jail = NOT_FOUND;
 
-		public Short valShort(int index, Short defaultValue)
-		{
-			Short val = valShort(index);
-			return val == null ? defaultValue : val;
-		}
+			entry = null;
+			value = NOT_A_VALUE;
 
-		public String valString(int index)
-		{
-			return CastToString(this.attr(index));
-		}
+			arrayIndex = IsJSAN(object) ? 0 : NOT_FOUND;
 
-		public String valString(int index, String defaultValue)
-		{
-			String val = valString(index);
-			return val == null ? defaultValue : val;
-		}
+			status(IN_NONE);
 
-		public Time valTime(int index)
-		{
-			return CastToTime(this.attr(index));
+			return this;
 		}
 
-		public Time valTime(int index, DateFormat format)
+		public JSON result()
 		{
-			return CastToTime(this.attr(index), format);
+			return object;
 		}
 
-		public Time valTime(int index, DateFormat format, long defaultValue)
+		protected int status()
 		{
-			Time val = valTime(index, format);
-			return val == null ? new Time(defaultValue) : val;
+			return status;
 		}
 
-		public Time valTime(int index, DateFormat format, Time defaultValue)
+		protected Parser status(int status)
 		{
-			Time val = valTime(index, format);
-			return val == null ? defaultValue : val;
+			this.status = status;
+			return this;
 		}
+	}
 
-		public Time valTime(int index, long defaultValue)
+	public static class Path
+	{
+		protected static class ChildFinder implements Finder
 		{
-			Time val = valTime(index);
-			return val == null ? new Time(defaultValue) : val;
-		}
+			protected final Extractor xtr;
 
-		public Time valTime(int index, String format)
-		{
-			return CastToTime(this.attr(index), format);
-		}
+			protected ChildFinder(Extractor xtr)
+			{
+				this.xtr = xtr;
+			}
 
-		public Time valTime(int index, String format, long defaultValue)
-		{
-			Time val = valTime(index, format);
-			return val == null ? new Time(defaultValue) : val;
-		}
+			@Override
+			public Iterable<Object> find(final JSON data) throws Exception
+			{
+				Iterable<Object> keys = xtr.extract(data);
 
-		public Time valTime(int index, String format, Time defaultValue)
-		{
-			Time val = valTime(index, format);
-			return val == null ? defaultValue : val;
+				if (keys == ALL_KEYS)
+				{
+					return data.values();
+				}
+				else
+				{
+					return Canal.of(keys).flatMap(new Mapper<Object, Iterable<Object>>()
+					{
+						@Override
+						public Iterable<Object> map(Object key) throws Exception
+						{
+							return access(data, key);
+						}
+					});
+				}
+			}
 		}
 
-		public Time valTime(int index, Time defaultValue)
+		protected static class DotFinder implements Finder
 		{
-			Time val = valTime(index);
-			return val == null ? defaultValue : val;
-		}
+			protected final Extractor xtr;
 
-		public Timestamp valTimestamp(int index)
-		{
-			return CastToTimestamp(this.attr(index));
-		}
+			protected DotFinder(Extractor xtr)
+			{
+				this.xtr = xtr;
+			}
 
-		public Timestamp valTimestamp(int index, DateFormat format)
-		{
-			return CastToTimestamp(this.attr(index), format);
-		}
+			@Override
+			public Iterable<Object> find(final JSON data) throws Exception
+			{
+				Iterable<Object> keys = xtr.extract(data);
 
-		public Timestamp valTimestamp(int index, DateFormat format, long defaultValue)
-		{
-			Timestamp val = valTimestamp(index, format);
-			return val == null ? new Timestamp(defaultValue) : val;
+				if (keys == ALL_KEYS)
+				{
+					return data.values();
+				}
+				else
+				{
+					return Canal.of(keys).first().flatMap(new Mapper<Object, Iterable<Object>>()
+					{
+						@Override
+						public Iterable<Object> map(Object key) throws Exception
+						{
+							return access(data, key);
+						}
+					});
+				}
+			}
 		}
 
-		public Timestamp valTimestamp(int index, DateFormat format, Timestamp defaultValue)
+		protected static class EnumExtractor implements Extractor
 		{
-			Timestamp val = valTimestamp(index, format);
-			return val == null ? defaultValue : val;
-		}
+			protected final Object[] keys;
 
-		public Timestamp valTimestamp(int index, long defaultValue)
-		{
-			Timestamp val = valTimestamp(index);
-			return val == null ? new Timestamp(defaultValue) : val;
+			protected EnumExtractor(Object[] keys)
+			{
+				this.keys = keys;
+			}
+
+			@Override
+			public Iterable<Object> extract(JSON data) throws Exception
+			{
+				return Canal.of(keys);
+			}
 		}
 
-		public Timestamp valTimestamp(int index, String format)
+		protected static interface Extractor
 		{
-			return CastToTimestamp(this.attr(index), format);
+			public Iterable<Object> extract(final JSON data) throws Exception;
 		}
 
-		public Timestamp valTimestamp(int index, String format, long defaultValue)
+		protected static class FilterExtractor extends ScriptExtractor
 		{
-			Timestamp val = valTimestamp(index, format);
-			return val == null ? new Timestamp(defaultValue) : val;
-		}
+			protected FilterExtractor(String expr)
+			{
+				super(expr);
+			}
 
-		public Timestamp valTimestamp(int index, String format, Timestamp defaultValue)
-		{
-			Timestamp val = valTimestamp(index, format);
-			return val == null ? defaultValue : val;
+			@Override
+			public Iterable<Object> extract(JSON data) throws Exception
+			{
+				return Canal.of(data.asMap()).filter(new Filter<Tuple2<String, Object>>()
+				{
+					ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
+
+					@Override
+					public boolean filter(Tuple2<String, Object> el) throws Exception
+					{
+						Object res = engine.eval(script(el._2));
+						if (res == null || Boolean.FALSE.equals(res) || Tools.equals("", res)
+								|| ((res instanceof Number) && ((Number) res).doubleValue() == 0.0))
+						{
+							return false;
+						}
+						else
+						{
+							return true;
+						}
+					}
+				}).map(new Mapper<Tuple2<String, Object>, Object>()
+				{
+					@Override
+					public Object map(Tuple2<String, Object> el) throws Exception
+					{
+						return el._1;
+					}
+				});
+			}
 		}
 
-		public Timestamp valTimestamp(int index, Timestamp defaultValue)
+		protected static interface Finder
 		{
-			Timestamp val = valTimestamp(index);
-			return val == null ? defaultValue : val;
+			public Iterable<Object> find(final JSON data) throws Exception;
 		}
 
-		@SuppressWarnings("unchecked")
-		@Override
-		public Collection<Object> values()
+		public static class IllegalPathException extends IllegalArgumentException
 		{
-			return new ValuesCollection(array(), object().values());
-		}
-	}
+			/**
+			 * 
+			 */
+			private static final long serialVersionUID = 1L;
 
-	public class Pair implements Entry<String, Object>
-	{
-		public final String key;
+			public IllegalPathException(String msg)
+			{
+				super(msg);
+			}
 
-		public Pair(String key)
-		{
-			this.key = key;
+			public IllegalPathException(String msg, Throwable cause)
+			{
+				super(msg, cause);
+			}
 		}
 
-		@Override
-		public boolean equals(Object o)
+		protected static class NameExtractor implements Extractor
 		{
-			if (o instanceof Pair)
+			protected final Iterable<Object> name;
+
+			protected NameExtractor(String name)
 			{
-				return Tools.equals(key, ((Pair) o).key);
+				this.name = WILDCARD.equals(name) ? ALL_KEYS : Option.<Object> some(name);
 			}
-			else
+
+			@Override
+			public Iterable<Object> extract(JSON data) throws Exception
 			{
-				return false;
+				return name;
 			}
 		}
 
-		public String getKey()
+		protected static class RangeExtractor implements Extractor
 		{
-			return key;
-		}
+			protected final int	begin;
 
-		public Object getValue()
-		{
-			return attr(key);
-		}
+			protected final int	until;
 
-		@Override
-		public int hashCode()
-		{
-			return key == null ? 0 : key.hashCode();
-		}
+			protected final int	step;
 
-		public String key()
-		{
-			return key;
-		}
+			protected RangeExtractor(Integer begin, Integer until, Integer step)
+			{
+				int a = begin == null ? Integer.MIN_VALUE : begin;
+				int b = until == null ? Integer.MAX_VALUE : until;
+				int c = step == null ? 1 : step;
 
-		public Object setValue(Object value)
-		{
-			Object old = getValue();
-			attr(key, value);
-			return old;
-		}
+				if (step != null)
+				{
+					if (begin == null)
+					{
+						a = step < 0 ? Integer.MAX_VALUE : 0;
+					}
+					if (until == null)
+					{
+						b = step < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+					}
+				}
+				else
+				{
+					c = a > b ? -1 : 1;
+				}
 
-		@Override
-		public String toString()
-		{
-			return "(" + key + "," + getValue() + ")";
-		}
+				this.begin = a;
+				this.until = b;
+				this.step = c;
+			}
 
-		public <E> E val()
-		{
-			return JSON.this.val(key);
-		}
+			@Override
+			public Iterable<Object> extract(JSON data) throws Exception
+			{
+				int len = data.size();
+				int begin = this.begin, until = this.until;
 
-		public <E> E val(E defaultValue)
-		{
-			return JSON.this.val(key, defaultValue);
-		}
+				if (begin < 0)
+				{
+					begin += len;
+				}
+				if (until < 0)
+				{
+					until += len;
+				}
 
-		public BigDecimal valBigDecimal()
-		{
-			return JSON.this.valBigDecimal(key);
-		}
+				begin = Math.max(Math.min(begin, Math.max(len - 1, 0)), 0);
+				until = Math.max(Math.min(Math.max(until, -1), len), -len);
 
-		public BigDecimal valBigDecimal(double defaultValue)
-		{
-			return JSON.this.valBigDecimal(key, defaultValue);
-		}
+				if (begin == until)
+				{
+					return Canal.none();
+				}
+				else if (step == 0)
+				{
+					return Canal.<Object> some(begin);
+				}
 
-		public BigDecimal valBigDecimal(String defaultValue)
-		{
-			return JSON.this.valBigDecimal(key, defaultValue);
+				return Canal.of(Canal.range(begin, until, step)).map(new Mapper<Integer, Object>()
+				{
+					@Override
+					public Object map(Integer el) throws Exception
+					{
+						return el;
+					}
+				});
+			}
 		}
 
-		public Boolean valBoolean()
+		protected static class RecursiveFinder implements Finder
 		{
-			return JSON.this.valBoolean(key);
-		}
+			protected final Extractor xtr;
 
-		public Boolean valBoolean(Boolean defaultValue)
-		{
-			return JSON.this.valBoolean(key, defaultValue);
-		}
+			protected RecursiveFinder(Extractor xtr)
+			{
+				this.xtr = xtr;
+			}
 
-		public Byte valByte()
-		{
-			return JSON.this.valByte(key);
+			@Override
+			public Iterable<Object> find(final JSON data) throws Exception
+			{
+				return recurs(data, xtr.extract(data));
+			}
+
+			protected Iterable<Object> recurs(final JSON data, final Iterable<Object> keys)
+			{
+				Iterable<Object> res = null;
+
+				if (keys == ALL_KEYS)
+				{
+					res = data.values();
+				}
+				else
+				{
+					res = Canal.of(keys).flatMap(new Mapper<Object, Iterable<Object>>()
+					{
+						@Override
+						public Iterable<Object> map(Object key) throws Exception
+						{
+							return access(data, key);
+						}
+					});
+				}
+
+				return Canal.of(res).union(Canal.of(data.values()).flatMap(new Mapper<Object, Iterable<Object>>()
+				{
+
+					@Override
+					public Iterable<Object> map(Object obj) throws Exception
+					{
+						if (!JSON.IsJSON(obj))
+						{
+							return Option.none();
+						}
+						return recurs((JSON) obj, keys);
+					}
+				}));
+			}
 		}
 
-		public Byte valByte(Byte defaultValue)
+		protected static class ScriptExtractor implements Extractor
 		{
-			return JSON.this.valByte(key, defaultValue);
-		}
+			protected static final String	SELF	= "@";
 
-		public Calendar valCalendar()
-		{
-			return JSON.this.valCalendar(key);
-		}
+			protected static final String	REAL	= "_$_";
 
-		public Calendar valCalendar(long defaultValue)
-		{
-			return JSON.this.valCalendar(key, defaultValue);
-		}
+			protected final String			expr;
 
-		public <E> E valCast(Class<E> cls)
-		{
-			return JSON.this.valCast(key, cls);
-		}
+			protected final boolean			self;
 
-		public <E> E valCast(Class<E> cls, E defaultValue)
-		{
-			return JSON.this.valCast(key, cls, defaultValue);
-		}
+			protected ScriptExtractor(String expr)
+			{
+				this.expr = expr.replace(SELF, REAL);
+				this.self = expr.length() != this.expr.length();
+			}
 
-		public Character valCharacter()
-		{
-			return JSON.this.valCharacter(key);
-		}
+			protected Object eval(JSON data) throws ScriptException
+			{
+				return new ScriptEngineManager().getEngineByName("javascript").eval(script(data));
+			}
 
-		public Character valCharacter(Character defaultValue)
-		{
-			return JSON.this.valCharacter(key, defaultValue);
-		}
+			@Override
+			public Iterable<Object> extract(JSON data) throws Exception
+			{
+				Object res = eval(data);
+				if (res instanceof Number)
+				{
+					res = ((Number) res).intValue();
+				}
+				return Option.some(res);
+			}
 
-		public Date valDate()
-		{
-			return JSON.this.valDate(key);
+			protected String script(Object data)
+			{
+				return (self ? "var " + REAL + "=" + (data != null ? data.toString() : "null") + ";\n" : "") + expr;
+			}
 		}
 
-		public Date valDate(long defaultValue)
+		protected static class WildcardExtractor implements Extractor
 		{
-			return JSON.this.valDate(key, defaultValue);
+			@Override
+			public Iterable<Object> extract(JSON data) throws Exception
+			{
+				return ALL_KEYS;
+			}
 		}
 
-		public Double valDouble()
-		{
-			return JSON.this.valDouble(key);
-		}
+		public static final char				CHILD_CHAR	= '.';
 
-		public Double valDouble(Double defaultValue)
-		{
-			return JSON.this.valDouble(key, defaultValue);
-		}
+		public static final String				WILDCARD	= "*";
 
-		public Float valFloat()
-		{
-			return JSON.this.valFloat(key);
-		}
+		protected static final Iterable<Object>	ALL_KEYS	= Option.some(null);
 
-		public Float valFloat(Float defaultValue)
-		{
-			return JSON.this.valFloat(key, defaultValue);
-		}
+		protected static final Set<Character>	NAME_BOUND	= new HashSet<Character>();
 
-		public Function valFunction()
+		static
 		{
-			return JSON.this.valFunction(key);
+			NAME_BOUND.add('.');
+			NAME_BOUND.add('[');
 		}
 
-		public Function valFunction(Function defaultValue)
+		protected static Option<Object> access(final JSON data, final Object key)
 		{
-			return JSON.this.valFunction(key, defaultValue);
+			return data.containsKey(key) ? Option.some(data.get(key)) : Option.none();
 		}
 
-		public Function valFunction(String defaultValue)
+		protected static int findNext(String text, int from, Set<Character> chars)
 		{
-			return JSON.this.valFunction(key, defaultValue);
+			for (int i = from; i < text.length(); i++)
+			{
+				if (chars.contains(text.charAt(i)))
+				{
+					return i;
+				}
+			}
+			return -1;
 		}
 
-		public Integer valInteger()
+		public static void main(String[] args)
 		{
-			return JSON.this.valInteger(key);
-		}
+			JSON json = JSON.Parse("{\"a\":1, \"b\":true, \"c\":[1,2,3,\"xyz\"], \"d\":{\"a\":true}}");
+			try
+			{
+				Path path = Path.parse("$.d.a");
 
-		public Integer valInteger(Integer defaultValue)
-		{
-			return JSON.this.valInteger(key, defaultValue);
+				Tools.debug(path.find(json));
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
 		}
 
-		public JSAN valJSAN()
+		public static Path parse(String text)
 		{
-			return JSON.this.valJSAN(key);
+			return new Path(parseFinders(text));
 		}
 
-		public JSAN valJSAN(boolean newIfNull)
+		protected static Extractor parseExtractor(String text, int begin, int until)
 		{
-			return JSON.this.valJSAN(key, newIfNull);
-		}
+			String expr = text.substring(begin + 1, until).trim();
 
-		public JSAN valJSAN(JSAN defaultValue)
-		{
-			return JSON.this.valJSAN(key, defaultValue);
-		}
+			if (expr.isEmpty())
+			{
+				throw new IllegalPathException(
+						"Missing expression in [] between " + begin + "th to " + until + "th char of " + text);
+			}
 
-		public JSON valJSON()
-		{
-			return JSON.this.valJSON(key);
+			if (expr.startsWith("("))
+			{ // script
+				if (!expr.endsWith(")"))
+				{
+					throw new IllegalPathException("Missing ')' before " + until + "th char of " + text);
+				}
+				return new ScriptExtractor(expr.substring(1, expr.length() - 1));
+			}
+			else if (expr.startsWith("?("))
+			{ // filter
+				if (!expr.endsWith(")"))
+				{
+					throw new IllegalPathException("Missing ')' before " + until + "th char of " + text);
+				}
+				return new FilterExtractor(expr.substring(2, expr.length() - 1));
+			}
+			else if (expr.indexOf(':') >= 0)
+			{ // range
+				String[] pair = expr.split(":", -1);
+				Integer a = parseInteger(pair[0].trim());
+				Integer b = parseInteger(pair[1].trim());
+				Integer c = pair.length > 2 ? parseInteger(pair[2].trim()) : null;
+				return new RangeExtractor(a, b, c);
+			}
+			else if (expr.indexOf(',') >= 0)
+			{ // enum
+				return new EnumExtractor(Canal.of(expr.split(",", -1)).map(new Mapper<String, String>()
+				{
+					@Override
+					public String map(String t) throws Exception
+					{
+						return restoreText(t.trim());
+					}
+				}).collect().toArray());
+			}
+			else
+			{ // name
+				return new NameExtractor(restoreText(expr.trim()));
+			}
 		}
 
-		public JSON valJSON(boolean newIfNull)
+		protected static List<Finder> parseFinders(String text)
 		{
-			return JSON.this.valJSON(key, newIfNull);
-		}
+			String path = text.trim();
+			if (!path.startsWith("$"))
+			{
+				throw new IllegalPathException(text + " must start with $");
+			}
 
-		public JSON valJSON(JSON defaultValue)
-		{
-			return JSON.this.valJSON(key, defaultValue);
-		}
+			List<Finder> res = new ArrayList<Finder>();
 
-		public Long valLong()
-		{
-			return JSON.this.valLong(key);
-		}
+			char c = '\0', n = '\0';
+			int j = 0, len = path.length();
+			for (int i = 1; i < len; i++)
+			{
+				c = path.charAt(i);
 
-		public Long valLong(Long defaultValue)
-		{
-			return JSON.this.valLong(key, defaultValue);
-		}
+				if (CHILD_CHAR == c)
+				{
+					i++;
+					if (i < path.length())
+					{
+						n = path.charAt(i);
+
+						if (CHILD_CHAR == n)
+						{ // Recursive
+							i++;
+							j = findNext(path, i, NAME_BOUND);
+							j = j >= 0 ? j : len;
+							if (j == i)
+							{
+								throw new IllegalPathException("Missing name after " + (i - 1) + "th char of " + text);
+							}
+							res.add(new RecursiveFinder(new NameExtractor(path.substring(i, j))));
+							i = j - 1;
+						}
+						else if (JSON.ARRAY_BEGIN_CHAR == n)
+						{ // Recursive
+							j = JSON.DualMatchIndex(path, JSON.ARRAY_BEGIN_CHAR, JSON.ARRAY_END_CHAR, i);
+							if (j < 0)
+							{
+								throw new IllegalPathException("Missing a ']' after " + i + "th char of " + text);
+							}
+							res.add(new RecursiveFinder(parseExtractor(path, i, j)));
+							i = j;
+						}
+						else
+						{ // Dot
+							j = findNext(path, i, NAME_BOUND);
+							j = j >= 0 ? j : len;
+							if (j == i)
+							{
+								throw new IllegalPathException("Missing name after " + i + "th char of " + text);
+							}
+							res.add(new DotFinder(new NameExtractor(path.substring(i, j))));
+							i = j - 1;
+						}
+					}
+				}
+				else if (JSON.ARRAY_BEGIN_CHAR == c)
+				{
+					j = JSON.DualMatchIndex(path, JSON.ARRAY_BEGIN_CHAR, JSON.ARRAY_END_CHAR, i);
+					if (j < 0)
+					{
+						throw new IllegalPathException("Missing a ']' after " + i + "th char of " + text);
+					}
+					res.add(new ChildFinder(parseExtractor(path, i, j)));
+					i = j;
+				}
+			}
 
-		public Short valShort()
-		{
-			return JSON.this.valShort(key);
+			return res;
 		}
 
-		public Short valShort(Short defaultValue)
+		protected static Integer parseInteger(String text)
 		{
-			return JSON.this.valShort(key, defaultValue);
+			if (text.isEmpty())
+			{
+				return null;
+			}
+			else
+			{
+				return Integer.valueOf(text);
+			}
 		}
 
-		public String valString()
+		protected static String restoreText(String text)
 		{
-			return JSON.this.valString(key);
+			if (text.length() > 1 //
+					&& ((text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"') //
+							|| (text.charAt(0) == '\'' && text.charAt(text.length() - 1) == '\'')))
+			{
+				return JSON.RestoreStringContent(text.substring(1, text.length() - 1));
+			}
+			else
+			{
+				return text;
+			}
 		}
 
-		public String valString(String defaultValue)
-		{
-			return JSON.this.valString(key, defaultValue);
-		}
+		protected final List<Finder> finders;
 
-		public Time valTime()
+		protected Path(List<Finder> finders)
 		{
-			return JSON.this.valTime(key);
+			this.finders = finders;
 		}
 
-		public Time valTime(long defaultValue)
+		public Canal<Object> find(final Object data)
 		{
-			return JSON.this.valTime(key, defaultValue);
-		}
+			Canal<Object> last = Option.some(data);
 
-		public Timestamp valTimestamp()
-		{
-			return JSON.this.valTimestamp(key);
-		}
+			for (final Finder finder : finders)
+			{
+				last = last.filter(new Filter<Object>()
+				{
+					@Override
+					public boolean filter(Object el) throws Exception
+					{
+						return JSON.IsJSON(el);
+					}
+				}).flatMap(new Mapper<Object, Iterable<Object>>()
+				{
+					@Override
+					public Iterable<Object> map(Object el) throws Exception
+					{
+						return finder.find((JSON) el);
+					}
+				});
+			}
 
-		public Timestamp valTimestamp(long defaultValue)
-		{
-			return JSON.this.valTimestamp(key, defaultValue);
+			return last;
 		}
 	}
 
-	public static class Parser
+	public static interface Projector<T> extends Serializable
 	{
-		public static final int	DISPOSED				= -1;
-
-		public static final int	DONE					= 0;
-
-		public static final int	IN_NONE					= 1;
-
-		public static final int	IN_STRING				= 2;
-
-		public static final int	IN_COMMENT				= 3;
-
-		public static final int	IN_FUNCTION				= 4;
-
 		/**
-		 * The buffer will be recycled if the jail index is above the ratio of
-		 * the buffer length. So if the ratio is 1 (or greater) that means never
-		 * being recycled, 0 (or less) means always being recycled.
+		 * To generate a new instance according to given target class and source
+		 * json. null can be returned which means using the default newInstance
+		 * policy.
+		 * 
+		 * @param cls
+		 * @param json
+		 * @return
+		 * @throws Exception
 		 */
-		public static double	DEFAULT_RECYCLE_RATIO	= 0.9;
+		public T instance(Class<T> cls, JSON json) throws Exception;
 
 		/**
-		 * This is the default buffer size which decides how many characters
-		 * will be read at most while parsing via a Reader.
+		 * Project the source json to the target object.
+		 * 
+		 * @param obj
+		 * @param json
+		 * @return
+		 * @throws Exception
 		 */
-		public static int		DEFAULT_READER_BUFFER	= 1000;
-
-		private StringBuilder	buffer;
-
-		private JSON			object;
-
-		private String			entry;
-
-		private Object			value;
+		public T project(T obj, JSON json) throws Exception;
+	}
 
-		private int				arrayIndex;
+	public static class Quotation implements Hierarchical
+	{
+		public static final char	LINEAR_ATTRIBUTE		= '.';
 
-		private int				status;
+		public static final char	NESTED_ATTRIBUTE_BEGIN	= '[';
 
-		private int				curr					= 0;
+		public static final char	NESTED_ATTRIBUTE_END	= ']';
 
-		private int				nail					= NOT_FOUND;
+		public static final char	NESTED_ATTRIBUTE_QUOTE	= '"';
 
-		private int				tail					= NOT_FOUND;
+		public static Object Quote(Context context, String quote, Object object)
+		{
+			JSON outer = null;
+			String entry = null;
 
-		private int				jail					= NOT_FOUND;
+			StringBuilder buffer = new StringBuilder(quote.length());
 
-		private Parser			sub						= null;
+			FilterComments(buffer, quote, 0);
 
-		protected Parser commit(StringBuilder buffer)
-		{
-			if (value == NOT_A_VALUE && nail > NOT_FOUND)
-			{
-				value = ParseValueOf(buffer.subSequence(nail, tail + 1).toString());
-			}
+			quote = buffer.toString();
 
-			if (value != NOT_A_VALUE)
+			int quoteLength = quote.length() - 1;
+			if (quote.charAt(quoteLength) == NESTED_ATTRIBUTE_END)
 			{
-				if (entry == null && arrayIndex > NOT_FOUND)
+				int begin = JSON.LastDualMatchIndex(quote, NESTED_ATTRIBUTE_BEGIN, NESTED_ATTRIBUTE_END, quoteLength);
+				outer = JSON.AsJSON(Quote(context, quote.substring(0, begin)));
+				if (outer != null)
 				{
-					entry = JSAN.Key(arrayIndex);
-					arrayIndex++;
+					entry = Quote(context, quote.substring(begin + 1, quoteLength)).toString();
 				}
-				object.put(entry, value);
-				value = NOT_A_VALUE;
-				entry = null;
 			}
-
-			return this;
-		}
-
-		public Parser dispose()
-		{
-			if (sub != null)
-			{
-				sub.dispose();
-				sub = null;
-			}
-
-			if (buffer != null)
+			else
 			{
-				Tools.clearStringBuilder(buffer);
-				buffer = null;
+				int begin = quote.lastIndexOf(LINEAR_ATTRIBUTE);
+				if (begin == -1)
+				{
+					outer = context;
+					entry = quote;
+				}
+				else
+				{
+					outer = JSON.AsJSON(Quote(context, quote.substring(0, begin)));
+					if (outer != null)
+					{
+						entry = quote.substring(begin + 1);
+					}
+				}
 			}
 
-			entry = null;
-			value = null;
-
-			status(DISPOSED);
-
-			return this;
-		}
-
-		protected Parser entry(StringBuilder buffer)
-		{
-			entry = RestoreString(buffer.subSequence(nail, tail + 1).toString());
-			return this;
-		}
-
-		protected Parser follow()
-		{
-			if (sub != null)
+			if (outer != null && entry != null)
 			{
-				curr = sub.curr;
-				nail = sub.nail;
-				tail = sub.tail;
-				jail = sub.jail;
+				Object temp = object;
+				object = outer.got(entry);
+				outer.put(entry, temp);
 			}
 
-			return this;
-		}
-
-		protected boolean isRoot()
-		{
-			return buffer != null;
+			return object;
 		}
 
-		protected int next(StringBuilder buffer)
+		public static String Quote(JSON json)
 		{
-			curr++;
+			StringBuilder buffer = new StringBuilder();
 
-			int temp = (tail = (nail = FirstNonWhitespaceIndex(buffer, curr)));
+			JSON outer = json.outer();
+			String entry = null;
 
-			if (temp > NOT_FOUND)
+			while (outer != null)
 			{
-				curr = temp - 1;
-			}
-
-			return temp;
-		}
+				entry = json.entry();
 
-		public Parser parse(CharSequence source)
-		{
-			if (buffer != source)
-			{
-				if (buffer == null)
+				if (outer.outer() != null)
 				{
-					if (source instanceof StringBuilder)
+					buffer.insert(0, NESTED_ATTRIBUTE_END);
+					if (!JSON.IsJSAN(outer))
 					{
-						buffer = (StringBuilder) source;
+						buffer.insert(0, NESTED_ATTRIBUTE_QUOTE);
 					}
-					else
+				}
+				buffer.insert(0, entry);
+				if (outer.outer() != null)
+				{
+					if (!JSON.IsJSAN(outer))
 					{
-						buffer = new StringBuilder(source);
+						buffer.insert(0, NESTED_ATTRIBUTE_QUOTE);
 					}
+					buffer.insert(0, NESTED_ATTRIBUTE_BEGIN);
 				}
-				else
-				{
-					this.recycle();
-					buffer.append(source);
-				}
-			}
-
-			object = null;
-
-			this.parse(buffer, curr);
 
-			return this;
-		}
+				json = outer;
+				outer = json.outer();
+			}
 
-		public Parser parse(Reader reader, boolean closeAfterRead) throws IOException
-		{
-			return parse(reader, DEFAULT_READER_BUFFER, closeAfterRead);
+			return buffer.toString();
 		}
 
-		public Parser parse(Reader reader, int buffers, boolean closeAfterRead) throws IOException
+		public static Object Quote(JSON context, String quote)
 		{
-			if (reader != null)
+			if (context == null)
 			{
-				char[] chars = new char[Math.max(buffers, 1)];
+				return null;
+			}
 
-				if (buffer == null)
-				{
-					buffer = new StringBuilder(chars.length);
-				}
-				else
-				{
-					this.recycle();
-				}
+			Object object = context;
 
-				object = null;
+			Map<String, Object> map = null;
+			int nail = 0;
 
-				int length = -1;
+			char c = 0;
+			int i = 0;
+			String entry;
 
-				try
+			i: for (i = 0; i < quote.length(); i++)
+			{
+				c = quote.charAt(i);
+
+				if (c == LINEAR_ATTRIBUTE)
 				{
-					while ((length = reader.read(chars)) != -1 //
-							|| (buffer.length() > 0 && curr < buffer.length()))
+					if (nail != i)
 					{
-						if (length > -1)
+						map = JSON.AsMap(object);
+						if (map == null)
 						{
-							buffer.append(chars, 0, length);
+							return null;
 						}
-
-						parse(buffer);
-
-						if (result() != null)
+						else
 						{
-							break;
+							entry = quote.substring(nail, i).trim();
+							object = map.get(entry);
+							nail = i + 1;
 						}
 					}
+					else
+					{
+						nail = i + 1;
+					}
 				}
-				finally
+
+				if (c == NESTED_ATTRIBUTE_BEGIN)
 				{
-					if (closeAfterRead)
+					if (nail != i)
 					{
-						reader.close();
+						map = JSON.AsMap(object);
+						if (map == null)
+						{
+							return null;
+						}
+						else
+						{
+							entry = quote.substring(nail, i).trim();
+							object = map.get(entry);
+							nail = i + 1;
+						}
+					}
+					else
+					{
+						nail = i + 1;
 					}
+					i = CheckNext(quote, i, JSON.DualMatchIndex(quote, NESTED_ATTRIBUTE_BEGIN, NESTED_ATTRIBUTE_END, i))
+							- 1;
+					continue i;
 				}
-			}
-
-			return this;
-		}
-
-		protected int parse(StringBuilder buffer, int from)
-		{
-			curr = from;
-
-			if (sub != null && sub.status() != DONE)
-			{
-				curr = sub.parse(buffer, curr);
 
-				if (sub.status() == DONE)
+				if (c == NESTED_ATTRIBUTE_QUOTE)
 				{
-					this.pick().follow();
+					nail = i + 1;
+					do
+					{
+						i = Tools.seekIndex(quote, NESTED_ATTRIBUTE_QUOTE, i + 1);
+					}
+					while (quote.charAt(i - 1) == JSON.ESCAPE_CHAR);
+					break;
 				}
-			}
-
-			if (curr < buffer.length() && (sub == null || sub.status() == DONE))
-			{
-				int temp = NOT_FOUND;
-
-				char c;
 
-				try
+				if (c == NESTED_ATTRIBUTE_END)
 				{
-					i: for (; curr < buffer.length(); curr++)
+					map = JSON.AsMap(object);
+					if (map == null)
 					{
-						c = buffer.charAt(curr);
-
-						j: switch (c)
-						{
-							case OBJECT_BEGIN_CHAR:
-							case ARRAY_BEGIN_CHAR:
-								if (sub == null)
-								{
-									sub = new Parser();
-								}
-								curr = sub.reset(c == OBJECT_BEGIN_CHAR ? new JSON() : new JSAN()) //
-										.parse(buffer, curr + 1);
-								if (sub.status() == DONE)
-								{
-									this.pick().follow();
-									if (this.isRoot())
-									{
-										break i;
-									}
-									else
-									{
-										curr--;
-									}
-								}
-								else
-								{
-									break i;
-								}
-								break j;
-
-							case OBJECT_END_CHAR:
-							case ARRAY_END_CHAR:
-								commit(buffer).status(DONE);
-								jail = curr;
-								curr++;
-								break i;
-
-							case PAIR_CHAR:
-								commit(buffer);
-								if (next(buffer) <= NOT_FOUND)
-								{
-									break i;
-								}
-								break j;
-
-							case ATTR_CHAR:
-								entry(buffer);
-								if (next(buffer) <= NOT_FOUND)
-								{
-									break i;
-								}
-								break j;
-
-							case QUOTE_CHAR:
-								nail = curr;
-								temp = DualMatchIndex(buffer, QUOTE_CHAR, QUOTE_CHAR, curr);
-								if (temp > NOT_FOUND)
-								{
-									status(IN_NONE);
-									tail = (curr = temp);
-								}
-								else
-								{
-									status(IN_STRING);
-									tail = buffer.length() - 1;
-									break i;
-								}
-								break j;
-
-							case COMMENT_CHAR:
-								temp = EndOfComment(buffer, curr);
-								if (temp > NOT_FOUND)
-								{
-									status(IN_NONE);
-									if (nail == curr)
-									{
-										nail = temp + 1;
-									}
-									if (tail == curr)
-									{
-										tail = temp + 1;
-									}
-									curr = temp;
-								}
-								else
-								{
-									status(IN_COMMENT);
-									break i;
-								}
-								break j;
-
-							case Function.DEFINE_FIRST_CHAR:
-								if (nail == curr && Function.DEFINE_MARK.equals( //
-										buffer.subSequence(curr,
-												Math.min(buffer.length(), curr + Function.DEFINE_MARK.length()) //
-										).toString()))
-								{
-									temp = (tail = DualMatchIndex(buffer, OBJECT_BEGIN_CHAR, OBJECT_END_CHAR, curr));
-									if (temp > NOT_FOUND)
-									{
-										status(IN_NONE);
-										curr = temp;
-									}
-									else
-									{
-										status(IN_FUNCTION);
-										break i;
-									}
-								}
-
-							default:
-								if (!Character.isWhitespace(c) && !Character.isSpaceChar(c))
-								{
-									if (nail <= NOT_FOUND)
-									{
-										nail = curr;
-									}
-									tail = curr;
-								}
-								break j;
-						}
+						return null;
+					}
+					else
+					{
+						entry = Quote(context, quote.substring(nail, i)).toString();
+						object = map.get(entry);
+						nail = i + 1;
 					}
 				}
-				catch (SyntaxErrorException e)
+			}
+
+			if (c == NESTED_ATTRIBUTE_QUOTE || Variable.isIntegerNumber(quote))
+			{
+				object = quote.substring(nail, i);
+			}
+			else if (c != NESTED_ATTRIBUTE_END)
+			{
+				map = JSON.AsMap(object);
+				if (map == null)
 				{
-					throw e;
+					return null;
 				}
-				catch (RuntimeException e)
+				else
 				{
-					throw new SyntaxErrorException(e, buffer, curr);
+					entry = quote.substring(nail, i).trim();
+					object = map.get(entry);
 				}
 			}
 
-			return curr;
+			return object;
 		}
 
-		protected Parser pick()
-		{
-			if (sub != null)
-			{
-				value = sub.result();
+		private JSON	outer;
 
-				if (buffer != null)
-				{
-					object = sub.result();
-				}
-			}
+		private String	entry;
 
-			return this;
-		}
+		private String	quote;
 
-		protected Parser recycle()
+		protected Quotation(Quotation q)
 		{
-			int pos = jail + 1;
-
-			if (pos > 0 && pos > buffer.length() * DEFAULT_RECYCLE_RATIO)
-			{
-				buffer.delete(0, pos);
-				curr -= pos;
-				nail -= pos;
-				tail -= pos;
-				jail -= pos;
-			}
+			quote(q.quote).outer(q.outer()).entry(q.entry());
+		}
 
-			return this;
+		public Quotation(String quote)
+		{
+			quote(quote);
 		}
 
-		protected Parser reset(JSON object)
+		@Override
+		public Quotation clone()
 		{
-			this.object = object;
+			return new Quotation(this).outer(null).entry(null);
+		}
 
-			nail = NOT_FOUND;
-			tail = NOT_FOUND;
-			jail = NOT_FOUND;
+		public Context context()
+		{
+			return outer == null ? null : outer.context();
+		}
 
-			entry = null;
-			value = NOT_A_VALUE;
+		public String entry()
+		{
+			return entry;
+		}
 
-			arrayIndex = IsJSAN(object) ? 0 : NOT_FOUND;
+		public Quotation entry(String entry)
+		{
+			this.entry = entry;
+			return this;
+		}
 
-			status(IN_NONE);
+		public JSON outer()
+		{
+			return outer;
+		}
 
+		public Quotation outer(JSON outer)
+		{
+			this.outer = outer;
 			return this;
 		}
 
-		public JSON result()
+		public Object quote()
 		{
-			return object;
+			return Quote(context(), quote);
 		}
 
-		protected int status()
+		protected Quotation quote(String quote)
 		{
-			return status;
+			this.quote = quote.trim();
+			return this;
 		}
 
-		protected Parser status(int status)
+		@Override
+		public String toString()
 		{
-			this.status = status;
-			return this;
+			return quote;
 		}
 	}
 
-	public static class Path
+	public static interface Reflector<T> extends Serializable
 	{
-		protected static class ChildFinder implements Finder
-		{
-			protected final Extractor xtr;
+		public JSON reflect(JSON json, T obj);
+	}
 
-			protected ChildFinder(Extractor xtr)
-			{
-				this.xtr = xtr;
-			}
+	public static class SyntaxErrorException extends RuntimeException
+	{
+		/**
+		 * 
+		 */
+		private static final long	serialVersionUID	= 5584855948726666241L;
 
-			@Override
-			public Iterable<Object> find(final JSON data) throws Exception
-			{
-				Iterable<Object> keys = xtr.extract(data);
+		public static int			DEFAULT_VIEW		= 15;
 
-				if (keys == ALL_KEYS)
-				{
-					return data.values();
-				}
-				else
-				{
-					return Canal.of(keys).flatMap(new Mapper<Object, Iterable<Object>>()
-					{
-						@Override
-						public Iterable<Object> map(Object key) throws Exception
-						{
-							return access(data, key);
-						}
-					});
-				}
-			}
+		public static String FormatMessage(String hint, CharSequence msg, int index)
+		{
+			hint = hint == null ? "" : hint.trim();
+			return hint + (hint.length() == 0 ? "" : " ") + "@" + index + "\n" //
+					+ msg;
 		}
 
-		protected static class DotFinder implements Finder
+		public static CharSequence LocateMessage(CharSequence source, int index, int view)
 		{
-			protected final Extractor xtr;
+			return source.subSequence(Math.max(index - view, 0), Math.min(index + view, source.length()));
+		}
 
-			protected DotFinder(Extractor xtr)
-			{
-				this.xtr = xtr;
-			}
+		public SyntaxErrorException(CharSequence source, int index)
+		{
+			this("", source, index);
+		}
 
-			@Override
-			public Iterable<Object> find(final JSON data) throws Exception
-			{
-				Iterable<Object> keys = xtr.extract(data);
+		public SyntaxErrorException(String msg)
+		{
+			super(msg);
+		}
 
-				if (keys == ALL_KEYS)
-				{
-					return data.values();
-				}
-				else
-				{
-					return Canal.of(keys).first().flatMap(new Mapper<Object, Iterable<Object>>()
-					{
-						@Override
-						public Iterable<Object> map(Object key) throws Exception
-						{
-							return access(data, key);
-						}
-					});
-				}
-			}
+		public SyntaxErrorException(String hint, CharSequence source, int index)
+		{
+			super(FormatMessage(hint, LocateMessage(source, index, DEFAULT_VIEW), index));
 		}
 
-		protected static class EnumExtractor implements Extractor
+		public SyntaxErrorException(String hint, Throwable cause, CharSequence source, int index)
 		{
-			protected final Object[] keys;
+			super(cause instanceof SyntaxErrorException //
+					? cause.getMessage() //
+					: FormatMessage(hint, LocateMessage(source, index, DEFAULT_VIEW), index), //
+					cause);
+		}
 
-			protected EnumExtractor(Object[] keys)
+		public SyntaxErrorException(Throwable cause, CharSequence source, int index)
+		{
+			this(cause.getMessage(), cause, source, index);
+		}
+	}
+
+	/**
+	 * A single pass tokenizer which reads the characters through a state
+	 * machine without rescanning, and builds the values from its character
+	 * buffer directly. The comments and the function definitions are accepted
+	 * as {@link Parser} does. Any characters outside the root object or array
+	 * are ignored. Unlike Parser, the values which are not separated by comma,
+	 * such as {@code ["a" "b"]}, are all kept instead of the last one.
+	 */
+	public static class Tokenizer implements Closeable
+	{
+		public static final int	END					= -1;
+
+		public static final int	START_OBJECT		= 1;
+
+		public static final int	END_OBJECT			= 2;
+
+		public static final int	START_ARRAY			= 3;
+
+		public static final int	END_ARRAY			= 4;
+
+		public static final int	FIELD_NAME			= 5;
+
+		public static final int	VALUE_STRING		= 6;
+
+		public static final int	VALUE_NUMBER		= 7;
+
+		public static final int	VALUE_TRUE			= 8;
+
+		public static final int	VALUE_FALSE			= 9;
+
+		public static final int	VALUE_NULL			= 10;
+
+		public static final int	VALUE_FUNCTION		= 11;
+
+		public static final int	VALUE_QUOTATION		= 12;
+
+		public static final String	ROOT_PATH			= "$";
+
+		/**
+		 * The number of characters read from the source at a time, another
+		 * size could be given by {@link #Tokenizer(Reader, int)}.
+		 */
+		public static final int	DEFAULT_BUFFER_SIZE	= 8192;
+
+		protected static boolean IsWhitespace(char c)
+		{
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
 			{
-				this.keys = keys;
+				return true;
 			}
-
-			@Override
-			public Iterable<Object> extract(JSON data) throws Exception
+			else if (c < ' ')
 			{
-				return Canal.of(keys);
+				return Character.isWhitespace(c);
+			}
+			else if (c < 128)
+			{
+				return false;
 			}
+			else
+			{
+				return Character.isWhitespace(c) || Character.isSpaceChar(c);
+			}
+		}
+
+		private final Reader		reader;
+
+		private final CharSequence	source;
+
+		private int					offset;
+
+		private char[]				buf;
+
+		private int					pos;
+
+		private int					lim;
+
+		private long				consumed;
+
+		private final StringBuilder	text	= new StringBuilder();
+
+		private char[]				chars	= new char[32];
+
+		private boolean[]			objects	= new boolean[32];
+
+		private String[]			keys	= new String[32];
+
+		private int[]				index	= new int[32];
+
+		private int					depth;
+
+		private boolean				naming;
+
+		private boolean				skipping;
+
+		/**
+		 * Whether the last token was an elided array element, which leaves
+		 * the tokenizer just after a comma.
+		 */
+		private boolean				elided;
+
+		private int					token;
+
+		private String				name;
+
+		private Object				value;
+
+		public Tokenizer(CharSequence source)
+		{
+			this(null, source, Math.min(DEFAULT_BUFFER_SIZE, Math.max(source.length(), 16)));
 		}
 
-		protected static interface Extractor
+		/**
+		 * Read from the given InputStream decoded by the charset, null means
+		 * the default charset.
+		 * 
+		 * @param in
+		 * @param charset
+		 */
+		public Tokenizer(InputStream in, Charset charset)
 		{
-			public Iterable<Object> extract(final JSON data) throws Exception;
+			this(new InputStreamReader(in, charset == null ? Charset.defaultCharset() : charset));
 		}
 
-		protected static class FilterExtractor extends ScriptExtractor
+		public Tokenizer(Reader reader)
 		{
-			protected FilterExtractor(String expr)
-			{
-				super(expr);
-			}
-
-			@Override
-			public Iterable<Object> extract(JSON data) throws Exception
-			{
-				return Canal.of(data.asMap()).filter(new Filter<Tuple2<String, Object>>()
-				{
-					ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
-
-					@Override
-					public boolean filter(Tuple2<String, Object> el) throws Exception
-					{
-						Object res = engine.eval(script(el._2));
-						if (res == null || Boolean.FALSE.equals(res) || Tools.equals("", res)
-								|| ((res instanceof Number) && ((Number) res).doubleValue() == 0.0))
-						{
-							return false;
-						}
-						else
-						{
-							return true;
-						}
-					}
-				}).map(new Mapper<Tuple2<String, Object>, Object>()
-				{
-					@Override
-					public Object map(Tuple2<String, Object> el) throws Exception
-					{
-						return el._1;
-					}
-				});
-			}
+			this(reader, DEFAULT_BUFFER_SIZE);
 		}
 
-		protected static interface Finder
+		public Tokenizer(Reader reader, int bufferSize)
 		{
-			public Iterable<Object> find(final JSON data) throws Exception;
+			this(reader, null, bufferSize);
 		}
 
-		public static class IllegalPathException extends IllegalArgumentException
+		protected Tokenizer(Reader reader, CharSequence source, int bufferSize)
 		{
-			/**
-			 * 
-			 */
-			private static final long serialVersionUID = 1L;
-
-			public IllegalPathException(String msg)
-			{
-				super(msg);
-			}
-
-			public IllegalPathException(String msg, Throwable cause)
+			if (reader == null && source == null)
 			{
-				super(msg, cause);
+				throw new NullPointerException();
 			}
+			this.reader = reader;
+			this.source = source;
+			this.buf = new char[Math.max(bufferSize, 16)];
 		}
 
-		protected static class NameExtractor implements Extractor
+		/**
+		 * Add a value into the container as the old Parser does.
+		 */
+		protected void add(JSON container, String name, int index, Object value)
 		{
-			protected final Iterable<Object> name;
-
-			protected NameExtractor(String name)
+			if (name == null && container instanceof JSAN)
 			{
-				this.name = WILDCARD.equals(name) ? ALL_KEYS : Option.<Object> some(name);
+				((JSAN) container).put(index, value);
 			}
-
-			@Override
-			public Iterable<Object> extract(JSON data) throws Exception
+			else
 			{
-				return name;
+				container.put(name, value);
 			}
 		}
 
-		protected static class RangeExtractor implements Extractor
+		/**
+		 * Classify a bare token, the numbers and literals are recognized
+		 * without creating a String, others are left to
+		 * {@link JSON#ParseValueOf(String)}.
+		 */
+		protected int classify(char[] a, int off, int len)
 		{
-			protected final int	begin;
-
-			protected final int	until;
-
-			protected final int	step;
-
-			protected RangeExtractor(Integer begin, Integer until, Integer step)
+			if (len == 4 && a[off] == 'n' && a[off + 1] == 'u' && a[off + 2] == 'l' && a[off + 3] == 'l')
 			{
-				int a = begin == null ? Integer.MIN_VALUE : begin;
-				int b = until == null ? Integer.MAX_VALUE : until;
-				int c = step == null ? 1 : step;
+				value = null;
+				return VALUE_NULL;
+			}
+			if (len == 4 && a[off] == 't' && a[off + 1] == 'r' && a[off + 2] == 'u' && a[off + 3] == 'e')
+			{
+				value = Boolean.TRUE;
+				return VALUE_TRUE;
+			}
+			if (len == 5 && a[off] == 'f' && a[off + 1] == 'a' && a[off + 2] == 'l' && a[off + 3] == 's'
+					&& a[off + 4] == 'e')
+			{
+				value = Boolean.FALSE;
+				return VALUE_FALSE;
+			}
 
-				if (step != null)
+			int i = off, end = off + len;
+			boolean neg = false;
+			if (i < end && a[i] == '-')
+			{
+				neg = true;
+				i++;
+			}
+			// Accumulate negatively as Long.parseLong does
+			long limit = neg ? Long.MIN_VALUE : -Long.MAX_VALUE, num = 0;
+			boolean over = false;
+			int digits = 0, d;
+			while (i < end && a[i] >= '0' && a[i] <= '9')
+			{
+				d = a[i] - '0';
+				if (num < limit / 10 || (num *= 10) < limit + d)
 				{
-					if (begin == null)
+					over = true;
+				}
+				num -= d;
+				digits++;
+				i++;
+			}
+			if (i == end && digits > 0)
+			{
+				if (over)
+				{
+					value = new BigDecimal(a, off, len);
+				}
+				else
+				{
+					num = neg ? num : -num;
+					if (num >= Integer.MIN_VALUE && num <= Integer.MAX_VALUE)
 					{
-						a = step < 0 ? Integer.MAX_VALUE : 0;
+						value = Integer.valueOf((int) num);
 					}
-					if (until == null)
+					else
 					{
-						b = step < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+						value = Long.valueOf(num);
 					}
 				}
-				else
-				{
-					c = a > b ? -1 : 1;
-				}
-
-				this.begin = a;
-				this.until = b;
-				this.step = c;
+				return VALUE_NUMBER;
 			}
-
-			@Override
-			public Iterable<Object> extract(JSON data) throws Exception
+			boolean frac = false;
+			if (i < end && a[i] == '.')
 			{
-				int len = data.size();
-				int begin = this.begin, until = this.until;
-
-				if (begin < 0)
+				frac = true;
+				i++;
+				while (i < end && a[i] >= '0' && a[i] <= '9')
 				{
-					begin += len;
+					digits++;
+					i++;
 				}
-				if (until < 0)
+			}
+			if (digits > 0 && i < end && (a[i] == 'e' || a[i] == 'E'))
+			{
+				frac = true;
+				i++;
+				if (i < end && (a[i] == '+' || a[i] == '-'))
 				{
-					until += len;
+					i++;
 				}
-
-				begin = Math.max(Math.min(begin, Math.max(len - 1, 0)), 0);
-				until = Math.max(Math.min(Math.max(until, -1), len), -len);
-
-				if (begin == until)
+				int exp = 0;
+				while (i < end && a[i] >= '0' && a[i] <= '9')
 				{
-					return Canal.none();
+					exp++;
+					i++;
 				}
-				else if (step == 0)
+				if (exp == 0)
 				{
-					return Canal.<Object> some(begin);
+					i = -1;
 				}
-
-				return Canal.of(Canal.range(begin, until, step)).map(new Mapper<Integer, Object>()
-				{
-					@Override
-					public Object map(Integer el) throws Exception
-					{
-						return el;
-					}
-				});
 			}
-		}
-
-		protected static class RecursiveFinder implements Finder
-		{
-			protected final Extractor xtr;
-
-			protected RecursiveFinder(Extractor xtr)
+			if (i == end && digits > 0 && frac)
 			{
-				this.xtr = xtr;
+				value = new BigDecimal(a, off, len);
+				return VALUE_NUMBER;
 			}
 
-			@Override
-			public Iterable<Object> find(final JSON data) throws Exception
-			{
-				return recurs(data, xtr.extract(data));
-			}
+			return typeOf(value = ParseValueOf(new String(a, off, len)));
+		}
 
-			protected Iterable<Object> recurs(final JSON data, final Iterable<Object> keys)
+		/**
+		 * Ensure at least n characters are available in the buffer.
+		 */
+		protected boolean ensure(int n) throws IOException
+		{
+			while (lim - pos < n)
 			{
-				Iterable<Object> res = null;
-
-				if (keys == ALL_KEYS)
-				{
-					res = data.values();
-				}
-				else
+				if (!fill())
 				{
-					res = Canal.of(keys).flatMap(new Mapper<Object, Iterable<Object>>()
-					{
-						@Override
-						public Iterable<Object> map(Object key) throws Exception
-						{
-							return access(data, key);
-						}
-					});
+					return false;
 				}
-
-				return Canal.of(res).union(Canal.of(data.values()).flatMap(new Mapper<Object, Iterable<Object>>()
-				{
-
-					@Override
-					public Iterable<Object> map(Object obj) throws Exception
-					{
-						if (!JSON.IsJSON(obj))
-						{
-							return Option.none();
-						}
-						return recurs((JSON) obj, keys);
-					}
-				}));
 			}
+			return true;
 		}
 
-		protected static class ScriptExtractor implements Extractor
+		/**
+		 * Move the unread characters to the head of the buffer and read more.
+		 * 
+		 * @return false if the source is exhausted.
+		 */
+		protected boolean fill() throws IOException
 		{
-			protected static final String	SELF	= "@";
-
-			protected static final String	REAL	= "_$_";
-
-			protected final String			expr;
-
-			protected final boolean			self;
-
-			protected ScriptExtractor(String expr)
-			{
-				this.expr = expr.replace(SELF, REAL);
-				this.self = expr.length() != this.expr.length();
-			}
-
-			protected Object eval(JSON data) throws ScriptException
+			int rest = lim - pos;
+			if (rest > 0 && pos > 0)
 			{
-				return new ScriptEngineManager().getEngineByName("javascript").eval(script(data));
+				System.arraycopy(buf, pos, buf, 0, rest);
 			}
+			consumed += pos;
+			pos = 0;
+			lim = rest;
 
-			@Override
-			public Iterable<Object> extract(JSON data) throws Exception
+			int n = 0;
+			while (n == 0)
 			{
-				Object res = eval(data);
-				if (res instanceof Number)
-				{
-					res = ((Number) res).intValue();
-				}
-				return Option.some(res);
+				n = this.read(buf, lim, buf.length - lim);
 			}
-
-			protected String script(Object data)
+			if (n < 0)
 			{
-				return (self ? "var " + REAL + "=" + (data != null ? data.toString() : "null") + ";\n" : "") + expr;
+				return false;
 			}
+			lim += n;
+			return true;
 		}
 
-		protected static class WildcardExtractor implements Extractor
+		/**
+		 * The depth of the containers around the current token.
+		 * 
+		 * @return
+		 */
+		public int getDepth()
 		{
-			@Override
-			public Iterable<Object> extract(JSON data) throws Exception
-			{
-				return ALL_KEYS;
-			}
+			return depth;
 		}
 
-		public static final char				CHILD_CHAR	= '.';
-
-		public static final String				WILDCARD	= "*";
-
-		protected static final Iterable<Object>	ALL_KEYS	= Option.some(null);
-
-		protected static final Set<Character>	NAME_BOUND	= new HashSet<Character>();
-
-		static
+		/**
+		 * The path of the current token, such as {@code $.a.b[2]}.
+		 * 
+		 * @return
+		 */
+		public String getPath()
 		{
-			NAME_BOUND.add('.');
-			NAME_BOUND.add('[');
+			return this.pathOf(0, this.levels());
 		}
 
-		protected static Option<Object> access(final JSON data, final Object key)
+		/**
+		 * The field name of the current FIELD_NAME token.
+		 * 
+		 * @return
+		 */
+		public String getName()
 		{
-			return data.containsKey(key) ? Option.some(data.get(key)) : Option.none();
+			return name;
 		}
 
-		protected static int findNext(String text, int from, Set<Character> chars)
+		/**
+		 * The number of characters consumed so far.
+		 * 
+		 * @return
+		 */
+		public long getPosition()
 		{
-			for (int i = from; i < text.length(); i++)
-			{
-				if (chars.contains(text.charAt(i)))
-				{
-					return i;
-				}
-			}
-			return -1;
+			return consumed + pos;
 		}
 
-		public static void main(String[] args)
+		public int getToken()
 		{
-			JSON json = JSON.Parse("{\"a\":1, \"b\":true, \"c\":[1,2,3,\"xyz\"], \"d\":{\"a\":true}}");
-			try
-			{
-				Path path = Path.parse("$.d.a");
-
-				Tools.debug(path.find(json));
-			}
-			catch (Exception e)
-			{
-				e.printStackTrace();
-			}
+			return token;
 		}
 
-		public static Path parse(String text)
+		/**
+		 * The value of the current VALUE_* token.
+		 * 
+		 * @return
+		 */
+		public Object getValue()
 		{
-			return new Path(parseFinders(text));
+			return value;
 		}
 
-		protected static Extractor parseExtractor(String text, int begin, int until)
+		/**
+		 * The number of levels which locate the current token.
+		 */
+		protected int levels()
 		{
-			String expr = text.substring(begin + 1, until).trim();
-
-			if (expr.isEmpty())
-			{
-				throw new IllegalPathException(
-						"Missing expression in [] between " + begin + "th to " + until + "th char of " + text);
-			}
+			return token == START_OBJECT || token == START_ARRAY ? depth - 1 : depth;
+		}
 
-			if (expr.startsWith("("))
-			{ // script
-				if (!expr.endsWith(")"))
-				{
-					throw new IllegalPathException("Missing ')' before " + until + "th char of " + text);
-				}
-				return new ScriptExtractor(expr.substring(1, expr.length() - 1));
-			}
-			else if (expr.startsWith("?("))
-			{ // filter
-				if (!expr.endsWith(")"))
-				{
-					throw new IllegalPathException("Missing ')' before " + until + "th char of " + text);
-				}
-				return new FilterExtractor(expr.substring(2, expr.length() - 1));
-			}
-			else if (expr.indexOf(':') >= 0)
-			{ // range
-				String[] pair = expr.split(":", -1);
-				Integer a = parseInteger(pair[0].trim());
-				Integer b = parseInteger(pair[1].trim());
-				Integer c = pair.length > 2 ? parseInteger(pair[2].trim()) : null;
-				return new RangeExtractor(a, b, c);
-			}
-			else if (expr.indexOf(',') >= 0)
-			{ // enum
-				return new EnumExtractor(Canal.of(expr.split(",", -1)).map(new Mapper<String, String>()
-				{
-					@Override
-					public String map(String t) throws Exception
-					{
-						return restoreText(t.trim());
-					}
-				}).collect().toArray());
-			}
-			else
-			{ // name
-				return new NameExtractor(restoreText(expr.trim()));
-			}
+		/**
+		 * Whether the character at the current position begins a comment.
+		 */
+		protected boolean isComment() throws IOException
+		{
+			return buf[pos] == COMMENT_CHAR && ensure(2)
+					&& (buf[pos + 1] == LINE_COMMENT_CHAR || buf[pos + 1] == BLOCK_COMMENT_CHAR);
 		}
 
-		protected static List<Finder> parseFinders(String text)
+		/**
+		 * Read the next token.
+		 * 
+		 * @return the token type, {@link #END} if the source is exhausted.
+		 * @throws IOException
+		 */
+		public int next() throws IOException
 		{
-			String path = text.trim();
-			if (!path.startsWith("$"))
-			{
-				throw new IllegalPathException(text + " must start with $");
-			}
+			name = null;
+			value = null;
 
-			List<Finder> res = new ArrayList<Finder>();
+			// Whether a comma was met since the last element of an array, an
+			// empty element between two commas or before the end of array is
+			// taken as null like Parser does, except the one at the beginning.
+			boolean comma = elided;
+			elided = false;
 
-			char c = '\0', n = '\0';
-			int j = 0, len = path.length();
-			for (int i = 1; i < len; i++)
+			int c;
+			while ((c = this.skip()) >= 0)
 			{
-				c = path.charAt(i);
-
-				if (CHILD_CHAR == c)
+				switch (c)
 				{
-					i++;
-					if (i < path.length())
-					{
-						n = path.charAt(i);
+					case OBJECT_BEGIN_CHAR:
+						pos++;
+						this.element();
+						this.push(true);
+						naming = true;
+						return token = START_OBJECT;
+
+					case ARRAY_BEGIN_CHAR:
+						pos++;
+						this.element();
+						this.push(false);
+						naming = false;
+						return token = START_ARRAY;
+
+					case OBJECT_END_CHAR:
+					case ARRAY_END_CHAR:
+						if (comma && depth > 0 && !objects[depth - 1])
+						{
+							// The end of array is read by the next call.
+							this.element();
+							return token = VALUE_NULL;
+						}
+						pos++;
+						if (depth == 0)
+						{
+							continue;
+						}
+						naming = false;
+						return token = objects[--depth] ? END_OBJECT : END_ARRAY;
 
-						if (CHILD_CHAR == n)
-						{ // Recursive
-							i++;
-							j = findNext(path, i, NAME_BOUND);
-							j = j >= 0 ? j : len;
-							if (j == i)
+					case PAIR_CHAR:
+						pos++;
+						naming = depth > 0 && objects[depth - 1];
+						if (depth > 0 && !objects[depth - 1])
+						{
+							if (comma)
 							{
-								throw new IllegalPathException("Missing name after " + (i - 1) + "th char of " + text);
+								this.element();
+								elided = true;
+								return token = VALUE_NULL;
 							}
-							res.add(new RecursiveFinder(new NameExtractor(path.substring(i, j))));
-							i = j - 1;
+							comma = true;
 						}
-						else if (JSON.ARRAY_BEGIN_CHAR == n)
-						{ // Recursive
-							j = JSON.DualMatchIndex(path, JSON.ARRAY_BEGIN_CHAR, JSON.ARRAY_END_CHAR, i);
-							if (j < 0)
-							{
-								throw new IllegalPathException("Missing a ']' after " + i + "th char of " + text);
-							}
-							res.add(new RecursiveFinder(parseExtractor(path, i, j)));
-							i = j;
+						continue;
+
+					case ATTR_CHAR:
+						pos++;
+						naming = false;
+						continue;
+
+					case QUOTE_CHAR:
+						pos++;
+						String str = null;
+						if (skipping || depth == 0)
+						{
+							this.skipString();
 						}
 						else
-						{ // Dot
-							j = findNext(path, i, NAME_BOUND);
-							j = j >= 0 ? j : len;
-							if (j == i)
-							{
-								throw new IllegalPathException("Missing name after " + i + "th char of " + text);
-							}
-							res.add(new DotFinder(new NameExtractor(path.substring(i, j))));
-							i = j - 1;
+						{
+							str = this.readString();
 						}
-					}
-				}
-				else if (JSON.ARRAY_BEGIN_CHAR == c)
-				{
-					j = JSON.DualMatchIndex(path, JSON.ARRAY_BEGIN_CHAR, JSON.ARRAY_END_CHAR, i);
-					if (j < 0)
-					{
-						throw new IllegalPathException("Missing a ']' after " + i + "th char of " + text);
-					}
-					res.add(new ChildFinder(parseExtractor(path, i, j)));
-					i = j;
+						if (depth == 0)
+						{
+							continue;
+						}
+						else if (naming)
+						{
+							naming = false;
+							keys[depth - 1] = name = str;
+							return token = FIELD_NAME;
+						}
+						this.element();
+						value = str;
+						return token = VALUE_STRING;
+
+					default:
+						if (depth == 0)
+						{
+							pos++;
+							continue;
+						}
+						if (c == Function.DEFINE_FIRST_CHAR && !naming && this.startsWith(Function.DEFINE_MARK))
+						{
+							String func = this.readFunction();
+							this.element();
+							value = skipping ? null : new Function(func);
+							return token = VALUE_FUNCTION;
+						}
+						int t = this.readBare();
+						if (naming)
+						{
+							naming = false;
+							keys[depth - 1] = name = skipping ? null : RestoreString(new String(chars, 0, t));
+							return token = FIELD_NAME;
+						}
+						if (skipping)
+						{
+							this.element();
+							return token = VALUE_QUOTATION;
+						}
+						if ((t = this.classify(chars, 0, t)) != END)
+						{
+							this.element();
+							return token = t;
+						}
+						// Not a value, which is dropped but still fills its
+						// slot like Parser does.
+						value = null;
+						comma = false;
 				}
 			}
 
-			return res;
+			return token = END;
 		}
 
-		protected static Integer parseInteger(String text)
+		/**
+		 * Build the object or array which begins at the current token.
+		 * 
+		 * @throws EOFException
+		 *             if the source ends within the object or array.
+		 */
+		protected JSON build() throws IOException
 		{
-			if (text.isEmpty())
-			{
-				return null;
-			}
-			else
-			{
-				return Integer.valueOf(text);
-			}
-		}
+			JSON[] stack = new JSON[16];
+			String[] names = new String[16];
+			int[] index = new int[16];
+			int top = 0;
+			stack[top] = token == START_OBJECT ? new JSON() : new JSAN();
 
-		protected static String restoreText(String text)
-		{
-			if (text.length() > 1 //
-					&& ((text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"') //
-							|| (text.charAt(0) == '\'' && text.charAt(text.length() - 1) == '\'')))
-			{
-				return JSON.RestoreStringContent(text.substring(1, text.length() - 1));
-			}
-			else
+			int t;
+			while ((t = this.next()) != END)
 			{
-				return text;
-			}
-		}
+				switch (t)
+				{
+					case START_OBJECT:
+					case START_ARRAY:
+						if (++top == stack.length)
+						{
+							stack = Arrays.copyOf(stack, top * 2);
+							names = Arrays.copyOf(names, top * 2);
+							index = Arrays.copyOf(index, top * 2);
+						}
+						stack[top] = t == START_OBJECT ? new JSON() : new JSAN();
+						names[top] = null;
+						index[top] = 0;
+						break;
 
-		protected final List<Finder> finders;
+					case END_OBJECT:
+					case END_ARRAY:
+						JSON done = stack[top];
+						stack[top--] = null;
+						if (top < 0)
+						{
+							return done;
+						}
+						this.put(stack[top], names, index, top, done);
+						break;
 
-		protected Path(List<Finder> finders)
-		{
-			this.finders = finders;
+					case FIELD_NAME:
+						names[top] = name;
+						break;
+
+					default:
+						this.put(stack[top], names, index, top, value);
+				}
+			}
+
+			throw new EOFException();
 		}
 
-		public Canal<Object> find(final Object data)
+		@Override
+		public void close() throws IOException
 		{
-			Canal<Object> last = Option.some(data);
-
-			for (final Finder finder : finders)
+			if (reader != null)
 			{
-				last = last.filter(new Filter<Object>()
-				{
-					@Override
-					public boolean filter(Object el) throws Exception
-					{
-						return JSON.IsJSON(el);
-					}
-				}).flatMap(new Mapper<Object, Iterable<Object>>()
-				{
-					@Override
-					public Iterable<Object> map(Object el) throws Exception
-					{
-						return finder.find((JSON) el);
-					}
-				});
+				reader.close();
 			}
-
-			return last;
 		}
-	}
-
-	public static interface Projector<T> extends Serializable
-	{
-		/**
-		 * To generate a new instance according to given target class and source
-		 * json. null can be returned which means using the default newInstance
-		 * policy.
-		 * 
-		 * @param cls
-		 * @param json
-		 * @return
-		 * @throws Exception
+
+		/**
+		 * Count an element of the array around the current token.
 		 */
-		public T instance(Class<T> cls, JSON json) throws Exception;
+		private void element()
+		{
+			if (depth > 0 && !objects[depth - 1])
+			{
+				index[depth - 1]++;
+			}
+		}
 
 		/**
-		 * Project the source json to the target object.
+		 * Iterate the elements of the top level array lazily, the elements
+		 * which are neither objects nor arrays are ignored. If the top level
+		 * is an object, it is the only element. The source is closed when the
+		 * Canal is closed.
 		 * 
-		 * @param obj
-		 * @param json
 		 * @return
-		 * @throws Exception
 		 */
-		public T project(T obj, JSON json) throws Exception;
-	}
-
-	public static class Quotation implements Hierarchical
-	{
-		public static final char	LINEAR_ATTRIBUTE		= '.';
-
-		public static final char	NESTED_ATTRIBUTE_BEGIN	= '[';
+		public Canal<JSON> elements()
+		{
+			return Canal.iterable((CloseableIterator<JSON>) new CloseableIterator<JSON>()
+			{
+				private int		base	= NOT_FOUND;
 
-		public static final char	NESTED_ATTRIBUTE_END	= ']';
+				private boolean	done	= false;
 
-		public static final char	NESTED_ATTRIBUTE_QUOTE	= '"';
+				private JSON	next	= null;
 
-		public static Object Quote(Context context, String quote, Object object)
-		{
-			JSON outer = null;
-			String entry = null;
+				@Override
+				public void close() throws Exception
+				{
+					done = true;
+					Tokenizer.this.close();
+				}
 
-			StringBuilder buffer = new StringBuilder(quote.length());
+				@Override
+				public boolean hasNext()
+				{
+					if (next != null)
+					{
+						return true;
+					}
+					if (done)
+					{
+						return false;
+					}
+					try
+					{
+						int t;
+						if (base == NOT_FOUND)
+						{
+							while ((t = Tokenizer.this.next()) != END && t != START_ARRAY && t != START_OBJECT)
+							{
+							}
+							if (t == START_OBJECT)
+							{
+								done = true;
+								next = build();
+								return true;
+							}
+							base = depth - 1;
+						}
+						while ((t = Tokenizer.this.next()) != END)
+						{
+							if (t == START_OBJECT || t == START_ARRAY)
+							{
+								next = build();
+								return true;
+							}
+							else if (depth <= base)
+							{
+								break;
+							}
+						}
+						done = true;
+						return false;
+					}
+					catch (IOException e)
+					{
+						throw new RuntimeException(e);
+					}
+				}
 
-			FilterComments(buffer, quote, 0);
+				@Override
+				public JSON next()
+				{
+					if (!hasNext())
+					{
+						throw new NoSuchElementException();
+					}
+					JSON el = next;
+					next = null;
+					return el;
+				}
 
-			quote = buffer.toString();
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			}).canal();
+		}
 
-			int quoteLength = quote.length() - 1;
-			if (quote.charAt(quoteLength) == NESTED_ATTRIBUTE_END)
+		/**
+		 * Build the next JSON object or array.
+		 * 
+		 * @return null if there is no more object or array.
+		 * @throws EOFException
+		 *             if the source ends within an object or array.
+		 * @throws IOException
+		 */
+		public JSON parse() throws IOException
+		{
+			int t;
+			while ((t = this.next()) != END)
 			{
-				int begin = JSON.LastDualMatchIndex(quote, NESTED_ATTRIBUTE_BEGIN, NESTED_ATTRIBUTE_END, quoteLength);
-				outer = JSON.AsJSON(Quote(context, quote.substring(0, begin)));
-				if (outer != null)
+				if (t == START_OBJECT || t == START_ARRAY)
 				{
-					entry = Quote(context, quote.substring(begin + 1, quoteLength)).toString();
+					return this.build();
 				}
 			}
-			else
+			return null;
+		}
+
+		/**
+		 * The path of the location described by the given levels.
+		 */
+		protected String pathOf(int from, int until)
+		{
+			StringBuilder buf = new StringBuilder(ROOT_PATH);
+			for (int lv = from; lv < until; lv++)
 			{
-				int begin = quote.lastIndexOf(LINEAR_ATTRIBUTE);
-				if (begin == -1)
+				if (objects[lv])
 				{
-					outer = context;
-					entry = quote;
+					buf.append(Path.CHILD_CHAR).append(keys[lv]);
 				}
 				else
 				{
-					outer = JSON.AsJSON(Quote(context, quote.substring(0, begin)));
-					if (outer != null)
-					{
-						entry = quote.substring(begin + 1);
-					}
+					buf.append(ARRAY_BEGIN_CHAR).append(index[lv]).append(ARRAY_END_CHAR);
 				}
 			}
+			return buf.toString();
+		}
 
-			if (outer != null && entry != null)
+		/**
+		 * Push a container.
+		 * 
+		 * @param object
+		 *            true if it is an object, false if an array.
+		 */
+		protected void push(boolean object)
+		{
+			if (depth == objects.length)
 			{
-				Object temp = object;
-				object = outer.got(entry);
-				outer.put(entry, temp);
+				objects = Arrays.copyOf(objects, depth * 2);
+				keys = Arrays.copyOf(keys, depth * 2);
+				index = Arrays.copyOf(index, depth * 2);
 			}
-
-			return object;
+			objects[depth] = object;
+			keys[depth] = null;
+			index[depth] = NOT_FOUND;
+			depth++;
 		}
 
-		public static String Quote(JSON json)
+		private void put(JSON container, String[] names, int[] index, int top, Object value)
 		{
-			StringBuilder buffer = new StringBuilder();
-
-			JSON outer = json.outer();
-			String entry = null;
+			String key = names[top];
+			this.add(container, key, index[top], value);
+			if (key == null)
+			{
+				index[top]++;
+			}
+			names[top] = null;
+		}
 
-			while (outer != null)
+		protected int read(char[] cbuf, int off, int len) throws IOException
+		{
+			if (reader != null)
 			{
-				entry = json.entry();
+				return reader.read(cbuf, off, len);
+			}
 
-				if (outer.outer() != null)
-				{
-					buffer.insert(0, NESTED_ATTRIBUTE_END);
-					if (!JSON.IsJSAN(outer))
-					{
-						buffer.insert(0, NESTED_ATTRIBUTE_QUOTE);
-					}
-				}
-				buffer.insert(0, entry);
-				if (outer.outer() != null)
+			int n = Math.min(len, source.length() - offset);
+			if (n <= 0)
+			{
+				return -1;
+			}
+			if (source instanceof String)
+			{
+				((String) source).getChars(offset, offset + n, cbuf, off);
+			}
+			else if (source instanceof StringBuilder)
+			{
+				((StringBuilder) source).getChars(offset, offset + n, cbuf, off);
+			}
+			else
+			{
+				for (int i = 0; i < n; i++)
 				{
-					if (!JSON.IsJSAN(outer))
-					{
-						buffer.insert(0, NESTED_ATTRIBUTE_QUOTE);
-					}
-					buffer.insert(0, NESTED_ATTRIBUTE_BEGIN);
+					cbuf[off + i] = source.charAt(offset + i);
 				}
-
-				json = outer;
-				outer = json.outer();
 			}
-
-			return buffer.toString();
+			offset += n;
+			return n;
 		}
 
-		public static Object Quote(JSON context, String quote)
+		/**
+		 * Read an unquoted token into the chars, the trailing whitespaces are
+		 * trimmed.
+		 * 
+		 * @return the length of the token.
+		 */
+		protected int readBare() throws IOException
 		{
-			if (context == null)
+			int len = 0, keep = 0;
+			char c;
+			while (pos < lim || fill())
 			{
-				return null;
+				c = buf[pos];
+				if (c == PAIR_CHAR || c == ATTR_CHAR || c == OBJECT_END_CHAR || c == ARRAY_END_CHAR
+						|| c == OBJECT_BEGIN_CHAR || c == ARRAY_BEGIN_CHAR || (c == COMMENT_CHAR && isComment()))
+				{
+					break;
+				}
+				if (len == chars.length)
+				{
+					chars = Arrays.copyOf(chars, len * 2);
+				}
+				chars[len++] = c;
+				pos++;
+				if (!IsWhitespace(c))
+				{
+					keep = len;
+				}
 			}
+			return keep;
+		}
 
-			Object object = context;
-
-			Map<String, Object> map = null;
-			int nail = 0;
-
-			char c = 0;
-			int i = 0;
-			String entry;
-
-			i: for (i = 0; i < quote.length(); i++)
+		/**
+		 * Read a function definition until its matching brace.
+		 */
+		protected String readFunction() throws IOException
+		{
+			text.setLength(0);
+			int braces = 0;
+			boolean inString = false, started = false;
+			char c;
+			while (pos < lim || fill())
 			{
-				c = quote.charAt(i);
-
-				if (c == LINEAR_ATTRIBUTE)
+				c = buf[pos];
+				if (!inString && c == COMMENT_CHAR && isComment())
 				{
-					if (nail != i)
-					{
-						map = JSON.AsMap(object);
-						if (map == null)
-						{
-							return null;
-						}
-						else
-						{
-							entry = quote.substring(nail, i).trim();
-							object = map.get(entry);
-							nail = i + 1;
-						}
-					}
-					else
+					if (!this.skipComment(text))
 					{
-						nail = i + 1;
+						break;
 					}
+					continue;
 				}
-
-				if (c == NESTED_ATTRIBUTE_BEGIN)
+				pos++;
+				text.append(c);
+				if (c == ESCAPE_CHAR)
 				{
-					if (nail != i)
-					{
-						map = JSON.AsMap(object);
-						if (map == null)
-						{
-							return null;
-						}
-						else
-						{
-							entry = quote.substring(nail, i).trim();
-							object = map.get(entry);
-							nail = i + 1;
-						}
-					}
-					else
+					if (pos < lim || fill())
 					{
-						nail = i + 1;
+						text.append(buf[pos++]);
 					}
-					i = CheckNext(quote, i, JSON.DualMatchIndex(quote, NESTED_ATTRIBUTE_BEGIN, NESTED_ATTRIBUTE_END, i))
-							- 1;
-					continue i;
+					continue;
 				}
-
-				if (c == NESTED_ATTRIBUTE_QUOTE)
+				if (c == QUOTE_CHAR)
 				{
-					nail = i + 1;
-					do
-					{
-						i = Tools.seekIndex(quote, NESTED_ATTRIBUTE_QUOTE, i + 1);
-					}
-					while (quote.charAt(i - 1) == JSON.ESCAPE_CHAR);
-					break;
+					inString = !inString;
 				}
-
-				if (c == NESTED_ATTRIBUTE_END)
+				else if (!inString)
 				{
-					map = JSON.AsMap(object);
-					if (map == null)
+					if (c == OBJECT_BEGIN_CHAR)
 					{
-						return null;
+						braces++;
+						started = true;
 					}
-					else
+					else if (c == OBJECT_END_CHAR && started && --braces == 0)
 					{
-						entry = Quote(context, quote.substring(nail, i)).toString();
-						object = map.get(entry);
-						nail = i + 1;
+						String func = text.toString().trim();
+						text.setLength(0);
+						return func;
 					}
 				}
 			}
+			throw new EOFException();
+		}
 
-			if (c == NESTED_ATTRIBUTE_QUOTE || Variable.isIntegerNumber(quote))
-			{
-				object = quote.substring(nail, i);
-			}
-			else if (c != NESTED_ATTRIBUTE_END)
+		/**
+		 * Read a string after its opening quote and restore the escaped
+		 * characters.
+		 */
+		protected String readString() throws IOException
+		{
+			boolean built = false;
+			int start = pos;
+			char c;
+			while (true)
 			{
-				map = JSON.AsMap(object);
-				if (map == null)
+				for (; pos < lim; pos++)
+				{
+					c = buf[pos];
+					if (c == QUOTE_CHAR)
+					{
+						String str;
+						if (!built)
+						{
+							str = new String(buf, start, pos - start);
+						}
+						else
+						{
+							text.append(buf, start, pos - start);
+							str = text.toString();
+							text.setLength(0);
+						}
+						pos++;
+						return str;
+					}
+					else if (c == ESCAPE_CHAR)
+					{
+						if (!built)
+						{
+							text.setLength(0);
+							built = true;
+						}
+						text.append(buf, start, pos - start);
+						this.readEscape();
+						start = pos;
+						pos--;
+					}
+				}
+				if (!built)
 				{
-					return null;
+					text.setLength(0);
+					built = true;
 				}
-				else
+				text.append(buf, start, pos - start);
+				if (!fill())
 				{
-					entry = quote.substring(nail, i).trim();
-					object = map.get(entry);
+					throw new EOFException();
 				}
+				start = pos;
 			}
-
-			return object;
 		}
 
-		private JSON	outer;
-
-		private String	entry;
-
-		private String	quote;
-
-		protected Quotation(Quotation q)
+		/**
+		 * Read the value at the current token, an object or array is built
+		 * entirely. If the current token is a field name, the value of the
+		 * field will be read.
+		 * 
+		 * @return the value, or null if there is no value at the current
+		 *         token.
+		 * @throws IOException
+		 */
+		public Object readValue() throws IOException
 		{
-			quote(q.quote).outer(q.outer()).entry(q.entry());
-		}
+			switch (token)
+			{
+				case START_OBJECT:
+				case START_ARRAY:
+					return this.build();
 
-		public Quotation(String quote)
-		{
-			quote(quote);
-		}
+				case FIELD_NAME:
+					this.next();
+					return this.readValue();
 
-		@Override
-		public Quotation clone()
-		{
-			return new Quotation(this).outer(null).entry(null);
-		}
+				case END:
+				case END_OBJECT:
+				case END_ARRAY:
+					return null;
 
-		public Context context()
-		{
-			return outer == null ? null : outer.context();
+				default:
+					return value;
+			}
 		}
 
-		public String entry()
+		/**
+		 * Restore an escaped character into the text, unknown escapes are
+		 * dropped as {@link JSON#RestoreStringContent(String)} does.
+		 */
+		private void readEscape() throws IOException
 		{
-			return entry;
+			if (!ensure(2))
+			{
+				throw new EOFException();
+			}
+			char c = buf[pos + 1];
+			if (c == UNICODE_ESCAPING_CHAR)
+			{
+				if (!ensure(2 + UNICODE_ESCAPED_LENGTH))
+				{
+					throw new EOFException();
+				}
+				int code = 0, d;
+				for (int i = pos + 2; i < pos + 2 + UNICODE_ESCAPED_LENGTH; i++)
+				{
+					if ((d = Character.digit(buf[i], UNICODE_ESCAPE_RADIX)) < 0)
+					{
+						throw new SyntaxErrorException("Illegal unicode escape @" + (consumed + pos));
+					}
+					code = code * UNICODE_ESCAPE_RADIX + d;
+				}
+				text.append((char) code);
+				pos += 2 + UNICODE_ESCAPED_LENGTH;
+			}
+			else
+			{
+				Character esc = ESCAPING_CHAR.get(c);
+				if (esc != null)
+				{
+					text.append(esc.charValue());
+				}
+				pos += 2;
+			}
 		}
 
-		public Quotation entry(String entry)
+		/**
+		 * Read the values at the given paths within the object or array which
+		 * begins at the current token, or the next one if the current token is
+		 * not a beginning. The paths are relative to that object or array
+		 * denoted as {@code $}, such as {@code $.a.b[2]}. Any subtree which is
+		 * not on the paths is skipped without being built.
+		 * 
+		 * @param paths
+		 * @return the values found by their paths.
+		 * @throws IOException
+		 */
+		public Map<String, Object> select(Collection<String> paths) throws IOException
 		{
-			this.entry = entry;
-			return this;
-		}
+			Map<String, Object> result = new LinkedHashMap<String, Object>();
 
-		public JSON outer()
-		{
-			return outer;
-		}
+			int t = token;
+			while (t != START_OBJECT && t != START_ARRAY)
+			{
+				if ((t = this.next()) == END)
+				{
+					return result;
+				}
+			}
 
-		public Quotation outer(JSON outer)
-		{
-			this.outer = outer;
-			return this;
-		}
+			if (paths.contains(ROOT_PATH))
+			{
+				result.put(ROOT_PATH, this.build());
+				return result;
+			}
 
-		public Object quote()
-		{
-			return Quote(context(), quote);
-		}
+			Set<String> prefixes = new HashSet<String>();
+			for (String path : paths)
+			{
+				for (int i = 1; i < path.length(); i++)
+				{
+					if (path.charAt(i) == Path.CHILD_CHAR || path.charAt(i) == ARRAY_BEGIN_CHAR)
+					{
+						prefixes.add(path.substring(0, i));
+					}
+				}
+			}
 
-		protected Quotation quote(String quote)
-		{
-			this.quote = quote.trim();
-			return this;
-		}
+			int base = depth - 1;
+			String path = null;
+			while ((t = this.next()) != END)
+			{
+				if (t == END_OBJECT || t == END_ARRAY)
+				{
+					if (depth == base)
+					{
+						return result;
+					}
+				}
+				else if (t != FIELD_NAME)
+				{
+					path = this.pathOf(base, this.levels());
+					if (paths.contains(path))
+					{
+						result.put(path, this.readValue());
+					}
+					else if ((t == START_OBJECT || t == START_ARRAY) && !prefixes.contains(path))
+					{
+						this.skipChildren();
+					}
+				}
+			}
 
-		@Override
-		public String toString()
-		{
-			return quote;
+			throw new EOFException();
 		}
-	}
 
-	public static interface Reflector<T> extends Serializable
-	{
-		public JSON reflect(JSON json, T obj);
-	}
-
-	public static class SyntaxErrorException extends RuntimeException
-	{
 		/**
+		 * Skip the whole object or array which begins at the current token
+		 * without building any value, the current token will be its end.
 		 * 
+		 * @return
+		 * @throws IOException
 		 */
-		private static final long	serialVersionUID	= 5584855948726666241L;
-
-		public static int			DEFAULT_VIEW		= 15;
-
-		public static String FormatMessage(String hint, CharSequence msg, int index)
-		{
-			hint = hint == null ? "" : hint.trim();
-			return hint + (hint.length() == 0 ? "" : " ") + "@" + index + "\n" //
-					+ msg;
-		}
-
-		public static CharSequence LocateMessage(CharSequence source, int index, int view)
+		public Tokenizer skipChildren() throws IOException
 		{
-			return source.subSequence(Math.max(index - view, 0), Math.min(index + view, source.length()));
+			if (token == START_OBJECT || token == START_ARRAY)
+			{
+				int target = depth - 1;
+				skipping = true;
+				try
+				{
+					while (depth > target && this.next() != END)
+					{
+					}
+				}
+				finally
+				{
+					skipping = false;
+				}
+			}
+			return this;
 		}
 
-		public SyntaxErrorException(CharSequence source, int index)
+		/**
+		 * Skip the whitespaces and comments.
+		 * 
+		 * @return the next character which is not consumed, or -1 if the
+		 *         source is exhausted.
+		 */
+		protected int skip() throws IOException
 		{
-			this("", source, index);
+			char c;
+			while (pos < lim || fill())
+			{
+				c = buf[pos];
+				if (IsWhitespace(c))
+				{
+					pos++;
+				}
+				else if (c == COMMENT_CHAR && isComment())
+				{
+					if (!this.skipComment(null))
+					{
+						return -1;
+					}
+				}
+				else
+				{
+					return c;
+				}
+			}
+			return -1;
 		}
 
-		public SyntaxErrorException(String msg)
+		/**
+		 * Skip a comment at the current position, which is kept into the text
+		 * if given.
+		 * 
+		 * @return false if the comment is not terminated.
+		 */
+		private boolean skipComment(StringBuilder keep) throws IOException
 		{
-			super(msg);
+			boolean line = buf[pos + 1] == LINE_COMMENT_CHAR;
+			pos += 2;
+			if (keep != null)
+			{
+				keep.append(COMMENT_CHAR).append(line ? LINE_COMMENT_CHAR : BLOCK_COMMENT_CHAR);
+			}
+			char c, last = 0;
+			while (pos < lim || fill())
+			{
+				c = buf[pos++];
+				if (keep != null)
+				{
+					keep.append(c);
+				}
+				if (line ? (c == '\n' || c == '\r') : (last == BLOCK_COMMENT_CHAR && c == COMMENT_CHAR))
+				{
+					return true;
+				}
+				last = c;
+			}
+			return false;
 		}
 
-		public SyntaxErrorException(String hint, CharSequence source, int index)
+		/**
+		 * Skip a string after its opening quote.
+		 */
+		private void skipString() throws IOException
 		{
-			super(FormatMessage(hint, LocateMessage(source, index, DEFAULT_VIEW), index));
+			char c;
+			while (pos < lim || fill())
+			{
+				c = buf[pos++];
+				if (c == QUOTE_CHAR)
+				{
+					return;
+				}
+				else if (c == ESCAPE_CHAR)
+				{
+					if (pos >= lim && !fill())
+					{
+						break;
+					}
+					pos++;
+				}
+			}
+			throw new EOFException();
 		}
 
-		public SyntaxErrorException(String hint, Throwable cause, CharSequence source, int index)
+		protected boolean startsWith(String mark) throws IOException
 		{
-			super(cause instanceof SyntaxErrorException //
-					? cause.getMessage() //
-					: FormatMessage(hint, LocateMessage(source, index, DEFAULT_VIEW), index), //
-					cause);
+			if (!ensure(mark.length()))
+			{
+				return false;
+			}
+			for (int i = 0; i < mark.length(); i++)
+			{
+				if (buf[pos + i] != mark.charAt(i))
+				{
+					return false;
+				}
+			}
+			return true;
 		}
 
-		public SyntaxErrorException(Throwable cause, CharSequence source, int index)
+		protected static int typeOf(Object value)
 		{
-			this(cause.getMessage(), cause, source, index);
+			if (value == NOT_A_VALUE)
+			{
+				return END;
+			}
+			else if (value == null)
+			{
+				return VALUE_NULL;
+			}
+			else if (value instanceof String)
+			{
+				return VALUE_STRING;
+			}
+			else if (value instanceof Number)
+			{
+				return VALUE_NUMBER;
+			}
+			else if (value instanceof Boolean)
+			{
+				return ((Boolean) value) ? VALUE_TRUE : VALUE_FALSE;
+			}
+			else if (value instanceof Function)
+			{
+				return VALUE_FUNCTION;
+			}
+			else
+			{
+				return VALUE_QUOTATION;
+			}
 		}
 	}
 
@@ -7076,6 +9295,50 @@ public class JSON implements Map<String, Object>, Iterable<Object>, Serializable
 		Tools.debug(JSON.FindDatetimePattern("2022-10-23T22:06+08:00"));
 	}
 
+	/**
+	 * Read the JSON Lines of a file in parallel with the records in the order
+	 * of the file, the malformed lines would be thrown.
+	 * 
+	 * @see LinesReader
+	 */
+	public static Canal<JSON> Lines(File file, Charset charset, int parallelism)
+	{
+		return Lines(file, charset, parallelism, true, null);
+	}
+
+	/**
+	 * Read the JSON Lines of a file in parallel, each iteration of the
+	 * returned Canal reads the file again.
+	 * 
+	 * @param file
+	 * @param charset
+	 *            null means the default charset.
+	 * @param parallelism
+	 *            the number of threads.
+	 * @param ordered
+	 *            whether the records should be returned in the order of the
+	 *            file, otherwise the segment parsed first is returned first.
+	 * @param errors
+	 *            the channel of the malformed lines, null means the error
+	 *            would be thrown.
+	 * @return
+	 * @see LinesReader
+	 */
+	public static Canal<JSON> Lines(final File file, final Charset charset, final int parallelism,
+			final boolean ordered, final Canal.Action<? super SyntaxErrorException> errors)
+	{
+		LinesReader.CheckCharset(charset);
+		return Canal.of(new Iterable<JSON>()
+		{
+			@Override
+			public Iterator<JSON> iterator()
+			{
+				return new LinesReader(file, charset, parallelism, ordered, errors,
+						LinesReader.DEFAULT_SEGMENT_SIZE);
+			}
+		});
+	}
+
 	public static boolean NeedToEscape(char c)
 	{
 		return ESCAPED_CHAR.containsKey(c) || Character.isISOControl(c);
@@ -7187,7 +9450,15 @@ public class JSON implements Map<String, Object>, Iterable<Object>, Serializable
 
 	public static JSON Parse(CharSequence source)
 	{
-		return new Parser().parse(source).dispose().result();
+		try
+		{
+			return new Tokenizer(source).parse();
+		}
+		catch (IOException e)
+		{
+			// Incomplete source.
+			return null;
+		}
 	}
 
 	public static JSON Parse(File file)
@@ -7209,7 +9480,7 @@ public class JSON implements Map<String, Object>, Iterable<Object>, Serializable
 			Reader reader = null;
 			try
 			{
-				reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset));
+				reader = new MappedFileReader(file, charset);
 				json = Parse(reader);
 			}
 			catch (Exception e)
@@ -7244,19 +9515,21 @@ public class JSON implements Map<String, Object>, Iterable<Object>, Serializable
 
 		if (reader != null)
 		{
-			Parser parser = new Parser();
 			try
 			{
-				json = parser.parse(reader, true).result();
+				json = new Tokenizer(reader).parse();
 			}
 			catch (IOException e)
 			{
 			}
 			finally
 			{
-				if (parser != null)
+				try
+				{
+					reader.close();
+				}
+				catch (IOException e)
 				{
-					parser.dispose();
 				}
 			}
 		}
@@ -8526,6 +10799,20 @@ public class JSON implements Map<String, Object>, Iterable<Object>, Serializable
 		return buffer;
 	}
 
+	/**
+	 * Serialize the JSON into the OutputStream encoded in UTF-8 directly.
+	 * 
+	 * @param json
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	public static OutputStream Serialize(JSON json, OutputStream out) throws IOException
+	{
+		new Generator(out).write(json).flush();
+		return out;
+	}
+
 	public static Writer Serialize(JSON json, Writer out, int indents) throws IOException
 	{
 		return Serialize(json, out, indents, null);
@@ -0,0 +1,403 @@
+package org.kernelab.basis.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A Reader which decodes a file through the memory mapped windows of its
+ * channel, so that the files larger than 2GB could also be read. UTF-8 is
+ * decoded from the mapped buffer directly and its leading byte order mark is
+ * skipped, other charsets are decoded by their CharsetDecoder. The malformed
+ * input is replaced as InputStreamReader does.
+ * <p>
+ * Java offers no public way to release a mapping, which is otherwise held
+ * until the buffer is garbage collected and keeps the file locked on
+ * Windows. So the windows are unmapped explicitly through the JDK internals
+ * when they are left or the reader is closed, where the JVM allows it.
+ */
+public class MappedFileReader extends Reader
+{
+	public static final long		DEFAULT_WINDOW_SIZE	= 1L << 26;
+
+	public static final Charset		UTF_8				= Charset.forName("UTF-8");
+
+	private static final char		REPLACEMENT			= '\ufffd';
+
+	/**
+	 * The max number of bytes of one character in UTF-8.
+	 */
+	private static final int		MAX_BYTES			= 4;
+
+	private RandomAccessFile		file;
+
+	private FileChannel				channel;
+
+	private final long				size;
+
+	private final long				window;
+
+	private MappedByteBuffer		buffer;
+
+	private long					base;
+
+	private final CharsetDecoder	decoder;
+
+	private boolean					flushed;
+
+	private char					pending;
+
+	private final char[]			pair				= new char[2];
+
+	private final byte[]			bytes				= new byte[8192];
+
+	public MappedFileReader(File file, Charset charset) throws IOException
+	{
+		this(file, charset, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @param file
+	 * @param charset
+	 *            null means the default charset.
+	 * @param window
+	 *            the max bytes of each mapped window.
+	 * @throws IOException
+	 */
+	public MappedFileReader(File file, Charset charset, long window) throws IOException
+	{
+		if (window < MAX_BYTES * 4)
+		{
+			throw new IllegalArgumentException("Window is too small: " + window);
+		}
+
+		charset = charset == null ? Charset.defaultCharset() : charset;
+
+		this.window = Math.min(window, Integer.MAX_VALUE);
+		this.decoder = UTF_8.equals(charset) ? null
+				: charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		this.file = new RandomAccessFile(file, "r");
+		try
+		{
+			this.channel = this.file.getChannel();
+			this.size = channel.size();
+			this.map(0);
+		}
+		catch (IOException e)
+		{
+			this.file.close();
+			throw e;
+		}
+
+		if (decoder == null && buffer.remaining() >= 3 && (buffer.get(0) & 0xff) == 0xef
+				&& (buffer.get(1) & 0xff) == 0xbb && (buffer.get(2) & 0xff) == 0xbf)
+		{
+			buffer.position(3);
+		}
+	}
+
+	/**
+	 * Release the mapping of the given buffer at once, quietly if the JVM
+	 * does not allow it. The buffer must not be accessed any more.
+	 * 
+	 * @param buffer
+	 */
+	protected static void unmap(MappedByteBuffer buffer)
+	{
+		if (buffer == null)
+		{
+			return;
+		}
+		try
+		{
+			// Java 9 and later
+			Class<?> cls = Class.forName("sun.misc.Unsafe");
+			Field field = cls.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			cls.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buffer);
+		}
+		catch (Exception e)
+		{
+			try
+			{
+				// Java 8 and earlier
+				Method method = buffer.getClass().getMethod("cleaner");
+				method.setAccessible(true);
+				Object cleaner = method.invoke(buffer);
+				if (cleaner != null)
+				{
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+			catch (Exception ex)
+			{
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (file != null)
+		{
+			try
+			{
+				file.close();
+			}
+			finally
+			{
+				unmap(buffer);
+				file = null;
+				channel = null;
+				buffer = null;
+			}
+		}
+	}
+
+	protected void ensureOpen() throws IOException
+	{
+		if (file == null)
+		{
+			throw new IOException("Stream closed");
+		}
+	}
+
+	/**
+	 * Whether the current window reaches the end of file.
+	 */
+	protected boolean isLastWindow()
+	{
+		return base + buffer.limit() >= size;
+	}
+
+	protected void map(long position) throws IOException
+	{
+		MappedByteBuffer last = buffer;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(window, size - position));
+		base = position;
+		unmap(last);
+	}
+
+	@Override
+	public synchronized int read(char[] cbuf, int off, int len) throws IOException
+	{
+		this.ensureOpen();
+
+		if (off < 0 || len < 0 || off + len > cbuf.length)
+		{
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0)
+		{
+			return 0;
+		}
+
+		int n = 0;
+		if (pending != 0)
+		{
+			cbuf[off] = pending;
+			pending = 0;
+			n++;
+		}
+
+		n += decoder == null ? this.readUTF8(cbuf, off + n, len - n) : this.readDecoded(cbuf, off + n, len - n);
+
+		return n == 0 ? -1 : n;
+	}
+
+	/**
+	 * Read through the CharsetDecoder.
+	 */
+	protected int readDecoded(char[] cbuf, int off, int len) throws IOException
+	{
+		if (len == 1)
+		{
+			// A surrogate pair could not be decoded into one char.
+			int n = this.readDecoded(pair, 0, pair.length);
+			if (n > 0)
+			{
+				cbuf[off] = pair[0];
+			}
+			if (n > 1)
+			{
+				pending = pair[1];
+			}
+			return Math.min(n, 1);
+		}
+
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		CoderResult result = null;
+
+		while (out.hasRemaining() && !flushed)
+		{
+			result = decoder.decode(buffer, out, this.isLastWindow());
+
+			if (result.isOverflow())
+			{
+				break;
+			}
+			else if (this.isLastWindow())
+			{
+				if (decoder.flush(out).isUnderflow())
+				{
+					flushed = true;
+				}
+				break;
+			}
+			else
+			{
+				this.remap();
+			}
+		}
+
+		return out.position() - off;
+	}
+
+	/**
+	 * Decode UTF-8 directly, the bytes are copied from the window in chunks.
+	 */
+	protected int readUTF8(char[] cbuf, int off, int len) throws IOException
+	{
+		int n = off, end = off + len;
+
+		byte[] bytes = this.bytes;
+		int start, k, i, b, c, cp, count, low, high;
+		boolean last;
+		char tail;
+		while (n < end)
+		{
+			if (buffer.remaining() < MAX_BYTES && !this.isLastWindow())
+			{
+				this.remap();
+			}
+			if (!buffer.hasRemaining())
+			{
+				break;
+			}
+
+			// Each byte is decoded into one char at most.
+			start = buffer.position();
+			k = Math.min(buffer.remaining(), Math.min(bytes.length, end - n + MAX_BYTES));
+			buffer.get(bytes, 0, k);
+			last = !buffer.hasRemaining() && this.isLastWindow();
+
+			i = 0;
+			while (i < k && n < end)
+			{
+				b = bytes[i];
+
+				if (b >= 0)
+				{
+					cbuf[n++] = (char) b;
+					i++;
+					continue;
+				}
+				else if (k - i < MAX_BYTES && !last)
+				{
+					// The sequence may continue in the next chunk.
+					break;
+				}
+
+				// The ranges of the second byte exclude the overlong forms and
+				// the code points beyond U+10FFFF. A surrogate is replaced as a
+				// whole like the CharsetDecoder does.
+				i++;
+				b &= 0xff;
+				cp = 0;
+				count = -1;
+				low = 0x80;
+				high = 0xbf;
+				if (b < 0xc2)
+				{
+				}
+				else if (b < 0xe0)
+				{
+					cp = b & 0x1f;
+					count = 1;
+				}
+				else if (b < 0xf0)
+				{
+					cp = b & 0x0f;
+					count = 2;
+					low = b == 0xe0 ? 0xa0 : 0x80;
+				}
+				else if (b < 0xf5)
+				{
+					cp = b & 0x07;
+					count = 3;
+					low = b == 0xf0 ? 0x90 : 0x80;
+					high = b == 0xf4 ? 0x8f : 0xbf;
+				}
+
+				for (int j = 0; j < count; j++)
+				{
+					// The byte out of range is not consumed.
+					if (i >= k || (c = bytes[i] & 0xff) < low || c > high)
+					{
+						count = -1;
+						break;
+					}
+					cp = (cp << 6) | (c & 0x3f);
+					low = 0x80;
+					high = 0xbf;
+					i++;
+				}
+
+				if (count < 0 || (Character.MIN_SURROGATE <= cp && cp <= Character.MAX_SURROGATE))
+				{
+					cbuf[n++] = REPLACEMENT;
+				}
+				else if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT)
+				{
+					cbuf[n++] = (char) cp;
+				}
+				else
+				{
+					cp -= Character.MIN_SUPPLEMENTARY_CODE_POINT;
+					cbuf[n++] = (char) (Character.MIN_HIGH_SURROGATE + (cp >>> 10));
+					tail = (char) (Character.MIN_LOW_SURROGATE + (cp & 0x3ff));
+					if (n < end)
+					{
+						cbuf[n++] = tail;
+					}
+					else
+					{
+						pending = tail;
+					}
+				}
+			}
+
+			buffer.position(start + i);
+		}
+
+		return n - off;
+	}
+
+	@Override
+	public synchronized boolean ready() throws IOException
+	{
+		this.ensureOpen();
+		return pending != 0 || buffer.hasRemaining() || !this.isLastWindow();
+	}
+
+	/**
+	 * Map the next window from the current position.
+	 */
+	protected void remap() throws IOException
+	{
+		this.map(base + buffer.position());
+	}
+}
@@ -26,6 +26,7 @@ import java.util.regex.Pattern;
 
 import org.kernelab.basis.Accessor;
 import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Action;
 import org.kernelab.basis.JSON;
 import org.kernelab.basis.JSON.JSAN;
 import org.kernelab.basis.JSON.Pair;
@@ -1716,6 +1717,44 @@ public class SQLKit
 		getBatchStatements().add(statement);
 	}
 
+	/**
+	 * Add the parameters into the batch according to the type of the
+	 * parameters, which could be a JSON, Map, Iterable, Object array or a
+	 * single value.
+	 * 
+	 * @param statement
+	 * @param params
+	 * @throws SQLException
+	 */
+	@SuppressWarnings("unchecked")
+	protected void addBatchOf(PreparedStatement statement, Object params) throws SQLException
+	{
+		if (params instanceof JSAN)
+		{
+			addBatch(statement, (JSAN) params);
+		}
+		else if (params instanceof JSON)
+		{
+			addBatch(statement, (JSON) params);
+		}
+		else if (params instanceof Map)
+		{
+			addBatch(statement, (Map<String, ?>) params);
+		}
+		else if (params instanceof Iterable)
+		{
+			addBatch(statement, (Iterable<?>) params);
+		}
+		else if (params instanceof Object[])
+		{
+			addBatch(statement, (Object[]) params);
+		}
+		else
+		{
+			addBatch(statement, new Object[] { params });
+		}
+	}
+
 	public PreparedStatement bindParameters(int offset, Iterable<?> params) throws SQLException
 	{
 		return bindParameters(offset, (PreparedStatement) statement, params);
@@ -4099,4 +4138,74 @@ public class SQLKit
 	{
 		return update(prepareStatement(sql, columnNames), params);
 	}
+
+	/**
+	 * Add each element of the data as the parameters of the sql into the
+	 * batch, and execute the batch once every {@code size} elements. Each
+	 * element could be a JSON, Map, Iterable, Object array or a single value.
+	 * The statement is prepared only once according to the first element.
+	 * 
+	 * @param sql
+	 * @param data
+	 * @param size
+	 *            the batch size.
+	 * @return the total update count reported by the driver.
+	 * @throws SQLException
+	 */
+	@SuppressWarnings("unchecked")
+	public <E> long updateBatch(final String sql, Canal<E> data, int size) throws SQLException
+	{
+		final PreparedStatement[] statement = new PreparedStatement[1];
+		final long[] total = new long[] { 0L };
+		try
+		{
+			data.foreachBatch(size, new Action<List<E>>()
+			{
+				@Override
+				public void action(List<E> batch) throws Exception
+				{
+					for (E params : batch)
+					{
+						if (statement[0] == null)
+						{
+							if (params instanceof JSON && !(params instanceof JSAN))
+							{
+								statement[0] = prepareStatement(sql, (JSON) params);
+							}
+							else if (params instanceof Map)
+							{
+								statement[0] = prepareStatement(sql, (Map<String, ?>) params);
+							}
+							else
+							{
+								statement[0] = prepareStatement(sql);
+							}
+						}
+						addBatchOf(statement[0], params);
+					}
+
+					if (statement[0] != null)
+					{
+						for (int count : executeBatch(statement[0]))
+						{
+							if (count > 0)
+							{
+								total[0] += count;
+							}
+						}
+						clearBatch(statement[0]);
+					}
+				}
+			});
+		}
+		catch (RuntimeException e)
+		{
+			if (e.getCause() instanceof SQLException)
+			{
+				throw (SQLException) e.getCause();
+			}
+			throw e;
+		}
+		return total[0];
+	}
 }
@@ -13,6 +13,7 @@ import org.kernelab.basis.Canal;
 import org.kernelab.basis.Canal.Action;
 import org.kernelab.basis.Canal.JointMapper;
 import org.kernelab.basis.Canal.Option;
+import org.kernelab.basis.Canal.PairCanal;
 import org.kernelab.basis.Canal.Producer;
 import org.kernelab.basis.Canal.Tuple;
 import org.kernelab.basis.Canal.Tuple2;
@@ -1025,6 +1026,44 @@ public class TestCanal
 			}
 		});
 
+		Tools.debug("============mergeJoin");
+		PairCanal<Integer, String> sortedLeft = Canal.of(new Integer[] { 1, 1, 2, 4, 6 })
+				.keyBy(new Mapper<Integer, Integer>()
+				{
+					@Override
+					public Integer map(Integer el)
+					{
+						return el;
+					}
+				}).mapValues(new Mapper<Integer, String>()
+				{
+					@Override
+					public String map(Integer el)
+					{
+						return "l" + el;
+					}
+				});
+		PairCanal<Integer, String> sortedRight = Canal.of(new Integer[] { 1, 2, 2, 3, 6, 7 })
+				.keyBy(new Mapper<Integer, Integer>()
+				{
+					@Override
+					public Integer map(Integer el)
+					{
+						return el;
+					}
+				}).mapValues(new Mapper<Integer, String>()
+				{
+					@Override
+					public String map(Integer el)
+					{
+						return "r" + el;
+					}
+				});
+		Tools.debug(sortedLeft.mergeJoin(sortedRight).collect());
+		Tools.debug(sortedLeft.mergeLeftJoin(sortedRight).collect());
+		Tools.debug(sortedLeft.mergeRightJoin(sortedRight).collect());
+		Tools.debug(sortedLeft.mergeFullJoin(sortedRight).collect());
+
 		Tools.debug("==============mapJoint");
 		Canal.of(new Integer[] { 1, 2, 3 }).keyBy(new Mapper<Integer, Integer>()
 		{
@@ -0,0 +1,51 @@
+package org.kernelab.basis.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Action;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalBatch
+{
+	public static void main(String[] args)
+	{
+		Canal<Integer> c = Canal.of(Canal.range(0, 10));
+
+		Tools.debug(c.batched(4).collect());
+		Tools.debug(c.batched(4).limit(2).collect());
+		Tools.debug(c.batched(5).count());
+
+		c.foreachBatch(3, new Action<List<Integer>>()
+		{
+			@Override
+			public void action(List<Integer> el) throws Exception
+			{
+				Tools.debug(el.size() + " " + el);
+			}
+		});
+
+		Tools.debug(c.mapBatch(4, new Mapper<List<Integer>, Iterable<Integer>>()
+		{
+			@Override
+			public Iterable<Integer> map(List<Integer> el) throws Exception
+			{
+				List<Integer> sums = new ArrayList<Integer>();
+				int sum = 0;
+				for (Integer i : el)
+				{
+					sums.add(sum += i);
+				}
+				return sums;
+			}
+		}).collect());
+
+		// Pull the batches one by one
+		for (List<Integer> batch : c.batched(6))
+		{
+			Tools.debug(batch);
+		}
+	}
+}
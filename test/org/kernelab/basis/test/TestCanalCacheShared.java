@@ -0,0 +1,90 @@
+package org.kernelab.basis.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalCacheShared
+{
+	public static void main(String[] args) throws Exception
+	{
+		final AtomicInteger computed = new AtomicInteger();
+
+		Mapper<Integer, Integer> slow = new Mapper<Integer, Integer>()
+		{
+			@Override
+			public Integer map(Integer el) throws Exception
+			{
+				computed.incrementAndGet();
+				if (el % 1000 == 0)
+				{
+					Thread.sleep(1);
+				}
+				return el * 2;
+			}
+		};
+
+		Canal<Integer> shared = Canal.of(Canal.range(0, 20000)).map(slow).cache();
+		Tools.debug(computed.get() + " " + shared.count() + " " + computed.get() + " " + shared.count() + " "
+				+ computed.get());
+
+		computed.set(0);
+		shared = Canal.of(Canal.range(0, 20000)).map(slow).cache();
+		Tools.debug(fanout(shared, 8) + " " + computed.get());
+
+		computed.set(0);
+		Canal<Integer> capped = Canal.of(Canal.range(0, 20000)).map(slow).cache(5000);
+		Tools.debug(fanout(capped, 4) + " " + computed.get());
+
+		Tools.debug(capped.limit(3).collect() + " " + Canal.of(Canal.range(0, 3)).map(slow).cache(2).collect());
+	}
+
+	/**
+	 * Iterate the same Canal by several threads, return the distinct sums.
+	 */
+	protected static List<Long> fanout(final Canal<Integer> c, int threads) throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (int i = 0; i < threads; i++)
+			{
+				futures.add(executor.submit(new Callable<Long>()
+				{
+					@Override
+					public Long call() throws Exception
+					{
+						long sum = 0;
+						for (Integer el : c)
+						{
+							sum += el;
+						}
+						return sum;
+					}
+				}));
+			}
+			List<Long> sums = new ArrayList<Long>();
+			for (Future<Long> f : futures)
+			{
+				if (!sums.contains(f.get()))
+				{
+					sums.add(f.get());
+				}
+			}
+			return sums;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+}
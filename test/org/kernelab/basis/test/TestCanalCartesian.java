@@ -0,0 +1,80 @@
+package org.kernelab.basis.test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Spiller;
+import org.kernelab.basis.Canal.Tuple2;
+import org.kernelab.basis.StatefulMapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalCartesian
+{
+	public static void main(String[] args)
+	{
+		Tools.debug(Canal.of(new Integer[] { 1, 2 }).cartesian(Canal.of(new String[] { "a", "b", "c" })).collect());
+
+		List<Integer> left = new ArrayList<Integer>();
+		List<Integer> right = new ArrayList<Integer>();
+		for (int i = 0; i < 2000; i++)
+		{
+			left.add(i);
+			right.add(i * 3 % 2000);
+		}
+
+		StatefulMapper<Integer, Integer, Boolean> near = new StatefulMapper<Integer, Integer, Boolean>()
+		{
+			@Override
+			public Boolean map(Integer l, Integer r) throws Exception
+			{
+				return Math.abs(l - r) < 3;
+			}
+		};
+
+		List<String> expect = new ArrayList<String>();
+		for (Integer l : left)
+		{
+			for (Integer r : right)
+			{
+				if (Math.abs(l - r) < 3)
+				{
+					expect.add(String.valueOf(Canal.Tuple.of(l, r)));
+				}
+			}
+		}
+		Collections.sort(expect);
+
+		Collection<Tuple2<Integer, Integer>> serial = Canal.of(left).thetaJoin(Canal.of(right), near).collect();
+		Collection<Tuple2<Integer, Integer>> parallel = Canal.of(left)
+				.thetaJoin(Canal.of(right), near, null, 4).collect();
+
+		Tools.debug(expect.size() + " " + expect.equals(sorted(serial)));
+		Tools.debug(new ArrayList<Tuple2<Integer, Integer>>(serial).equals(parallel));
+		Tools.debug(expect.equals(sorted(Canal.of(left)
+				.thetaJoin(Canal.of(right), near, new Spiller().memory(300), 1).collect())));
+		Tools.debug(expect.equals(sorted(Canal.of(left)
+				.thetaJoin(Canal.of(right), near, new Spiller().memory(300), 3).collect())));
+		Tools.debug(Canal.of(left).cartesian(Canal.of(right), new Spiller().memory(500), 2).count());
+
+		long t = System.nanoTime();
+		Canal.of(left).thetaJoin(Canal.of(right), near).count();
+		Tools.debug("serial " + (System.nanoTime() - t) / 1000000 + "ms");
+		t = System.nanoTime();
+		Canal.of(left).thetaJoin(Canal.of(right), near, null, 4).count();
+		Tools.debug("parallel " + (System.nanoTime() - t) / 1000000 + "ms");
+	}
+
+	protected static <T> List<String> sorted(Collection<T> list)
+	{
+		List<String> strs = new ArrayList<String>();
+		for (T t : list)
+		{
+			strs.add(String.valueOf(t));
+		}
+		Collections.sort(strs);
+		return strs;
+	}
+}
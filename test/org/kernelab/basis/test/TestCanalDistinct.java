@@ -0,0 +1,45 @@
+package org.kernelab.basis.test;
+
+import java.util.Random;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Producer;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalDistinct
+{
+	public static void main(String[] args)
+	{
+		Canal<Integer> c = Canal.of(new Integer[] { 3, 1, 3, 2, 1, 4, 3, 5, 2 });
+
+		Tools.debug(c.distinct().collect());
+		Tools.debug(c.distinctWindow(2).collect());
+		Tools.debug(c.distinctApprox(100, 0.01).collect());
+		Tools.debug(c.distinct(new Mapper<Integer, Integer>()
+		{
+			@Override
+			public Integer map(Integer el) throws Exception
+			{
+				return el % 2;
+			}
+		}).collect());
+
+		// An endless source, the first distinct elements come out immediately.
+		final Random rand = new Random(0);
+		Canal<Integer> endless = Canal.of(new Producer<Integer>()
+		{
+			@Override
+			public Integer produce() throws Exception
+			{
+				return rand.nextInt(1000);
+			}
+		});
+		Tools.debug(endless.distinct().limit(5).count());
+		Tools.debug(endless.distinctWindow(100).limit(5).count());
+		Tools.debug(endless.distinctApprox(1000, 0.01).limit(5).count());
+
+		int n = 1000000;
+		Tools.debug(Canal.of(Canal.range(0, n)).distinctApprox(n, 0.01).count() + " of " + n);
+	}
+}
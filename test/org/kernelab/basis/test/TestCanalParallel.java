@@ -0,0 +1,141 @@
+package org.kernelab.basis.test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Producer;
+import org.kernelab.basis.Filter;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Reducer;
+import org.kernelab.basis.Tools;
+
+public class TestCanalParallel
+{
+	public static void main(String[] args)
+	{
+		List<Integer> data = new ArrayList<Integer>();
+		for (int i = 0; i < 100000; i++)
+		{
+			data.add(i);
+		}
+
+		Mapper<Integer, Long> square = new Mapper<Integer, Long>()
+		{
+			@Override
+			public Long map(Integer el) throws Exception
+			{
+				return (long) el * el;
+			}
+		};
+
+		Filter<Long> even = new Filter<Long>()
+		{
+			@Override
+			public boolean filter(Long el) throws Exception
+			{
+				return el % 2 == 0;
+			}
+		};
+
+		Reducer<Long, Long> sum = new Reducer<Long, Long>()
+		{
+			@Override
+			public Long reduce(Long a, Long b) throws Exception
+			{
+				return a + b;
+			}
+		};
+
+		Tools.debug(Canal.of(data).map(square).filter(even).reduce(sum));
+		Tools.debug(Canal.of(data).parallel(4).map(square).filter(even).reduce(sum));
+		Tools.debug(Canal.of(data).parallel(4, false).map(square).filter(even).count());
+
+		Tools.debug(Canal.of(data).map(square).filter(even).collect().equals(
+				Canal.of(data).parallel(4).map(square).filter(even).collect()));
+
+		// Not a RandomAccess source, chunks are pulled from the upstream.
+		Tools.debug(Canal.of(data).filter(new Filter<Integer>()
+		{
+			@Override
+			public boolean filter(Integer el) throws Exception
+			{
+				return el % 3 == 0;
+			}
+		}).parallel(3).map(square).fold(new Producer<Long>()
+		{
+			@Override
+			public Long produce() throws Exception
+			{
+				return 0L;
+			}
+		}, sum, sum));
+
+		Tools.debug(Canal.of(data).parallel(4).countByKey(new LinkedHashMap<Integer, Integer>(),
+				new Mapper<Integer, Integer>()
+				{
+					@Override
+					public Integer map(Integer el) throws Exception
+					{
+						return el % 5;
+					}
+				}));
+
+		Mapper<Integer, Integer> mod = new Mapper<Integer, Integer>()
+		{
+			@Override
+			public Integer map(Integer el) throws Exception
+			{
+				return el % 7;
+			}
+		};
+		Producer<Long> zero = new Producer<Long>()
+		{
+			@Override
+			public Long produce() throws Exception
+			{
+				return 0L;
+			}
+		};
+		Reducer<Integer, Long> add = new Reducer<Integer, Long>()
+		{
+			@Override
+			public Long reduce(Long a, Integer b) throws Exception
+			{
+				return a + b;
+			}
+		};
+		Map<Integer, Long> a = Canal.of(data).foldByKey(null, mod, zero, add);
+		Map<Integer, Long> b = Canal.of(data).parallel(4, false).foldByKey(new TreeMap<Integer, Long>(), mod, zero,
+				add, sum);
+		Tools.debug(a);
+		Tools.debug(a.equals(b));
+
+		// The pool is reused by each evaluation of the same Canal.
+		Canal<Long> squares = Canal.of(data).parallel(4).map(square);
+		Tools.debug(squares.reduce(sum).get().equals(squares.reduce(sum).get()));
+
+		try
+		{
+			Canal.of(data).parallel(2).map(new Mapper<Integer, Integer>()
+			{
+				@Override
+				public Integer map(Integer el) throws Exception
+				{
+					if (el == 54321)
+					{
+						throw new IllegalStateException("failed at " + el);
+					}
+					return el;
+				}
+			}).count();
+		}
+		catch (IllegalStateException e)
+		{
+			Tools.debug(e.getMessage());
+		}
+	}
+}
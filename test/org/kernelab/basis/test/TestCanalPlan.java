@@ -0,0 +1,97 @@
+package org.kernelab.basis.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Plan;
+import org.kernelab.basis.Filter;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalPlan
+{
+	protected static final Mapper<Integer, Integer>	INC		= new Mapper<Integer, Integer>()
+															{
+																@Override
+																public Integer map(Integer el)
+																{
+																	return el + 1;
+																}
+															};
+
+	protected static final Filter<Integer>			EVEN	= new Filter<Integer>()
+															{
+																@Override
+																public boolean filter(Integer el)
+																{
+																	return el % 2 == 0;
+																}
+															};
+
+	protected static final int						ROUNDS	= 1000000;
+
+	public static void main(String[] args)
+	{
+		Plan<Integer, Integer> plan = Canal.plan(new Mapper<Canal<Integer>, Canal<Integer>>()
+		{
+			@Override
+			public Canal<Integer> map(Canal<Integer> el) throws Exception
+			{
+				return el.map(INC).filter(EVEN).limit(3);
+			}
+		});
+
+		Tools.debug(plan.collect(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)));
+		Tools.debug(plan.collect(Arrays.asList(11, 12, 13)));
+		Tools.debug(plan.count(Arrays.asList(1, 3, 5, 7, 9)));
+
+		// A pipeline with an operator which could not be reset is built again.
+		Plan<Integer, Integer> sorted = Canal.plan(new Mapper<Canal<Integer>, Canal<Integer>>()
+		{
+			@Override
+			public Canal<Integer> map(Canal<Integer> el) throws Exception
+			{
+				return el.map(INC).sortWith(false);
+			}
+		});
+		Tools.debug(sorted.collect(Arrays.asList(3, 1, 2)));
+		Tools.debug(sorted.collect(Arrays.asList(6, 5, 4)));
+
+		List<Integer> data = new ArrayList<Integer>();
+		for (int i = 0; i < 10; i++)
+		{
+			data.add(i);
+		}
+
+		for (int r = 0; r < 3; r++)
+		{
+			long t = System.nanoTime();
+			long a = 0;
+			for (int i = 0; i < ROUNDS; i++)
+			{
+				a += Canal.of(data).map(INC).filter(EVEN).count();
+			}
+			long built = (System.nanoTime() - t) / 1000000;
+
+			t = System.nanoTime();
+			long b = 0;
+			Plan<Integer, Integer> p = Canal.plan(new Mapper<Canal<Integer>, Canal<Integer>>()
+			{
+				@Override
+				public Canal<Integer> map(Canal<Integer> el) throws Exception
+				{
+					return el.map(INC).filter(EVEN);
+				}
+			});
+			for (int i = 0; i < ROUNDS; i++)
+			{
+				b += p.count(data);
+			}
+			long planned = (System.nanoTime() - t) / 1000000;
+
+			Tools.debug("built " + a + " " + built + "ms\tplanned " + b + " " + planned + "ms");
+		}
+	}
+}
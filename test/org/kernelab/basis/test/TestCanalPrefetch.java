@@ -0,0 +1,109 @@
+package org.kernelab.basis.test;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Producer;
+import org.kernelab.basis.Closeable;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalPrefetch
+{
+	public static void main(String[] args) throws Exception
+	{
+		// A slow upstream and a slow downstream, each takes 1ms per element.
+		Mapper<Integer, Integer> slow = new Mapper<Integer, Integer>()
+		{
+			@Override
+			public Integer map(Integer el) throws Exception
+			{
+				Thread.sleep(1);
+				return el;
+			}
+		};
+
+		long t = System.nanoTime();
+		int a = Canal.of(Canal.range(0, 500)).map(slow).map(slow).count();
+		Tools.debug("serial " + a + " " + (System.nanoTime() - t) / 1000000 + "ms");
+
+		t = System.nanoTime();
+		int b = Canal.of(Canal.range(0, 500)).map(slow).prefetch(64).map(slow).count();
+		Tools.debug("prefetch " + b + " " + (System.nanoTime() - t) / 1000000 + "ms");
+
+		Tools.debug(Canal.of(new Integer[] { 1, null, 3 }).prefetch(1).collect());
+
+		// The error raised in upstream is thrown after the elements before it.
+		final int[] count = new int[] { 0 };
+		try
+		{
+			Canal.of(new Producer<Integer>()
+			{
+				@Override
+				public Integer produce() throws Exception
+				{
+					if (count[0] == 5)
+					{
+						throw new IllegalStateException("failed at " + count[0]);
+					}
+					return count[0]++;
+				}
+			}).prefetch(2).foreach(new Canal.Action<Integer>()
+			{
+				@Override
+				public void action(Integer el) throws Exception
+				{
+					Tools.debug(el);
+				}
+			});
+		}
+		catch (IllegalStateException e)
+		{
+			Tools.debug(e.getMessage());
+		}
+
+		// Closing stops the background thread over an endless source.
+		count[0] = 0;
+		Iterator<Integer> iter = Canal.of(new Producer<Integer>()
+		{
+			@Override
+			public Integer produce() throws Exception
+			{
+				return count[0]++;
+			}
+		}).prefetch(4).iterator();
+		Tools.debug(iter.next() + " " + iter.next());
+		((Closeable) iter).close();
+		int stopped = count[0];
+		Thread.sleep(50);
+		Tools.debug(stopped == count[0]);
+
+		Tools.debug(Canal.of(Canal.range(0, 100000)).prefetch(16).limit(3).collect());
+
+		// Closing does not wait for the task which has never been started.
+		ExecutorService busy = Executors.newSingleThreadExecutor();
+		final CountDownLatch block = new CountDownLatch(1);
+		busy.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					block.await();
+				}
+				catch (InterruptedException e)
+				{
+				}
+			}
+		});
+		iter = Canal.of(Canal.range(0, 10)).prefetch(4, busy).iterator();
+		((Closeable) iter).close();
+		Tools.debug("closed before start");
+		block.countDown();
+		busy.shutdown();
+	}
+}
@@ -0,0 +1,78 @@
+package org.kernelab.basis.test;
+
+import java.util.Arrays;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.IntCanal;
+import org.kernelab.basis.Canal.IntFilter;
+import org.kernelab.basis.Canal.IntMapper;
+import org.kernelab.basis.Canal.ToDoubleMapper;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Reducer;
+import org.kernelab.basis.Tools;
+
+public class TestCanalPrimitive
+{
+	public static void main(String[] args)
+	{
+		IntCanal c = Canal.ofInts(new int[] { 3, 1, 4, 1, 5, 9, 2, 6 });
+
+		Tools.debug(c.sum() + " " + c.min() + " " + c.max() + " " + c.average() + " " + c.count());
+		Tools.debug(Arrays.toString(c.filterInt(new IntFilter()
+		{
+			@Override
+			public boolean filter(int el) throws Exception
+			{
+				return el % 2 == 1;
+			}
+		}).mapInt(new IntMapper()
+		{
+			@Override
+			public int map(int el) throws Exception
+			{
+				return el * 10;
+			}
+		}).toArray()));
+		Tools.debug(Arrays.toString(c.histogram(0, 10, 5)));
+		Tools.debug(c.asDouble().average());
+
+		// Generic operations are still available on the boxed values.
+		Tools.debug(c.map(new Mapper<Integer, String>()
+		{
+			@Override
+			public String map(Integer el) throws Exception
+			{
+				return "#" + el;
+			}
+		}).collect());
+
+		Tools.debug(Canal.ofInts(new int[] { 3, 1, 4, 1, 5 }, -2).collect());
+		Tools.debug(Arrays.toString(Canal.ints(10, 0, -3).toArray()));
+		Tools.debug(Canal.ints(0, 0).min());
+
+		Tools.debug(Canal.of(new String[] { "1.5", "2.5", "3" }).mapToDouble(new ToDoubleMapper<String>()
+		{
+			@Override
+			public double map(String el) throws Exception
+			{
+				return Double.parseDouble(el);
+			}
+		}).sum());
+
+		int n = 10000000;
+		long t = System.nanoTime();
+		long a = Canal.ints(0, n).sum();
+		Tools.debug("primitive " + a + " " + (System.nanoTime() - t) / 1000000 + "ms");
+
+		t = System.nanoTime();
+		Long b = Canal.of(Canal.range(0, n)).fold(0L, new Reducer<Integer, Long>()
+		{
+			@Override
+			public Long reduce(Long res, Integer el) throws Exception
+			{
+				return res + el;
+			}
+		});
+		Tools.debug("boxed " + b + " " + (System.nanoTime() - t) / 1000000 + "ms");
+	}
+}
@@ -0,0 +1,83 @@
+package org.kernelab.basis.test;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Profile;
+import org.kernelab.basis.Filter;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalProfile
+{
+	public static void main(String[] args)
+	{
+		Mapper<Integer, Integer> mod = new Mapper<Integer, Integer>()
+		{
+			@Override
+			public Integer map(Integer el) throws Exception
+			{
+				return el % 100;
+			}
+		};
+
+		Filter<Integer> odd = new Filter<Integer>()
+		{
+			@Override
+			public boolean filter(Integer el) throws Exception
+			{
+				return el % 2 == 1;
+			}
+		};
+
+		Profile prof = new Profile();
+		Canal<Integer> c = Canal.of(Canal.range(0, 100000)).map(mod).filter(odd).distinct().sortWith(null)
+				.limit(10).profile(prof);
+		Tools.debug(c.collect());
+		Tools.debug(prof);
+
+		for (Profile.Metrics m : prof.metrics())
+		{
+			Tools.debug(m.getLabel() + " " + m.getRows() + " " + m.getRuns());
+		}
+
+		// Sampled metrics accumulated over the runs
+		Profile sampled = new Profile().sampling(100);
+		Canal<Integer> d = Canal.of(Canal.range(0, 100000)).map(mod).groupBy(mod).map(new Mapper<Object, Integer>()
+		{
+			@Override
+			public Integer map(Object el) throws Exception
+			{
+				return 1;
+			}
+		}).profile(sampled);
+		for (int i = 0; i < 3; i++)
+		{
+			d.count();
+		}
+		Tools.debug(sampled);
+
+		// Metrics of a Canal consumed by for-each without closing
+		Profile iterated = new Profile().sampling(2);
+		int sum = 0;
+		for (Integer i : Canal.of(Canal.range(0, 1000)).map(mod).profile(iterated))
+		{
+			sum += i;
+		}
+		for (Profile.Metrics m : iterated.metrics())
+		{
+			Tools.debug(m.getLabel() + " " + m.getRows() + " " + m.getRuns() + " " + sum);
+		}
+
+		long t = System.nanoTime();
+		for (int i = 0; i < 10; i++)
+		{
+			Canal.of(Canal.range(0, 1000000)).map(mod).filter(odd).count();
+		}
+		Tools.debug("plain " + (System.nanoTime() - t) / 10000000 + "ms");
+		t = System.nanoTime();
+		for (int i = 0; i < 10; i++)
+		{
+			Canal.of(Canal.range(0, 1000000)).map(mod).filter(odd).profile(new Profile().sampling(1000)).count();
+		}
+		Tools.debug("sampled " + (System.nanoTime() - t) / 10000000 + "ms");
+	}
+}
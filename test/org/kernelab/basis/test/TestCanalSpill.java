@@ -0,0 +1,141 @@
+package org.kernelab.basis.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Producer;
+import org.kernelab.basis.Canal.Spiller;
+import org.kernelab.basis.Canal.Tuple;
+import org.kernelab.basis.Canal.Tuple2;
+import org.kernelab.basis.Reducer;
+import org.kernelab.basis.Tools;
+import org.kernelab.basis.sql.Row;
+
+public class TestCanalSpill
+{
+	public static void main(String[] args)
+	{
+		testSort();
+		testJoin();
+		testGroup();
+	}
+
+	public static void testGroup()
+	{
+		List<Tuple2<Integer, Integer>> data = new ArrayList<Tuple2<Integer, Integer>>();
+		for (int i = 0; i < 10000; i++)
+		{
+			data.add(Tuple.of(i % 997, i));
+		}
+
+		Producer<Integer> zero = new Producer<Integer>()
+		{
+			@Override
+			public Integer produce() throws Exception
+			{
+				return 0;
+			}
+		};
+
+		Reducer<Integer, Integer> sum = new Reducer<Integer, Integer>()
+		{
+			@Override
+			public Integer reduce(Integer a, Integer b) throws Exception
+			{
+				return a + b;
+			}
+		};
+
+		Map<Integer, Integer> a = Canal.of(data).<Integer, Integer> toPair().foldByKey(zero, sum).collectAsMap();
+		Map<Integer, Integer> b = Canal.of(data).<Integer, Integer> toPair().foldByKey(zero, sum, new Spiller().memory(100).fanout(4))
+				.collectAsMap();
+
+		Tools.debug(a.size() + " " + b.size() + " " + a.equals(b));
+	}
+
+	public static void testJoin()
+	{
+		List<Tuple2<Integer, String>> left = new ArrayList<Tuple2<Integer, String>>();
+		List<Tuple2<Integer, String>> right = new ArrayList<Tuple2<Integer, String>>();
+		for (int i = 0; i < 5000; i++)
+		{
+			left.add(Tuple.of(i % 1500, "l" + i));
+			right.add(Tuple.of(i % 2000 + 500, "r" + i));
+		}
+
+		Spiller spiller = new Spiller().memory(500);
+
+		Tools.debug(sorted(Canal.of(left).<Integer, String> toPair().join(Canal.of(right)).collect())
+				.equals(sorted(Canal.of(left).<Integer, String> toPair().join(Canal.of(right), spiller).collect())));
+		Tools.debug(sorted(Canal.of(left).<Integer, String> toPair().leftJoin(Canal.of(right)).collect())
+				.equals(sorted(Canal.of(left).<Integer, String> toPair().leftJoin(Canal.of(right), spiller).collect())));
+		Tools.debug(sorted(Canal.of(left).<Integer, String> toPair().rightJoin(Canal.of(right)).collect())
+				.equals(sorted(Canal.of(left).<Integer, String> toPair().rightJoin(Canal.of(right), spiller).collect())));
+		Tools.debug(sorted(Canal.of(left).<Integer, String> toPair().fullJoin(Canal.of(right)).collect())
+				.equals(sorted(Canal.of(left).<Integer, String> toPair().fullJoin(Canal.of(right), spiller).collect())));
+
+		Tools.debug(sorted(Canal.of(left).<Integer, String> toPair().join(Canal.of(right), Canal.JOIN_HASH).collect())
+				.equals(sorted(Canal.of(left).<Integer, String> toPair().join(Canal.of(right), Canal.JOIN_STREAM)
+						.collect())));
+		Tools.debug(sorted(Canal.of(left).<Integer, String> toPair().leftJoin(Canal.of(right), Canal.JOIN_HASH)
+				.collect()).equals(sorted(Canal.of(left).<Integer, String> toPair()
+						.leftJoin(Canal.of(right), Canal.JOIN_STREAM).collect())));
+
+		// The smaller side of each partition is built, either side could be.
+		List<Tuple2<Integer, String>> few = left.subList(0, 300);
+		Tools.debug(sorted(Canal.of(few).<Integer, String> toPair().fullJoin(Canal.of(right)).collect())
+				.equals(sorted(Canal.of(few).<Integer, String> toPair().fullJoin(Canal.of(right), spiller).collect())));
+		Tools.debug(sorted(Canal.of(right).<Integer, String> toPair().fullJoin(Canal.of(few)).collect())
+				.equals(sorted(Canal.of(right).<Integer, String> toPair().fullJoin(Canal.of(few), spiller).collect())));
+	}
+
+	public static void testSort()
+	{
+		Random rand = new Random(0);
+
+		List<Row> rows = new ArrayList<Row>();
+		for (int i = 0; i < 10000; i++)
+		{
+			rows.add(new Row("id", i, "grp", rand.nextInt(10), "val", rand.nextInt(1000)));
+		}
+
+		Spiller spiller = new Spiller().memory(1000);
+
+		List<Row> a = Canal.of(rows).<Row> toRows().sortBy(Canal.$("grp"), Canal.$("val").desc()).collectAsList();
+		List<Row> b = Canal.of(rows).<Row> toRows().sortBy(spiller, Canal.$("grp"), Canal.$("val").desc())
+				.collectAsList();
+
+		Tools.debug(a.size() + " " + b.size() + " " + a.equals(b));
+
+		Tools.debug(Canal.of(rows).<Row> toRows().sortBy(spiller, Canal.$("val")).limit(3).collect());
+
+		Tools.debug(Canal.of(new Integer[] { 5, 3, 9, 1, 7 }).sortWith(new Spiller().memory(2), null, false)
+				.collect());
+
+		// The upstream is closed once collected, so are the runs left unread
+		// by limit.
+		File dir = new File(System.getProperty("java.io.tmpdir"), "canal-spill-" + System.nanoTime());
+		dir.mkdirs();
+		Canal.of(rows).<Row> toRows().sortBy(new Spiller().memory(1000).directory(dir), Canal.$("val")).limit(3)
+				.collect();
+		Tools.debug(dir.list().length);
+		dir.delete();
+	}
+
+	protected static <T> List<String> sorted(Collection<T> list)
+	{
+		List<String> strs = new ArrayList<String>();
+		for (T t : list)
+		{
+			strs.add(String.valueOf(t));
+		}
+		Collections.sort(strs);
+		return strs;
+	}
+}
@@ -0,0 +1,66 @@
+package org.kernelab.basis.test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Tuple;
+import org.kernelab.basis.Canal.Tuple2;
+import org.kernelab.basis.Filter;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestCanalTop
+{
+	@SuppressWarnings("rawtypes")
+	public static void main(String[] args)
+	{
+		Random rand = new Random(0);
+
+		List<Tuple2<Integer, Integer>> data = new ArrayList<Tuple2<Integer, Integer>>();
+		for (int i = 0; i < 100000; i++)
+		{
+			data.add(Tuple.of(rand.nextInt(100), i));
+		}
+
+		// Only compare the score, so that ties are broken by the input order.
+		Comparator<Tuple2<Integer, Integer>> score = new Comparator<Tuple2<Integer, Integer>>()
+		{
+			@Override
+			public int compare(Tuple2<Integer, Integer> a, Tuple2<Integer, Integer> b)
+			{
+				return a._1.compareTo(b._1);
+			}
+		};
+
+		List<Tuple2<Integer, Integer>> sorted = Canal.of(data).sortWith(score, false).collectAsList();
+		Tools.debug(Canal.of(data).top(10, score).collectAsList().equals(sorted.subList(0, 10)));
+		Tools.debug(Canal.of(data).sortWith(score, false).limit(10).collectAsList().equals(sorted.subList(0, 10)));
+
+		sorted = Canal.of(data).sortWith(score).collectAsList();
+		Tools.debug(Canal.of(data).bottom(10, score).collectAsList().equals(sorted.subList(0, 10)));
+		Tools.debug(Canal.of(data).sortBy(new Mapper<Tuple2<Integer, Integer>, Comparable>()
+		{
+			@Override
+			public Comparable map(Tuple2<Integer, Integer> el) throws Exception
+			{
+				return el._1;
+			}
+		}).limit(10).collectAsList().equals(sorted.subList(0, 10)));
+
+		Tools.debug(Canal.of(new Integer[] { 5, 3, 9, 1, 7 }).top(3).collect());
+		Tools.debug(Canal.of(new Integer[] { 5, 3, 9, 1, 7 }).bottom(3).collect());
+		Tools.debug(Canal.of(new Integer[] { 5, 3, 9, 1, 7 }).top(0).count());
+
+		Tools.debug(Canal.of(data).<Integer, Integer> toPair().filter(new Filter<Tuple2<Integer, Integer>>()
+		{
+			@Override
+			public boolean filter(Tuple2<Integer, Integer> el) throws Exception
+			{
+				return el._1 < 3;
+			}
+		}).topByKey(3).collect());
+	}
+}
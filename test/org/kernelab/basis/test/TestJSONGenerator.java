@@ -0,0 +1,77 @@
+package org.kernelab.basis.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.kernelab.basis.JSON;
+import org.kernelab.basis.JSON.Generator;
+import org.kernelab.basis.JSON.JSAN;
+import org.kernelab.basis.Tools;
+
+/**
+ * Compare the bytes generated with the UTF-8 encoded toString(), then measure
+ * both on a document of 1MB or the size given in the first argument.
+ */
+public class TestJSONGenerator
+{
+	public static void main(String[] args) throws IOException
+	{
+		JSON json = new JSON();
+		json.attr("s", "plain");
+		json.attr("e", "q\"b\\s/\n\t\u0001\u007f\u0085");
+		json.attr("u", "\u4e2d\u6587 \u00e9 \ud83d\ude00 \ud83d");
+		json.attr("n", new JSAN().add(0).add(-1).add(Long.MAX_VALUE).add(Long.MIN_VALUE).add(1.5).add(2.5e-7f)
+				.add(new BigDecimal("1E+3")).add((short) 7).add('c'));
+		json.attr("b", new JSAN().add(true).add(false).add(null));
+		json.attr("d", new java.util.Date(1234567890L));
+		json.attr("o", new JSON().attr("x", new JSON()).attr("y", new JSAN()));
+		check(json);
+
+		// Small buffer flushes often.
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Generator g = new Generator(out, 16);
+		g.write(json).flush();
+		Tools.debug(Arrays.equals(out.toByteArray(), json.toString().getBytes("UTF-8")));
+
+		// Incremental generation.
+		g = new Generator();
+		g.beginObject().name("id").value(1).name("tags").beginArray().value("a").value(true).endArray();
+		g.name("sub").value(new JSON().attr("k", "v")).endObject();
+		Tools.debug(new String(g.toByteArray(), "UTF-8"));
+
+		try
+		{
+			new Generator().beginObject().value(1);
+		}
+		catch (IllegalStateException e)
+		{
+			Tools.debug(e.getMessage());
+		}
+
+		String doc = TestJSONTokenizer.document(args.length > 0 ? Integer.parseInt(args[0]) : 1024 * 1024, 3);
+		JSAN big = (JSAN) JSON.Parse(doc);
+		check(big);
+
+		for (int r = 0; r < 5; r++)
+		{
+			long t = System.nanoTime();
+			int a = big.toString().getBytes("UTF-8").length;
+			long s = System.nanoTime() - t;
+
+			out.reset();
+			t = System.nanoTime();
+			JSON.Serialize(big, out);
+			long u = System.nanoTime() - t;
+			Tools.debug(a + " bytes\ttoString " + s / 1000 + "us\tgenerator " + u / 1000 + "us");
+		}
+	}
+
+	protected static void check(JSON json) throws IOException
+	{
+		byte[] expect = json.toString().getBytes("UTF-8");
+		byte[] actual = new Generator().write(json).toByteArray();
+		Tools.debug(Arrays.equals(expect, actual) + " " + (expect.length < 400 ? new String(actual, "UTF-8") : ""));
+	}
+}
@@ -0,0 +1,175 @@
+package org.kernelab.basis.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.Canal.Action;
+import org.kernelab.basis.JSON;
+import org.kernelab.basis.JSON.JSAN;
+import org.kernelab.basis.JSON.LinesReader;
+import org.kernelab.basis.JSON.SyntaxErrorException;
+import org.kernelab.basis.Tools;
+
+/**
+ * Compare the JSON Lines read in parallel with the lines parsed one by one,
+ * then measure both on a file of 20MB or the size given in the first argument.
+ */
+public class TestJSONLines
+{
+	public static void main(String[] args) throws IOException
+	{
+		Charset utf8 = Charset.forName("UTF-8");
+
+		File file = File.createTempFile("lines", ".ndjson");
+		file.deleteOnExit();
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), utf8);
+		JSAN doc = (JSAN) JSON.Parse(TestJSONTokenizer.document(256 * 1024, 5));
+		for (int i = 0; i < doc.size(); i++)
+		{
+			out.write(doc.get(i).toString());
+			out.write(i % 7 == 0 ? "\r\n" : "\n");
+			if (i % 500 == 0)
+			{
+				out.write("\n  \n{\"broken\": [1, 2\n");
+			}
+			if (i % 501 == 0)
+			{
+				out.write("{\"u\":\"\u4e2d\u6587\"} trailing\n");
+			}
+		}
+		out.write("{\"last\":true}");
+		out.close();
+
+		List<String> expect = new ArrayList<String>();
+		int malformed = 0;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), utf8));
+		String line;
+		while ((line = reader.readLine()) != null)
+		{
+			if (line.trim().length() > 0)
+			{
+				if (line.startsWith("{\"id\"") || line.startsWith("{\"last\""))
+				{
+					expect.add(JSON.Parse(line).toString());
+				}
+				else
+				{
+					malformed++;
+				}
+			}
+		}
+		reader.close();
+
+		final List<String> errors = new ArrayList<String>();
+		Action<SyntaxErrorException> channel = new Action<SyntaxErrorException>()
+		{
+			@Override
+			public void action(SyntaxErrorException el) throws Exception
+			{
+				errors.add(el.getMessage());
+			}
+		};
+
+		for (int segment : new int[] { 1, 100, 4096, LinesReader.DEFAULT_SEGMENT_SIZE })
+		{
+			for (int parallelism : new int[] { 1, 4 })
+			{
+				errors.clear();
+				List<String> ordered = strings(
+						Canal.iterable(new LinesReader(file, utf8, parallelism, true, channel, segment)).canal());
+				int orderedErrors = errors.size();
+				errors.clear();
+				List<String> unordered = strings(
+						Canal.iterable(new LinesReader(file, utf8, parallelism, false, channel, segment)).canal());
+				Collections.sort(unordered);
+				List<String> sorted = new ArrayList<String>(expect);
+				Collections.sort(sorted);
+				Tools.debug(segment + "\t" + parallelism + "\t" + ordered.equals(expect) + " " + unordered.equals(sorted)
+						+ " " + (orderedErrors == malformed) + " " + (errors.size() == malformed));
+			}
+		}
+		Tools.debug(expect.size() + " records " + malformed + " malformed, e.g. " + errors.get(0));
+
+		try
+		{
+			JSON.Lines(file, utf8, 2).count();
+		}
+		catch (SyntaxErrorException e)
+		{
+			Tools.debug("thrown " + e.getMessage().split("\n")[0]);
+		}
+
+		// The Canal could be iterated again.
+		Canal<JSON> lines = JSON.Lines(file, utf8, 2, true, channel);
+		Tools.debug(lines.count() + " " + lines.limit(2).count());
+
+		// The newline could not be found in the bytes of UTF-16.
+		for (String name : new String[] { "UTF-16", "UTF-16LE", "UTF-16BE" })
+		{
+			try
+			{
+				JSON.Lines(file, Charset.forName(name), 2).count();
+			}
+			catch (IllegalArgumentException e)
+			{
+				Tools.debug(e.getMessage());
+			}
+		}
+
+		file = File.createTempFile("lines", ".ndjson");
+		file.deleteOnExit();
+		out = new OutputStreamWriter(new FileOutputStream(file), utf8);
+		String big = TestJSONTokenizer.document(args.length > 0 ? Integer.parseInt(args[0]) : 20 * 1024 * 1024, 9);
+		doc = (JSAN) JSON.Parse(big);
+		for (Object o : doc)
+		{
+			out.write(o.toString());
+			out.write('\n');
+		}
+		out.close();
+
+		for (int r = 0; r < 3; r++)
+		{
+			long t = System.nanoTime();
+			int n = 0;
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), utf8));
+			while ((line = reader.readLine()) != null)
+			{
+				if (JSON.Parse(line) != null)
+				{
+					n++;
+				}
+			}
+			reader.close();
+			long s = System.nanoTime() - t;
+
+			int p = Runtime.getRuntime().availableProcessors();
+			t = System.nanoTime();
+			int m = JSON.Lines(file, utf8, p, false, null).count();
+			long u = System.nanoTime() - t;
+			Tools.debug(file.length() + " bytes " + n + "/" + m + " records\tsingle " + s / 1000000 + "ms\tparallel("
+					+ p + ") " + u / 1000000 + "ms");
+		}
+	}
+
+	protected static List<String> strings(Canal<JSON> canal)
+	{
+		List<String> list = new ArrayList<String>();
+		for (JSON json : canal)
+		{
+			list.add(json.toString());
+		}
+		return list;
+	}
+}
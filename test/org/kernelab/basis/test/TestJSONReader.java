@@ -0,0 +1,78 @@
+package org.kernelab.basis.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.kernelab.basis.Canal;
+import org.kernelab.basis.JSON;
+import org.kernelab.basis.JSON.JSAN;
+import org.kernelab.basis.JSON.Tokenizer;
+import org.kernelab.basis.Mapper;
+import org.kernelab.basis.Tools;
+
+public class TestJSONReader
+{
+	public static void main(String[] args) throws IOException
+	{
+		String doc = "{\"a\":{\"x\":[1,{\"y\":\"deep\"}],\"z\":\"\\\"}\"},\"b\":[10,20,30],\"c\":\"end\"}";
+
+		// Pull the tokens with their paths.
+		Tokenizer t = new Tokenizer(doc);
+		int k;
+		while ((k = t.next()) != Tokenizer.END)
+		{
+			Tools.debug(k + "\t" + t.getPath() + "\t" + (k == Tokenizer.FIELD_NAME ? t.getName() : t.getValue()));
+		}
+
+		// Skip a subtree entirely.
+		t = new Tokenizer(doc);
+		while ((k = t.next()) != Tokenizer.END)
+		{
+			if (k == Tokenizer.FIELD_NAME && "a".equals(t.getName()))
+			{
+				t.next();
+				t.skipChildren();
+				Tools.debug("skipped to " + t.getToken() + " at depth " + t.getDepth());
+			}
+			else if (k == Tokenizer.FIELD_NAME)
+			{
+				Tools.debug(t.getName() + " = " + t.readValue());
+			}
+		}
+
+		// Select some paths only.
+		Tools.debug(new Tokenizer(doc).select(Arrays.asList("$.a.x[1].y", "$.b[2]", "$.c", "$.none")));
+
+		// Read from an InputStream.
+		Tools.debug(new Tokenizer(new ByteArrayInputStream(doc.getBytes("UTF-8")), Charset.forName("UTF-8")).parse()
+				.equals(JSON.Parse(doc)));
+
+		// Lazy elements of a big array in constant memory.
+		String big = TestJSONTokenizer.document(1024 * 1024, 7);
+		JSAN all = (JSAN) JSON.Parse(big);
+		Canal<JSON> els = new Tokenizer(new StringReader(big), 100).elements();
+		Tools.debug(els.count() + " " + all.size());
+		Tools.debug(new Tokenizer(new StringReader(big), 100).elements().map(new Mapper<JSON, Object>()
+		{
+			@Override
+			public Object map(JSON el) throws Exception
+			{
+				return el.attr("id");
+			}
+		}).limit(3).collect());
+
+		int i = 0;
+		boolean same = true;
+		for (JSON el : new Tokenizer(new StringReader(big)).elements())
+		{
+			same &= el.equals(all.get(i++));
+		}
+		Tools.debug(same + " " + i);
+
+		Tools.debug(new Tokenizer("{\"only\":1}").elements().collect());
+		Tools.debug(new Tokenizer("[1, {\"a\":1}, \"s\", [2]]").elements().collect());
+	}
+}
@@ -0,0 +1,99 @@
+package org.kernelab.basis.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.kernelab.basis.JSON;
+import org.kernelab.basis.JSON.Parser;
+import org.kernelab.basis.JSON.Tokenizer;
+import org.kernelab.basis.Tools;
+
+/**
+ * Compare the results of Tokenizer with the old Parser, then measure both on
+ * the documents of 1KB, 1MB and, if any argument is given, 100MB.
+ */
+public class TestJSONTokenizer
+{
+	protected static final String[] SAMPLES = {
+			"{\"a\":1,\"b\":-2.50,\"c\":\"x\\\"y\\\\z\\u4e2d\\n\",\"d\":[true,false,null,[],{}],\"e\":{\"f\":{}}}",
+			"{a: 1, b: hello world , c : 'q', \"d\" : 12345678901234567890, e: 1234567890123456789, f: 1e3}",
+			"// leading comment\n{ /* block */ \"a\" : [1, 2 /* two */, 3] , // tail\n \"b\": \"/* not a comment */\"}",
+			"{\"f\": function(a, b) { if (a) { return \"}\" + b; } /* } */ return 0; }, \"g\": 2}",
+			"  garbage before [ 1, \"two\", { \"three\": 3 } ] after",
+			"{\"empty\":\"\",\"space\":\" \",\"neg\":-0,\"big\":-2147483649,\"dec\":.5}",
+			"{\"a\":[1,],\"b\":[,],\"c\":[1,,2],\"d\":[ , {\"e\":[,1]} ]}",
+			"{\"a\":[1, NaN],\"b\":[1,Infinity,2],\"c\":[NaN,,1d],\"d\":[1d]}", };
+
+	public static String document(int size, long seed)
+	{
+		Random rand = new Random(seed);
+		StringBuilder buf = new StringBuilder(size + 256);
+		buf.append('[');
+		int i = 0;
+		while (buf.length() < size)
+		{
+			if (i++ > 0)
+			{
+				buf.append(',');
+			}
+			buf.append("{\"id\":").append(i) //
+					.append(",\"name\":\"name-").append(rand.nextInt(100000)).append("\\t\\\"q\\\"\"") //
+					.append(",\"score\":").append(rand.nextInt(10000) / 100.0) //
+					.append(",\"tags\":[\"a\",\"b\",").append(rand.nextBoolean()).append(",null]") //
+					.append(",\"nested\":{\"x\":{\"y\":{\"z\":[").append(rand.nextLong()).append("]}}}}");
+		}
+		buf.append(']');
+		return buf.toString();
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		for (String sample : SAMPLES)
+		{
+			JSON a = new Parser().parse(sample).dispose().result();
+			JSON b = JSON.Parse(sample);
+			JSON c = new Tokenizer(new StringReader(sample), 16).parse();
+			Tools.debug(String.valueOf(a).equals(String.valueOf(b)) + " " + String.valueOf(b).equals(String.valueOf(c))
+					+ " " + b);
+		}
+		Tools.debug(JSON.Parse("{\"a\":[1,2") + " " + JSON.Parse("no json"));
+
+		String doc = document(1 << 20, 0);
+		Tools.debug(new Parser().parse(doc).dispose().result().toString()
+				.equals(new Tokenizer(new StringReader(doc), 100).parse().toString()));
+
+		int[] sizes = args.length > 0 ? new int[] { 1 << 10, 1 << 20, 100 << 20 } : new int[] { 1 << 10, 1 << 20 };
+		for (int size : sizes)
+		{
+			doc = document(size, size);
+			int rounds = Math.max(1, (8 << 20) / size);
+			Tools.debug(size + " bytes\tparser " + measure(doc, rounds, false) + "us\ttokenizer "
+					+ measure(doc, rounds, true) + "us");
+		}
+	}
+
+	/**
+	 * Average microseconds of parsing the document after warming up.
+	 */
+	public static long measure(String doc, int rounds, boolean tokenizer)
+	{
+		long t = 0;
+		for (int w = 0; w < 2; w++)
+		{
+			t = System.nanoTime();
+			for (int i = 0; i < rounds; i++)
+			{
+				if (tokenizer)
+				{
+					JSON.Parse(doc);
+				}
+				else
+				{
+					new Parser().parse(doc).dispose().result();
+				}
+			}
+		}
+		return (System.nanoTime() - t) / rounds / 1000;
+	}
+}
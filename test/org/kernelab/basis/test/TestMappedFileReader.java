@@ -0,0 +1,139 @@
+package org.kernelab.basis.test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.kernelab.basis.JSON;
+import org.kernelab.basis.Tools;
+import org.kernelab.basis.io.MappedFileReader;
+
+/**
+ * Compare the text decoded by MappedFileReader with InputStreamReader over
+ * small windows and malformed input, then measure JSON.Parse(File) on a
+ * document of 20MB or the size given in the first argument.
+ */
+public class TestMappedFileReader
+{
+	public static void main(String[] args) throws IOException
+	{
+		Random rand = new Random(11);
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+		{
+			switch (rand.nextInt(5))
+			{
+				case 0:
+					text.append((char) (0x4e00 + rand.nextInt(0x5000)));
+					break;
+				case 1:
+					text.append((char) (0x80 + rand.nextInt(0x700)));
+					break;
+				case 2:
+					text.appendCodePoint(0x10000 + rand.nextInt(0x1000));
+					break;
+				default:
+					text.append((char) (0x20 + rand.nextInt(0x5f)));
+			}
+		}
+
+		for (String name : new String[] { "UTF-8", "GBK", "UTF-16" })
+		{
+			Charset charset = Charset.forName(name);
+			byte[] bytes = text.toString().getBytes(charset);
+			File file = write(bytes);
+			boolean same = true;
+			for (long window : new long[] { 64, 67, 4096, MappedFileReader.DEFAULT_WINDOW_SIZE })
+			{
+				for (int chunk : new int[] { 1, 3, 8192 })
+				{
+					same &= read(new MappedFileReader(file, charset, window), chunk)
+							.equals(read(new InputStreamReader(new ByteArrayInputStream(bytes), charset), chunk));
+				}
+			}
+			Tools.debug(name + " " + same);
+		}
+
+		// Malformed UTF-8 is replaced as InputStreamReader does.
+		Charset utf8 = Charset.forName("UTF-8");
+		byte[] good = text.substring(0, 3000).getBytes(utf8);
+		boolean same = true;
+		for (int r = 0; r < 50; r++)
+		{
+			byte[] bytes = good.clone();
+			for (int i = 0; i < 20; i++)
+			{
+				bytes[rand.nextInt(bytes.length)] = (byte) rand.nextInt(256);
+			}
+			File file = write(bytes);
+			String expect = read(new InputStreamReader(new ByteArrayInputStream(bytes), utf8), 8192);
+			same &= read(new MappedFileReader(file, utf8, 64), 8192).equals(expect);
+			same &= read(new MappedFileReader(file, utf8), 7).equals(expect);
+		}
+		Tools.debug("malformed " + same);
+
+		// The byte order mark is skipped.
+		File bom = write(new byte[] { (byte) 0xef, (byte) 0xbb, (byte) 0xbf, '{', '}' });
+		Tools.debug(read(new MappedFileReader(bom, utf8), 10) + " " + JSON.Parse(bom, utf8));
+		Tools.debug(JSON.Parse(write(new byte[0]), utf8));
+
+		File file = write(TestJSONTokenizer
+				.document(args.length > 0 ? Integer.parseInt(args[0]) : 20 * 1024 * 1024, 13).getBytes(utf8));
+		// Only the digest of each result is kept, the paths are timed in turns.
+		for (int r = 0; r < 4; r++)
+		{
+			long s = 0, u = 0;
+			int a = 0, b = 0;
+			for (int k = 0; k < 2; k++)
+			{
+				long t = System.nanoTime();
+				if ((r + k) % 2 == 0)
+				{
+					JSON json = JSON.Parse(new BufferedReader(new InputStreamReader(new FileInputStream(file), utf8)));
+					s = System.nanoTime() - t;
+					a = json.toString().hashCode();
+				}
+				else
+				{
+					JSON json = JSON.Parse(file, utf8);
+					u = System.nanoTime() - t;
+					b = json.toString().hashCode();
+				}
+			}
+			Tools.debug(file.length() + " bytes " + (a == b) + "\tstream " + s / 1000000 + "ms\tmapped " + u
+					/ 1000000 + "ms\t" + (r % 2 == 0 ? "stream" : "mapped") + " first");
+		}
+	}
+
+	protected static String read(Reader reader, int chunk) throws IOException
+	{
+		StringBuilder buf = new StringBuilder();
+		char[] cbuf = new char[chunk];
+		int n;
+		while ((n = reader.read(cbuf, 0, chunk)) != -1)
+		{
+			buf.append(cbuf, 0, n);
+		}
+		reader.close();
+		return buf.toString();
+	}
+
+	protected static File write(byte[] bytes) throws IOException
+	{
+		File file = File.createTempFile("mapped", ".txt");
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		out.write(bytes);
+		out.close();
+		return file;
+	}
+}
@@ -6,6 +6,7 @@ import java.sql.Timestamp;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.kernelab.basis.Canal;
 import org.kernelab.basis.Canal.Action;
 import org.kernelab.basis.Canal.Tuple;
 import org.kernelab.basis.JSON;
@@ -32,6 +33,7 @@ public class TestSQLKit
 			// testTimestamp(kit);
 			// testExists(kit);
 			// testBatches(kit);
+			// testUpdateBatch(kit);
 			testCanal(kit);
 		}
 		catch (SQLException e)
@@ -83,6 +85,26 @@ public class TestSQLKit
 		kit.commitBatches();
 	}
 
+	public static void testUpdateBatch(SQLKit kit) throws SQLException
+	{
+		kit.setAutoCommit(false);
+
+		String sql = "insert into jdl_test_batch1 (id,name) values (?id?, ?name?)";
+
+		long count = kit.updateBatch(sql, Canal.of(Canal.range(0, 10000)).map(new Mapper<Integer, JSON>()
+		{
+			@Override
+			public JSON map(Integer el) throws Exception
+			{
+				return new JSON().attr("id", el).attr("name", "aa" + el);
+			}
+		}), 500);
+
+		kit.commit();
+
+		Tools.debug(count);
+	}
+
 	public static void testExists(SQLKit kit) throws SQLException
 	{
 		String sql = "select 1 from jdl_test_a where id=?";
@@ -13,6 +13,7 @@ public class TestWindowFunction
 	public static void main(String[] args)
 	{
 		test1();
+		test2();
 	}
 
 	/**
@@ -124,4 +125,38 @@ public class TestWindowFunction
 			}
 		});
 	}
+
+	/**
+	 * The sliding sum of doubles should not lose the small values which were
+	 * added after a large one, expecting 1e20, 1e20, 2, 2, 2. Then the sum
+	 * should recover after an infinity leaves the frame, expecting 1,
+	 * Infinity, Infinity, 2.
+	 */
+	public static void test2()
+	{
+		test2(1e20, 1.0, 1.0, 1.0, 1.0);
+		test2(1.0, Double.POSITIVE_INFINITY, 1.0, 1.0);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static void test2(double... values)
+	{
+		Row[] data = new Row[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			data[i] = new Row("id", i + 1, "v", values[i]);
+		}
+
+		Canal.of(data).<Row> toRows()
+				.window(Canal.wf.SUM(Canal.<Double> $("v")).orderBy(Canal.$("id")).rows()
+						.between(Canal.wf.preceding(1), Canal.wf.CURRENT_ROW).as("sum")) //
+				.sortBy(Canal.$("id")).foreach(new Action<Row>()
+				{
+					@Override
+					public void action(Row el) throws Exception
+					{
+						Tools.debug(el.get("id") + "\t" + el.get("sum"));
+					}
+				});
+	}
 }